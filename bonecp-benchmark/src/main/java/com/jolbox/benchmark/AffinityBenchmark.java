@@ -0,0 +1,119 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+/**
+ * 
+ */
+package com.jolbox.benchmark;
+
+import java.sql.Connection;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import com.jolbox.bonecp.BoneCP;
+import com.jolbox.bonecp.BoneCPConfig;
+import com.jolbox.bonecp.MockJDBCDriver;
+
+/**
+ * Compares the AFFINITY strategy against the DEFAULT (partitioned) strategy with a fixed set of
+ * worker threads (think event loops) that each repeatedly obtain and close a connection inline.
+ * In DEFAULT mode the pool gets one partition per worker; in AFFINITY mode each worker registers 
+ * itself and is given its own pinned partition.
+ * 
+ * Usage: AffinityBenchmark [workers (default 8)] [iterations per worker (default 1000000)]
+ * 
+ * @author wallacew
+ *
+ */
+public class AffinityBenchmark {
+	/** Strategies under test. */
+	private static final String[] STRATEGIES = {"DEFAULT", "AFFINITY"};
+
+	/** Entry point.
+	 * @param args see class description
+	 * @throws Exception on error
+	 */
+	public static void main(String[] args) throws Exception {
+		int workers = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+		int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 1000000;
+
+		Class.forName("com.jolbox.bonecp.MockJDBCDriver");
+		new MockJDBCDriver();
+
+		System.out.println("Running "+workers+" worker threads, "+iterations+" getConnection()/close() each");
+		// warm up
+		for (String strategy: STRATEGIES){
+			run(strategy, workers, Math.min(iterations, 100000));
+		}
+		for (String strategy: STRATEGIES){
+			long elapsed = run(strategy, workers, iterations);
+			long ops = (long) workers * iterations;
+			System.out.println(String.format("%-8s total: %6d ms   avg getConnection()+close(): %6d ns   throughput: %10d ops/s", 
+					strategy, TimeUnit.NANOSECONDS.toMillis(elapsed), elapsed * workers / ops, ops * 1000000000L / elapsed));
+		}
+	}
+
+	/** Runs the workers against a freshly created pool.
+	 * @param strategy pool strategy
+	 * @param workers number of worker threads
+	 * @param iterations loops per worker
+	 * @return elapsed time in ns
+	 * @throws Exception on error
+	 */
+	private static long run(final String strategy, int workers, final int iterations) throws Exception {
+		BoneCPConfig config = new BoneCPConfig();
+		config.setJdbcUrl("jdbc:mock");
+		config.setPoolStrategy(strategy);
+		config.setPartitionCount(workers);
+		config.setMinConnectionsPerPartition(2);
+		config.setMaxConnectionsPerPartition(2);
+		config.setDisableConnectionTracking(true);
+		final BoneCP pool = new BoneCP(config);
+
+		final CountDownLatch ready = new CountDownLatch(workers);
+		final CountDownLatch startSignal = new CountDownLatch(1);
+		final CountDownLatch done = new CountDownLatch(workers);
+		for (int i=0; i < workers; i++){
+			new Thread("worker-"+i){
+				public void run() {
+					try {
+						if (strategy.equals("AFFINITY")){
+							pool.registerAffinityThread();
+						}
+						ready.countDown();
+						startSignal.await();
+						for (int j=0; j < iterations; j++){
+							Connection connection = pool.getConnection();
+							connection.close();
+						}
+						pool.unregisterAffinityThread();
+					} catch (Exception e) {
+						e.printStackTrace();
+					} finally {
+						done.countDown();
+					}
+				}
+			}.start();
+		}
+
+		ready.await();
+		long start = System.nanoTime();
+		startSignal.countDown();
+		done.await();
+		long elapsed = System.nanoTime() - start;
+		pool.close();
+		return elapsed;
+	}
+}
@@ -0,0 +1,141 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+/**
+ * 
+ */
+package com.jolbox.benchmark;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import com.jolbox.bonecp.BoneCP;
+import com.jolbox.bonecp.BoneCPConfig;
+import com.jolbox.bonecp.MockJDBCDriver;
+
+/**
+ * Compares the DEFAULT, CACHED and VIRTUAL pool strategies with a very large number of concurrent 
+ * one-shot tasks against the mock driver. Each task runs on its own virtual thread when the JVM 
+ * supports them (JDK 21+, looked up reflectively so this compiles on older JDKs); otherwise a
+ * warning is printed and the tasks run on a fixed pool of platform threads instead.
+ * 
+ * Usage: StrategyBenchmark [tasks (default 100000)] [pool size (default 100)] [work delay in ms (default 1)]
+ * 
+ * @author wallacew
+ *
+ */
+public class StrategyBenchmark {
+	/** Strategies under test. */
+	private static final String[] STRATEGIES = {"DEFAULT", "CACHED", "VIRTUAL"};
+
+	/** Entry point.
+	 * @param args see class description
+	 * @throws Exception on error
+	 */
+	public static void main(String[] args) throws Exception {
+		int tasks = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+		int poolSize = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+		int workDelay = args.length > 2 ? Integer.parseInt(args[2]) : 1;
+
+		Class.forName("com.jolbox.bonecp.MockJDBCDriver");
+		new MockJDBCDriver();
+
+		System.out.println("Running "+tasks+" concurrent tasks against a pool of "+poolSize+" connections ("+workDelay+"ms work each)");
+		// warm up
+		for (String strategy: STRATEGIES){
+			run(strategy, Math.min(tasks, 10000), poolSize, workDelay);
+		}
+		for (String strategy: STRATEGIES){
+			long[] result = run(strategy, tasks, poolSize, workDelay);
+			System.out.println(String.format("%-8s total: %6d ms   avg getConnection(): %8d ns   max getConnection(): %6d ms", 
+					strategy, TimeUnit.NANOSECONDS.toMillis(result[0]), result[1], TimeUnit.NANOSECONDS.toMillis(result[2])));
+		}
+	}
+
+	/** Runs the given number of concurrent tasks against a freshly created pool.
+	 * @param strategy pool strategy
+	 * @param tasks number of tasks
+	 * @param poolSize total connections in pool
+	 * @param workDelay time to hold each connection for
+	 * @return total elapsed time, average and maximum acquisition time (all in ns)
+	 * @throws Exception on error
+	 */
+	private static long[] run(String strategy, int tasks, int poolSize, final int workDelay) throws Exception {
+		int partitions = Runtime.getRuntime().availableProcessors();
+		BoneCPConfig config = new BoneCPConfig();
+		config.setJdbcUrl("jdbc:mock");
+		config.setPoolStrategy(strategy);
+		config.setPartitionCount(partitions);
+		config.setMinConnectionsPerPartition(Math.max(1, poolSize / partitions));
+		config.setMaxConnectionsPerPartition(Math.max(1, poolSize / partitions));
+		config.setDisableConnectionTracking(true);
+		config.setConnectionTimeoutInMs(0);
+		final BoneCP pool = new BoneCP(config);
+
+		final CountDownLatch startSignal = new CountDownLatch(1);
+		ExecutorService executor = newExecutor();
+		List<Future<Long>> results = new ArrayList<Future<Long>>(tasks);
+		for (int i=0; i < tasks; i++){
+			results.add(executor.submit(new Callable<Long>() {
+				public Long call() throws Exception {
+					startSignal.await();
+					long start = System.nanoTime();
+					Connection connection = pool.getConnection();
+					long acquired = System.nanoTime() - start;
+					if (workDelay > 0){
+						Thread.sleep(workDelay);
+					}
+					connection.close();
+					return acquired;
+				}
+			}));
+		}
+
+		long start = System.nanoTime();
+		startSignal.countDown();
+		long total = 0;
+		long max = 0;
+		for (Future<Long> result: results){
+			long acquired = result.get();
+			total += acquired;
+			max = Math.max(max, acquired);
+		}
+		long elapsed = System.nanoTime() - start;
+		executor.shutdown();
+		executor.awaitTermination(1, TimeUnit.MINUTES);
+		pool.close();
+		return new long[]{elapsed, total / tasks, max};
+	}
+
+	/** Returns a virtual-thread-per-task executor if available, or a platform thread pool otherwise.
+	 * @return executor
+	 */
+	private static ExecutorService newExecutor() {
+		try{
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (Exception e){
+			System.out.println("Virtual threads are not available on this JVM; falling back to 1000 platform threads.");
+			return Executors.newFixedThreadPool(1000);
+		}
+	}
+}
@@ -0,0 +1,109 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+/**
+ * 
+ */
+package com.jolbox.benchmark.jmh;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.jolbox.bonecp.BoneCP;
+
+/**
+ * getConnection()/close() round trips at increasing thread counts, for every pool strategy (see PoolState).
+ * 
+ * @author wallacew
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ConnectionBenchmark {
+
+	/** Single thread: no contention.
+	 * @param state pool
+	 * @param worker registers the thread with the pool (AFFINITY)
+	 * @param blackhole sink
+	 * @throws SQLException on error
+	 */
+	@Benchmark
+	@Threads(1)
+	public void getConnection1Thread(PoolState state, PoolState.Worker worker, Blackhole blackhole) throws SQLException {
+		cycle(state.pool, blackhole);
+	}
+
+	/** A few threads: mostly uncontended.
+	 * @param state pool
+	 * @param worker registers the thread with the pool (AFFINITY)
+	 * @param blackhole sink
+	 * @throws SQLException on error
+	 */
+	@Benchmark
+	@Threads(4)
+	public void getConnection4Threads(PoolState state, PoolState.Worker worker, Blackhole blackhole) throws SQLException {
+		cycle(state.pool, blackhole);
+	}
+
+	/** As many threads as there are connections in the pool.
+	 * @param state pool
+	 * @param worker registers the thread with the pool (AFFINITY)
+	 * @param blackhole sink
+	 * @throws SQLException on error
+	 */
+	@Benchmark
+	@Threads(PoolState.POOL_SIZE)
+	public void getConnectionPoolSizeThreads(PoolState state, PoolState.Worker worker, Blackhole blackhole) throws SQLException {
+		cycle(state.pool, blackhole);
+	}
+
+	/** Twice as many threads as there are connections: threads have to wait for each other.
+	 * @param state pool
+	 * @param worker registers the thread with the pool (AFFINITY)
+	 * @param blackhole sink
+	 * @throws SQLException on error
+	 */
+	@Benchmark
+	@Threads(2 * PoolState.POOL_SIZE)
+	public void getConnectionOversubscribed(PoolState state, PoolState.Worker worker, Blackhole blackhole) throws SQLException {
+		cycle(state.pool, blackhole);
+	}
+
+	/** Obtains and releases one connection.
+	 * @param pool pool
+	 * @param blackhole sink
+	 * @throws SQLException on error
+	 */
+	private static void cycle(BoneCP pool, Blackhole blackhole) throws SQLException {
+		Connection connection = pool.getConnection();
+		blackhole.consume(connection);
+		connection.close();
+	}
+}
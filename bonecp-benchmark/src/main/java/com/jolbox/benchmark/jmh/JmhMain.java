@@ -0,0 +1,54 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+/**
+ * 
+ */
+package com.jolbox.benchmark.jmh;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the JMH suite with the GC profiler attached, so that every result comes with its allocation rate
+ * per operation (gc.alloc.rate.norm) next to the throughput. 
+ * 
+ * Usage: JmhMain [benchmark regexp (default: the whole suite)]
+ * 
+ * For finer control (thread counts, params, forks) use the benchmarks jar built by the jmh profile instead:
+ * java -jar target/benchmarks.jar -prof gc [JMH options]
+ * 
+ * @author wallacew
+ *
+ */
+public class JmhMain {
+
+	/** Entry point.
+	 * @param args see class description
+	 * @throws RunnerException on error
+	 */
+	public static void main(String[] args) throws RunnerException {
+		String include = args.length > 0 ? args[0] : JmhMain.class.getPackage().getName() + "\\..*Benchmark.*";
+		Options options = new OptionsBuilder()
+			.include(include)
+			.addProfiler(GCProfiler.class)
+			.build();
+		new Runner(options).run();
+	}
+}
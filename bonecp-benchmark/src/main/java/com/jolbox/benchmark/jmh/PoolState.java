@@ -0,0 +1,129 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+/**
+ * 
+ */
+package com.jolbox.benchmark.jmh;
+
+import java.sql.SQLException;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.jolbox.bonecp.BoneCP;
+import com.jolbox.bonecp.BoneCPConfig;
+import com.jolbox.bonecp.MockJDBCDriver;
+import com.jolbox.bonecp.hooks.AbstractConnectionHook;
+
+/**
+ * A pool running against the mock driver, shared by all benchmark threads. Covers every pool strategy with
+ * statistics and connection hooks switched on and off.
+ * 
+ * @author wallacew
+ *
+ */
+@State(Scope.Benchmark)
+public class PoolState {
+	/** Total connections in the pool (fewer than the highest thread count so that the wait path is covered too). */
+	public static final int POOL_SIZE = 32;
+	/** Pool strategy under test. */
+	@Param({"DEFAULT", "CACHED", "VIRTUAL", "AFFINITY"})
+	public String strategy;
+	/** If true, statistics are enabled. */
+	@Param({"false", "true"})
+	public boolean statistics;
+	/** If true, a (no-op) connection hook is installed. */
+	@Param({"false", "true"})
+	public boolean hooks;
+	/** Pool under test. */
+	public BoneCP pool;
+	/** Mock driver. */
+	private MockJDBCDriver driver;
+
+	/** Starts the pool.
+	 * @throws SQLException on error
+	 */
+	@Setup(Level.Trial)
+	public void setup() throws SQLException {
+		this.driver = new MockJDBCDriver();
+		BoneCPConfig config = config(this.statistics, this.hooks);
+		config.setPoolStrategy(this.strategy);
+		this.pool = new BoneCP(config);
+	}
+
+	/** Registers every benchmark thread with the pool, as an AFFINITY application would register its worker 
+	 * threads; otherwise AFFINITY runs measure the shared partitions only. Does nothing for the other strategies.
+	 */
+	@State(Scope.Thread)
+	public static class Worker {
+		/** Pool the thread is registered with. */
+		private BoneCP pool;
+
+		/** Registers the benchmark thread (thread-scoped state is set up on the thread that uses it).
+		 * @param state pool
+		 */
+		@Setup(Level.Trial)
+		public void register(PoolState state) {
+			this.pool = state.pool;
+			this.pool.registerAffinityThread();
+		}
+
+		/** Hands the thread's pinned connections back. */
+		@TearDown(Level.Trial)
+		public void unregister() {
+			this.pool.unregisterAffinityThread();
+		}
+	}
+
+	/** Shuts down the pool.
+	 * @throws SQLException on error
+	 */
+	@TearDown(Level.Trial)
+	public void tearDown() throws SQLException {
+		this.pool.close();
+		this.driver.unregister();
+	}
+
+	/** Returns the config used by all benchmarks.
+	 * @param statistics enable statistics
+	 * @param hooks install a connection hook
+	 * @return config
+	 */
+	protected static BoneCPConfig config(boolean statistics, boolean hooks){
+		int partitions = Math.min(POOL_SIZE, Runtime.getRuntime().availableProcessors());
+		while (POOL_SIZE % partitions != 0){ // keep the pool at exactly POOL_SIZE connections
+			partitions--;
+		}
+		BoneCPConfig config = new BoneCPConfig();
+		config.setJdbcUrl("jdbc:mock");
+		config.setPartitionCount(partitions);
+		config.setMinConnectionsPerPartition(POOL_SIZE / partitions);
+		config.setMaxConnectionsPerPartition(POOL_SIZE / partitions);
+		config.setDisableJMX(true);
+		config.setStatisticsEnabled(statistics);
+		if (hooks){
+			config.setConnectionHook(new AbstractConnectionHook() {
+				// no-op: measures the cost of the hook calls themselves
+			});
+		}
+		return config;
+	}
+}
@@ -0,0 +1,164 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+/**
+ * 
+ */
+package com.jolbox.benchmark.jmh;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.jolbox.bonecp.BoneCP;
+import com.jolbox.bonecp.BoneCPConfig;
+import com.jolbox.bonecp.MockJDBCDriver;
+import com.jolbox.bonecp.MockPreparedStatement;
+
+/**
+ * Statement-level overhead: prepareStatement() served from the statement cache vs. going to the driver, and 
+ * the cost of the statement wrapper on executeQuery() compared to calling the mock statement directly.
+ * 
+ * @author wallacew
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class StatementBenchmark {
+	/** SQL used throughout. */
+	private static final String SQL = "SELECT id, name FROM benchmark WHERE id = ?";
+
+	/**
+	 * One connection per benchmark thread from a pool with a statement cache, one from a pool without.
+	 */
+	@State(Scope.Thread)
+	public static class ConnectionState {
+		/** If true, statistics are enabled. */
+		@Param({"false", "true"})
+		public boolean statistics;
+		/** If true, a (no-op) connection hook is installed. */
+		@Param({"false", "true"})
+		public boolean hooks;
+		/** Mock driver. */
+		private MockJDBCDriver driver;
+		/** Pool with a statement cache. */
+		private BoneCP cachingPool;
+		/** Pool without a statement cache. */
+		private BoneCP plainPool;
+		/** Connection whose statements are cached. */
+		Connection cachingConnection;
+		/** Connection whose statements are not cached. */
+		Connection plainConnection;
+		/** Statement obtained via the pool. */
+		PreparedStatement wrappedStatement;
+		/** Statement straight from the mock driver. */
+		PreparedStatement rawStatement;
+
+		/** Opens the connections.
+		 * @throws SQLException on error
+		 */
+		@Setup(Level.Trial)
+		public void setup() throws SQLException {
+			this.driver = new MockJDBCDriver();
+			BoneCPConfig config = PoolState.config(this.statistics, this.hooks);
+			config.setStatementsCacheSize(16);
+			this.cachingPool = new BoneCP(config);
+			config = PoolState.config(this.statistics, this.hooks);
+			config.setStatementsCacheSize(0);
+			this.plainPool = new BoneCP(config);
+			this.cachingConnection = this.cachingPool.getConnection();
+			this.plainConnection = this.plainPool.getConnection();
+			this.wrappedStatement = this.plainConnection.prepareStatement(SQL);
+			this.rawStatement = new MockPreparedStatement();
+		}
+
+		/** Closes everything down.
+		 * @throws SQLException on error
+		 */
+		@TearDown(Level.Trial)
+		public void tearDown() throws SQLException {
+			this.wrappedStatement.close();
+			this.cachingConnection.close();
+			this.plainConnection.close();
+			this.cachingPool.close();
+			this.plainPool.close();
+			this.driver.unregister();
+		}
+	}
+
+	/** prepareStatement() + close() served from the statement cache.
+	 * @param state connections
+	 * @param blackhole sink
+	 * @throws SQLException on error
+	 */
+	@Benchmark
+	public void prepareStatementCacheHit(ConnectionState state, Blackhole blackhole) throws SQLException {
+		PreparedStatement statement = state.cachingConnection.prepareStatement(SQL);
+		blackhole.consume(statement);
+		statement.close();
+	}
+
+	/** prepareStatement() + close() going to the driver every time.
+	 * @param state connections
+	 * @param blackhole sink
+	 * @throws SQLException on error
+	 */
+	@Benchmark
+	public void prepareStatementCacheMiss(ConnectionState state, Blackhole blackhole) throws SQLException {
+		PreparedStatement statement = state.plainConnection.prepareStatement(SQL);
+		blackhole.consume(statement);
+		statement.close();
+	}
+
+	/** executeQuery() via the pool's statement wrapper.
+	 * @param state connections
+	 * @param blackhole sink
+	 * @throws SQLException on error
+	 */
+	@Benchmark
+	public void executeQueryWrapped(ConnectionState state, Blackhole blackhole) throws SQLException {
+		blackhole.consume(state.wrappedStatement.executeQuery());
+	}
+
+	/** executeQuery() on the mock statement directly: the baseline for executeQueryWrapped.
+	 * @param state connections
+	 * @param blackhole sink
+	 * @throws SQLException on error
+	 */
+	@Benchmark
+	public void executeQueryRaw(ConnectionState state, Blackhole blackhole) throws SQLException {
+		blackhole.consume(state.rawStatement.executeQuery());
+	}
+}
@@ -0,0 +1,175 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+/**
+ * 
+ */
+package com.jolbox.benchmark.load;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A source of simulated latencies. Instances are created from a short spec string so that they can be passed on 
+ * the command line:
+ * <ul>
+ * <li><code>0</code> - no delay</li>
+ * <li><code>const:2ms</code> - always the given duration</li>
+ * <li><code>uniform:1ms:5ms</code> - uniformly distributed between the two bounds</li>
+ * <li><code>exp:2ms</code> - exponentially distributed with the given mean</li>
+ * <li><code>lognormal:2ms:0.5</code> - log-normally distributed with the given median and shape (sigma); gives a 
+ * realistic long tail</li>
+ * </ul>
+ * Durations take an <code>ns</code>, <code>us</code>, <code>ms</code> or <code>s</code> suffix (default ms).
+ * 
+ * @author wallacew
+ *
+ */
+public abstract class LatencyDistribution {
+	/** A distribution that never delays. */
+	public static final LatencyDistribution NONE = constant(0);
+
+	/** Spec this distribution was created from. */
+	private final String spec;
+
+	/** Default constructor.
+	 * @param spec textual form of this distribution.
+	 */
+	protected LatencyDistribution(String spec){
+		this.spec = spec;
+	}
+
+	/** Draws the next latency.
+	 * @param random source of randomness.
+	 * @return latency in nanoseconds (never negative).
+	 */
+	public abstract long sample(Random random);
+
+	/** {@inheritDoc}
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return this.spec;
+	}
+
+	/** Returns a distribution that always gives the same latency.
+	 * @param nanos latency in nanoseconds.
+	 * @return distribution
+	 */
+	public static LatencyDistribution constant(final long nanos){
+		return new LatencyDistribution("const:"+nanos+"ns") {
+			@Override
+			public long sample(Random random) {
+				return nanos;
+			}
+		};
+	}
+
+	/** Returns a distribution that is uniform between the two bounds.
+	 * @param minNanos lower bound in nanoseconds.
+	 * @param maxNanos upper bound in nanoseconds.
+	 * @return distribution
+	 */
+	public static LatencyDistribution uniform(final long minNanos, final long maxNanos){
+		return new LatencyDistribution("uniform:"+minNanos+"ns:"+maxNanos+"ns") {
+			@Override
+			public long sample(Random random) {
+				return minNanos + (long) (random.nextDouble() * (maxNanos - minNanos));
+			}
+		};
+	}
+
+	/** Returns an exponential distribution.
+	 * @param meanNanos mean in nanoseconds.
+	 * @return distribution
+	 */
+	public static LatencyDistribution exponential(final long meanNanos){
+		return new LatencyDistribution("exp:"+meanNanos+"ns") {
+			@Override
+			public long sample(Random random) {
+				return (long) (-Math.log(1.0 - random.nextDouble()) * meanNanos);
+			}
+		};
+	}
+
+	/** Returns a log-normal distribution.
+	 * @param medianNanos median in nanoseconds.
+	 * @param sigma shape parameter; larger values give a longer tail.
+	 * @return distribution
+	 */
+	public static LatencyDistribution logNormal(final long medianNanos, final double sigma){
+		return new LatencyDistribution("lognormal:"+medianNanos+"ns:"+sigma) {
+			@Override
+			public long sample(Random random) {
+				return (long) (medianNanos * Math.exp(sigma * random.nextGaussian()));
+			}
+		};
+	}
+
+	/** Creates a distribution from its spec (see class comment).
+	 * @param spec spec to parse.
+	 * @return distribution
+	 * @throws IllegalArgumentException if the spec is not understood.
+	 */
+	public static LatencyDistribution parse(String spec){
+		String[] parts = spec.trim().split(":");
+		String kind = parts[0].toLowerCase();
+		try{
+			if (parts.length == 1){
+				return constant(parseDuration(kind));
+			}
+			if (kind.equals("const") && parts.length == 2){
+				return constant(parseDuration(parts[1]));
+			}
+			if (kind.equals("uniform") && parts.length == 3){
+				return uniform(parseDuration(parts[1]), parseDuration(parts[2]));
+			}
+			if (kind.equals("exp") && parts.length == 2){
+				return exponential(parseDuration(parts[1]));
+			}
+			if (kind.equals("lognormal") && parts.length == 3){
+				return logNormal(parseDuration(parts[1]), Double.parseDouble(parts[2]));
+			}
+		} catch (NumberFormatException e){
+			// fall through
+		}
+		throw new IllegalArgumentException("Invalid latency distribution: "+spec);
+	}
+
+	/** Parses a duration such as "250us" or "2ms" into nanoseconds. A bare number is taken as milliseconds.
+	 * @param duration duration to parse.
+	 * @return nanoseconds
+	 */
+	public static long parseDuration(String duration){
+		String value = duration.trim().toLowerCase();
+		TimeUnit unit = TimeUnit.MILLISECONDS;
+		int suffix = 0;
+		if (value.endsWith("ns")){
+			unit = TimeUnit.NANOSECONDS;
+			suffix = 2;
+		} else if (value.endsWith("us")){
+			unit = TimeUnit.MICROSECONDS;
+			suffix = 2;
+		} else if (value.endsWith("ms")){
+			suffix = 2;
+		} else if (value.endsWith("s")){
+			unit = TimeUnit.SECONDS;
+			suffix = 1;
+		}
+		return unit.toNanos(Long.parseLong(value.substring(0, value.length()-suffix).trim()));
+	}
+}
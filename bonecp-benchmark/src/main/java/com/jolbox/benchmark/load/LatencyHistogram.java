@@ -0,0 +1,229 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+/**
+ * 
+ */
+package com.jolbox.benchmark.load;
+
+import java.io.PrintStream;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread-safe latency histogram with HDR-style log-linear buckets: values below 2048ns are counted exactly, and 
+ * above that every power-of-two range is split into 1024 linear buckets, which keeps the error under 0.1% at 
+ * any magnitude. Values are in nanoseconds and are clamped to one hour.
+ * 
+ * <p>The percentile table printed by {@link #outputPercentileDistribution(PrintStream, double)} uses the same 
+ * layout as HdrHistogram's, so the output can be fed into the usual HdrHistogram plotting tools.
+ * 
+ * @author wallacew
+ *
+ */
+public class LatencyHistogram {
+	/** log2 of the number of linear buckets in each power-of-two range. */
+	private static final int SUB_BUCKET_BITS = 10;
+	/** Linear buckets in each power-of-two range. */
+	private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+	/** Highest value that is tracked; larger values are clamped. */
+	protected static final long HIGHEST_TRACKABLE_VALUE = TimeUnit.SECONDS.toNanos(3600);
+	/** Count for each bucket. */
+	private final AtomicLongArray counts = new AtomicLongArray(bucketIndex(HIGHEST_TRACKABLE_VALUE) + 1);
+	/** Number of values recorded. */
+	private final AtomicLong totalCount = new AtomicLong();
+	/** Sum of all values recorded. */
+	private final AtomicLong totalValue = new AtomicLong();
+	/** Largest value recorded. */
+	private final AtomicLong maxValue = new AtomicLong();
+
+	/** Records a value.
+	 * @param value value in nanoseconds (negative values are counted as 0).
+	 */
+	public void record(long value){
+		long v = Math.min(HIGHEST_TRACKABLE_VALUE, Math.max(0, value));
+		this.counts.incrementAndGet(bucketIndex(v));
+		this.totalCount.incrementAndGet();
+		this.totalValue.addAndGet(v);
+		long max;
+		while (v > (max = this.maxValue.get()) && !this.maxValue.compareAndSet(max, v)){
+			// retry
+		}
+	}
+
+	/** Returns the number of values recorded.
+	 * @return count
+	 */
+	public long getTotalCount(){
+		return this.totalCount.get();
+	}
+
+	/** Returns the largest value recorded.
+	 * @return max in nanoseconds
+	 */
+	public long getMax(){
+		return this.maxValue.get();
+	}
+
+	/** Returns the mean of all values recorded.
+	 * @return mean in nanoseconds
+	 */
+	public double getMean(){
+		long count = this.totalCount.get();
+		return count == 0 ? 0 : (double) this.totalValue.get() / count;
+	}
+
+	/** Returns the standard deviation of all values recorded (to bucket precision).
+	 * @return standard deviation in nanoseconds
+	 */
+	public double getStdDeviation(){
+		long count = this.totalCount.get();
+		if (count == 0){
+			return 0;
+		}
+		double mean = getMean();
+		double sum = 0;
+		for (int i=0; i < this.counts.length(); i++){
+			long c = this.counts.get(i);
+			if (c > 0){
+				double dev = medianEquivalentValue(i) - mean;
+				sum += dev * dev * c;
+			}
+		}
+		return Math.sqrt(sum / count);
+	}
+
+	/** Returns the value below which the given percentage of values fall.
+	 * @param percentile percentile, 0 to 100.
+	 * @return value in nanoseconds (the highest value equivalent to the matching bucket, capped at the max)
+	 */
+	public long getValueAtPercentile(double percentile){
+		long count = this.totalCount.get();
+		if (count == 0){
+			return 0;
+		}
+		long target = Math.max(1, (long) Math.ceil(Math.min(100.0, percentile) / 100.0 * count));
+		long seen = 0;
+		for (int i=0; i < this.counts.length(); i++){
+			seen += this.counts.get(i);
+			if (seen >= target){
+				return Math.min(highestEquivalentValue(i), getMax());
+			}
+		}
+		return getMax();
+	}
+
+	/** Returns the number of values recorded that are less than or equal to the given value (to bucket precision).
+	 * @param value value in nanoseconds.
+	 * @return count
+	 */
+	public long getCountAtOrBelow(long value){
+		int last = bucketIndex(Math.min(HIGHEST_TRACKABLE_VALUE, Math.max(0, value)));
+		long seen = 0;
+		for (int i=0; i <= last; i++){
+			seen += this.counts.get(i);
+		}
+		return seen;
+	}
+
+	/** Prints the percentile distribution in HdrHistogram's text format. Percentiles are reported in ticks that 
+	 * halve the remaining distance to 100% every five steps, so that the tail gets as much detail as the body.
+	 * @param out stream to print to.
+	 * @param outputValueUnitScalingRatio values are divided by this before printing (eg 1000.0 for microseconds).
+	 */
+	public void outputPercentileDistribution(PrintStream out, double outputValueUnitScalingRatio){
+		long count = getTotalCount();
+		out.format(Locale.US, "%12s %14s %10s %14s%n%n", "Value", "Percentile", "TotalCount", "1/(1-Percentile)");
+		if (count > 0){
+			double percentile = 0;
+			while (true){
+				long value = getValueAtPercentile(percentile);
+				if (Math.ceil(percentile / 100.0 * count) >= count){
+					out.format(Locale.US, "%12.3f %2.12f %10d%n", value / outputValueUnitScalingRatio, 1.0, count);
+					break;
+				}
+				out.format(Locale.US, "%12.3f %2.12f %10d %14.2f%n", value / outputValueUnitScalingRatio, percentile / 100.0, 
+						getCountAtOrBelow(value), 1.0 / (1.0 - percentile / 100.0));
+				int halvings = (int) (Math.log(100.0 / (100.0 - percentile)) / Math.log(2)) + 1;
+				percentile += 100.0 / (5 * Math.pow(2, halvings));
+			}
+		}
+		out.format(Locale.US, "#[Mean    = %12.3f, StdDeviation   = %12.3f]%n", getMean() / outputValueUnitScalingRatio, 
+				getStdDeviation() / outputValueUnitScalingRatio);
+		out.format(Locale.US, "#[Max     = %12.3f, Total count    = %12d]%n", getMax() / outputValueUnitScalingRatio, count);
+		out.format(Locale.US, "#[Buckets = %12d, SubBuckets     = %12d]%n", this.counts.length() / SUB_BUCKET_COUNT, SUB_BUCKET_COUNT);
+	}
+
+	/** Returns the summary of this histogram as a JSON object.
+	 * @param outputValueUnitScalingRatio values are divided by this before printing (eg 1000.0 for microseconds).
+	 * @return JSON text
+	 */
+	public String toJson(double outputValueUnitScalingRatio){
+		StringBuilder sb = new StringBuilder();
+		sb.append("{\"count\": ").append(getTotalCount());
+		sb.append(String.format(Locale.US, ", \"mean\": %.3f", getMean() / outputValueUnitScalingRatio));
+		sb.append(String.format(Locale.US, ", \"stddev\": %.3f", getStdDeviation() / outputValueUnitScalingRatio));
+		double[] percentiles = {50, 90, 99, 99.9, 99.99};
+		for (double p: percentiles){
+			String name = p == Math.floor(p) ? String.valueOf((int) p) : String.valueOf(p);
+			sb.append(String.format(Locale.US, ", \"p%s\": %.3f", name, getValueAtPercentile(p) / outputValueUnitScalingRatio));
+		}
+		sb.append(String.format(Locale.US, ", \"max\": %.3f}", getMax() / outputValueUnitScalingRatio));
+		return sb.toString();
+	}
+
+	/** Returns the bucket a value falls in.
+	 * @param value value, 0 to HIGHEST_TRACKABLE_VALUE.
+	 * @return bucket index
+	 */
+	protected static int bucketIndex(long value){
+		if (value < 2 * SUB_BUCKET_COUNT){
+			return (int) value;
+		}
+		int shift = 64 - Long.numberOfLeadingZeros(value) - (SUB_BUCKET_BITS + 1);
+		return (shift + 1) * SUB_BUCKET_COUNT + (int) (value >>> shift) - SUB_BUCKET_COUNT;
+	}
+
+	/** Returns the smallest value that falls in the given bucket.
+	 * @param index bucket index.
+	 * @return value
+	 */
+	protected static long lowestEquivalentValue(int index){
+		if (index < 2 * SUB_BUCKET_COUNT){
+			return index;
+		}
+		int shift = index / SUB_BUCKET_COUNT - 1;
+		return (long) (index % SUB_BUCKET_COUNT + SUB_BUCKET_COUNT) << shift;
+	}
+
+	/** Returns the largest value that falls in the given bucket.
+	 * @param index bucket index.
+	 * @return value
+	 */
+	protected static long highestEquivalentValue(int index){
+		return lowestEquivalentValue(index + 1) - 1;
+	}
+
+	/** Returns the value in the middle of the given bucket.
+	 * @param index bucket index.
+	 * @return value
+	 */
+	private static long medianEquivalentValue(int index){
+		return (lowestEquivalentValue(index) + highestEquivalentValue(index)) / 2;
+	}
+}
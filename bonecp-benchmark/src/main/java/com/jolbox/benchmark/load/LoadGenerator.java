@@ -0,0 +1,260 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+/**
+ * 
+ */
+package com.jolbox.benchmark.load;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Random;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.sql.DataSource;
+
+import com.jolbox.bonecp.CustomThreadFactory;
+
+/**
+ * Open-loop load generator. Requests arrive on a fixed schedule (constant or Poisson inter-arrival times) that 
+ * does not depend on how quickly earlier requests complete, and each request borrows a connection, executes a 
+ * statement and gives the connection back.
+ * 
+ * <p>To avoid coordinated omission, the total latency of a request is measured from the time it was <i>scheduled</i> 
+ * to arrive, not from the time a worker got round to starting it. If the pool stalls, requests pile up in the 
+ * dispatch queue and the time they spend there shows up in the results, exactly as it would for a user of the 
+ * system. The uncorrected figure (measured from the actual start) is recorded alongside for comparison.
+ * 
+ * @author wallacew
+ *
+ */
+public class LoadGenerator {
+	/** Delay before the first arrival, so that the schedule doesn't start behind. */
+	private static final long START_DELAY_IN_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+	/** Datasource under test. */
+	private final DataSource dataSource;
+	/** Statement to run for each request. */
+	private String sql = "SELECT 1";
+	/** Arrivals per second. */
+	private double ratePerSecond = 1000;
+	/** If true, inter-arrival times are exponentially distributed; otherwise they are constant. */
+	private boolean poisson = true;
+	/** Worker threads executing requests. Should be well above the pool size so that the pool is the bottleneck. */
+	private int workers = 256;
+	/** Time during which requests are sent but not recorded. */
+	private long warmupInMs = 5000;
+	/** Time during which requests are sent and recorded. */
+	private long durationInMs = 30000;
+	/** Seed for the arrival schedule, so that runs can be repeated. */
+	private long seed = 42;
+
+	/** Creates a new generator.
+	 * @param dataSource datasource to load.
+	 */
+	public LoadGenerator(DataSource dataSource){
+		this.dataSource = dataSource;
+	}
+
+	/** Runs the load and waits for all requests to complete.
+	 * @return results
+	 * @throws InterruptedException if interrupted while waiting.
+	 */
+	public LoadResult run() throws InterruptedException {
+		final LoadResult result = new LoadResult(this);
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(this.workers, this.workers, 60, TimeUnit.SECONDS, 
+				new LinkedBlockingQueue<Runnable>(), new CustomThreadFactory("BoneCP-load-worker", true));
+		executor.prestartAllCoreThreads();
+		Random random = new Random(this.seed);
+		double meanIntervalInNanos = TimeUnit.SECONDS.toNanos(1) / this.ratePerSecond;
+
+		long start = System.nanoTime() + START_DELAY_IN_NANOS;
+		long measureFrom = start + TimeUnit.MILLISECONDS.toNanos(this.warmupInMs);
+		long end = measureFrom + TimeUnit.MILLISECONDS.toNanos(this.durationInMs);
+		double intended = start;
+		long now;
+		while (intended < end){
+			long arrival = (long) intended;
+			while ((now = System.nanoTime()) < arrival){
+				LockSupport.parkNanos(arrival - now);
+			}
+			result.recordDispatchLag(now - arrival);
+			executor.execute(new Request(arrival, arrival >= measureFrom, result));
+			intended += this.poisson ? -Math.log(1.0 - random.nextDouble()) * meanIntervalInNanos : meanIntervalInNanos;
+		}
+		executor.shutdown();
+		while (!executor.awaitTermination(1, TimeUnit.SECONDS)){
+			// keep waiting: abandoning queued requests would hide exactly the latencies we're after
+		}
+		result.setElapsedInNanos(System.nanoTime() - measureFrom);
+		return result;
+	}
+
+	/** A single request. */
+	private class Request implements Runnable {
+		/** Time the request was scheduled to arrive. */
+		private final long intendedStart;
+		/** If false, this request is part of the warm-up and is not recorded. */
+		private final boolean recorded;
+		/** Where to record. */
+		private final LoadResult result;
+
+		/** Creates a new request.
+		 * @param intendedStart time the request was scheduled to arrive.
+		 * @param recorded if false, this request is part of the warm-up.
+		 * @param result where to record.
+		 */
+		public Request(long intendedStart, boolean recorded, LoadResult result){
+			this.intendedStart = intendedStart;
+			this.recorded = recorded;
+			this.result = result;
+		}
+
+		// @Override
+		public void run() {
+			long start = System.nanoTime();
+			Connection connection = null;
+			try{
+				connection = LoadGenerator.this.dataSource.getConnection();
+				long acquired = System.nanoTime();
+				PreparedStatement statement = connection.prepareStatement(LoadGenerator.this.sql);
+				statement.execute();
+				statement.close();
+				long executed = System.nanoTime();
+				connection.close();
+				connection = null;
+				long done = System.nanoTime();
+				if (this.recorded){
+					this.result.record(this.intendedStart, start, acquired, executed, done);
+				}
+			} catch (SQLException e){
+				if (this.recorded){
+					this.result.recordError(e);
+				}
+			} finally {
+				if (connection != null){
+					try {
+						connection.close();
+					} catch (SQLException e) {
+						// nothing more we can do
+					}
+				}
+			}
+		}
+	}
+
+	/** Returns the statement run for each request.
+	 * @return the sql
+	 */
+	public String getSql() {
+		return this.sql;
+	}
+
+	/** Sets the statement run for each request.
+	 * @param sql the sql to set
+	 */
+	public void setSql(String sql) {
+		this.sql = sql;
+	}
+
+	/** Returns the arrival rate.
+	 * @return arrivals per second
+	 */
+	public double getRatePerSecond() {
+		return this.ratePerSecond;
+	}
+
+	/** Sets the arrival rate.
+	 * @param ratePerSecond arrivals per second
+	 */
+	public void setRatePerSecond(double ratePerSecond) {
+		this.ratePerSecond = ratePerSecond;
+	}
+
+	/** Returns true if arrivals follow a Poisson process, false if they are evenly spaced.
+	 * @return the poisson setting
+	 */
+	public boolean isPoisson() {
+		return this.poisson;
+	}
+
+	/** If true, arrivals follow a Poisson process; if false, they are evenly spaced.
+	 * @param poisson the poisson setting
+	 */
+	public void setPoisson(boolean poisson) {
+		this.poisson = poisson;
+	}
+
+	/** Returns the number of worker threads.
+	 * @return workers
+	 */
+	public int getWorkers() {
+		return this.workers;
+	}
+
+	/** Sets the number of worker threads.
+	 * @param workers the workers to set
+	 */
+	public void setWorkers(int workers) {
+		this.workers = workers;
+	}
+
+	/** Returns the warm-up time.
+	 * @return warm-up in ms
+	 */
+	public long getWarmupInMs() {
+		return this.warmupInMs;
+	}
+
+	/** Sets the warm-up time during which requests are sent but not recorded.
+	 * @param warmupInMs warm-up in ms
+	 */
+	public void setWarmupInMs(long warmupInMs) {
+		this.warmupInMs = warmupInMs;
+	}
+
+	/** Returns the measured run time.
+	 * @return duration in ms
+	 */
+	public long getDurationInMs() {
+		return this.durationInMs;
+	}
+
+	/** Sets the measured run time.
+	 * @param durationInMs duration in ms
+	 */
+	public void setDurationInMs(long durationInMs) {
+		this.durationInMs = durationInMs;
+	}
+
+	/** Returns the seed for the arrival schedule.
+	 * @return the seed
+	 */
+	public long getSeed() {
+		return this.seed;
+	}
+
+	/** Sets the seed for the arrival schedule.
+	 * @param seed the seed to set
+	 */
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+}
@@ -0,0 +1,137 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+/**
+ * 
+ */
+package com.jolbox.benchmark.load;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.sql.SQLException;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.CommandLineParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.apache.commons.cli.PosixParser;
+
+import com.jolbox.bonecp.BoneCPConfig;
+import com.jolbox.bonecp.BoneCPDataSource;
+import com.jolbox.bonecp.MockJDBCDriver;
+
+/**
+ * Command line entry point for the open-loop load harness: runs a {@link LoadGenerator} against a BoneCP pool 
+ * backed by a {@link SimulatedDatabase}, then writes the results as JSON and as HDR-style percentile tables.
+ * 
+ * @author wallacew
+ *
+ */
+public class LoadHarness {
+
+	/** Runs the harness.
+	 * @param args see -h
+	 * @throws ParseException on invalid arguments
+	 * @throws SQLException on pool startup failure
+	 * @throws InterruptedException if interrupted
+	 * @throws IOException on failure writing the results
+	 */
+	public static void main(String[] args) throws ParseException, SQLException, InterruptedException, IOException {
+		Options options = new Options();
+		options.addOption("r", "rate", true, "Arrivals per second (default 1000)");
+		options.addOption("a", "arrivals", true, "poisson or constant (default poisson)");
+		options.addOption("d", "duration", true, "Measured run time in seconds (default 30)");
+		options.addOption("w", "warmup", true, "Warm-up time in seconds (default 5)");
+		options.addOption("t", "workers", true, "Worker threads (default 256)");
+		options.addOption("p", "partitions", true, "Pool partitions (default 4)");
+		options.addOption("m", "min", true, "Min connections per partition (default 5)");
+		options.addOption("x", "max", true, "Max connections per partition (default 5)");
+		options.addOption("s", "strategy", true, "Pool strategy (default DEFAULT)");
+		options.addOption("c", "connect", true, "Connect cost distribution, eg const:20ms (default 0)");
+		options.addOption("l", "latency", true, "Query latency distribution, eg lognormal:2ms:0.5 (default exp:1ms)");
+		options.addOption("n", "concurrency", true, "Server-side concurrency limit, 0 = unlimited (default 0)");
+		options.addOption("o", "output", true, "Write <output>.json and <output>.hgrm instead of printing to stdout");
+		options.addOption("h", "help", false, "Help");
+		CommandLineParser parser = new PosixParser();
+		CommandLine cmd = parser.parse(options, args);
+		if (cmd.hasOption("h")){
+			HelpFormatter formatter = new HelpFormatter();
+			formatter.printHelp("loadharness", options);
+			return;
+		}
+
+		SimulatedDatabase database = new SimulatedDatabase(
+				LatencyDistribution.parse(cmd.getOptionValue("c", "0")),
+				LatencyDistribution.parse(cmd.getOptionValue("l", "exp:1ms")),
+				Integer.parseInt(cmd.getOptionValue("n", "0")));
+		MockJDBCDriver driver = new MockJDBCDriver(database);
+
+		BoneCPConfig config = new BoneCPConfig();
+		config.setJdbcUrl("jdbc:mock:simulated");
+		config.setPartitionCount(Integer.parseInt(cmd.getOptionValue("p", "4")));
+		config.setMinConnectionsPerPartition(Integer.parseInt(cmd.getOptionValue("m", "5")));
+		config.setMaxConnectionsPerPartition(Integer.parseInt(cmd.getOptionValue("x", "5")));
+		config.setPoolStrategy(cmd.getOptionValue("s", "DEFAULT"));
+		config.setDisableJMX(true);
+		BoneCPDataSource dataSource = new BoneCPDataSource(config);
+
+		LoadGenerator generator = new LoadGenerator(dataSource);
+		generator.setRatePerSecond(Double.parseDouble(cmd.getOptionValue("r", "1000")));
+		generator.setPoisson(!"constant".equalsIgnoreCase(cmd.getOptionValue("a", "poisson")));
+		generator.setDurationInMs(Long.parseLong(cmd.getOptionValue("d", "30")) * 1000);
+		generator.setWarmupInMs(Long.parseLong(cmd.getOptionValue("w", "5")) * 1000);
+		generator.setWorkers(Integer.parseInt(cmd.getOptionValue("t", "256")));
+
+		LoadResult result;
+		try{
+			result = generator.run();
+		} finally {
+			dataSource.close();
+			driver.unregister();
+		}
+		result.addSetting("partitions", config.getPartitionCount());
+		result.addSetting("minConnectionsPerPartition", config.getMinConnectionsPerPartition());
+		result.addSetting("maxConnectionsPerPartition", config.getMaxConnectionsPerPartition());
+		result.addSetting("poolStrategy", config.getPoolStrategy());
+		result.addSetting("connectCost", database.getConnectCost());
+		result.addSetting("queryLatency", database.getQueryLatency());
+		result.addSetting("serverConcurrency", database.getMaxConcurrentExecutions());
+		result.addSetting("serverPeakConcurrency", database.getPeakExecuting());
+		result.addSetting("connectionsOpened", database.getConnectionsOpened());
+
+		if (cmd.hasOption("o")){
+			String prefix = cmd.getOptionValue("o");
+			PrintStream json = new PrintStream(new FileOutputStream(prefix + ".json"), false, "UTF-8");
+			try{
+				json.print(result.toJson());
+			} finally {
+				json.close();
+			}
+			PrintStream hgrm = new PrintStream(new FileOutputStream(prefix + ".hgrm"), false, "UTF-8");
+			try{
+				result.outputPercentileDistributions(hgrm);
+			} finally {
+				hgrm.close();
+			}
+		} else {
+			System.out.print(result.toJson());
+			System.out.println();
+			result.outputPercentileDistributions(System.out);
+		}
+	}
+}
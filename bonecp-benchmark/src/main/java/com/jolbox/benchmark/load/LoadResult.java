@@ -0,0 +1,224 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+/**
+ * 
+ */
+package com.jolbox.benchmark.load;
+
+import java.io.PrintStream;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Results of a {@link LoadGenerator} run. All histograms are in nanoseconds; output is scaled to microseconds.
+ * 
+ * @author wallacew
+ *
+ */
+public class LoadResult {
+	/** Output values are divided by this (nanoseconds to microseconds). */
+	private static final double OUTPUT_SCALE = 1000.0;
+	/** Time from the actual start of a request until it had a connection. */
+	private final LatencyHistogram acquire = new LatencyHistogram();
+	/** Time taken to prepare and execute the statement. */
+	private final LatencyHistogram execute = new LatencyHistogram();
+	/** Time from the scheduled arrival of a request until it had given the connection back (corrected). */
+	private final LatencyHistogram total = new LatencyHistogram();
+	/** Time from the actual start of a request until it had given the connection back (uncorrected). */
+	private final LatencyHistogram totalUncorrected = new LatencyHistogram();
+	/** How far behind schedule the dispatcher was when sending each request. */
+	private final LatencyHistogram dispatchLag = new LatencyHistogram();
+	/** Failed requests. */
+	private final AtomicLong errors = new AtomicLong();
+	/** Message of the last failure. */
+	private volatile String lastError;
+	/** Settings of the run, in output order. */
+	private final Map<String, Object> settings = new LinkedHashMap<String, Object>();
+	/** Length of the measured part of the run. */
+	private long elapsedInNanos;
+
+	/** Creates a new result.
+	 * @param generator generator whose settings are recorded.
+	 */
+	protected LoadResult(LoadGenerator generator){
+		this.settings.put("ratePerSecond", generator.getRatePerSecond());
+		this.settings.put("arrivals", generator.isPoisson() ? "poisson" : "constant");
+		this.settings.put("workers", generator.getWorkers());
+		this.settings.put("warmupInMs", generator.getWarmupInMs());
+		this.settings.put("durationInMs", generator.getDurationInMs());
+		this.settings.put("seed", generator.getSeed());
+	}
+
+	/** Records a completed request.
+	 * @param intendedStart time the request was scheduled to arrive.
+	 * @param start time the request actually started.
+	 * @param acquired time a connection was obtained.
+	 * @param executed time the statement completed.
+	 * @param done time the connection was given back.
+	 */
+	protected void record(long intendedStart, long start, long acquired, long executed, long done){
+		this.acquire.record(acquired - start);
+		this.execute.record(executed - acquired);
+		this.total.record(done - intendedStart);
+		this.totalUncorrected.record(done - start);
+	}
+
+	/** Records a failed request.
+	 * @param e failure
+	 */
+	protected void recordError(SQLException e){
+		this.errors.incrementAndGet();
+		this.lastError = e.getMessage();
+	}
+
+	/** Records how late the dispatcher was sending a request.
+	 * @param lagInNanos lag
+	 */
+	protected void recordDispatchLag(long lagInNanos){
+		this.dispatchLag.record(lagInNanos);
+	}
+
+	/** Adds an entry to the settings section of the output (eg pool or database settings).
+	 * @param key name
+	 * @param value value
+	 */
+	public void addSetting(String key, Object value){
+		this.settings.put(key, value);
+	}
+
+	/** Sets the length of the measured part of the run.
+	 * @param elapsedInNanos elapsed time
+	 */
+	protected void setElapsedInNanos(long elapsedInNanos) {
+		this.elapsedInNanos = elapsedInNanos;
+	}
+
+	/** Returns the throughput achieved during the measured part of the run.
+	 * @return completed requests per second
+	 */
+	public double getAchievedRatePerSecond(){
+		return this.elapsedInNanos == 0 ? 0 : this.total.getTotalCount() * (double) TimeUnit.SECONDS.toNanos(1) / this.elapsedInNanos;
+	}
+
+	/** Returns the connection acquire latency histogram.
+	 * @return histogram
+	 */
+	public LatencyHistogram getAcquire() {
+		return this.acquire;
+	}
+
+	/** Returns the statement execution latency histogram.
+	 * @return histogram
+	 */
+	public LatencyHistogram getExecute() {
+		return this.execute;
+	}
+
+	/** Returns the total latency histogram, corrected for coordinated omission.
+	 * @return histogram
+	 */
+	public LatencyHistogram getTotal() {
+		return this.total;
+	}
+
+	/** Returns the total latency histogram measured from the actual start of each request.
+	 * @return histogram
+	 */
+	public LatencyHistogram getTotalUncorrected() {
+		return this.totalUncorrected;
+	}
+
+	/** Returns the number of failed requests.
+	 * @return errors
+	 */
+	public long getErrors() {
+		return this.errors.get();
+	}
+
+	/** Returns the results as a JSON document. Latencies are in microseconds.
+	 * @return JSON text
+	 */
+	public String toJson(){
+		StringBuilder sb = new StringBuilder("{\n  \"settings\": {");
+		boolean first = true;
+		for (Entry<String, Object> entry: this.settings.entrySet()){
+			sb.append(first ? "\n" : ",\n");
+			first = false;
+			sb.append("    \"").append(escape(entry.getKey())).append("\": ");
+			Object value = entry.getValue();
+			if (value instanceof Number || value instanceof Boolean){
+				sb.append(value);
+			} else {
+				sb.append('"').append(escape(String.valueOf(value))).append('"');
+			}
+		}
+		sb.append("\n  },\n");
+		sb.append(String.format(Locale.US, "  \"achievedRatePerSecond\": %.1f,%n", getAchievedRatePerSecond()));
+		sb.append("  \"errors\": ").append(getErrors()).append(",\n");
+		if (this.lastError != null){
+			sb.append("  \"lastError\": \"").append(escape(this.lastError)).append("\",\n");
+		}
+		sb.append("  \"unit\": \"us\",\n");
+		sb.append("  \"acquire\": ").append(this.acquire.toJson(OUTPUT_SCALE)).append(",\n");
+		sb.append("  \"execute\": ").append(this.execute.toJson(OUTPUT_SCALE)).append(",\n");
+		sb.append("  \"total\": ").append(this.total.toJson(OUTPUT_SCALE)).append(",\n");
+		sb.append("  \"totalUncorrected\": ").append(this.totalUncorrected.toJson(OUTPUT_SCALE)).append(",\n");
+		sb.append("  \"dispatchLag\": ").append(this.dispatchLag.toJson(OUTPUT_SCALE)).append("\n}\n");
+		return sb.toString();
+	}
+
+	/** Prints the percentile tables for every histogram (values in microseconds).
+	 * @param out stream to print to.
+	 */
+	public void outputPercentileDistributions(PrintStream out){
+		out.println("# acquire (us)");
+		this.acquire.outputPercentileDistribution(out, OUTPUT_SCALE);
+		out.println();
+		out.println("# execute (us)");
+		this.execute.outputPercentileDistribution(out, OUTPUT_SCALE);
+		out.println();
+		out.println("# total, corrected for coordinated omission (us)");
+		this.total.outputPercentileDistribution(out, OUTPUT_SCALE);
+		out.println();
+		out.println("# total, uncorrected (us)");
+		this.totalUncorrected.outputPercentileDistribution(out, OUTPUT_SCALE);
+	}
+
+	/** Escapes a string for inclusion in JSON.
+	 * @param s string to escape
+	 * @return escaped string
+	 */
+	private static String escape(String s){
+		StringBuilder sb = new StringBuilder(s.length());
+		for (int i=0; i < s.length(); i++){
+			char c = s.charAt(i);
+			if (c == '"' || c == '\\'){
+				sb.append('\\').append(c);
+			} else if (c < 0x20){
+				sb.append(String.format("\\u%04x", (int) c));
+			} else {
+				sb.append(c);
+			}
+		}
+		return sb.toString();
+	}
+}
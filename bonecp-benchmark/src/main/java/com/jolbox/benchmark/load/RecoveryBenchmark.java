@@ -0,0 +1,231 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+/**
+ * 
+ */
+package com.jolbox.benchmark.load;
+
+import java.io.PrintStream;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.jolbox.bonecp.BoneCP;
+import com.jolbox.bonecp.BoneCPConfig;
+import com.jolbox.bonecp.FaultInjector;
+import com.jolbox.bonecp.FaultyJDBCDriver;
+
+/**
+ * Measures how quickly the pool recovers from injected database faults, and how many requests fail while it 
+ * does. Each scenario runs a fixed set of client threads in a loop against a pool on the {@link FaultyJDBCDriver}, 
+ * opens a fault window part-way through, and reports:
+ * <ul>
+ * <li>failed requests;</li>
+ * <li>time to recover: from the end of the fault window to the last failed request (negative if requests were 
+ * already succeeding again before the window closed, blank if nothing failed);</li>
+ * <li>refill time: from the end of the fault window until the pool is back at its minimum size;</li>
+ * <li>throughput before the fault, and from the start of the fault until one second after it ended.</li>
+ * </ul>
+ * The scenarios cover the three recovery paths: markPossiblyBroken (database restart, 08S01 storm, half-open 
+ * TCP), PoolWatchThread refill (restart with slow logins) and MemorizeTransactionProxy replay (restart with 
+ * transaction recovery enabled).
+ * 
+ * @author wallacew
+ *
+ */
+public class RecoveryBenchmark {
+	/** Time before the fault window opens. */
+	private static final long FAULT_START_IN_MS = 2000;
+	/** Time after the fault window closes that the run continues for. */
+	private static final long COOL_DOWN_IN_MS = 3000;
+	/** Client threads. */
+	private static final int CLIENTS = 16;
+	/** Pause between requests on each client thread. */
+	private static final long THINK_TIME_IN_MS = 1;
+
+	/** A single scenario. */
+	private static class Scenario {
+		/** Name as printed. */
+		private final String name;
+		/** Faults applying during the window; "%d" and "%d" are replaced by the window start and length. */
+		private final String script;
+		/** Length of the fault window. */
+		private final long faultDurationInMs;
+		/** If true, transaction recovery is enabled and each request runs as a transaction. */
+		private final boolean transactional;
+
+		/** Creates a new scenario.
+		 * @param name name as printed
+		 * @param script fault script template
+		 * @param faultDurationInMs length of the fault window
+		 * @param transactional if true, use transaction recovery
+		 */
+		Scenario(String name, String script, long faultDurationInMs, boolean transactional){
+			this.name = name;
+			this.script = script;
+			this.faultDurationInMs = faultDurationInMs;
+			this.transactional = transactional;
+		}
+	}
+
+	/** Scenarios run by main. */
+	private static final Scenario[] SCENARIOS = {
+		new Scenario("restart (markPossiblyBroken)", "outage@%d+%d", 2000, false),
+		new Scenario("08S01 storm (markPossiblyBroken)", "error@%d+%d=0.05:08S01", 2000, false),
+		new Scenario("half-open TCP (markPossiblyBroken)", "blackhole@%d+%d", 2000, false),
+		new Scenario("restart, slow login (PoolWatchThread refill)", "outage@%d+%d;connect=100", 1000, false),
+		new Scenario("restart (MemorizeTransactionProxy replay)", "outage@%d+%d", 300, true),
+	};
+
+	/** Runs all scenarios and prints the results.
+	 * @param args unused
+	 * @throws Exception on error
+	 */
+	public static void main(String[] args) throws Exception {
+		PrintStream out = System.out;
+		out.format(Locale.US, "%-46s %8s %8s %12s %12s %12s %12s%n", "Scenario", "OK", "Failed", 
+				"Recover(ms)", "Refill(ms)", "Before(/s)", "During(/s)");
+		for (Scenario scenario: SCENARIOS){
+			run(scenario, out);
+		}
+	}
+
+	/** Runs a single scenario.
+	 * @param scenario scenario to run
+	 * @param out where to print the results
+	 * @throws Exception on error
+	 */
+	private static void run(final Scenario scenario, PrintStream out) throws Exception {
+		final FaultInjector injector = new FaultInjector(String.format(scenario.script, FAULT_START_IN_MS, scenario.faultDurationInMs));
+		SimulatedDatabase database = new SimulatedDatabase(LatencyDistribution.NONE, LatencyDistribution.exponential(TimeUnit.MILLISECONDS.toNanos(1)), 0);
+		FaultyJDBCDriver driver = new FaultyJDBCDriver(injector, database);
+
+		BoneCPConfig config = new BoneCPConfig();
+		config.setJdbcUrl(FaultyJDBCDriver.URL_PREFIX + "recovery");
+		config.setPartitionCount(2);
+		config.setMinConnectionsPerPartition(5);
+		config.setMaxConnectionsPerPartition(5);
+		config.setConnectionTimeoutInMs(500);
+		config.setAcquireRetryDelayInMs(100);
+		config.setAcquireRetryAttempts(5);
+		config.setConnectionTestStatement("SELECT 1");
+		config.setTransactionRecoveryEnabled(scenario.transactional);
+		config.setDisableJMX(true);
+		final BoneCP pool = new BoneCP(config);
+		final int minSize = config.getPartitionCount() * config.getMinConnectionsPerPartition();
+
+		injector.start();
+		final long faultStart = injector.toNanoTime(TimeUnit.MILLISECONDS.toNanos(FAULT_START_IN_MS));
+		final long faultEnd = injector.toNanoTime(TimeUnit.MILLISECONDS.toNanos(FAULT_START_IN_MS + scenario.faultDurationInMs));
+		final long end = faultEnd + TimeUnit.MILLISECONDS.toNanos(COOL_DOWN_IN_MS);
+		final long duringEnd = faultEnd + TimeUnit.SECONDS.toNanos(1);
+		final AtomicLong okBefore = new AtomicLong();
+		final AtomicLong okDuring = new AtomicLong();
+		final AtomicLong ok = new AtomicLong();
+		final AtomicLong failed = new AtomicLong();
+		final AtomicLong lastFailure = new AtomicLong(Long.MIN_VALUE);
+
+		Thread[] clients = new Thread[CLIENTS];
+		for (int i=0; i < CLIENTS; i++){
+			clients[i] = new Thread(new Runnable() {
+				// @Override
+				public void run() {
+					while (System.nanoTime() < end){
+						if (request(pool, scenario.transactional)){
+							long done = System.nanoTime();
+							ok.incrementAndGet();
+							if (done < faultStart){
+								okBefore.incrementAndGet();
+							} else if (done < duringEnd){
+								okDuring.incrementAndGet();
+							}
+						} else {
+							long done = System.nanoTime();
+							failed.incrementAndGet();
+							long last;
+							while (done > (last = lastFailure.get()) && !lastFailure.compareAndSet(last, done)){
+								// retry
+							}
+						}
+						try {
+							Thread.sleep(THINK_TIME_IN_MS);
+						} catch (InterruptedException e) {
+							return;
+						}
+					}
+				}
+			}, "BoneCP-recovery-client-"+i);
+			clients[i].start();
+		}
+
+		// watch for the pool getting back to its minimum size after the fault
+		long refilled = -1;
+		while (System.nanoTime() < end){
+			if (refilled < 0 && System.nanoTime() >= faultEnd && pool.getTotalCreatedConnections() >= minSize){
+				refilled = System.nanoTime();
+			}
+			Thread.sleep(5);
+		}
+		for (Thread client: clients){
+			client.join();
+		}
+		pool.close();
+		driver.unregister();
+
+		String recover = failed.get() == 0 ? "-" : String.valueOf(TimeUnit.NANOSECONDS.toMillis(lastFailure.get() - faultEnd));
+		String refill = refilled < 0 ? "never" : String.valueOf(TimeUnit.NANOSECONDS.toMillis(refilled - faultEnd));
+		out.format(Locale.US, "%-46s %8d %8d %12s %12s %12.0f %12.0f%n", scenario.name, ok.get(), failed.get(), 
+				recover, refill, 
+				okBefore.get() * 1000.0 / FAULT_START_IN_MS, 
+				okDuring.get() * 1000.0 / (scenario.faultDurationInMs + 1000));
+	}
+
+	/** Runs a single request.
+	 * @param pool pool to use
+	 * @param transactional if true, run the statement in a transaction
+	 * @return true on success
+	 */
+	protected static boolean request(BoneCP pool, boolean transactional){
+		Connection connection = null;
+		try{
+			connection = pool.getConnection();
+			if (transactional){
+				connection.setAutoCommit(false);
+			}
+			PreparedStatement statement = connection.prepareStatement("SELECT 1");
+			statement.execute();
+			statement.close();
+			if (transactional){
+				connection.commit();
+			}
+			return true;
+		} catch (SQLException e){
+			return false;
+		} finally {
+			if (connection != null){
+				try {
+					connection.close();
+				} catch (SQLException e) {
+					// the pool deals with it
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,61 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+/**
+ * 
+ */
+package com.jolbox.benchmark.load;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import com.jolbox.bonecp.MockConnection;
+
+/**
+ * A mock connection whose prepared statements run against a {@link SimulatedDatabase}.
+ * 
+ * @author wallacew
+ *
+ */
+public class SimulatedConnection extends MockConnection {
+	/** Database this connection was opened on. */
+	private final SimulatedDatabase database;
+
+	/** Creates a new connection.
+	 * @param database database this connection was opened on.
+	 */
+	public SimulatedConnection(SimulatedDatabase database){
+		this.database = database;
+	}
+
+	/** {@inheritDoc}
+	 * @see com.jolbox.bonecp.MockConnection#prepareStatement(java.lang.String)
+	 */
+	@Override
+	public PreparedStatement prepareStatement(String sql) throws SQLException {
+		this.database.prepare();
+		return new SimulatedPreparedStatement(this.database);
+	}
+
+	/** {@inheritDoc}
+	 * @see com.jolbox.bonecp.MockConnection#prepareStatement(java.lang.String, int, int)
+	 */
+	@Override
+	public PreparedStatement prepareStatement(String sql, int resultSetType, int resultSetConcurrency) throws SQLException {
+		this.database.prepare();
+		return new SimulatedPreparedStatement(this.database);
+	}
+}
@@ -0,0 +1,191 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+/**
+ * 
+ */
+package com.jolbox.benchmark.load;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import com.jolbox.bonecp.MockJDBCAnswer;
+import com.jolbox.bonecp.MockJDBCDriver;
+
+/**
+ * A simulated database server behind the mock driver. Opening a connection costs a configurable delay, every 
+ * statement execution takes a delay drawn from a configurable distribution, and at most a fixed number of 
+ * statements run at once (the rest queue up, as they would on a server with a limited number of workers). 
+ * Preparing a statement can be given a cost too, so that statement cache hits and misses can be told apart.
+ * 
+ * <p>Plug it into {@link MockJDBCDriver#MockJDBCDriver(MockJDBCAnswer)} and point the pool at 
+ * <code>jdbc:mock</code>.
+ * 
+ * @author wallacew
+ *
+ */
+public class SimulatedDatabase implements MockJDBCAnswer {
+	/** Time taken to open a new connection. */
+	private final LatencyDistribution connectCost;
+	/** Time taken by each statement execution. */
+	private final LatencyDistribution queryLatency;
+	/** Time taken to prepare a statement. */
+	private final LatencyDistribution prepareCost;
+	/** Server-side concurrency limit (null = unlimited). */
+	private final Semaphore executionSlots;
+	/** Limit as configured (0 = unlimited). */
+	private final int maxConcurrentExecutions;
+	/** Connections opened so far. */
+	private final AtomicLong connectionsOpened = new AtomicLong();
+	/** Statements executed so far. */
+	private final AtomicLong statementsExecuted = new AtomicLong();
+	/** Statements currently executing. */
+	private final AtomicInteger executing = new AtomicInteger();
+	/** Highest number of statements seen executing at once. */
+	private final AtomicInteger peakExecuting = new AtomicInteger();
+
+	/** Creates a new simulated database.
+	 * @param connectCost time taken to open a new connection.
+	 * @param queryLatency time taken by each statement execution.
+	 * @param maxConcurrentExecutions statements allowed to run at once, 0 = unlimited.
+	 */
+	public SimulatedDatabase(LatencyDistribution connectCost, LatencyDistribution queryLatency, int maxConcurrentExecutions){
+		this(connectCost, queryLatency, LatencyDistribution.NONE, maxConcurrentExecutions);
+	}
+
+	/** Creates a new simulated database.
+	 * @param connectCost time taken to open a new connection.
+	 * @param queryLatency time taken by each statement execution.
+	 * @param prepareCost time taken to prepare a statement.
+	 * @param maxConcurrentExecutions statements allowed to run at once, 0 = unlimited.
+	 */
+	public SimulatedDatabase(LatencyDistribution connectCost, LatencyDistribution queryLatency, LatencyDistribution prepareCost, 
+			int maxConcurrentExecutions){
+		this.connectCost = connectCost;
+		this.queryLatency = queryLatency;
+		this.prepareCost = prepareCost;
+		this.maxConcurrentExecutions = maxConcurrentExecutions;
+		this.executionSlots = maxConcurrentExecutions > 0 ? new Semaphore(maxConcurrentExecutions, true) : null;
+	}
+
+	/** Opens a new simulated connection, paying the connect cost.
+	 * @see com.jolbox.bonecp.MockJDBCAnswer#answer()
+	 */
+	// @Override
+	public Connection answer() throws SQLException {
+		pause(this.connectCost.sample(ThreadLocalRandom.current()));
+		this.connectionsOpened.incrementAndGet();
+		return new SimulatedConnection(this);
+	}
+
+	/** Prepares a statement, paying the prepare cost.
+	 * @throws SQLException if interrupted.
+	 */
+	protected void prepare() throws SQLException {
+		pause(this.prepareCost.sample(ThreadLocalRandom.current()));
+	}
+
+	/** Runs a statement: waits for an execution slot, then for the statement's latency.
+	 * @throws SQLException if interrupted.
+	 */
+	protected void execute() throws SQLException {
+		if (this.executionSlots != null){
+			try {
+				this.executionSlots.acquire();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new SQLException("Interrupted while waiting for a simulated execution slot");
+			}
+		}
+		try{
+			int now = this.executing.incrementAndGet();
+			int peak;
+			while (now > (peak = this.peakExecuting.get()) && !this.peakExecuting.compareAndSet(peak, now)){
+				// retry
+			}
+			pause(this.queryLatency.sample(ThreadLocalRandom.current()));
+			this.statementsExecuted.incrementAndGet();
+		} finally {
+			this.executing.decrementAndGet();
+			if (this.executionSlots != null){
+				this.executionSlots.release();
+			}
+		}
+	}
+
+	/** Blocks for the given time. Parks rather than sleeps so that sub-millisecond delays are honoured.
+	 * @param nanos time to wait.
+	 * @throws SQLException if interrupted.
+	 */
+	protected static void pause(long nanos) throws SQLException {
+		long deadline = System.nanoTime() + nanos;
+		long remaining;
+		while ((remaining = deadline - System.nanoTime()) > 0){
+			LockSupport.parkNanos(remaining);
+			if (Thread.interrupted()){
+				Thread.currentThread().interrupt();
+				throw new SQLException("Interrupted during simulated latency");
+			}
+		}
+	}
+
+	/** Returns the time taken to open a new connection.
+	 * @return connect cost
+	 */
+	public LatencyDistribution getConnectCost() {
+		return this.connectCost;
+	}
+
+	/** Returns the time taken by each statement execution.
+	 * @return query latency
+	 */
+	public LatencyDistribution getQueryLatency() {
+		return this.queryLatency;
+	}
+
+	/** Returns the server-side concurrency limit.
+	 * @return statements allowed to run at once, 0 = unlimited
+	 */
+	public int getMaxConcurrentExecutions() {
+		return this.maxConcurrentExecutions;
+	}
+
+	/** Returns the number of connections opened so far.
+	 * @return connections opened
+	 */
+	public long getConnectionsOpened() {
+		return this.connectionsOpened.get();
+	}
+
+	/** Returns the number of statements executed so far.
+	 * @return statements executed
+	 */
+	public long getStatementsExecuted() {
+		return this.statementsExecuted.get();
+	}
+
+	/** Returns the highest number of statements seen executing at once.
+	 * @return peak concurrency
+	 */
+	public int getPeakExecuting() {
+		return this.peakExecuting.get();
+	}
+}
@@ -0,0 +1,70 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+/**
+ * 
+ */
+package com.jolbox.benchmark.load;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import com.jolbox.bonecp.MockPreparedStatement;
+
+/**
+ * A mock prepared statement whose executions take as long as the {@link SimulatedDatabase} says.
+ * 
+ * @author wallacew
+ *
+ */
+public class SimulatedPreparedStatement extends MockPreparedStatement {
+	/** Database this statement runs on. */
+	private final SimulatedDatabase database;
+
+	/** Creates a new statement.
+	 * @param database database this statement runs on.
+	 */
+	public SimulatedPreparedStatement(SimulatedDatabase database){
+		this.database = database;
+	}
+
+	/** {@inheritDoc}
+	 * @see com.jolbox.bonecp.MockPreparedStatement#execute()
+	 */
+	@Override
+	public boolean execute() throws SQLException {
+		this.database.execute();
+		return false;
+	}
+
+	/** {@inheritDoc}
+	 * @see com.jolbox.bonecp.MockPreparedStatement#executeQuery()
+	 */
+	@Override
+	public ResultSet executeQuery() throws SQLException {
+		this.database.execute();
+		return super.executeQuery();
+	}
+
+	/** {@inheritDoc}
+	 * @see com.jolbox.bonecp.MockPreparedStatement#executeUpdate()
+	 */
+	@Override
+	public int executeUpdate() throws SQLException {
+		this.database.execute();
+		return 1;
+	}
+}
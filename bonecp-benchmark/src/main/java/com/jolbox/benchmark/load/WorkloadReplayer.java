@@ -0,0 +1,446 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+/**
+ * 
+ */
+package com.jolbox.benchmark.load;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.CommandLineParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.apache.commons.cli.PosixParser;
+
+import com.jolbox.bonecp.BoneCP;
+import com.jolbox.bonecp.BoneCPConfig;
+import com.jolbox.bonecp.CustomThreadFactory;
+import com.jolbox.bonecp.MockJDBCDriver;
+import com.jolbox.bonecp.WorkloadRecorder;
+import com.jolbox.bonecp.WorkloadRecorder.Event;
+
+/**
+ * Replays a trace captured with <code>workloadCaptureFile</code> against a BoneCP pool backed by a 
+ * {@link SimulatedDatabase}, so that candidate pool settings (partitions, pool size, strategy, statement cache 
+ * size) can be compared on the same traffic.
+ * 
+ * <p>Every lease in the trace is started at its recorded time, regardless of how the pool is keeping up (open 
+ * loop). Inside a lease, prepares and executes are issued at their recorded offsets from the checkout, executes 
+ * take their recorded duration on the simulated database, and the connection is held for its recorded time. A 
+ * prepare only costs anything when the pool under test misses its statement cache; the cost charged is the 
+ * longest prepare recorded for that SQL fingerprint.
+ * 
+ * <p>Reported: time from each lease's scheduled start until it had a connection (corrected for coordinated 
+ * omission), the pure getConnection() time, and the wait recorded in the trace for comparison.
+ * 
+ * @author wallacew
+ *
+ */
+public class WorkloadReplayer {
+	/** Output values are divided by this (nanoseconds to microseconds). */
+	private static final double OUTPUT_SCALE = 1000.0;
+	/** Delay before the first lease, so that the schedule doesn't start behind. */
+	private static final long START_DELAY_IN_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+	/** A single statement call inside a lease. */
+	private static class Operation {
+		/** PREPARE or EXECUTE. */
+		private final int type;
+		/** Start, relative to the time the connection was obtained. */
+		private final long offset;
+		/** Recorded duration. */
+		private final long duration;
+		/** SQL fingerprint. */
+		private final int fingerprint;
+
+		/** Creates a new operation.
+		 * @param type PREPARE or EXECUTE
+		 * @param offset start, relative to the time the connection was obtained
+		 * @param duration recorded duration
+		 * @param fingerprint SQL fingerprint
+		 */
+		Operation(int type, long offset, long duration, int fingerprint){
+			this.type = type;
+			this.offset = offset;
+			this.duration = duration;
+			this.fingerprint = fingerprint;
+		}
+	}
+
+	/** A recorded lease: checkout, statement calls, checkin. */
+	private static class Lease {
+		/** Time the connection was requested, relative to the start of the trace. */
+		private final long requestTime;
+		/** Time spent waiting for the connection when the trace was recorded. */
+		private final long recordedWait;
+		/** Statement calls, in order. */
+		private final List<Operation> operations = new ArrayList<Operation>();
+		/** Time the connection was held (-1 if the checkin is not in the trace). */
+		private long holdTime = -1;
+
+		/** Creates a new lease.
+		 * @param requestTime time the connection was requested
+		 * @param recordedWait time spent waiting for the connection
+		 */
+		Lease(long requestTime, long recordedWait){
+			this.requestTime = requestTime;
+			this.recordedWait = recordedWait;
+		}
+	}
+
+	/** Latency set by the replaying thread just before each call into the simulated database. */
+	private static class RecordedLatency extends LatencyDistribution {
+		/** Latency for the next call on each thread. */
+		private final ThreadLocal<long[]> next = new ThreadLocal<long[]>() {
+			@Override
+			protected long[] initialValue() {
+				return new long[1];
+			}
+		};
+
+		/** Default constructor. */
+		RecordedLatency(){
+			super("recorded");
+		}
+
+		/** Sets the latency of the next call made by this thread.
+		 * @param nanos latency
+		 */
+		void set(long nanos){
+			this.next.get()[0] = nanos;
+		}
+
+		@Override
+		public long sample(Random random) {
+			return this.next.get()[0];
+		}
+	}
+
+	/** Leases to replay, by request time. */
+	private final List<Lease> leases;
+	/** Longest prepare recorded for each fingerprint. */
+	private final Map<Integer, Long> prepareCosts;
+	/** Replay speed: 2.0 = twice as fast as recorded. */
+	private double speed = 1.0;
+	/** Worker threads. Should be well above the pool size so that the pool is the bottleneck. */
+	private int workers = 512;
+
+	/** Time from scheduled start to connection obtained. */
+	private final LatencyHistogram waitTime = new LatencyHistogram();
+	/** Time spent in getConnection(). */
+	private final LatencyHistogram acquireTime = new LatencyHistogram();
+	/** Wait recorded in the trace. */
+	private final LatencyHistogram recordedWaitTime = new LatencyHistogram();
+	/** Leases that failed. */
+	private final AtomicLong errors = new AtomicLong();
+
+	/** Creates a new replayer.
+	 * @param events trace, oldest first (see {@link WorkloadRecorder#read(File)}).
+	 */
+	public WorkloadReplayer(List<Event> events){
+		Map<Integer, Lease> byId = new LinkedHashMap<Integer, Lease>();
+		Map<Integer, Long> obtained = new HashMap<Integer, Long>();
+		this.prepareCosts = new HashMap<Integer, Long>();
+		for (Event event: events){
+			Lease lease = byId.get(event.getLeaseId());
+			switch (event.getType()){
+			case WorkloadRecorder.CHECKOUT:
+				byId.put(event.getLeaseId(), new Lease(event.getTime(), event.getDuration()));
+				obtained.put(event.getLeaseId(), event.getTime() + event.getDuration());
+				break;
+			case WorkloadRecorder.PREPARE:
+			case WorkloadRecorder.EXECUTE:
+				if (event.getType() == WorkloadRecorder.PREPARE){
+					Long cost = this.prepareCosts.get(event.getFingerprint());
+					if (cost == null || cost < event.getDuration()){
+						this.prepareCosts.put(event.getFingerprint(), event.getDuration());
+					}
+				}
+				if (lease != null){ // else the checkout was overwritten in the ring
+					lease.operations.add(new Operation(event.getType(), event.getTime() - obtained.get(event.getLeaseId()), 
+							event.getDuration(), event.getFingerprint()));
+				}
+				break;
+			case WorkloadRecorder.CHECKIN:
+				if (lease != null){
+					lease.holdTime = event.getDuration();
+				}
+				break;
+			default:
+				break;
+			}
+		}
+		this.leases = new ArrayList<Lease>(byId.values());
+	}
+
+	/** Replays the trace against a pool with the given settings. The JDBC URL is replaced by the simulated 
+	 * database.
+	 * @param config pool settings to try.
+	 * @throws SQLException on pool startup failure
+	 * @throws InterruptedException if interrupted
+	 */
+	public void replay(BoneCPConfig config) throws SQLException, InterruptedException {
+		final RecordedLatency executeLatency = new RecordedLatency();
+		final RecordedLatency prepareLatency = new RecordedLatency();
+		SimulatedDatabase database = new SimulatedDatabase(LatencyDistribution.NONE, executeLatency, prepareLatency, 0);
+		MockJDBCDriver driver = new MockJDBCDriver(database);
+		config.setJdbcUrl("jdbc:mock:replay");
+		final BoneCP pool = new BoneCP(config);
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(this.workers, this.workers, 60, TimeUnit.SECONDS, 
+				new LinkedBlockingQueue<Runnable>(), new CustomThreadFactory("BoneCP-replay-worker", true));
+		executor.prestartAllCoreThreads();
+		try{
+			long base = this.leases.isEmpty() ? 0 : this.leases.get(0).requestTime;
+			long start = System.nanoTime() + START_DELAY_IN_NANOS;
+			for (final Lease lease: this.leases){
+				final long intended = start + scale(lease.requestTime - base);
+				long now;
+				while ((now = System.nanoTime()) < intended){
+					LockSupport.parkNanos(intended - now);
+				}
+				executor.execute(new Runnable() {
+					// @Override
+					public void run() {
+						replay(pool, lease, intended, executeLatency, prepareLatency);
+					}
+				});
+			}
+			executor.shutdown();
+			while (!executor.awaitTermination(1, TimeUnit.SECONDS)){
+				// keep waiting
+			}
+		} finally {
+			executor.shutdownNow();
+			pool.close();
+			driver.unregister();
+		}
+	}
+
+	/** Replays a single lease.
+	 * @param pool pool under test
+	 * @param lease lease to replay
+	 * @param intended scheduled start
+	 * @param executeLatency execute latency to set before each execute
+	 * @param prepareLatency prepare cost to set before each prepare
+	 */
+	protected void replay(BoneCP pool, Lease lease, long intended, RecordedLatency executeLatency, RecordedLatency prepareLatency){
+		long start = System.nanoTime();
+		Connection connection = null;
+		Map<Integer, PreparedStatement> statements = new HashMap<Integer, PreparedStatement>();
+		try{
+			connection = pool.getConnection();
+			long obtained = System.nanoTime();
+			this.waitTime.record(obtained - intended);
+			this.acquireTime.record(obtained - start);
+			this.recordedWaitTime.record(lease.recordedWait);
+			long end = obtained;
+			for (Operation operation: lease.operations){
+				pauseUntil(obtained + scale(operation.offset));
+				PreparedStatement statement = statements.get(operation.fingerprint);
+				if (statement == null || operation.type == WorkloadRecorder.PREPARE){
+					if (statement != null){
+						statement.close();
+					}
+					Long cost = this.prepareCosts.get(operation.fingerprint);
+					prepareLatency.set(cost == null ? 0 : scale(cost));
+					statement = connection.prepareStatement(sql(operation.fingerprint));
+					statements.put(operation.fingerprint, statement);
+				}
+				if (operation.type == WorkloadRecorder.EXECUTE){
+					executeLatency.set(scale(operation.duration));
+					statement.execute();
+				}
+				end = obtained + scale(operation.offset + operation.duration);
+			}
+			pauseUntil(lease.holdTime < 0 ? end : obtained + scale(lease.holdTime));
+		} catch (SQLException e){
+			this.errors.incrementAndGet();
+		} finally {
+			try{
+				for (PreparedStatement statement: statements.values()){
+					statement.close();
+				}
+				if (connection != null){
+					connection.close();
+				}
+			} catch (SQLException e){
+				this.errors.incrementAndGet();
+			}
+		}
+	}
+
+	/** Returns the SQL used for the given fingerprint. Distinct fingerprints give distinct statement cache keys.
+	 * @param fingerprint SQL fingerprint
+	 * @return sql
+	 */
+	private static String sql(int fingerprint){
+		return "/* " + fingerprint + " */ SELECT 1";
+	}
+
+	/** Scales a recorded duration by the replay speed.
+	 * @param nanos recorded duration
+	 * @return duration to replay
+	 */
+	private long scale(long nanos){
+		return (long) (nanos / this.speed);
+	}
+
+	/** Parks until the given time.
+	 * @param deadline System.nanoTime() to wait for
+	 */
+	private static void pauseUntil(long deadline){
+		long now;
+		while ((now = System.nanoTime()) < deadline){
+			LockSupport.parkNanos(deadline - now);
+		}
+	}
+
+	/** Returns the number of leases in the trace.
+	 * @return lease count
+	 */
+	public int getLeaseCount(){
+		return this.leases.size();
+	}
+
+	/** Sets the replay speed.
+	 * @param speed 2.0 = twice as fast as recorded
+	 */
+	public void setSpeed(double speed) {
+		this.speed = speed;
+	}
+
+	/** Sets the number of worker threads.
+	 * @param workers the workers to set
+	 */
+	public void setWorkers(int workers) {
+		this.workers = workers;
+	}
+
+	/** Returns the results as a JSON document. Latencies are in microseconds.
+	 * @param config pool settings that were replayed
+	 * @return JSON text
+	 */
+	public String toJson(BoneCPConfig config){
+		StringBuilder sb = new StringBuilder("{\n");
+		sb.append(String.format(Locale.US, "  \"settings\": {\"partitions\": %d, \"minConnectionsPerPartition\": %d, "
+				+ "\"maxConnectionsPerPartition\": %d, \"poolStrategy\": \"%s\", \"statementsCacheSize\": %d, \"speed\": %.2f},%n", 
+				config.getPartitionCount(), config.getMinConnectionsPerPartition(), config.getMaxConnectionsPerPartition(), 
+				config.getPoolStrategy(), config.getStatementsCacheSize(), this.speed));
+		sb.append("  \"leases\": ").append(this.leases.size()).append(",\n");
+		sb.append("  \"errors\": ").append(this.errors.get()).append(",\n");
+		sb.append("  \"unit\": \"us\",\n");
+		sb.append("  \"wait\": ").append(this.waitTime.toJson(OUTPUT_SCALE)).append(",\n");
+		sb.append("  \"acquire\": ").append(this.acquireTime.toJson(OUTPUT_SCALE)).append(",\n");
+		sb.append("  \"recordedWait\": ").append(this.recordedWaitTime.toJson(OUTPUT_SCALE)).append("\n}\n");
+		return sb.toString();
+	}
+
+	/** Prints the percentile tables (values in microseconds).
+	 * @param out stream to print to.
+	 */
+	public void outputPercentileDistributions(PrintStream out){
+		out.println("# wait, from scheduled start (us)");
+		this.waitTime.outputPercentileDistribution(out, OUTPUT_SCALE);
+		out.println();
+		out.println("# acquire, getConnection() only (us)");
+		this.acquireTime.outputPercentileDistribution(out, OUTPUT_SCALE);
+		out.println();
+		out.println("# wait, as recorded (us)");
+		this.recordedWaitTime.outputPercentileDistribution(out, OUTPUT_SCALE);
+	}
+
+	/** Runs the replayer.
+	 * @param args see -h
+	 * @throws ParseException on invalid arguments
+	 * @throws SQLException on pool startup failure
+	 * @throws InterruptedException if interrupted
+	 * @throws IOException on failure reading the trace or writing the results
+	 */
+	public static void main(String[] args) throws ParseException, SQLException, InterruptedException, IOException {
+		Options options = new Options();
+		options.addOption("f", "trace", true, "Trace file written by workloadCaptureFile (required)");
+		options.addOption("p", "partitions", true, "Pool partitions (default 1)");
+		options.addOption("m", "min", true, "Min connections per partition (default 10)");
+		options.addOption("x", "max", true, "Max connections per partition (default 10)");
+		options.addOption("s", "strategy", true, "Pool strategy (default DEFAULT)");
+		options.addOption("c", "cache", true, "Statement cache size (default 0)");
+		options.addOption("S", "speed", true, "Replay speed, 2.0 = twice as fast as recorded (default 1.0)");
+		options.addOption("t", "workers", true, "Worker threads (default 512)");
+		options.addOption("o", "output", true, "Write <output>.json and <output>.hgrm instead of printing to stdout");
+		options.addOption("h", "help", false, "Help");
+		CommandLineParser parser = new PosixParser();
+		CommandLine cmd = parser.parse(options, args);
+		if (cmd.hasOption("h") || !cmd.hasOption("f")){
+			HelpFormatter formatter = new HelpFormatter();
+			formatter.printHelp("workloadreplayer", options);
+			return;
+		}
+
+		WorkloadReplayer replayer = new WorkloadReplayer(WorkloadRecorder.read(new File(cmd.getOptionValue("f"))));
+		replayer.setSpeed(Double.parseDouble(cmd.getOptionValue("S", "1.0")));
+		replayer.setWorkers(Integer.parseInt(cmd.getOptionValue("t", "512")));
+
+		BoneCPConfig config = new BoneCPConfig();
+		config.setPartitionCount(Integer.parseInt(cmd.getOptionValue("p", "1")));
+		config.setMinConnectionsPerPartition(Integer.parseInt(cmd.getOptionValue("m", "10")));
+		config.setMaxConnectionsPerPartition(Integer.parseInt(cmd.getOptionValue("x", "10")));
+		config.setPoolStrategy(cmd.getOptionValue("s", "DEFAULT"));
+		config.setStatementsCacheSize(Integer.parseInt(cmd.getOptionValue("c", "0")));
+		config.setDisableJMX(true);
+		replayer.replay(config);
+
+		if (cmd.hasOption("o")){
+			String prefix = cmd.getOptionValue("o");
+			PrintStream json = new PrintStream(new FileOutputStream(prefix + ".json"), false, "UTF-8");
+			try{
+				json.print(replayer.toJson(config));
+			} finally {
+				json.close();
+			}
+			PrintStream hgrm = new PrintStream(new FileOutputStream(prefix + ".hgrm"), false, "UTF-8");
+			try{
+				replayer.outputPercentileDistributions(hgrm);
+			} finally {
+				hgrm.close();
+			}
+		} else {
+			System.out.print(replayer.toJson(config));
+			System.out.println();
+			replayer.outputPercentileDistributions(System.out);
+		}
+	}
+}
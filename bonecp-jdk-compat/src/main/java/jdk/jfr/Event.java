@@ -0,0 +1,60 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+/**
+ * 
+ */
+package jdk.jfr;
+
+/** Compile-time stand-in for the JDK flight recorder event base class (not required at runtime).
+ * @author wwadge
+ *
+ */
+public abstract class Event {
+
+	/** Default constructor. */
+	protected Event(){
+		// stub
+	}
+
+	/** Starts the timing of this event. */
+	public final void begin(){
+		// stub
+	}
+
+	/** Ends the timing of this event. */
+	public final void end(){
+		// stub
+	}
+
+	/** Writes this event to the recordings it is enabled in. */
+	public final void commit(){
+		// stub
+	}
+
+	/** Returns true if this event type is enabled in any recording.
+	 * @return enabled status
+	 */
+	public final boolean isEnabled(){
+		return false;
+	}
+
+	/** Returns true if this event is enabled and passes its threshold.
+	 * @return true to commit
+	 */
+	public final boolean shouldCommit(){
+		return false;
+	}
+}
@@ -0,0 +1,88 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+/**
+ * 
+ */
+package jdk.jfr;
+
+import java.util.Collections;
+import java.util.List;
+
+/** Compile-time stand-in for the JDK flight recorder class (not required at runtime).
+ * @author wwadge
+ *
+ */
+public final class FlightRecorder {
+
+	/** Returns the flight recorder, initializing it if needed.
+	 * @return flight recorder
+	 */
+	public static FlightRecorder getFlightRecorder(){
+		return new FlightRecorder();
+	}
+
+	/** Returns the recordings known to the flight recorder.
+	 * @return recordings
+	 */
+	public List<Recording> getRecordings(){
+		return Collections.emptyList();
+	}
+
+	/** Registers a hook that emits a periodic event.
+	 * @param eventClass event class
+	 * @param hook hook to run whenever the event is due
+	 */
+	public static void addPeriodicEvent(Class<? extends Event> eventClass, Runnable hook){
+		// stub
+	}
+
+	/** Removes a periodic event hook.
+	 * @param hook hook
+	 * @return true if removed
+	 */
+	public static boolean removePeriodicEvent(Runnable hook){
+		return false;
+	}
+
+	/** Adds a listener for recording state changes.
+	 * @param listener listener
+	 */
+	public static void addListener(FlightRecorderListener listener){
+		// stub
+	}
+
+	/** Removes a listener.
+	 * @param listener listener
+	 * @return true if removed
+	 */
+	public static boolean removeListener(FlightRecorderListener listener){
+		return false;
+	}
+
+	/** Returns true if the flight recorder is available in this JVM.
+	 * @return availability
+	 */
+	public static boolean isAvailable(){
+		return false;
+	}
+
+	/** Returns true if the flight recorder has been initialized.
+	 * @return initialization status
+	 */
+	public static boolean isInitialized(){
+		return false;
+	}
+}
@@ -0,0 +1,37 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+/**
+ * 
+ */
+package jdk.jfr;
+
+/** Compile-time stand-in for the JDK flight recorder interface (not required at runtime). Implementations must 
+ * implement both methods (the JDK provides defaults). 
+ * @author wwadge
+ *
+ */
+public interface FlightRecorderListener {
+
+	/** Called when the flight recorder has been initialized.
+	 * @param recorder flight recorder
+	 */
+	void recorderInitialized(FlightRecorder recorder);
+
+	/** Called whenever a recording changes state.
+	 * @param recording recording
+	 */
+	void recordingStateChanged(Recording recording);
+}
@@ -0,0 +1,38 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+/**
+ * 
+ */
+package jdk.jfr;
+
+/** Compile-time stand-in for the JDK flight recorder class (not required at runtime).
+ * @author wwadge
+ *
+ */
+public enum RecordingState {
+	/** Created. */
+	NEW,
+	/** Scheduled to start. */
+	DELAYED,
+	/** Starting. */
+	STARTING,
+	/** Recording. */
+	RUNNING,
+	/** Stopped. */
+	STOPPED,
+	/** Closed. */
+	CLOSED
+}
@@ -0,0 +1,46 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+/**
+ * 
+ */
+package jdk.jfr;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/** Compile-time stand-in for the JDK flight recorder annotation (not required at runtime).
+ * @author wwadge
+ *
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.FIELD, ElementType.METHOD})
+public @interface Timespan {
+	/** Ticks. */
+	String TICKS = "TICKS";
+	/** Nanoseconds. */
+	String NANOSECONDS = "NANOSECONDS";
+	/** Microseconds. */
+	String MICROSECONDS = "MICROSECONDS";
+	/** Milliseconds. */
+	String MILLISECONDS = "MILLISECONDS";
+	/** Seconds. */
+	String SECONDS = "SECONDS";
+
+	/** Unit of the annotated value. */
+	String value() default NANOSECONDS;
+}
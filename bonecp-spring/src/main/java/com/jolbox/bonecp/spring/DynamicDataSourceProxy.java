@@ -16,7 +16,10 @@
 
 package com.jolbox.bonecp.spring;
 
+import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
 
 import javax.sql.DataSource;
 
@@ -27,12 +30,23 @@ import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
 
 import com.jolbox.bonecp.BoneCPConfig;
 import com.jolbox.bonecp.BoneCPDataSource;
+import com.jolbox.bonecp.CustomThreadFactory;
 
 /** Like a normal datasource except it supports an extra method: switchDataSource to slowly migrate to a new datasource.
  * 
- * Simply call switchDataSource with your new BoneCP configuration: the existing pool will be shutdown gracefully (checkout out
- * connections are unaffected) and a new one will take it's place. A typical use case would be to transparently instruct your application
- * to use a new database without restarting the application.
+ * Simply call switchDataSource with your new BoneCP configuration. The switch is staged so that it doesn't show up as
+ * a latency spike or as broken connections in the application:
+ * <ol>
+ * <li>The new pool is filled up to its minimum size and every connection prepares the configured warmUpStatements 
+ * (so that they end up in the statement caches).</li>
+ * <li>Traffic is shifted to the new pool gradually over rampUpTimeInMs: each getConnection() call is routed to the new 
+ * pool with a probability that grows linearly from 0 to 1.</li>
+ * <li>The old pool is drained: we wait (up to drainTimeoutInMs) for its leased connections to be given back before 
+ * shutting it down. Connections still out at that point are closed off as they are released.</li>
+ * </ol>
+ * switchDataSource returns once the new pool is warmed up and traffic has started moving over to it; the rest of the switch
+ * runs on a background thread. Call awaitSwitch to wait for the old pool to be shut down. A typical use case would be to 
+ * transparently instruct your application to use a new database without restarting the application.
  *   
  * @author Wallace
  *
@@ -40,6 +54,22 @@ import com.jolbox.bonecp.BoneCPDataSource;
 public class DynamicDataSourceProxy extends DelegatingDataSource{
 	/** Logging. */
 	private static final Log logger = LogFactory.getLog(LazyConnectionDataSourceProxy.class);
+	/** How often to check whether the old datasource has been drained. */
+	protected static final long DRAIN_POLL_INTERVAL_IN_MS = 50;
+	/** Statements to prepare on every connection of a new datasource before switching to it. */
+	private List<String> warmUpStatements = new ArrayList<String>();
+	/** Time over which traffic is shifted from the old to the new datasource. 0 = switch at once. */
+	private long rampUpTimeInMs;
+	/** Max time to wait for the old datasource's connections to be given back before shutting it down. */
+	private long drainTimeoutInMs = 30000;
+	/** Datasource being switched away from while a ramp-up is in progress, null otherwise. */
+	protected volatile DataSource previousDataSource;
+	/** Start of the current ramp-up. Written before previousDataSource is published. */
+	protected long rampUpStartInMs;
+	/** End of the current ramp-up. Written before previousDataSource is published. */
+	protected long rampUpEndInMs;
+	/** Background thread finishing off the last switch, null if none was started. */
+	protected volatile Thread switchThread;
 	
 	/**
 	 * Create a new DynamicDataSourceProxy.
@@ -56,13 +86,42 @@ public class DynamicDataSourceProxy extends DelegatingDataSource{
 	public DynamicDataSourceProxy(){
 		// default constructor
 	}
+
+	@Override
+	public Connection getConnection() throws SQLException {
+		return selectDataSource().getConnection();
+	}
+
+	@Override
+	public Connection getConnection(String username, String password) throws SQLException {
+		return selectDataSource().getConnection(username, password);
+	}
+
+	/** Picks the datasource to serve a connection request. While a switch is ramping up, requests are split between
+	 * the old and the new datasource, with the share of the new one growing linearly over the ramp-up time.
+	 * @return datasource to use
+	 */
+	protected DataSource selectDataSource(){
+		DataSource previous = this.previousDataSource;
+		if (previous != null){
+			long elapsed = System.currentTimeMillis() - this.rampUpStartInMs;
+			long duration = this.rampUpEndInMs - this.rampUpStartInMs;
+			if (elapsed < duration && Math.random() * duration >= elapsed){
+				return previous;
+			}
+		}
+		return getTargetDataSource();
+	}
 	
-	/** Switch to a new DataSource using the given configuration.
+	/** Switch to a new DataSource using the given configuration. Returns once the new datasource is warmed up and 
+	 * in use; ramping up and draining the old datasource carry on in the background (see awaitSwitch). A switch still 
+	 * in progress is cut short first.
 	 * @param newConfig BoneCP DataSource to use.
-	 * @throws SQLException
+	 * @throws SQLException if the new datasource could not be started (in which case we stay on the old one).
 	 */
-	public void switchDataSource(BoneCPConfig newConfig) throws SQLException {
+	public synchronized void switchDataSource(BoneCPConfig newConfig) throws SQLException {
 		logger.info("Switch to new datasource requested. New Config: "+newConfig);
+		finishSwitch();
 		DataSource oldDS = getTargetDataSource();
  
 		if (!(oldDS instanceof BoneCPDataSource)){
@@ -70,13 +129,174 @@ public class DynamicDataSourceProxy extends DelegatingDataSource{
 		}
 		
 		BoneCPDataSource newDS = new BoneCPDataSource(newConfig);
-		newDS.getConnection().close(); // initialize a connection (+ throw it away) to force the datasource to initialize the pool
-		
-		// force application to start using the new one 
-		setTargetDataSource(newDS);
+		try{
+			warmUp(newDS);
+		} catch (SQLException e){
+			logger.error("Unable to start new datasource. Not switching datasource!", e);
+			newDS.close();
+			throw e;
+		}
 		
+		rampUp(oldDS, newDS);
+
+		final BoneCPDataSource retiring = (BoneCPDataSource) oldDS;
+		this.switchThread = new CustomThreadFactory("BoneCP-datasource-switch", true).newThread(new Runnable() {
+			// @Override
+			public void run() {
+				retire(retiring);
+			}
+		});
+		this.switchThread.start();
+	}
+
+	/** Waits for the last switch to complete, ie for the old datasource to be shut down.
+	 * @param timeoutInMs max time to wait. 0 = wait forever.
+	 * @return true if no switch is in progress anymore.
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public boolean awaitSwitch(long timeoutInMs) throws InterruptedException {
+		Thread thread = this.switchThread;
+		if (thread != null){
+			thread.join(timeoutInMs);
+			return !thread.isAlive();
+		}
+		return true;
+	}
+
+	/** Cuts short a switch still in progress: traffic moves over to the current datasource at once and the 
+	 * previous one is shut down without waiting for its connections to be given back.
+	 */
+	protected void finishSwitch(){
+		Thread thread = this.switchThread;
+		if (thread != null && thread.isAlive()){
+			thread.interrupt();
+			try {
+				thread.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/** Finishes off a switch: waits for the ramp-up to end, then drains and shuts down the old datasource.
+	 * @param oldDS datasource being switched away from
+	 */
+	protected void retire(BoneCPDataSource oldDS){
+		long remaining = this.rampUpEndInMs - System.currentTimeMillis();
+		if (this.previousDataSource != null && remaining > 0){
+			try {
+				Thread.sleep(remaining);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt(); // finish the switch right away
+			}
+		}
+		this.previousDataSource = null;
+
 		logger.info("Shutting down old datasource slowly. Old Config: "+oldDS);
-		// tell the old datasource to terminate. This terminates the pool lazily so existing checked out connections can still be used.
-		((BoneCPDataSource)oldDS).close();
+		drain(oldDS);
+		// this terminates the pool lazily so connections still checked out can be used until they are closed.
+		oldDS.close();
+	}
+
+	/** Fills up the given datasource to its minimum size and prepares the warm-up statements on every connection.
+	 * @param dataSource datasource to warm up
+	 * @throws SQLException on error
+	 */
+	protected void warmUp(BoneCPDataSource dataSource) throws SQLException {
+		int count = Math.max(1, dataSource.getMinConnectionsPerPartition() * dataSource.getPartitionCount());
+		List<Connection> connections = new ArrayList<Connection>(count);
+		try{
+			// hold on to every connection so that each one gets warmed up.
+			for (int i=0; i < count; i++){
+				Connection connection = dataSource.getConnection();
+				connections.add(connection);
+				for (String sql: this.warmUpStatements){
+					connection.prepareStatement(sql).close(); // closing hands the statement over to the statement cache
+				}
+			}
+		} finally {
+			for (Connection connection: connections){
+				connection.close();
+			}
+		}
+	}
+
+	/** Points the application to the new datasource. If a ramp-up time is set, traffic is shifted over gradually until
+	 * rampUpEndInMs.
+	 * @param oldDS datasource being switched away from
+	 * @param newDS datasource being switched to
+	 */
+	protected void rampUp(DataSource oldDS, DataSource newDS){
+		if (this.rampUpTimeInMs <= 0){
+			setTargetDataSource(newDS);
+			return;
+		}
+		this.rampUpStartInMs = System.currentTimeMillis();
+		this.rampUpEndInMs = this.rampUpStartInMs + this.rampUpTimeInMs;
+		this.previousDataSource = oldDS; // publish
+		setTargetDataSource(newDS);
+	}
+
+	/** Waits (up to drainTimeoutInMs) for all connections leased from the given datasource to be given back.
+	 * @param dataSource datasource being switched away from
+	 */
+	protected void drain(BoneCPDataSource dataSource){
+		long deadline = System.currentTimeMillis() + this.drainTimeoutInMs;
+		while (dataSource.getTotalLeased() > 0 && System.currentTimeMillis() < deadline){
+			try {
+				Thread.sleep(DRAIN_POLL_INTERVAL_IN_MS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+		}
+		int leased = dataSource.getTotalLeased();
+		if (leased > 0){
+			logger.warn("Old datasource still has "+leased+" connection(s) checked out after "+this.drainTimeoutInMs+"ms. Shutting it down anyway.");
+		}
+	}
+
+	/** Returns the statements prepared on every connection of a new datasource before switching to it.
+	 * @return the warmUpStatements
+	 */
+	public List<String> getWarmUpStatements() {
+		return this.warmUpStatements;
+	}
+
+	/** Sets the statements to prepare on every connection of a new datasource before switching to it. Set the 
+	 * statementsCacheSize of the new config so that they are kept around.
+	 * @param warmUpStatements the warmUpStatements to set
+	 */
+	public void setWarmUpStatements(List<String> warmUpStatements) {
+		this.warmUpStatements = warmUpStatements == null ? new ArrayList<String>() : warmUpStatements;
+	}
+
+	/** Returns the time over which traffic is shifted to a new datasource.
+	 * @return the rampUpTimeInMs
+	 */
+	public long getRampUpTimeInMs() {
+		return this.rampUpTimeInMs;
+	}
+
+	/** Sets the time over which traffic is shifted to a new datasource. Default: 0 (switch at once).
+	 * @param rampUpTimeInMs the rampUpTimeInMs to set
+	 */
+	public void setRampUpTimeInMs(long rampUpTimeInMs) {
+		this.rampUpTimeInMs = rampUpTimeInMs;
+	}
+
+	/** Returns the max time to wait for the old datasource to be given back its connections.
+	 * @return the drainTimeoutInMs
+	 */
+	public long getDrainTimeoutInMs() {
+		return this.drainTimeoutInMs;
+	}
+
+	/** Sets the max time to wait for the old datasource to be given back its connections before shutting it down. 
+	 * Default: 30000.
+	 * @param drainTimeoutInMs the drainTimeoutInMs to set
+	 */
+	public void setDrainTimeoutInMs(long drainTimeoutInMs) {
+		this.drainTimeoutInMs = drainTimeoutInMs;
 	}
 }
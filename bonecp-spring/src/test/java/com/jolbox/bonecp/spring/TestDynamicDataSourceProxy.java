@@ -21,10 +21,17 @@ package com.jolbox.bonecp.spring;
 
 import static org.easymock.EasyMock.*;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.sql.SQLException;
+import java.util.Arrays;
+
+import javax.sql.DataSource;
 
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -71,9 +78,10 @@ public class TestDynamicDataSourceProxy {
 	 * Test method for {@link com.jolbox.bonecp.spring.DynamicDataSourceProxy#switchDataSource(com.jolbox.bonecp.BoneCPConfig)}.
 	 * @throws SQLException 
 	 * @throws ClassNotFoundException 
+	 * @throws InterruptedException 
 	 */
 	@Test
-	public void testSwitchDataSource() throws SQLException, ClassNotFoundException {
+	public void testSwitchDataSource() throws SQLException, ClassNotFoundException, InterruptedException {
 
 		BoneCPDataSource mockDataSource = createNiceMock(BoneCPDataSource.class);
 		DynamicDataSourceProxy ddsp = new DynamicDataSourceProxy();
@@ -105,7 +113,143 @@ public class TestDynamicDataSourceProxy {
 		ddsp.switchDataSource(config);
 		// and a new datasource should be in place
 		assertNotSame(mockDataSource, ddsp.getTargetDataSource());
+		assertTrue(ddsp.awaitSwitch(5000));
 		verify(mockDataSource);
 	}
 
+	/** The new pool is filled up and warmed before the switch.
+	 * @throws SQLException
+	 * @throws InterruptedException
+	 */
+	@Test
+	public void testSwitchDataSourceWarmsUp() throws SQLException, InterruptedException {
+		BoneCPDataSource oldDataSource = createNiceMock(BoneCPDataSource.class);
+		DynamicDataSourceProxy ddsp = new DynamicDataSourceProxy(oldDataSource);
+		ddsp.setWarmUpStatements(Arrays.asList("SELECT 1", "SELECT 2"));
+		ddsp.setRampUpTimeInMs(20);
+		replay(oldDataSource);
+
+		ddsp.switchDataSource(config(3));
+		BoneCPDataSource newDataSource = (BoneCPDataSource) ddsp.getTargetDataSource();
+		assertEquals(3, newDataSource.getPool().getTotalFree());
+		assertEquals(0, newDataSource.getTotalLeased());
+		assertTrue(ddsp.awaitSwitch(5000));
+		assertNull(ddsp.previousDataSource);
+		assertEquals(2, ddsp.getWarmUpStatements().size());
+		newDataSource.close();
+	}
+
+	/** The ramp-up and drain don't hold up the caller; a new switch cuts short the one in progress.
+	 * @throws Exception
+	 */
+	@Test
+	public void testSwitchDataSourceInBackground() throws Exception {
+		BoneCPDataSource oldDataSource = createNiceMock(BoneCPDataSource.class);
+		expect(oldDataSource.getTotalLeased()).andReturn(1).anyTimes(); // never drains
+		oldDataSource.close();
+		expectLastCall().once();
+		replay(oldDataSource);
+		DynamicDataSourceProxy ddsp = new DynamicDataSourceProxy(oldDataSource);
+		ddsp.setRampUpTimeInMs(60000);
+
+		long start = System.currentTimeMillis();
+		ddsp.switchDataSource(config(1));
+		assertTrue(System.currentTimeMillis() - start < 30000);
+		assertSame(oldDataSource, ddsp.previousDataSource);
+		assertFalse(ddsp.awaitSwitch(10));
+
+		ddsp.setRampUpTimeInMs(0);
+		ddsp.switchDataSource(config(1));
+		verify(oldDataSource);
+		assertNull(ddsp.previousDataSource);
+		assertTrue(ddsp.awaitSwitch(5000));
+		((BoneCPDataSource) ddsp.getTargetDataSource()).close();
+	}
+
+	/** If the new pool can't be started we stay on the old one.
+	 * @throws SQLException
+	 */
+	@Test
+	public void testSwitchDataSourceFailure() throws SQLException {
+		BoneCPDataSource oldDataSource = createNiceMock(BoneCPDataSource.class);
+		DynamicDataSourceProxy ddsp = new DynamicDataSourceProxy(oldDataSource);
+		replay(oldDataSource); // close() must not be called
+		BoneCPConfig config = config(1);
+		config.setJdbcUrl("invalid"); // rejected by the mock driver
+		try{
+			ddsp.switchDataSource(config);
+			fail("Should throw an exception");
+		} catch (SQLException e){
+			// expected
+		}
+		assertSame(oldDataSource, ddsp.getTargetDataSource());
+		verify(oldDataSource);
+	}
+
+	/** Requests are split between the old and the new datasource while ramping up.
+	 */
+	@Test
+	public void testSelectDataSource() {
+		DataSource oldDataSource = createNiceMock(DataSource.class);
+		DataSource newDataSource = createNiceMock(DataSource.class);
+		DynamicDataSourceProxy ddsp = new DynamicDataSourceProxy(newDataSource);
+		assertSame(newDataSource, ddsp.selectDataSource());
+
+		long now = System.currentTimeMillis();
+		ddsp.rampUpStartInMs = now - 50000;
+		ddsp.rampUpEndInMs = now + 50000;
+		ddsp.previousDataSource = oldDataSource;
+		int toNew = 0;
+		for (int i=0; i < 1000; i++){
+			if (ddsp.selectDataSource() == newDataSource){
+				toNew++;
+			}
+		}
+		assertTrue(toNew > 350 && toNew < 650);
+
+		ddsp.rampUpStartInMs = now - 1000;
+		ddsp.rampUpEndInMs = now - 1;
+		for (int i=0; i < 100; i++){
+			assertSame(newDataSource, ddsp.selectDataSource());
+		}
+	}
+
+	/** The old datasource is given time to get its connections back.
+	 */
+	@Test
+	public void testDrain() {
+		BoneCPDataSource oldDataSource = createNiceMock(BoneCPDataSource.class);
+		expect(oldDataSource.getTotalLeased()).andReturn(1).times(2).andReturn(0).anyTimes();
+		replay(oldDataSource);
+		DynamicDataSourceProxy ddsp = new DynamicDataSourceProxy(oldDataSource);
+		ddsp.drain(oldDataSource);
+		verify(oldDataSource);
+
+		// leases that never come back only hold us up until the deadline
+		reset(oldDataSource);
+		expect(oldDataSource.getTotalLeased()).andReturn(1).anyTimes();
+		replay(oldDataSource);
+		ddsp.setDrainTimeoutInMs(100);
+		long start = System.currentTimeMillis();
+		ddsp.drain(oldDataSource);
+		assertTrue(System.currentTimeMillis() - start >= 100);
+		assertEquals(100, ddsp.getDrainTimeoutInMs());
+	}
+
+	/** Returns a config against the mock driver.
+	 * @param connections min = max connections
+	 * @return config
+	 */
+	private BoneCPConfig config(int connections){
+		BoneCPConfig config = new BoneCPConfig();
+		config.setJdbcUrl("jdbc:mock");
+		config.setUsername("sa");
+		config.setPassword("");
+		config.setMinConnectionsPerPartition(connections);
+		config.setMaxConnectionsPerPartition(connections);
+		config.setPartitionCount(1);
+		config.setStatementsCacheSize(10);
+		config.setDisableJMX(true);
+		return config;
+	}
 }
@@ -0,0 +1,356 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+/**
+ * 
+ */
+package com.jolbox.bonecp;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Scripted faults for the {@link FaultyJDBCDriver}. A script is a list of directives separated by ';', each of 
+ * the form <code>kind[@at+duration][=args]</code> where <code>at</code> and <code>duration</code> are in ms 
+ * relative to {@link #start()}. Directives without a window apply all the time.
+ * <ul>
+ * <li><code>outage@2000+3000</code> - database restart: every existing session dies when the window opens, 
+ * and connection attempts are refused (08001) until it closes.</li>
+ * <li><code>blackhole@2000+3000</code> - half-open TCP: every existing session dies when the window opens, and 
+ * any call or connection attempt made during the window hangs until it closes and then fails (08S01).</li>
+ * <li><code>error=0.05:08S01</code> - each call fails with the given probability and SQLState.</li>
+ * <li><code>hang=0.001:5000</code> - each call hangs for the given time (ms) with the given probability.</li>
+ * <li><code>connect=200</code> - every connection attempt takes the given time (ms).</li>
+ * </ul>
+ * Calls on closed objects and close() itself are never faulted.
+ * 
+ * @author wallacew
+ *
+ */
+public class FaultInjector {
+	/** SQLState used for calls on dead sessions. */
+	public static final String COMMUNICATION_LINK_FAILURE = "08S01";
+	/** SQLState used for refused connection attempts. */
+	public static final String CONNECTION_REFUSED = "08001";
+	/** Kinds of fault. */
+	private enum Kind { OUTAGE, BLACKHOLE, ERROR, HANG, CONNECT }
+
+	/** A single directive. */
+	private static class Fault {
+		/** What to do. */
+		private Kind kind;
+		/** Start of the window, relative to the start time. */
+		private long fromInNanos = Long.MIN_VALUE;
+		/** End of the window, relative to the start time. */
+		private long toInNanos = Long.MAX_VALUE;
+		/** Probability per call (ERROR, HANG). */
+		private double probability;
+		/** SQLState to fail with (ERROR). */
+		private String sqlState;
+		/** Delay in ms (HANG, CONNECT). */
+		private long delayInMs;
+
+		/** Returns true if this fault is active at the given (relative) time.
+		 * @param now time relative to start
+		 * @return true if active
+		 */
+		boolean isActive(long now){
+			return now >= this.fromInNanos && now < this.toInNanos;
+		}
+	}
+
+	/** Directives in script order. */
+	private final List<Fault> faults = new ArrayList<Fault>();
+	/** Script this injector was created from. */
+	private final String script;
+	/** Source of randomness for probabilistic faults. */
+	private final Random random = new Random(42);
+	/** Base for the fault windows. */
+	private volatile long startNanos = System.nanoTime();
+	/** Connection attempts. */
+	private final AtomicLong connectAttempts = new AtomicLong();
+	/** Connection attempts that failed. */
+	private final AtomicLong connectFailures = new AtomicLong();
+	/** Calls that failed. */
+	private final AtomicLong callFailures = new AtomicLong();
+	/** Calls that were made to hang. */
+	private final AtomicLong hangs = new AtomicLong();
+
+	/** Creates a new injector.
+	 * @param script fault script, see class comment. Empty or null = no faults.
+	 */
+	public FaultInjector(String script){
+		this.script = script == null ? "" : script.trim();
+		for (String directive: this.script.split(";")){
+			if (directive.trim().length() > 0){
+				this.faults.add(parse(directive.trim()));
+			}
+		}
+	}
+
+	/** Parses a single directive.
+	 * @param directive directive to parse
+	 * @return fault
+	 */
+	private static Fault parse(String directive){
+		Fault fault = new Fault();
+		try{
+			String head = directive;
+			String args = null;
+			int eq = directive.indexOf('=');
+			if (eq >= 0){
+				head = directive.substring(0, eq).trim();
+				args = directive.substring(eq + 1).trim();
+			}
+			int at = head.indexOf('@');
+			if (at >= 0){
+				String[] window = head.substring(at + 1).split("\\+");
+				fault.fromInNanos = TimeUnit.MILLISECONDS.toNanos(Long.parseLong(window[0].trim()));
+				fault.toInNanos = fault.fromInNanos + TimeUnit.MILLISECONDS.toNanos(Long.parseLong(window[1].trim()));
+				head = head.substring(0, at).trim();
+			}
+			fault.kind = Kind.valueOf(head.toUpperCase());
+			switch (fault.kind){
+			case OUTAGE:
+			case BLACKHOLE:
+				if (at < 0){
+					throw new IllegalArgumentException("A window is required: "+directive);
+				}
+				break;
+			case ERROR:
+				String[] error = args.split(":");
+				fault.probability = Double.parseDouble(error[0].trim());
+				fault.sqlState = error.length > 1 ? error[1].trim() : COMMUNICATION_LINK_FAILURE;
+				break;
+			case HANG:
+				String[] hang = args.split(":");
+				fault.probability = Double.parseDouble(hang[0].trim());
+				fault.delayInMs = Long.parseLong(hang[1].trim());
+				break;
+			case CONNECT:
+				fault.delayInMs = Long.parseLong(args.trim());
+				break;
+			}
+		} catch (RuntimeException e){
+			IllegalArgumentException iae = new IllegalArgumentException("Invalid fault directive: "+directive);
+			iae.initCause(e);
+			throw iae;
+		}
+		return fault;
+	}
+
+	/** Restarts the clock that fault windows are relative to. */
+	public void start(){
+		this.startNanos = System.nanoTime();
+	}
+
+	/** Returns the current time relative to the start.
+	 * @return elapsed nanos
+	 */
+	private long now(){
+		return System.nanoTime() - this.startNanos;
+	}
+
+	/** Returns the absolute System.nanoTime() at which the given offset falls.
+	 * @param offset time relative to start
+	 * @return absolute time
+	 */
+	public long toNanoTime(long offset){
+		return this.startNanos + offset;
+	}
+
+	/** Opens a new connection, applying connection faults.
+	 * @param delegate supplies the underlying connection.
+	 * @return faulty connection
+	 * @throws SQLException on an injected failure.
+	 */
+	public Connection connect(MockJDBCAnswer delegate) throws SQLException {
+		this.connectAttempts.incrementAndGet();
+		try{
+			long now = now();
+			for (Fault fault: this.faults){
+				if (fault.isActive(now)){
+					switch (fault.kind){
+					case OUTAGE:
+						throw new SQLException("Connection refused (injected outage)", CONNECTION_REFUSED);
+					case BLACKHOLE:
+						sleepUntil(fault.toInNanos);
+						throw new SQLException("Connect timed out (injected black hole)", CONNECTION_REFUSED);
+					case CONNECT:
+						sleep(fault.delayInMs);
+						break;
+					default:
+						break;
+					}
+				}
+			}
+			Connection connection = delegate == null ? new MockConnection() : delegate.answer();
+			return (Connection) wrap(connection, Connection.class, now());
+		} catch (SQLException e){
+			this.connectFailures.incrementAndGet();
+			throw e;
+		}
+	}
+
+	/** Applies call faults before a call on a connection, statement or result set.
+	 * @param createdAt time (relative to start) the owning connection was opened.
+	 * @throws SQLException on an injected failure.
+	 */
+	protected void beforeCall(long createdAt) throws SQLException {
+		long now = now();
+		for (Fault fault: this.faults){
+			switch (fault.kind){
+			case OUTAGE:
+			case BLACKHOLE:
+				if (fault.fromInNanos > createdAt && fault.fromInNanos <= now){
+					if (fault.kind == Kind.BLACKHOLE && fault.isActive(now)){
+						this.hangs.incrementAndGet();
+						sleepUntil(fault.toInNanos);
+					}
+					this.callFailures.incrementAndGet();
+					throw new SQLException("Communication link failure (injected "+fault.kind.name().toLowerCase()+")", COMMUNICATION_LINK_FAILURE);
+				}
+				break;
+			case HANG:
+				if (fault.isActive(now) && nextDouble() < fault.probability){
+					this.hangs.incrementAndGet();
+					sleep(fault.delayInMs);
+				}
+				break;
+			case ERROR:
+				if (fault.isActive(now) && nextDouble() < fault.probability){
+					this.callFailures.incrementAndGet();
+					throw new SQLException("Injected failure", fault.sqlState);
+				}
+				break;
+			default:
+				break;
+			}
+		}
+	}
+
+	/** Wraps a JDBC object so that calls on it go through {@link #beforeCall(long)}.
+	 * @param target object to wrap
+	 * @param iface interface to expose
+	 * @param createdAt time (relative to start) the owning connection was opened.
+	 * @return proxy
+	 */
+	private Object wrap(final Object target, final Class<?> iface, final long createdAt){
+		return Proxy.newProxyInstance(FaultInjector.class.getClassLoader(), new Class<?>[]{iface}, new InvocationHandler() {
+			// @Override
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+				String name = method.getName();
+				if (!name.equals("close") && !name.equals("isClosed") && method.getDeclaringClass() != Object.class){
+					beforeCall(createdAt);
+				}
+				Object result;
+				try{
+					result = method.invoke(target, args);
+				} catch (InvocationTargetException e){
+					throw e.getCause();
+				}
+				Class<?> type = method.getReturnType();
+				if (result != null && (type == Statement.class || type == PreparedStatement.class 
+						|| type == CallableStatement.class || type == ResultSet.class)){
+					result = wrap(result, type, createdAt);
+				}
+				return result;
+			}
+		});
+	}
+
+	/** Returns a random number for probabilistic faults.
+	 * @return number between 0 and 1
+	 */
+	private double nextDouble(){
+		synchronized (this.random) {
+			return this.random.nextDouble();
+		}
+	}
+
+	/** Sleeps until the given time (relative to start).
+	 * @param offset time to wake up
+	 * @throws SQLException if interrupted
+	 */
+	private void sleepUntil(long offset) throws SQLException {
+		sleep(TimeUnit.NANOSECONDS.toMillis(offset - now()) + 1);
+	}
+
+	/** Sleeps, turning an interrupt into an SQLException.
+	 * @param ms time to sleep
+	 * @throws SQLException if interrupted
+	 */
+	private static void sleep(long ms) throws SQLException {
+		if (ms <= 0){
+			return;
+		}
+		try {
+			Thread.sleep(ms);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SQLException("Interrupted during injected delay", COMMUNICATION_LINK_FAILURE);
+		}
+	}
+
+	/** Returns the number of connection attempts.
+	 * @return connection attempts
+	 */
+	public long getConnectAttempts() {
+		return this.connectAttempts.get();
+	}
+
+	/** Returns the number of connection attempts that failed.
+	 * @return failed connection attempts
+	 */
+	public long getConnectFailures() {
+		return this.connectFailures.get();
+	}
+
+	/** Returns the number of calls that failed.
+	 * @return failed calls
+	 */
+	public long getCallFailures() {
+		return this.callFailures.get();
+	}
+
+	/** Returns the number of calls that were made to hang.
+	 * @return hung calls
+	 */
+	public long getHangs() {
+		return this.hangs.get();
+	}
+
+	/** {@inheritDoc}
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return this.script;
+	}
+}
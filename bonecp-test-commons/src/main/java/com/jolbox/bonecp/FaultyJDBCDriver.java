@@ -0,0 +1,143 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+/**
+ * 
+ */
+package com.jolbox.bonecp;
+
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.SQLException;
+import java.util.Properties;
+// #ifdef JDK7
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.logging.Logger;
+// #endif JDK7
+
+/** A fake jdbc driver, registered under <code>jdbc:faulty:</code>, whose connections fail as scripted by a 
+ * {@link FaultInjector}.
+ * @author wallacew
+ *
+ */
+public class FaultyJDBCDriver implements Driver {
+	/** URL prefix accepted by this driver. */
+	public static final String URL_PREFIX = "jdbc:faulty:";
+	/** Faults to inject. */
+	private volatile FaultInjector faultInjector;
+	/** Supplies the underlying connections (null = plain MockConnection). */
+	private volatile MockJDBCAnswer delegate;
+
+	/** Creates and registers a new driver.
+	 * @param faultInjector faults to inject.
+	 * @throws SQLException
+	 */
+	public FaultyJDBCDriver(FaultInjector faultInjector) throws SQLException{
+		this(faultInjector, null);
+	}
+
+	/** Creates and registers a new driver.
+	 * @param faultInjector faults to inject.
+	 * @param delegate supplies the underlying connections (null = plain MockConnection).
+	 * @throws SQLException
+	 */
+	public FaultyJDBCDriver(FaultInjector faultInjector, MockJDBCAnswer delegate) throws SQLException{
+		this.faultInjector = faultInjector;
+		this.delegate = delegate;
+		DriverManager.registerDriver(this);
+	}
+
+	/** Stop intercepting requests.
+	 * @throws SQLException
+	 */
+	public void unregister() throws SQLException{
+		DriverManager.deregisterDriver(this);
+	}
+
+	/** {@inheritDoc}
+	 * @see java.sql.Driver#acceptsURL(java.lang.String)
+	 */
+	// @Override
+	public boolean acceptsURL(String url) throws SQLException {
+		return url != null && url.startsWith(URL_PREFIX);
+	}
+
+	/** {@inheritDoc}
+	 * @see java.sql.Driver#connect(java.lang.String, java.util.Properties)
+	 */
+	// @Override
+	public Connection connect(String url, Properties info) throws SQLException {
+		if (!acceptsURL(url)){
+			return null;
+		}
+		return this.faultInjector.connect(this.delegate);
+	}
+
+	/** {@inheritDoc}
+	 * @see java.sql.Driver#getMajorVersion()
+	 */
+	// @Override
+	public int getMajorVersion() {
+		return 1;
+	}
+
+	/** {@inheritDoc}
+	 * @see java.sql.Driver#getMinorVersion()
+	 */
+	// @Override
+	public int getMinorVersion() {
+		return 0;
+	}
+
+	/** {@inheritDoc}
+	 * @see java.sql.Driver#getPropertyInfo(java.lang.String, java.util.Properties)
+	 */
+	// @Override
+	public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) throws SQLException {
+		return new DriverPropertyInfo[0];
+	}
+
+	/** {@inheritDoc}
+	 * @see java.sql.Driver#jdbcCompliant()
+	 */
+	// @Override
+	public boolean jdbcCompliant() {
+		return true;
+	}
+
+	// #ifdef JDK7
+	// @Override
+	public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+		return null;
+	}
+	// #endif JDK7
+
+	/** Returns the faults being injected.
+	 * @return the fault injector
+	 */
+	public FaultInjector getFaultInjector() {
+		return this.faultInjector;
+	}
+
+	/** Replaces the faults being injected.
+	 * @param faultInjector the fault injector to set
+	 */
+	public void setFaultInjector(FaultInjector faultInjector) {
+		this.faultInjector = faultInjector;
+	}
+}
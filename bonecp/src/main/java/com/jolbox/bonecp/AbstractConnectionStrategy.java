@@ -42,7 +42,7 @@ public abstract class AbstractConnectionStrategy implements ConnectionStrategy,S
 	
 	
 	/** Prep for a new connection
-	 * @return if stats are enabled, return the nanoTime when this connection was requested.
+	 * @return if stats, workload capture or a flight recording are enabled, return the nanoTime when this connection was requested.
 	 * @throws SQLException
 	 */
 	protected long preConnection() throws SQLException{
@@ -56,6 +56,8 @@ public abstract class AbstractConnectionStrategy implements ConnectionStrategy,S
 		if (this.pool.statisticsEnabled){
 			statsObtainTime = System.nanoTime();
 			this.pool.statistics.incrementConnectionsRequested();
+		} else if (this.pool.workloadRecorder != null || PoolEvents.recording){
+			statsObtainTime = System.nanoTime();
 		}
 		
 		return statsObtainTime;
@@ -79,8 +81,25 @@ public abstract class AbstractConnectionStrategy implements ConnectionStrategy,S
 			this.pool.watchConnection(handle);
 		}
 
+		if (this.pool.leakDetector != null){
+			this.pool.leakDetector.checkOut(handle);
+		}
+		if (this.pool.leaseTable != null){
+			this.pool.leaseTable.checkOut(handle);
+		}
+		if (this.pool.workloadRecorder != null){
+			this.pool.workloadRecorder.checkOut(handle, statsObtainTime);
+		}
+
 		if (this.pool.statisticsEnabled){
-			this.pool.statistics.addCumulativeConnectionWaitTime(System.nanoTime()-statsObtainTime);
+			handle.statsCheckOutTime = System.nanoTime();
+			this.pool.statistics.addCumulativeConnectionWaitTime(handle.statsCheckOutTime-statsObtainTime);
+		} else if (PoolEvents.recording){
+			handle.statsCheckOutTime = System.nanoTime();
+		}
+
+		if (PoolEvents.recording && statsObtainTime != 0){
+			PoolEvents.INSTANCE.connectionAcquired(handle, statsObtainTime);
 		}
 	}
 
@@ -0,0 +1,321 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+/**
+ * 
+ */
+package com.jolbox.bonecp;
+
+import java.lang.ref.Reference;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.FinalizableReferenceQueue;
+import com.google.common.base.FinalizableWeakReference;
+
+/** A connection strategy for applications that run a small, fixed set of worker threads that do all their 
+ * database work inline (eg event loops). Each worker thread registers itself once via 
+ * {@link BoneCP#registerAffinityThread()} and is given its own pinned partition: a plain, unsynchronized 
+ * array-backed stack that only the owner thread ever touches, so checkout and checkin on that thread don't
+ * need any locks or atomic operations on the partition. 
+ * 
+ * A pinned partition is filled with connections the owner thread hands back (up to 
+ * affinityConnectionsPerThread of them). Requests from foreign threads, or from a worker whose pinned 
+ * partition is empty, are served by the shared partitions (the overflow) via the fallback strategy. Connections 
+ * closed off by a thread other than their last owner simply go back to the shared partitions.
+ * 
+ * Note that idle pinned connections are not visited by the idle/max age tester threads; they are still
+ * checked for expiry whenever they are handed back. A worker thread that dies without unregistering has its 
+ * idle connections handed back to the shared partitions once the thread is collected, or earlier if the shared 
+ * partitions run dry.
+ * 
+ * @author wallacew
+ *
+ */
+public class AffinityConnectionStrategy extends AbstractConnectionStrategy {
+	/** uid */
+	private static final long serialVersionUID = -2407411302611370155L;
+	/** Logger class. */
+	private static final Logger logger = LoggerFactory.getLogger(AffinityConnectionStrategy.class);
+	/** Overflow strategy. */
+	private DefaultConnectionStrategy fallbackStrategy;
+	/** Pinned partition of the calling thread (null for foreign threads). */
+	private ThreadLocal<PinnedPartition> pinned = new ThreadLocal<PinnedPartition>();
+	/** All registered partitions. Only touched on (rare) registration, unregistration and termination. */
+	protected List<PinnedPartition> pinnedPartitions = new CopyOnWriteArrayList<PinnedPartition>();
+	/** Max number of connections kept by a pinned partition. */
+	private int connectionsPerThread;
+	/** Tells us when a registered thread has been collected. */
+	private FinalizableReferenceQueue finalizableRefQueue = new FinalizableReferenceQueue();
+
+	/**
+	 * @param pool pool handle
+	 * @param fallbackStrategy strategy serving the foreign threads and overflow.
+	 */
+	public AffinityConnectionStrategy(BoneCP pool, DefaultConnectionStrategy fallbackStrategy){
+		this.pool = pool;
+		this.fallbackStrategy = fallbackStrategy;
+		this.connectionsPerThread = pool.getConfig() == null ? 1 : pool.getConfig().getAffinityConnectionsPerThread();
+	}
+
+	/** Binds a new pinned partition to the calling thread and pre-fills it with whatever free
+	 * connections can be taken from the shared partitions right away.
+	 * @return true if registered, false if the calling thread was already registered.
+	 */
+	protected boolean register(){
+		if (this.pinned.get() != null){
+			return false;
+		}
+		reapDeadOwners();
+		final PinnedPartition partition = new PinnedPartition(Thread.currentThread().getName(), this.connectionsPerThread);
+		partition.owner = new FinalizableWeakReference<Thread>(Thread.currentThread(), this.finalizableRefQueue) {
+			public void finalizeReferent() {
+				if (reap(partition)){
+					logger.debug("Thread {} died without unregistering, reclaimed its pinned connections.", partition.ownerName);
+				}
+			}
+		};
+		for (int i=0; i < this.connectionsPerThread; i++){
+			ConnectionHandle handle = this.fallbackStrategy.pollConnection();
+			if (handle == null){
+				break; // the rest will be filled up as connections are handed back by this thread
+			}
+			partition.push(handle);
+		}
+		this.pinned.set(partition);
+		this.pinnedPartitions.add(partition);
+		logger.debug("Thread {} bound to a pinned partition with {} connection(s).", partition.ownerName, partition.size);
+		return true;
+	}
+
+	/** Unbinds the calling thread from its pinned partition and places its idle connections back in the 
+	 * shared partitions.
+	 * @return true if the thread had been registered.
+	 */
+	protected boolean unregister(){
+		PinnedPartition partition = this.pinned.get();
+		if (partition == null){
+			return false;
+		}
+		this.pinned.remove();
+		this.pinnedPartitions.remove(partition);
+		ConnectionHandle handle;
+		while ((handle = partition.poll()) != null){
+			returnToPartition(handle);
+		}
+		return true;
+	}
+
+	/** Hands the idle connections of a pinned partition whose owner is dead back to the shared partitions.
+	 * Must not be called while the owner may still be running.
+	 * @param partition partition to reclaim
+	 * @return true if reclaimed, false if it had been unregistered or reclaimed already.
+	 */
+	protected boolean reap(PinnedPartition partition){
+		if (!this.pinnedPartitions.remove(partition)){
+			return false;
+		}
+		ConnectionHandle handle;
+		while ((handle = partition.poll()) != null){
+			if (this.pool.poolShuttingDown){
+				this.pool.destroyConnection(handle);
+			} else {
+				returnToPartition(handle);
+			}
+		}
+		return true;
+	}
+
+	/** Reclaims the pinned partitions of all threads that have died without unregistering.
+	 * @return number of partitions reclaimed.
+	 */
+	protected int reapDeadOwners(){
+		int reaped = 0;
+		for (PinnedPartition partition: this.pinnedPartitions){
+			Thread owner = partition.owner.get();
+			// a false isAlive() also makes everything the owner did visible to us.
+			if ((owner == null || !owner.isAlive()) && reap(partition)){
+				reaped++;
+			}
+		}
+		return reaped;
+	}
+
+	/** Places a connection back in its originating (shared) partition.
+	 * @param handle connection to give back
+	 */
+	private void returnToPartition(ConnectionHandle handle){
+		ConnectionPartition connectionPartition = handle.getOriginatingPartition();
+		if (!connectionPartition.releaseFreeConnection(handle)){
+			this.pool.destroyConnection(handle); // this shouldn't happen
+		}
+	}
+
+	@Override
+	protected Connection getConnectionInternal() throws SQLException {
+		ConnectionHandle result = pollPinned();
+		if (result != null){
+			return result;
+		}
+		if (!this.pinnedPartitions.isEmpty()){
+			result = this.fallbackStrategy.pollConnection();
+			if (result == null && reapDeadOwners() > 0){
+				result = this.fallbackStrategy.pollConnection(); // shared partitions ran dry: try what dead threads left behind
+			}
+			if (result != null){
+				return result;
+			}
+		}
+		return this.fallbackStrategy.getConnectionInternal();
+	}
+
+	@Override
+	public ConnectionHandle pollConnection() {
+		ConnectionHandle result = pollPinned();
+		if (result != null){
+			return result;
+		}
+		return this.fallbackStrategy.pollConnection();
+	}
+
+	/** Takes a connection from the calling thread's pinned partition, if any.
+	 * @return a connection or null
+	 */
+	private ConnectionHandle pollPinned(){
+		PinnedPartition partition = this.pinned.get();
+		if (partition == null){
+			return null;
+		}
+		if (partition.terminated){
+			destroyPinned(partition);
+			return null;
+		}
+		return partition.poll();
+	}
+
+	/** Called when a connection is being released. If the calling thread owns a pinned partition with room 
+	 * to spare, the connection is kept there (instead of going back to the shared partitions).
+	 * @param handle connection being released
+	 * @return true if the connection was kept, false if it should be placed back in the shared partitions.
+	 */
+	protected boolean releaseToOwner(ConnectionHandle handle){
+		PinnedPartition partition = this.pinned.get();
+		if (partition == null){
+			return false;
+		}
+		if (partition.terminated){
+			destroyPinned(partition);
+			return false;
+		}
+		if (partition.size >= partition.capacity || this.pool.poolShuttingDown){
+			return false;
+		}
+		partition.push(handle);
+		return true;
+	}
+
+	/** Destroys all idle connections of a terminated partition. Called on the owner thread.
+	 * @param partition partition to clear
+	 */
+	private void destroyPinned(PinnedPartition partition){
+		ConnectionHandle handle;
+		while ((handle = partition.poll()) != null){
+			this.pool.destroyConnection(handle);
+		}
+		partition.terminated = false;
+	}
+
+	/** Closes off all connections in all partitions. A pinned partition is only ever touched by its owner, so 
+	 * its idle connections are destroyed by the owner thread on its next checkout or checkin (after the pool 
+	 * has been shut down, on its next checkin). Those of owners that have died are reclaimed right away.
+	 */
+	public void terminateAllConnections() {
+		for (PinnedPartition partition: this.pinnedPartitions){
+			partition.terminated = true;
+		}
+		reapDeadOwners(); // back to the shared partitions, which are terminated next
+		this.fallbackStrategy.terminateAllConnections();
+	}
+
+	/** Returns the number of registered worker threads.
+	 * @return number of pinned partitions.
+	 */
+	public int getPinnedPartitionCount(){
+		return this.pinnedPartitions.size();
+	}
+
+	/** Returns the number of idle connections in the calling thread's pinned partition.
+	 * @return idle connections, or -1 if the calling thread isn't registered.
+	 */
+	public int getPinnedFreeConnections(){
+		PinnedPartition partition = this.pinned.get();
+		return partition == null ? -1 : partition.size;
+	}
+
+	/**
+	 * A partition bound to (and only ever used by) a single thread.
+	 * @author wallacew
+	 *
+	 */
+	protected static class PinnedPartition {
+		/** Thread owning this partition, held weakly so that we notice when it dies. */
+		protected Reference<Thread> owner;
+		/** Name of the owner thread. */
+		protected final String ownerName;
+		/** Max number of idle connections kept. */
+		protected final int capacity;
+		/** Idle connections (used as a stack). Not thread-safe: owner thread only. */
+		protected final ConnectionHandle[] free;
+		/** Number of idle connections. */
+		protected int size;
+		/** Set from another thread when all connections should be dropped. */
+		protected volatile boolean terminated;
+
+		/**
+		 * @param ownerName name of the owner thread
+		 * @param capacity max idle connections
+		 */
+		protected PinnedPartition(String ownerName, int capacity){
+			this.ownerName = ownerName;
+			this.capacity = capacity;
+			this.free = new ConnectionHandle[capacity];
+		}
+
+		/** Adds an idle connection. Caller checks for capacity.
+		 * @param handle connection to add
+		 */
+		protected void push(ConnectionHandle handle){
+			this.free[this.size++] = handle;
+		}
+
+		/** Takes the most recently added idle connection.
+		 * @return connection or null if empty.
+		 */
+		protected ConnectionHandle poll(){
+			if (this.size == 0){
+				return null;
+			}
+			ConnectionHandle result = this.free[--this.size];
+			this.free[this.size] = null;
+			return result;
+		}
+	}
+}
@@ -0,0 +1,132 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+/**
+ * 
+ */
+package com.jolbox.bonecp;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.util.concurrent.AbstractFuture;
+
+/**
+ * A pending {@link BoneCP#getAsyncConnection()} request. Rather than having a thread block on the partition
+ * queue, the request is parked on the partition and completed by whichever thread next hands a connection 
+ * back (or creates a new one). Timing out or cancelling the request simply removes it from the partition.
+ * 
+ * Note that the connection hooks (onCheckOut) and any listeners registered with a same-thread executor run
+ * on the thread that completes the request, typically the one releasing a connection.
+ * 
+ * @author wallacew
+ *
+ */
+public class AsyncConnectionRequest extends AbstractFuture<Connection> implements Runnable {
+	/** Strategy used to prepare the connection before handing it out (null = done by the waiting thread). */
+	private final AbstractConnectionStrategy connectionStrategy;
+	/** Partition this request is waiting on. */
+	private final ConnectionPartition partition;
+	/** If statistics are enabled, the nanoTime when this connection was requested. */
+	private final long statsObtainTime;
+	/** If true, time out with a null connection rather than an exception. */
+	private final boolean nullOnConnectionTimeout;
+	/** Pending timeout task, if any. */
+	private volatile ScheduledFuture<?> timeoutTask;
+
+	/** Creates a new pending request.
+	 * @param connectionStrategy strategy used to prepare the connection before handing it out, or null if the 
+	 * waiting thread takes care of that itself.
+	 * @param partition partition to wait on.
+	 * @param statsObtainTime nanoTime when the connection was requested (if statistics are enabled).
+	 * @param nullOnConnectionTimeout if true, time out with a null connection rather than an exception.
+	 */
+	public AsyncConnectionRequest(AbstractConnectionStrategy connectionStrategy, ConnectionPartition partition, 
+			long statsObtainTime, boolean nullOnConnectionTimeout){
+		this.connectionStrategy = connectionStrategy;
+		this.partition = partition;
+		this.statsObtainTime = statsObtainTime;
+		this.nullOnConnectionTimeout = nullOnConnectionTimeout;
+	}
+
+	/** Arranges for this request to time out unless it has been completed within the given time.
+	 * @param scheduler timer to use.
+	 * @param timeoutInMs time to wait for a connection.
+	 */
+	protected void scheduleTimeout(ScheduledExecutorService scheduler, long timeoutInMs){
+		this.timeoutTask = scheduler.schedule(this, timeoutInMs, TimeUnit.MILLISECONDS);
+		if (isDone()){ // we raced with a completion
+			this.timeoutTask.cancel(false);
+		}
+	}
+
+	/** Hands the given connection over to the waiting party. Only to be called by the thread that removed 
+	 * this request from the partition.
+	 * @param handle connection to hand over.
+	 * @return true if the connection was accepted.
+	 */
+	protected boolean complete(ConnectionHandle handle){
+		if (this.connectionStrategy != null){
+			this.connectionStrategy.postConnection(handle, this.statsObtainTime);
+		}
+		if (set(handle)){
+			cancelTimeout();
+			return true;
+		}
+		return false;
+	}
+
+	/** Fails this request. Only to be called by the thread that removed this request from the partition.
+	 * @param e reason.
+	 */
+	protected void fail(SQLException e){
+		setException(e);
+		cancelTimeout();
+	}
+
+	/** Called when the timeout expires. */
+	// @Override
+	public void run() {
+		if (this.partition.removeAsyncWaiter(this)){
+			if (this.nullOnConnectionTimeout){
+				set(null);
+			} else {
+				// 08001 = The application requester is unable to establish the connection.
+				setException(new SQLException("Timed out waiting for a free available connection.", "08001"));
+			}
+		}
+	}
+
+	@Override
+	public boolean cancel(boolean mayInterruptIfRunning) {
+		// only cancel if no other thread has claimed us in the meantime
+		if (this.partition.removeAsyncWaiter(this) && super.cancel(mayInterruptIfRunning)){
+			cancelTimeout();
+			return true;
+		}
+		return false;
+	}
+
+	/** Stops the pending timeout task (if any). */
+	private void cancelTimeout() {
+		ScheduledFuture<?> task = this.timeoutTask;
+		if (task != null){
+			task.cancel(false);
+		}
+	}
+}
@@ -20,22 +20,18 @@ import java.io.Closeable;
 import java.io.IOException;
 import java.io.Serializable;
 import java.lang.management.ManagementFactory;
-import java.lang.ref.Reference;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
-import java.util.AbstractMap;
-import java.util.Map;
 import java.util.Properties;
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -48,11 +44,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.annotations.VisibleForTesting;
-import com.google.common.base.FinalizableReferenceQueue;
 import com.google.common.base.Preconditions;
 import com.google.common.util.concurrent.ListenableFuture;
-import com.google.common.util.concurrent.ListeningExecutorService;
-import com.google.common.util.concurrent.MoreExecutors;
 import com.jolbox.bonecp.hooks.AcquireFailConfig;
 import com.jolbox.bonecp.hooks.ConnectionHook;
 
@@ -65,7 +58,7 @@ import com.jolbox.bonecp.hooks.ConnectionHook;
  */
 public class BoneCP implements Serializable, Closeable {
 	/** Warning message. */
-	private static final String THREAD_CLOSE_CONNECTION_WARNING = "Thread close connection monitoring has been enabled. This will negatively impact on your performance. Only enable this option for debugging purposes!";
+	private static final String THREAD_CLOSE_CONNECTION_WARNING = "Thread close connection monitoring has been enabled. This will negatively impact on your performance. Only enable this option for debugging purposes (use leakDetectionThresholdInMs in production)!";
 	/** Serialization UID */
 	private static final long serialVersionUID = -8386816681977604817L;
 	/** Exception message. */
@@ -78,16 +71,20 @@ public class BoneCP implements Serializable, Closeable {
 	public static final String MBEAN_CONFIG = "com.jolbox.bonecp:type=BoneCPConfig";
 	/** JMX constant. */
 	public static final String MBEAN_BONECP = "com.jolbox.bonecp:type=BoneCP";
+	/** JMX constant. */
+	public static final String MBEAN_SIZING_ADVISOR = "com.jolbox.bonecp:type=BoneCPSizingAdvisor";
+	/** JMX constant. */
+	public static final String MBEAN_QUERY_STATISTICS = "com.jolbox.bonecp:type=BoneCPQueryStatistics";
 	/** Constant for keep-alive test */
 	private static final String[] METADATATABLE = new String[] {"TABLE"};
 	/** Constant for keep-alive test */
 	private static final String KEEPALIVEMETADATA = "BONECPKEEPALIVE";
 	/** Create more connections when we hit x% of our possible number of connections. */
 	protected final int poolAvailabilityThreshold;
-	/** Number of partitions passed in constructor. **/
-	protected int partitionCount;
-	/** Partitions handle. */
-	protected ConnectionPartition[] partitions;
+	/** Number of partitions in service. May be lowered at runtime, in which case partitions beyond this count are retired. **/
+	protected volatile int partitionCount;
+	/** Partitions handle. Includes retired partitions, so this may be longer than partitionCount. */
+	protected volatile ConnectionPartition[] partitions;
 	/** Handle to factory that creates 1 thread per partition that periodically wakes up and performs some
 	 * activity on the connection.
 	 */
@@ -101,8 +98,10 @@ public class BoneCP implements Serializable, Closeable {
 	private ExecutorService connectionsScheduler;
 	/** Configuration object used in constructor. */
 	@VisibleForTesting protected BoneCPConfig config;
-	/** Executor service for obtaining a connection in an asynchronous fashion. */
-	private ListeningExecutorService asyncExecutor;
+	/** Timer for getAsyncConnection() timeouts. */
+	private ScheduledExecutorService asyncTimeoutScheduler;
+	/** Strategy serving getAsyncConnection(); thread affinity is meaningless there so this is never the cached strategy. */
+	protected DefaultConnectionStrategy asyncConnectionStrategy;
 	/** Logger class. */
 	private static final Logger logger = LoggerFactory.getLogger(BoneCP.class);
 	/** JMX support. */
@@ -118,10 +117,8 @@ public class BoneCP implements Serializable, Closeable {
 	protected volatile boolean poolShuttingDown;
 	/** Placeholder to give more useful info in case of a double shutdown. */
 	protected String shutdownStackTrace;
-	/** Reference of objects that are to be watched. */
-	private final Map<Connection, Reference<ConnectionHandle>> finalizableRefs = new ConcurrentHashMap<Connection, Reference<ConnectionHandle>>();
-	/** Watch for connections that should have been safely closed but the application forgot. */
-	private transient FinalizableReferenceQueue finalizableRefQueue;
+	/** Watch for connections that should have been safely closed but the application forgot (null if tracking is disabled). */
+	protected LeaseTable leaseTable;
 	/** Time to wait before timing out the connection. Default in config is Long.MAX_VALUE milliseconds. */
 	protected long connectionTimeoutInMs;
 	/** No of ms to wait for thread.join() in connection watch thread. */
@@ -137,6 +134,8 @@ public class BoneCP implements Serializable, Closeable {
 	protected boolean resetConnectionOnClose;
 	/** Config setting. */
 	protected boolean cachedPoolStrategy;
+	/** Config setting. */
+	protected boolean affinityPoolStrategy;
 	/** Currently active get connection strategy class to use. */
 	protected ConnectionStrategy connectionStrategy;
 	/** If true, there are no connections to be taken. */
@@ -149,6 +148,40 @@ public class BoneCP implements Serializable, Closeable {
 	protected int jvmMajorVersion;
 	/** This is moved here to aid testing. */
 	protected static String connectionClass = "java.sql.Connection";
+	/** Pool-wide DatabaseMetaData cache (null if disabled). */
+	protected MetaDataCache metaDataCache;
+	/** If true, no hooks, statement logging, statistics, statement watchdog, workload capture or query statistics are configured so statements can use the lean handles. */
+	protected volatile boolean leanStatementHandles;
+	/** Cancels overrunning statements (null if disabled). */
+	protected StatementWatchdog statementWatchdog;
+	/** Runs the statement watchdog scan (null if disabled). */
+	private ScheduledExecutorService statementWatchdogScheduler;
+	/** Reports connections held for too long (null if disabled). */
+	protected LeakDetector leakDetector;
+	/** Runs the leak detector scan (null if disabled). */
+	private ScheduledExecutorService leakDetectorScheduler;
+	/** Physically closes destroyed connections in the background (null = close on the calling thread). */
+	protected ConnectionCloser connectionCloser;
+	/** Records pool activity for offline replay (null if disabled). */
+	protected WorkloadRecorder workloadRecorder;
+	/** Execute statistics per SQL fingerprint (null if disabled). */
+	protected QueryStatistics queryStatistics;
+	/** Formats and writes out logged statements in the background (null if statement logging is disabled). */
+	protected StatementLog statementLog;
+	/** Recommends pool settings from live statistics (null if disabled). */
+	protected PoolSizingAdvisor poolSizingAdvisor;
+	/** Runs the pool sizing advisor (null if disabled). */
+	private ScheduledExecutorService poolSizingAdvisorScheduler;
+	/** Replaces expired connections make-before-break (null if disabled). */
+	protected volatile ConnectionRecycler connectionRecycler;
+	/** If true, free connections are handed out in LIFO order. */
+	private boolean queueLIFO;
+	/** Idle connection test period (in ms) the scheduled housekeeping tasks are running with. */
+	private long scheduledIdleConnectionTestPeriodInMs;
+	/** Idle max age (in ms) the scheduled housekeeping tasks are running with. */
+	private long scheduledIdleMaxAgeInMs;
+	/** Max connection age (in ms) the scheduled housekeeping tasks are running with. */
+	private long scheduledMaxConnectionAgeInMs;
  
 	/**
 	 * Closes off this connection pool.
@@ -162,14 +195,26 @@ public class BoneCP implements Serializable, Closeable {
 			this.keepAliveScheduler.shutdownNow(); // stop threads from firing.
 			this.maxAliveScheduler.shutdownNow(); // stop threads from firing.
 			this.connectionsScheduler.shutdownNow(); // stop threads from firing.
-			this.asyncExecutor.shutdownNow();
+			this.asyncTimeoutScheduler.shutdownNow();
+			if (this.connectionRecycler != null){
+				this.connectionRecycler.shutdown();
+			}
+			if (this.statementWatchdogScheduler != null){
+				this.statementWatchdogScheduler.shutdownNow();
+			}
+			if (this.leakDetectorScheduler != null){
+				this.leakDetectorScheduler.shutdownNow();
+			}
+			if (this.poolSizingAdvisorScheduler != null){
+				this.poolSizingAdvisorScheduler.shutdownNow();
+			}
 
 			try {
 				this.connectionsScheduler.awaitTermination(5, TimeUnit.SECONDS);
 
 				this.maxAliveScheduler.awaitTermination(5, TimeUnit.SECONDS);
 				this.keepAliveScheduler.awaitTermination(5, TimeUnit.SECONDS);
-				this.asyncExecutor.awaitTermination(5, TimeUnit.SECONDS);
+				this.asyncTimeoutScheduler.awaitTermination(5, TimeUnit.SECONDS);
 				
 				if (this.closeConnectionExecutor != null){
 					this.closeConnectionExecutor.shutdownNow();
@@ -179,12 +224,22 @@ public class BoneCP implements Serializable, Closeable {
 			} catch (InterruptedException e) {
 				// do nothing
 			}
+			for (int i=0; i < this.partitions.length; i++){
+				this.partitions[i].failAsyncWaiters(new SQLException(this.shutdownStackTrace));
+			}
 			this.connectionStrategy.terminateAllConnections();
+			if (this.connectionCloser != null){
+				this.connectionCloser.shutdown();
+			}
+			if (this.workloadRecorder != null){
+				this.workloadRecorder.close();
+			}
+			if (this.statementLog != null){
+				this.statementLog.shutdown();
+			}
+			PoolEvents.INSTANCE.unregister(this);
 			unregisterDriver();
 			registerUnregisterJMX(false);
-			if (finalizableRefQueue != null) {
-				finalizableRefQueue.close();
-			}
 			    logger.info("Connection pool has been shutdown.");
 		}
 	}
@@ -228,9 +283,8 @@ public class BoneCP implements Serializable, Closeable {
 	protected void postDestroyConnection(ConnectionHandle handle){
 		ConnectionPartition partition = handle.getOriginatingPartition();
 
-		if (this.finalizableRefQueue != null && handle.getInternalConnection() != null){ //safety
-			this.finalizableRefs.remove(handle.getInternalConnection());
-			//			assert o != null : "Did not manage to remove connection from finalizable ref queue";
+		if (this.leaseTable != null){
+			this.leaseTable.untrack(handle);
 		}
 
 		partition.updateCreatedConnections(-1);
@@ -242,6 +296,9 @@ public class BoneCP implements Serializable, Closeable {
 			handle.getConnectionHook().onDestroy(handle);
 		}
 
+		if (PoolEvents.recording){
+			PoolEvents.INSTANCE.connectionDestroyed(handle);
+		}
 	}
 	
 	/** Obtains a database connection, retrying if necessary.
@@ -262,6 +319,7 @@ public class BoneCP implements Serializable, Closeable {
 		acquireConfig.setAcquireRetryDelayInMs(acquireRetryDelayInMs);
 		acquireConfig.setLogMessage("Failed to acquire connection to "+url);
 		ConnectionHook connectionHook = this.getConfig().getConnectionHook();
+		long eventStart = PoolEvents.recording ? System.nanoTime() : 0;
 		do{ 
 			result = null;
 			try { 
@@ -313,6 +371,9 @@ public class BoneCP implements Serializable, Closeable {
 			}
 		} while (tryAgain);
 
+		if (eventStart != 0){
+			PoolEvents.INSTANCE.connectionCreated(connectionHandle, eventStart);
+		}
 		return result;
 
 	}
@@ -424,12 +485,34 @@ public class BoneCP implements Serializable, Closeable {
 			}
 		}
 		if (!config.isDisableConnectionTracking()){
-			this.finalizableRefQueue = new FinalizableReferenceQueue();
+			// headroom for connections that are briefly over the limit while being created or rolled back.
+			this.leaseTable = new LeaseTable(2 * config.getPartitionCount() * config.getMaxConnectionsPerPartition(), config.getPoolName());
 		}
 
-		this.asyncExecutor = MoreExecutors.listeningDecorator(Executors.newCachedThreadPool());
+		if (config.getStatementCancelTimeoutInMs() > 0 
+				|| (config.getStatementCancelTimeouts() != null && !config.getStatementCancelTimeouts().isEmpty())){
+			this.statementWatchdog = new StatementWatchdog(config.getStatementCancelTimeoutInMs(), config.getStatementCancelTimeouts(), 
+					this.statisticsEnabled ? this.statistics : null);
+		}
+
+		if (config.getWorkloadCaptureFile() != null){
+			try{
+				this.workloadRecorder = new WorkloadRecorder(config.getWorkloadCaptureFile(), config.getWorkloadCaptureSizeInMB());
+			} catch (IOException e){
+				logger.error("Unable to open workload capture file "+config.getWorkloadCaptureFile()+". Workload capture is disabled.", e);
+			}
+		}
+
+		if (config.getQueryStatisticsSize() > 0){
+			this.queryStatistics = new QueryStatistics(config.getQueryStatisticsSize());
+		}
+
+		updateLeanStatementHandles();
+
+		if (this.config.isMetaDataCacheEnabled()){
+			this.metaDataCache = new MetaDataCache(TimeUnit.SECONDS.toMillis(this.config.getMetaDataCacheTTLInSeconds()));
+		}
 
-		this.config = config;
 		this.partitions = new ConnectionPartition[config.getPartitionCount()];
 		String suffix = "";
 
@@ -441,16 +524,48 @@ public class BoneCP implements Serializable, Closeable {
 		this.keepAliveScheduler =  Executors.newScheduledThreadPool(config.getPartitionCount(), new CustomThreadFactory("BoneCP-keep-alive-scheduler"+suffix, true));
 		this.maxAliveScheduler =  Executors.newScheduledThreadPool(config.getPartitionCount(), new CustomThreadFactory("BoneCP-max-alive-scheduler"+suffix, true));
 		this.connectionsScheduler =  Executors.newFixedThreadPool(config.getPartitionCount(), new CustomThreadFactory("BoneCP-pool-watch-thread"+suffix, true));
+		this.asyncTimeoutScheduler = Executors.newSingleThreadScheduledExecutor(new CustomThreadFactory("BoneCP-async-timeout"+suffix, true));
+		if (this.leaseTable != null){
+			this.leaseTable.start(this.keepAliveScheduler);
+		}
+		if (this.statementWatchdog != null){
+			this.statementWatchdogScheduler = Executors.newSingleThreadScheduledExecutor(new CustomThreadFactory("BoneCP-statement-watchdog"+suffix, true));
+			this.statementWatchdog.start(this.statementWatchdogScheduler);
+		}
+		if (config.getLeakDetectionThresholdInMs() > 0){
+			this.leakDetector = new LeakDetector(config.getLeakDetectionThresholdInMs(), config.getLeakDetectionStackTraceSampleRate(), 
+					this.statisticsEnabled ? this.statistics : null);
+			this.leakDetectorScheduler = Executors.newSingleThreadScheduledExecutor(new CustomThreadFactory("BoneCP-leak-detector"+suffix, true));
+			this.leakDetector.start(this.leakDetectorScheduler);
+		}
+		if (config.getAsyncConnectionCloseQueueSize() > 0){
+			this.connectionCloser = new ConnectionCloser(config.getAsyncConnectionCloseQueueSize(), suffix);
+		}
+		if (config.getMaxConnectionAgeInSeconds() > 0 && config.getMaxConcurrentConnectionRecycles() > 0){
+			this.connectionRecycler = new ConnectionRecycler(this, config.getMaxConcurrentConnectionRecycles(), suffix);
+		}
+		if (config.isLogStatementsEnabled()){
+			this.statementLog = new StatementLog(config.getStatementLogFile(), config.getStatementLogFileSizeInMB(), 
+					config.getStatementLogSampleRate(), config.getStatementLogSlowThresholdInMs(), suffix);
+		}
 
 		this.partitionCount = config.getPartitionCount();
 		this.closeConnectionWatch = config.isCloseConnectionWatch();
 		this.cachedPoolStrategy = config.getPoolStrategy() != null && config.getPoolStrategy().equalsIgnoreCase("CACHED");
+		if (config.getPoolStrategy() != null && config.getPoolStrategy().equalsIgnoreCase("VIRTUAL")){
+			this.asyncConnectionStrategy = new VirtualThreadConnectionStrategy(this);
+		} else {
+			this.asyncConnectionStrategy = new DefaultConnectionStrategy(this);
+		}
+		this.affinityPoolStrategy = config.getPoolStrategy() != null && config.getPoolStrategy().equalsIgnoreCase("AFFINITY");
 		if (this.cachedPoolStrategy){
-			this.connectionStrategy = new CachedConnectionStrategy(this, new DefaultConnectionStrategy(this));
+			this.connectionStrategy = new CachedConnectionStrategy(this, this.asyncConnectionStrategy);
+		} else if (this.affinityPoolStrategy){
+			this.connectionStrategy = new AffinityConnectionStrategy(this, this.asyncConnectionStrategy);
 		} else {
-			this.connectionStrategy = new DefaultConnectionStrategy(this);
+			this.connectionStrategy = this.asyncConnectionStrategy;
 		}
-		boolean queueLIFO = config.getServiceOrder() != null && config.getServiceOrder().equalsIgnoreCase("LIFO");
+		this.queueLIFO = config.getServiceOrder() != null && config.getServiceOrder().equalsIgnoreCase("LIFO");
 		if (this.closeConnectionWatch){
 			logger.warn(THREAD_CLOSE_CONNECTION_WARNING);
 			this.closeConnectionExecutor =  Executors.newCachedThreadPool(new CustomThreadFactory("BoneCP-connection-watch-thread"+suffix, true));
@@ -460,7 +575,8 @@ public class BoneCP implements Serializable, Closeable {
 
 			ConnectionPartition connectionPartition = new ConnectionPartition(this);
 			this.partitions[p]=connectionPartition;
-			BlockingQueue<ConnectionHandle> connectionHandles = new LinkedBlockingQueue<ConnectionHandle>(this.config.getMaxConnectionsPerPartition());
+			// unbounded; the partition limits are enforced by the partition itself so that they can be changed at runtime.
+			BlockingQueue<ConnectionHandle> connectionHandles = new LinkedBlockingQueue<ConnectionHandle>();
 
 			this.partitions[p].setFreeConnections(connectionHandles);
 
@@ -472,37 +588,205 @@ public class BoneCP implements Serializable, Closeable {
 			}
 
 
-			if (config.getIdleConnectionTestPeriod(TimeUnit.SECONDS) > 0 || config.getIdleMaxAge(TimeUnit.SECONDS) > 0){
+			scheduleHousekeeping(connectionPartition);
+			// watch this partition for low no of threads
+			this.connectionsScheduler.execute(new PoolWatchThread(connectionPartition, this));
+		}
 
-				final Runnable connectionTester = new ConnectionTesterThread(connectionPartition, this.keepAliveScheduler, this, config.getIdleMaxAge(TimeUnit.MILLISECONDS), config.getIdleConnectionTestPeriod(TimeUnit.MILLISECONDS), queueLIFO);
-				long delayInSeconds = config.getIdleConnectionTestPeriod(TimeUnit.SECONDS);
-				if (delayInSeconds == 0L){
-					delayInSeconds = config.getIdleMaxAge(TimeUnit.SECONDS);
-				}
-				if (config.getIdleMaxAge(TimeUnit.SECONDS) < delayInSeconds
-						&& config.getIdleConnectionTestPeriod(TimeUnit.SECONDS) != 0 
-						&& config.getIdleMaxAge(TimeUnit.SECONDS) != 0){
-					delayInSeconds = config.getIdleMaxAge(TimeUnit.SECONDS);
-				}
-				this.keepAliveScheduler.schedule(connectionTester, delayInSeconds, TimeUnit.SECONDS);
+		if (config.getPoolSizingWindowInSeconds() > 0){
+			if (this.statisticsEnabled){
+				this.poolSizingAdvisor = new PoolSizingAdvisor(this, TimeUnit.SECONDS.toMillis(config.getPoolSizingWindowInSeconds()), 
+						config.getPoolSizingTargetWaitInMs());
+				this.poolSizingAdvisorScheduler = Executors.newSingleThreadScheduledExecutor(new CustomThreadFactory("BoneCP-pool-sizing-advisor"+suffix, true));
+				this.poolSizingAdvisor.start(this.poolSizingAdvisorScheduler);
+			} else {
+				logger.warn("poolSizingWindowInSeconds is set but statisticsEnabled is false. Pool sizing advisor is disabled.");
 			}
+		}
+
+		if (!this.config.isDisableJMX()){
+			registerUnregisterJMX(true);
+		}
+
+		PoolEvents.INSTANCE.register(this);
+	}
+
 
+	/** Applies the settings of the given config that may be changed on a running pool, namely min/max connections per 
+	 * partition, acquire increment, partition count, connection timeout, idle connection test period, idle max age and
+	 * max connection age. All other settings are ignored. 
+	 * 
+	 * Connections that are in use are never taken away: if the pool is being shrunk, idle surplus connections are 
+	 * closed right away and the rest as they are released.
+	 * 
+	 * @param newConfig config holding the new settings.
+	 */
+	public synchronized void reconfigure(BoneCPConfig newConfig){
+		this.config.setMinConnectionsPerPartition(newConfig.getMinConnectionsPerPartition());
+		this.config.setMaxConnectionsPerPartition(newConfig.getMaxConnectionsPerPartition());
+		this.config.setAcquireIncrement(newConfig.getAcquireIncrement());
+		this.config.setPartitionCount(newConfig.getPartitionCount());
+		this.config.setConnectionTimeoutInMs(newConfig.getConnectionTimeoutInMs());
+		this.config.setIdleConnectionTestPeriodInSeconds(newConfig.getIdleConnectionTestPeriod(TimeUnit.SECONDS));
+		this.config.setIdleMaxAgeInSeconds(newConfig.getIdleMaxAge(TimeUnit.SECONDS));
+		this.config.setMaxConnectionAgeInSeconds(newConfig.getMaxConnectionAgeInSeconds());
+		applyConfig();
+	}
 
-			if (config.getMaxConnectionAgeInSeconds() > 0){
-				final Runnable connectionMaxAgeTester = new ConnectionMaxAgeThread(connectionPartition, this.maxAliveScheduler, this, config.getMaxConnectionAge(TimeUnit.MILLISECONDS), queueLIFO);
-				this.maxAliveScheduler.schedule(connectionMaxAgeTester, config.getMaxConnectionAgeInSeconds(), TimeUnit.SECONDS);
+	/** Brings the running pool in line with the runtime-tunable settings of its config. Invoked after the config
+	 * has been changed via reconfigure() or JMX.
+	 */
+	protected synchronized void applyConfig(){
+		if (this.poolShuttingDown){
+			return;
+		}
+		this.config.sanitizePoolSize();
+		this.connectionTimeoutInMs = this.config.getConnectionTimeoutInMs() == 0 ? Long.MAX_VALUE : this.config.getConnectionTimeoutInMs();
+		updateLeanStatementHandles();
+
+		long maxConnectionAgeInMs = this.config.getMaxConnectionAge(TimeUnit.MILLISECONDS);
+		boolean maxAgeChanged = maxConnectionAgeInMs != this.scheduledMaxConnectionAgeInMs;
+		boolean housekeepingChanged = maxAgeChanged 
+				|| this.config.getIdleConnectionTestPeriod(TimeUnit.MILLISECONDS) != this.scheduledIdleConnectionTestPeriodInMs
+				|| this.config.getIdleMaxAge(TimeUnit.MILLISECONDS) != this.scheduledIdleMaxAgeInMs;
+
+		int newPartitionCount = this.config.getPartitionCount();
+		ConnectionPartition[] current = this.partitions;
+		if (newPartitionCount > current.length){
+			ConnectionPartition[] grown = new ConnectionPartition[newPartitionCount];
+			System.arraycopy(current, 0, grown, 0, current.length);
+			for (int p=current.length; p < newPartitionCount; p++){
+				grown[p] = new ConnectionPartition(this);
+				grown[p].setFreeConnections(new LinkedBlockingQueue<ConnectionHandle>());
+			}
+			growExecutor(this.connectionsScheduler, newPartitionCount);
+			growExecutor(this.keepAliveScheduler, newPartitionCount);
+			growExecutor(this.maxAliveScheduler, newPartitionCount);
+			// publish the partitions before the count that makes them reachable.
+			this.partitions = grown;
+			for (int p=current.length; p < newPartitionCount; p++){
+				scheduleHousekeeping(grown[p]);
+				this.connectionsScheduler.execute(new PoolWatchThread(grown[p], this));
 			}
-			// watch this partition for low no of threads
-			this.connectionsScheduler.execute(new PoolWatchThread(connectionPartition, this));
+		}
+		if (this.leaseTable != null){
+			this.leaseTable.ensureCapacity(2 * this.partitions.length * this.config.getMaxConnectionsPerPartition());
 		}
 
-		if (!this.config.isDisableJMX()){
-			registerUnregisterJMX(true);
+		if (maxAgeChanged && this.connectionRecycler == null 
+				&& this.config.getMaxConnectionAgeInSeconds() > 0 && this.config.getMaxConcurrentConnectionRecycles() > 0){
+			this.connectionRecycler = new ConnectionRecycler(this, this.config.getMaxConcurrentConnectionRecycles(), 
+					this.config.getPoolName() != null ? "-"+this.config.getPoolName() : "");
 		}
 
+		for (int p=0; p < this.partitions.length; p++){
+			ConnectionPartition partition = this.partitions[p];
+			if (p < newPartitionCount){
+				partition.retired = false;
+				partition.setLimits(this.config.getMinConnectionsPerPartition(), this.config.getMaxConnectionsPerPartition(), this.config.getAcquireIncrement());
+			} else {
+				partition.retired = true;
+				partition.setLimits(0, this.config.getMaxConnectionsPerPartition(), this.config.getAcquireIncrement());
+			}
+			if (housekeepingChanged && p < current.length){ // new partitions were scheduled with the new settings already
+				cancelHousekeeping(partition);
+				scheduleHousekeeping(partition);
+			}
+			if (maxAgeChanged){
+				// connections currently in use keep the age they were handed out with.
+				for (ConnectionHandle handle: partition.getFreeConnections()){
+					handle.maxConnectionAgeInMs = ConnectionHandle.jitterMaxConnectionAge(maxConnectionAgeInMs, this.config.getMaxConnectionAgeJitterPercent());
+				}
+			}
+			trimIdleConnections(partition);
+			partition.setUnableToCreateMoreTransactions(false);
+			partition.getPoolWatchThreadSignalQueue().offer(new Object()); // wake up the watch thread to fill up to the new limits.
+		}
+		// new partitions are only made reachable once they're fully set up.
+		this.partitionCount = newPartitionCount;
+		if (this.cachedPoolStrategy){
+			((CachedConnectionStrategy)this.connectionStrategy).updateMaxSlots();
+		}
+	}
 
+	/** Decides which statement handles to hand out so that the common case doesn't pay for unused features. 
+	 * Statements created from then on pick up the change; cached statements keep their handle.
+	 */
+	private void updateLeanStatementHandles(){
+		this.leanStatementHandles = this.config.getConnectionHook() == null && !this.config.isLogStatementsEnabled() 
+				&& !this.config.isStatisticsEnabled() && this.statementWatchdog == null && this.workloadRecorder == null
+				&& this.queryStatistics == null;
 	}
 
+	/** Closes off idle connections in the given partition while it's retired or above its max connections.
+	 * @param partition partition to trim
+	 */
+	protected void trimIdleConnections(ConnectionPartition partition){
+		ConnectionHandle handle;
+		while ((partition.retired || partition.isOverCapacity()) && (handle = partition.getFreeConnections().poll()) != null){
+			destroyConnection(handle);
+		}
+	}
+
+	/** Stops the housekeeping tasks currently scheduled for the given partition.
+	 * @param partition partition being looked after
+	 */
+	protected void cancelHousekeeping(ConnectionPartition partition){
+		if (partition.connectionTester != null){
+			partition.connectionTester.cancelled = true;
+			partition.connectionTester = null;
+		}
+		if (partition.connectionMaxAgeTester != null){
+			partition.connectionMaxAgeTester.cancelled = true;
+			partition.connectionMaxAgeTester = null;
+		}
+	}
+
+	/** Raises the thread count of one of our executors so that newly added partitions get a thread of their own.
+	 * @param executor executor to grow
+	 * @param threads new thread count
+	 */
+	private void growExecutor(ExecutorService executor, int threads){
+		if (executor instanceof ThreadPoolExecutor){
+			ThreadPoolExecutor threadPool = (ThreadPoolExecutor) executor;
+			if (threadPool.getMaximumPoolSize() < threads){
+				threadPool.setMaximumPoolSize(threads);
+			}
+			if (threadPool.getCorePoolSize() < threads){
+				threadPool.setCorePoolSize(threads);
+			}
+		}
+	}
+
+	/** Schedules the idle connection tester and max age tester (as configured) for the given partition.
+	 * @param partition partition to look after
+	 */
+	protected void scheduleHousekeeping(ConnectionPartition partition){
+		this.scheduledIdleMaxAgeInMs = 0;
+		this.scheduledIdleConnectionTestPeriodInMs = 0;
+		this.scheduledMaxConnectionAgeInMs = 0;
+		if (this.config.getIdleConnectionTestPeriod(TimeUnit.SECONDS) > 0 || this.config.getIdleMaxAge(TimeUnit.SECONDS) > 0){
+			this.scheduledIdleMaxAgeInMs = this.config.getIdleMaxAge(TimeUnit.MILLISECONDS);
+			this.scheduledIdleConnectionTestPeriodInMs = this.config.getIdleConnectionTestPeriod(TimeUnit.MILLISECONDS);
+			partition.connectionTester = new ConnectionTesterThread(partition, this.keepAliveScheduler, this, this.scheduledIdleMaxAgeInMs, this.scheduledIdleConnectionTestPeriodInMs, this.queueLIFO);
+			long delayInSeconds = this.config.getIdleConnectionTestPeriod(TimeUnit.SECONDS);
+			if (delayInSeconds == 0L){
+				delayInSeconds = this.config.getIdleMaxAge(TimeUnit.SECONDS);
+			}
+			if (this.config.getIdleMaxAge(TimeUnit.SECONDS) < delayInSeconds
+					&& this.config.getIdleConnectionTestPeriod(TimeUnit.SECONDS) != 0 
+					&& this.config.getIdleMaxAge(TimeUnit.SECONDS) != 0){
+				delayInSeconds = this.config.getIdleMaxAge(TimeUnit.SECONDS);
+			}
+			this.keepAliveScheduler.schedule(partition.connectionTester, delayInSeconds, TimeUnit.SECONDS);
+		}
+
+		if (this.config.getMaxConnectionAgeInSeconds() > 0){
+			this.scheduledMaxConnectionAgeInMs = this.config.getMaxConnectionAge(TimeUnit.MILLISECONDS);
+			partition.connectionMaxAgeTester = new ConnectionMaxAgeThread(partition, this.maxAliveScheduler, this, this.scheduledMaxConnectionAgeInMs, this.queueLIFO);
+			this.maxAliveScheduler.schedule(partition.connectionMaxAgeTester, this.config.getMaxConnectionAgeInSeconds(), TimeUnit.SECONDS);
+		}
+	}
 
 	/**
 	 * Initialises JMX stuff.
@@ -521,6 +805,8 @@ public class BoneCP implements Serializable, Closeable {
 
 			ObjectName name = new ObjectName(MBEAN_BONECP +suffix);
 			ObjectName configname = new ObjectName(MBEAN_CONFIG + suffix);
+			ObjectName advisorname = new ObjectName(MBEAN_SIZING_ADVISOR + suffix);
+			ObjectName queryname = new ObjectName(MBEAN_QUERY_STATISTICS + suffix);
 
 
 			if (doRegister){
@@ -528,7 +814,13 @@ public class BoneCP implements Serializable, Closeable {
 					this.mbs.registerMBean(this.statistics, name);
 				}
 				if (!this.mbs.isRegistered(configname)){
-					this.mbs.registerMBean(this.config, configname);
+					this.mbs.registerMBean(new BoneCPConfigMBeanAdapter(this), configname);
+				}
+				if (this.poolSizingAdvisor != null && !this.mbs.isRegistered(advisorname)){
+					this.mbs.registerMBean(this.poolSizingAdvisor, advisorname);
+				}
+				if (this.queryStatistics != null && !this.mbs.isRegistered(queryname)){
+					this.mbs.registerMBean(this.queryStatistics, queryname);
 				}
 			} else {
 				if (this.mbs.isRegistered(name)){
@@ -537,6 +829,12 @@ public class BoneCP implements Serializable, Closeable {
 				if (this.mbs.isRegistered(configname)){
 					this.mbs.unregisterMBean(configname);
 				}
+				if (this.poolSizingAdvisor != null && this.mbs.isRegistered(advisorname)){
+					this.mbs.unregisterMBean(advisorname);
+				}
+				if (this.queryStatistics != null && this.mbs.isRegistered(queryname)){
+					this.mbs.unregisterMBean(queryname);
+				}
 			}
 		} catch (Exception e) {
 			logger.error("Unable to start/stop JMX", e);
@@ -579,7 +877,9 @@ public class BoneCP implements Serializable, Closeable {
 		return stringBuilder.toString();
 	}
 
-	/** Obtain a connection asynchronously by queueing a request to obtain a connection in a separate thread.
+	/** Obtain a connection asynchronously. If no connection is free, the request is parked on a partition and 
+	 * completed by the next thread that releases (or creates) a connection, so no thread blocks waiting. The
+	 * request times out as per connectionTimeoutInMs; cancelling the future withdraws the request.
 	 *
 	 *  Use as follows:<p>
 	 *      Future&lt;Connection&gt; result = pool.getAsyncConnection();<p>
@@ -589,12 +889,29 @@ public class BoneCP implements Serializable, Closeable {
 	 * @return A Future task returning a connection. 
 	 */ 
 	public ListenableFuture<Connection> getAsyncConnection(){
+		return this.asyncConnectionStrategy.getAsyncConnection(this.asyncTimeoutScheduler);
+	}
 
-		return this.asyncExecutor.submit(new Callable<Connection>() {
+	/** Binds a pinned partition to the calling thread (AFFINITY strategy only). Call this once from each 
+	 * worker (eg event loop) thread before it starts using the pool; connections obtained and closed off 
+	 * on that thread are then recycled through its own partition without any locking.
+	 * @return true if the thread was registered, false if it already was registered or the pool is not 
+	 * using the AFFINITY strategy.
+	 */
+	public boolean registerAffinityThread(){
+		if (!this.affinityPoolStrategy){
+			logger.warn("registerAffinityThread() has no effect unless poolStrategy is set to AFFINITY.");
+			return false;
+		}
+		return ((AffinityConnectionStrategy)this.connectionStrategy).register();
+	}
 
-			public Connection call() throws Exception {
-				return getConnection();
-			}});
+	/** Unbinds the calling thread from its pinned partition, handing its idle connections back to the
+	 * shared partitions. Call this when a worker thread is about to terminate.
+	 * @return true if the thread had been registered.
+	 */
+	public boolean unregisterAffinityThread(){
+		return this.affinityPoolStrategy && ((AffinityConnectionStrategy)this.connectionStrategy).unregister();
 	}
 
 	/**
@@ -642,25 +959,34 @@ public class BoneCP implements Serializable, Closeable {
 			connectionHandle.clearStatementCaches(false);
 		}
 
-		if (connectionHandle.getReplayLog() != null){
-			connectionHandle.getReplayLog().clear();
+		if (connectionHandle.getReplayLogBuffer() != null){
+			connectionHandle.getReplayLogBuffer().clear();
 			connectionHandle.recoveryResult.getReplaceTarget().clear();
 		}
 
-		if (connectionHandle.isExpired() || 
+		// with make-before-break recycling an expired connection keeps serving until its replacement is ready.
+		boolean expired = connectionHandle.isExpired() 
+				&& (this.connectionRecycler == null || connectionHandle.isPossiblyBroken() || !this.connectionRecycler.keepInService(connectionHandle));
+		// after the pool has been shrunk, surplus connections are closed as they come back rather than taken away from their users.
+		boolean surplus = !expired && isSurplus(connectionHandle);
+		if (expired || surplus ||
 				(!this.poolShuttingDown 
 						&& connectionHandle.isPossiblyBroken()
 				&& !isConnectionHandleAlive(connectionHandle))){
 
-            if (connectionHandle.isExpired()) {
-                connectionHandle.internalClose();
+            if (expired || surplus) {
+                connectionHandle.internalClose(); // clears the statement caches too, possibly on the closer thread
+            } else {
+                connectionHandle.clearStatementCaches(true);
             }
 
 			ConnectionPartition connectionPartition = connectionHandle.getOriginatingPartition();
+			if (this.cachedPoolStrategy){
+				connectionHandle.logicallyClosed.set(true); // tells a thread-local slot still pointing here to let go
+			}
 			postDestroyConnection(connectionHandle);
 
 			maybeSignalForMoreConnections(connectionPartition);
-			connectionHandle.clearStatementCaches(true);
 			return; // don't place back in queue - connection is broken or expired.
 		}
 
@@ -675,20 +1001,45 @@ public class BoneCP implements Serializable, Closeable {
 
 
 
+	/** Returns true if the given connection is being returned to a partition that has more connections than it's 
+	 * now allowed to keep (following a reconfiguration).
+	 * @param connectionHandle connection being released
+	 * @return true if the connection should be closed instead of being placed back in its partition.
+	 */
+	protected boolean isSurplus(ConnectionHandle connectionHandle){
+		ConnectionPartition partition = connectionHandle.getOriginatingPartition();
+		if (partition == null || !partition.shrinking || this.poolShuttingDown){
+			return false;
+		}
+		if (partition.isOverCapacity()){
+			return true;
+		}
+		partition.shrinking = false; // back within limits, stop checking.
+		return false;
+	}
+
 	/** Places a connection back in the originating partition.
 	 * @param connectionHandle to place back
 	 * @throws SQLException on error
 	 */
 	protected void putConnectionBackInPartition(ConnectionHandle connectionHandle) throws SQLException {
 
-		if (this.cachedPoolStrategy && ((CachedConnectionStrategy)this.connectionStrategy).tlConnections.dumbGet().getValue()){
-			connectionHandle.logicallyClosed.set(true);
-			((CachedConnectionStrategy)this.connectionStrategy).tlConnections.set(new AbstractMap.SimpleEntry<ConnectionHandle, Boolean>(connectionHandle, false));
+		if (this.cachedPoolStrategy && ((CachedConnectionStrategy)this.connectionStrategy).cacheOnRelease(connectionHandle)){
+			return; // parked in the thread-local slot of this thread
+		}
+		if (this.affinityPoolStrategy && ((AffinityConnectionStrategy)this.connectionStrategy).releaseToOwner(connectionHandle)){
+			return; // kept in the pinned partition of this thread
+		}
+		ConnectionPartition connectionPartition = connectionHandle.getOriginatingPartition();
+		if (connectionPartition.handOffToAsyncWaiter(connectionHandle)){
+			return; // given straight to a getAsyncConnection() request
+		}
+		BlockingQueue<ConnectionHandle> queue = connectionPartition.getFreeConnections();
+		if (!queue.offer(connectionHandle)){ // this shouldn't fail
+			connectionHandle.internalClose();
 		} else {
-			BlockingQueue<ConnectionHandle> queue = connectionHandle.getOriginatingPartition().getFreeConnections();
-				if (!queue.offer(connectionHandle)){ // this shouldn't fail
-					connectionHandle.internalClose();
-				}
+			// a request might have been parked after we looked for one but before the connection was queued
+			connectionPartition.serveAsyncWaiters();
 		}
 
 
@@ -703,6 +1054,7 @@ public class BoneCP implements Serializable, Closeable {
 		Statement stmt = null;
 		boolean result = false;
 		boolean logicallyClosed = connection.logicallyClosed.get();
+		long eventStart = PoolEvents.recording ? System.nanoTime() : 0;
 		try {
 			connection.logicallyClosed.compareAndSet(true, false); // avoid checks later on if it's marked as closed.
 			String testStatement = this.config.getConnectionTestStatement();
@@ -730,6 +1082,9 @@ public class BoneCP implements Serializable, Closeable {
 			connection.setConnectionLastResetInMs(System.currentTimeMillis());
 			result = closeStatement(stmt, result);
 		}
+		if (eventStart != 0){
+			PoolEvents.INSTANCE.connectionValidated(connection, result, eventStart);
+		}
 		return result;
 	}
 
@@ -754,7 +1109,7 @@ public class BoneCP implements Serializable, Closeable {
 	 */
 	public int getTotalLeased(){
 		int total=0;
-		for (int i=0; i < this.partitionCount && this.partitions[i] != null; i++){
+		for (int i=0; i < this.partitions.length && this.partitions[i] != null; i++){
 			total+=this.partitions[i].getCreatedConnections()-this.partitions[i].getAvailableConnections();
 		}
 		return total;
@@ -766,7 +1121,7 @@ public class BoneCP implements Serializable, Closeable {
 	 */
 	public int getTotalFree(){
 		int total=0;
-		for (int i=0; i < this.partitionCount && this.partitions[i] != null ; i++){
+		for (int i=0; i < this.partitions.length && this.partitions[i] != null ; i++){
 			total+=this.partitions[i].getAvailableConnections();
 		}
 		return total;
@@ -779,7 +1134,7 @@ public class BoneCP implements Serializable, Closeable {
 	 */
 	public int getTotalCreatedConnections(){
 		int total=0;
-		for (int i=0; i < this.partitionCount && this.partitions[i] != null; i++){
+		for (int i=0; i < this.partitions.length && this.partitions[i] != null; i++){
 			total+=this.partitions[i].getCreatedConnections();
 		}
 		return total;
@@ -795,20 +1150,6 @@ public class BoneCP implements Serializable, Closeable {
 		return this.config;
 	}
 
-	/** Return the finalizable refs handle.
-	 * @return the finalizableRefs value.
-	 */
-	protected Map<Connection, Reference<ConnectionHandle>> getFinalizableRefs() {
-		return this.finalizableRefs;
-	}
-
-	/** Watch for connections that should have been safely closed but the application forgot.
-	 * @return the finalizableRefQueue
-	 */
-	protected FinalizableReferenceQueue getFinalizableRefQueue() {
-		return this.finalizableRefQueue;
-	}
-
 	/**
 	 * Returns a reference to the statistics class.
 	 * @return statistics
@@ -825,5 +1166,68 @@ public class BoneCP implements Serializable, Closeable {
 		return this.dbIsDown;
 	}
 
+	/**
+	 * Returns the pool-wide DatabaseMetaData cache. Call invalidate() on it after changing 
+	 * the database schema.
+	 * @return the metadata cache, or null if metaDataCacheEnabled is not set.
+	 */
+	public MetaDataCache getMetaDataCache() {
+		return this.metaDataCache;
+	}
+
+	/** Returns true if statements are wrapped in the lean handles (no hooks, statement logging, statistics, statement watchdog, workload capture or query statistics configured).
+	 * @return true if lean statement handles are in use.
+	 */
+	public boolean isLeanStatementHandles() {
+		return this.leanStatementHandles;
+	}
+
+	/**
+	 * Returns the statement watchdog.
+	 * @return the watchdog, or null if statementCancelTimeoutInMs/statementCancelTimeouts are not set.
+	 */
+	public StatementWatchdog getStatementWatchdog() {
+		return this.statementWatchdog;
+	}
+
+	/**
+	 * Returns the leak detector.
+	 * @return the leak detector, or null if leakDetectionThresholdInMs is not set.
+	 */
+	public LeakDetector getLeakDetector() {
+		return this.leakDetector;
+	}
+
+	/**
+	 * Returns the workload recorder.
+	 * @return the recorder, or null if workloadCaptureFile is not set.
+	 */
+	public WorkloadRecorder getWorkloadRecorder() {
+		return this.workloadRecorder;
+	}
+
+	/**
+	 * Returns the pool sizing advisor.
+	 * @return the advisor, or null if poolSizingWindowInSeconds is not set or statistics are disabled.
+	 */
+	public PoolSizingAdvisor getPoolSizingAdvisor() {
+		return this.poolSizingAdvisor;
+	}
+
+	/**
+	 * Returns the per-query execute statistics.
+	 * @return the statistics, or null if queryStatisticsSize is not set.
+	 */
+	public QueryStatistics getQueryStatistics() {
+		return this.queryStatistics;
+	}
+
+	/**
+	 * Returns the statement log.
+	 * @return the log, or null if logStatementsEnabled is not set.
+	 */
+	public StatementLog getStatementLog() {
+		return this.statementLog;
+	}
 
 }
@@ -159,7 +159,7 @@ public class BoneCPConfig implements BoneCPConfigMBean, Cloneable, Serializable
 	 * but then forgot to call commit/rollback before closing it off. This feature is intended 
 	 * for debugging only.*/
 	private boolean detectUnresolvedTransactions;
-	/** Determines pool operation Recognised strategies are: DEFAULT, CACHED. */
+	/** Determines pool operation Recognised strategies are: DEFAULT, CACHED, VIRTUAL. */
 	private String poolStrategy = "DEFAULT";
 	/** If true, track statements and close them if application forgot to do so. See also: 
 	 * detectUnclosedStatements. */
@@ -170,6 +170,46 @@ public class BoneCPConfig implements BoneCPConfigMBean, Cloneable, Serializable
 
 	/** If set, pool will call this for every new connection that's created. */
 	private Properties clientInfo;
+	/** If true, DatabaseMetaData results are cached pool-wide. */
+	private boolean metaDataCacheEnabled;
+	/** Cached DatabaseMetaData catalog results older than this are discarded. 0 = keep until invalidated. */
+	private long metaDataCacheTTLInSeconds = 300;
+	/** Memory limit (in KB) of the transaction replay log of a single connection. 0 = unlimited. */
+	private long transactionRecoveryMaxLogSizeInKB;
+	/** Statements still executing after this many ms are cancelled by the pool watchdog. 0 = disabled. */
+	private long statementCancelTimeoutInMs;
+	/** Per-SQL-pattern watchdog budgets: regular expression to timeout in ms. */
+	private Properties statementCancelTimeouts;
+	/** Max number of idle connections pinned to each registered worker thread (AFFINITY strategy). */
+	private int affinityConnectionsPerThread = 1;
+	/** Connections held by the application for longer than this are reported as possible leaks. 0 = disabled. */
+	private long leakDetectionThresholdInMs;
+	/** Capture the checkout stack trace for 1 in every N checkouts when leak detection is on. 0 = never. */
+	private int leakDetectionStackTraceSampleRate = 100;
+	/** Max number of connections waiting to be physically closed by the background closer. 0 = close on the calling thread. */
+	private int asyncConnectionCloseQueueSize;
+	/** Each connection's max age is shortened by a random amount of up to this percentage. */
+	private int maxConnectionAgeJitterPercent;
+	/** Max number of expired connections being replaced (make-before-break) at any one time. 0 = retire first, replace later. */
+	private int maxConcurrentConnectionRecycles;
+	/** If set, connection and statement activity is recorded to this file for offline replay. */
+	private String workloadCaptureFile;
+	/** Size of the workload capture ring file. */
+	private int workloadCaptureSizeInMB = 64;
+	/** Length of the pool sizing advisor's sampling window. 0 = advisor disabled. */
+	private int poolSizingWindowInSeconds;
+	/** Target for the 99th percentile getConnection wait the pool sizing advisor sizes the pool for. */
+	private long poolSizingTargetWaitInMs = 100;
+	/** Number of distinct queries (by SQL fingerprint) to keep execute statistics for. 0 = disabled. */
+	private int queryStatisticsSize;
+	/** Binary file the statement log is also written to. Null = debug log only. */
+	private String statementLogFile;
+	/** Size of the binary statement log file before it is rolled over. */
+	private int statementLogFileSizeInMB = 16;
+	/** Log 1 in every statementLogSampleRate statements. */
+	private int statementLogSampleRate = 1;
+	/** Only log statements taking at least this long. 0 = log all. */
+	private long statementLogSlowThresholdInMs;
 
 	/** Returns the name of the pool for JMX and thread names.
 	 * @return a pool name.
@@ -687,7 +727,8 @@ public class BoneCPConfig implements BoneCPConfigMBean, Cloneable, Serializable
 
 	/** Instruct the pool to create a helper thread to watch over connection acquires that are never released (or released twice). 
 	 * This is for debugging purposes only and will create a new thread for each call to getConnection(). 
-	 * Enabling this option will have a big negative impact on pool performance.
+	 * Enabling this option will have a big negative impact on pool performance. For leak detection in production,
+	 * use leakDetectionThresholdInMs instead.
 	 * @param closeConnectionWatch set to true to enable thread monitoring.
 	 */
 	public void setCloseConnectionWatch(boolean closeConnectionWatch) {
@@ -703,8 +744,9 @@ public class BoneCPConfig implements BoneCPConfigMBean, Cloneable, Serializable
 
 	/** If enabled, log SQL statements being executed. This will also "fill in" the parameters 
 	 * for prepared statements so that you can see exactly what values where bound at the time 
-	 * you executed the statement.
-	 * You will also need to set your log4j settings ("com.jolbox.bonecp") to DEBUG 
+	 * you executed the statement. Statements are formatted and written out on a background thread
+	 * once the execute call returns; see also statementLogSampleRate and statementLogSlowThresholdInMs.
+	 * You will also need to set your log4j settings ("com.jolbox.bonecp") to DEBUG, or set statementLogFile.
 	 * @param logStatementsEnabled the logStatementsEnabled to set
 	 */
 	public void setLogStatementsEnabled(boolean logStatementsEnabled) {
@@ -1181,7 +1223,7 @@ public class BoneCPConfig implements BoneCPConfigMBean, Cloneable, Serializable
 	/**
 	 * Sets the maxConnectionAge in seconds. Any connections older than this setting will be closed
 	 * off whether it is idle or not. Connections currently in use will not be affected until they
-	 * are returned to the pool.
+	 * are returned to the pool. See also maxConnectionAgeJitterPercent and maxConcurrentConnectionRecycles.
 	 * 
 	 * @param maxConnectionAgeInSeconds the maxConnectionAge to set
 	 */
@@ -1554,6 +1596,34 @@ public class BoneCPConfig implements BoneCPConfigMBean, Cloneable, Serializable
 		this.externalAuth = externalAuth;
 	}
 
+	/**
+	 * Performs validation on the pool sizing settings. Unlike sanitize(), this is safe to call on a running
+	 * pool's config.
+	 */
+	protected void sanitizePoolSize(){
+		if (this.maxConnectionsPerPartition < 1) {
+			logger.warn("Max Connections < 1. Setting to 20");
+			this.maxConnectionsPerPartition = 20;
+		}
+		if (this.minConnectionsPerPartition < 0) {
+			logger.warn("Min Connections < 0. Setting to 1");
+			this.minConnectionsPerPartition = 1;
+		}
+
+		if (this.minConnectionsPerPartition > this.maxConnectionsPerPartition) {
+			logger.warn("Min Connections > max connections");
+			this.minConnectionsPerPartition = this.maxConnectionsPerPartition;
+		}
+		if (this.acquireIncrement <= 0) {
+			logger.warn("acquireIncrement <= 0. Setting to 1.");
+			this.acquireIncrement = 1;
+		}
+		if (this.partitionCount < 1) {
+			logger.warn("partitions < 1! Setting to 1");
+			this.partitionCount = 1;
+		}
+	}
+
 	/**
 	 * Performs validation on the config object.
 	 *
@@ -1563,8 +1633,9 @@ public class BoneCPConfig implements BoneCPConfigMBean, Cloneable, Serializable
 			loadProperties(this.configFile);
 		}
 
-		if (this.poolStrategy == null || !(this.poolStrategy.equalsIgnoreCase("DEFAULT") || this.poolStrategy.equalsIgnoreCase("CACHED"))){
-			logger.warn("Unrecognised pool strategy. Allowed values are DEFAULT and CACHED. Setting to DEFAULT.");
+		if (this.poolStrategy == null || !(this.poolStrategy.equalsIgnoreCase("DEFAULT") || this.poolStrategy.equalsIgnoreCase("CACHED")
+				|| this.poolStrategy.equalsIgnoreCase("VIRTUAL") || this.poolStrategy.equalsIgnoreCase("AFFINITY"))){
+			logger.warn("Unrecognised pool strategy. Allowed values are DEFAULT, CACHED, VIRTUAL and AFFINITY. Setting to DEFAULT.");
 			this.poolStrategy = "DEFAULT";
 		} 
 
@@ -1592,27 +1663,7 @@ public class BoneCPConfig implements BoneCPConfigMBean, Cloneable, Serializable
 				this.defaultTransactionIsolationValue = -1;
 			}
 		}
-		if (this.maxConnectionsPerPartition < 1) {
-			logger.warn("Max Connections < 1. Setting to 20");
-			this.maxConnectionsPerPartition = 20;
-		}
-		if (this.minConnectionsPerPartition < 0) {
-			logger.warn("Min Connections < 0. Setting to 1");
-			this.minConnectionsPerPartition = 1;
-		}
-
-		if (this.minConnectionsPerPartition > this.maxConnectionsPerPartition) {
-			logger.warn("Min Connections > max connections");
-			this.minConnectionsPerPartition = this.maxConnectionsPerPartition;
-		}
-		if (this.acquireIncrement <= 0) {
-			logger.warn("acquireIncrement <= 0. Setting to 1.");
-			this.acquireIncrement = 1;
-		}
-		if (this.partitionCount < 1) {
-			logger.warn("partitions < 1! Setting to 1");
-			this.partitionCount = 1;
-		}
+		sanitizePoolSize();
 
 		if (this.releaseHelperThreads < 0){
 			logger.warn("releaseHelperThreads < 0! Setting to 0");
@@ -1703,8 +1754,92 @@ public class BoneCPConfig implements BoneCPConfigMBean, Cloneable, Serializable
 			this.serviceOrder = "FIFO";
 		}
 		
-		if (this.logStatementsEnabled && !logger.isDebugEnabled()){
-			logger.warn("LogStatementsEnabled is set to true, but log4j level is not set at DEBUG. Disabling statement logging.");
+		if (this.metaDataCacheTTLInSeconds < 0){
+			logger.warn("metaDataCacheTTLInSeconds is less than 0. Setting to 0 (keep until invalidated).");
+			this.metaDataCacheTTLInSeconds = 0;
+		}
+
+		if (this.transactionRecoveryMaxLogSizeInKB < 0){
+			logger.warn("transactionRecoveryMaxLogSizeInKB is less than 0. Setting to 0 (unlimited).");
+			this.transactionRecoveryMaxLogSizeInKB = 0;
+		}
+
+		if (this.statementCancelTimeoutInMs < 0){
+			logger.warn("statementCancelTimeoutInMs is less than 0. Setting to 0 (disabled).");
+			this.statementCancelTimeoutInMs = 0;
+		}
+
+		if (this.affinityConnectionsPerThread < 1){
+			logger.warn("affinityConnectionsPerThread is less than 1. Setting to 1.");
+			this.affinityConnectionsPerThread = 1;
+		}
+
+		if (this.leakDetectionThresholdInMs < 0){
+			logger.warn("leakDetectionThresholdInMs is less than 0. Setting to 0 (disabled).");
+			this.leakDetectionThresholdInMs = 0;
+		}
+
+		if (this.leakDetectionStackTraceSampleRate < 0){
+			logger.warn("leakDetectionStackTraceSampleRate is less than 0. Setting to 0 (never capture).");
+			this.leakDetectionStackTraceSampleRate = 0;
+		}
+
+		if (this.asyncConnectionCloseQueueSize < 0){
+			logger.warn("asyncConnectionCloseQueueSize is less than 0. Setting to 0 (close on the calling thread).");
+			this.asyncConnectionCloseQueueSize = 0;
+		}
+
+		if (this.maxConnectionAgeJitterPercent < 0 || this.maxConnectionAgeJitterPercent > 50){
+			logger.warn("maxConnectionAgeJitterPercent is not between 0 and 50. Setting to 0 (no jitter).");
+			this.maxConnectionAgeJitterPercent = 0;
+		}
+
+		if (this.maxConcurrentConnectionRecycles < 0){
+			logger.warn("maxConcurrentConnectionRecycles is less than 0. Setting to 0 (retire first, replace later).");
+			this.maxConcurrentConnectionRecycles = 0;
+		}
+
+		if (this.workloadCaptureSizeInMB < 1){
+			logger.warn("workloadCaptureSizeInMB is less than 1. Setting to 64.");
+			this.workloadCaptureSizeInMB = 64;
+		}
+		if (this.workloadCaptureSizeInMB > WorkloadRecorder.MAX_SIZE_IN_MB){
+			logger.warn("workloadCaptureSizeInMB is greater than "+WorkloadRecorder.MAX_SIZE_IN_MB+". Setting to "+WorkloadRecorder.MAX_SIZE_IN_MB+".");
+			this.workloadCaptureSizeInMB = WorkloadRecorder.MAX_SIZE_IN_MB;
+		}
+
+		if (this.poolSizingWindowInSeconds < 0){
+			logger.warn("poolSizingWindowInSeconds is less than 0. Setting to 0 (advisor disabled).");
+			this.poolSizingWindowInSeconds = 0;
+		}
+
+		if (this.poolSizingTargetWaitInMs < 0){
+			logger.warn("poolSizingTargetWaitInMs is less than 0. Setting to 100.");
+			this.poolSizingTargetWaitInMs = 100;
+		}
+
+		if (this.queryStatisticsSize < 0){
+			logger.warn("queryStatisticsSize is less than 0. Setting to 0 (disabled).");
+			this.queryStatisticsSize = 0;
+		}
+
+		if (this.statementLogFileSizeInMB < 1){
+			logger.warn("statementLogFileSizeInMB is less than 1. Setting to 16.");
+			this.statementLogFileSizeInMB = 16;
+		}
+
+		if (this.statementLogSampleRate < 1){
+			logger.warn("statementLogSampleRate is less than 1. Setting to 1 (log all statements).");
+			this.statementLogSampleRate = 1;
+		}
+
+		if (this.statementLogSlowThresholdInMs < 0){
+			logger.warn("statementLogSlowThresholdInMs is less than 0. Setting to 0 (log all statements).");
+			this.statementLogSlowThresholdInMs = 0;
+		}
+
+		if (this.logStatementsEnabled && !logger.isDebugEnabled() && this.statementLogFile == null){
+			logger.warn("LogStatementsEnabled is set to true, but log4j level is not set at DEBUG and no statementLogFile is set. Disabling statement logging.");
 			logStatementsEnabled = false;
 			
 		}
@@ -1916,17 +2051,18 @@ public class BoneCPConfig implements BoneCPConfigMBean, Cloneable, Serializable
 
 
 	/**
-	 * Sets the poolStrategy. Currently supported strategies are DEFAULT and CACHED. This is an experimental feature!
+	 * Sets the poolStrategy. Currently supported strategies are DEFAULT, CACHED, VIRTUAL and AFFINITY. This is an experimental feature!
 	 *
 	 * DEFAULT strategy operates in a manner that has been used in the pool since the very first
 	 * version: it tries to obtain a connection from a queue.
 	 *  
 	 * CACHED stores each connection in a thread-local variable so that next time the same thread
 	 * asks for a connection, it gets the same one assigned to it (if it asks for more than one, it
-	 * will be allocated a new one). This is very fast but you must ensure that the number of threads 
-	 * asking for a connection is less than or equal to the number  of connections you have made 
-	 * available. Should you exceed this limit, the pool will switch back (permanently) to the DEFAULT 
-	 * strategy which will cause a one-time performance hit. Use this strategy if your threads are 
+	 * will be allocated a new one). This is very fast when the number of threads asking for a connection 
+	 * is less than the number of connections you have made available. Should you exceed this limit, 
+	 * the overflow is served from the shared queue as in the DEFAULT strategy, idle thread-local 
+	 * connections are taken back and threads are given their own connection again once the pressure 
+	 * drops (see the cachedConnectionHitRatio statistic). Use this strategy if your threads are 
 	 * managed eg in a Tomcat environment where you can limit the number of threads that it can 
 	 * handle. A typical use case would be a web service that always requires some form of database access, 
 	 * therefore a service would have little point in accepting a new incoming socket connection if it 
@@ -1944,6 +2080,15 @@ public class BoneCPConfig implements BoneCPConfigMBean, Cloneable, Serializable
 	 * 
 	 * Therefore for best results, make sure that the configured minConnectionPerPartition = maxConnectionPerPartition = min Threads = max Threads.
 	 *   
+	 * VIRTUAL is meant for applications that use a new (eg virtual) thread per request. Nothing is tracked 
+	 * per thread, threads are spread over partitions by a hash of their id and threads that have to wait for
+	 * a connection park cheaply without holding any monitor, so that virtual threads don't pin their carrier
+	 * thread. Set partitionCount to the number of CPUs for best results.
+	 *   
+	 * AFFINITY is meant for a small, fixed set of worker threads (eg event loops) that do their database work
+	 * inline. Each worker calls BoneCP.registerAffinityThread() once and is then given its own pinned partition
+	 * that only it uses, so checkout and checkin on that thread take no locks. Other threads (and workers that 
+	 * need more than affinityConnectionsPerThread connections at once) are served from the normal partitions.
 	 *   
 	 * @param poolStrategy the poolStrategy to set
 	 */
@@ -2008,4 +2153,397 @@ public class BoneCPConfig implements BoneCPConfigMBean, Cloneable, Serializable
 
 
 
-}
\ No newline at end of file
+
+	/**
+	 * Returns the metaDataCacheEnabled field.
+	 * @return metaDataCacheEnabled
+	 */
+	public boolean isMetaDataCacheEnabled() {
+		return this.metaDataCacheEnabled;
+	}
+
+	/**
+	 * If true, connection.getMetaData() returns a wrapper that caches results pool-wide. Catalog queries 
+	 * (getTables, getColumns, getPrimaryKeys, getImportedKeys...) are stored as disconnected snapshots 
+	 * for metaDataCacheTTLInSeconds while capability values (supportsBatchUpdates, getDatabaseProductVersion...)
+	 * are fetched only once per pool. Useful to speed up schema validation at startup (eg hibernate). Call
+	 * pool.getMetaDataCache().invalidate() after issuing DDL statements.
+	 *  
+	 * @param metaDataCacheEnabled the metaDataCacheEnabled to set
+	 */
+	public void setMetaDataCacheEnabled(boolean metaDataCacheEnabled) {
+		this.metaDataCacheEnabled = metaDataCacheEnabled;
+	}
+
+	/**
+	 * Returns the metaDataCacheTTLInSeconds field.
+	 * @return metaDataCacheTTLInSeconds
+	 */
+	public long getMetaDataCacheTTLInSeconds() {
+		return this.metaDataCacheTTLInSeconds;
+	}
+
+	/**
+	 * Sets the time (in seconds) after which cached DatabaseMetaData catalog results are discarded.
+	 * 0 = keep until explicitly invalidated. Only relevant if metaDataCacheEnabled is set. Default: 300.
+	 * 
+	 * @param metaDataCacheTTLInSeconds the metaDataCacheTTLInSeconds to set
+	 */
+	public void setMetaDataCacheTTLInSeconds(long metaDataCacheTTLInSeconds) {
+		this.metaDataCacheTTLInSeconds = metaDataCacheTTLInSeconds;
+	}
+
+	/**
+	 * Returns the transactionRecoveryMaxLogSizeInKB field.
+	 * @return transactionRecoveryMaxLogSizeInKB
+	 */
+	public long getTransactionRecoveryMaxLogSizeInKB() {
+		return this.transactionRecoveryMaxLogSizeInKB;
+	}
+
+	/**
+	 * Sets the maximum amount of memory (in KB) that the transaction replay log of a single connection may use. 
+	 * If a transaction goes past this limit its log is discarded and the transaction will not be recovered on
+	 * failure; recording resumes on the next commit/rollback. Only relevant if transactionRecoveryEnabled is set.
+	 * 0 = unlimited. Default: 0.
+	 * 
+	 * @param transactionRecoveryMaxLogSizeInKB the transactionRecoveryMaxLogSizeInKB to set
+	 */
+	public void setTransactionRecoveryMaxLogSizeInKB(long transactionRecoveryMaxLogSizeInKB) {
+		this.transactionRecoveryMaxLogSizeInKB = transactionRecoveryMaxLogSizeInKB;
+	}
+
+	/**
+	 * Returns the statementCancelTimeoutInMs field.
+	 * @return statementCancelTimeoutInMs
+	 */
+	public long getStatementCancelTimeoutInMs() {
+		return this.statementCancelTimeoutInMs;
+	}
+
+	/**
+	 * Sets the time (in ms) a statement may spend executing before the pool watchdog calls Statement.cancel() on it. 
+	 * Unlike queryExecuteTimeLimitInMs, which only reports a slow query once it has finished, this stops the query
+	 * while it is still running. The connection of a cancelled statement is tested before it is handed out again.
+	 * A single watchdog thread per pool checks all running statements, so the cancel fires within a short 
+	 * interval after the timeout rather than at the exact instant. 0 = disabled. Default: 0.
+	 * 
+	 * @param statementCancelTimeoutInMs the statementCancelTimeoutInMs to set
+	 */
+	public void setStatementCancelTimeoutInMs(long statementCancelTimeoutInMs) {
+		this.statementCancelTimeoutInMs = statementCancelTimeoutInMs;
+	}
+
+	/**
+	 * Returns the statementCancelTimeouts field.
+	 * @return statementCancelTimeouts
+	 */
+	public Properties getStatementCancelTimeouts() {
+		return this.statementCancelTimeouts;
+	}
+
+	/**
+	 * Sets per-SQL budgets for the statement watchdog. Each key is a regular expression that is matched against 
+	 * the statement SQL (keys are tried in alphabetical order and the first match wins) and each value is the timeout in ms to use instead of 
+	 * statementCancelTimeoutInMs; a value of 0 exempts matching statements. Setting this enables the watchdog 
+	 * even if statementCancelTimeoutInMs is 0.
+	 *
+	 * @param statementCancelTimeouts the statementCancelTimeouts to set
+	 */
+	public void setStatementCancelTimeouts(Properties statementCancelTimeouts) {
+		this.statementCancelTimeouts = statementCancelTimeouts;
+	}
+
+	/**
+	 * Returns the affinityConnectionsPerThread field.
+	 * @return affinityConnectionsPerThread
+	 */
+	public int getAffinityConnectionsPerThread() {
+		return this.affinityConnectionsPerThread;
+	}
+
+	/**
+	 * Sets the max number of idle connections kept in the pinned partition of each worker thread registered 
+	 * via BoneCP.registerAffinityThread(). Only used by the AFFINITY pool strategy. Set this to the number of 
+	 * connections a worker thread holds at once (usually 1). Default: 1.
+	 *
+	 * @param affinityConnectionsPerThread the affinityConnectionsPerThread to set
+	 */
+	public void setAffinityConnectionsPerThread(int affinityConnectionsPerThread) {
+		this.affinityConnectionsPerThread = affinityConnectionsPerThread;
+	}
+
+	/**
+	 * Returns the leakDetectionThresholdInMs field.
+	 * @return leakDetectionThresholdInMs
+	 */
+	public long getLeakDetectionThresholdInMs() {
+		return this.leakDetectionThresholdInMs;
+	}
+
+	/**
+	 * Sets the time (in ms) the application may hold on to a connection before it is reported as a possible leak
+	 * (once, via the log, ConnectionHook.onConnectionLeakSuspected and the suspectedLeaks JMX attribute). Unlike
+	 * closeConnectionWatch this uses a single pool-wide timer thread and is cheap enough to leave on in production.
+	 * Set this well above your longest legitimate transaction. 0 = disabled. Default: 0.
+	 * 
+	 * @param leakDetectionThresholdInMs the leakDetectionThresholdInMs to set
+	 */
+	public void setLeakDetectionThresholdInMs(long leakDetectionThresholdInMs) {
+		this.leakDetectionThresholdInMs = leakDetectionThresholdInMs;
+	}
+
+	/**
+	 * Returns the leakDetectionStackTraceSampleRate field.
+	 * @return leakDetectionStackTraceSampleRate
+	 */
+	public int getLeakDetectionStackTraceSampleRate() {
+		return this.leakDetectionStackTraceSampleRate;
+	}
+
+	/**
+	 * Sets how often the stack trace of a checkout is captured so that a leak report can show where the connection
+	 * was obtained: 1 in every leakDetectionStackTraceSampleRate checkouts (1 = every checkout, 0 = never). Leaks 
+	 * of unsampled checkouts are still reported, with the holding thread's name only. Only used if 
+	 * leakDetectionThresholdInMs is set. Default: 100.
+	 *
+	 * @param leakDetectionStackTraceSampleRate the leakDetectionStackTraceSampleRate to set
+	 */
+	public void setLeakDetectionStackTraceSampleRate(int leakDetectionStackTraceSampleRate) {
+		this.leakDetectionStackTraceSampleRate = leakDetectionStackTraceSampleRate;
+	}
+
+	/**
+	 * Returns the asyncConnectionCloseQueueSize field.
+	 * @return asyncConnectionCloseQueueSize
+	 */
+	public int getAsyncConnectionCloseQueueSize() {
+		return this.asyncConnectionCloseQueueSize;
+	}
+
+	/**
+	 * If set to a value greater than 0, connections that the pool destroys (expired, broken or surplus) are physically 
+	 * closed by a background thread instead of by the application thread that happened to hand them back, so that a 
+	 * close() that blocks (eg unreachable server, hung TLS teardown) never adds latency to a request. Up to this many 
+	 * connections may be waiting to be closed; beyond that the pool calls Connection.abort() (JDBC 4.1 drivers) and only 
+	 * closes on the calling thread as a last resort. Default: 0 (close on the calling thread).
+	 *
+	 * @param asyncConnectionCloseQueueSize the asyncConnectionCloseQueueSize to set
+	 */
+	public void setAsyncConnectionCloseQueueSize(int asyncConnectionCloseQueueSize) {
+		this.asyncConnectionCloseQueueSize = asyncConnectionCloseQueueSize;
+	}
+
+	/**
+	 * Returns the maxConnectionAgeJitterPercent field.
+	 * @return maxConnectionAgeJitterPercent
+	 */
+	public int getMaxConnectionAgeJitterPercent() {
+		return this.maxConnectionAgeJitterPercent;
+	}
+
+	/**
+	 * Shortens the maxConnectionAgeInSeconds of each connection by a random amount of up to this percentage, so that
+	 * connections opened together (eg at startup) don't all expire together. Only used if maxConnectionAgeInSeconds is 
+	 * set. Valid range: 0-50. Default: 0 (every connection gets exactly maxConnectionAgeInSeconds).
+	 *
+	 * @param maxConnectionAgeJitterPercent the maxConnectionAgeJitterPercent to set
+	 */
+	public void setMaxConnectionAgeJitterPercent(int maxConnectionAgeJitterPercent) {
+		this.maxConnectionAgeJitterPercent = maxConnectionAgeJitterPercent;
+	}
+
+	/**
+	 * Returns the maxConcurrentConnectionRecycles field.
+	 * @return maxConcurrentConnectionRecycles
+	 */
+	public int getMaxConcurrentConnectionRecycles() {
+		return this.maxConcurrentConnectionRecycles;
+	}
+
+	/**
+	 * If set to a value greater than 0, a connection that has exceeded its max age stays in service until a replacement
+	 * has been opened and validated in the background, and only then is retired (make-before-break), so that recycling
+	 * never reduces the number of usable connections. At most this many replacements are opened at any one time; 
+	 * other expired connections keep serving until their turn comes. Default: 0 (expired connections are closed right 
+	 * away and replaced later by the pool watch thread).
+	 *
+	 * @param maxConcurrentConnectionRecycles the maxConcurrentConnectionRecycles to set
+	 */
+	public void setMaxConcurrentConnectionRecycles(int maxConcurrentConnectionRecycles) {
+		this.maxConcurrentConnectionRecycles = maxConcurrentConnectionRecycles;
+	}
+
+	/**
+	 * Returns the workloadCaptureFile field.
+	 * @return workloadCaptureFile
+	 */
+	public String getWorkloadCaptureFile() {
+		return this.workloadCaptureFile;
+	}
+
+	/**
+	 * If set, every checkout, checkin, prepare and execute is recorded (thread, timestamps, SQL fingerprint, wait, 
+	 * hold and execute durations, but no SQL text or parameters) to this file, which is memory-mapped and used as a 
+	 * ring buffer so that the most recent activity is always kept. The trace can be replayed offline with 
+	 * bonecp-benchmark's WorkloadReplayer to compare candidate pool settings. Default: null (disabled).
+	 *
+	 * @param workloadCaptureFile the workloadCaptureFile to set
+	 */
+	public void setWorkloadCaptureFile(String workloadCaptureFile) {
+		this.workloadCaptureFile = workloadCaptureFile;
+	}
+
+	/**
+	 * Returns the workloadCaptureSizeInMB field.
+	 * @return workloadCaptureSizeInMB
+	 */
+	public int getWorkloadCaptureSizeInMB() {
+		return this.workloadCaptureSizeInMB;
+	}
+
+	/**
+	 * Size of the workload capture file. Once full, the oldest events are overwritten. Each event takes 40 bytes. 
+	 * Only used if workloadCaptureFile is set. At most 2047 (the file is mapped in one go). Default: 64.
+	 *
+	 * @param workloadCaptureSizeInMB the workloadCaptureSizeInMB to set
+	 */
+	public void setWorkloadCaptureSizeInMB(int workloadCaptureSizeInMB) {
+		this.workloadCaptureSizeInMB = workloadCaptureSizeInMB;
+	}
+
+	/**
+	 * Returns the poolSizingWindowInSeconds field.
+	 * @return poolSizingWindowInSeconds
+	 */
+	public int getPoolSizingWindowInSeconds() {
+		return this.poolSizingWindowInSeconds;
+	}
+
+	/**
+	 * If greater than 0, a pool sizing advisor samples the connection request rate and the connection wait and hold 
+	 * times over windows of this length, models the pool as a queue and recommends the smallest 
+	 * maxConnectionsPerPartition (together with partitionCount, acquireIncrement and poolAvailabilityThreshold) 
+	 * that keeps the 99th percentile wait under poolSizingTargetWaitInMs. The recommendation and the predicted vs 
+	 * observed wait are published over JMX. Requires statisticsEnabled. Default: 0 (disabled).
+	 *
+	 * @param poolSizingWindowInSeconds the poolSizingWindowInSeconds to set
+	 */
+	public void setPoolSizingWindowInSeconds(int poolSizingWindowInSeconds) {
+		this.poolSizingWindowInSeconds = poolSizingWindowInSeconds;
+	}
+
+	/**
+	 * Returns the poolSizingTargetWaitInMs field.
+	 * @return poolSizingTargetWaitInMs
+	 */
+	public long getPoolSizingTargetWaitInMs() {
+		return this.poolSizingTargetWaitInMs;
+	}
+
+	/**
+	 * Target for the 99th percentile of the time getConnection waits, used by the pool sizing advisor's default 
+	 * recommendation (other targets can be tried through its JMX recommend operation). Only used if 
+	 * poolSizingWindowInSeconds is set. Default: 100.
+	 *
+	 * @param poolSizingTargetWaitInMs the poolSizingTargetWaitInMs to set
+	 */
+	public void setPoolSizingTargetWaitInMs(long poolSizingTargetWaitInMs) {
+		this.poolSizingTargetWaitInMs = poolSizingTargetWaitInMs;
+	}
+
+	/**
+	 * Returns the queryStatisticsSize field.
+	 * @return queryStatisticsSize
+	 */
+	public int getQueryStatisticsSize() {
+		return this.queryStatisticsSize;
+	}
+
+	/**
+	 * If greater than 0, execute calls are grouped by SQL fingerprint (the SQL with literals replaced by ? and IN lists
+	 * collapsed) and the count, total, max and percentiles of execute time and the rows affected are kept for the
+	 * most frequently executed fingerprints, up to this many of them. Memory use is fixed no matter how many distinct 
+	 * queries are run. The table is published over JMX, where it can be read and reset in one go. Default: 0 
+	 * (disabled).
+	 *
+	 * @param queryStatisticsSize the queryStatisticsSize to set
+	 */
+	public void setQueryStatisticsSize(int queryStatisticsSize) {
+		this.queryStatisticsSize = queryStatisticsSize;
+	}
+
+	/**
+	 * Returns the statementLogFile field.
+	 * @return statementLogFile
+	 */
+	public String getStatementLogFile() {
+		return this.statementLogFile;
+	}
+
+	/**
+	 * If set (and logStatementsEnabled is on), logged statements are also written to this memory-mapped binary file, 
+	 * whether or not DEBUG logging is enabled. When the file fills up it is renamed to &lt;file&gt;.1 (replacing
+	 * any previous backup) and a new one is started. Decode it with "java com.jolbox.bonecp.StatementLog 
+	 * &lt;file&gt;.1 &lt;file&gt;". Default: none (debug log only).
+	 *
+	 * @param statementLogFile the statementLogFile to set
+	 */
+	public void setStatementLogFile(String statementLogFile) {
+		this.statementLogFile = statementLogFile;
+	}
+
+	/**
+	 * Returns the statementLogFileSizeInMB field.
+	 * @return statementLogFileSizeInMB
+	 */
+	public int getStatementLogFileSizeInMB() {
+		return this.statementLogFileSizeInMB;
+	}
+
+	/**
+	 * Size of the binary statement log file (see statementLogFile) before it is rolled over. The whole file is 
+	 * mapped into memory. Default: 16.
+	 *
+	 * @param statementLogFileSizeInMB the statementLogFileSizeInMB to set
+	 */
+	public void setStatementLogFileSizeInMB(int statementLogFileSizeInMB) {
+		this.statementLogFileSizeInMB = statementLogFileSizeInMB;
+	}
+
+	/**
+	 * Returns the statementLogSampleRate field.
+	 * @return statementLogSampleRate
+	 */
+	public int getStatementLogSampleRate() {
+		return this.statementLogSampleRate;
+	}
+
+	/**
+	 * If logStatementsEnabled is on, only log 1 in every statementLogSampleRate statements (out of those passing the
+	 * statementLogSlowThresholdInMs filter). Default: 1 (log all statements).
+	 *
+	 * @param statementLogSampleRate the statementLogSampleRate to set
+	 */
+	public void setStatementLogSampleRate(int statementLogSampleRate) {
+		this.statementLogSampleRate = statementLogSampleRate;
+	}
+
+	/**
+	 * Returns the statementLogSlowThresholdInMs field.
+	 * @return statementLogSlowThresholdInMs
+	 */
+	public long getStatementLogSlowThresholdInMs() {
+		return this.statementLogSlowThresholdInMs;
+	}
+
+	/**
+	 * If logStatementsEnabled is on, only log statements whose execute call took at least this long. Default: 0 (log
+	 * all statements).
+	 *
+	 * @param statementLogSlowThresholdInMs the statementLogSlowThresholdInMs to set
+	 */
+	public void setStatementLogSlowThresholdInMs(long statementLogSlowThresholdInMs) {
+		this.statementLogSlowThresholdInMs = statementLogSlowThresholdInMs;
+	}
+}
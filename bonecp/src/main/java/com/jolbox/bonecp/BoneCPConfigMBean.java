@@ -39,6 +39,11 @@ public interface BoneCPConfigMBean {
 	 */
 	int getMinConnectionsPerPartition();
 
+	/** Sets the minimum number of connections in every partition. Takes effect on a running pool.
+	 * @param minConnectionsPerPartition new value
+	 */
+	void setMinConnectionsPerPartition(int minConnectionsPerPartition);
+
 	/**
 	 * Gets the maximum number of connections that will be contained in every partition.
 	 *
@@ -46,6 +51,12 @@ public interface BoneCPConfigMBean {
 	 */
 	int getMaxConnectionsPerPartition();
 
+	/** Sets the maximum number of connections in every partition. Takes effect on a running pool; connections 
+	 * in use are only closed off once they are released.
+	 * @param maxConnectionsPerPartition new value
+	 */
+	void setMaxConnectionsPerPartition(int maxConnectionsPerPartition);
+
 	/**
 	 * Gets the acquireIncrement property.
 	 * 
@@ -56,6 +67,11 @@ public interface BoneCPConfigMBean {
 	 */
 	int getAcquireIncrement();
 
+	/** Sets the acquireIncrement property. Takes effect on a running pool.
+	 * @param acquireIncrement new value
+	 */
+	void setAcquireIncrement(int acquireIncrement);
+
 	/**
 	 * Gets the number of currently defined partitions.
 	 *
@@ -63,6 +79,12 @@ public interface BoneCPConfigMBean {
 	 */
 	int getPartitionCount();
 
+	/** Sets the number of partitions. Takes effect on a running pool; partitions that are dropped are drained as
+	 * their connections are released.
+	 * @param partitionCount new value
+	 */
+	void setPartitionCount(int partitionCount);
+
 	/**
 	 * Gets the configured JDBC URL
 	 *
@@ -84,6 +106,11 @@ public interface BoneCPConfigMBean {
 	 */
 	long getIdleConnectionTestPeriodInMinutes();
 
+	/** Sets the idleConnectionTestPeriod (in minutes). Takes effect on a running pool.
+	 * @param idleConnectionTestPeriod new value
+	 */
+	void setIdleConnectionTestPeriodInMinutes(long idleConnectionTestPeriod);
+
 	/**
 	 * Gets idleMaxAge (time in min).
 	 *
@@ -91,6 +118,11 @@ public interface BoneCPConfigMBean {
 	 */
 	long getIdleMaxAgeInMinutes();
 
+	/** Sets idleMaxAge (in minutes). Takes effect on a running pool.
+	 * @param idleMaxAge new value
+	 */
+	void setIdleMaxAgeInMinutes(long idleMaxAge);
+
 	/**
 	 * Gets connectionTestStatement
 	 *
@@ -184,6 +216,12 @@ public interface BoneCPConfigMBean {
 	 * @return the connectionTimeout
 	 */
 	long getConnectionTimeoutInMs();
+
+	/** Sets the maximum time (in milliseconds) to wait before a call to getConnection is timed out. Takes effect on 
+	 * a running pool.
+	 * @param connectionTimeoutInMs new value
+	 */
+	void setConnectionTimeoutInMs(long connectionTimeoutInMs);
 	
 	/** Returns the no of ms to wait when close connection watch threads are enabled. 0 = wait forever.
 	 * @return the watchTimeout currently set.
@@ -201,6 +239,12 @@ public interface BoneCPConfigMBean {
 	 * @return maxConnectionAge
 	 */
 	long getMaxConnectionAgeInSeconds();
+
+	/** Sets the maxConnectionAge (in seconds). Takes effect on a running pool for connections that are idle or 
+	 * opened from now on.
+	 * @param maxConnectionAgeInSeconds new value
+	 */
+	void setMaxConnectionAgeInSeconds(long maxConnectionAgeInSeconds);
 	
 	/**
 	 * Returns the configFile field.
@@ -219,4 +263,118 @@ public interface BoneCPConfigMBean {
 	 * @return statisticsEnabled
 	 */
 	boolean isStatisticsEnabled();
-}
\ No newline at end of file
+	
+	/**
+	 * Returns the metaDataCacheEnabled field.
+	 * @return metaDataCacheEnabled
+	 */
+	boolean isMetaDataCacheEnabled();
+	
+	/**
+	 * Returns the metaDataCacheTTLInSeconds field.
+	 * @return metaDataCacheTTLInSeconds
+	 */
+	long getMetaDataCacheTTLInSeconds();
+	
+	/**
+	 * Returns the transactionRecoveryMaxLogSizeInKB field.
+	 * @return transactionRecoveryMaxLogSizeInKB
+	 */
+	long getTransactionRecoveryMaxLogSizeInKB();
+	
+	/**
+	 * Returns the statementCancelTimeoutInMs field.
+	 * @return statementCancelTimeoutInMs
+	 */
+	long getStatementCancelTimeoutInMs();
+
+	/**
+	 * Returns the affinityConnectionsPerThread field.
+	 * @return affinityConnectionsPerThread
+	 */
+	int getAffinityConnectionsPerThread();
+
+	/**
+	 * Returns the leakDetectionThresholdInMs field.
+	 * @return leakDetectionThresholdInMs
+	 */
+	long getLeakDetectionThresholdInMs();
+
+	/**
+	 * Returns the leakDetectionStackTraceSampleRate field.
+	 * @return leakDetectionStackTraceSampleRate
+	 */
+	int getLeakDetectionStackTraceSampleRate();
+
+	/**
+	 * Returns the asyncConnectionCloseQueueSize field.
+	 * @return asyncConnectionCloseQueueSize
+	 */
+	int getAsyncConnectionCloseQueueSize();
+
+	/**
+	 * Returns the maxConnectionAgeJitterPercent field.
+	 * @return maxConnectionAgeJitterPercent
+	 */
+	int getMaxConnectionAgeJitterPercent();
+
+	/**
+	 * Returns the maxConcurrentConnectionRecycles field.
+	 * @return maxConcurrentConnectionRecycles
+	 */
+	int getMaxConcurrentConnectionRecycles();
+
+	/**
+	 * Returns the workloadCaptureFile field.
+	 * @return workloadCaptureFile
+	 */
+	String getWorkloadCaptureFile();
+
+	/**
+	 * Returns the workloadCaptureSizeInMB field.
+	 * @return workloadCaptureSizeInMB
+	 */
+	int getWorkloadCaptureSizeInMB();
+
+	/**
+	 * Returns the poolSizingWindowInSeconds field.
+	 * @return poolSizingWindowInSeconds
+	 */
+	int getPoolSizingWindowInSeconds();
+
+	/**
+	 * Returns the poolSizingTargetWaitInMs field.
+	 * @return poolSizingTargetWaitInMs
+	 */
+	long getPoolSizingTargetWaitInMs();
+
+	/**
+	 * Returns the queryStatisticsSize field.
+	 * @return queryStatisticsSize
+	 */
+	int getQueryStatisticsSize();
+
+	/**
+	 * Returns the statementLogFile field.
+	 * @return statementLogFile
+	 */
+	String getStatementLogFile();
+
+	/**
+	 * Returns the statementLogFileSizeInMB field.
+	 * @return statementLogFileSizeInMB
+	 */
+	int getStatementLogFileSizeInMB();
+
+	/**
+	 * Returns the statementLogSampleRate field.
+	 * @return statementLogSampleRate
+	 */
+	int getStatementLogSampleRate();
+
+	/**
+	 * Returns the statementLogSlowThresholdInMs field.
+	 * @return statementLogSlowThresholdInMs
+	 */
+	long getStatementLogSlowThresholdInMs();
+}
@@ -0,0 +1,63 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+/**
+ * 
+ */
+package com.jolbox.bonecp;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.InvalidAttributeValueException;
+import javax.management.MBeanException;
+import javax.management.NotCompliantMBeanException;
+import javax.management.ReflectionException;
+import javax.management.StandardMBean;
+
+/**
+ * Exposes a pool's config over JMX. Writes to the runtime-tunable attributes (pool sizing, timeouts, idle and
+ * max age settings) are applied to the running pool straight away.
+ * 
+ * @author wallacew
+ *
+ */
+public class BoneCPConfigMBeanAdapter extends StandardMBean {
+	/** Pool whose config is exposed. */
+	private final BoneCP pool;
+
+	/** Creates a new adapter.
+	 * @param pool pool whose config is to be exposed.
+	 * @throws NotCompliantMBeanException if the config doesn't implement BoneCPConfigMBean properly.
+	 */
+	public BoneCPConfigMBeanAdapter(BoneCP pool) throws NotCompliantMBeanException {
+		super(pool.getConfig(), BoneCPConfigMBean.class);
+		this.pool = pool;
+	}
+
+	@Override
+	public void setAttribute(Attribute attribute) throws AttributeNotFoundException, InvalidAttributeValueException, MBeanException, ReflectionException {
+		super.setAttribute(attribute);
+		this.pool.applyConfig();
+	}
+
+	@Override
+	public AttributeList setAttributes(AttributeList attributes) {
+		AttributeList result = super.setAttributes(attributes);
+		this.pool.applyConfig();
+		return result;
+	}
+}
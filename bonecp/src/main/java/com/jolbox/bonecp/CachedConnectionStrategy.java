@@ -19,25 +19,28 @@ package com.jolbox.bonecp;
 import java.lang.ref.Reference;
 import java.sql.Connection;
 import java.sql.SQLException;
-import java.util.AbstractMap.SimpleEntry;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.base.FinalizableReferenceQueue;
 import com.google.common.base.FinalizableWeakReference;
-import com.google.common.util.concurrent.Uninterruptibles;
 
 /** A connection strategy that is optimized to store/retrieve the connection inside a thread
  * local variable. This makes getting a connection in a managed thread environment such as Tomcat
- * very fast but has the limitation that it only works if # of threads <= # of connections. Should
- * it detect that this isn't the case anymore, this class will flip back permanently to the configured
- * fallback strategy (i.e. default strategy) and makes sure that currently assigned and unused
- * connections are taken back.
+ * very fast.
+ * 
+ * The strategy is adaptive: a thread that obtains a connection while the pool is not under pressure
+ * is given a thread-local slot and will keep getting the same connection back on every subsequent request.
+ * At most (total connections - 1 per partition) threads hold a slot so the shared partitions are never
+ * starved. Threads without a slot (or asking for a second connection) are served from the shared partitions 
+ * via the fallback strategy. If the shared partitions run dry, idle slots are revoked and their connections 
+ * are handed back; threads are promoted again once no pressure has been seen for a while. 
  * 
  * @author wallacew
  *
@@ -49,95 +52,161 @@ public class CachedConnectionStrategy extends AbstractConnectionStrategy {
 	/** Logger class. */
 	private static final Logger logger = LoggerFactory.getLogger(CachedConnectionStrategy.class);
 
+	/** Slot holds a connection that is not in use by its owner thread. */
+	protected static final int SLOT_IDLE = 0;
+	/** Slot's connection has been handed out to its owner thread. */
+	protected static final int SLOT_IN_USE = 1;
+	/** Slot has been taken away from its owner thread and must not be used anymore. */
+	protected static final int SLOT_REVOKED = 2;
+	/** Threads are not promoted to a slot until this long has passed since the shared partitions last ran dry. */
+	protected static final long PRESSURE_COOLDOWN_IN_NANOS = TimeUnit.SECONDS.toNanos(1);
+
 	/** Just to give out a warning once. */
 	private volatile AtomicBoolean warnApp = new AtomicBoolean();
-	/** Keep track of connections tied to thread. */
-	final protected Map<ConnectionHandle, Reference<Thread>> threadFinalizableRefs = new ConcurrentHashMap<ConnectionHandle, Reference<Thread>>();
+	/** Keep track of slots tied to a thread so that we can revoke them or reclaim them once the thread dies. */
+	final protected Map<ThreadSlot, Reference<Thread>> threadFinalizableRefs = new ConcurrentHashMap<ThreadSlot, Reference<Thread>>();
 	/** Keep track of connections tied to thread. */
 	private FinalizableReferenceQueue finalizableRefQueue = new FinalizableReferenceQueue();
-	/** Obtain connections using this fallback strategy at first (or if this strategy cannot
-	 * succeed.
-	 */
+	/** Serve overflow requests (and threads without a slot) using this fallback strategy.  */
 	private ConnectionStrategy fallbackStrategy;
+	/** Max number of threads that may hold a slot at any one time. */
+	private volatile int maxSlots;
+	/** Last time (in nanos) the shared partitions ran dry. */
+	protected volatile long lastPressureTime = System.nanoTime() - PRESSURE_COOLDOWN_IN_NANOS;
 	 
-	/** Connections are stored here. */
-	protected CachedConnectionStrategyThreadLocal<SimpleEntry<ConnectionHandle, Boolean>> tlConnections;
+	/** Slots are stored here. */
+	protected ThreadLocal<ThreadSlot> tlConnections = new ThreadLocal<ThreadSlot>();
 	
 	/**
-	 * @param defaultConnectionStrategy 
-	 * @param boneCP 
+	 * @param pool 
+	 * @param fallbackStrategy 
 	 */
 	public CachedConnectionStrategy(BoneCP pool, ConnectionStrategy fallbackStrategy){ 
 		 this.pool = pool;
 		 this.fallbackStrategy = fallbackStrategy; 
-		 tlConnections = new CachedConnectionStrategyThreadLocal<SimpleEntry<ConnectionHandle, Boolean>>(this, this.fallbackStrategy); 
+		 updateMaxSlots();
+	}
+
+	/** Sizes the number of slots on the pool's current partition count and max connections per partition, leaving
+	 * one connection per partition to the shared queue. Called on construction and whenever the pool is reconfigured.
+	 * Shrinking does not revoke any slot straight away: surplus slots go once the shared partitions run dry.
+	 */
+	protected void updateMaxSlots(){
+		BoneCPConfig config = this.pool.getConfig();
+		if (config != null){
+			this.maxSlots = Math.max(1, this.pool.partitionCount * (config.getMaxConnectionsPerPartition() - 1));
+		} else {
+			this.maxSlots = 1;
+		}
 	}
-	
-	
-	
 	
 	/**
-	 * Tries to close off all the unused assigned connections back to the pool. Assumes that
-	 * the strategy mode has already been flipped prior to calling this routine.
-	 * Called whenever our no of connection requests > no of threads. 
+	 * Takes back all the slots that are currently idle and places their connections back 
+	 * in their originating partition. Slots that are in use are left alone.
+	 * Called whenever the shared partitions have run dry. 
+	 * @return number of slots revoked.
 	 */
-	protected synchronized void stealExistingAllocations(){
-		
-		for (ConnectionHandle handle: this.threadFinalizableRefs.keySet()){
-			// if they're not in use, pretend they are in use now and close them off.
-			// this method assumes that the strategy has been flipped back to non-caching mode
-			// prior to this method invocation.
-			if (handle.logicallyClosed.compareAndSet(true, false)){ 
-				try {
-					this.pool.releaseConnection(handle);
-				} catch (SQLException e) {
-					logger.error("Error releasing connection", e);
-				}
+	protected int revokeIdleSlots(){
+		int revoked = 0;
+		for (ThreadSlot slot: this.threadFinalizableRefs.keySet()){
+			if (slot.state.compareAndSet(SLOT_IDLE, SLOT_REVOKED)){
+				this.threadFinalizableRefs.remove(slot);
+				returnToPartition(slot.handle);
+				revoked++;
 			}
 		}
-		if (this.warnApp.compareAndSet(false, true)){ // only issue warning once.
-			logger.warn("Cached strategy chosen, but more threads are requesting a connection than are configured. Switching permanently to default strategy.");
+		if (revoked > 0){
+			if (this.pool.statisticsEnabled){
+				this.pool.statistics.addCachedSlotsRevoked(revoked);
+			}
+			if (this.warnApp.compareAndSet(false, true)){ // only issue warning once.
+				logger.warn("Cached strategy chosen, but more threads are requesting a connection than are available. Revoking idle thread-local connections; consider the default strategy or a larger pool.");
+			}
 		}
-		this.threadFinalizableRefs.clear();
-		
+		return revoked;
 	}
 	
-	/** Keep track of this handle tied to which thread so that if the thread is terminated
-	 * we can reclaim our connection handle. We also 
-	 * @param c connection handle to track.
+	/** Places a connection that was parked in a slot back in its originating partition.
+	 * @param handle connection to give back
 	 */
-	protected void threadWatch(final ConnectionHandle c) {
-		this.threadFinalizableRefs.put(c, new FinalizableWeakReference<Thread>(Thread.currentThread(), this.finalizableRefQueue) {
+	private void returnToPartition(ConnectionHandle handle){
+		handle.logicallyClosed.set(false);
+		ConnectionPartition connectionPartition = handle.getOriginatingPartition();
+		if (!connectionPartition.releaseFreeConnection(handle)){
+			// this shouldn't fail
+			this.pool.destroyConnection(handle);
+		}
+	}
+	
+	/** Keep track of this slot tied to which thread so that if the thread is terminated
+	 * we can reclaim our connection handle. 
+	 * @param slot slot to track.
+	 */
+	protected void threadWatch(final ThreadSlot slot) {
+		this.threadFinalizableRefs.put(slot, new FinalizableWeakReference<Thread>(Thread.currentThread(), this.finalizableRefQueue) {
 			public void finalizeReferent() {
+				if (CachedConnectionStrategy.this.threadFinalizableRefs.remove(slot) == null){
+					return; // already revoked
+				}
+				if (!CachedConnectionStrategy.this.pool.poolShuttingDown){
+					logger.debug("Monitored thread is dead, reclaiming allocated connection.");
+				}
+				if (slot.state.compareAndSet(SLOT_IDLE, SLOT_REVOKED)){
+					returnToPartition(slot.handle);
+				} else if (slot.state.compareAndSet(SLOT_IN_USE, SLOT_REVOKED)){
 					try {
-						if (!CachedConnectionStrategy.this.pool.poolShuttingDown){
-							logger.debug("Monitored thread is dead, closing off allocated connection.");
-						}
-						c.close();
+						slot.handle.close();
 					} catch (SQLException e) {
-						e.printStackTrace();
+						logger.error("Error closing off connection of dead thread", e);
 					}
-					CachedConnectionStrategy.this.threadFinalizableRefs.remove(c);
+				}
 			}
 		});
 	}
 
 	@Override
 	protected Connection getConnectionInternal() throws SQLException {
-		// try to get the connection from thread local storage.
-		SimpleEntry<ConnectionHandle, Boolean> result = this.tlConnections.get();
-		// we should always be successful. If not, it means we have more threads asking
-		// us for a connection than we've got available. This is not supported so we flip
-		// back our strategy.
+		ThreadSlot slot = this.tlConnections.get();
+		if (slot != null){
+			// fast path: our cached connection is sitting idle.
+			if (slot.state.compareAndSet(SLOT_IDLE, SLOT_IN_USE)){
+				slot.handle.logicallyClosed.set(false);
+				if (this.pool.statisticsEnabled){
+					this.pool.statistics.incrementCachedConnectionHits();
+				}
+				return slot.handle;
+			}
+
+			if (slot.state.get() == SLOT_REVOKED || slot.handle.logicallyClosed.get()){
+				// revoked, or closed off by another thread and thus never returned to us. Drop it.
+				this.threadFinalizableRefs.remove(slot);
+				this.tlConnections.remove();
+				slot = null;
+			}
+		}
+
+		if (this.pool.statisticsEnabled){
+			this.pool.statistics.incrementCachedConnectionMisses();
+		}
+
+		ConnectionHandle result = (ConnectionHandle) this.fallbackStrategy.pollConnection();
 		if (result == null){
-			this.pool.cachedPoolStrategy = false;
-			this.pool.connectionStrategy = this.fallbackStrategy;
-			stealExistingAllocations();
-			// get a connection as if under our fallback strategy now.
-			return (ConnectionHandle) this.pool.connectionStrategy.getConnection();
+			// shared partitions have run dry: stop promoting threads and hand back idle cached connections. 
+			this.lastPressureTime = System.nanoTime();
+			revokeIdleSlots();
+			result = (ConnectionHandle) ((AbstractConnectionStrategy)this.fallbackStrategy).getConnectionInternal();
 		}
-		
-		return result.getKey();
+
+		if (result != null && slot == null
+				&& System.nanoTime() - this.lastPressureTime >= PRESSURE_COOLDOWN_IN_NANOS
+				&& this.threadFinalizableRefs.size() < this.maxSlots){
+			// promote this thread
+			slot = new ThreadSlot(result);
+			this.tlConnections.set(slot);
+			threadWatch(slot);
+		}
+
+		return result;
 	}
 
 	@Override
@@ -145,11 +214,26 @@ public class CachedConnectionStrategy extends AbstractConnectionStrategy {
 		throw new UnsupportedOperationException();
 	}
 
-
+	/** Called when a connection is being released. If the connection belongs to the calling
+	 * thread's slot, it's parked there (instead of going back to the partition).
+	 * @param handle connection being released
+	 * @return true if the connection was cached, false if it should be placed back in the partition.
+	 */
+	protected boolean cacheOnRelease(ConnectionHandle handle){
+		ThreadSlot slot = this.tlConnections.get();
+		if (slot != null && slot.handle == handle && slot.state.get() == SLOT_IN_USE){
+			handle.logicallyClosed.set(true);
+			slot.state.set(SLOT_IDLE);
+			return true;
+		}
+		return false;
+	}
 
 	public void terminateAllConnections() {
-		for (ConnectionHandle conn : this.threadFinalizableRefs.keySet()){
-			this.pool.destroyConnection(conn);
+		for (ThreadSlot slot : this.threadFinalizableRefs.keySet()){
+			if (slot.state.compareAndSet(SLOT_IDLE, SLOT_REVOKED)){
+				this.pool.destroyConnection(slot.handle);
+			}
 		}
 		this.threadFinalizableRefs.clear();
 		
@@ -161,79 +245,42 @@ public class CachedConnectionStrategy extends AbstractConnectionStrategy {
 	 */
 	@Override
 	public void cleanupConnection(ConnectionHandle oldHandle, ConnectionHandle newHandle) {
-		this.threadFinalizableRefs.remove(oldHandle);
-		this.threadWatch(newHandle);
-	}
-
-
-
-/**
- * This is moved here to aid testing by exposing a dumbGet() method.
- * @author wwadge
- *
- */
- protected class CachedConnectionStrategyThreadLocal<T> extends ThreadLocal<SimpleEntry<ConnectionHandle, Boolean>> {
-
-	private ConnectionStrategy fallbackStrategy;
-	private CachedConnectionStrategy ccs;
-
-	public CachedConnectionStrategyThreadLocal(CachedConnectionStrategy ccs, ConnectionStrategy fallbackStrategy){
-		this.fallbackStrategy = fallbackStrategy;
-		this.ccs = ccs;
-	}
-
-	@Override
-	protected SimpleEntry<ConnectionHandle, Boolean> initialValue() {
-		SimpleEntry<ConnectionHandle, Boolean> result = null;
-		ConnectionHandle c = null;
-		// grab a connection from any other configured fallback strategy
-		for (int i=0; i < 4*3; i++){	// there is a slight race with the pool watch creation thread so spin for a bit
-			// no big deal if it keeps failing, we just switch to default connection strategy
-			c = (ConnectionHandle)this.fallbackStrategy.pollConnection();
-			if (c != null){
-				break;
-			}
-
-			// oh-huh? either we are racing while resizing the pool or else no of threads > no of connections. Let's wait a bit 
-			// and try again one last time
-			Uninterruptibles.sleepUninterruptibly(100, TimeUnit.MILLISECONDS);
-		}
-
-
-		if (c != null){
-			result = new SimpleEntry<ConnectionHandle, Boolean>(c, false);
-			this.ccs.threadWatch(c);
+		ThreadSlot slot = this.tlConnections.get();
+		if (slot != null && newHandle != null && slot.handle == oldHandle){
+			slot.handle = newHandle; // the handle is recreated on every close
 		}
-
-		return result;
 	}
 
-
-	public SimpleEntry<ConnectionHandle, Boolean> dumbGet(){
-		return super.get();
+	/** Returns the number of threads currently holding a thread-local slot.
+	 * @return slot count
+	 */
+	public int getSlotCount(){
+		return this.threadFinalizableRefs.size();
 	}
 
-	@Override
-	public SimpleEntry<ConnectionHandle, Boolean> get() {
-		SimpleEntry<ConnectionHandle, Boolean> result = super.get();
-		// have we got one that's cached and unused? Mark it as in use. 
-		if (result == null || result.getValue()){
-			// ... otherwise grab a new connection 
-			ConnectionHandle fallbackConnection = (ConnectionHandle)this.fallbackStrategy.pollConnection();
-			if (fallbackConnection == null){
-				return null;
-			}
-			result = new SimpleEntry<ConnectionHandle, Boolean>(fallbackConnection, false);
-		} 
-
-		result.setValue(true);
-
-		result.getKey().logicallyClosed.set(false);
-		return result;
+	/** Returns the max number of threads that may hold a thread-local slot at any one time.
+	 * @return max slot count
+	 */
+	public int getMaxSlots(){
+		return this.maxSlots;
 	}
-}
 
+	/**
+	 * A thread-local home for a single connection. 
+	 * @author wallacew
+	 *
+	 */
+	protected static class ThreadSlot {
+		/** One of SLOT_IDLE, SLOT_IN_USE, SLOT_REVOKED. */
+		protected final AtomicInteger state = new AtomicInteger(SLOT_IN_USE);
+		/** Connection cached in this slot. */
+		protected volatile ConnectionHandle handle;
 
-	
-	
+		/** Creates a new slot, already in use by the current thread.
+		 * @param handle connection to cache.
+		 */
+		protected ThreadSlot(ConnectionHandle handle){
+			this.handle = handle;
+		}
+	}
 }
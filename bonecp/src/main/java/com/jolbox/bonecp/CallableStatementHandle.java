@@ -65,6 +65,21 @@ public class CallableStatementHandle extends PreparedStatementHandle implements
 		this.cache = cache;
 	}
 
+	/**
+	 * Constructor for lean handles, used when no connection hook, statement logging or statistics are configured.
+	 * 
+	 * @param internalCallableStatement
+	 * @param sql
+	 * @param cache
+	 * @param connectionHandle
+	 * @param cacheKey key to cache
+	 */
+	protected CallableStatementHandle(CallableStatement internalCallableStatement,
+			String sql, IStatementCache cache, ConnectionHandle connectionHandle, String cacheKey) {
+		super(internalCallableStatement, sql, cache, connectionHandle, cacheKey);
+		this.internalCallableStatement = internalCallableStatement;
+	}
+
 	/**
 	 * {@inheritDoc}
 	 * 
@@ -428,7 +443,7 @@ public class CallableStatementHandle extends PreparedStatementHandle implements
 		try {
 			this.internalCallableStatement.setAsciiStream(parameterName, x);
 			if (this.logStatementsEnabled){
-				this.logParams.put(parameterName, x);
+				this.logParams.set(parameterName, x);
 			}
 		} catch (SQLException e) {
 			throw this.connectionHandle.markPossiblyBroken(e);
@@ -443,7 +458,7 @@ public class CallableStatementHandle extends PreparedStatementHandle implements
 		try {
 			this.internalCallableStatement.setAsciiStream(parameterName, x, length);
 			if (this.logStatementsEnabled){
-				this.logParams.put(parameterName, x);
+				this.logParams.set(parameterName, x);
 			}
 		} catch (SQLException e) {
 			throw this.connectionHandle.markPossiblyBroken(e);
@@ -458,7 +473,7 @@ public class CallableStatementHandle extends PreparedStatementHandle implements
 		try {
 			this.internalCallableStatement.setBinaryStream(parameterName, x);
 			if (this.logStatementsEnabled){
-				this.logParams.put(parameterName, x);
+				this.logParams.set(parameterName, x);
 			}
 		} catch (SQLException e) {
 			throw this.connectionHandle.markPossiblyBroken(e);
@@ -472,7 +487,7 @@ public class CallableStatementHandle extends PreparedStatementHandle implements
 			try {
 				this.internalCallableStatement.setBinaryStream(parameterName, x, length);
 				if (this.logStatementsEnabled){
-					this.logParams.put(parameterName, x);
+					this.logParams.set(parameterName, x);
 				}
 			} catch (SQLException e) {
 				throw this.connectionHandle.markPossiblyBroken(e);
@@ -486,7 +501,7 @@ public class CallableStatementHandle extends PreparedStatementHandle implements
 			try {
 				this.internalCallableStatement.setBlob(parameterName, x);
 				if (this.logStatementsEnabled){
-					this.logParams.put(parameterName, x);
+					this.logParams.set(parameterName, x);
 				}
 			} catch (SQLException e) {
 				throw this.connectionHandle.markPossiblyBroken(e);
@@ -501,7 +516,7 @@ public class CallableStatementHandle extends PreparedStatementHandle implements
 			try {
 				this.internalCallableStatement.setBlob(parameterName, inputStream);
 				if (this.logStatementsEnabled){
-					this.logParams.put(parameterName, inputStream);
+					this.logParams.set(parameterName, inputStream);
 				}
 			} catch (SQLException e) {
 				throw this.connectionHandle.markPossiblyBroken(e);
@@ -516,7 +531,7 @@ public class CallableStatementHandle extends PreparedStatementHandle implements
 			try {
 				this.internalCallableStatement.setBlob(parameterName, inputStream, length);
 				if (this.logStatementsEnabled){
-					this.logParams.put(parameterName, inputStream);
+					this.logParams.set(parameterName, inputStream);
 				}
 			} catch (SQLException e) {
 				throw this.connectionHandle.markPossiblyBroken(e);
@@ -532,7 +547,7 @@ public class CallableStatementHandle extends PreparedStatementHandle implements
 		try {
 			this.internalCallableStatement.setCharacterStream(parameterName, reader);
 			if (this.logStatementsEnabled){
-				this.logParams.put(parameterName, reader);
+				this.logParams.set(parameterName, reader);
 			}
 		} catch (SQLException e) {
 			throw this.connectionHandle.markPossiblyBroken(e);
@@ -546,7 +561,7 @@ public class CallableStatementHandle extends PreparedStatementHandle implements
 		try {
 			this.internalCallableStatement.setCharacterStream(parameterName, reader, length);
 			if (this.logStatementsEnabled){
-				this.logParams.put(parameterName, reader);
+				this.logParams.set(parameterName, reader);
 			}
 		} catch (SQLException e) {
 			throw this.connectionHandle.markPossiblyBroken(e);
@@ -559,7 +574,7 @@ public class CallableStatementHandle extends PreparedStatementHandle implements
 		try {
 			this.internalCallableStatement.setClob(parameterName, x);
 			if (this.logStatementsEnabled){
-				this.logParams.put(parameterName, x);
+				this.logParams.set(parameterName, x);
 			}
 		} catch (SQLException e) {
 			throw this.connectionHandle.markPossiblyBroken(e);
@@ -573,7 +588,7 @@ public class CallableStatementHandle extends PreparedStatementHandle implements
 		try {
 			this.internalCallableStatement.setClob(parameterName, reader);
 			if (this.logStatementsEnabled){
-				this.logParams.put(parameterName, reader);
+				this.logParams.set(parameterName, reader);
 			}
 		} catch (SQLException e) {
 			throw this.connectionHandle.markPossiblyBroken(e);
@@ -587,7 +602,7 @@ public class CallableStatementHandle extends PreparedStatementHandle implements
 		try {
 			this.internalCallableStatement.setClob(parameterName, reader, length);
 			if (this.logStatementsEnabled){
-				this.logParams.put(parameterName, reader);
+				this.logParams.set(parameterName, reader);
 			}
 		} catch (SQLException e) {
 			throw this.connectionHandle.markPossiblyBroken(e);
@@ -601,7 +616,7 @@ public class CallableStatementHandle extends PreparedStatementHandle implements
 		try {
 			this.internalCallableStatement.setNCharacterStream(parameterName, value);
 			if (this.logStatementsEnabled){
-				this.logParams.put(parameterName, value);
+				this.logParams.set(parameterName, value);
 			}
 		} catch (SQLException e) {
 			throw this.connectionHandle.markPossiblyBroken(e);
@@ -615,7 +630,7 @@ public class CallableStatementHandle extends PreparedStatementHandle implements
 		try {
 			this.internalCallableStatement.setNCharacterStream(parameterName, value, length);
 			if (this.logStatementsEnabled){
-				this.logParams.put(parameterName, value);
+				this.logParams.set(parameterName, value);
 			}
 		} catch (SQLException e) {
 			throw this.connectionHandle.markPossiblyBroken(e);
@@ -628,7 +643,7 @@ public class CallableStatementHandle extends PreparedStatementHandle implements
 		try {
 			this.internalCallableStatement.setNClob(parameterName, value);
 			if (this.logStatementsEnabled){
-				this.logParams.put(parameterName, value);
+				this.logParams.set(parameterName, value);
 			}
 		} catch (SQLException e) {
 			throw this.connectionHandle.markPossiblyBroken(e);
@@ -642,7 +657,7 @@ public class CallableStatementHandle extends PreparedStatementHandle implements
 		try {
 			this.internalCallableStatement.setNClob(parameterName, reader);
 			if (this.logStatementsEnabled){
-				this.logParams.put(parameterName, reader);
+				this.logParams.set(parameterName, reader);
 			}
 		} catch (SQLException e) {
 			throw this.connectionHandle.markPossiblyBroken(e);
@@ -656,7 +671,7 @@ public class CallableStatementHandle extends PreparedStatementHandle implements
 		try {
 			this.internalCallableStatement.setNClob(parameterName, reader, length);
 			if (this.logStatementsEnabled){
-				this.logParams.put(parameterName, reader);
+				this.logParams.set(parameterName, reader);
 			}
 		} catch (SQLException e) {
 			throw this.connectionHandle.markPossiblyBroken(e);
@@ -670,7 +685,7 @@ public class CallableStatementHandle extends PreparedStatementHandle implements
 		try {
 			this.internalCallableStatement.setNString(parameterName, value);
 			if (this.logStatementsEnabled){
-				this.logParams.put(parameterName, value);
+				this.logParams.set(parameterName, value);
 			}
 		} catch (SQLException e) {
 			throw this.connectionHandle.markPossiblyBroken(e);
@@ -683,7 +698,7 @@ public class CallableStatementHandle extends PreparedStatementHandle implements
 		try {
 			this.internalCallableStatement.setRowId(parameterName, x);
 			if (this.logStatementsEnabled){
-				this.logParams.put(parameterName, x);
+				this.logParams.set(parameterName, x);
 			}
 		} catch (SQLException e) {
 			throw this.connectionHandle.markPossiblyBroken(e);
@@ -698,7 +713,7 @@ public class CallableStatementHandle extends PreparedStatementHandle implements
 		try {
 			this.internalCallableStatement.setSQLXML(parameterName, xmlObject);
 			if (this.logStatementsEnabled){
-				this.logParams.put(parameterName, xmlObject);
+				this.logParams.set(parameterName, xmlObject);
 			}
 		} catch (SQLException e) {
 			throw this.connectionHandle.markPossiblyBroken(e);
@@ -1431,7 +1446,7 @@ public class CallableStatementHandle extends PreparedStatementHandle implements
 		try {
 			this.internalCallableStatement.setAsciiStream(parameterName, x, length);
 			if (this.logStatementsEnabled){
-				this.logParams.put(parameterName, x);
+				this.logParams.set(parameterName, x);
 			}
 		} catch (SQLException e) {
 			throw this.connectionHandle.markPossiblyBroken(e);
@@ -1454,7 +1469,7 @@ public class CallableStatementHandle extends PreparedStatementHandle implements
 		try {
 			this.internalCallableStatement.setBigDecimal(parameterName, x);
 			if (this.logStatementsEnabled){
-				this.logParams.put(parameterName, x);
+				this.logParams.set(parameterName, x);
 			}
 		} catch (SQLException e) {
 			throw this.connectionHandle.markPossiblyBroken(e);
@@ -1477,7 +1492,7 @@ public class CallableStatementHandle extends PreparedStatementHandle implements
 		try {
 			this.internalCallableStatement.setBinaryStream(parameterName, x, length);
 			if (this.logStatementsEnabled){
-				this.logParams.put(parameterName, x);
+				this.logParams.set(parameterName, x);
 			}
 		} catch (SQLException e) {
 			throw this.connectionHandle.markPossiblyBroken(e);
@@ -1496,7 +1511,7 @@ public class CallableStatementHandle extends PreparedStatementHandle implements
 		try {
 			this.internalCallableStatement.setBoolean(parameterName, x);
 			if (this.logStatementsEnabled){
-				this.logParams.put(parameterName, x);
+				this.logParams.set(parameterName, x);
 			}
 		} catch (SQLException e) {
 			throw this.connectionHandle.markPossiblyBroken(e);
@@ -1516,7 +1531,7 @@ public class CallableStatementHandle extends PreparedStatementHandle implements
 		try {
 			this.internalCallableStatement.setByte(parameterName, x);
 			if (this.logStatementsEnabled){
-				this.logParams.put(parameterName, x);
+				this.logParams.set(parameterName, x);
 			}
 		} catch (SQLException e) {
 			throw this.connectionHandle.markPossiblyBroken(e);
@@ -1536,7 +1551,7 @@ public class CallableStatementHandle extends PreparedStatementHandle implements
 		try {
 			this.internalCallableStatement.setBytes(parameterName, x);
 			if (this.logStatementsEnabled){
-				this.logParams.put(parameterName, x);
+				this.logParams.set(parameterName, x);
 			}
 		} catch (SQLException e) {
 			throw this.connectionHandle.markPossiblyBroken(e);
@@ -1559,7 +1574,7 @@ public class CallableStatementHandle extends PreparedStatementHandle implements
 		try {
 			this.internalCallableStatement.setCharacterStream(parameterName, reader, length);
 			if (this.logStatementsEnabled){
-				this.logParams.put(parameterName, reader);
+				this.logParams.set(parameterName, reader);
 			}
 		} catch (SQLException e) {
 			throw this.connectionHandle.markPossiblyBroken(e);
@@ -1579,7 +1594,7 @@ public class CallableStatementHandle extends PreparedStatementHandle implements
 		try {
 			this.internalCallableStatement.setDate(parameterName, x);
 			if (this.logStatementsEnabled){
-				this.logParams.put(parameterName, x);
+				this.logParams.set(parameterName, x);
 			}
 		} catch (SQLException e) {
 			throw this.connectionHandle.markPossiblyBroken(e);
@@ -1600,7 +1615,7 @@ public class CallableStatementHandle extends PreparedStatementHandle implements
 		try {
 			this.internalCallableStatement.setDate(parameterName, x, cal);
 			if (this.logStatementsEnabled){
-				this.logParams.put(parameterName, PoolUtil.safePrint(x, ", cal=", cal));
+				this.logParams.set(parameterName, PoolUtil.safePrint(x, ", cal=", cal));
 			}
 		} catch (SQLException e) {
 			throw this.connectionHandle.markPossiblyBroken(e);
@@ -1619,7 +1634,7 @@ public class CallableStatementHandle extends PreparedStatementHandle implements
 		try {
 			this.internalCallableStatement.setDouble(parameterName, x);
 			if (this.logStatementsEnabled){
-				this.logParams.put(parameterName, x);
+				this.logParams.set(parameterName, x);
 			}
 		} catch (SQLException e) {
 			throw this.connectionHandle.markPossiblyBroken(e);
@@ -1638,7 +1653,7 @@ public class CallableStatementHandle extends PreparedStatementHandle implements
 		try {
 			this.internalCallableStatement.setFloat(parameterName, x);
 			if (this.logStatementsEnabled){
-				this.logParams.put(parameterName, x);
+				this.logParams.set(parameterName, x);
 			}
 		} catch (SQLException e) {
 			throw this.connectionHandle.markPossiblyBroken(e);
@@ -1657,7 +1672,7 @@ public class CallableStatementHandle extends PreparedStatementHandle implements
 		try {
 			this.internalCallableStatement.setInt(parameterName, x);
 			if (this.logStatementsEnabled){
-				this.logParams.put(parameterName, x);
+				this.logParams.set(parameterName, x);
 			}
 		} catch (SQLException e) {
 			throw this.connectionHandle.markPossiblyBroken(e);
@@ -1676,7 +1691,7 @@ public class CallableStatementHandle extends PreparedStatementHandle implements
 		try {
 			this.internalCallableStatement.setLong(parameterName, x);
 			if (this.logStatementsEnabled){
-				this.logParams.put(parameterName, x);
+				this.logParams.set(parameterName, x);
 			}
 		} catch (SQLException e) {
 			throw this.connectionHandle.markPossiblyBroken(e);
@@ -1695,7 +1710,7 @@ public class CallableStatementHandle extends PreparedStatementHandle implements
 		try {
 			this.internalCallableStatement.setNull(parameterName, sqlType);
 			if (this.logStatementsEnabled){
-				this.logParams.put(parameterName, PoolUtil.safePrint("[SQL NULL type ", sqlType, "]"));
+				this.logParams.set(parameterName, PoolUtil.safePrint("[SQL NULL type ", sqlType, "]"));
 			}
 		} catch (SQLException e) {
 			throw this.connectionHandle.markPossiblyBroken(e);
@@ -1716,7 +1731,7 @@ public class CallableStatementHandle extends PreparedStatementHandle implements
 		try {
 			this.internalCallableStatement.setNull(parameterName, sqlType, typeName);
 			if (this.logStatementsEnabled){
-				this.logParams.put(parameterName, PoolUtil.safePrint("[SQL NULL type ", sqlType, ", type=", typeName+"]"));
+				this.logParams.set(parameterName, PoolUtil.safePrint("[SQL NULL type ", sqlType, ", type=", typeName+"]"));
 			}
 		} catch (SQLException e) {
 			throw this.connectionHandle.markPossiblyBroken(e);
@@ -1736,7 +1751,7 @@ public class CallableStatementHandle extends PreparedStatementHandle implements
 		try {
 			this.internalCallableStatement.setObject(parameterName, x);
 			if (this.logStatementsEnabled){
-				this.logParams.put(parameterName, x);
+				this.logParams.set(parameterName, x);
 			}
 		} catch (SQLException e) {
 			throw this.connectionHandle.markPossiblyBroken(e);
@@ -1757,7 +1772,7 @@ public class CallableStatementHandle extends PreparedStatementHandle implements
 		try {
 			this.internalCallableStatement.setObject(parameterName, x, targetSqlType);
 			if (this.logStatementsEnabled){
-				this.logParams.put(parameterName, x);
+				this.logParams.set(parameterName, x);
 			}
 		} catch (SQLException e) {
 			throw this.connectionHandle.markPossiblyBroken(e);
@@ -1778,7 +1793,7 @@ public class CallableStatementHandle extends PreparedStatementHandle implements
 		try {
 			this.internalCallableStatement.setObject(parameterName, x, targetSqlType, scale);
 			if (this.logStatementsEnabled){
-				this.logParams.put(parameterName, x);
+				this.logParams.set(parameterName, x);
 			}
 		} catch (SQLException e) {
 			throw this.connectionHandle.markPossiblyBroken(e);
@@ -1792,7 +1807,7 @@ public class CallableStatementHandle extends PreparedStatementHandle implements
 		try {
 			this.internalCallableStatement.setShort(parameterName, x);
 			if (this.logStatementsEnabled){
-				this.logParams.put(parameterName, x);
+				this.logParams.set(parameterName, x);
 			}
 		} catch (SQLException e) {
 			throw this.connectionHandle.markPossiblyBroken(e);
@@ -1812,7 +1827,7 @@ public class CallableStatementHandle extends PreparedStatementHandle implements
 		try {
 			this.internalCallableStatement.setString(parameterName, x);
 			if (this.logStatementsEnabled){
-				this.logParams.put(parameterName, x);
+				this.logParams.set(parameterName, x);
 			}
 		} catch (SQLException e) {
 			throw this.connectionHandle.markPossiblyBroken(e);
@@ -1831,7 +1846,7 @@ public class CallableStatementHandle extends PreparedStatementHandle implements
 		try {
 			this.internalCallableStatement.setTime(parameterName, x);
 			if (this.logStatementsEnabled){
-				this.logParams.put(parameterName, x);
+				this.logParams.set(parameterName, x);
 			}
 		} catch (SQLException e) {
 			throw this.connectionHandle.markPossiblyBroken(e);
@@ -1852,7 +1867,7 @@ public class CallableStatementHandle extends PreparedStatementHandle implements
 		try {
 			this.internalCallableStatement.setTime(parameterName, x, cal);
 			if (this.logStatementsEnabled){
-				this.logParams.put(parameterName, PoolUtil.safePrint(x, ", cal=", cal));
+				this.logParams.set(parameterName, PoolUtil.safePrint(x, ", cal=", cal));
 			}
 		} catch (SQLException e) {
 			throw this.connectionHandle.markPossiblyBroken(e);
@@ -1873,7 +1888,7 @@ public class CallableStatementHandle extends PreparedStatementHandle implements
 		try {
 			this.internalCallableStatement.setTimestamp(parameterName, x);
 			if (this.logStatementsEnabled){
-				this.logParams.put(parameterName, x);
+				this.logParams.set(parameterName, x);
 			}
 		} catch (SQLException e) {
 			throw this.connectionHandle.markPossiblyBroken(e);
@@ -1894,7 +1909,7 @@ public class CallableStatementHandle extends PreparedStatementHandle implements
 		try {
 			this.internalCallableStatement.setTimestamp(parameterName, x, cal);
 			if (this.logStatementsEnabled){
-				this.logParams.put(parameterName, PoolUtil.safePrint(x, ", cal=", cal));
+				this.logParams.set(parameterName, PoolUtil.safePrint(x, ", cal=", cal));
 			}
 		} catch (SQLException e) {
 			throw this.connectionHandle.markPossiblyBroken(e);
@@ -1913,7 +1928,7 @@ public class CallableStatementHandle extends PreparedStatementHandle implements
 		try {
 			this.internalCallableStatement.setURL(parameterName, val);
 			if (this.logStatementsEnabled){
-				this.logParams.put(parameterName, val);
+				this.logParams.set(parameterName, val);
 			}
 		} catch (SQLException e) {
 			throw this.connectionHandle.markPossiblyBroken(e);
@@ -0,0 +1,177 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+/**
+ * 
+ */
+package com.jolbox.bonecp;
+
+import java.lang.reflect.Method;
+import java.sql.Connection;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Background stage that physically closes connections the pool has decided to destroy, so that a close() which 
+ * blocks (unreachable server, hung TLS teardown...) is paid for by a pool thread rather than by whichever 
+ * application thread happened to hand the connection back. 
+ * 
+ * Connections queue up for a single closer thread. If the queue is full (typically because closes are hanging) 
+ * we fall back to Connection.abort(), which JDBC 4.1 drivers implement without blocking the caller, and only 
+ * close on the calling thread if the driver can't abort either. Whichever of these ends up closing the connection
+ * also clears the handle's statement caches, so the statements are never closed by two threads at once.
+ * 
+ * @author wallacew
+ *
+ */
+public class ConnectionCloser {
+	/** Class logger. */
+	private static final Logger logger = LoggerFactory.getLogger(ConnectionCloser.class);
+	/** Connection.abort(Executor), null if running on a pre-JDBC 4.1 JVM. */
+	private static final Method abortMethod = lookupAbortMethod();
+	/** Closes connections in the background. */
+	private final ThreadPoolExecutor closer;
+	/** Executor handed to drivers for abort() work. */
+	private final ExecutorService aborter;
+	/** Number of connections closed via abort() because the queue was full. */
+	private final AtomicLong abortedCount = new AtomicLong();
+
+	/** Creates a new closer.
+	 * @param queueSize max number of connections waiting to be closed.
+	 * @param suffix thread name suffix (pool name).
+	 */
+	public ConnectionCloser(int queueSize, String suffix){
+		this.closer = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(queueSize), 
+				new CustomThreadFactory("BoneCP-connection-closer"+suffix, true));
+		// threads are only spun up on overflow, and there can't be more aborts in flight than connections in the pool.
+		this.aborter = Executors.newCachedThreadPool(new CustomThreadFactory("BoneCP-connection-aborter"+suffix, true));
+	}
+
+	/** Looks up Connection.abort(Executor).
+	 * @return method, or null if not available.
+	 */
+	private static Method lookupAbortMethod(){
+		try {
+			return Connection.class.getMethod("abort", Executor.class);
+		} catch (Exception e) {
+			return null; // pre-JDBC 4.1
+		}
+	}
+
+	/** Closes off the given handle's statements and database connection in the background. The caller must have
+	 * already marked the handle as closed and updated the pool's counters.
+	 * @param handle handle being destroyed.
+	 * @param connection its database connection.
+	 */
+	protected void close(final ConnectionHandle handle, final Connection connection){
+		try {
+			this.closer.execute(new Runnable() {
+				// @Override
+				public void run() {
+					closeNow(handle, connection);
+				}
+			});
+		} catch (RejectedExecutionException e){
+			if (!abort(handle, connection)){
+				closeNow(handle, connection); // last resort
+			}
+		}
+	}
+
+	/** Closes off the given handle's statements and connection on this thread, logging any failure.
+	 * @param handle handle being destroyed.
+	 * @param connection its database connection.
+	 */
+	protected void closeNow(ConnectionHandle handle, Connection connection){
+		clearStatementCaches(handle);
+		try {
+			connection.close();
+		} catch (Throwable t) { // keep the closer alive no matter what the driver does
+			logger.error("Error in attempting to close connection", t);
+		}
+	}
+
+	/** Closes off the statements cached by the given handle, logging any failure.
+	 * @param handle handle being destroyed.
+	 */
+	private void clearStatementCaches(ConnectionHandle handle){
+		try {
+			handle.clearStatementCaches(true);
+		} catch (Throwable t) {
+			logger.error("Error in attempting to close statements", t);
+		}
+	}
+
+	/** Attempts to abort the given connection. If the driver accepts, the handle's statement caches are cleared 
+	 * on the aborter as well.
+	 * @param handle handle being destroyed.
+	 * @param connection connection to abort.
+	 * @return true if the driver accepted the abort.
+	 */
+	protected boolean abort(final ConnectionHandle handle, Connection connection){
+		if (abortMethod == null || this.aborter.isShutdown()){
+			return false;
+		}
+		Connection target = connection instanceof RecordingConnection ? ((RecordingConnection) connection).getTarget() : connection;
+		try {
+			abortMethod.invoke(target, this.aborter);
+			this.abortedCount.incrementAndGet();
+		} catch (Throwable t) { // AbstractMethodError for JDBC 4.0 drivers, SQLException, ...
+			logger.debug("Driver failed to abort connection, closing it on the calling thread instead", t);
+			return false;
+		}
+		try {
+			this.aborter.execute(new Runnable() {
+				// @Override
+				public void run() {
+					clearStatementCaches(handle);
+				}
+			});
+		} catch (RejectedExecutionException e){ // shut down in the meantime
+			clearStatementCaches(handle);
+		}
+		return true;
+	}
+
+	/** Stops accepting connections. Connections already queued are still closed by the (daemon) closer thread. */
+	public void shutdown(){
+		this.closer.shutdown();
+		this.aborter.shutdown();
+	}
+
+	/** Returns the number of connections waiting to be closed.
+	 * @return queue depth
+	 */
+	public int getPendingCount(){
+		return this.closer.getQueue().size();
+	}
+
+	/** Returns the number of connections that were aborted because the closer queue was full.
+	 * @return aborted connections
+	 */
+	public long getAbortedCount(){
+		return this.abortedCount.get();
+	}
+}
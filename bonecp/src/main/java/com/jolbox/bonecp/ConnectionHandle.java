@@ -16,8 +16,6 @@
 package com.jolbox.bonecp;
 
 import java.io.Serializable;
-import java.lang.ref.Reference;
-import java.lang.reflect.Proxy;
 import java.net.SocketException;
 import java.sql.Array;
 import java.sql.Blob;
@@ -43,6 +41,7 @@ import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -127,7 +126,7 @@ public class ConnectionHandle implements Connection,Serializable{
 	/** Set to true if we have statement caching enabled. */
 	protected boolean statementCachingEnabled;
 	/** The recorded actions list used to replay the transaction. */
-	private List<ReplayLog> replayLog;
+	private ReplayLogBuffer replayLog;
 	/** If true, connection is currently playing back a saved transaction. */
 	private boolean inReplayMode;
 	/** Map of translations + result from last recovery. */
@@ -138,6 +137,12 @@ public class ConnectionHandle implements Connection,Serializable{
 	protected Thread threadUsingConnection;
 	/** Configured max connection age. */
 	@VisibleForTesting protected long maxConnectionAgeInMs;
+	/** Current lease, as numbered by the workload recorder. */
+	protected int workloadLeaseId;
+	/** System.nanoTime() at which the current lease started (workload capture only). */
+	protected long workloadCheckOutTime;
+	/** System.nanoTime() at which the current lease started (statistics only). */
+	protected long statsCheckOutTime;
 	/** if true, we care about statistics. */
 	private boolean statisticsEnabled;
 	/** Statistics handle. */
@@ -146,8 +151,13 @@ public class ConnectionHandle implements Connection,Serializable{
 	 * enabled.
 	 */
 	private volatile Thread threadWatch;
-	/** Handle to pool.finalizationRefs. */
-	protected Map<Connection, Reference<ConnectionHandle>> finalizableRefs;
+	/** Make-before-break progress once this connection has expired (see ConnectionRecycler). Shared by every handle
+	 * wrapping the same connection since the handle is recreated on every close. */
+	protected AtomicInteger recycleState = new AtomicInteger(ConnectionRecycler.RECYCLE_NONE);
+	/** Slot of this connection in the pool's lease table (only valid while leaseAnchor is set). */
+	protected int leaseSlot;
+	/** Kept strongly reachable by whichever handle currently wraps the connection; the lease table only holds it weakly. Null = not tracked. */
+	protected Object leaseAnchor;
 	/** If true, connection tracking is disabled in the config. */
 	protected boolean connectionTrackingDisabled;
 	/** If true, transaction has been marked as COMMITed or ROLLBACKed. */
@@ -209,7 +219,6 @@ public class ConnectionHandle implements Connection,Serializable{
 		}
 
 		this.url = pool.getConfig().getJdbcUrl();
-		this.finalizableRefs = pool.getFinalizableRefs(); 
 		this.defaultReadOnly = pool.getConfig().getDefaultReadOnly();
 		this.defaultCatalog = pool.getConfig().getDefaultCatalog();
 		this.defaultTransactionIsolationValue = pool.getConfig().getDefaultTransactionIsolationValue();
@@ -228,6 +237,9 @@ public class ConnectionHandle implements Connection,Serializable{
 		this.connectionHook = this.pool.getConfig().getConnectionHook();
 
 		this.maxConnectionAgeInMs = pool.getConfig().getMaxConnectionAge(TimeUnit.MILLISECONDS);
+		if (!recreating){ // spread out the expiry of connections opened together
+			this.maxConnectionAgeInMs = jitterMaxConnectionAge(this.maxConnectionAgeInMs, pool.getConfig().getMaxConnectionAgeJitterPercent());
+		}
 		this.doubleCloseCheck = pool.getConfig().isCloseConnectionWatch();
 		this.logStatementsEnabled = pool.getConfig().isLogStatementsEnabled();
 		int cacheSize = pool.getConfig().getStatementsCacheSize();
@@ -245,7 +257,8 @@ public class ConnectionHandle implements Connection,Serializable{
 		}
 
 		if (this.pool.getConfig().isTransactionRecoveryEnabled()){
-			this.replayLog = new ArrayList<ReplayLog>(30);
+			this.replayLog = new ReplayLogBuffer(this.pool.getConfig().getTransactionRecoveryMaxLogSizeInKB() * 1024L, 
+					this.statisticsEnabled ? this.statistics : null);
 			this.recoveryResult = new TransactionRecoveryResult();
 			if(!recreating){
 				// this kick-starts recording everything; which is not needed on recreation
@@ -289,11 +302,27 @@ public class ConnectionHandle implements Connection,Serializable{
 		handle.connectionHook = this.connectionHook;
 		handle.possiblyBroken = this.possiblyBroken;
 		handle.debugHandle = this.debugHandle;
+		handle.maxConnectionAgeInMs = this.maxConnectionAgeInMs;
+		handle.recycleState = this.recycleState;
+		LeaseTable.transfer(this, handle);
 		this.connection = null;
 		
 		return handle;
 	}
 
+	/** Shortens the given max connection age by a random amount of up to jitterPercent so that connections opened 
+	 * together don't all expire together.
+	 * @param maxConnectionAgeInMs configured max age (0 = disabled)
+	 * @param jitterPercent max percentage to take off
+	 * @return max age to apply to a connection
+	 */
+	protected static long jitterMaxConnectionAge(long maxConnectionAgeInMs, int jitterPercent){
+		if (maxConnectionAgeInMs <= 0){
+			return maxConnectionAgeInMs;
+		}
+		return maxConnectionAgeInMs - (long)(Math.random() * maxConnectionAgeInMs * jitterPercent / 100);
+	}
+
 
 
 
@@ -483,6 +512,22 @@ public class ConnectionHandle implements Connection,Serializable{
 
 			if (this.logicallyClosed.compareAndSet(false, true)) {
 
+				if (this.pool.leakDetector != null){
+					this.pool.leakDetector.checkIn(this);
+				}
+				if (!this.connectionTrackingDisabled && this.pool.leaseTable != null){
+					this.pool.leaseTable.checkIn(this);
+				}
+				if (this.pool.workloadRecorder != null){
+					this.pool.workloadRecorder.checkIn(this);
+				}
+				if (this.statisticsEnabled){
+					this.statistics.addConnectionHoldTime(System.nanoTime() - this.statsCheckOutTime);
+				}
+				if (PoolEvents.recording && this.statsCheckOutTime != 0){
+					PoolEvents.INSTANCE.connectionReleased(this, this.statsCheckOutTime);
+				}
+				this.statsCheckOutTime = 0; // a lease that began before a recording started must not report a stale hold time
 
 				if (this.threadWatch != null){
 					this.threadWatch.interrupt(); // if we returned the connection to the pool, terminate thread watch thread if it's
@@ -501,10 +546,6 @@ public class ConnectionHandle implements Connection,Serializable{
 					this.trackedStatement.clear();
 				} 
 
-				if (!this.connectionTrackingDisabled){
-					pool.getFinalizableRefs().remove(this.connection);
-				}
-
 				ConnectionHandle handle = null;
 
 				//recreate can throw a SQLException in constructor on recreation
@@ -543,13 +584,21 @@ public class ConnectionHandle implements Connection,Serializable{
 	 * @throws SQLException
 	 */
 	protected void internalClose() throws SQLException {
+		if (this.connection != null && this.pool != null && this.pool.connectionCloser != null && !this.pool.poolShuttingDown){
+			if (!this.connectionTrackingDisabled && this.pool.leaseTable != null){
+				this.pool.leaseTable.untrack(this);
+			}
+			this.logicallyClosed.set(true);
+			this.pool.connectionCloser.close(this, this.connection); // don't make the caller wait for the driver
+			return;
+		}
 		try {
 			clearStatementCaches(true);
 			if (this.connection != null){ // safety!
 				this.connection.close();
 
-				if (!this.connectionTrackingDisabled && this.finalizableRefs != null){
-					this.finalizableRefs.remove(this.connection);
+				if (!this.connectionTrackingDisabled && this.pool.leaseTable != null){
+					this.pool.leaseTable.untrack(this);
 				}
 			}
 			this.logicallyClosed.set(true);
@@ -711,11 +760,49 @@ public class ConnectionHandle implements Connection,Serializable{
 	}
 	// #endif JDK7
 
+	/** Returns true if statements on this connection can use the lean handles. Besides the pool-wide
+	 * settings, logging may have been switched on for this connection alone.
+	 * @return true to use lean statement handles
+	 */
+	private boolean useLeanStatementHandles(){
+		return this.pool.leanStatementHandles && !this.logStatementsEnabled;
+	}
+
+	/** Wraps a statement, using the lean handle if no hooks, logging or statistics are configured.
+	 * @param statement statement to wrap
+	 * @return statement handle
+	 */
+	private StatementHandle newStatementHandle(Statement statement){
+		return useLeanStatementHandles() ? new LeanStatementHandle(statement, this) : new StatementHandle(statement, this, this.logStatementsEnabled);
+	}
+
+	/** Wraps a prepared statement, using the lean handle if no hooks, logging or statistics are configured.
+	 * @param statement statement to wrap
+	 * @param sql sql statement
+	 * @param cacheKey key to cache
+	 * @return statement handle
+	 */
+	private PreparedStatementHandle newPreparedStatementHandle(PreparedStatement statement, String sql, String cacheKey){
+		return useLeanStatementHandles() ? new LeanPreparedStatementHandle(statement, sql, this, cacheKey, this.preparedStatementCache)
+				: new PreparedStatementHandle(statement, sql, this, cacheKey, this.preparedStatementCache);
+	}
+
+	/** Wraps a callable statement, using the lean handle if no hooks, logging or statistics are configured.
+	 * @param statement statement to wrap
+	 * @param sql sql statement
+	 * @param cacheKey key to cache
+	 * @return statement handle
+	 */
+	private CallableStatementHandle newCallableStatementHandle(CallableStatement statement, String sql, String cacheKey){
+		return useLeanStatementHandles() ? new LeanCallableStatementHandle(statement, sql, this, cacheKey, this.callableStatementCache)
+				: new CallableStatementHandle(statement, sql, this, cacheKey, this.callableStatementCache);
+	}
+
 	public Statement createStatement() throws SQLException {
 		Statement result = null;
 		checkClosed();
 		try {
-			result =new StatementHandle(this.connection.createStatement(), this, this.logStatementsEnabled);
+			result = newStatementHandle(this.connection.createStatement());
 			if (this.closeOpenStatements){
 				this.trackedStatement.put(result, maybeCaptureStackTrace());
 			}
@@ -730,7 +817,7 @@ public class ConnectionHandle implements Connection,Serializable{
 		Statement result = null;
 		checkClosed();
 		try {
-			result = new StatementHandle(this.connection.createStatement(resultSetType, resultSetConcurrency), this, this.logStatementsEnabled);
+			result = newStatementHandle(this.connection.createStatement(resultSetType, resultSetConcurrency));
 			if (this.closeOpenStatements){
 				this.trackedStatement.put(result, maybeCaptureStackTrace());
 			}
@@ -747,7 +834,7 @@ public class ConnectionHandle implements Connection,Serializable{
 		Statement result = null;
 		checkClosed();
 		try {
-			result = new StatementHandle(this.connection.createStatement(resultSetType, resultSetConcurrency, resultSetHoldability), this, this.logStatementsEnabled);
+			result = newStatementHandle(this.connection.createStatement(resultSetType, resultSetConcurrency, resultSetHoldability));
 			if (this.closeOpenStatements){
 				this.trackedStatement.put(result, maybeCaptureStackTrace());
 			}
@@ -812,6 +899,10 @@ public class ConnectionHandle implements Connection,Serializable{
 		checkClosed();
 		try {
 			result = this.connection.getMetaData();
+			MetaDataCache metaDataCache = this.pool.getMetaDataCache();
+			if (metaDataCache != null && result != null){
+				result = new DatabaseMetaDataHandle(result, this, metaDataCache);
+			}
 		} catch (SQLException e) {
 			throw markPossiblyBroken(e);
 		}
@@ -890,7 +981,7 @@ public class ConnectionHandle implements Connection,Serializable{
 
 		try {
 			long statStart=0;
-			if (this.statisticsEnabled){
+			if (this.statisticsEnabled || this.pool.workloadRecorder != null || PoolEvents.recording){
 				statStart = System.nanoTime();
 			}
 			if (this.statementCachingEnabled) {
@@ -898,9 +989,9 @@ public class ConnectionHandle implements Connection,Serializable{
 				result = this.callableStatementCache.get(cacheKey);
 			}
 
+			boolean cacheHit = result != null;
 			if (result == null){
-				result = new CallableStatementHandle(this.connection.prepareCall(sql), 
-						sql, this, cacheKey, this.callableStatementCache);
+				result = newCallableStatementHandle(this.connection.prepareCall(sql), sql, cacheKey);
 				result.setLogicallyOpen();
 			}
 
@@ -915,6 +1006,12 @@ public class ConnectionHandle implements Connection,Serializable{
 				this.statistics.addStatementPrepareTime(System.nanoTime()-statStart);
 				this.statistics.incrementStatementsPrepared();
 			}
+			if (this.pool.workloadRecorder != null){
+				this.pool.workloadRecorder.prepare(this, result, sql, statStart);
+			}
+			if (PoolEvents.recording && statStart != 0){
+				PoolEvents.INSTANCE.statementPrepared(this, sql, cacheHit, statStart);
+			}
 		} catch (SQLException e) {
 			throw markPossiblyBroken(e);
 		}
@@ -930,7 +1027,7 @@ public class ConnectionHandle implements Connection,Serializable{
 
 		try {
 			long statStart=0;
-			if (this.statisticsEnabled){
+			if (this.statisticsEnabled || this.pool.workloadRecorder != null || PoolEvents.recording){
 				statStart = System.nanoTime();
 			}
 			if (this.statementCachingEnabled) {
@@ -938,9 +1035,9 @@ public class ConnectionHandle implements Connection,Serializable{
 				result = this.callableStatementCache.get(cacheKey);
 			}
 
+			boolean cacheHit = result != null;
 			if (result == null){
-				result = new CallableStatementHandle(this.connection.prepareCall(sql, resultSetType, resultSetConcurrency), 
-						sql, this, cacheKey, this.callableStatementCache);
+				result = newCallableStatementHandle(this.connection.prepareCall(sql, resultSetType, resultSetConcurrency), sql, cacheKey);
 				result.setLogicallyOpen();
 			}
 
@@ -955,6 +1052,12 @@ public class ConnectionHandle implements Connection,Serializable{
 				this.statistics.addStatementPrepareTime(System.nanoTime()-statStart);
 				this.statistics.incrementStatementsPrepared();
 			}
+			if (this.pool.workloadRecorder != null){
+				this.pool.workloadRecorder.prepare(this, result, sql, statStart);
+			}
+			if (PoolEvents.recording && statStart != 0){
+				PoolEvents.INSTANCE.statementPrepared(this, sql, cacheHit, statStart);
+			}
 		} catch (SQLException e) {
 			throw markPossiblyBroken(e);
 		}
@@ -972,7 +1075,7 @@ public class ConnectionHandle implements Connection,Serializable{
 
 		try {
 			long statStart=0;
-			if (this.statisticsEnabled){
+			if (this.statisticsEnabled || this.pool.workloadRecorder != null || PoolEvents.recording){
 				statStart = System.nanoTime();
 			}
 			if (this.statementCachingEnabled) {
@@ -980,9 +1083,9 @@ public class ConnectionHandle implements Connection,Serializable{
 				result = this.callableStatementCache.get(cacheKey);
 			}
 
+			boolean cacheHit = result != null;
 			if (result == null){
-				result = new CallableStatementHandle(this.connection.prepareCall(sql, resultSetType, resultSetConcurrency, resultSetHoldability), 
-						sql, this, cacheKey, this.callableStatementCache);
+				result = newCallableStatementHandle(this.connection.prepareCall(sql, resultSetType, resultSetConcurrency, resultSetHoldability), sql, cacheKey);
 				result.setLogicallyOpen();
 			}
 
@@ -997,6 +1100,12 @@ public class ConnectionHandle implements Connection,Serializable{
 				this.statistics.addStatementPrepareTime(System.nanoTime()-statStart);
 				this.statistics.incrementStatementsPrepared();
 			}
+			if (this.pool.workloadRecorder != null){
+				this.pool.workloadRecorder.prepare(this, result, sql, statStart);
+			}
+			if (PoolEvents.recording && statStart != 0){
+				PoolEvents.INSTANCE.statementPrepared(this, sql, cacheHit, statStart);
+			}
 		} catch (SQLException e) {
 			throw markPossiblyBroken(e);
 		}
@@ -1012,7 +1121,7 @@ public class ConnectionHandle implements Connection,Serializable{
 
 		try {
 			long statStart=0;
-			if (this.statisticsEnabled){
+			if (this.statisticsEnabled || this.pool.workloadRecorder != null || PoolEvents.recording){
 				statStart = System.nanoTime();
 			}
 			if (this.statementCachingEnabled) {
@@ -1020,8 +1129,9 @@ public class ConnectionHandle implements Connection,Serializable{
 				result = this.preparedStatementCache.get(cacheKey);
 			}
 
+			boolean cacheHit = result != null;
 			if (result == null){
-				result =  new PreparedStatementHandle(this.connection.prepareStatement(sql), sql, this, cacheKey, this.preparedStatementCache);
+				result = newPreparedStatementHandle(this.connection.prepareStatement(sql), sql, cacheKey);
 				result.setLogicallyOpen();
 			}
 
@@ -1037,6 +1147,12 @@ public class ConnectionHandle implements Connection,Serializable{
 				this.statistics.addStatementPrepareTime(System.nanoTime()-statStart);
 				this.statistics.incrementStatementsPrepared();
 			}
+			if (this.pool.workloadRecorder != null){
+				this.pool.workloadRecorder.prepare(this, result, sql, statStart);
+			}
+			if (PoolEvents.recording && statStart != 0){
+				PoolEvents.INSTANCE.statementPrepared(this, sql, cacheHit, statStart);
+			}
 
 		} catch (SQLException e) {
 			throw markPossiblyBroken(e);
@@ -1053,16 +1169,17 @@ public class ConnectionHandle implements Connection,Serializable{
 
 		try {
 			long statStart = 0;
-			if (this.statisticsEnabled){
-				statStart  = System.nanoTime();
+			if (this.statisticsEnabled || this.pool.workloadRecorder != null || PoolEvents.recording){
+				statStart = System.nanoTime();
 			}
 			if (this.statementCachingEnabled) {
 				cacheKey = this.preparedStatementCache.calculateCacheKey(sql, autoGeneratedKeys);
 				result = this.preparedStatementCache.get(cacheKey);
 			}
 
+			boolean cacheHit = result != null;
 			if (result == null){
-				result = new PreparedStatementHandle(this.connection.prepareStatement(sql, autoGeneratedKeys), sql, this, cacheKey, this.preparedStatementCache);
+				result = newPreparedStatementHandle(this.connection.prepareStatement(sql, autoGeneratedKeys), sql, cacheKey);
 				result.setLogicallyOpen();
 			}
 
@@ -1078,6 +1195,12 @@ public class ConnectionHandle implements Connection,Serializable{
 				this.statistics.addStatementPrepareTime(System.nanoTime()-statStart);
 				this.statistics.incrementStatementsPrepared();
 			}
+			if (this.pool.workloadRecorder != null){
+				this.pool.workloadRecorder.prepare(this, result, sql, statStart);
+			}
+			if (PoolEvents.recording && statStart != 0){
+				PoolEvents.INSTANCE.statementPrepared(this, sql, cacheHit, statStart);
+			}
 
 		} catch (SQLException e) {
 			throw markPossiblyBroken(e);
@@ -1095,7 +1218,7 @@ public class ConnectionHandle implements Connection,Serializable{
 
 		try {
 			long statStart=0;
-			if (this.statisticsEnabled){
+			if (this.statisticsEnabled || this.pool.workloadRecorder != null || PoolEvents.recording){
 				statStart = System.nanoTime();
 			}
 
@@ -1104,9 +1227,9 @@ public class ConnectionHandle implements Connection,Serializable{
 				result = this.preparedStatementCache.get(cacheKey);
 			}
 
+			boolean cacheHit = result != null;
 			if (result == null){
-				result = new PreparedStatementHandle(this.connection.prepareStatement(sql, columnIndexes), 
-						sql, this, cacheKey, this.preparedStatementCache);
+				result = newPreparedStatementHandle(this.connection.prepareStatement(sql, columnIndexes), sql, cacheKey);
 				result.setLogicallyOpen();
 			}
 
@@ -1122,6 +1245,12 @@ public class ConnectionHandle implements Connection,Serializable{
 				this.statistics.addStatementPrepareTime(System.nanoTime()-statStart);
 				this.statistics.incrementStatementsPrepared();
 			}
+			if (this.pool.workloadRecorder != null){
+				this.pool.workloadRecorder.prepare(this, result, sql, statStart);
+			}
+			if (PoolEvents.recording && statStart != 0){
+				PoolEvents.INSTANCE.statementPrepared(this, sql, cacheHit, statStart);
+			}
 
 		} catch (SQLException e) {
 			throw markPossiblyBroken(e);
@@ -1139,7 +1268,7 @@ public class ConnectionHandle implements Connection,Serializable{
 
 		try {
 			long statStart=0;
-			if (this.statisticsEnabled){
+			if (this.statisticsEnabled || this.pool.workloadRecorder != null || PoolEvents.recording){
 				statStart = System.nanoTime();
 			}
 			if (this.statementCachingEnabled) {
@@ -1147,9 +1276,9 @@ public class ConnectionHandle implements Connection,Serializable{
 				result = this.preparedStatementCache.get(cacheKey);
 			}
 
+			boolean cacheHit = result != null;
 			if (result == null){
-				result = new PreparedStatementHandle(this.connection.prepareStatement(sql, columnNames), 
-						sql, this, cacheKey, this.preparedStatementCache);
+				result = newPreparedStatementHandle(this.connection.prepareStatement(sql, columnNames), sql, cacheKey);
 				result.setLogicallyOpen();
 			}
 
@@ -1165,6 +1294,12 @@ public class ConnectionHandle implements Connection,Serializable{
 				this.statistics.addStatementPrepareTime(System.nanoTime()-statStart);
 				this.statistics.incrementStatementsPrepared();
 			}
+			if (this.pool.workloadRecorder != null){
+				this.pool.workloadRecorder.prepare(this, result, sql, statStart);
+			}
+			if (PoolEvents.recording && statStart != 0){
+				PoolEvents.INSTANCE.statementPrepared(this, sql, cacheHit, statStart);
+			}
 		} catch (SQLException e) {
 			throw markPossiblyBroken(e);
 		}
@@ -1181,7 +1316,7 @@ public class ConnectionHandle implements Connection,Serializable{
 
 		try {
 			long statStart=0;
-			if (this.statisticsEnabled){
+			if (this.statisticsEnabled || this.pool.workloadRecorder != null || PoolEvents.recording){
 				statStart = System.nanoTime();
 			}
 			if (this.statementCachingEnabled) {
@@ -1189,9 +1324,9 @@ public class ConnectionHandle implements Connection,Serializable{
 				result = this.preparedStatementCache.get(cacheKey);
 			}
 
+			boolean cacheHit = result != null;
 			if (result == null){
-				result = new PreparedStatementHandle(this.connection.prepareStatement(sql, resultSetType, resultSetConcurrency), 
-						sql, this, cacheKey, this.preparedStatementCache);
+				result = newPreparedStatementHandle(this.connection.prepareStatement(sql, resultSetType, resultSetConcurrency), sql, cacheKey);
 				result.setLogicallyOpen();
 			}
 
@@ -1206,6 +1341,12 @@ public class ConnectionHandle implements Connection,Serializable{
 				this.statistics.addStatementPrepareTime(System.nanoTime()-statStart);
 				this.statistics.incrementStatementsPrepared();
 			}
+			if (this.pool.workloadRecorder != null){
+				this.pool.workloadRecorder.prepare(this, result, sql, statStart);
+			}
+			if (PoolEvents.recording && statStart != 0){
+				PoolEvents.INSTANCE.statementPrepared(this, sql, cacheHit, statStart);
+			}
 		} catch (SQLException e) {
 			throw markPossiblyBroken(e);
 		}
@@ -1223,7 +1364,7 @@ public class ConnectionHandle implements Connection,Serializable{
 
 		try {
 			long statStart=0;
-			if (this.statisticsEnabled){
+			if (this.statisticsEnabled || this.pool.workloadRecorder != null || PoolEvents.recording){
 				statStart = System.nanoTime();
 			}
 
@@ -1232,9 +1373,9 @@ public class ConnectionHandle implements Connection,Serializable{
 				result = this.preparedStatementCache.get(cacheKey);
 			}
 
+			boolean cacheHit = result != null;
 			if (result == null){
-				result = new PreparedStatementHandle(this.connection.prepareStatement(sql, resultSetType, resultSetConcurrency, resultSetHoldability), 
-						sql, this, cacheKey, this.preparedStatementCache);
+				result = newPreparedStatementHandle(this.connection.prepareStatement(sql, resultSetType, resultSetConcurrency, resultSetHoldability), sql, cacheKey);
 				result.setLogicallyOpen();
 			}
 
@@ -1249,6 +1390,12 @@ public class ConnectionHandle implements Connection,Serializable{
 				this.statistics.addStatementPrepareTime(System.nanoTime()-statStart);
 				this.statistics.incrementStatementsPrepared();
 			}
+			if (this.pool.workloadRecorder != null){
+				this.pool.workloadRecorder.prepare(this, result, sql, statStart);
+			}
+			if (PoolEvents.recording && statStart != 0){
+				PoolEvents.INSTANCE.statementPrepared(this, sql, cacheHit, statStart);
+			}
 		} catch (SQLException e) {
 			throw markPossiblyBroken(e);
 		}
@@ -1566,29 +1713,61 @@ public class ConnectionHandle implements Connection,Serializable{
 		return this.pool;
 	}
 
-	/** Returns transaction history log
-	 * @return replay list
+	/** Returns transaction history log. The calls are decoded into a new list; changes to it are not 
+	 * reflected in the log (see {@link #getReplayLogBuffer()}).
+	 * @return replay list, or null if transaction recovery is disabled
 	 */
 	public List<ReplayLog> getReplayLog() {
-		return this.replayLog;
+		if (this.replayLog == null){
+			return null;
+		}
+		List<ReplayLog> result = new ArrayList<ReplayLog>(this.replayLog.size());
+		for (ReplayLog entry: this.replayLog){
+			result.add(entry);
+		}
+		return result;
 	}
 
 	/** Sets the transaction history log
 	 * @param replayLog to set.
 	 */
 	protected void setReplayLog(List<ReplayLog> replayLog) {
+		if (replayLog == null){
+			this.replayLog = null;
+			return;
+		}
+		if (this.replayLog == null){
+			this.replayLog = new ReplayLogBuffer(0, this.statisticsEnabled ? this.statistics : null);
+		} else {
+			this.replayLog.clear();
+		}
+		for (ReplayLog entry: replayLog){
+			this.replayLog.add(entry.getTarget(), entry.getMethod(), entry.getArgs());
+		}
+	}
+
+	/** Returns the transaction history log in its recorded (encoded) form.
+	 * @return replay log, or null if transaction recovery is disabled
+	 */
+	public ReplayLogBuffer getReplayLogBuffer() {
+		return this.replayLog;
+	}
+
+	/** Sets the transaction history log
+	 * @param replayLog to set.
+	 */
+	protected void setReplayLogBuffer(ReplayLogBuffer replayLog) {
 		this.replayLog = replayLog;
 	}
 
-	/** This method will be intercepted by the proxy if it is enabled to return the internal target.
+	/** Returns the connection wrapped by the transaction recording wrapper.
 	 * @return the target.
 	 */
 	public Object getProxyTarget(){
-		try {
-			return Proxy.getInvocationHandler(this.connection).invoke(null, this.getClass().getMethod("getProxyTarget"), null);
-		} catch (Throwable t) {
-			throw new RuntimeException("BoneCP: Internal error - transaction replay log is not turned on?", t);
+		if (!(this.connection instanceof MemorizeTransactionProxy)){
+			throw new RuntimeException("BoneCP: Internal error - transaction replay log is not turned on?");
 		}
+		return ((MemorizeTransactionProxy<?>) this.connection).getTarget();
 	}
 
 	/** Returns the thread that is currently utilizing this connection.
@@ -40,6 +40,8 @@ public class ConnectionMaxAgeThread implements Runnable {
 	private BoneCP pool;
 	/** If true, we're operating in a LIFO fashion. */ 
 	private boolean lifoMode;
+	/** Set once the pool has been reconfigured and this tester replaced; stops it from running and rescheduling itself. */
+	protected volatile boolean cancelled;
 	/** Logger handle. */
 	private static final Logger logger = LoggerFactory.getLogger(ConnectionTesterThread.class);
 
@@ -62,6 +64,9 @@ public class ConnectionMaxAgeThread implements Runnable {
 
 	/** Invoked periodically. */
 	public void run() {
+		if (this.cancelled){
+			return;
+		}
 		ConnectionHandle connection = null;
 		long tmp;
 		long nextCheckInMs = this.maxAgeInMs;
@@ -75,16 +80,21 @@ public class ConnectionMaxAgeThread implements Runnable {
 				if (connection != null){
 					connection.setOriginatingPartition(this.partition);
 
-					tmp = this.maxAgeInMs - (currentTime - connection.getConnectionCreationTimeInMs()); 
+					tmp = connection.maxConnectionAgeInMs - (currentTime - connection.getConnectionCreationTimeInMs()); 
 
-					if (tmp < nextCheckInMs){
-						nextCheckInMs = tmp; 
+					if (connection.isExpired(currentTime)){
+						if (this.pool.connectionRecycler != null && this.pool.connectionRecycler.keepInService(connection)){
+							// make-before-break: keep serving until the replacement is in, then look again.
+							tmp = ConnectionRecycler.RETRY_IN_MS;
+						} else {
+							// kill off this connection
+							closeConnection(connection);
+							continue;
+						}
 					}
 
-					if (connection.isExpired(currentTime)){
-						// kill off this connection
-						closeConnection(connection);
-						continue;
+					if (tmp < nextCheckInMs){
+						nextCheckInMs = tmp; 
 					}
 
 
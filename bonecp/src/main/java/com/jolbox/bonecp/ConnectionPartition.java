@@ -17,11 +17,12 @@
 package com.jolbox.bonecp;
 
 import java.io.Serializable;
-import java.lang.reflect.Proxy;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.Queue;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
@@ -29,7 +30,6 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.common.base.FinalizableWeakReference;
 import com.google.common.base.Objects;
 
 /**
@@ -45,11 +45,11 @@ public class ConnectionPartition implements Serializable{
 	/**  Connections available to be taken  */
 	private BlockingQueue<ConnectionHandle> freeConnections;
 	/** When connections start running out, add these number of new connections. */
-	private final int acquireIncrement;
+	private volatile int acquireIncrement;
 	/** Minimum number of connections to start off with. */
-	private final int minConnections;
+	private volatile int minConnections;
 	/** Maximum number of connections that will ever be created. */
-	private final int maxConnections;
+	private volatile int maxConnections;
 	/** Statistics lock. */
 	protected ReentrantReadWriteLock statsLock = new ReentrantReadWriteLock();
 	/** Number of connections that have been created. */
@@ -74,6 +74,18 @@ public class ConnectionPartition implements Serializable{
 	private String poolName;
 	/** Handle to the pool. */
 	protected BoneCP pool;
+	/** Pending getAsyncConnection() requests, in arrival order. */
+	private final Queue<AsyncConnectionRequest> asyncWaiters = new ConcurrentLinkedQueue<AsyncConnectionRequest>();
+	/** Set when the pool has been reconfigured with fewer connections than are currently open in this partition. While 
+	 * set, connections released back to this partition are closed until we're back within limits. */
+	protected volatile boolean shrinking;
+	/** Set when the partition count was reduced below this partition's index. A retired partition isn't picked for new 
+	 * requests any more and its pool watch thread closes off its connections as they become idle. */
+	protected volatile boolean retired;
+	/** Idle connection tester currently scheduled for this partition (null if none). */
+	protected ConnectionTesterThread connectionTester;
+	/** Max age tester currently scheduled for this partition (null if none). */
+	protected ConnectionMaxAgeThread connectionMaxAgeTester;
 
 
 
@@ -116,59 +128,99 @@ public class ConnectionPartition implements Serializable{
 		
 		// the instant the following line is executed, consumers can start making use of this 
 		// connection.
-		if (!this.freeConnections.offer(connectionHandle)){
+		if (!releaseFreeConnection(connectionHandle)){
 			// we failed. rollback.
 			updateCreatedConnections(-1); // compensate our createdConnection count.
 			
-			if (!this.disableTracking){
-				this.pool.getFinalizableRefs().remove(connectionHandle.getInternalConnection());
+			if (!this.disableTracking && this.pool.leaseTable != null){
+				this.pool.leaseTable.untrack(connectionHandle);
 			}
 			// terminate the internal handle.
 			connectionHandle.internalClose();
 		}
 	}
 
+	/** Parks an asynchronous connection request on this partition until a connection is handed back.
+	 * @param request request to park.
+	 */
+	protected void addAsyncWaiter(AsyncConnectionRequest request){
+		this.asyncWaiters.add(request);
+	}
+
+	/** Removes a parked request (on timeout or cancellation).
+	 * @param request request to remove.
+	 * @return true if the request was still parked, i.e. the caller now owns it.
+	 */
+	protected boolean removeAsyncWaiter(AsyncConnectionRequest request){
+		return this.asyncWaiters.remove(request);
+	}
+
+	/** Hands the given connection to the oldest parked request, if any.
+	 * @param connectionHandle free connection.
+	 * @return true if a request took the connection, false if it should go back in the free queue.
+	 */
+	protected boolean handOffToAsyncWaiter(ConnectionHandle connectionHandle){
+		AsyncConnectionRequest request;
+		while ((request = this.asyncWaiters.poll()) != null){
+			if (request.complete(connectionHandle)){
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/** Makes a free connection available: hands it to the oldest parked request or, failing that, places it in the
+	 * free queue.
+	 * @param connectionHandle free connection.
+	 * @return false if the free queue refused the connection (which shouldn't happen).
+	 */
+	protected boolean releaseFreeConnection(ConnectionHandle connectionHandle){
+		if (handOffToAsyncWaiter(connectionHandle)){
+			return true;
+		}
+		if (!this.freeConnections.offer(connectionHandle)){
+			return false;
+		}
+		serveAsyncWaiters();
+		return true;
+	}
+
+	/** Hands free connections to parked requests for as long as there are both. A request may be parked after a 
+	 * releasing thread found no waiters but before it queued its connection; the request then finds the queue 
+	 * empty. Both sides therefore call this after publishing their own half (the queued connection, the parked 
+	 * request), so that at least one of them sees the other's.
+	 */
+	protected void serveAsyncWaiters(){
+		ConnectionHandle connectionHandle;
+		while (!this.asyncWaiters.isEmpty() && (connectionHandle = this.freeConnections.poll()) != null){
+			if (!handOffToAsyncWaiter(connectionHandle) && !this.freeConnections.offer(connectionHandle)){
+				this.pool.destroyConnection(connectionHandle); // this shouldn't happen
+			}
+		}
+	}
+
+	/** Fails all parked requests, eg on shutdown.
+	 * @param e reason to give.
+	 */
+	protected void failAsyncWaiters(SQLException e){
+		AsyncConnectionRequest request;
+		while ((request = this.asyncWaiters.poll()) != null){
+			request.fail(e);
+		}
+	}
+
 	/** This method is a replacement for finalize() but avoids all its pitfalls (see Joshua Bloch et. all).
 	 * 
-	 * Keeps a handle on the connection. If the application called closed, then it means that the handle gets pushed back to the connection
-	 * pool and thus we get a strong reference again. If the application forgot to call close() and subsequently lost the strong reference to it,
-	 * the handle becomes eligible to garbage connection and thus the the finalizeReferent method kicks in to safely close off the database
-	 * handle. Note that we do not return the connectionHandle back to the pool since that is not possible (for otherwise the GC would not 
-	 * have kicked in), but we merely safely release the database internal handle and update our counters instead.
+	 * Registers the connection in the pool's lease table. If the application forgot to call close() and subsequently lost the strong 
+	 * reference to the handle, the handle becomes eligible to garbage collection and the lease table's housekeeping task then safely
+	 * closes off the database handle. Note that we do not return the connectionHandle back to the pool since that is not possible 
+	 * (for otherwise the GC would not have kicked in), but we merely safely release the database internal handle and update our counters instead.
 	 * @param connectionHandle handle to watch
+	 * @see LeaseTable
 	 */ 
 	protected void trackConnectionFinalizer(ConnectionHandle connectionHandle) {
-		if (!this.disableTracking){
-		//	assert !connectionHandle.getPool().getFinalizableRefs().containsKey(connectionHandle) : "Already tracking this handle";
-			Connection con = connectionHandle.getInternalConnection();
-			if (con != null && con instanceof Proxy && Proxy.getInvocationHandler(con) instanceof MemorizeTransactionProxy){
-				try {
-					// if this is a proxy, get the correct target so that when we call close we're actually calling close on the database
-					// handle and not a proxy-based close.
-					con = (Connection) Proxy.getInvocationHandler(con).invoke(con, ConnectionHandle.class.getMethod("getProxyTarget"), null);
-				} catch (Throwable t) {
-					logger.error("Error while attempting to track internal db connection", t); // should never happen
-				}
-			}
-			final Connection internalDBConnection = con;
-			final BoneCP pool = connectionHandle.getPool();
-			connectionHandle.getPool().getFinalizableRefs().put(internalDBConnection, new FinalizableWeakReference<ConnectionHandle>(connectionHandle, connectionHandle.getPool().getFinalizableRefQueue()) {
-				@SuppressWarnings("synthetic-access")
-				public void finalizeReferent() {
-					try {
-						pool.getFinalizableRefs().remove(internalDBConnection);
-						if (internalDBConnection != null && !internalDBConnection.isClosed()){ // safety!
-							
-							logger.warn("BoneCP detected an unclosed connection "+ConnectionPartition.this.poolName + "and will now attempt to close it for you. " +
-							"You should be closing this connection in your application - enable connectionWatch for additional debugging assistance or set disableConnectionTracking to true to disable this feature entirely.");
-							internalDBConnection.close();
-							updateCreatedConnections(-1);
-						}
-					} catch (Throwable t) {
-						logger.error("Error while closing off internal db connection", t);
-					}
-				}
-			});
+		if (!this.disableTracking && this.pool.leaseTable != null){
+			this.pool.leaseTable.track(connectionHandle);
 		}
 	}
 
@@ -229,6 +281,26 @@ public class ConnectionPartition implements Serializable{
 		return this.maxConnections;
 	}
 
+	/** Updates the partition limits on a running pool. Existing connections are left alone; the pool watch thread
+	 * and the release path bring the partition within the new limits over time.
+	 * @param minConnections new minimum
+	 * @param maxConnections new maximum
+	 * @param acquireIncrement new acquire increment
+	 */
+	protected void setLimits(int minConnections, int maxConnections, int acquireIncrement) {
+		this.minConnections = minConnections;
+		this.maxConnections = maxConnections;
+		this.acquireIncrement = acquireIncrement;
+		this.shrinking = isOverCapacity();
+	}
+
+	/** Returns true if this partition has more open connections than it's now allowed to keep.
+	 * @return true if connections should be closed rather than returned to the free queue.
+	 */
+	protected boolean isOverCapacity() {
+		return getCreatedConnections() > this.maxConnections;
+	}
+
 	/**
 	 * @return the leasedConnections
 	 */
@@ -296,7 +368,8 @@ public class ConnectionPartition implements Serializable{
 	 * @return remaining capacity.
 	 */
 	public int getRemainingCapacity() {
-		return this.freeConnections.remainingCapacity();
+		// the free queue is unbounded so that the limits can be changed at runtime.
+		return Math.max(0, this.maxConnections - this.freeConnections.size());
 	}
 
 	/** Store the unit translation here to avoid recalculating it in the constructor of StatementHandle. 
@@ -0,0 +1,174 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+/**
+ * 
+ */
+package com.jolbox.bonecp;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Make-before-break replacement of connections that have exceeded their max age. 
+ * 
+ * An expired connection is not closed straight away. Instead it stays in service while a replacement is opened
+ * and validated in the background. Once the replacement is ready it is added to the partition and the old 
+ * connection is retired: right away if it is idle, otherwise when the application hands it back. The number 
+ * of replacements being opened at once is capped; expired connections beyond the cap simply keep serving until 
+ * their turn comes, so recycling never reduces the number of usable connections.
+ * 
+ * @author wallacew
+ *
+ */
+public class ConnectionRecycler {
+	/** Class logger. */
+	private static final Logger logger = LoggerFactory.getLogger(ConnectionRecycler.class);
+	/** Connection has not been scheduled for recycling. */
+	protected static final int RECYCLE_NONE = 0;
+	/** Replacement is being opened; keep the connection in service. */
+	protected static final int RECYCLE_PENDING = 1;
+	/** Replacement is in the pool; retire the connection. */
+	protected static final int RECYCLE_RETIRE = 2;
+	/** How soon to look again at an expired connection that is waiting for its turn. */
+	protected static final long RETRY_IN_MS = 1000;
+	/** Pool handle. */
+	private final BoneCP pool;
+	/** Max number of replacements being opened at once. */
+	private final int maxConcurrentRecycles;
+	/** Caps the number of replacements being opened at once. */
+	private final Semaphore permits;
+	/** Opens replacements. */
+	private final ExecutorService executor;
+
+	/** Creates a new recycler.
+	 * @param pool pool handle.
+	 * @param maxConcurrentRecycles max number of replacements being opened at once.
+	 * @param suffix thread name suffix (pool name).
+	 */
+	public ConnectionRecycler(BoneCP pool, int maxConcurrentRecycles, String suffix){
+		this.pool = pool;
+		this.maxConcurrentRecycles = maxConcurrentRecycles;
+		this.permits = new Semaphore(maxConcurrentRecycles);
+		// no more than maxConcurrentRecycles threads since each task holds a permit.
+		this.executor = Executors.newCachedThreadPool(new CustomThreadFactory("BoneCP-connection-recycler"+suffix, true));
+	}
+
+	/** Decides what to do with an expired connection that has just been handed back or found idle, starting
+	 * its replacement if there's room to do so.
+	 * @param expired connection that has exceeded its max age.
+	 * @return true if the connection should stay in service, false if it should be destroyed now.
+	 */
+	protected boolean keepInService(final ConnectionHandle expired){
+		AtomicInteger state = expired.recycleState;
+		switch (state.get()){
+		case RECYCLE_PENDING:
+			return true;
+		case RECYCLE_RETIRE:
+			return false;
+		default:
+			if (this.pool.poolShuttingDown){
+				return false;
+			}
+			if (!this.permits.tryAcquire()){
+				return true; // wait for our turn
+			}
+			if (!state.compareAndSet(RECYCLE_NONE, RECYCLE_PENDING)){ // someone else got there first
+				this.permits.release();
+				return state.get() != RECYCLE_RETIRE;
+			}
+			try{
+				this.executor.execute(new Runnable() {
+					// @Override
+					public void run() {
+						replace(expired);
+					}
+				});
+			} catch (RejectedExecutionException e){ // shutting down
+				state.set(RECYCLE_NONE);
+				this.permits.release();
+				return false;
+			}
+			return true;
+		}
+	}
+
+	/** Opens and validates a replacement for the given connection, adds it to the partition and then retires the
+	 * expired connection if it's idle.
+	 * @param expired connection to replace. This handle may have been recreated (closed) since, so we act on 
+	 * whichever handle wraps the connection by now.
+	 */
+	protected void replace(ConnectionHandle expired){
+		AtomicInteger state = expired.recycleState;
+		try {
+			ConnectionPartition partition = expired.getOriginatingPartition();
+			ConnectionHandle replacement = new ConnectionHandle(null, partition, this.pool, false);
+			if (!this.pool.isConnectionHandleAlive(replacement)){
+				logger.warn("Replacement for an expired connection failed validation; the expired connection stays in service for now.");
+				replacement.internalClose();
+				state.set(RECYCLE_NONE);
+				return;
+			}
+			state.set(RECYCLE_RETIRE);
+			// swap over; if the old connection is in use it will be destroyed when the application hands it back.
+			ConnectionHandle idle = removeIdle(partition, state);
+			partition.addFreeConnection(replacement);
+			if (idle != null){
+				this.pool.destroyConnection(idle);
+			}
+			if (this.pool.statisticsEnabled){
+				this.pool.statistics.incrementConnectionsRecycled();
+			}
+		} catch (Throwable t) {
+			logger.error("Failed to open a replacement for an expired connection; the expired connection stays in service for now.", t);
+			state.compareAndSet(RECYCLE_PENDING, RECYCLE_NONE);
+		} finally {
+			this.permits.release();
+		}
+	}
+
+	/** Takes the handle currently wrapping the connection with the given recycle state out of the free queue.
+	 * @param partition partition the connection belongs to.
+	 * @param state recycle state of the connection.
+	 * @return the handle, or null if the connection is not idle.
+	 */
+	private ConnectionHandle removeIdle(ConnectionPartition partition, AtomicInteger state){
+		for (ConnectionHandle handle: partition.getFreeConnections()){
+			if (handle.recycleState == state && partition.getFreeConnections().remove(handle)){
+				return handle;
+			}
+		}
+		return null;
+	}
+
+	/** Stops opening replacements. */
+	public void shutdown(){
+		this.executor.shutdownNow();
+	}
+
+	/** Returns the number of replacements currently being opened.
+	 * @return replacements in progress
+	 */
+	public int getInProgressCount(){
+		return this.maxConcurrentRecycles - this.permits.availablePermits();
+	}
+}
@@ -43,6 +43,8 @@ public class ConnectionTesterThread implements Runnable {
 	private BoneCP pool;
 	/** If true, we're operating in a LIFO fashion. */ 
 	private boolean lifoMode;
+	/** Set once the pool has been reconfigured and this tester replaced; stops it from running and rescheduling itself. */
+	protected volatile boolean cancelled;
 	/** Logger handle. */
 	private static final Logger logger = LoggerFactory.getLogger(ConnectionTesterThread.class);
 
@@ -67,6 +69,9 @@ public class ConnectionTesterThread implements Runnable {
 
 	/** Invoked periodically. */
 	public void run() {
+		if (this.cancelled){
+			return;
+		}
 		ConnectionHandle connection = null;
 		long tmp;
 		try {
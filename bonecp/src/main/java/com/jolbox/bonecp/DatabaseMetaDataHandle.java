@@ -0,0 +1,2339 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.jolbox.bonecp;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+// #ifdef JDK>6
+import java.sql.RowIdLifetime;
+// #endif JDK>6
+import java.sql.SQLException;
+
+/**
+ * DatabaseMetaData wrapper that answers from a pool-wide {@link MetaDataCache}. Catalog queries are
+ * served from disconnected snapshots while capability methods hit the driver only once per pool.
+ * Enabled via {@link BoneCPConfig#setMetaDataCacheEnabled(boolean)}.
+ * 
+ * @author wallacew
+ *
+ */
+public class DatabaseMetaDataHandle implements DatabaseMetaData {
+	/** Handle to the driver's metadata. */
+	private final DatabaseMetaData internalMetaData;
+	/** Connection that created this handle. */
+	private final ConnectionHandle connectionHandle;
+	/** Pool-wide cache. */
+	private final MetaDataCache cache;
+
+	/** Creates a new handle.
+	 * @param internalMetaData metadata as obtained from the driver
+	 * @param connectionHandle connection that created this handle
+	 * @param cache pool-wide cache
+	 */
+	public DatabaseMetaDataHandle(DatabaseMetaData internalMetaData, ConnectionHandle connectionHandle, MetaDataCache cache){
+		this.internalMetaData = internalMetaData;
+		this.connectionHandle = connectionHandle;
+		this.cache = cache;
+	}
+
+	/** Scopes a catalog query key to the connection's current catalog and/or schema. The driver resolves a null 
+	 * catalog, and a null or pattern schema, against the connection it was called on, while the cache is shared by 
+	 * all connections of the pool (which may have switched catalog or schema).
+	 * @param key key built from the method arguments
+	 * @param catalog catalog argument
+	 * @param schema schema (or schema pattern) argument
+	 * @return key to use
+	 * @throws SQLException if the connection's catalog cannot be obtained
+	 */
+	private String scopedKey(String key, String catalog, String schema) throws SQLException{
+		boolean currentCatalog = catalog == null;
+		boolean currentSchema = schema == null || schema.indexOf('%') >= 0 || schema.indexOf('_') >= 0;
+		if (!currentCatalog && !currentSchema){
+			return key;
+		}
+		return MetaDataCache.calculateKey(key, currentCatalog ? this.connectionHandle.getCatalog() : null, 
+				currentSchema ? currentSchema() : null);
+	}
+
+	/** Returns the connection's current schema.
+	 * @return schema, or null if unknown (including drivers that predate JDBC 4.1)
+	 * @throws SQLException on error
+	 */
+	private String currentSchema() throws SQLException{
+		String result = null;
+		// #ifdef JDK7
+		try{
+			result = this.connectionHandle.getSchema();
+		} catch (AbstractMethodError e){
+			// driver predates JDBC 4.1
+		}
+		// #endif JDK7
+		return result;
+	}
+
+	/** Returns the metadata as obtained from the driver.
+	 * @return the internal metadata handle
+	 */
+	public DatabaseMetaData getInternalMetaData() {
+		return this.internalMetaData;
+	}
+
+	public boolean allProceduresAreCallable() throws SQLException {
+		String key = "allProceduresAreCallable";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.allProceduresAreCallable());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Boolean) MetaDataCache.unmask(result);
+	}
+
+	public boolean allTablesAreSelectable() throws SQLException {
+		String key = "allTablesAreSelectable";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.allTablesAreSelectable());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Boolean) MetaDataCache.unmask(result);
+	}
+
+	public String getURL() throws SQLException {
+		String key = "getURL";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.getURL());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (String) MetaDataCache.unmask(result);
+	}
+
+	public String getUserName() throws SQLException {
+		String key = "getUserName";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.getUserName());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (String) MetaDataCache.unmask(result);
+	}
+
+	public boolean isReadOnly() throws SQLException {
+		boolean result = false;
+		try {
+			result = this.internalMetaData.isReadOnly();
+		} catch (SQLException e) {
+			throw this.connectionHandle.markPossiblyBroken(e);
+		}
+		return result;
+	}
+
+	public boolean nullsAreSortedHigh() throws SQLException {
+		String key = "nullsAreSortedHigh";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.nullsAreSortedHigh());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Boolean) MetaDataCache.unmask(result);
+	}
+
+	public boolean nullsAreSortedLow() throws SQLException {
+		String key = "nullsAreSortedLow";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.nullsAreSortedLow());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Boolean) MetaDataCache.unmask(result);
+	}
+
+	public boolean nullsAreSortedAtStart() throws SQLException {
+		String key = "nullsAreSortedAtStart";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.nullsAreSortedAtStart());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Boolean) MetaDataCache.unmask(result);
+	}
+
+	public boolean nullsAreSortedAtEnd() throws SQLException {
+		String key = "nullsAreSortedAtEnd";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.nullsAreSortedAtEnd());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Boolean) MetaDataCache.unmask(result);
+	}
+
+	public String getDatabaseProductName() throws SQLException {
+		String key = "getDatabaseProductName";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.getDatabaseProductName());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (String) MetaDataCache.unmask(result);
+	}
+
+	public String getDatabaseProductVersion() throws SQLException {
+		String key = "getDatabaseProductVersion";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.getDatabaseProductVersion());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (String) MetaDataCache.unmask(result);
+	}
+
+	public String getDriverName() throws SQLException {
+		String key = "getDriverName";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.getDriverName());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (String) MetaDataCache.unmask(result);
+	}
+
+	public String getDriverVersion() throws SQLException {
+		String key = "getDriverVersion";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.getDriverVersion());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (String) MetaDataCache.unmask(result);
+	}
+
+	public int getDriverMajorVersion() {
+		return this.internalMetaData.getDriverMajorVersion();
+	}
+
+	public int getDriverMinorVersion() {
+		return this.internalMetaData.getDriverMinorVersion();
+	}
+
+	public boolean usesLocalFiles() throws SQLException {
+		String key = "usesLocalFiles";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.usesLocalFiles());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Boolean) MetaDataCache.unmask(result);
+	}
+
+	public boolean usesLocalFilePerTable() throws SQLException {
+		String key = "usesLocalFilePerTable";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.usesLocalFilePerTable());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Boolean) MetaDataCache.unmask(result);
+	}
+
+	public boolean supportsMixedCaseIdentifiers() throws SQLException {
+		String key = "supportsMixedCaseIdentifiers";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.supportsMixedCaseIdentifiers());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Boolean) MetaDataCache.unmask(result);
+	}
+
+	public boolean storesUpperCaseIdentifiers() throws SQLException {
+		String key = "storesUpperCaseIdentifiers";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.storesUpperCaseIdentifiers());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Boolean) MetaDataCache.unmask(result);
+	}
+
+	public boolean storesLowerCaseIdentifiers() throws SQLException {
+		String key = "storesLowerCaseIdentifiers";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.storesLowerCaseIdentifiers());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Boolean) MetaDataCache.unmask(result);
+	}
+
+	public boolean storesMixedCaseIdentifiers() throws SQLException {
+		String key = "storesMixedCaseIdentifiers";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.storesMixedCaseIdentifiers());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Boolean) MetaDataCache.unmask(result);
+	}
+
+	public boolean supportsMixedCaseQuotedIdentifiers() throws SQLException {
+		String key = "supportsMixedCaseQuotedIdentifiers";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.supportsMixedCaseQuotedIdentifiers());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Boolean) MetaDataCache.unmask(result);
+	}
+
+	public boolean storesUpperCaseQuotedIdentifiers() throws SQLException {
+		String key = "storesUpperCaseQuotedIdentifiers";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.storesUpperCaseQuotedIdentifiers());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Boolean) MetaDataCache.unmask(result);
+	}
+
+	public boolean storesLowerCaseQuotedIdentifiers() throws SQLException {
+		String key = "storesLowerCaseQuotedIdentifiers";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.storesLowerCaseQuotedIdentifiers());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Boolean) MetaDataCache.unmask(result);
+	}
+
+	public boolean storesMixedCaseQuotedIdentifiers() throws SQLException {
+		String key = "storesMixedCaseQuotedIdentifiers";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.storesMixedCaseQuotedIdentifiers());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Boolean) MetaDataCache.unmask(result);
+	}
+
+	public String getIdentifierQuoteString() throws SQLException {
+		String key = "getIdentifierQuoteString";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.getIdentifierQuoteString());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (String) MetaDataCache.unmask(result);
+	}
+
+	public String getSQLKeywords() throws SQLException {
+		String key = "getSQLKeywords";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.getSQLKeywords());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (String) MetaDataCache.unmask(result);
+	}
+
+	public String getNumericFunctions() throws SQLException {
+		String key = "getNumericFunctions";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.getNumericFunctions());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (String) MetaDataCache.unmask(result);
+	}
+
+	public String getStringFunctions() throws SQLException {
+		String key = "getStringFunctions";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.getStringFunctions());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (String) MetaDataCache.unmask(result);
+	}
+
+	public String getSystemFunctions() throws SQLException {
+		String key = "getSystemFunctions";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.getSystemFunctions());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (String) MetaDataCache.unmask(result);
+	}
+
+	public String getTimeDateFunctions() throws SQLException {
+		String key = "getTimeDateFunctions";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.getTimeDateFunctions());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (String) MetaDataCache.unmask(result);
+	}
+
+	public String getSearchStringEscape() throws SQLException {
+		String key = "getSearchStringEscape";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.getSearchStringEscape());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (String) MetaDataCache.unmask(result);
+	}
+
+	public String getExtraNameCharacters() throws SQLException {
+		String key = "getExtraNameCharacters";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.getExtraNameCharacters());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (String) MetaDataCache.unmask(result);
+	}
+
+	public boolean supportsAlterTableWithAddColumn() throws SQLException {
+		String key = "supportsAlterTableWithAddColumn";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.supportsAlterTableWithAddColumn());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Boolean) MetaDataCache.unmask(result);
+	}
+
+	public boolean supportsAlterTableWithDropColumn() throws SQLException {
+		String key = "supportsAlterTableWithDropColumn";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.supportsAlterTableWithDropColumn());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Boolean) MetaDataCache.unmask(result);
+	}
+
+	public boolean supportsColumnAliasing() throws SQLException {
+		String key = "supportsColumnAliasing";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.supportsColumnAliasing());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Boolean) MetaDataCache.unmask(result);
+	}
+
+	public boolean nullPlusNonNullIsNull() throws SQLException {
+		String key = "nullPlusNonNullIsNull";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.nullPlusNonNullIsNull());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Boolean) MetaDataCache.unmask(result);
+	}
+
+	public boolean supportsConvert() throws SQLException {
+		String key = "supportsConvert";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.supportsConvert());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Boolean) MetaDataCache.unmask(result);
+	}
+
+	public boolean supportsConvert(int fromType, int toType) throws SQLException {
+		String key = MetaDataCache.calculateKey("supportsConvert", fromType, toType);
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.supportsConvert(fromType, toType));
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Boolean) MetaDataCache.unmask(result);
+	}
+
+	public boolean supportsTableCorrelationNames() throws SQLException {
+		String key = "supportsTableCorrelationNames";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.supportsTableCorrelationNames());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Boolean) MetaDataCache.unmask(result);
+	}
+
+	public boolean supportsDifferentTableCorrelationNames() throws SQLException {
+		String key = "supportsDifferentTableCorrelationNames";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.supportsDifferentTableCorrelationNames());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Boolean) MetaDataCache.unmask(result);
+	}
+
+	public boolean supportsExpressionsInOrderBy() throws SQLException {
+		String key = "supportsExpressionsInOrderBy";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.supportsExpressionsInOrderBy());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Boolean) MetaDataCache.unmask(result);
+	}
+
+	public boolean supportsOrderByUnrelated() throws SQLException {
+		String key = "supportsOrderByUnrelated";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.supportsOrderByUnrelated());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Boolean) MetaDataCache.unmask(result);
+	}
+
+	public boolean supportsGroupBy() throws SQLException {
+		String key = "supportsGroupBy";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.supportsGroupBy());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Boolean) MetaDataCache.unmask(result);
+	}
+
+	public boolean supportsGroupByUnrelated() throws SQLException {
+		String key = "supportsGroupByUnrelated";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.supportsGroupByUnrelated());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Boolean) MetaDataCache.unmask(result);
+	}
+
+	public boolean supportsGroupByBeyondSelect() throws SQLException {
+		String key = "supportsGroupByBeyondSelect";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.supportsGroupByBeyondSelect());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Boolean) MetaDataCache.unmask(result);
+	}
+
+	public boolean supportsLikeEscapeClause() throws SQLException {
+		String key = "supportsLikeEscapeClause";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.supportsLikeEscapeClause());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Boolean) MetaDataCache.unmask(result);
+	}
+
+	public boolean supportsMultipleResultSets() throws SQLException {
+		String key = "supportsMultipleResultSets";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.supportsMultipleResultSets());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Boolean) MetaDataCache.unmask(result);
+	}
+
+	public boolean supportsMultipleTransactions() throws SQLException {
+		String key = "supportsMultipleTransactions";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.supportsMultipleTransactions());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Boolean) MetaDataCache.unmask(result);
+	}
+
+	public boolean supportsNonNullableColumns() throws SQLException {
+		String key = "supportsNonNullableColumns";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.supportsNonNullableColumns());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Boolean) MetaDataCache.unmask(result);
+	}
+
+	public boolean supportsMinimumSQLGrammar() throws SQLException {
+		String key = "supportsMinimumSQLGrammar";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.supportsMinimumSQLGrammar());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Boolean) MetaDataCache.unmask(result);
+	}
+
+	public boolean supportsCoreSQLGrammar() throws SQLException {
+		String key = "supportsCoreSQLGrammar";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.supportsCoreSQLGrammar());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Boolean) MetaDataCache.unmask(result);
+	}
+
+	public boolean supportsExtendedSQLGrammar() throws SQLException {
+		String key = "supportsExtendedSQLGrammar";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.supportsExtendedSQLGrammar());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Boolean) MetaDataCache.unmask(result);
+	}
+
+	public boolean supportsANSI92EntryLevelSQL() throws SQLException {
+		String key = "supportsANSI92EntryLevelSQL";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.supportsANSI92EntryLevelSQL());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Boolean) MetaDataCache.unmask(result);
+	}
+
+	public boolean supportsANSI92IntermediateSQL() throws SQLException {
+		String key = "supportsANSI92IntermediateSQL";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.supportsANSI92IntermediateSQL());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Boolean) MetaDataCache.unmask(result);
+	}
+
+	public boolean supportsANSI92FullSQL() throws SQLException {
+		String key = "supportsANSI92FullSQL";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.supportsANSI92FullSQL());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Boolean) MetaDataCache.unmask(result);
+	}
+
+	public boolean supportsIntegrityEnhancementFacility() throws SQLException {
+		String key = "supportsIntegrityEnhancementFacility";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.supportsIntegrityEnhancementFacility());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Boolean) MetaDataCache.unmask(result);
+	}
+
+	public boolean supportsOuterJoins() throws SQLException {
+		String key = "supportsOuterJoins";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.supportsOuterJoins());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Boolean) MetaDataCache.unmask(result);
+	}
+
+	public boolean supportsFullOuterJoins() throws SQLException {
+		String key = "supportsFullOuterJoins";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.supportsFullOuterJoins());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Boolean) MetaDataCache.unmask(result);
+	}
+
+	public boolean supportsLimitedOuterJoins() throws SQLException {
+		String key = "supportsLimitedOuterJoins";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.supportsLimitedOuterJoins());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Boolean) MetaDataCache.unmask(result);
+	}
+
+	public String getSchemaTerm() throws SQLException {
+		String key = "getSchemaTerm";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.getSchemaTerm());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (String) MetaDataCache.unmask(result);
+	}
+
+	public String getProcedureTerm() throws SQLException {
+		String key = "getProcedureTerm";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.getProcedureTerm());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (String) MetaDataCache.unmask(result);
+	}
+
+	public String getCatalogTerm() throws SQLException {
+		String key = "getCatalogTerm";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.getCatalogTerm());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (String) MetaDataCache.unmask(result);
+	}
+
+	public boolean isCatalogAtStart() throws SQLException {
+		String key = "isCatalogAtStart";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.isCatalogAtStart());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Boolean) MetaDataCache.unmask(result);
+	}
+
+	public String getCatalogSeparator() throws SQLException {
+		String key = "getCatalogSeparator";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.getCatalogSeparator());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (String) MetaDataCache.unmask(result);
+	}
+
+	public boolean supportsSchemasInDataManipulation() throws SQLException {
+		String key = "supportsSchemasInDataManipulation";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.supportsSchemasInDataManipulation());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Boolean) MetaDataCache.unmask(result);
+	}
+
+	public boolean supportsSchemasInProcedureCalls() throws SQLException {
+		String key = "supportsSchemasInProcedureCalls";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.supportsSchemasInProcedureCalls());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Boolean) MetaDataCache.unmask(result);
+	}
+
+	public boolean supportsSchemasInTableDefinitions() throws SQLException {
+		String key = "supportsSchemasInTableDefinitions";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.supportsSchemasInTableDefinitions());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Boolean) MetaDataCache.unmask(result);
+	}
+
+	public boolean supportsSchemasInIndexDefinitions() throws SQLException {
+		String key = "supportsSchemasInIndexDefinitions";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.supportsSchemasInIndexDefinitions());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Boolean) MetaDataCache.unmask(result);
+	}
+
+	public boolean supportsSchemasInPrivilegeDefinitions() throws SQLException {
+		String key = "supportsSchemasInPrivilegeDefinitions";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.supportsSchemasInPrivilegeDefinitions());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Boolean) MetaDataCache.unmask(result);
+	}
+
+	public boolean supportsCatalogsInDataManipulation() throws SQLException {
+		String key = "supportsCatalogsInDataManipulation";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.supportsCatalogsInDataManipulation());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Boolean) MetaDataCache.unmask(result);
+	}
+
+	public boolean supportsCatalogsInProcedureCalls() throws SQLException {
+		String key = "supportsCatalogsInProcedureCalls";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.supportsCatalogsInProcedureCalls());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Boolean) MetaDataCache.unmask(result);
+	}
+
+	public boolean supportsCatalogsInTableDefinitions() throws SQLException {
+		String key = "supportsCatalogsInTableDefinitions";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.supportsCatalogsInTableDefinitions());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Boolean) MetaDataCache.unmask(result);
+	}
+
+	public boolean supportsCatalogsInIndexDefinitions() throws SQLException {
+		String key = "supportsCatalogsInIndexDefinitions";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.supportsCatalogsInIndexDefinitions());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Boolean) MetaDataCache.unmask(result);
+	}
+
+	public boolean supportsCatalogsInPrivilegeDefinitions() throws SQLException {
+		String key = "supportsCatalogsInPrivilegeDefinitions";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.supportsCatalogsInPrivilegeDefinitions());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Boolean) MetaDataCache.unmask(result);
+	}
+
+	public boolean supportsPositionedDelete() throws SQLException {
+		String key = "supportsPositionedDelete";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.supportsPositionedDelete());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Boolean) MetaDataCache.unmask(result);
+	}
+
+	public boolean supportsPositionedUpdate() throws SQLException {
+		String key = "supportsPositionedUpdate";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.supportsPositionedUpdate());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Boolean) MetaDataCache.unmask(result);
+	}
+
+	public boolean supportsSelectForUpdate() throws SQLException {
+		String key = "supportsSelectForUpdate";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.supportsSelectForUpdate());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Boolean) MetaDataCache.unmask(result);
+	}
+
+	public boolean supportsStoredProcedures() throws SQLException {
+		String key = "supportsStoredProcedures";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.supportsStoredProcedures());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Boolean) MetaDataCache.unmask(result);
+	}
+
+	public boolean supportsSubqueriesInComparisons() throws SQLException {
+		String key = "supportsSubqueriesInComparisons";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.supportsSubqueriesInComparisons());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Boolean) MetaDataCache.unmask(result);
+	}
+
+	public boolean supportsSubqueriesInExists() throws SQLException {
+		String key = "supportsSubqueriesInExists";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.supportsSubqueriesInExists());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Boolean) MetaDataCache.unmask(result);
+	}
+
+	public boolean supportsSubqueriesInIns() throws SQLException {
+		String key = "supportsSubqueriesInIns";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.supportsSubqueriesInIns());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Boolean) MetaDataCache.unmask(result);
+	}
+
+	public boolean supportsSubqueriesInQuantifieds() throws SQLException {
+		String key = "supportsSubqueriesInQuantifieds";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.supportsSubqueriesInQuantifieds());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Boolean) MetaDataCache.unmask(result);
+	}
+
+	public boolean supportsCorrelatedSubqueries() throws SQLException {
+		String key = "supportsCorrelatedSubqueries";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.supportsCorrelatedSubqueries());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Boolean) MetaDataCache.unmask(result);
+	}
+
+	public boolean supportsUnion() throws SQLException {
+		String key = "supportsUnion";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.supportsUnion());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Boolean) MetaDataCache.unmask(result);
+	}
+
+	public boolean supportsUnionAll() throws SQLException {
+		String key = "supportsUnionAll";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.supportsUnionAll());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Boolean) MetaDataCache.unmask(result);
+	}
+
+	public boolean supportsOpenCursorsAcrossCommit() throws SQLException {
+		String key = "supportsOpenCursorsAcrossCommit";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.supportsOpenCursorsAcrossCommit());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Boolean) MetaDataCache.unmask(result);
+	}
+
+	public boolean supportsOpenCursorsAcrossRollback() throws SQLException {
+		String key = "supportsOpenCursorsAcrossRollback";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.supportsOpenCursorsAcrossRollback());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Boolean) MetaDataCache.unmask(result);
+	}
+
+	public boolean supportsOpenStatementsAcrossCommit() throws SQLException {
+		String key = "supportsOpenStatementsAcrossCommit";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.supportsOpenStatementsAcrossCommit());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Boolean) MetaDataCache.unmask(result);
+	}
+
+	public boolean supportsOpenStatementsAcrossRollback() throws SQLException {
+		String key = "supportsOpenStatementsAcrossRollback";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.supportsOpenStatementsAcrossRollback());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Boolean) MetaDataCache.unmask(result);
+	}
+
+	public int getMaxBinaryLiteralLength() throws SQLException {
+		String key = "getMaxBinaryLiteralLength";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.getMaxBinaryLiteralLength());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Integer) MetaDataCache.unmask(result);
+	}
+
+	public int getMaxCharLiteralLength() throws SQLException {
+		String key = "getMaxCharLiteralLength";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.getMaxCharLiteralLength());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Integer) MetaDataCache.unmask(result);
+	}
+
+	public int getMaxColumnNameLength() throws SQLException {
+		String key = "getMaxColumnNameLength";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.getMaxColumnNameLength());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Integer) MetaDataCache.unmask(result);
+	}
+
+	public int getMaxColumnsInGroupBy() throws SQLException {
+		String key = "getMaxColumnsInGroupBy";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.getMaxColumnsInGroupBy());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Integer) MetaDataCache.unmask(result);
+	}
+
+	public int getMaxColumnsInIndex() throws SQLException {
+		String key = "getMaxColumnsInIndex";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.getMaxColumnsInIndex());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Integer) MetaDataCache.unmask(result);
+	}
+
+	public int getMaxColumnsInOrderBy() throws SQLException {
+		String key = "getMaxColumnsInOrderBy";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.getMaxColumnsInOrderBy());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Integer) MetaDataCache.unmask(result);
+	}
+
+	public int getMaxColumnsInSelect() throws SQLException {
+		String key = "getMaxColumnsInSelect";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.getMaxColumnsInSelect());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Integer) MetaDataCache.unmask(result);
+	}
+
+	public int getMaxColumnsInTable() throws SQLException {
+		String key = "getMaxColumnsInTable";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.getMaxColumnsInTable());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Integer) MetaDataCache.unmask(result);
+	}
+
+	public int getMaxConnections() throws SQLException {
+		String key = "getMaxConnections";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.getMaxConnections());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Integer) MetaDataCache.unmask(result);
+	}
+
+	public int getMaxCursorNameLength() throws SQLException {
+		String key = "getMaxCursorNameLength";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.getMaxCursorNameLength());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Integer) MetaDataCache.unmask(result);
+	}
+
+	public int getMaxIndexLength() throws SQLException {
+		String key = "getMaxIndexLength";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.getMaxIndexLength());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Integer) MetaDataCache.unmask(result);
+	}
+
+	public int getMaxSchemaNameLength() throws SQLException {
+		String key = "getMaxSchemaNameLength";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.getMaxSchemaNameLength());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Integer) MetaDataCache.unmask(result);
+	}
+
+	public int getMaxProcedureNameLength() throws SQLException {
+		String key = "getMaxProcedureNameLength";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.getMaxProcedureNameLength());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Integer) MetaDataCache.unmask(result);
+	}
+
+	public int getMaxCatalogNameLength() throws SQLException {
+		String key = "getMaxCatalogNameLength";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.getMaxCatalogNameLength());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Integer) MetaDataCache.unmask(result);
+	}
+
+	public int getMaxRowSize() throws SQLException {
+		String key = "getMaxRowSize";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.getMaxRowSize());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Integer) MetaDataCache.unmask(result);
+	}
+
+	public boolean doesMaxRowSizeIncludeBlobs() throws SQLException {
+		String key = "doesMaxRowSizeIncludeBlobs";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.doesMaxRowSizeIncludeBlobs());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Boolean) MetaDataCache.unmask(result);
+	}
+
+	public int getMaxStatementLength() throws SQLException {
+		String key = "getMaxStatementLength";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.getMaxStatementLength());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Integer) MetaDataCache.unmask(result);
+	}
+
+	public int getMaxStatements() throws SQLException {
+		String key = "getMaxStatements";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.getMaxStatements());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Integer) MetaDataCache.unmask(result);
+	}
+
+	public int getMaxTableNameLength() throws SQLException {
+		String key = "getMaxTableNameLength";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.getMaxTableNameLength());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Integer) MetaDataCache.unmask(result);
+	}
+
+	public int getMaxTablesInSelect() throws SQLException {
+		String key = "getMaxTablesInSelect";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.getMaxTablesInSelect());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Integer) MetaDataCache.unmask(result);
+	}
+
+	public int getMaxUserNameLength() throws SQLException {
+		String key = "getMaxUserNameLength";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.getMaxUserNameLength());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Integer) MetaDataCache.unmask(result);
+	}
+
+	public int getDefaultTransactionIsolation() throws SQLException {
+		String key = "getDefaultTransactionIsolation";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.getDefaultTransactionIsolation());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Integer) MetaDataCache.unmask(result);
+	}
+
+	public boolean supportsTransactions() throws SQLException {
+		String key = "supportsTransactions";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.supportsTransactions());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Boolean) MetaDataCache.unmask(result);
+	}
+
+	public boolean supportsTransactionIsolationLevel(int level) throws SQLException {
+		String key = MetaDataCache.calculateKey("supportsTransactionIsolationLevel", level);
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.supportsTransactionIsolationLevel(level));
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Boolean) MetaDataCache.unmask(result);
+	}
+
+	public boolean supportsDataDefinitionAndDataManipulationTransactions() throws SQLException {
+		String key = "supportsDataDefinitionAndDataManipulationTransactions";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.supportsDataDefinitionAndDataManipulationTransactions());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Boolean) MetaDataCache.unmask(result);
+	}
+
+	public boolean supportsDataManipulationTransactionsOnly() throws SQLException {
+		String key = "supportsDataManipulationTransactionsOnly";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.supportsDataManipulationTransactionsOnly());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Boolean) MetaDataCache.unmask(result);
+	}
+
+	public boolean dataDefinitionCausesTransactionCommit() throws SQLException {
+		String key = "dataDefinitionCausesTransactionCommit";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.dataDefinitionCausesTransactionCommit());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Boolean) MetaDataCache.unmask(result);
+	}
+
+	public boolean dataDefinitionIgnoredInTransactions() throws SQLException {
+		String key = "dataDefinitionIgnoredInTransactions";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.dataDefinitionIgnoredInTransactions());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Boolean) MetaDataCache.unmask(result);
+	}
+
+	public ResultSet getProcedures(String catalog, String schemaPattern, String procedureNamePattern) throws SQLException {
+		String key = scopedKey(MetaDataCache.calculateKey("getProcedures", catalog, schemaPattern, procedureNamePattern), catalog, schemaPattern);
+		MetaDataSnapshot result = this.cache.getSnapshot(key);
+		if (result == null){
+			try {
+				result = this.cache.putSnapshot(key, this.internalMetaData.getProcedures(catalog, schemaPattern, procedureNamePattern));
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return new MetaDataResultSet(result);
+	}
+
+	public ResultSet getProcedureColumns(String catalog, String schemaPattern, String procedureNamePattern, String columnNamePattern) throws SQLException {
+		String key = scopedKey(MetaDataCache.calculateKey("getProcedureColumns", catalog, schemaPattern, procedureNamePattern, columnNamePattern), catalog, schemaPattern);
+		MetaDataSnapshot result = this.cache.getSnapshot(key);
+		if (result == null){
+			try {
+				result = this.cache.putSnapshot(key, this.internalMetaData.getProcedureColumns(catalog, schemaPattern, procedureNamePattern, columnNamePattern));
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return new MetaDataResultSet(result);
+	}
+
+	public ResultSet getTables(String catalog, String schemaPattern, String tableNamePattern, String[] types) throws SQLException {
+		String key = scopedKey(MetaDataCache.calculateKey("getTables", catalog, schemaPattern, tableNamePattern, types), catalog, schemaPattern);
+		MetaDataSnapshot result = this.cache.getSnapshot(key);
+		if (result == null){
+			try {
+				result = this.cache.putSnapshot(key, this.internalMetaData.getTables(catalog, schemaPattern, tableNamePattern, types));
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return new MetaDataResultSet(result);
+	}
+
+	public ResultSet getSchemas() throws SQLException {
+		String key = "getSchemas";
+		MetaDataSnapshot result = this.cache.getSnapshot(key);
+		if (result == null){
+			try {
+				result = this.cache.putSnapshot(key, this.internalMetaData.getSchemas());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return new MetaDataResultSet(result);
+	}
+
+	public ResultSet getCatalogs() throws SQLException {
+		String key = "getCatalogs";
+		MetaDataSnapshot result = this.cache.getSnapshot(key);
+		if (result == null){
+			try {
+				result = this.cache.putSnapshot(key, this.internalMetaData.getCatalogs());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return new MetaDataResultSet(result);
+	}
+
+	public ResultSet getTableTypes() throws SQLException {
+		String key = "getTableTypes";
+		MetaDataSnapshot result = this.cache.getSnapshot(key);
+		if (result == null){
+			try {
+				result = this.cache.putSnapshot(key, this.internalMetaData.getTableTypes());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return new MetaDataResultSet(result);
+	}
+
+	public ResultSet getColumns(String catalog, String schemaPattern, String tableNamePattern, String columnNamePattern) throws SQLException {
+		String key = scopedKey(MetaDataCache.calculateKey("getColumns", catalog, schemaPattern, tableNamePattern, columnNamePattern), catalog, schemaPattern);
+		MetaDataSnapshot result = this.cache.getSnapshot(key);
+		if (result == null){
+			try {
+				result = this.cache.putSnapshot(key, this.internalMetaData.getColumns(catalog, schemaPattern, tableNamePattern, columnNamePattern));
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return new MetaDataResultSet(result);
+	}
+
+	public ResultSet getColumnPrivileges(String catalog, String schema, String table, String columnNamePattern) throws SQLException {
+		String key = scopedKey(MetaDataCache.calculateKey("getColumnPrivileges", catalog, schema, table, columnNamePattern), catalog, schema);
+		MetaDataSnapshot result = this.cache.getSnapshot(key);
+		if (result == null){
+			try {
+				result = this.cache.putSnapshot(key, this.internalMetaData.getColumnPrivileges(catalog, schema, table, columnNamePattern));
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return new MetaDataResultSet(result);
+	}
+
+	public ResultSet getTablePrivileges(String catalog, String schemaPattern, String tableNamePattern) throws SQLException {
+		String key = scopedKey(MetaDataCache.calculateKey("getTablePrivileges", catalog, schemaPattern, tableNamePattern), catalog, schemaPattern);
+		MetaDataSnapshot result = this.cache.getSnapshot(key);
+		if (result == null){
+			try {
+				result = this.cache.putSnapshot(key, this.internalMetaData.getTablePrivileges(catalog, schemaPattern, tableNamePattern));
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return new MetaDataResultSet(result);
+	}
+
+	public ResultSet getBestRowIdentifier(String catalog, String schema, String table, int scope, boolean nullable) throws SQLException {
+		String key = scopedKey(MetaDataCache.calculateKey("getBestRowIdentifier", catalog, schema, table, scope, nullable), catalog, schema);
+		MetaDataSnapshot result = this.cache.getSnapshot(key);
+		if (result == null){
+			try {
+				result = this.cache.putSnapshot(key, this.internalMetaData.getBestRowIdentifier(catalog, schema, table, scope, nullable));
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return new MetaDataResultSet(result);
+	}
+
+	public ResultSet getVersionColumns(String catalog, String schema, String table) throws SQLException {
+		String key = scopedKey(MetaDataCache.calculateKey("getVersionColumns", catalog, schema, table), catalog, schema);
+		MetaDataSnapshot result = this.cache.getSnapshot(key);
+		if (result == null){
+			try {
+				result = this.cache.putSnapshot(key, this.internalMetaData.getVersionColumns(catalog, schema, table));
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return new MetaDataResultSet(result);
+	}
+
+	public ResultSet getPrimaryKeys(String catalog, String schema, String table) throws SQLException {
+		String key = scopedKey(MetaDataCache.calculateKey("getPrimaryKeys", catalog, schema, table), catalog, schema);
+		MetaDataSnapshot result = this.cache.getSnapshot(key);
+		if (result == null){
+			try {
+				result = this.cache.putSnapshot(key, this.internalMetaData.getPrimaryKeys(catalog, schema, table));
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return new MetaDataResultSet(result);
+	}
+
+	public ResultSet getImportedKeys(String catalog, String schema, String table) throws SQLException {
+		String key = scopedKey(MetaDataCache.calculateKey("getImportedKeys", catalog, schema, table), catalog, schema);
+		MetaDataSnapshot result = this.cache.getSnapshot(key);
+		if (result == null){
+			try {
+				result = this.cache.putSnapshot(key, this.internalMetaData.getImportedKeys(catalog, schema, table));
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return new MetaDataResultSet(result);
+	}
+
+	public ResultSet getExportedKeys(String catalog, String schema, String table) throws SQLException {
+		String key = scopedKey(MetaDataCache.calculateKey("getExportedKeys", catalog, schema, table), catalog, schema);
+		MetaDataSnapshot result = this.cache.getSnapshot(key);
+		if (result == null){
+			try {
+				result = this.cache.putSnapshot(key, this.internalMetaData.getExportedKeys(catalog, schema, table));
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return new MetaDataResultSet(result);
+	}
+
+	public ResultSet getCrossReference(String parentCatalog, String parentSchema, String parentTable, String foreignCatalog, String foreignSchema, String foreignTable) throws SQLException {
+		String key = scopedKey(scopedKey(MetaDataCache.calculateKey("getCrossReference", parentCatalog, parentSchema, parentTable, foreignCatalog, foreignSchema, foreignTable), parentCatalog, parentSchema), foreignCatalog, foreignSchema);
+		MetaDataSnapshot result = this.cache.getSnapshot(key);
+		if (result == null){
+			try {
+				result = this.cache.putSnapshot(key, this.internalMetaData.getCrossReference(parentCatalog, parentSchema, parentTable, foreignCatalog, foreignSchema, foreignTable));
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return new MetaDataResultSet(result);
+	}
+
+	public ResultSet getTypeInfo() throws SQLException {
+		String key = "getTypeInfo";
+		MetaDataSnapshot result = this.cache.getSnapshot(key);
+		if (result == null){
+			try {
+				result = this.cache.putSnapshot(key, this.internalMetaData.getTypeInfo());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return new MetaDataResultSet(result);
+	}
+
+	public ResultSet getIndexInfo(String catalog, String schema, String table, boolean unique, boolean approximate) throws SQLException {
+		String key = scopedKey(MetaDataCache.calculateKey("getIndexInfo", catalog, schema, table, unique, approximate), catalog, schema);
+		MetaDataSnapshot result = this.cache.getSnapshot(key);
+		if (result == null){
+			try {
+				result = this.cache.putSnapshot(key, this.internalMetaData.getIndexInfo(catalog, schema, table, unique, approximate));
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return new MetaDataResultSet(result);
+	}
+
+	public boolean supportsResultSetType(int type) throws SQLException {
+		String key = MetaDataCache.calculateKey("supportsResultSetType", type);
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.supportsResultSetType(type));
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Boolean) MetaDataCache.unmask(result);
+	}
+
+	public boolean supportsResultSetConcurrency(int type, int concurrency) throws SQLException {
+		String key = MetaDataCache.calculateKey("supportsResultSetConcurrency", type, concurrency);
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.supportsResultSetConcurrency(type, concurrency));
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Boolean) MetaDataCache.unmask(result);
+	}
+
+	public boolean ownUpdatesAreVisible(int type) throws SQLException {
+		String key = MetaDataCache.calculateKey("ownUpdatesAreVisible", type);
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.ownUpdatesAreVisible(type));
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Boolean) MetaDataCache.unmask(result);
+	}
+
+	public boolean ownDeletesAreVisible(int type) throws SQLException {
+		String key = MetaDataCache.calculateKey("ownDeletesAreVisible", type);
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.ownDeletesAreVisible(type));
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Boolean) MetaDataCache.unmask(result);
+	}
+
+	public boolean ownInsertsAreVisible(int type) throws SQLException {
+		String key = MetaDataCache.calculateKey("ownInsertsAreVisible", type);
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.ownInsertsAreVisible(type));
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Boolean) MetaDataCache.unmask(result);
+	}
+
+	public boolean othersUpdatesAreVisible(int type) throws SQLException {
+		String key = MetaDataCache.calculateKey("othersUpdatesAreVisible", type);
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.othersUpdatesAreVisible(type));
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Boolean) MetaDataCache.unmask(result);
+	}
+
+	public boolean othersDeletesAreVisible(int type) throws SQLException {
+		String key = MetaDataCache.calculateKey("othersDeletesAreVisible", type);
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.othersDeletesAreVisible(type));
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Boolean) MetaDataCache.unmask(result);
+	}
+
+	public boolean othersInsertsAreVisible(int type) throws SQLException {
+		String key = MetaDataCache.calculateKey("othersInsertsAreVisible", type);
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.othersInsertsAreVisible(type));
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Boolean) MetaDataCache.unmask(result);
+	}
+
+	public boolean updatesAreDetected(int type) throws SQLException {
+		String key = MetaDataCache.calculateKey("updatesAreDetected", type);
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.updatesAreDetected(type));
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Boolean) MetaDataCache.unmask(result);
+	}
+
+	public boolean deletesAreDetected(int type) throws SQLException {
+		String key = MetaDataCache.calculateKey("deletesAreDetected", type);
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.deletesAreDetected(type));
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Boolean) MetaDataCache.unmask(result);
+	}
+
+	public boolean insertsAreDetected(int type) throws SQLException {
+		String key = MetaDataCache.calculateKey("insertsAreDetected", type);
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.insertsAreDetected(type));
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Boolean) MetaDataCache.unmask(result);
+	}
+
+	public boolean supportsBatchUpdates() throws SQLException {
+		String key = "supportsBatchUpdates";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.supportsBatchUpdates());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Boolean) MetaDataCache.unmask(result);
+	}
+
+	public ResultSet getUDTs(String catalog, String schemaPattern, String typeNamePattern, int[] types) throws SQLException {
+		String key = scopedKey(MetaDataCache.calculateKey("getUDTs", catalog, schemaPattern, typeNamePattern, types), catalog, schemaPattern);
+		MetaDataSnapshot result = this.cache.getSnapshot(key);
+		if (result == null){
+			try {
+				result = this.cache.putSnapshot(key, this.internalMetaData.getUDTs(catalog, schemaPattern, typeNamePattern, types));
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return new MetaDataResultSet(result);
+	}
+
+	public Connection getConnection() throws SQLException {
+		return this.connectionHandle;
+	}
+
+	public boolean supportsSavepoints() throws SQLException {
+		String key = "supportsSavepoints";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.supportsSavepoints());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Boolean) MetaDataCache.unmask(result);
+	}
+
+	public boolean supportsNamedParameters() throws SQLException {
+		String key = "supportsNamedParameters";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.supportsNamedParameters());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Boolean) MetaDataCache.unmask(result);
+	}
+
+	public boolean supportsMultipleOpenResults() throws SQLException {
+		String key = "supportsMultipleOpenResults";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.supportsMultipleOpenResults());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Boolean) MetaDataCache.unmask(result);
+	}
+
+	public boolean supportsGetGeneratedKeys() throws SQLException {
+		String key = "supportsGetGeneratedKeys";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.supportsGetGeneratedKeys());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Boolean) MetaDataCache.unmask(result);
+	}
+
+	public ResultSet getSuperTypes(String catalog, String schemaPattern, String typeNamePattern) throws SQLException {
+		String key = scopedKey(MetaDataCache.calculateKey("getSuperTypes", catalog, schemaPattern, typeNamePattern), catalog, schemaPattern);
+		MetaDataSnapshot result = this.cache.getSnapshot(key);
+		if (result == null){
+			try {
+				result = this.cache.putSnapshot(key, this.internalMetaData.getSuperTypes(catalog, schemaPattern, typeNamePattern));
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return new MetaDataResultSet(result);
+	}
+
+	public ResultSet getSuperTables(String catalog, String schemaPattern, String tableNamePattern) throws SQLException {
+		String key = scopedKey(MetaDataCache.calculateKey("getSuperTables", catalog, schemaPattern, tableNamePattern), catalog, schemaPattern);
+		MetaDataSnapshot result = this.cache.getSnapshot(key);
+		if (result == null){
+			try {
+				result = this.cache.putSnapshot(key, this.internalMetaData.getSuperTables(catalog, schemaPattern, tableNamePattern));
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return new MetaDataResultSet(result);
+	}
+
+	public ResultSet getAttributes(String catalog, String schemaPattern, String typeNamePattern, String attributeNamePattern) throws SQLException {
+		String key = scopedKey(MetaDataCache.calculateKey("getAttributes", catalog, schemaPattern, typeNamePattern, attributeNamePattern), catalog, schemaPattern);
+		MetaDataSnapshot result = this.cache.getSnapshot(key);
+		if (result == null){
+			try {
+				result = this.cache.putSnapshot(key, this.internalMetaData.getAttributes(catalog, schemaPattern, typeNamePattern, attributeNamePattern));
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return new MetaDataResultSet(result);
+	}
+
+	public boolean supportsResultSetHoldability(int holdability) throws SQLException {
+		String key = MetaDataCache.calculateKey("supportsResultSetHoldability", holdability);
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.supportsResultSetHoldability(holdability));
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Boolean) MetaDataCache.unmask(result);
+	}
+
+	public int getResultSetHoldability() throws SQLException {
+		String key = "getResultSetHoldability";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.getResultSetHoldability());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Integer) MetaDataCache.unmask(result);
+	}
+
+	public int getDatabaseMajorVersion() throws SQLException {
+		String key = "getDatabaseMajorVersion";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.getDatabaseMajorVersion());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Integer) MetaDataCache.unmask(result);
+	}
+
+	public int getDatabaseMinorVersion() throws SQLException {
+		String key = "getDatabaseMinorVersion";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.getDatabaseMinorVersion());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Integer) MetaDataCache.unmask(result);
+	}
+
+	public int getJDBCMajorVersion() throws SQLException {
+		String key = "getJDBCMajorVersion";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.getJDBCMajorVersion());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Integer) MetaDataCache.unmask(result);
+	}
+
+	public int getJDBCMinorVersion() throws SQLException {
+		String key = "getJDBCMinorVersion";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.getJDBCMinorVersion());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Integer) MetaDataCache.unmask(result);
+	}
+
+	public int getSQLStateType() throws SQLException {
+		String key = "getSQLStateType";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.getSQLStateType());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Integer) MetaDataCache.unmask(result);
+	}
+
+	public boolean locatorsUpdateCopy() throws SQLException {
+		String key = "locatorsUpdateCopy";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.locatorsUpdateCopy());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Boolean) MetaDataCache.unmask(result);
+	}
+
+	public boolean supportsStatementPooling() throws SQLException {
+		String key = "supportsStatementPooling";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.supportsStatementPooling());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Boolean) MetaDataCache.unmask(result);
+	}
+
+	// #ifdef JDK>6
+	public RowIdLifetime getRowIdLifetime() throws SQLException {
+		String key = "getRowIdLifetime";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.getRowIdLifetime());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (RowIdLifetime) MetaDataCache.unmask(result);
+	}
+
+	public ResultSet getSchemas(String catalog, String schemaPattern) throws SQLException {
+		String key = scopedKey(MetaDataCache.calculateKey("getSchemas", catalog, schemaPattern), catalog, schemaPattern);
+		MetaDataSnapshot result = this.cache.getSnapshot(key);
+		if (result == null){
+			try {
+				result = this.cache.putSnapshot(key, this.internalMetaData.getSchemas(catalog, schemaPattern));
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return new MetaDataResultSet(result);
+	}
+
+	public boolean supportsStoredFunctionsUsingCallSyntax() throws SQLException {
+		String key = "supportsStoredFunctionsUsingCallSyntax";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.supportsStoredFunctionsUsingCallSyntax());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Boolean) MetaDataCache.unmask(result);
+	}
+
+	public boolean autoCommitFailureClosesAllResultSets() throws SQLException {
+		String key = "autoCommitFailureClosesAllResultSets";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.autoCommitFailureClosesAllResultSets());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Boolean) MetaDataCache.unmask(result);
+	}
+
+	public ResultSet getClientInfoProperties() throws SQLException {
+		String key = "getClientInfoProperties";
+		MetaDataSnapshot result = this.cache.getSnapshot(key);
+		if (result == null){
+			try {
+				result = this.cache.putSnapshot(key, this.internalMetaData.getClientInfoProperties());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return new MetaDataResultSet(result);
+	}
+
+	public ResultSet getFunctions(String catalog, String schemaPattern, String functionNamePattern) throws SQLException {
+		String key = scopedKey(MetaDataCache.calculateKey("getFunctions", catalog, schemaPattern, functionNamePattern), catalog, schemaPattern);
+		MetaDataSnapshot result = this.cache.getSnapshot(key);
+		if (result == null){
+			try {
+				result = this.cache.putSnapshot(key, this.internalMetaData.getFunctions(catalog, schemaPattern, functionNamePattern));
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return new MetaDataResultSet(result);
+	}
+
+	public ResultSet getFunctionColumns(String catalog, String schemaPattern, String functionNamePattern, String columnNamePattern) throws SQLException {
+		String key = scopedKey(MetaDataCache.calculateKey("getFunctionColumns", catalog, schemaPattern, functionNamePattern, columnNamePattern), catalog, schemaPattern);
+		MetaDataSnapshot result = this.cache.getSnapshot(key);
+		if (result == null){
+			try {
+				result = this.cache.putSnapshot(key, this.internalMetaData.getFunctionColumns(catalog, schemaPattern, functionNamePattern, columnNamePattern));
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return new MetaDataResultSet(result);
+	}
+
+	public boolean isWrapperFor(Class<?> iface) throws SQLException {
+		return this.internalMetaData.isWrapperFor(iface);
+	}
+
+	public <T> T unwrap(Class<T> iface) throws SQLException {
+		return this.internalMetaData.unwrap(iface);
+	}
+	// #endif JDK>6
+
+	// #ifdef JDK7
+	public ResultSet getPseudoColumns(String catalog, String schemaPattern, String tableNamePattern, String columnNamePattern) throws SQLException {
+		String key = scopedKey(MetaDataCache.calculateKey("getPseudoColumns", catalog, schemaPattern, tableNamePattern, columnNamePattern), catalog, schemaPattern);
+		MetaDataSnapshot result = this.cache.getSnapshot(key);
+		if (result == null){
+			try {
+				result = this.cache.putSnapshot(key, this.internalMetaData.getPseudoColumns(catalog, schemaPattern, tableNamePattern, columnNamePattern));
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return new MetaDataResultSet(result);
+	}
+
+	public boolean generatedKeyAlwaysReturned() throws SQLException {
+		String key = "generatedKeyAlwaysReturned";
+		Object result = this.cache.getCapability(key);
+		if (result == null){
+			try {
+				result = this.cache.putCapability(key, this.internalMetaData.generatedKeyAlwaysReturned());
+			} catch (SQLException e) {
+				throw this.connectionHandle.markPossiblyBroken(e);
+			}
+		}
+		return (Boolean) MetaDataCache.unmask(result);
+	}
+
+	// #endif JDK7
+}
@@ -20,8 +20,12 @@ import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+
 /** The normal getConnection() strategy class in use. Attempts to get a connection from 
  * one or more configured partitions.
  * @author wallacew
@@ -36,11 +40,18 @@ public class DefaultConnectionStrategy extends AbstractConnectionStrategy {
 		this.pool = pool;
 	}
 	
+	/** Picks the partition the calling thread should try first (and wait on if nothing is free).
+	 * @return partition index
+	 */
+	protected int selectPartition(){
+		return (int) (Thread.currentThread().getId() % this.pool.partitionCount);
+	}
+
 	@Override
   public ConnectionHandle pollConnection(){
     ConnectionHandle result = null;
 
-    int partition = (int) (Thread.currentThread().getId() % this.pool.partitionCount);
+    int partition = selectPartition();
     ConnectionPartition connectionPartition = this.pool.partitions[partition];
     
     result = connectionPartition.getFreeConnections().poll();
@@ -75,7 +86,7 @@ public class DefaultConnectionStrategy extends AbstractConnectionStrategy {
 		
 		// we still didn't find an empty one, wait forever (or as per config) until our partition is free
 		if (result == null) {
-			int partition = (int) (Thread.currentThread().getId() % this.pool.partitionCount);
+			int partition = selectPartition();
 			ConnectionPartition connectionPartition = this.pool.partitions[partition];
 
 			try {
@@ -99,12 +110,45 @@ public class DefaultConnectionStrategy extends AbstractConnectionStrategy {
 		return result;
 	}
 	
+	/** Obtains a connection without blocking. If none is free right away, a request is parked on this thread's
+	 * partition and completed by whichever thread next hands a connection back to that partition.
+	 * @param timeoutScheduler timer used to expire requests as per connectionTimeoutInMs.
+	 * @return a future that completes with the connection.
+	 */
+	public ListenableFuture<Connection> getAsyncConnection(ScheduledExecutorService timeoutScheduler){
+		long statsObtainTime;
+		try{
+			statsObtainTime = preConnection();
+		} catch (SQLException e){
+			return Futures.immediateFailedFuture(e);
+		}
+
+		ConnectionHandle result = pollConnection();
+		if (result != null){
+			postConnection(result, statsObtainTime);
+			return Futures.<Connection>immediateFuture(result);
+		}
+
+		int partition = selectPartition();
+		ConnectionPartition connectionPartition = this.pool.partitions[partition];
+		AsyncConnectionRequest request = new AsyncConnectionRequest(this, connectionPartition, statsObtainTime, this.pool.nullOnConnectionTimeout);
+		connectionPartition.addAsyncWaiter(request);
+
+		// a connection might have been released after we polled but before we were parked
+		connectionPartition.serveAsyncWaiters();
+
+		if (!request.isDone() && this.pool.connectionTimeoutInMs != Long.MAX_VALUE){
+			request.scheduleTimeout(timeoutScheduler, this.pool.connectionTimeoutInMs);
+		}
+		return request;
+	}
+
 	/** Closes off all connections in all partitions. */
 	public void terminateAllConnections(){
 		this.terminationLock.lock();
 		try{
-			// close off all connections.
-			for (int i=0; i < this.pool.partitionCount; i++) {
+			// close off all connections (including those in partitions retired by a reconfiguration).
+			for (int i=0; i < this.pool.partitions.length; i++) {
 				this.pool.partitions[i].setUnableToCreateMoreTransactions(false); // we can create new ones now, this is an optimization
 				List<ConnectionHandle> clist = new LinkedList<ConnectionHandle>(); 
 				this.pool.partitions[i].getFreeConnections().drainTo(clist);
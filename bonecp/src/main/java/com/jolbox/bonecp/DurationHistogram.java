@@ -0,0 +1,194 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+/**
+ * 
+ */
+package com.jolbox.bonecp;
+
+import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of durations in nanoseconds. Each power of two is split into 8 linear buckets, so any 
+ * recorded value is known to within 12.5% while the whole range of a long fits in fewer than 500 counters. 
+ * Recording is a single atomic increment. Percentiles and moments are computed on a snapshot of the counters
+ * so that callers can diff two snapshots to look at a window of time.
+ * 
+ * @author wallacew
+ *
+ */
+public class DurationHistogram implements Serializable {
+	/** uid */
+	private static final long serialVersionUID = 2960371565549167521L;
+	/** log2 of the number of linear buckets per power of two. */
+	private static final int SUB_BUCKET_BITS = 3;
+	/** Number of linear buckets per power of two. */
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	/** Number of buckets needed to cover every positive long. */
+	protected static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+	/** Counters. */
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+	/** Records a duration.
+	 * @param nanos duration in nanoseconds. Negative values are recorded as 0.
+	 */
+	public void record(long nanos){
+		this.counts.incrementAndGet(bucketOf(Math.max(0, nanos)));
+	}
+
+	/** Returns a copy of the counters.
+	 * @return one count per bucket.
+	 */
+	public long[] snapshot(){
+		long[] result = new long[BUCKETS];
+		for (int i=0; i < BUCKETS; i++){
+			result[i] = this.counts.get(i);
+		}
+		return result;
+	}
+
+	/** Clears all counters. */
+	public void reset(){
+		for (int i=0; i < BUCKETS; i++){
+			this.counts.set(i, 0);
+		}
+	}
+
+	/** Returns the bucket a value falls in.
+	 * @param value value (>= 0)
+	 * @return bucket index
+	 */
+	protected static int bucketOf(long value){
+		if (value < SUB_BUCKETS){
+			return (int) value;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int sub = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+	}
+
+	/** Returns the smallest value that falls in the given bucket.
+	 * @param bucket bucket index
+	 * @return lowest value in the bucket
+	 */
+	protected static long lowerBound(int bucket){
+		if (bucket < SUB_BUCKETS){
+			return bucket;
+		}
+		int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+		return ((long)(SUB_BUCKETS + bucket % SUB_BUCKETS)) << (exponent - SUB_BUCKET_BITS);
+	}
+
+	/** Returns the width of the given bucket.
+	 * @param bucket bucket index
+	 * @return number of distinct values falling in the bucket
+	 */
+	protected static long width(int bucket){
+		return bucket < 2 * SUB_BUCKETS ? 1 : 1L << (bucket / SUB_BUCKETS - 1);
+	}
+
+	/** Returns the value used to stand for everything recorded in the given bucket.
+	 * @param bucket bucket index
+	 * @return midpoint of the bucket
+	 */
+	protected static double midpoint(int bucket){
+		return lowerBound(bucket) + (width(bucket) - 1) / 2.0;
+	}
+
+	/** Returns the counts of the later snapshot minus the earlier one.
+	 * @param later later snapshot
+	 * @param earlier earlier snapshot (may be null)
+	 * @return per-bucket difference, or null if a counter went backwards (eg statistics were reset in between)
+	 */
+	public static long[] difference(long[] later, long[] earlier){
+		long[] result = new long[BUCKETS];
+		for (int i=0; i < BUCKETS; i++){
+			result[i] = later[i] - (earlier == null ? 0 : earlier[i]);
+			if (result[i] < 0){
+				return null;
+			}
+		}
+		return result;
+	}
+
+	/** Returns the number of values in a snapshot.
+	 * @param counts snapshot
+	 * @return total count
+	 */
+	public static long count(long[] counts){
+		long result = 0;
+		for (long count: counts){
+			result += count;
+		}
+		return result;
+	}
+
+	/** Returns the mean of a snapshot.
+	 * @param counts snapshot
+	 * @return mean in nanoseconds, 0 if empty
+	 */
+	public static double mean(long[] counts){
+		return moment(counts, 1);
+	}
+
+	/** Returns the mean of the squared values of a snapshot.
+	 * @param counts snapshot
+	 * @return second moment in nanoseconds squared, 0 if empty
+	 */
+	public static double secondMoment(long[] counts){
+		return moment(counts, 2);
+	}
+
+	/** Returns a raw moment of a snapshot, taking every value to be at its bucket midpoint.
+	 * @param counts snapshot
+	 * @param power 1 or 2
+	 * @return moment
+	 */
+	private static double moment(long[] counts, int power){
+		long total = 0;
+		double sum = 0;
+		for (int i=0; i < BUCKETS; i++){
+			if (counts[i] > 0){
+				double value = midpoint(i);
+				total += counts[i];
+				sum += counts[i] * (power == 1 ? value : value * value);
+			}
+		}
+		return total == 0 ? 0 : sum / total;
+	}
+
+	/** Returns the value below which the given percentage of a snapshot falls.
+	 * @param counts snapshot
+	 * @param percentile 0..100
+	 * @return value in nanoseconds (bucket midpoint), 0 if empty
+	 */
+	public static double valueAtPercentile(long[] counts, double percentile){
+		long total = count(counts);
+		if (total == 0){
+			return 0;
+		}
+		long rank = Math.max(1, (long) Math.ceil(total * percentile / 100.0));
+		long seen = 0;
+		for (int i=0; i < BUCKETS; i++){
+			seen += counts[i];
+			if (seen >= rank){
+				return midpoint(i);
+			}
+		}
+		return midpoint(BUCKETS - 1);
+	}
+}
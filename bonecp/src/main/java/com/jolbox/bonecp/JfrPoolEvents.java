@@ -0,0 +1,462 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+/**
+ * 
+ */
+package com.jolbox.bonecp;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.FlightRecorderListener;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Period;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+import com.google.common.collect.MapMaker;
+
+/**
+ * Pool events backed by the Java Flight Recorder. Only ever loaded reflectively by {@link PoolEvents}, after checking 
+ * that the jdk.jfr API is present, so nothing else in the pool may refer to this class or its events. At compile time 
+ * the jdk.jfr API comes from bonecp-jdk-compat on JDKs that don't ship it.
+ * 
+ * <p>A flight recorder listener keeps {@link PoolEvents#recording} up to date; each event is then only populated 
+ * if its type is enabled in a running recording. Stack traces are off by default to keep the per-event cost down 
+ * and may be switched on in the recording settings.
+ * 
+ * @author wallacew
+ *
+ */
+public class JfrPoolEvents extends PoolEvents {
+	/** Category of all pool events. */
+	protected static final String CATEGORY = "BoneCP";
+	/** Pools included in the periodic statistics snapshot. */
+	private final ConcurrentMap<BoneCP, Boolean> pools = new MapMaker().weakKeys().makeMap();
+	/** Recordings currently running. */
+	private final Set<Recording> running = new HashSet<Recording>();
+
+	/** Hooks into the flight recorder.
+	 * @throws IllegalStateException if the flight recorder is disabled in this JVM.
+	 */
+	public JfrPoolEvents(){
+		if (!FlightRecorder.isAvailable()){
+			throw new IllegalStateException("Flight recorder is not available in this JVM");
+		}
+		FlightRecorder.addListener(new FlightRecorderListener() {
+			// @Override
+			public void recorderInitialized(FlightRecorder recorder) {
+				for (Recording recording: recorder.getRecordings()){
+					update(recording);
+				}
+			}
+
+			// @Override
+			public void recordingStateChanged(Recording recording) {
+				update(recording);
+			}
+		});
+		FlightRecorder.addPeriodicEvent(PoolStatisticsEvent.class, new Runnable() {
+			// @Override
+			public void run() {
+				emitStatistics();
+			}
+		});
+	}
+
+	/** Tracks the state of a recording and updates the recording flag accordingly.
+	 * @param recording recording whose state may have changed
+	 */
+	protected void update(Recording recording){
+		synchronized (this.running) {
+			if (recording.getState() == RecordingState.RUNNING){
+				this.running.add(recording);
+			} else {
+				this.running.remove(recording);
+			}
+			PoolEvents.recording = !this.running.isEmpty();
+		}
+	}
+
+	/** Emits a statistics snapshot for each registered pool. */
+	protected void emitStatistics(){
+		for (BoneCP pool: this.pools.keySet()){
+			PoolStatisticsEvent event = new PoolStatisticsEvent();
+			Statistics statistics = pool.getStatistics();
+			event.poolName = pool.getConfig().getPoolName();
+			event.totalLeased = statistics.getTotalLeased();
+			event.totalFree = statistics.getTotalFree();
+			event.totalCreated = statistics.getTotalCreatedConnections();
+			event.connectionsRequested = statistics.getConnectionsRequested();
+			event.connectionWaitTimeAvg = statistics.getConnectionWaitTimeAvg();
+			event.statementsExecuted = statistics.getStatementsExecuted();
+			event.cacheHits = statistics.getCacheHits();
+			event.cacheMisses = statistics.getCacheMiss();
+			event.commit();
+		}
+	}
+
+	@Override
+	protected void register(BoneCP pool){
+		this.pools.put(pool, Boolean.TRUE);
+	}
+
+	@Override
+	protected void unregister(BoneCP pool){
+		this.pools.remove(pool);
+	}
+
+	@Override
+	protected void connectionAcquired(ConnectionHandle handle, long requestedAt){
+		ConnectionAcquireEvent event = new ConnectionAcquireEvent();
+		if (event.isEnabled()){
+			event.poolName = handle.getPool().getConfig().getPoolName();
+			event.partition = partitionIndex(handle.getPool(), handle.getOriginatingPartition());
+			event.waitTime = System.nanoTime() - requestedAt;
+			event.commit();
+		}
+	}
+
+	@Override
+	protected void connectionReleased(ConnectionHandle handle, long checkedOutAt){
+		ConnectionReleaseEvent event = new ConnectionReleaseEvent();
+		if (event.isEnabled()){
+			event.poolName = handle.getPool().getConfig().getPoolName();
+			event.partition = partitionIndex(handle.getPool(), handle.getOriginatingPartition());
+			event.holdTime = System.nanoTime() - checkedOutAt;
+			event.commit();
+		}
+	}
+
+	@Override
+	protected void connectionCreated(ConnectionHandle handle, long startedAt){
+		ConnectionCreateEvent event = new ConnectionCreateEvent();
+		if (event.isEnabled()){
+			event.poolName = handle.getPool().getConfig().getPoolName();
+			event.partition = partitionIndex(handle.getPool(), handle.getOriginatingPartition());
+			event.createTime = System.nanoTime() - startedAt;
+			event.commit();
+		}
+	}
+
+	@Override
+	protected void connectionDestroyed(ConnectionHandle handle){
+		ConnectionDestroyEvent event = new ConnectionDestroyEvent();
+		if (event.isEnabled()){
+			BoneCP pool = handle.getPool();
+			event.poolName = pool.getConfig().getPoolName();
+			event.partition = partitionIndex(pool, handle.getOriginatingPartition());
+			event.reason = destroyReason(pool, handle, event.partition);
+			event.age = TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis() - handle.getConnectionCreationTimeInMs());
+			event.commit();
+		}
+	}
+
+	@Override
+	protected void statementPrepared(ConnectionHandle handle, String sql, boolean cacheHit, long startedAt){
+		StatementPrepareEvent event = new StatementPrepareEvent();
+		if (event.isEnabled()){
+			event.poolName = handle.getPool().getConfig().getPoolName();
+			event.sql = sql;
+			event.cacheHit = cacheHit;
+			event.prepareTime = System.nanoTime() - startedAt;
+			event.commit();
+		}
+	}
+
+	@Override
+	protected void statementExecuted(StatementHandle statement, String sql, long startedAt){
+		StatementExecuteEvent event = new StatementExecuteEvent();
+		if (event.isEnabled()){
+			event.executeTime = System.nanoTime() - startedAt;
+			event.poolName = statement.connectionHandle.getPool().getConfig().getPoolName();
+			event.fingerprint = statement.getFingerprint(sql);
+			event.rows = statement.executeRows;
+			event.commit();
+		}
+	}
+
+	@Override
+	protected void connectionValidated(ConnectionHandle handle, boolean alive, long startedAt){
+		ConnectionValidationEvent event = new ConnectionValidationEvent();
+		if (event.isEnabled()){
+			event.poolName = handle.getPool().getConfig().getPoolName();
+			event.partition = partitionIndex(handle.getPool(), handle.getOriginatingPartition());
+			event.alive = alive;
+			event.validationTime = System.nanoTime() - startedAt;
+			event.commit();
+		}
+	}
+
+	@Override
+	protected void partitionFilled(ConnectionPartition partition, int requested, int created, long startedAt){
+		PartitionFillEvent event = new PartitionFillEvent();
+		if (event.isEnabled()){
+			event.poolName = partition.pool.getConfig().getPoolName();
+			event.partition = partitionIndex(partition.pool, partition);
+			event.requested = requested;
+			event.created = created;
+			event.fillTime = System.nanoTime() - startedAt;
+			event.commit();
+		}
+	}
+
+	/** Returns the index of a partition within its pool.
+	 * @param pool pool
+	 * @param partition partition
+	 * @return index, or -1 if the partition is unknown to the pool
+	 */
+	protected static int partitionIndex(BoneCP pool, ConnectionPartition partition){
+		ConnectionPartition[] partitions = pool.partitions;
+		for (int i=0; partitions != null && i < partitions.length; i++){
+			if (partitions[i] == partition){
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/** Works out why a connection is being destroyed.
+	 * @param pool pool
+	 * @param handle connection being destroyed
+	 * @param partition index of the connection's partition
+	 * @return one of shutdown, broken, expired, retired (partition taken out of service) or idle.
+	 */
+	protected static String destroyReason(BoneCP pool, ConnectionHandle handle, int partition){
+		if (pool.poolShuttingDown){
+			return "shutdown";
+		}
+		if (handle.isPossiblyBroken()){
+			return "broken";
+		}
+		if (handle.isExpired()){
+			return "expired";
+		}
+		if (partition >= pool.partitionCount){
+			return "retired";
+		}
+		return "idle";
+	}
+
+	/** A connection has been handed to the application. */
+	@Name("com.jolbox.bonecp.ConnectionAcquire")
+	@Label("Connection Acquire")
+	@Category(CATEGORY)
+	@StackTrace(false)
+	static class ConnectionAcquireEvent extends Event {
+		/** Pool name. */
+		@Label("Pool")
+		String poolName;
+		/** Partition index. */
+		@Label("Partition")
+		int partition;
+		/** Time spent waiting for the connection. */
+		@Label("Wait Time")
+		@Timespan(Timespan.NANOSECONDS)
+		long waitTime;
+	}
+
+	/** A connection has been handed back to the pool. */
+	@Name("com.jolbox.bonecp.ConnectionRelease")
+	@Label("Connection Release")
+	@Category(CATEGORY)
+	@StackTrace(false)
+	static class ConnectionReleaseEvent extends Event {
+		/** Pool name. */
+		@Label("Pool")
+		String poolName;
+		/** Partition index. */
+		@Label("Partition")
+		int partition;
+		/** Time the application held on to the connection. */
+		@Label("Hold Time")
+		@Timespan(Timespan.NANOSECONDS)
+		long holdTime;
+	}
+
+	/** A physical connection has been opened. */
+	@Name("com.jolbox.bonecp.ConnectionCreate")
+	@Label("Connection Create")
+	@Category(CATEGORY)
+	@StackTrace(false)
+	static class ConnectionCreateEvent extends Event {
+		/** Pool name. */
+		@Label("Pool")
+		String poolName;
+		/** Partition index. */
+		@Label("Partition")
+		int partition;
+		/** Time taken to open the connection, including retries. */
+		@Label("Create Time")
+		@Timespan(Timespan.NANOSECONDS)
+		long createTime;
+	}
+
+	/** A physical connection is being closed. */
+	@Name("com.jolbox.bonecp.ConnectionDestroy")
+	@Label("Connection Destroy")
+	@Category(CATEGORY)
+	@StackTrace(false)
+	static class ConnectionDestroyEvent extends Event {
+		/** Pool name. */
+		@Label("Pool")
+		String poolName;
+		/** Partition index. */
+		@Label("Partition")
+		int partition;
+		/** Why the connection is being closed. */
+		@Label("Reason")
+		@Description("shutdown, broken, expired, retired or idle")
+		String reason;
+		/** Age of the connection. */
+		@Label("Age")
+		@Timespan(Timespan.NANOSECONDS)
+		long age;
+	}
+
+	/** A statement has been prepared or taken from the statement cache. */
+	@Name("com.jolbox.bonecp.StatementPrepare")
+	@Label("Statement Prepare")
+	@Category(CATEGORY)
+	@StackTrace(false)
+	static class StatementPrepareEvent extends Event {
+		/** Pool name. */
+		@Label("Pool")
+		String poolName;
+		/** Statement. */
+		@Label("SQL")
+		String sql;
+		/** True if the statement came from the cache. */
+		@Label("Cache Hit")
+		boolean cacheHit;
+		/** Time taken. */
+		@Label("Prepare Time")
+		@Timespan(Timespan.NANOSECONDS)
+		long prepareTime;
+	}
+
+	/** An execute call has returned. */
+	@Name("com.jolbox.bonecp.StatementExecute")
+	@Label("Statement Execute")
+	@Category(CATEGORY)
+	@StackTrace(false)
+	static class StatementExecuteEvent extends Event {
+		/** Pool name. */
+		@Label("Pool")
+		String poolName;
+		/** Statement with its literals masked. */
+		@Label("Fingerprint")
+		String fingerprint;
+		/** Rows affected, if known. */
+		@Label("Rows")
+		int rows;
+		/** Time taken. */
+		@Label("Execute Time")
+		@Timespan(Timespan.NANOSECONDS)
+		long executeTime;
+	}
+
+	/** A connection has been tested. */
+	@Name("com.jolbox.bonecp.ConnectionValidation")
+	@Label("Connection Validation")
+	@Category(CATEGORY)
+	@StackTrace(false)
+	static class ConnectionValidationEvent extends Event {
+		/** Pool name. */
+		@Label("Pool")
+		String poolName;
+		/** Partition index. */
+		@Label("Partition")
+		int partition;
+		/** Test result. */
+		@Label("Alive")
+		boolean alive;
+		/** Time taken. */
+		@Label("Validation Time")
+		@Timespan(Timespan.NANOSECONDS)
+		long validationTime;
+	}
+
+	/** The pool watch thread has topped up a partition. */
+	@Name("com.jolbox.bonecp.PartitionFill")
+	@Label("Partition Fill")
+	@Category(CATEGORY)
+	@StackTrace(false)
+	static class PartitionFillEvent extends Event {
+		/** Pool name. */
+		@Label("Pool")
+		String poolName;
+		/** Partition index. */
+		@Label("Partition")
+		int partition;
+		/** Connections asked for. */
+		@Label("Requested")
+		int requested;
+		/** Connections created. */
+		@Label("Created")
+		int created;
+		/** Time taken. */
+		@Label("Fill Time")
+		@Timespan(Timespan.NANOSECONDS)
+		long fillTime;
+	}
+
+	/** Periodic snapshot of the pool statistics. */
+	@Name("com.jolbox.bonecp.PoolStatistics")
+	@Label("Pool Statistics")
+	@Category(CATEGORY)
+	@StackTrace(false)
+	@Period("1 s")
+	static class PoolStatisticsEvent extends Event {
+		/** Pool name. */
+		@Label("Pool")
+		String poolName;
+		/** Connections in use. */
+		@Label("Leased")
+		int totalLeased;
+		/** Connections available. */
+		@Label("Free")
+		int totalFree;
+		/** Physical connections open. */
+		@Label("Created")
+		int totalCreated;
+		/** Connections asked for (statistics only). */
+		@Label("Connections Requested")
+		long connectionsRequested;
+		/** Average wait for a connection in ms (statistics only). */
+		@Label("Average Wait (ms)")
+		double connectionWaitTimeAvg;
+		/** Statements executed (statistics only). */
+		@Label("Statements Executed")
+		long statementsExecuted;
+		/** Statement cache hits (statistics only). */
+		@Label("Cache Hits")
+		long cacheHits;
+		/** Statement cache misses (statistics only). */
+		@Label("Cache Misses")
+		long cacheMisses;
+	}
+}
@@ -0,0 +1,216 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+/**
+ * 
+ */
+package com.jolbox.bonecp;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.MapMaker;
+import com.jolbox.bonecp.hooks.ConnectionHook;
+
+/**
+ * Pool-wide connection leak detector meant to be left on in production. Each checkout records its lease 
+ * deadline in a single map (weakly keyed by the handle so that connection tracking can still reclaim 
+ * dropped connections); a single scheduled task scans the leases at a fixed tick and reports any 
+ * connection that is held past the threshold, once, via ConnectionHook.onConnectionLeakSuspected, the 
+ * log and JMX. The checkout stack trace is only captured for a sampled fraction of checkouts, and even then
+ * only turned into text once a leak is actually reported.
+ * 
+ * @author wallacew
+ *
+ */
+public class LeakDetector implements Runnable {
+	/** Class logger. */
+	private static final Logger logger = LoggerFactory.getLogger(LeakDetector.class);
+	/** Shortest interval between scans. */
+	protected static final long MIN_TICK_IN_MS = 100;
+	/** Longest interval between scans. */
+	protected static final long MAX_TICK_IN_MS = 5000;
+	/** Leased connections. */
+	private final ConcurrentMap<ConnectionHandle, Lease> leases = new MapMaker().concurrencyLevel(16).weakKeys().makeMap();
+	/** Connections held longer than this are reported. */
+	private final long thresholdInNanos;
+	/** Capture the checkout stack trace for 1 in every sampleRate checkouts. 0 = never. */
+	private final int sampleRate;
+	/** Checkout counter used for sampling. Deliberately not atomic: a lost update only shifts the sample. */
+	private int checkouts;
+	/** Statistics handle (null if statistics are disabled). */
+	private final Statistics statistics;
+	/** Interval between scans. */
+	private final long tickInMs;
+
+	/** Creates a new leak detector.
+	 * @param thresholdInMs connections held longer than this are reported.
+	 * @param sampleRate capture the checkout stack trace for 1 in every sampleRate checkouts (0 = never).
+	 * @param statistics statistics handle, or null if statistics are disabled.
+	 */
+	public LeakDetector(long thresholdInMs, int sampleRate, Statistics statistics){
+		this.thresholdInNanos = TimeUnit.MILLISECONDS.toNanos(thresholdInMs);
+		this.sampleRate = sampleRate;
+		this.statistics = statistics;
+		// report within ~10% of the threshold.
+		this.tickInMs = Math.min(MAX_TICK_IN_MS, Math.max(MIN_TICK_IN_MS, thresholdInMs / 10));
+	}
+
+	/** Schedules the periodic scan on the given executor.
+	 * @param scheduler executor to run on.
+	 */
+	public void start(ScheduledExecutorService scheduler){
+		scheduler.scheduleWithFixedDelay(this, this.tickInMs, this.tickInMs, TimeUnit.MILLISECONDS);
+	}
+
+	/** Starts tracking a lease.
+	 * @param handle connection being handed out.
+	 */
+	protected void checkOut(ConnectionHandle handle){
+		Throwable trace = null;
+		if (this.sampleRate > 0 && (this.checkouts++ % this.sampleRate) == 0){
+			trace = new Throwable("Connection checked out here"); // stack is only walked if we ever print it
+		}
+		this.leases.put(handle, new Lease(System.nanoTime(), Thread.currentThread().getName(), trace));
+	}
+
+	/** Stops tracking a lease.
+	 * @param handle connection being given back.
+	 */
+	protected void checkIn(ConnectionHandle handle){
+		Lease lease = this.leases.remove(handle);
+		if (lease != null && lease.reported){
+			logger.info(String.format("Connection previously reported as leaked has been returned by thread %s after %d ms.", 
+					Thread.currentThread().getName(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - lease.checkOutTime)));
+		}
+	}
+
+	/** Scans the leases and reports any held past the threshold. */
+	// @Override
+	public void run() {
+		long now = System.nanoTime();
+		for (Entry<ConnectionHandle, Lease> entry: this.leases.entrySet()){
+			Lease lease = entry.getValue();
+			if (!lease.reported && now - lease.checkOutTime >= this.thresholdInNanos){
+				lease.reported = true;
+				report(entry.getKey(), lease, TimeUnit.NANOSECONDS.toMillis(now - lease.checkOutTime));
+			}
+		}
+	}
+
+	/** Reports a suspected leak.
+	 * @param handle connection held too long
+	 * @param lease lease details
+	 * @param heldTimeInMs time the connection has been held so far
+	 */
+	protected void report(ConnectionHandle handle, Lease lease, long heldTimeInMs){
+		logger.warn(describe(lease, heldTimeInMs));
+		if (this.statistics != null){
+			this.statistics.incrementConnectionLeaksSuspected();
+		}
+		ConnectionHook hook = handle.getConnectionHook();
+		if (hook != null){
+			try{
+				hook.onConnectionLeakSuspected(handle, heldTimeInMs, lease.threadName, lease.trace);
+			} catch (Throwable t){ // keep the detector alive no matter what the hook does
+				logger.error("Connection hook failed", t);
+			}
+		}
+	}
+
+	/** Returns a description of a lease.
+	 * @param lease lease to describe
+	 * @param heldTimeInMs time held so far
+	 * @return text
+	 */
+	private String describe(Lease lease, long heldTimeInMs){
+		StringBuilder sb = new StringBuilder(String.format("Connection obtained by thread %s has not been closed after %d ms (possible leak).", 
+				lease.threadName, heldTimeInMs));
+		if (lease.trace == null){
+			sb.append(" Checkout stack trace was not sampled for this connection");
+			sb.append(this.sampleRate > 0 ? " (capturing 1 in every "+this.sampleRate+" checkouts)." : ".");
+		} else {
+			sb.append(" Checkout stack trace:\r\n");
+			StackTraceElement[] trace = lease.trace.getStackTrace();
+			for (int i=0; i < trace.length; i++){
+				sb.append(" "+trace[i]+"\r\n");
+			}
+		}
+		return sb.toString();
+	}
+
+	/** Returns a description of every connection currently held past the threshold.
+	 * @return descriptions, one per connection
+	 */
+	public String[] getSuspectedLeaks(){
+		long now = System.nanoTime();
+		List<String> result = new ArrayList<String>();
+		for (Lease lease: this.leases.values()){
+			if (now - lease.checkOutTime >= this.thresholdInNanos){
+				result.add(describe(lease, TimeUnit.NANOSECONDS.toMillis(now - lease.checkOutTime)));
+			}
+		}
+		return result.toArray(new String[result.size()]);
+	}
+
+	/** Returns the number of connections currently being tracked.
+	 * @return leased connections
+	 */
+	public int getLeaseCount(){
+		return this.leases.size();
+	}
+
+	/** Returns the interval between scans.
+	 * @return tick in ms
+	 */
+	public long getTickInMs(){
+		return this.tickInMs;
+	}
+
+	/**
+	 * Details of a single checkout.
+	 * @author wallacew
+	 *
+	 */
+	protected static class Lease {
+		/** System.nanoTime() of the checkout. */
+		protected final long checkOutTime;
+		/** Thread that checked out the connection. */
+		protected final String threadName;
+		/** Checkout stack trace, if sampled. */
+		protected final Throwable trace;
+		/** Set once reported so that we only report each leak once. */
+		protected volatile boolean reported;
+
+		/**
+		 * @param checkOutTime System.nanoTime() of the checkout
+		 * @param threadName thread name
+		 * @param trace stack trace or null
+		 */
+		protected Lease(long checkOutTime, String threadName, Throwable trace){
+			this.checkOutTime = checkOutTime;
+			this.threadName = threadName;
+			this.trace = trace;
+		}
+	}
+}
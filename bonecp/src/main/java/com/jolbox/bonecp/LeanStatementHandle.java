@@ -0,0 +1,239 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+/**
+ * 
+ */
+package com.jolbox.bonecp;
+
+import java.sql.Statement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Statement handle used when no connection hook, statement logging or statistics are configured. The execute methods
+ * go straight to the driver without the checks for those features, keeping them small for the JIT.
+ * While a flight recording is running they take the full path instead, so that execute events are still emitted.
+ * 
+ * @author wallacew
+ */
+public class LeanStatementHandle extends StatementHandle {
+
+	/**
+	 * Constructor for empty statement (created via connection.createStatement) 
+	 *
+	 * @param internalStatement wrapper to statement
+	 * @param connectionHandle Handle to the connection that this statement is tied to.
+	 */
+	public LeanStatementHandle(Statement internalStatement, ConnectionHandle connectionHandle) {
+		super(internalStatement, null, null, connectionHandle, null);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * @see java.sql.Statement#execute(java.lang.String)
+	 */
+	// @Override
+	public boolean execute(String sql) throws SQLException {
+		if (PoolEvents.recording){
+			return super.execute(sql);
+		}
+		checkClosed();
+		try {
+			return this.internalStatement.execute(sql);
+		} catch (SQLException e) {
+			throw this.connectionHandle.markPossiblyBroken(e);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * @see java.sql.Statement#execute(java.lang.String, int)
+	 */
+	// @Override
+	public boolean execute(String sql, int autoGeneratedKeys) throws SQLException {
+		if (PoolEvents.recording){
+			return super.execute(sql, autoGeneratedKeys);
+		}
+		checkClosed();
+		try {
+			return this.internalStatement.execute(sql, autoGeneratedKeys);
+		} catch (SQLException e) {
+			throw this.connectionHandle.markPossiblyBroken(e);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * @see java.sql.Statement#execute(java.lang.String, int[])
+	 */
+	// @Override
+	public boolean execute(String sql, int[] columnIndexes) throws SQLException {
+		if (PoolEvents.recording){
+			return super.execute(sql, columnIndexes);
+		}
+		checkClosed();
+		try {
+			return this.internalStatement.execute(sql, columnIndexes);
+		} catch (SQLException e) {
+			throw this.connectionHandle.markPossiblyBroken(e);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * @see java.sql.Statement#execute(java.lang.String, java.lang.String[])
+	 */
+	// @Override
+	public boolean execute(String sql, String[] columnNames) throws SQLException {
+		if (PoolEvents.recording){
+			return super.execute(sql, columnNames);
+		}
+		checkClosed();
+		try {
+			return this.internalStatement.execute(sql, columnNames);
+		} catch (SQLException e) {
+			throw this.connectionHandle.markPossiblyBroken(e);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * @see java.sql.Statement#executeBatch()
+	 */
+	// @Override
+	public int[] executeBatch() throws SQLException {
+		if (PoolEvents.recording){
+			return super.executeBatch();
+		}
+		checkClosed();
+		try {
+			return this.internalStatement.executeBatch();
+		} catch (SQLException e) {
+			throw this.connectionHandle.markPossiblyBroken(e);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * @see java.sql.Statement#executeQuery(java.lang.String)
+	 */
+	// @Override
+	public ResultSet executeQuery(String sql) throws SQLException {
+		if (PoolEvents.recording){
+			return super.executeQuery(sql);
+		}
+		checkClosed();
+		try {
+			return this.internalStatement.executeQuery(sql);
+		} catch (SQLException e) {
+			throw this.connectionHandle.markPossiblyBroken(e);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * @see java.sql.Statement#executeUpdate(java.lang.String)
+	 */
+	// @Override
+	public int executeUpdate(String sql) throws SQLException {
+		if (PoolEvents.recording){
+			return super.executeUpdate(sql);
+		}
+		checkClosed();
+		try {
+			return this.internalStatement.executeUpdate(sql);
+		} catch (SQLException e) {
+			throw this.connectionHandle.markPossiblyBroken(e);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * @see java.sql.Statement#executeUpdate(java.lang.String, int)
+	 */
+	// @Override
+	public int executeUpdate(String sql, int autoGeneratedKeys) throws SQLException {
+		if (PoolEvents.recording){
+			return super.executeUpdate(sql, autoGeneratedKeys);
+		}
+		checkClosed();
+		try {
+			return this.internalStatement.executeUpdate(sql, autoGeneratedKeys);
+		} catch (SQLException e) {
+			throw this.connectionHandle.markPossiblyBroken(e);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * @see java.sql.Statement#executeUpdate(java.lang.String, int[])
+	 */
+	// @Override
+	public int executeUpdate(String sql, int[] columnIndexes) throws SQLException {
+		if (PoolEvents.recording){
+			return super.executeUpdate(sql, columnIndexes);
+		}
+		checkClosed();
+		try {
+			return this.internalStatement.executeUpdate(sql, columnIndexes);
+		} catch (SQLException e) {
+			throw this.connectionHandle.markPossiblyBroken(e);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * @see java.sql.Statement#executeUpdate(java.lang.String, java.lang.String[])
+	 */
+	// @Override
+	public int executeUpdate(String sql, String[] columnNames) throws SQLException {
+		if (PoolEvents.recording){
+			return super.executeUpdate(sql, columnNames);
+		}
+		checkClosed();
+		try {
+			return this.internalStatement.executeUpdate(sql, columnNames);
+		} catch (SQLException e) {
+			throw this.connectionHandle.markPossiblyBroken(e);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * @see java.sql.Statement#addBatch(java.lang.String)
+	 */
+	// @Override
+	public void addBatch(String sql) throws SQLException {
+		checkClosed();
+		try {
+			this.internalStatement.addBatch(sql);
+		} catch (SQLException e) {
+			throw this.connectionHandle.markPossiblyBroken(e);
+		}
+	}
+}
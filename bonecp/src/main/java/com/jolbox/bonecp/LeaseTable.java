@@ -0,0 +1,319 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+/**
+ * 
+ */
+package com.jolbox.bonecp;
+
+import java.lang.ref.WeakReference;
+import java.sql.Connection;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reclaims physical connections whose handle the application dropped without calling close(). 
+ * 
+ * Every tracked physical connection owns a slot in the table (one slot per connection the pool may
+ * create). The table is made up of fixed-size segments so that it can grow when the pool is resized at
+ * runtime without moving slots that are in use. The slot holds the raw database connection, its partition, a weak reference to an "anchor" object 
+ * and a generation stamp that is odd while the connection is checked out. The anchor is created once per 
+ * physical connection and handed from handle to handle as handles are recreated on close(), so only the 
+ * live handle keeps it reachable. Once that handle is garbage collected the weak reference is cleared; 
+ * the housekeeping task then finds the slot, confirms via the generation stamp that the lease hasn't 
+ * moved on meanwhile, closes the raw connection and frees the slot.
+ * 
+ * Checkout and checkin only flip the generation stamp: no reference objects, maps or finalizer queue 
+ * are involved per lease.
+ * 
+ * @author wallacew
+ *
+ */
+public class LeaseTable implements Runnable {
+	/** Class logger. */
+	private static final Logger logger = LoggerFactory.getLogger(LeaseTable.class);
+	/** Interval between scans. */
+	protected static final long TICK_IN_MS = 1000;
+	/** Slots per segment (as a power of 2). */
+	private static final int SEGMENT_SHIFT = 6;
+	/** Slots per segment. */
+	private static final int SEGMENT_SIZE = 1 << SEGMENT_SHIFT;
+	/** Table storage. Segments are never replaced once created, only appended to a new copy of this array. */
+	private volatile Segment[] segments = new Segment[0];
+	/** Number of usable slots. */
+	private int capacity;
+	/** Slots not in use. */
+	private final ConcurrentLinkedQueue<Integer> freeSlots = new ConcurrentLinkedQueue<Integer>();
+	/** Pool name for logging. */
+	private final String poolName;
+
+	/** Creates a new table.
+	 * @param size number of slots (max number of connections in the pool).
+	 * @param poolName pool name for logging, may be null.
+	 */
+	public LeaseTable(int size, String poolName){
+		this.poolName = poolName == null ? "" : "(in pool '"+poolName+"') ";
+		ensureCapacity(size);
+	}
+
+	/** Grows the table (if needed) so that it has at least the given number of slots. Never shrinks.
+	 * @param size number of slots required.
+	 */
+	protected synchronized void ensureCapacity(int size){
+		if (size <= this.capacity){
+			return;
+		}
+		Segment[] current = this.segments;
+		int needed = (size + SEGMENT_SIZE - 1) >>> SEGMENT_SHIFT;
+		if (needed > current.length){
+			Segment[] grown = new Segment[needed];
+			System.arraycopy(current, 0, grown, 0, current.length);
+			for (int i=current.length; i < needed; i++){
+				grown[i] = new Segment();
+			}
+			this.segments = grown; // publish before handing out the new slots
+		}
+		for (int i=this.capacity; i < size; i++){
+			this.freeSlots.add(i);
+		}
+		this.capacity = size;
+	}
+
+	/** Schedules the periodic scan on the given (housekeeping) executor.
+	 * @param scheduler executor to run on.
+	 */
+	public void start(ScheduledExecutorService scheduler){
+		scheduler.scheduleWithFixedDelay(this, TICK_IN_MS, TICK_IN_MS, TimeUnit.MILLISECONDS);
+	}
+
+	/** Starts tracking the physical connection of the given handle, or updates the tracked connection if
+	 * the handle already owns a slot (eg after the connection was replaced during transaction replay).
+	 * @param handle handle to track.
+	 */
+	protected void track(ConnectionHandle handle){
+		Connection con = unwrap(handle.getInternalConnection());
+		if (con == null){
+			return; // nothing to reclaim
+		}
+		if (handle.leaseAnchor != null){
+			segment(handle.leaseSlot).connections.set(offset(handle.leaseSlot), con);
+			return;
+		}
+		Integer free = this.freeSlots.poll();
+		if (free == null){
+			logger.debug("Lease table is full; connection will not be reclaimed if leaked.");
+			return;
+		}
+		int slot = free;
+		Segment segment = segment(slot);
+		int offset = offset(slot);
+		Object anchor = new Object();
+		handle.leaseAnchor = anchor;
+		handle.leaseSlot = slot;
+		segment.partitions[offset] = handle.getOriginatingPartition();
+		segment.anchors.set(offset, new WeakReference<Object>(anchor));
+		long generation = segment.generations.get(offset);
+		if ((generation & 1) != 0){
+			segment.generations.set(offset, generation+1); // start off as not checked out
+		}
+		segment.connections.set(offset, con); // publish
+	}
+
+	/** Stops tracking the given handle's connection (the connection is being closed off by the pool).
+	 * @param handle handle to untrack.
+	 */
+	protected void untrack(ConnectionHandle handle){
+		if (handle.leaseAnchor == null){
+			return;
+		}
+		int slot = handle.leaseSlot;
+		handle.leaseAnchor = null;
+		Segment segment = segment(slot);
+		int offset = offset(slot);
+		Connection con = segment.connections.get(offset);
+		if (con != null && segment.connections.compareAndSet(offset, con, null)){
+			segment.anchors.set(offset, null);
+			segment.partitions[offset] = null;
+			this.freeSlots.offer(slot);
+		}
+	}
+
+	/** Marks the given handle's slot as checked out.
+	 * @param handle handle being handed out.
+	 */
+	protected void checkOut(ConnectionHandle handle){
+		if (handle.leaseAnchor != null){
+			AtomicLongArray generations = segment(handle.leaseSlot).generations;
+			int offset = offset(handle.leaseSlot);
+			long generation = generations.get(offset);
+			if ((generation & 1) == 0){
+				generations.set(offset, generation+1); // only the lease holder writes here
+			}
+		}
+	}
+
+	/** Marks the given handle's slot as checked in.
+	 * @param handle handle being given back.
+	 */
+	protected void checkIn(ConnectionHandle handle){
+		if (handle.leaseAnchor != null){
+			AtomicLongArray generations = segment(handle.leaseSlot).generations;
+			int offset = offset(handle.leaseSlot);
+			long generation = generations.get(offset);
+			if ((generation & 1) != 0){
+				generations.set(offset, generation+1);
+			}
+		}
+	}
+
+	/** Hands over the slot of a handle that is being recreated (on close) to its replacement.
+	 * @param oldHandle handle being retired.
+	 * @param newHandle its replacement.
+	 */
+	protected static void transfer(ConnectionHandle oldHandle, ConnectionHandle newHandle){
+		newHandle.leaseSlot = oldHandle.leaseSlot;
+		newHandle.leaseAnchor = oldHandle.leaseAnchor;
+		oldHandle.leaseAnchor = null;
+	}
+
+	/** Scans the table and reclaims connections whose handle has been garbage collected. */
+	// @Override
+	public void run() {
+		Segment[] current = this.segments;
+		for (int s=0; s < current.length; s++){
+			Segment segment = current[s];
+			for (int i=0; i < SEGMENT_SIZE; i++){
+				Connection con = segment.connections.get(i);
+				if (con == null){
+					continue;
+				}
+				long generation = segment.generations.get(i);
+				WeakReference<Object> anchor = segment.anchors.get(i);
+				if (anchor == null || anchor.get() != null){
+					continue; // still referenced by a live handle.
+				}
+				// the lease must not have moved on while we were looking.
+				if (segment.generations.get(i) != generation || !segment.connections.compareAndSet(i, con, null)){
+					continue;
+				}
+				ConnectionPartition partition = segment.partitions[i];
+				segment.anchors.set(i, null);
+				segment.partitions[i] = null;
+				this.freeSlots.offer((s << SEGMENT_SHIFT) + i);
+				reclaim(con, partition, (generation & 1) != 0);
+			}
+		}
+	}
+
+	/** Closes off an abandoned connection.
+	 * @param con raw connection
+	 * @param partition originating partition
+	 * @param leased true if the connection was checked out
+	 */
+	private void reclaim(Connection con, ConnectionPartition partition, boolean leased){
+		try {
+			if (!con.isClosed()){ // safety!
+				logger.warn("BoneCP detected an unclosed connection "+this.poolName + "and will now attempt to close it for you. " +
+						"You should be closing this connection in your application - enable leakDetectionThresholdInMs for additional debugging assistance or set disableConnectionTracking to true to disable this feature entirely."
+						+ (leased ? "" : " (Connection was not checked out.)"));
+				con.close();
+			}
+			if (partition != null){
+				partition.updateCreatedConnections(-1);
+				partition.setUnableToCreateMoreTransactions(false);
+			}
+		} catch (Throwable t) { // keep the housekeeping task alive no matter what
+			logger.error("Error while closing off internal db connection", t);
+		}
+	}
+
+	/** Returns the underlying database connection if the given connection is a recording wrapper, so that 
+	 * we close the real database handle and not a recorded close.
+	 * @param con connection
+	 * @return database connection
+	 */
+	private static Connection unwrap(Connection con){
+		if (con instanceof RecordingConnection){
+			return ((RecordingConnection) con).getTarget();
+		}
+		return con;
+	}
+
+	/** Returns the number of connections currently tracked.
+	 * @return tracked connections
+	 */
+	public int getTrackedCount(){
+		int result = 0;
+		Segment[] current = this.segments;
+		for (int s=0; s < current.length; s++){
+			for (int i=0; i < SEGMENT_SIZE; i++){
+				if (current[s].connections.get(i) != null){
+					result++;
+				}
+			}
+		}
+		return result;
+	}
+
+	/** Returns the number of slots in the table.
+	 * @return capacity
+	 */
+	public synchronized int getCapacity(){
+		return this.capacity;
+	}
+
+	/** Returns true if the given handle's connection is currently marked as checked out.
+	 * @param handle handle
+	 * @return true if checked out
+	 */
+	public boolean isCheckedOut(ConnectionHandle handle){
+		return handle.leaseAnchor != null && (segment(handle.leaseSlot).generations.get(offset(handle.leaseSlot)) & 1) != 0;
+	}
+
+	/** Returns the segment holding the given slot.
+	 * @param slot slot number
+	 * @return segment
+	 */
+	private Segment segment(int slot){
+		return this.segments[slot >>> SEGMENT_SHIFT];
+	}
+
+	/** Returns the position of the given slot within its segment.
+	 * @param slot slot number
+	 * @return offset in segment
+	 */
+	private static int offset(int slot){
+		return slot & (SEGMENT_SIZE - 1);
+	}
+
+	/** A fixed-size block of slots. */
+	private static final class Segment {
+		/** Raw database connection of each slot (null = slot free). */
+		final AtomicReferenceArray<Connection> connections = new AtomicReferenceArray<Connection>(SEGMENT_SIZE);
+		/** Anchor of each slot. */
+		final AtomicReferenceArray<WeakReference<Object>> anchors = new AtomicReferenceArray<WeakReference<Object>>(SEGMENT_SIZE);
+		/** Generation stamp of each slot. Odd = checked out. */
+		final AtomicLongArray generations = new AtomicLongArray(SEGMENT_SIZE);
+		/** Partition of each slot. Written before the slot's connection is published. */
+		final ConnectionPartition[] partitions = new ConnectionPartition[SEGMENT_SIZE];
+	}
+}
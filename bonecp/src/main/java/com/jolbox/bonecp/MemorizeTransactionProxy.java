@@ -19,10 +19,8 @@
  */
 package com.jolbox.bonecp;
 import java.lang.ref.WeakReference;
-import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
-import java.lang.reflect.Proxy;
 import java.sql.CallableStatement;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
@@ -38,242 +36,331 @@ import java.util.concurrent.atomic.AtomicInteger;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.common.collect.ImmutableSet;
 import com.jolbox.bonecp.hooks.AcquireFailConfig;
 import com.jolbox.bonecp.hooks.ConnectionHook;
-import com.jolbox.bonecp.proxy.CallableStatementProxy;
-import com.jolbox.bonecp.proxy.ConnectionProxy;
-import com.jolbox.bonecp.proxy.PreparedStatementProxy;
-import com.jolbox.bonecp.proxy.StatementProxy;
 import com.jolbox.bonecp.proxy.TransactionRecoveryResult;
 
 /** This code takes care of recording and playing back of transactions (when a failure occurs). The idea behind this is to wrap a connection
- * or statement with proxies and log all method calls. When a failure occurs, thrash the inner connection, obtain a new one and play back
+ * or statement with typed recording wrappers and log all method calls. When a failure occurs, thrash the inner connection, obtain a new one and play back
  * the previously recorded methods. 
  * 
+ * Recording calls go straight through to the target; reflection is only used when playing back the log after a failure.
+ * 
  * @author wwadge
+ * @param <T> type of wrapped connection or statement
  *
  */
-public class MemorizeTransactionProxy implements InvocationHandler {
-	/** Target of proxy. */
-	private Object target;
+public abstract class MemorizeTransactionProxy<T> {
+	/** Target of wrapper. */
+	protected T target;
 	/** Connection handle. Keep a WeakReference here because we want the GC to kick in if the application loses a handle on it.*/
 	private WeakReference<ConnectionHandle> connectionHandle;
-	/** List of methods that will trigger a reset of the transaction. */
-	private static final ImmutableSet<String> clearLogConditions = ImmutableSet.of("rollback", "commit", "close"); 
 	/** Class logger. */
 	private static final Logger logger = LoggerFactory.getLogger(MemorizeTransactionProxy.class);
 
-
-	/**
-	 * Default constructor. 
-	 */
-	public MemorizeTransactionProxy(){
-		// not needed
-	}
-	/** Wrap connection with a proxy.
+	/** Wrap connection with a recording wrapper.
 	 * @param target connection handle
 	 * @param connectionHandle originating bonecp connection
-	 * @return Proxy to a connection.
+	 * @return wrapped connection.
 	 */
 	protected static Connection memorize(final Connection target, final ConnectionHandle connectionHandle) {
-
-		return (Connection) Proxy.newProxyInstance(
-				ConnectionProxy.class.getClassLoader(),
-				new Class[] {ConnectionProxy.class},
-				new MemorizeTransactionProxy(target, connectionHandle));
+		return new RecordingConnection(target, connectionHandle);
 	}
 
-	/** Wrap Statement with a proxy.
+	/** Wrap Statement with a recording wrapper.
 	 * @param target statement handle
 	 * @param connectionHandle originating bonecp connection
-	 * @return Proxy to a statement.
+	 * @return wrapped statement.
 	 */
 	protected static Statement memorize(final Statement target, final ConnectionHandle connectionHandle) {
-		return (Statement) Proxy.newProxyInstance(
-				StatementProxy.class.getClassLoader(),
-				new Class[] {StatementProxy.class},
-				new MemorizeTransactionProxy(target, connectionHandle));
+		return new RecordingStatement<Statement>(target, connectionHandle);
 	}
 
-	/** Wrap PreparedStatement with a proxy.
+	/** Wrap PreparedStatement with a recording wrapper.
 	 * @param target statement handle
 	 * @param connectionHandle originating bonecp connection
-	 * @return Proxy to a Preparedstatement.
+	 * @return wrapped Preparedstatement.
 	 */
 	protected static PreparedStatement memorize(final PreparedStatement target, final ConnectionHandle connectionHandle) {
-		return (PreparedStatement) Proxy.newProxyInstance(
-				PreparedStatementProxy.class.getClassLoader(),
-				new Class[] {PreparedStatementProxy.class},
-				new MemorizeTransactionProxy(target, connectionHandle));
+		return new RecordingPreparedStatement<PreparedStatement>(target, connectionHandle);
 	}
 
 
-	/** Wrap CallableStatement with a proxy.
+	/** Wrap CallableStatement with a recording wrapper.
 	 * @param target statement handle
 	 * @param connectionHandle originating bonecp connection
-	 * @return Proxy to a Callablestatement.
+	 * @return wrapped Callablestatement.
 	 */
 	protected static CallableStatement memorize(final CallableStatement target, final ConnectionHandle connectionHandle) {
-		return (CallableStatement) Proxy.newProxyInstance(
-				CallableStatementProxy.class.getClassLoader(),
-				new Class[] {CallableStatementProxy.class},
-				new MemorizeTransactionProxy(target, connectionHandle));
+		return new RecordingCallableStatement(target, connectionHandle);
 	}
 
 	/** Main constructor
 	 * @param target target to actual handle
 	 * @param connectionHandle bonecp ref
 	 */
-	private MemorizeTransactionProxy(Object target, ConnectionHandle connectionHandle) {
+	protected MemorizeTransactionProxy(T target, ConnectionHandle connectionHandle) {
 		this.target = target;
 		this.connectionHandle = new WeakReference<ConnectionHandle>(connectionHandle);
 	}
 
-	// @Override 
-	public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
-
-		Object result = null;
-		ConnectionHandle con = this.connectionHandle.get();
-		if (con != null){ // safety! 
-
-			if (method.getName().equals("getProxyTarget")){  // special "fake" method to return our proxy target
-				return this.target;
-			} 
-
-			if (con.isInReplayMode()){ // go straight through when flagged as in playback (replay) mode.
-				try{
-					return method.invoke(this.target, args);
-				} catch (InvocationTargetException t){
-					throw t.getCause(); // we tried running it, but playback mode also blew up. Throw out the cause, not the
-					// wrapped invocationtargetexception.
-				} 
-			}
+	/** Returns the wrapped connection or statement.
+	 * @return the target
+	 */
+	public T getTarget() {
+		return this.target;
+	}
 
+	/** Looks up a JDBC interface method once so that it can later be recorded in the replay log. Returns null if the method is not 
+	 * available in the running JDK (the wrapper method that refers to it will never be called in that case).
+	 * @param clazz interface declaring the method
+	 * @param name method name
+	 * @param parameterTypes method signature
+	 * @return method, or null if unavailable
+	 */
+	protected static Method method(Class<?> clazz, String name, Class<?>... parameterTypes){
+		try {
+			return clazz.getMethod(name, parameterTypes);
+		} catch (NoSuchMethodException e) {
+			return null;
+		}
+	}
 
-			if (con.recoveryResult != null){ // if we previously failed, do the mapping to the new connection/statements
-				Object remap = con.recoveryResult.getReplaceTarget().get(this.target);
-				if (remap != null){
-					this.target = remap; 
-				}
-				remap = con.recoveryResult.getReplaceTarget().get(con);
-				if (remap != null){
-					con = (ConnectionHandle) remap;
+	/** Returns the connection handle to record against, or null if the call should go straight through to the target (either because
+	 * the handle has gone away or because we are currently playing back a log). If a previous recovery swapped out our target, 
+	 * switch over to the replacement.
+	 * @return connection handle or null
+	 */
+	@SuppressWarnings("unchecked")
+	protected ConnectionHandle recordingConnectionHandle(){
+		ConnectionHandle con = this.connectionHandle.get();
+		if (con == null || con.isInReplayMode()){ 
+			return null;
+		}
+		if (con.recoveryResult != null){ // if we previously failed, do the mapping to the new connection/statements
+			Map<Object, Object> replaceTarget = con.recoveryResult.getReplaceTarget();
+			// follow the chain in case we recovered more than once, but don't loop forever on bad mappings.
+			for (int i = replaceTarget.size(); i > 0; i--){ 
+				Object remap = replaceTarget.get(this.target);
+				if (remap == null || remap == this.target){
+					break;
 				}
+				this.target = (T) remap;
 			}
+		}
+		return con;
+	}
 
-			// record this invocation
-			if (!con.isInReplayMode() && !method.getName().equals("hashCode") 
-					&& !method.getName().equals("equals") && !method.getName().equals("toString")){
-				con.getReplayLog().add(new ReplayLog(this.target, method, args));
-			}
-
-
-
-
-			try{
-				// run and swap with proxies if we encounter prepareStatement calls
-				result = runWithPossibleProxySwap(method, this.target, args); 
-
-				// when we commit/close/rollback, destroy our log. Does this work if we have nested transactions???? Fixme?
-				if (!con.isInReplayMode() && (this.target instanceof Connection) && clearLogConditions.contains(method.getName())){
-					con.getReplayLog().clear();
-					//					con.recoveryResult.getReplaceTarget().clear();
-				}
-
+	/** Record an invocation in the connection's replay log.
+	 * @param con connection handle
+	 * @param method method invoked
+	 * @param args arguments passed
+	 */
+	protected void record(ConnectionHandle con, Method method, Object... args){
+		con.getReplayLogBuffer().add(this.target, method, args);
+	}
 
+	/* Fixed-arity variants of the above for the common parameter shapes. The compiler picks these over the varargs version so
+	 * primitives are written straight into the log without boxing. Narrower primitives (eg setShort) widen into these and are
+	 * narrowed back on replay.
+	 */
 
-			} catch (Throwable t){  
-				// if we encounter problems, grab a connection and replay back our log
-				List<ReplayLog> oldReplayLog = con.getReplayLog();
-				con.setInReplayMode(true); // stop recording
+	/** Record an invocation without arguments in the connection's replay log.
+	 * @param con connection handle
+	 * @param method method invoked
+	 */
+	protected void record(ConnectionHandle con, Method method){
+		ReplayLogBuffer log = con.getReplayLogBuffer();
+		if (log.begin(this.target, method, 0)){
+			log.end();
+		}
+	}
 
-				// this will possibly terminate all connections here
-				if (t instanceof SQLException || (t.getCause() != null && t.getCause() instanceof SQLException)){
-					con.markPossiblyBroken((SQLException)t.getCause());
-				}
+	/** Record an invocation taking an int in the connection's replay log.
+	 * @param con connection handle
+	 * @param method method invoked
+	 * @param arg0 argument
+	 */
+	protected void record(ConnectionHandle con, Method method, int arg0){
+		ReplayLogBuffer log = con.getReplayLogBuffer();
+		if (log.begin(this.target, method, 1)){
+			log.putInt(arg0);
+			log.end();
+		}
+	}
 
-				if (!con.isPossiblyBroken()){ // connection is possibly recoverable...
-					con.setInReplayMode(false); // start recording again
-					con.getReplayLog().clear();
-				} else { // connection is possibly recoverable...
-					logger.error("Connection failed. Attempting to recover transaction on Thread #"+ Thread.currentThread().getId());
-					// let's try and recover
-					try{
-						con.recoveryResult = attemptRecovery(oldReplayLog); // this might also fail
-						con.setReplayLog(oldReplayLog); // attemptRecovery will probably destroy our original connection handle
-						con.setInReplayMode(false); // start recording again
-						logger.error("Recovery succeeded on Thread #" + Thread.currentThread().getId());
-						con.possiblyBroken = false;
-
-						// return the original result the application was expecting
-						return con.recoveryResult.getResult();
-					} catch(Throwable t2){
-						con.setInReplayMode(false); // start recording again
-						con.getReplayLog().clear();
-						/* #ifdef JDK6
-						throw new SQLException("Could not recover transaction.", t.getCause());
-						#endif JDK6 */
-						/* #ifdef JDK5
-			 			throw new SQLException("Could not recover transaction. Original exception follows." + t.getCause());
-						#endif JDK5 */
+	/** Record an invocation taking a boolean in the connection's replay log.
+	 * @param con connection handle
+	 * @param method method invoked
+	 * @param arg0 argument
+	 */
+	protected void record(ConnectionHandle con, Method method, boolean arg0){
+		ReplayLogBuffer log = con.getReplayLogBuffer();
+		if (log.begin(this.target, method, 1)){
+			log.putBoolean(arg0);
+			log.end();
+		}
+	}
 
-					}
-				} 
+	/** Record an invocation taking an object in the connection's replay log.
+	 * @param con connection handle
+	 * @param method method invoked
+	 * @param arg0 argument
+	 */
+	protected void record(ConnectionHandle con, Method method, Object arg0){
+		ReplayLogBuffer log = con.getReplayLogBuffer();
+		if (log.begin(this.target, method, 1)){
+			log.putArg(arg0);
+			log.end();
+		}
+	}
 
+	/** Record an invocation taking two ints in the connection's replay log.
+	 * @param con connection handle
+	 * @param method method invoked
+	 * @param arg0 argument
+	 * @param arg1 argument
+	 */
+	protected void record(ConnectionHandle con, Method method, int arg0, int arg1){
+		ReplayLogBuffer log = con.getReplayLogBuffer();
+		if (log.begin(this.target, method, 2)){
+			log.putInt(arg0);
+			log.putInt(arg1);
+			log.end();
+		}
+	}
 
+	/** Record an invocation taking an int and a long in the connection's replay log.
+	 * @param con connection handle
+	 * @param method method invoked
+	 * @param arg0 argument
+	 * @param arg1 argument
+	 */
+	protected void record(ConnectionHandle con, Method method, int arg0, long arg1){
+		ReplayLogBuffer log = con.getReplayLogBuffer();
+		if (log.begin(this.target, method, 2)){
+			log.putInt(arg0);
+			log.putLong(arg1);
+			log.end();
+		}
+	}
 
-				// it must some user-level error eg setting a preparedStatement parameter that is out of bounds. Just throw it back to the user.
-				throw t.getCause();
+	/** Record an invocation taking an int and a boolean in the connection's replay log.
+	 * @param con connection handle
+	 * @param method method invoked
+	 * @param arg0 argument
+	 * @param arg1 argument
+	 */
+	protected void record(ConnectionHandle con, Method method, int arg0, boolean arg1){
+		ReplayLogBuffer log = con.getReplayLogBuffer();
+		if (log.begin(this.target, method, 2)){
+			log.putInt(arg0);
+			log.putBoolean(arg1);
+			log.end();
+		}
+	}
 
-			}
+	/** Record an invocation taking an int and a double in the connection's replay log.
+	 * @param con connection handle
+	 * @param method method invoked
+	 * @param arg0 argument
+	 * @param arg1 argument
+	 */
+	protected void record(ConnectionHandle con, Method method, int arg0, double arg1){
+		ReplayLogBuffer log = con.getReplayLogBuffer();
+		if (log.begin(this.target, method, 2)){
+			log.putInt(arg0);
+			log.putDouble(arg1);
+			log.end();
+		}
+	}
 
-		}else{
-			//prevent NPE that can occur on calls to hashCode and getAutoCommit when handle is null
-			result = method.invoke(this.target, args);
+	/** Record an invocation taking an int and an object in the connection's replay log.
+	 * @param con connection handle
+	 * @param method method invoked
+	 * @param arg0 argument
+	 * @param arg1 argument
+	 */
+	protected void record(ConnectionHandle con, Method method, int arg0, Object arg1){
+		ReplayLogBuffer log = con.getReplayLogBuffer();
+		if (log.begin(this.target, method, 2)){
+			log.putInt(arg0);
+			log.putArg(arg1);
+			log.end();
 		}
-		return result; // normal state
 	}
 
-	/** Runs the given method with the specified arguments, substituting with proxies where necessary
-	 * @param method
-	 * @param target proxy target 
-	 * @param args
-	 * @return Proxy-fied result for statements, actual call result otherwise
-	 * @throws IllegalAccessException
-	 * @throws InvocationTargetException
+	/** Record an invocation taking an object and an int in the connection's replay log.
+	 * @param con connection handle
+	 * @param method method invoked
+	 * @param arg0 argument
+	 * @param arg1 argument
 	 */
-	private Object runWithPossibleProxySwap(Method method, Object target, Object[] args)
-			throws IllegalAccessException, InvocationTargetException {
-		Object result;
-		// swap with proxies to these too.
-		if (method.getName().equals("createStatement")){
-			result = memorize((Statement)method.invoke(target, args), this.connectionHandle.get());
+	protected void record(ConnectionHandle con, Method method, Object arg0, int arg1){
+		ReplayLogBuffer log = con.getReplayLogBuffer();
+		if (log.begin(this.target, method, 2)){
+			log.putArg(arg0);
+			log.putInt(arg1);
+			log.end();
 		}
-		else if (method.getName().equals("prepareStatement")){
-			result = memorize((PreparedStatement)method.invoke(target, args), this.connectionHandle.get());
+	}
+
+	/** Called when a recorded call fails. If the connection is deemed broken, attempt to obtain a new connection and play back the 
+	 * transaction on it, otherwise throw back the original exception.
+	 * @param con connection handle
+	 * @param e exception thrown by the call
+	 * @return the result the application was expecting from the failed call
+	 * @throws SQLException on a user-level error or if recovery fails
+	 */
+	protected Object recover(ConnectionHandle con, SQLException e) throws SQLException{
+		// if we encounter problems, grab a connection and replay back our log
+		ReplayLogBuffer oldReplayLog = con.getReplayLogBuffer();
+		con.setInReplayMode(true); // stop recording
+
+		// this will possibly terminate all connections here
+		con.markPossiblyBroken(e);
+
+		if (!con.isPossiblyBroken() || oldReplayLog.isOverflowed()){ 
+			// it must some user-level error eg setting a preparedStatement parameter that is out of bounds. Just throw it back to the user.
+			// Also give up if the transaction was too large to keep a log of.
+			if (con.isPossiblyBroken()){
+				logger.error("Connection failed but the transaction log was discarded for being too large. Not attempting recovery.");
+			}
+			con.setInReplayMode(false); // start recording again
+			con.getReplayLogBuffer().clear();
+			throw e;
 		}
-		else if (method.getName().equals("prepareCall")){
-			result = memorize((CallableStatement)method.invoke(target, args), this.connectionHandle.get());
+		
+		// connection is possibly recoverable...
+		logger.error("Connection failed. Attempting to recover transaction on Thread #"+ Thread.currentThread().getId());
+		// let's try and recover
+		try{
+			con.recoveryResult = attemptRecovery(con, oldReplayLog); // this might also fail
+			con.setReplayLogBuffer(oldReplayLog); // attemptRecovery will probably destroy our original connection handle
+			con.setInReplayMode(false); // start recording again
+			logger.error("Recovery succeeded on Thread #" + Thread.currentThread().getId());
+			con.possiblyBroken = false;
+
+			// return the original result the application was expecting
+			return con.recoveryResult.getResult();
+		} catch(Throwable t){
+			con.setInReplayMode(false); // start recording again
+			con.getReplayLogBuffer().clear();
 		}
-		else result = method.invoke(target, args);
-		return result;
+		throw e;
 	}
 
 	/** Play back a transaction
+	 * @param con connection handle
 	 * @param oldReplayLog 
 	 * @return map + result
 	 * @throws SQLException 
 	 * 
 	 */
-	private TransactionRecoveryResult attemptRecovery(List<ReplayLog> oldReplayLog) throws SQLException{
+	private TransactionRecoveryResult attemptRecovery(ConnectionHandle con, ReplayLogBuffer oldReplayLog) throws SQLException{
 		boolean tryAgain = false;
 		Throwable failedThrowable = null;
 
-		ConnectionHandle con = this.connectionHandle.get();
-		if (con == null){ // safety! 
-			throw PoolUtil.generateSQLException("ConnectionHandle is gone!", new IllegalStateException());
-		}
 		TransactionRecoveryResult recoveryResult = con.recoveryResult;
 		ConnectionHook connectionHook = con.getPool().getConfig().getConnectionHook();
 
@@ -305,8 +392,10 @@ public class MemorizeTransactionProxy implements InvocationHandler {
 			} catch(Throwable t){
 				// do nothing - also likely to fail here
 			}
+			Connection newConnection;
 			try{
-				con.setInternalConnection(memorize(con.getPool().obtainInternalConnection(con), con));
+				newConnection = con.getPool().obtainInternalConnection(con);
+				con.setInternalConnection(memorize(newConnection, con));
 			} catch(SQLException e){
 				throw con.markPossiblyBroken(e);
 			}
@@ -317,7 +406,7 @@ public class MemorizeTransactionProxy implements InvocationHandler {
 
 				// we got new connections/statement handles so replace what we've got with the new ones
 				if (replay.getTarget() instanceof Connection){
-					replaceTarget.put(replay.getTarget(), con.getInternalConnection());
+					replaceTarget.put(replay.getTarget(), newConnection);
 				}  else if (replay.getTarget() instanceof CallableStatement){
 					if (replaceTarget.get(replay.getTarget()) == null){
 						replaceTarget.put(replay.getTarget(), callableStatementTarget.remove(0));
@@ -335,8 +424,7 @@ public class MemorizeTransactionProxy implements InvocationHandler {
 
 				try {
 					// run again using the new connection/statement
-					//					result = replay.getMethod().invoke(, replay.getArgs());
-					result = runWithPossibleProxySwap(replay.getMethod(), replaceTarget.get(replay.getTarget()), replay.getArgs());
+					result = replay.getMethod().invoke(replaceTarget.get(replay.getTarget()), replay.getArgs());
 
 					// remember what we've got last 
 					recoveryResult.setResult(result);
@@ -350,6 +438,9 @@ public class MemorizeTransactionProxy implements InvocationHandler {
 						statementTarget.add((Statement)result);
 					}  
 				} catch (Throwable t) {
+					if (t instanceof InvocationTargetException){
+						t = t.getCause();
+					}
 					// It blew up again, let's try a couple more times before giving up...
 					// call the hook, if available.
 					if (connectionHook != null){
@@ -380,9 +471,7 @@ public class MemorizeTransactionProxy implements InvocationHandler {
 			recoveryResult.getReplaceTarget().put(entry.getKey(), entry.getValue());
 		}
 
-		for (ReplayLog replay: oldReplayLog){
-			replay.setTarget(replaceTarget.get(replay.getTarget())); // fix our log
-		}
+		oldReplayLog.replaceTargets(replaceTarget); // fix our log
 
 		if (failedThrowable != null){
 			throw PoolUtil.generateSQLException(failedThrowable.getMessage(), failedThrowable);
@@ -0,0 +1,173 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.jolbox.bonecp;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.MapMaker;
+
+/**
+ * Pool-wide cache of DatabaseMetaData results. Catalog queries (getTables, getColumns, ...) are kept as
+ * disconnected row snapshots that expire after a configurable time; scalar capability values 
+ * (supportsBatchUpdates, getDatabaseProductVersion, ...) are obtained once and kept until the cache is 
+ * explicitly invalidated. Since catalog queries may be called with arbitrary patterns, the number of 
+ * snapshots is capped, evicting the least recently used ones first.
+ * 
+ * @author wallacew
+ *
+ */
+public class MetaDataCache {
+	/** Default maximum number of catalog snapshots held. */
+	public static final int DEFAULT_MAX_SNAPSHOTS = 1000;
+	/** Marker used to store null results (concurrent maps do not accept null values). */
+	private static final Object NULL_VALUE = new Object();
+	/** Capability values, keyed by method name and arguments. */
+	private final ConcurrentMap<String, Object> capabilities = new MapMaker().concurrencyLevel(4).makeMap();
+	/** Catalog query snapshots, keyed by method name and arguments. */
+	private final Cache<String, MetaDataSnapshot> snapshots;
+
+	/** Creates a new cache holding up to {@link #DEFAULT_MAX_SNAPSHOTS} catalog snapshots.
+	 * @param timeToLiveInMs time after which catalog snapshots are discarded (0 = keep until invalidated).
+	 */
+	public MetaDataCache(long timeToLiveInMs){
+		this(timeToLiveInMs, DEFAULT_MAX_SNAPSHOTS);
+	}
+
+	/** Creates a new cache.
+	 * @param timeToLiveInMs time after which catalog snapshots are discarded (0 = keep until invalidated).
+	 * @param maxSnapshots maximum number of catalog snapshots held.
+	 */
+	public MetaDataCache(long timeToLiveInMs, int maxSnapshots){
+		CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder().concurrencyLevel(4).maximumSize(maxSnapshots);
+		if (timeToLiveInMs > 0){
+			builder.expireAfterWrite(timeToLiveInMs, TimeUnit.MILLISECONDS);
+		}
+		this.snapshots = builder.build();
+	}
+
+	/** Builds a cache key out of the given method name and arguments. Each argument is written out with its 
+	 * length (or element count) in front, so that no two different argument lists give the same key.
+	 * @param method DatabaseMetaData method name
+	 * @param args arguments passed to the method
+	 * @return cache key
+	 */
+	public static String calculateKey(String method, Object... args){
+		StringBuilder sb = new StringBuilder(method);
+		for (Object arg: args){
+			sb.append('|');
+			appendKey(sb, arg);
+		}
+		return sb.toString();
+	}
+
+	/** Appends a single argument to a cache key: N for null, [count:elements] for arrays and length:value otherwise.
+	 * @param sb key being built
+	 * @param arg argument
+	 */
+	private static void appendKey(StringBuilder sb, Object arg){
+		if (arg == null){
+			sb.append('N');
+		} else if (arg instanceof Object[]){
+			Object[] array = (Object[]) arg;
+			sb.append('[').append(array.length).append(':');
+			for (Object o: array){
+				appendKey(sb, o);
+			}
+			sb.append(']');
+		} else if (arg instanceof int[]){
+			int[] array = (int[]) arg;
+			sb.append('[').append(array.length).append(':');
+			for (int i: array){
+				appendKey(sb, Integer.valueOf(i));
+			}
+			sb.append(']');
+		} else {
+			String value = arg.toString();
+			sb.append(value.length()).append(':').append(value);
+		}
+	}
+
+	/** Returns the stored capability value for the given key. 
+	 * @param key cache key
+	 * @return stored value (pass it through {@link #unmask(Object)}) or null if not cached yet.
+	 */
+	public Object getCapability(String key){
+		return this.capabilities.get(key);
+	}
+
+	/** Stores a capability value.
+	 * @param key cache key
+	 * @param value value obtained from the driver (may be null)
+	 * @return the stored value
+	 */
+	public Object putCapability(String key, Object value){
+		Object result = value == null ? NULL_VALUE : value;
+		this.capabilities.put(key, result);
+		return result;
+	}
+
+	/** Converts a value obtained from {@link #getCapability(String)} back to what the driver returned.
+	 * @param value stored value
+	 * @return the original value
+	 */
+	public static Object unmask(Object value){
+		return value == NULL_VALUE ? null : value;
+	}
+
+	/** Returns the snapshot stored for the given key, or null if absent or expired.
+	 * @param key cache key
+	 * @return snapshot or null
+	 */
+	public MetaDataSnapshot getSnapshot(String key){
+		return this.snapshots.getIfPresent(key);
+	}
+
+	/** Reads the given result set fully, closes it and stores it under the given key.
+	 * @param key cache key
+	 * @param rs catalog result set obtained from the driver
+	 * @return the stored snapshot
+	 * @throws SQLException on error while reading the result set
+	 */
+	public MetaDataSnapshot putSnapshot(String key, ResultSet rs) throws SQLException {
+		MetaDataSnapshot result = new MetaDataSnapshot(rs);
+		this.snapshots.put(key, result);
+		return result;
+	}
+
+	/** Discards all cached catalog snapshots (eg following DDL changes). Capability values are kept. */
+	public void invalidate(){
+		this.snapshots.invalidateAll();
+	}
+
+	/** Discards everything held in this cache, including capability values. */
+	public void invalidateAll(){
+		this.snapshots.invalidateAll();
+		this.capabilities.clear();
+	}
+
+	/** Returns the number of catalog snapshots currently held.
+	 * @return number of snapshots
+	 */
+	public int size(){
+		this.snapshots.cleanUp(); // drop expired snapshots first
+		return (int) this.snapshots.size();
+	}
+}
@@ -0,0 +1,921 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.jolbox.bonecp;
+
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.net.URL;
+import java.sql.Array;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.Date;
+// #ifdef JDK>6
+import java.sql.NClob;
+// #endif JDK>6
+import java.sql.Ref;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+// #ifdef JDK>6
+import java.sql.RowId;
+// #endif JDK>6
+import java.sql.SQLException;
+import java.sql.SQLWarning;
+// #ifdef JDK>6
+import java.sql.SQLXML;
+// #endif JDK>6
+import java.sql.Statement;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.Calendar;
+import java.util.Map;
+
+/**
+ * Read-only, scrollable cursor over a {@link MetaDataSnapshot}. Each caller gets its own cursor
+ * so a single snapshot can be shared by all connections of the pool.
+ * 
+ * @author wallacew
+ *
+ */
+public class MetaDataResultSet implements ResultSet {
+	/** Data being iterated over. */
+	private final MetaDataSnapshot snapshot;
+	/** Current row (0-based, -1 = before first). */
+	private int row = -1;
+	/** Set if the last value read was null. */
+	private boolean wasNull;
+	/** Set when close() is called. */
+	private boolean closed;
+
+	/** Creates a new cursor positioned before the first row.
+	 * @param snapshot data to iterate over
+	 */
+	public MetaDataResultSet(MetaDataSnapshot snapshot){
+		this.snapshot = snapshot;
+	}
+
+	/** Returns the value of the given column in the current row.
+	 * @param columnIndex column (1-based)
+	 * @return value
+	 * @throws SQLException if closed or not positioned on a row
+	 */
+	private Object getValue(int columnIndex) throws SQLException{
+		if (this.closed){
+			throw new SQLException("Result set is closed");
+		}
+		if (this.row < 0 || this.row >= this.snapshot.getRowCount()){
+			throw new SQLException("Result set is not positioned on a row");
+		}
+		this.snapshot.checkColumn(columnIndex);
+		Object result = this.snapshot.getValue(this.row, columnIndex);
+		this.wasNull = result == null;
+		return result;
+	}
+
+	/** Returns the exception thrown on any attempt to modify this result set.
+	 * @return exception to throw
+	 */
+	private SQLException readOnly(){
+		return new SQLException("Cached metadata result sets are read-only");
+	}
+
+	public boolean next() throws SQLException {
+		if (this.row < this.snapshot.getRowCount()){
+			this.row++;
+		}
+		return this.row < this.snapshot.getRowCount();
+	}
+
+	public void close() throws SQLException {
+		this.closed = true;
+	}
+
+	public boolean wasNull() throws SQLException {
+		return this.wasNull;
+	}
+
+	public String getString(int columnIndex) throws SQLException {
+		Object result = getValue(columnIndex);
+		return result == null ? null : result.toString();
+	}
+
+	public boolean getBoolean(int columnIndex) throws SQLException {
+		Object result = getValue(columnIndex);
+		if (result instanceof Boolean){
+			return (Boolean) result;
+		}
+		if (result instanceof Number){
+			return ((Number) result).intValue() != 0;
+		}
+		return result != null && (result.toString().equalsIgnoreCase("true") || result.toString().equals("1"));
+	}
+
+	public byte getByte(int columnIndex) throws SQLException {
+		return (byte) getLong(columnIndex);
+	}
+
+	public short getShort(int columnIndex) throws SQLException {
+		return (short) getLong(columnIndex);
+	}
+
+	public int getInt(int columnIndex) throws SQLException {
+		return (int) getLong(columnIndex);
+	}
+
+	public long getLong(int columnIndex) throws SQLException {
+		Object result = getValue(columnIndex);
+		if (result == null){
+			return 0;
+		}
+		if (result instanceof Number){
+			return ((Number) result).longValue();
+		}
+		try {
+			return Long.parseLong(result.toString().trim());
+		} catch (NumberFormatException e) {
+			throw new SQLException("Cannot convert '"+result+"' to a number");
+		}
+	}
+
+	public float getFloat(int columnIndex) throws SQLException {
+		return (float) getDouble(columnIndex);
+	}
+
+	public double getDouble(int columnIndex) throws SQLException {
+		Object result = getValue(columnIndex);
+		if (result == null){
+			return 0;
+		}
+		if (result instanceof Number){
+			return ((Number) result).doubleValue();
+		}
+		try {
+			return Double.parseDouble(result.toString().trim());
+		} catch (NumberFormatException e) {
+			throw new SQLException("Cannot convert '"+result+"' to a number");
+		}
+	}
+
+	@Deprecated
+	public BigDecimal getBigDecimal(int columnIndex, int scale) throws SQLException {
+		BigDecimal result = getBigDecimal(columnIndex);
+		return result == null ? null : result.setScale(scale, RoundingMode.HALF_UP);
+	}
+
+	public byte[] getBytes(int columnIndex) throws SQLException {
+		return (byte[]) getValue(columnIndex);
+	}
+
+	public Date getDate(int columnIndex) throws SQLException {
+		return (Date) getValue(columnIndex);
+	}
+
+	public Time getTime(int columnIndex) throws SQLException {
+		return (Time) getValue(columnIndex);
+	}
+
+	public Timestamp getTimestamp(int columnIndex) throws SQLException {
+		return (Timestamp) getValue(columnIndex);
+	}
+
+	public InputStream getAsciiStream(int columnIndex) throws SQLException {
+		throw new SQLException("Streams are not supported on cached result sets");
+	}
+
+	@Deprecated
+	public InputStream getUnicodeStream(int columnIndex) throws SQLException {
+		throw new SQLException("Streams are not supported on cached result sets");
+	}
+
+	public InputStream getBinaryStream(int columnIndex) throws SQLException {
+		throw new SQLException("Streams are not supported on cached result sets");
+	}
+
+	public String getString(String columnLabel) throws SQLException {
+		return getString(findColumn(columnLabel));
+	}
+
+	public boolean getBoolean(String columnLabel) throws SQLException {
+		return getBoolean(findColumn(columnLabel));
+	}
+
+	public byte getByte(String columnLabel) throws SQLException {
+		return getByte(findColumn(columnLabel));
+	}
+
+	public short getShort(String columnLabel) throws SQLException {
+		return getShort(findColumn(columnLabel));
+	}
+
+	public int getInt(String columnLabel) throws SQLException {
+		return getInt(findColumn(columnLabel));
+	}
+
+	public long getLong(String columnLabel) throws SQLException {
+		return getLong(findColumn(columnLabel));
+	}
+
+	public float getFloat(String columnLabel) throws SQLException {
+		return getFloat(findColumn(columnLabel));
+	}
+
+	public double getDouble(String columnLabel) throws SQLException {
+		return getDouble(findColumn(columnLabel));
+	}
+
+	@Deprecated
+	public BigDecimal getBigDecimal(String columnLabel, int scale) throws SQLException {
+		return getBigDecimal(findColumn(columnLabel), scale);
+	}
+
+	public byte[] getBytes(String columnLabel) throws SQLException {
+		return getBytes(findColumn(columnLabel));
+	}
+
+	public Date getDate(String columnLabel) throws SQLException {
+		return getDate(findColumn(columnLabel));
+	}
+
+	public Time getTime(String columnLabel) throws SQLException {
+		return getTime(findColumn(columnLabel));
+	}
+
+	public Timestamp getTimestamp(String columnLabel) throws SQLException {
+		return getTimestamp(findColumn(columnLabel));
+	}
+
+	public InputStream getAsciiStream(String columnLabel) throws SQLException {
+		return getAsciiStream(findColumn(columnLabel));
+	}
+
+	@Deprecated
+	public InputStream getUnicodeStream(String columnLabel) throws SQLException {
+		return getUnicodeStream(findColumn(columnLabel));
+	}
+
+	public InputStream getBinaryStream(String columnLabel) throws SQLException {
+		return getBinaryStream(findColumn(columnLabel));
+	}
+
+	public SQLWarning getWarnings() throws SQLException {
+		return null;
+	}
+
+	public void clearWarnings() throws SQLException {
+		// do nothing
+	}
+
+	public String getCursorName() throws SQLException {
+		throw new SQLException("Positioned updates are not supported on cached result sets");
+	}
+
+	public ResultSetMetaData getMetaData() throws SQLException {
+		return this.snapshot;
+	}
+
+	public Object getObject(int columnIndex) throws SQLException {
+		return getValue(columnIndex);
+	}
+
+	public Object getObject(String columnLabel) throws SQLException {
+		return getObject(findColumn(columnLabel));
+	}
+
+	public int findColumn(String columnLabel) throws SQLException {
+		return this.snapshot.findColumn(columnLabel);
+	}
+
+	public Reader getCharacterStream(int columnIndex) throws SQLException {
+		String result = getString(columnIndex);
+		return result == null ? null : new StringReader(result);
+	}
+
+	public Reader getCharacterStream(String columnLabel) throws SQLException {
+		return getCharacterStream(findColumn(columnLabel));
+	}
+
+	public BigDecimal getBigDecimal(int columnIndex) throws SQLException {
+		Object result = getValue(columnIndex);
+		if (result == null || result instanceof BigDecimal){
+			return (BigDecimal) result;
+		}
+		try {
+			return new BigDecimal(result.toString().trim());
+		} catch (NumberFormatException e) {
+			throw new SQLException("Cannot convert '"+result+"' to a number");
+		}
+	}
+
+	public BigDecimal getBigDecimal(String columnLabel) throws SQLException {
+		return getBigDecimal(findColumn(columnLabel));
+	}
+
+	public boolean isBeforeFirst() throws SQLException {
+		return this.row < 0 && this.snapshot.getRowCount() > 0;
+	}
+
+	public boolean isAfterLast() throws SQLException {
+		return this.row >= this.snapshot.getRowCount() && this.snapshot.getRowCount() > 0;
+	}
+
+	public boolean isFirst() throws SQLException {
+		return this.row == 0 && this.snapshot.getRowCount() > 0;
+	}
+
+	public boolean isLast() throws SQLException {
+		return this.row == this.snapshot.getRowCount() - 1;
+	}
+
+	public void beforeFirst() throws SQLException {
+		this.row = -1;
+	}
+
+	public void afterLast() throws SQLException {
+		this.row = this.snapshot.getRowCount();
+	}
+
+	public boolean first() throws SQLException {
+		return absolute(1);
+	}
+
+	public boolean last() throws SQLException {
+		return absolute(-1);
+	}
+
+	public int getRow() throws SQLException {
+		return (this.row < 0 || this.row >= this.snapshot.getRowCount()) ? 0 : this.row + 1;
+	}
+
+	public boolean absolute(int row) throws SQLException {
+		int count = this.snapshot.getRowCount();
+		int target = row >= 0 ? row - 1 : count + row;
+		this.row = Math.max(-1, Math.min(target, count));
+		return this.row >= 0 && this.row < count;
+	}
+
+	public boolean relative(int rows) throws SQLException {
+		return absolute(getRow() == 0 && this.row >= this.snapshot.getRowCount() ? this.snapshot.getRowCount() + 1 + rows : this.row + 1 + rows);
+	}
+
+	public boolean previous() throws SQLException {
+		if (this.row >= 0){
+			this.row--;
+		}
+		return this.row >= 0 && this.row < this.snapshot.getRowCount();
+	}
+
+	public void setFetchDirection(int direction) throws SQLException {
+		// do nothing
+	}
+
+	public int getFetchDirection() throws SQLException {
+		return FETCH_FORWARD;
+	}
+
+	public void setFetchSize(int rows) throws SQLException {
+		// do nothing
+	}
+
+	public int getFetchSize() throws SQLException {
+		return 0;
+	}
+
+	public int getType() throws SQLException {
+		return TYPE_SCROLL_INSENSITIVE;
+	}
+
+	public int getConcurrency() throws SQLException {
+		return CONCUR_READ_ONLY;
+	}
+
+	public boolean rowUpdated() throws SQLException {
+		return false;
+	}
+
+	public boolean rowInserted() throws SQLException {
+		return false;
+	}
+
+	public boolean rowDeleted() throws SQLException {
+		return false;
+	}
+
+	public void updateNull(int columnIndex) throws SQLException {
+		throw readOnly();
+	}
+
+	public void updateBoolean(int columnIndex, boolean x) throws SQLException {
+		throw readOnly();
+	}
+
+	public void updateByte(int columnIndex, byte x) throws SQLException {
+		throw readOnly();
+	}
+
+	public void updateShort(int columnIndex, short x) throws SQLException {
+		throw readOnly();
+	}
+
+	public void updateInt(int columnIndex, int x) throws SQLException {
+		throw readOnly();
+	}
+
+	public void updateLong(int columnIndex, long x) throws SQLException {
+		throw readOnly();
+	}
+
+	public void updateFloat(int columnIndex, float x) throws SQLException {
+		throw readOnly();
+	}
+
+	public void updateDouble(int columnIndex, double x) throws SQLException {
+		throw readOnly();
+	}
+
+	public void updateBigDecimal(int columnIndex, BigDecimal x) throws SQLException {
+		throw readOnly();
+	}
+
+	public void updateString(int columnIndex, String x) throws SQLException {
+		throw readOnly();
+	}
+
+	public void updateBytes(int columnIndex, byte[] x) throws SQLException {
+		throw readOnly();
+	}
+
+	public void updateDate(int columnIndex, Date x) throws SQLException {
+		throw readOnly();
+	}
+
+	public void updateTime(int columnIndex, Time x) throws SQLException {
+		throw readOnly();
+	}
+
+	public void updateTimestamp(int columnIndex, Timestamp x) throws SQLException {
+		throw readOnly();
+	}
+
+	public void updateAsciiStream(int columnIndex, InputStream x, int length) throws SQLException {
+		throw readOnly();
+	}
+
+	public void updateBinaryStream(int columnIndex, InputStream x, int length) throws SQLException {
+		throw readOnly();
+	}
+
+	public void updateCharacterStream(int columnIndex, Reader x, int length) throws SQLException {
+		throw readOnly();
+	}
+
+	public void updateObject(int columnIndex, Object x, int scaleOrLength) throws SQLException {
+		throw readOnly();
+	}
+
+	public void updateObject(int columnIndex, Object x) throws SQLException {
+		throw readOnly();
+	}
+
+	public void updateNull(String columnLabel) throws SQLException {
+		throw readOnly();
+	}
+
+	public void updateBoolean(String columnLabel, boolean x) throws SQLException {
+		throw readOnly();
+	}
+
+	public void updateByte(String columnLabel, byte x) throws SQLException {
+		throw readOnly();
+	}
+
+	public void updateShort(String columnLabel, short x) throws SQLException {
+		throw readOnly();
+	}
+
+	public void updateInt(String columnLabel, int x) throws SQLException {
+		throw readOnly();
+	}
+
+	public void updateLong(String columnLabel, long x) throws SQLException {
+		throw readOnly();
+	}
+
+	public void updateFloat(String columnLabel, float x) throws SQLException {
+		throw readOnly();
+	}
+
+	public void updateDouble(String columnLabel, double x) throws SQLException {
+		throw readOnly();
+	}
+
+	public void updateBigDecimal(String columnLabel, BigDecimal x) throws SQLException {
+		throw readOnly();
+	}
+
+	public void updateString(String columnLabel, String x) throws SQLException {
+		throw readOnly();
+	}
+
+	public void updateBytes(String columnLabel, byte[] x) throws SQLException {
+		throw readOnly();
+	}
+
+	public void updateDate(String columnLabel, Date x) throws SQLException {
+		throw readOnly();
+	}
+
+	public void updateTime(String columnLabel, Time x) throws SQLException {
+		throw readOnly();
+	}
+
+	public void updateTimestamp(String columnLabel, Timestamp x) throws SQLException {
+		throw readOnly();
+	}
+
+	public void updateAsciiStream(String columnLabel, InputStream x, int length) throws SQLException {
+		throw readOnly();
+	}
+
+	public void updateBinaryStream(String columnLabel, InputStream x, int length) throws SQLException {
+		throw readOnly();
+	}
+
+	public void updateCharacterStream(String columnLabel, Reader reader, int length) throws SQLException {
+		throw readOnly();
+	}
+
+	public void updateObject(String columnLabel, Object x, int scaleOrLength) throws SQLException {
+		throw readOnly();
+	}
+
+	public void updateObject(String columnLabel, Object x) throws SQLException {
+		throw readOnly();
+	}
+
+	public void insertRow() throws SQLException {
+		throw readOnly();
+	}
+
+	public void updateRow() throws SQLException {
+		throw readOnly();
+	}
+
+	public void deleteRow() throws SQLException {
+		throw readOnly();
+	}
+
+	public void refreshRow() throws SQLException {
+		throw readOnly();
+	}
+
+	public void cancelRowUpdates() throws SQLException {
+		throw readOnly();
+	}
+
+	public void moveToInsertRow() throws SQLException {
+		throw readOnly();
+	}
+
+	public void moveToCurrentRow() throws SQLException {
+		throw readOnly();
+	}
+
+	public Statement getStatement() throws SQLException {
+		return null; // allowed for result sets produced by DatabaseMetaData
+	}
+
+	public Object getObject(int columnIndex, Map<String, Class<?>> map) throws SQLException {
+		return getValue(columnIndex);
+	}
+
+	public Ref getRef(int columnIndex) throws SQLException {
+		return (Ref) getValue(columnIndex);
+	}
+
+	public Blob getBlob(int columnIndex) throws SQLException {
+		return (Blob) getValue(columnIndex);
+	}
+
+	public Clob getClob(int columnIndex) throws SQLException {
+		return (Clob) getValue(columnIndex);
+	}
+
+	public Array getArray(int columnIndex) throws SQLException {
+		return (Array) getValue(columnIndex);
+	}
+
+	public Object getObject(String columnLabel, Map<String, Class<?>> map) throws SQLException {
+		return getObject(findColumn(columnLabel), map);
+	}
+
+	public Ref getRef(String columnLabel) throws SQLException {
+		return getRef(findColumn(columnLabel));
+	}
+
+	public Blob getBlob(String columnLabel) throws SQLException {
+		return getBlob(findColumn(columnLabel));
+	}
+
+	public Clob getClob(String columnLabel) throws SQLException {
+		return getClob(findColumn(columnLabel));
+	}
+
+	public Array getArray(String columnLabel) throws SQLException {
+		return getArray(findColumn(columnLabel));
+	}
+
+	public Date getDate(int columnIndex, Calendar cal) throws SQLException {
+		return (Date) getValue(columnIndex);
+	}
+
+	public Date getDate(String columnLabel, Calendar cal) throws SQLException {
+		return getDate(findColumn(columnLabel), cal);
+	}
+
+	public Time getTime(int columnIndex, Calendar cal) throws SQLException {
+		return (Time) getValue(columnIndex);
+	}
+
+	public Time getTime(String columnLabel, Calendar cal) throws SQLException {
+		return getTime(findColumn(columnLabel), cal);
+	}
+
+	public Timestamp getTimestamp(int columnIndex, Calendar cal) throws SQLException {
+		return (Timestamp) getValue(columnIndex);
+	}
+
+	public Timestamp getTimestamp(String columnLabel, Calendar cal) throws SQLException {
+		return getTimestamp(findColumn(columnLabel), cal);
+	}
+
+	public URL getURL(int columnIndex) throws SQLException {
+		return (URL) getValue(columnIndex);
+	}
+
+	public URL getURL(String columnLabel) throws SQLException {
+		return getURL(findColumn(columnLabel));
+	}
+
+	public void updateRef(int columnIndex, Ref x) throws SQLException {
+		throw readOnly();
+	}
+
+	public void updateRef(String columnLabel, Ref x) throws SQLException {
+		throw readOnly();
+	}
+
+	public void updateBlob(int columnIndex, Blob x) throws SQLException {
+		throw readOnly();
+	}
+
+	public void updateBlob(String columnLabel, Blob x) throws SQLException {
+		throw readOnly();
+	}
+
+	public void updateClob(int columnIndex, Clob x) throws SQLException {
+		throw readOnly();
+	}
+
+	public void updateClob(String columnLabel, Clob x) throws SQLException {
+		throw readOnly();
+	}
+
+	public void updateArray(int columnIndex, Array x) throws SQLException {
+		throw readOnly();
+	}
+
+	public void updateArray(String columnLabel, Array x) throws SQLException {
+		throw readOnly();
+	}
+
+	// #ifdef JDK>6
+	public RowId getRowId(int columnIndex) throws SQLException {
+		return (RowId) getValue(columnIndex);
+	}
+
+	public RowId getRowId(String columnLabel) throws SQLException {
+		return getRowId(findColumn(columnLabel));
+	}
+
+	public void updateRowId(int columnIndex, RowId x) throws SQLException {
+		throw readOnly();
+	}
+
+	public void updateRowId(String columnLabel, RowId x) throws SQLException {
+		throw readOnly();
+	}
+
+	public int getHoldability() throws SQLException {
+		return HOLD_CURSORS_OVER_COMMIT;
+	}
+
+	public boolean isClosed() throws SQLException {
+		return this.closed;
+	}
+
+	public void updateNString(int columnIndex, String nString) throws SQLException {
+		throw readOnly();
+	}
+
+	public void updateNString(String columnLabel, String nString) throws SQLException {
+		throw readOnly();
+	}
+
+	public void updateNClob(int columnIndex, NClob nClob) throws SQLException {
+		throw readOnly();
+	}
+
+	public void updateNClob(String columnLabel, NClob nClob) throws SQLException {
+		throw readOnly();
+	}
+
+	public NClob getNClob(int columnIndex) throws SQLException {
+		return (NClob) getValue(columnIndex);
+	}
+
+	public NClob getNClob(String columnLabel) throws SQLException {
+		return getNClob(findColumn(columnLabel));
+	}
+
+	public SQLXML getSQLXML(int columnIndex) throws SQLException {
+		return (SQLXML) getValue(columnIndex);
+	}
+
+	public SQLXML getSQLXML(String columnLabel) throws SQLException {
+		return getSQLXML(findColumn(columnLabel));
+	}
+
+	public void updateSQLXML(int columnIndex, SQLXML xmlObject) throws SQLException {
+		throw readOnly();
+	}
+
+	public void updateSQLXML(String columnLabel, SQLXML xmlObject) throws SQLException {
+		throw readOnly();
+	}
+
+	public String getNString(int columnIndex) throws SQLException {
+		return getString(columnIndex);
+	}
+
+	public String getNString(String columnLabel) throws SQLException {
+		return getNString(findColumn(columnLabel));
+	}
+
+	public Reader getNCharacterStream(int columnIndex) throws SQLException {
+		return getCharacterStream(columnIndex);
+	}
+
+	public Reader getNCharacterStream(String columnLabel) throws SQLException {
+		return getNCharacterStream(findColumn(columnLabel));
+	}
+
+	public void updateNCharacterStream(int columnIndex, Reader x, long length) throws SQLException {
+		throw readOnly();
+	}
+
+	public void updateNCharacterStream(String columnLabel, Reader reader, long length) throws SQLException {
+		throw readOnly();
+	}
+
+	public void updateAsciiStream(int columnIndex, InputStream x, long length) throws SQLException {
+		throw readOnly();
+	}
+
+	public void updateBinaryStream(int columnIndex, InputStream x, long length) throws SQLException {
+		throw readOnly();
+	}
+
+	public void updateCharacterStream(int columnIndex, Reader x, long length) throws SQLException {
+		throw readOnly();
+	}
+
+	public void updateAsciiStream(String columnLabel, InputStream x, long length) throws SQLException {
+		throw readOnly();
+	}
+
+	public void updateBinaryStream(String columnLabel, InputStream x, long length) throws SQLException {
+		throw readOnly();
+	}
+
+	public void updateCharacterStream(String columnLabel, Reader reader, long length) throws SQLException {
+		throw readOnly();
+	}
+
+	public void updateBlob(int columnIndex, InputStream inputStream, long length) throws SQLException {
+		throw readOnly();
+	}
+
+	public void updateBlob(String columnLabel, InputStream inputStream, long length) throws SQLException {
+		throw readOnly();
+	}
+
+	public void updateClob(int columnIndex, Reader reader, long length) throws SQLException {
+		throw readOnly();
+	}
+
+	public void updateClob(String columnLabel, Reader reader, long length) throws SQLException {
+		throw readOnly();
+	}
+
+	public void updateNClob(int columnIndex, Reader reader, long length) throws SQLException {
+		throw readOnly();
+	}
+
+	public void updateNClob(String columnLabel, Reader reader, long length) throws SQLException {
+		throw readOnly();
+	}
+
+	public void updateNCharacterStream(int columnIndex, Reader x) throws SQLException {
+		throw readOnly();
+	}
+
+	public void updateNCharacterStream(String columnLabel, Reader reader) throws SQLException {
+		throw readOnly();
+	}
+
+	public void updateAsciiStream(int columnIndex, InputStream x) throws SQLException {
+		throw readOnly();
+	}
+
+	public void updateBinaryStream(int columnIndex, InputStream x) throws SQLException {
+		throw readOnly();
+	}
+
+	public void updateCharacterStream(int columnIndex, Reader x) throws SQLException {
+		throw readOnly();
+	}
+
+	public void updateAsciiStream(String columnLabel, InputStream x) throws SQLException {
+		throw readOnly();
+	}
+
+	public void updateBinaryStream(String columnLabel, InputStream x) throws SQLException {
+		throw readOnly();
+	}
+
+	public void updateCharacterStream(String columnLabel, Reader reader) throws SQLException {
+		throw readOnly();
+	}
+
+	public void updateBlob(int columnIndex, InputStream inputStream) throws SQLException {
+		throw readOnly();
+	}
+
+	public void updateBlob(String columnLabel, InputStream inputStream) throws SQLException {
+		throw readOnly();
+	}
+
+	public void updateClob(int columnIndex, Reader reader) throws SQLException {
+		throw readOnly();
+	}
+
+	public void updateClob(String columnLabel, Reader reader) throws SQLException {
+		throw readOnly();
+	}
+
+	public void updateNClob(int columnIndex, Reader reader) throws SQLException {
+		throw readOnly();
+	}
+
+	public void updateNClob(String columnLabel, Reader reader) throws SQLException {
+		throw readOnly();
+	}
+
+	public boolean isWrapperFor(Class<?> iface) throws SQLException {
+		return iface.isInstance(this);
+	}
+
+	public <T> T unwrap(Class<T> iface) throws SQLException {
+		if (!iface.isInstance(this)){
+			throw new SQLException("Not a wrapper for "+iface);
+		}
+		return iface.cast(this);
+	}
+	// #endif JDK>6
+
+	// #ifdef JDK7
+	public <T> T getObject(int columnIndex, Class<T> type) throws SQLException {
+		return type.cast(getValue(columnIndex));
+	}
+
+	public <T> T getObject(String columnLabel, Class<T> type) throws SQLException {
+		return getObject(findColumn(columnLabel), type);
+	}
+
+	// #endif JDK7
+}
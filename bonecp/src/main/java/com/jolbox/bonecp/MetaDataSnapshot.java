@@ -0,0 +1,242 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.jolbox.bonecp;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable, disconnected copy of a DatabaseMetaData result set. Rows are held as plain object arrays
+ * and repeated string values (catalog, schema and table names) are shared between rows to keep the 
+ * footprint small. Also acts as the ResultSetMetaData of the result sets handed out over it.
+ * 
+ * @author wallacew
+ *
+ */
+public class MetaDataSnapshot implements ResultSetMetaData {
+	/** Column labels. */
+	private final String[] columnLabels;
+	/** Column SQL types. */
+	private final int[] columnTypes;
+	/** Column type names. */
+	private final String[] columnTypeNames;
+	/** Row data. */
+	private final Object[][] rows;
+	/** Time this snapshot was taken. */
+	private final long creationTimeInMs;
+
+	/** Reads the given result set fully and closes it.
+	 * @param rs result set to copy. A null result set gives an empty snapshot.
+	 * @throws SQLException on error
+	 */
+	public MetaDataSnapshot(ResultSet rs) throws SQLException{
+		this.creationTimeInMs = System.currentTimeMillis();
+		if (rs == null){
+			this.columnLabels = new String[0];
+			this.columnTypes = new int[0];
+			this.columnTypeNames = new String[0];
+			this.rows = new Object[0][];
+			return;
+		}
+		
+		try{
+			ResultSetMetaData rsmd = rs.getMetaData();
+			int columns = rsmd == null ? 0 : rsmd.getColumnCount();
+			this.columnLabels = new String[columns];
+			this.columnTypes = new int[columns];
+			this.columnTypeNames = new String[columns];
+			for (int i=0; i < columns; i++){
+				this.columnLabels[i] = rsmd.getColumnLabel(i+1);
+				this.columnTypes[i] = rsmd.getColumnType(i+1);
+				this.columnTypeNames[i] = rsmd.getColumnTypeName(i+1);
+			}
+
+			Map<String, String> strings = new HashMap<String, String>();
+			List<Object[]> data = new ArrayList<Object[]>();
+			while (rs.next()){
+				Object[] row = new Object[columns];
+				for (int i=0; i < columns; i++){
+					Object value = rs.getObject(i+1);
+					if (value instanceof String){
+						String shared = strings.get(value);
+						if (shared == null){
+							strings.put((String)value, (String)value);
+						} else {
+							value = shared;
+						}
+					}
+					row[i] = value;
+				}
+				data.add(row);
+			}
+			this.rows = data.toArray(new Object[data.size()][]);
+		} finally {
+			rs.close();
+		}
+	}
+
+	/** Returns the time this snapshot was taken. 
+	 * @return creation time in ms
+	 */
+	public long getCreationTimeInMs() {
+		return this.creationTimeInMs;
+	}
+
+	/** Returns the number of rows held.
+	 * @return row count
+	 */
+	public int getRowCount(){
+		return this.rows.length;
+	}
+
+	/** Returns the value at the given position.
+	 * @param row row (0-based)
+	 * @param column column (1-based, as in JDBC)
+	 * @return value
+	 */
+	protected Object getValue(int row, int column){
+		return this.rows[row][column-1];
+	}
+
+	/** Returns the (1-based) index of the given column.
+	 * @param columnLabel label to look for (case-insensitive)
+	 * @return column index
+	 * @throws SQLException if no such column exists
+	 */
+	public int findColumn(String columnLabel) throws SQLException {
+		for (int i=0; i < this.columnLabels.length; i++){
+			if (this.columnLabels[i] != null && this.columnLabels[i].equalsIgnoreCase(columnLabel)){
+				return i+1;
+			}
+		}
+		throw new SQLException("Column not found: "+columnLabel);
+	}
+
+	/** Checks the given column index.
+	 * @param column index to check
+	 * @throws SQLException if out of range
+	 */
+	protected void checkColumn(int column) throws SQLException{
+		if (column < 1 || column > this.columnLabels.length){
+			throw new SQLException("Invalid column index: "+column);
+		}
+	}
+
+	public int getColumnCount() throws SQLException {
+		return this.columnLabels.length;
+	}
+
+	public boolean isAutoIncrement(int column) throws SQLException {
+		return false;
+	}
+
+	public boolean isCaseSensitive(int column) throws SQLException {
+		return true;
+	}
+
+	public boolean isSearchable(int column) throws SQLException {
+		return false;
+	}
+
+	public boolean isCurrency(int column) throws SQLException {
+		return false;
+	}
+
+	public int isNullable(int column) throws SQLException {
+		return columnNullableUnknown;
+	}
+
+	public boolean isSigned(int column) throws SQLException {
+		return false;
+	}
+
+	public int getColumnDisplaySize(int column) throws SQLException {
+		return 0;
+	}
+
+	public String getColumnLabel(int column) throws SQLException {
+		checkColumn(column);
+		return this.columnLabels[column-1];
+	}
+
+	public String getColumnName(int column) throws SQLException {
+		return getColumnLabel(column);
+	}
+
+	public String getSchemaName(int column) throws SQLException {
+		return "";
+	}
+
+	public int getPrecision(int column) throws SQLException {
+		return 0;
+	}
+
+	public int getScale(int column) throws SQLException {
+		return 0;
+	}
+
+	public String getTableName(int column) throws SQLException {
+		return "";
+	}
+
+	public String getCatalogName(int column) throws SQLException {
+		return "";
+	}
+
+	public int getColumnType(int column) throws SQLException {
+		checkColumn(column);
+		return this.columnTypes[column-1];
+	}
+
+	public String getColumnTypeName(int column) throws SQLException {
+		checkColumn(column);
+		return this.columnTypeNames[column-1];
+	}
+
+	public boolean isReadOnly(int column) throws SQLException {
+		return true;
+	}
+
+	public boolean isWritable(int column) throws SQLException {
+		return false;
+	}
+
+	public boolean isDefinitelyWritable(int column) throws SQLException {
+		return false;
+	}
+
+	public String getColumnClassName(int column) throws SQLException {
+		return Object.class.getName();
+	}
+
+	// #ifdef JDK>6
+	public boolean isWrapperFor(Class<?> iface) throws SQLException {
+		return iface.isInstance(this);
+	}
+
+	public <T> T unwrap(Class<T> iface) throws SQLException {
+		if (!iface.isInstance(this)){
+			throw new SQLException("Not a wrapper for "+iface);
+		}
+		return iface.cast(this);
+	}
+	// #endif JDK>6
+}
@@ -0,0 +1,488 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+/**
+ * 
+ */
+package com.jolbox.bonecp;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Records the parameters bound to a statement, for statement logging and connection hooks. Parameters are stored
+ * in slots addressed by parameter index, with primitive values kept unboxed in typed arrays that are reused across
+ * executions and only grow when a higher index is bound. Parameters bound by name (callable statements) are kept
+ * separately. 
+ * 
+ * <p>The recorder is also a read-through Map view of the parameters, in index order followed by named parameters
+ * in name order (as the TreeMap it replaces): values are only boxed when the map is read, eg by a connection hook
+ * or when the statement is finally formatted.
+ * 
+ * @author wallacew
+ *
+ */
+public class ParameterRecorder extends AbstractMap<Object, Object> {
+	/** Slot kind: not bound. */
+	private static final byte NONE = 0;
+	/** Slot kind: reference, in objects. */
+	private static final byte OBJECT = 1;
+	/** Slot kind: boolean, in ints. */
+	private static final byte BOOLEAN = 2;
+	/** Slot kind: byte, in ints. */
+	private static final byte BYTE = 3;
+	/** Slot kind: short, in ints. */
+	private static final byte SHORT = 4;
+	/** Slot kind: int, in ints. */
+	private static final byte INT = 5;
+	/** Slot kind: long, in longs. */
+	private static final byte LONG = 6;
+	/** Slot kind: float, in doubles. */
+	private static final byte FLOAT = 7;
+	/** Slot kind: double, in doubles. */
+	private static final byte DOUBLE = 8;
+	/** Slot kind: SQL NULL, with the SQL type in ints. */
+	private static final byte SQL_NULL = 9;
+	/** Number of slots allocated on first use. */
+	private static final int INITIAL_CAPACITY = 8;
+	/** Kind of each slot. */
+	private byte[] kinds = new byte[0];
+	/** Values of int-like slots. */
+	private int[] ints = new int[0];
+	/** Values of long slots. */
+	private long[] longs = new long[0];
+	/** Values of float and double slots. */
+	private double[] doubles = new double[0];
+	/** Values of reference slots. */
+	private Object[] objects = new Object[0];
+	/** Highest index bound so far (-1 = none). Slots above it are all unbound. */
+	private int highest = -1;
+	/** Number of bound slots. */
+	private int count;
+	/** Parameters bound by name (null until the first one). */
+	private TreeMap<String, Object> named;
+	/** Cached entry set. */
+	private Set<Map.Entry<Object, Object>> entrySet;
+
+	/** Marks a slot as bound to a value of the given kind, growing the arrays if needed.
+	 * @param index parameter index
+	 * @param kind slot kind
+	 */
+	private void bind(int index, byte kind){
+		if (index >= this.kinds.length){
+			int capacity = Math.max(index + 1, Math.max(INITIAL_CAPACITY, 2 * this.kinds.length));
+			this.kinds = copyOf(this.kinds, capacity);
+			this.ints = copyOf(this.ints, capacity);
+			this.longs = copyOf(this.longs, capacity);
+			this.doubles = copyOf(this.doubles, capacity);
+			this.objects = copyOf(this.objects, capacity);
+		}
+		if (this.kinds[index] == NONE){
+			this.count++;
+		} else if (this.kinds[index] == OBJECT){
+			this.objects[index] = null;
+		}
+		this.kinds[index] = kind;
+		if (index > this.highest){
+			this.highest = index;
+		}
+	}
+
+	/** Records a parameter.
+	 * @param index parameter index
+	 * @param value value
+	 */
+	public void set(int index, boolean value){
+		bind(index, BOOLEAN);
+		this.ints[index] = value ? 1 : 0;
+	}
+
+	/** Records a parameter.
+	 * @param index parameter index
+	 * @param value value
+	 */
+	public void set(int index, byte value){
+		bind(index, BYTE);
+		this.ints[index] = value;
+	}
+
+	/** Records a parameter.
+	 * @param index parameter index
+	 * @param value value
+	 */
+	public void set(int index, short value){
+		bind(index, SHORT);
+		this.ints[index] = value;
+	}
+
+	/** Records a parameter.
+	 * @param index parameter index
+	 * @param value value
+	 */
+	public void set(int index, int value){
+		bind(index, INT);
+		this.ints[index] = value;
+	}
+
+	/** Records a parameter.
+	 * @param index parameter index
+	 * @param value value
+	 */
+	public void set(int index, long value){
+		bind(index, LONG);
+		this.longs[index] = value;
+	}
+
+	/** Records a parameter.
+	 * @param index parameter index
+	 * @param value value
+	 */
+	public void set(int index, float value){
+		bind(index, FLOAT);
+		this.doubles[index] = value;
+	}
+
+	/** Records a parameter.
+	 * @param index parameter index
+	 * @param value value
+	 */
+	public void set(int index, double value){
+		bind(index, DOUBLE);
+		this.doubles[index] = value;
+	}
+
+	/** Records a parameter.
+	 * @param index parameter index
+	 * @param value value (only the reference is kept)
+	 */
+	public void set(int index, Object value){
+		bind(index, OBJECT);
+		this.objects[index] = value;
+	}
+
+	/** Records a parameter bound by name.
+	 * @param name parameter name
+	 * @param value value (only the reference is kept)
+	 */
+	public void set(String name, Object value){
+		if (this.named == null){
+			this.named = new TreeMap<String, Object>();
+		}
+		this.named.put(name, value);
+	}
+
+	/** Records a parameter set to SQL NULL. Shown as "[SQL NULL of type sqlType]".
+	 * @param index parameter index
+	 * @param sqlType SQL type, as per java.sql.Types
+	 */
+	public void setNull(int index, int sqlType){
+		bind(index, SQL_NULL);
+		this.ints[index] = sqlType;
+	}
+
+	/** Replaces the contents of this recorder with those of another one, without boxing any values.
+	 * @param other recorder to copy
+	 */
+	public void copyFrom(ParameterRecorder other){
+		clear();
+		int length = other.highest + 1;
+		if (length > this.kinds.length){
+			this.kinds = new byte[other.kinds.length];
+			this.ints = new int[other.kinds.length];
+			this.longs = new long[other.kinds.length];
+			this.doubles = new double[other.kinds.length];
+			this.objects = new Object[other.kinds.length];
+		}
+		System.arraycopy(other.kinds, 0, this.kinds, 0, length);
+		System.arraycopy(other.ints, 0, this.ints, 0, length);
+		System.arraycopy(other.longs, 0, this.longs, 0, length);
+		System.arraycopy(other.doubles, 0, this.doubles, 0, length);
+		System.arraycopy(other.objects, 0, this.objects, 0, length);
+		this.highest = other.highest;
+		this.count = other.count;
+		if (other.named != null && !other.named.isEmpty()){
+			if (this.named == null){
+				this.named = new TreeMap<String, Object>();
+			}
+			this.named.putAll(other.named);
+		}
+	}
+
+	/** Returns the (boxed) value of a slot.
+	 * @param index parameter index
+	 * @return value, or null if not bound
+	 */
+	public Object get(int index){
+		if (index < 0 || index > this.highest){
+			return null;
+		}
+		switch (this.kinds[index]){
+		case OBJECT: return this.objects[index];
+		case BOOLEAN: return Boolean.valueOf(this.ints[index] != 0);
+		case BYTE: return Byte.valueOf((byte) this.ints[index]);
+		case SHORT: return Short.valueOf((short) this.ints[index]);
+		case INT: return Integer.valueOf(this.ints[index]);
+		case LONG: return Long.valueOf(this.longs[index]);
+		case FLOAT: return Float.valueOf((float) this.doubles[index]);
+		case DOUBLE: return Double.valueOf(this.doubles[index]);
+		case SQL_NULL: return "[SQL NULL of type "+this.ints[index]+"]";
+		default: return null;
+		}
+	}
+
+	/** Returns true if the given slot is bound.
+	 * @param index parameter index
+	 * @return true if bound
+	 */
+	private boolean isBound(int index){
+		return index >= 0 && index <= this.highest && this.kinds[index] != NONE;
+	}
+
+	/** Returns true if the given map key addresses a slot rather than a named parameter.
+	 * @param key map key
+	 * @return true for non-negative Integers
+	 */
+	private static boolean isIndex(Object key){
+		return key instanceof Integer && ((Integer) key).intValue() >= 0;
+	}
+
+	@Override
+	public Object get(Object key) {
+		if (isIndex(key)){
+			return get(((Integer) key).intValue());
+		}
+		return this.named == null ? null : this.named.get(String.valueOf(key));
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		if (isIndex(key)){
+			return isBound(((Integer) key).intValue());
+		}
+		return this.named != null && this.named.containsKey(String.valueOf(key));
+	}
+
+	@Override
+	public Object put(Object key, Object value) {
+		Object result = get(key);
+		if (isIndex(key)){
+			set(((Integer) key).intValue(), value);
+		} else {
+			set(String.valueOf(key), value);
+		}
+		return result;
+	}
+
+	@Override
+	public int size() {
+		return this.count + (this.named == null ? 0 : this.named.size());
+	}
+
+	/** Unbinds all parameters, releasing any references held. Only the slots used so far are touched. */
+	@Override
+	public void clear() {
+		if (this.highest >= 0){
+			Arrays.fill(this.kinds, 0, this.highest + 1, NONE);
+			Arrays.fill(this.objects, 0, this.highest + 1, null);
+			this.highest = -1;
+			this.count = 0;
+		}
+		if (this.named != null){
+			this.named.clear();
+		}
+	}
+
+	@Override
+	public Set<Map.Entry<Object, Object>> entrySet() {
+		if (this.entrySet == null){
+			this.entrySet = new AbstractSet<Map.Entry<Object, Object>>() {
+				@Override
+				public Iterator<Map.Entry<Object, Object>> iterator() {
+					return new EntryIterator();
+				}
+
+				@Override
+				public int size() {
+					return ParameterRecorder.this.size();
+				}
+			};
+		}
+		return this.entrySet;
+	}
+
+	/** Grows an array.
+	 * @param array array to copy
+	 * @param length new length
+	 * @return copy
+	 */
+	private static byte[] copyOf(byte[] array, int length){
+		byte[] result = new byte[length];
+		System.arraycopy(array, 0, result, 0, array.length);
+		return result;
+	}
+
+	/** Grows an array.
+	 * @param array array to copy
+	 * @param length new length
+	 * @return copy
+	 */
+	private static int[] copyOf(int[] array, int length){
+		int[] result = new int[length];
+		System.arraycopy(array, 0, result, 0, array.length);
+		return result;
+	}
+
+	/** Grows an array.
+	 * @param array array to copy
+	 * @param length new length
+	 * @return copy
+	 */
+	private static long[] copyOf(long[] array, int length){
+		long[] result = new long[length];
+		System.arraycopy(array, 0, result, 0, array.length);
+		return result;
+	}
+
+	/** Grows an array.
+	 * @param array array to copy
+	 * @param length new length
+	 * @return copy
+	 */
+	private static double[] copyOf(double[] array, int length){
+		double[] result = new double[length];
+		System.arraycopy(array, 0, result, 0, array.length);
+		return result;
+	}
+
+	/** Grows an array.
+	 * @param array array to copy
+	 * @param length new length
+	 * @return copy
+	 */
+	private static Object[] copyOf(Object[] array, int length){
+		Object[] result = new Object[length];
+		System.arraycopy(array, 0, result, 0, array.length);
+		return result;
+	}
+
+	/** Walks the bound slots in index order, then the named parameters. Values are boxed as they are read. */
+	private class EntryIterator implements Iterator<Map.Entry<Object, Object>> {
+		/** Next slot to look at. */
+		private int index;
+		/** Named parameters, once the slots are exhausted. */
+		private Iterator<Map.Entry<String, Object>> namedIterator;
+
+		/** Moves index to the next bound slot.
+		 * @return true if there is one
+		 */
+		private boolean findSlot(){
+			while (this.index <= ParameterRecorder.this.highest && ParameterRecorder.this.kinds[this.index] == NONE){
+				this.index++;
+			}
+			return this.index <= ParameterRecorder.this.highest;
+		}
+
+		// @Override
+		public boolean hasNext() {
+			if (findSlot()){
+				return true;
+			}
+			if (this.namedIterator == null){
+				if (ParameterRecorder.this.named == null){
+					return false;
+				}
+				this.namedIterator = ParameterRecorder.this.named.entrySet().iterator();
+			}
+			return this.namedIterator.hasNext();
+		}
+
+		// @Override
+		public Map.Entry<Object, Object> next() {
+			if (!hasNext()){
+				throw new NoSuchElementException();
+			}
+			if (this.namedIterator == null){
+				int slot = this.index++;
+				return new Parameter(Integer.valueOf(slot), get(slot));
+			}
+			Map.Entry<String, Object> entry = this.namedIterator.next();
+			return new Parameter(entry.getKey(), entry.getValue());
+		}
+
+		// @Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+
+	/** Read-only parameter entry. */
+	private static class Parameter implements Map.Entry<Object, Object> {
+		/** Parameter index or name. */
+		private final Object key;
+		/** Parameter value. */
+		private final Object value;
+
+		/** Default constructor.
+		 * @param key parameter index or name
+		 * @param value parameter value
+		 */
+		protected Parameter(Object key, Object value){
+			this.key = key;
+			this.value = value;
+		}
+
+		// @Override
+		public Object getKey() {
+			return this.key;
+		}
+
+		// @Override
+		public Object getValue() {
+			return this.value;
+		}
+
+		// @Override
+		public Object setValue(Object value) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Map.Entry)){
+				return false;
+			}
+			Map.Entry<?, ?> that = (Map.Entry<?, ?>) obj;
+			return (this.key == null ? that.getKey() == null : this.key.equals(that.getKey()))
+					&& (this.value == null ? that.getValue() == null : this.value.equals(that.getValue()));
+		}
+
+		@Override
+		public int hashCode() {
+			return (this.key == null ? 0 : this.key.hashCode()) ^ (this.value == null ? 0 : this.value.hashCode());
+		}
+
+		@Override
+		public String toString() {
+			return this.key + "=" + this.value;
+		}
+	}
+}
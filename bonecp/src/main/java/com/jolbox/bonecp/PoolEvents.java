@@ -0,0 +1,163 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+/**
+ * 
+ */
+package com.jolbox.bonecp;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Emits pool events (connection acquire/release, physical create/destroy, statement prepare/execute, validation, 
+ * partition fills and a periodic statistics snapshot) to the Java Flight Recorder. 
+ * 
+ * <p>This class itself does nothing: if the JVM provides the jdk.jfr API, the pool uses {@link JfrPoolEvents} 
+ * instead, which is loaded reflectively so that the pool keeps working on JVMs without a flight recorder. Set the 
+ * system property bonecp.jfr to false to skip loading it altogether.
+ * 
+ * <p>Call sites check {@link #recording} before gathering any event data, so while no recording is running the 
+ * cost is a single volatile read.
+ * 
+ * @author wallacew
+ *
+ */
+public class PoolEvents {
+	/** Class logger. */
+	private static final Logger logger = LoggerFactory.getLogger(PoolEvents.class);
+	/** System property to set to false to keep pool events off the flight recorder. */
+	public static final String ENABLED_PROPERTY = "bonecp.jfr";
+	/** Flight recorder backed implementation, loaded only if the jdk.jfr API is present. */
+	private static final String JFR_IMPLEMENTATION = "com.jolbox.bonecp.JfrPoolEvents";
+	/** True while at least one flight recording is running. Maintained by the flight recorder backed implementation. */
+	protected static volatile boolean recording;
+	/** Event sink used by the pool. */
+	protected static final PoolEvents INSTANCE = load();
+
+	/** Returns the flight recorder backed implementation if possible, or a no-op one otherwise.
+	 * @return event sink
+	 */
+	private static PoolEvents load(){
+		if (!Boolean.valueOf(System.getProperty(ENABLED_PROPERTY, "true"))){
+			return new PoolEvents();
+		}
+		try{
+			Class.forName("jdk.jfr.FlightRecorder");
+			return (PoolEvents) Class.forName(JFR_IMPLEMENTATION).getDeclaredConstructor().newInstance();
+		} catch (Throwable t){ // ClassNotFoundException, LinkageError, flight recorder disabled...
+			logger.debug("Java Flight Recorder not available, pool events will not be recorded: "+t);
+			return new PoolEvents();
+		}
+	}
+
+	/** Returns the event sink used by the pool.
+	 * @return event sink
+	 */
+	public static PoolEvents getInstance(){
+		return INSTANCE;
+	}
+
+	/** Returns true if a flight recording is running.
+	 * @return recording status
+	 */
+	public static boolean isRecording(){
+		return recording;
+	}
+
+	/** Includes the given pool in the periodic statistics snapshot.
+	 * @param pool pool that has just started
+	 */
+	protected void register(BoneCP pool){
+		// no-op
+	}
+
+	/** Drops the given pool from the periodic statistics snapshot.
+	 * @param pool pool being shut down
+	 */
+	protected void unregister(BoneCP pool){
+		// no-op
+	}
+
+	/** A connection has been handed to the application.
+	 * @param handle connection
+	 * @param requestedAt System.nanoTime() when the connection was asked for
+	 */
+	protected void connectionAcquired(ConnectionHandle handle, long requestedAt){
+		// no-op
+	}
+
+	/** A connection has been handed back to the pool.
+	 * @param handle connection
+	 * @param checkedOutAt System.nanoTime() when the connection was handed to the application
+	 */
+	protected void connectionReleased(ConnectionHandle handle, long checkedOutAt){
+		// no-op
+	}
+
+	/** A physical connection has been opened.
+	 * @param handle connection
+	 * @param startedAt System.nanoTime() when the attempt started
+	 */
+	protected void connectionCreated(ConnectionHandle handle, long startedAt){
+		// no-op
+	}
+
+	/** A physical connection is being closed.
+	 * @param handle connection
+	 */
+	protected void connectionDestroyed(ConnectionHandle handle){
+		// no-op
+	}
+
+	/** A statement has been prepared, or taken from the statement cache.
+	 * @param handle connection
+	 * @param sql statement
+	 * @param cacheHit true if the statement came from the cache
+	 * @param startedAt System.nanoTime() when the call started
+	 */
+	protected void statementPrepared(ConnectionHandle handle, String sql, boolean cacheHit, long startedAt){
+		// no-op
+	}
+
+	/** An execute call has returned (or thrown).
+	 * @param statement statement
+	 * @param sql statement executed
+	 * @param startedAt System.nanoTime() when the call started
+	 */
+	protected void statementExecuted(StatementHandle statement, String sql, long startedAt){
+		// no-op
+	}
+
+	/** A connection test has completed.
+	 * @param handle connection
+	 * @param alive test result
+	 * @param startedAt System.nanoTime() when the test started
+	 */
+	protected void connectionValidated(ConnectionHandle handle, boolean alive, long startedAt){
+		// no-op
+	}
+
+	/** The pool watch thread has topped up a partition.
+	 * @param partition partition
+	 * @param requested connections asked for
+	 * @param created connections actually created
+	 * @param startedAt System.nanoTime() when the fill started
+	 */
+	protected void partitionFilled(ConnectionPartition partition, int requested, int created, long startedAt){
+		// no-op
+	}
+}
@@ -0,0 +1,513 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+/**
+ * 
+ */
+package com.jolbox.bonecp;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Recommends pool settings from live statistics. At the end of every window the advisor takes the number of
+ * connection requests and the connection wait and hold time histograms that Statistics collected during that
+ * window, and models the pool as an M/G/c queue: Poisson arrivals at the observed rate, connections held for
+ * times drawn from the observed hold time distribution, and c connections. The smallest c whose 99th 
+ * percentile wait meets the target is first estimated analytically (Erlang C, with the tail stretched by
+ * (1 + Cs^2) / 2 for non-exponential hold times) and then settled by simulating the queue with the observed
+ * hold times. The same simulation at the pool's current size gives the predicted wait, reported next to the
+ * observed one so that the model can be sanity-checked against reality.
+ * 
+ * The model assumes a single FIFO queue; partitions that run dry wait on their own, so the recommended 
+ * partition count keeps at least MIN_CONNECTIONS_PER_PARTITION connections in each partition.
+ * 
+ * @author wallacew
+ *
+ */
+public class PoolSizingAdvisor implements PoolSizingAdvisorMBean, Runnable {
+	/** Class logger. */
+	private static final Logger logger = LoggerFactory.getLogger(PoolSizingAdvisor.class);
+	/** The percentile the target applies to. */
+	protected static final double PERCENTILE = 99;
+	/** Requests simulated per candidate pool size (plus 10% to warm up). */
+	protected static final int SIMULATED_ARRIVALS = 50000;
+	/** Largest pool size considered. */
+	protected static final int MAX_POOL_SIZE = 10000;
+	/** Fewest connections per partition worth keeping a separate partition for. */
+	protected static final int MIN_CONNECTIONS_PER_PARTITION = 4;
+	/** Seed for the simulation. Fixed so that all candidate sizes see the same arrivals and hold times. */
+	private static final long SEED = 1;
+	/** Pool handle. */
+	private final BoneCP pool;
+	/** Statistics handle. */
+	private final Statistics statistics;
+	/** Length of a sampling window. */
+	private final long windowInMs;
+	/** Configured target for the 99th percentile wait. */
+	private final long targetWaitInMs;
+	/** System.nanoTime() at the start of the current window. */
+	private long windowStart;
+	/** Connections requested as at the start of the current window. */
+	private long windowStartRequests;
+	/** Wait times as at the start of the current window. */
+	private long[] windowStartWaits;
+	/** Hold times as at the start of the current window. */
+	private long[] windowStartHolds;
+	/** Last complete window (null until one has elapsed). */
+	protected volatile Window window;
+	/** Recommendation for the last complete window at the configured target (null until one has elapsed). */
+	private volatile Recommendation recommendation;
+
+	/** Creates a new advisor.
+	 * @param pool pool to advise on. Statistics must be enabled.
+	 * @param windowInMs length of a sampling window.
+	 * @param targetWaitInMs target for the 99th percentile getConnection wait.
+	 */
+	public PoolSizingAdvisor(BoneCP pool, long windowInMs, long targetWaitInMs){
+		this.pool = pool;
+		this.statistics = pool.getStatistics();
+		this.windowInMs = windowInMs;
+		this.targetWaitInMs = targetWaitInMs;
+	}
+
+	/** Starts the first window and schedules the end of each window on the given executor.
+	 * @param scheduler executor to run on.
+	 */
+	public void start(ScheduledExecutorService scheduler){
+		sample();
+		scheduler.scheduleAtFixedRate(this, this.windowInMs, this.windowInMs, TimeUnit.MILLISECONDS);
+	}
+
+	/** Closes the current window and works out a recommendation for it. */
+	// @Override
+	public void run() {
+		try{
+			Window window = sample();
+			if (window != null){
+				this.window = window;
+				this.recommendation = recommend(window, TimeUnit.MILLISECONDS.toNanos(this.targetWaitInMs));
+			}
+		} catch (Throwable t){ // keep the scheduled task alive
+			logger.error("Failed to size the pool", t);
+		}
+	}
+
+	/** Closes the current window and starts the next one.
+	 * @return the window just closed, or null if there was no previous sample or statistics were reset meanwhile.
+	 */
+	protected synchronized Window sample(){
+		long now = System.nanoTime();
+		long requests = this.statistics.getConnectionsRequested();
+		long[] waits = this.statistics.getConnectionWaitTimes().snapshot();
+		long[] holds = this.statistics.getConnectionHoldTimes().snapshot();
+		Window result = null;
+		if (this.windowStartWaits != null && requests >= this.windowStartRequests){
+			long[] windowWaits = DurationHistogram.difference(waits, this.windowStartWaits);
+			long[] windowHolds = DurationHistogram.difference(holds, this.windowStartHolds);
+			if (windowWaits != null && windowHolds != null){
+				result = new Window(now - this.windowStart, requests - this.windowStartRequests, windowWaits, windowHolds, 
+						getCurrentPoolSize(), this.pool.partitionCount);
+			}
+		}
+		this.windowStart = now;
+		this.windowStartRequests = requests;
+		this.windowStartWaits = waits;
+		this.windowStartHolds = holds;
+		return result;
+	}
+
+	/** Returns the maximum number of connections the pool may currently open.
+	 * @return sum of maxConnectionsPerPartition over the active partitions
+	 */
+	private int getCurrentPoolSize(){
+		ConnectionPartition[] partitions = this.pool.partitions;
+		int partitionCount = this.pool.partitionCount;
+		int result = 0;
+		for (int i=0; i < partitionCount && i < partitions.length; i++){
+			result += partitions[i].getMaxConnections();
+		}
+		return result;
+	}
+
+	/** Works out the settings that meet the given target for the load seen in a window.
+	 * @param window sampled load
+	 * @param targetWaitInNanos target for the 99th percentile wait
+	 * @return recommendation, or null if nothing was requested or returned during the window
+	 */
+	protected static Recommendation recommend(Window window, long targetWaitInNanos){
+		if (window.arrivals == 0 || DurationHistogram.count(window.holds) == 0){
+			return null;
+		}
+		Recommendation result = new Recommendation();
+		result.targetWaitInNanos = targetWaitInNanos;
+		result.observedWaitInNanos = DurationHistogram.valueAtPercentile(window.waits, PERCENTILE);
+		double load = window.getOfferedLoad();
+		double meanHold = DurationHistogram.mean(window.holds);
+		double scv = Math.max(0, DurationHistogram.secondMoment(window.holds) / (meanHold * meanHold) - 1);
+		HoldTimeSampler holdTimes = new HoldTimeSampler(window.holds);
+		double arrivalsPerNano = window.arrivals / (double) window.elapsedInNanos;
+
+		int size = Math.max(1, (int) Math.floor(load) + 1);
+		while (size < MAX_POOL_SIZE && analyticWait(size, load, meanHold, scv, PERCENTILE) > targetWaitInNanos){
+			size++;
+		}
+		result.analyticPoolSize = size;
+		double wait = simulateWait(size, arrivalsPerNano, holdTimes, PERCENTILE, SIMULATED_ARRIVALS, SEED);
+		if (wait > targetWaitInNanos){
+			while (wait > targetWaitInNanos && size < MAX_POOL_SIZE){
+				size++;
+				wait = simulateWait(size, arrivalsPerNano, holdTimes, PERCENTILE, SIMULATED_ARRIVALS, SEED);
+			}
+		} else {
+			while (size > 1 && size - 1 > load){
+				double smaller = simulateWait(size - 1, arrivalsPerNano, holdTimes, PERCENTILE, SIMULATED_ARRIVALS, SEED);
+				if (smaller > targetWaitInNanos){
+					break;
+				}
+				size--;
+				wait = smaller;
+			}
+		}
+		result.poolSize = size;
+		result.predictedWaitAtPoolSizeInNanos = wait;
+
+		result.currentPoolSize = window.currentPoolSize;
+		result.predictedWaitInNanos = window.currentPoolSize <= load ? Double.POSITIVE_INFINITY 
+				: simulateWait(window.currentPoolSize, arrivalsPerNano, holdTimes, PERCENTILE, SIMULATED_ARRIVALS, SEED);
+
+		// threads only wait on their own partition, so don't spread the pool too thin
+		result.partitionCount = Math.max(1, Math.min(window.partitionCount, size / MIN_CONNECTIONS_PER_PARTITION));
+		result.maxConnectionsPerPartition = (size + result.partitionCount - 1) / result.partitionCount;
+		// one step of growth should cover the gap between the average load and the size needed at the 99th percentile
+		int headroom = size - (int) Math.ceil(load);
+		result.acquireIncrement = Math.max(1, Math.min(result.maxConnectionsPerPartition, 
+				(headroom + result.partitionCount - 1) / result.partitionCount));
+		// and start growing as soon as the free connections drop below that gap
+		result.poolAvailabilityThreshold = (int) Math.max(0, Math.min(100, Math.round(100 * (size - load) / size)));
+		result.window = window;
+		return result;
+	}
+
+	/** Returns the probability that a request has to wait in an M/M/c queue (Erlang C).
+	 * @param servers number of connections
+	 * @param load offered load (arrival rate x mean hold time)
+	 * @return probability of waiting, 1 if the queue is unstable
+	 */
+	protected static double erlangC(int servers, double load){
+		if (servers <= load){
+			return 1;
+		}
+		double erlangB = 1; // computed iteratively to avoid overflowing factorials
+		for (int k=1; k <= servers; k++){
+			erlangB = load * erlangB / (k + load * erlangB);
+		}
+		return servers * erlangB / (servers - load * (1 - erlangB));
+	}
+
+	/** Returns the analytic approximation of a wait time percentile in an M/G/c queue. The M/M/c wait is
+	 * exponential past the Erlang C probability; its tail is stretched by (1 + scv) / 2 for other hold time 
+	 * distributions.
+	 * @param servers number of connections
+	 * @param load offered load (arrival rate x mean hold time)
+	 * @param meanHold mean hold time
+	 * @param scv squared coefficient of variation of the hold time
+	 * @param percentile 0..100
+	 * @return wait time, in the same unit as meanHold. Infinite if the queue is unstable.
+	 */
+	protected static double analyticWait(int servers, double load, double meanHold, double scv, double percentile){
+		if (servers <= load){
+			return Double.POSITIVE_INFINITY;
+		}
+		double tail = 1 - percentile / 100;
+		double waitProbability = erlangC(servers, load);
+		if (waitProbability <= tail){
+			return 0;
+		}
+		return Math.log(waitProbability / tail) * meanHold * (1 + scv) / (2 * (servers - load));
+	}
+
+	/** Simulates a FIFO queue served by the given number of connections and returns a wait time percentile.
+	 * @param servers number of connections
+	 * @param arrivalsPerNano Poisson arrival rate
+	 * @param holdTimes hold time distribution
+	 * @param percentile 0..100
+	 * @param arrivals number of requests to measure (another 10% are simulated beforehand to warm up)
+	 * @param seed random seed
+	 * @return wait time in nanoseconds
+	 */
+	protected static double simulateWait(int servers, double arrivalsPerNano, HoldTimeSampler holdTimes, double percentile, 
+			int arrivals, long seed){
+		Random random = new Random(seed);
+		double[] free = new double[servers]; // min-heap of the time at which each connection is next free
+		double[] waits = new double[arrivals];
+		int warmup = arrivals / 10;
+		double now = 0;
+		for (int i=0; i < warmup + arrivals; i++){
+			now -= Math.log(1 - random.nextDouble()) / arrivalsPerNano;
+			double start = Math.max(now, free[0]);
+			if (i >= warmup){
+				waits[i - warmup] = start - now;
+			}
+			siftDown(free, start + holdTimes.sample(random));
+		}
+		Arrays.sort(waits);
+		return waits[Math.max(0, (int) Math.ceil(arrivals * percentile / 100) - 1)];
+	}
+
+	/** Replaces the root of a min-heap and restores the heap order.
+	 * @param heap heap
+	 * @param value new value for the root
+	 */
+	private static void siftDown(double[] heap, double value){
+		int i = 0;
+		int child;
+		while ((child = 2 * i + 1) < heap.length){
+			if (child + 1 < heap.length && heap[child + 1] < heap[child]){
+				child++;
+			}
+			if (heap[child] >= value){
+				break;
+			}
+			heap[i] = heap[child];
+			i = child;
+		}
+		heap[i] = value;
+	}
+
+	// @Override
+	public String recommend(long targetWaitInMs) {
+		Window window = this.window;
+		if (window == null){
+			return "No complete sampling window yet.";
+		}
+		Recommendation result = recommend(window, TimeUnit.MILLISECONDS.toNanos(targetWaitInMs));
+		return result == null ? "No connections were requested during the last sampling window." : result.toString();
+	}
+
+	// @Override
+	public String getRecommendation() {
+		Recommendation recommendation = this.recommendation;
+		if (recommendation == null){
+			return this.window == null ? "No complete sampling window yet." : "No connections were requested during the last sampling window.";
+		}
+		return recommendation.toString();
+	}
+
+	// @Override
+	public long getTargetWaitTimeInMs() {
+		return this.targetWaitInMs;
+	}
+
+	// @Override
+	public int getRecommendedPoolSize() {
+		Recommendation recommendation = this.recommendation;
+		return recommendation == null ? -1 : recommendation.poolSize;
+	}
+
+	// @Override
+	public int getRecommendedPartitionCount() {
+		Recommendation recommendation = this.recommendation;
+		return recommendation == null ? -1 : recommendation.partitionCount;
+	}
+
+	// @Override
+	public int getRecommendedMaxConnectionsPerPartition() {
+		Recommendation recommendation = this.recommendation;
+		return recommendation == null ? -1 : recommendation.maxConnectionsPerPartition;
+	}
+
+	// @Override
+	public int getRecommendedAcquireIncrement() {
+		Recommendation recommendation = this.recommendation;
+		return recommendation == null ? -1 : recommendation.acquireIncrement;
+	}
+
+	// @Override
+	public int getRecommendedPoolAvailabilityThreshold() {
+		Recommendation recommendation = this.recommendation;
+		return recommendation == null ? -1 : recommendation.poolAvailabilityThreshold;
+	}
+
+	// @Override
+	public double getArrivalRate() {
+		Window window = this.window;
+		return window == null ? 0 : window.getArrivalRate();
+	}
+
+	// @Override
+	public double getConnectionHoldTimeAvg() {
+		Window window = this.window;
+		return window == null ? 0 : DurationHistogram.mean(window.holds) / 1000000.0;
+	}
+
+	// @Override
+	public double getOfferedLoad() {
+		Window window = this.window;
+		return window == null ? 0 : window.getOfferedLoad();
+	}
+
+	// @Override
+	public double getPredictedWaitTime99thPercentile() {
+		Recommendation recommendation = this.recommendation;
+		return recommendation == null ? 0 : recommendation.predictedWaitInNanos / 1000000.0;
+	}
+
+	// @Override
+	public double getObservedWaitTime99thPercentile() {
+		Window window = this.window;
+		return window == null ? 0 : DurationHistogram.valueAtPercentile(window.waits, PERCENTILE) / 1000000.0;
+	}
+
+	/** Load seen during one sampling window. */
+	protected static class Window {
+		/** Length of the window. */
+		protected final long elapsedInNanos;
+		/** Connections requested. */
+		protected final long arrivals;
+		/** Wait times of the requests served. */
+		protected final long[] waits;
+		/** Hold times of the connections given back. */
+		protected final long[] holds;
+		/** Maximum pool size at the end of the window. */
+		protected final int currentPoolSize;
+		/** Partition count at the end of the window. */
+		protected final int partitionCount;
+
+		/** Default constructor.
+		 * @param elapsedInNanos length of the window
+		 * @param arrivals connections requested
+		 * @param waits wait time histogram counts
+		 * @param holds hold time histogram counts
+		 * @param currentPoolSize maximum pool size
+		 * @param partitionCount partition count
+		 */
+		protected Window(long elapsedInNanos, long arrivals, long[] waits, long[] holds, int currentPoolSize, int partitionCount){
+			this.elapsedInNanos = elapsedInNanos;
+			this.arrivals = arrivals;
+			this.waits = waits;
+			this.holds = holds;
+			this.currentPoolSize = currentPoolSize;
+			this.partitionCount = partitionCount;
+		}
+
+		/** Returns the arrival rate.
+		 * @return requests per second
+		 */
+		protected double getArrivalRate(){
+			return this.elapsedInNanos == 0 ? 0 : this.arrivals * 1000000000.0 / this.elapsedInNanos;
+		}
+
+		/** Returns the average number of connections in use.
+		 * @return arrival rate x mean hold time
+		 */
+		protected double getOfferedLoad(){
+			return this.elapsedInNanos == 0 ? 0 : this.arrivals * DurationHistogram.mean(this.holds) / this.elapsedInNanos;
+		}
+	}
+
+	/** Draws hold times from a histogram, uniformly within each bucket. */
+	protected static class HoldTimeSampler {
+		/** Non-empty buckets. */
+		private final int[] buckets;
+		/** Running total of the counts of the non-empty buckets. */
+		private final long[] cumulative;
+
+		/** Default constructor.
+		 * @param counts histogram counts (at least one must be non-zero)
+		 */
+		protected HoldTimeSampler(long[] counts){
+			int used = 0;
+			for (long count: counts){
+				if (count > 0){
+					used++;
+				}
+			}
+			this.buckets = new int[used];
+			this.cumulative = new long[used];
+			long total = 0;
+			int j = 0;
+			for (int i=0; i < counts.length; i++){
+				if (counts[i] > 0){
+					total += counts[i];
+					this.buckets[j] = i;
+					this.cumulative[j++] = total;
+				}
+			}
+		}
+
+		/** Draws a hold time.
+		 * @param random source of randomness
+		 * @return hold time in nanoseconds
+		 */
+		protected double sample(Random random){
+			long rank = (long) (random.nextDouble() * this.cumulative[this.cumulative.length - 1]);
+			int i = Arrays.binarySearch(this.cumulative, rank + 1);
+			if (i < 0){
+				i = -i - 1;
+			}
+			int bucket = this.buckets[i];
+			return DurationHistogram.lowerBound(bucket) + random.nextDouble() * DurationHistogram.width(bucket);
+		}
+	}
+
+	/** Recommended settings for one window and target. */
+	protected static class Recommendation {
+		/** Window the recommendation is based on. */
+		protected Window window;
+		/** Target for the 99th percentile wait. */
+		protected long targetWaitInNanos;
+		/** Smallest total number of connections meeting the target. */
+		protected int poolSize;
+		/** Pool size estimated analytically, before simulation. */
+		protected int analyticPoolSize;
+		/** Simulated 99th percentile wait at poolSize. */
+		protected double predictedWaitAtPoolSizeInNanos;
+		/** Maximum pool size at the time. */
+		protected int currentPoolSize;
+		/** Simulated 99th percentile wait at currentPoolSize. */
+		protected double predictedWaitInNanos;
+		/** Observed 99th percentile wait. */
+		protected double observedWaitInNanos;
+		/** Recommended partitionCount. */
+		protected int partitionCount;
+		/** Recommended maxConnectionsPerPartition. */
+		protected int maxConnectionsPerPartition;
+		/** Recommended acquireIncrement. */
+		protected int acquireIncrement;
+		/** Recommended poolAvailabilityThreshold. */
+		protected int poolAvailabilityThreshold;
+
+		@Override
+		public String toString() {
+			return String.format("Load: %.1f requests/s, %.3f ms average hold, %.2f connections in use on average.%n" +
+					"Target: 99%% of requests wait at most %d ms.%n" +
+					"Recommended: partitionCount=%d, maxConnectionsPerPartition=%d, acquireIncrement=%d, poolAvailabilityThreshold=%d " +
+					"(%d connections in total, %d by the M/G/c approximation; simulated 99th percentile wait %.3f ms).%n" +
+					"Current maximum of %d connections: predicted 99th percentile wait %.3f ms, observed %.3f ms.",
+					this.window.getArrivalRate(), DurationHistogram.mean(this.window.holds) / 1000000.0, this.window.getOfferedLoad(),
+					TimeUnit.NANOSECONDS.toMillis(this.targetWaitInNanos),
+					this.partitionCount, this.maxConnectionsPerPartition, this.acquireIncrement, this.poolAvailabilityThreshold,
+					this.poolSize, this.analyticPoolSize, this.predictedWaitAtPoolSizeInNanos / 1000000.0,
+					this.currentPoolSize, this.predictedWaitInNanos / 1000000.0, this.observedWaitInNanos / 1000000.0);
+		}
+	}
+}
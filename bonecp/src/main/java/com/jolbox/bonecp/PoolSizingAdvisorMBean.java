@@ -0,0 +1,95 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+/**
+ * 
+ */
+package com.jolbox.bonecp;
+
+/** MBean (JMX) contract of the pool sizing advisor. All figures refer to the last complete sampling window.
+ * @author wallacew
+ *
+ */
+public interface PoolSizingAdvisorMBean {
+
+	/** Recommends pool settings that keep the 99th percentile of the getConnection wait under the given target 
+	 * for the load seen during the last window.
+	 * @param targetWaitInMs target 99th percentile wait (in ms).
+	 * @return human readable report with the recommended settings and the predicted vs observed wait.
+	 */
+	String recommend(long targetWaitInMs);
+
+	/** Returns the report for the configured target (see poolSizingTargetWaitInMs).
+	 * @return human readable report.
+	 */
+	String getRecommendation();
+
+	/** Returns the configured target for the 99th percentile wait.
+	 * @return target in ms
+	 */
+	long getTargetWaitTimeInMs();
+
+	/** Returns the smallest total number of connections that meets the configured target.
+	 * @return recommended pool size, -1 if there is no data yet.
+	 */
+	int getRecommendedPoolSize();
+
+	/** Returns the recommended partitionCount.
+	 * @return partitions, -1 if there is no data yet.
+	 */
+	int getRecommendedPartitionCount();
+
+	/** Returns the recommended maxConnectionsPerPartition.
+	 * @return connections per partition, -1 if there is no data yet.
+	 */
+	int getRecommendedMaxConnectionsPerPartition();
+
+	/** Returns the recommended acquireIncrement.
+	 * @return acquire increment, -1 if there is no data yet.
+	 */
+	int getRecommendedAcquireIncrement();
+
+	/** Returns the recommended poolAvailabilityThreshold.
+	 * @return percentage, -1 if there is no data yet.
+	 */
+	int getRecommendedPoolAvailabilityThreshold();
+
+	/** Returns the rate at which connections were requested.
+	 * @return requests per second
+	 */
+	double getArrivalRate();
+
+	/** Returns the average time connections were held.
+	 * @return Time in ms
+	 */
+	double getConnectionHoldTimeAvg();
+
+	/** Returns the average number of connections in use (arrival rate x average hold time).
+	 * @return offered load in connections
+	 */
+	double getOfferedLoad();
+
+	/** Returns the 99th percentile wait the model predicts for the pool's current maximum size. Infinite if the 
+	 * pool is too small for the offered load.
+	 * @return Time in ms
+	 */
+	double getPredictedWaitTime99thPercentile();
+
+	/** Returns the 99th percentile wait actually observed.
+	 * @return Time in ms
+	 */
+	double getObservedWaitTime99thPercentile();
+}
@@ -16,6 +16,8 @@
 
 package com.jolbox.bonecp;
 
+import java.util.concurrent.TimeUnit;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -39,6 +41,8 @@ public class PoolWatchThread implements Runnable {
 	private int poolAvailabilityThreshold;
 	/** Logger handle. */
 	private static final Logger logger = LoggerFactory.getLogger(PoolWatchThread.class);
+	/** How often a retired partition is checked for connections to close off. */
+	protected static final long RETIRED_PARTITION_DRAIN_INTERVAL_IN_MS = 1000;
 
 
 	/** Thread constructor
@@ -66,13 +70,21 @@ public class PoolWatchThread implements Runnable {
  
 
 				maxNewConnections = this.partition.getMaxConnections()-this.partition.getCreatedConnections();
-				// loop for spurious interrupt
-				while (maxNewConnections == 0 || (this.partition.getAvailableConnections() *100/this.partition.getMaxConnections() > this.poolAvailabilityThreshold)){
-					if (maxNewConnections == 0){
+				// loop for spurious interrupt. Also fill up (without waiting for a signal) if the minimum was raised at runtime. 
+				while (maxNewConnections <= 0 || this.partition.retired 
+						|| (this.partition.getAvailableConnections() *100/this.partition.getMaxConnections() > this.poolAvailabilityThreshold
+								&& this.partition.getCreatedConnections() >= this.partition.getMinConnections())){
+					if (maxNewConnections <= 0){
 						this.partition.setUnableToCreateMoreTransactions(true);
 					}
 					
-					this.partition.getPoolWatchThreadSignalQueue().take();
+					if (this.partition.retired){
+						// threads that were already waiting on this partition get a chance to take what's returned; the rest is closed off.
+						this.pool.trimIdleConnections(this.partition);
+						this.partition.getPoolWatchThreadSignalQueue().poll(RETIRED_PARTITION_DRAIN_INTERVAL_IN_MS, TimeUnit.MILLISECONDS);
+					} else {
+						this.partition.getPoolWatchThreadSignalQueue().take();
+					}
 					maxNewConnections = this.partition.getMaxConnections()-this.partition.getCreatedConnections();
 					
 				}
@@ -106,6 +118,8 @@ public class PoolWatchThread implements Runnable {
 	 * @throws InterruptedException 
 	 */
 	private void fillConnections(int connectionsToCreate) throws InterruptedException  {
+		long eventStart = PoolEvents.recording ? System.nanoTime() : 0;
+		int created = 0;
 		try {
 			for (int i=0; i < connectionsToCreate; i++){
 			//	boolean dbDown = this.pool.getDbIsDown().get();
@@ -113,10 +127,15 @@ public class PoolWatchThread implements Runnable {
 					break;
 				}
 				this.partition.addFreeConnection(new ConnectionHandle(null, this.partition, this.pool, false));
+				created++;
 			}
 		} catch (Exception e) {
 			logger.error("Error in trying to obtain a connection. Retrying in "+this.acquireRetryDelayInMs+"ms", e);
 			Thread.sleep(this.acquireRetryDelayInMs);
+		} finally {
+			if (eventStart != 0){
+				PoolEvents.INSTANCE.partitionFilled(this.partition, connectionsToCreate, created, eventStart);
+			}
 		}
 
 	}
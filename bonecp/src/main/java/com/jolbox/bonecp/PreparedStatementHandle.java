@@ -51,7 +51,7 @@ public class PreparedStatementHandle extends StatementHandle implements
     PreparedStatement {
 
 	/** Handle to the real prepared statement. */
-	private PreparedStatement internalPreparedStatement;
+	protected PreparedStatement internalPreparedStatement;
 	/** Class logger. */
 	protected static final Logger logger = LoggerFactory.getLogger(PreparedStatementHandle.class);
 
@@ -77,6 +77,24 @@ public class PreparedStatementHandle extends StatementHandle implements
 		this.cache = cache;
 	}
 
+	/**
+	 * Constructor for lean handles, used when no connection hook, statement logging or statistics are configured.
+	 * 
+	 * @param internalPreparedStatement
+	 * @param sql
+	 *            sql statement
+	 * @param cache
+	 *            cache handle.
+	 * @param connectionHandle
+	 *            Handle to the connection this is tied to.
+	 * @param cacheKey 
+	 */
+	protected PreparedStatementHandle(PreparedStatement internalPreparedStatement,
+			String sql, IStatementCache cache, ConnectionHandle connectionHandle, String cacheKey) {
+		super(internalPreparedStatement, sql, cache, connectionHandle, cacheKey);
+		this.internalPreparedStatement = internalPreparedStatement;
+	}
+
 
 
 	/**
@@ -129,7 +147,7 @@ public class PreparedStatementHandle extends StatementHandle implements
 		checkClosed();
 		try {
 			if (this.logStatementsEnabled){
-				logger.debug(PoolUtil.fillLogParams(this.sql, this.logParams));
+				logStatement(this.sql);
 			}
 			long queryStartTime = queryTimerStart();
 
@@ -137,6 +155,7 @@ public class PreparedStatementHandle extends StatementHandle implements
 				this.connectionHook.onBeforeStatementExecute(this.connectionHandle, this, this.sql, this.logParams);
 			}
 
+			executeStarted(this.sql);
 			boolean result = this.internalPreparedStatement.execute();
 
 			if (this.connectionHook != null){
@@ -150,6 +169,8 @@ public class PreparedStatementHandle extends StatementHandle implements
 		} catch (SQLException e) {
 			throw this.connectionHandle.markPossiblyBroken(e);
 
+		} finally {
+			executeFinished();
 		}
 
 	}
@@ -165,12 +186,13 @@ public class PreparedStatementHandle extends StatementHandle implements
 		checkClosed();
 		try {
 			if (this.logStatementsEnabled){
-				logger.debug(PoolUtil.fillLogParams(this.sql, this.logParams));
+				logStatement(this.sql);
 			}
 			long queryStartTime = queryTimerStart();
 			if (this.connectionHook != null){
 				this.connectionHook.onBeforeStatementExecute(this.connectionHandle, this, this.sql, this.logParams);
 			}
+			executeStarted(this.sql);
 			ResultSet result = this.internalPreparedStatement.executeQuery();
 			if (this.connectionHook != null){
 				this.connectionHook.onAfterStatementExecute(this.connectionHandle, this, this.sql, this.logParams);
@@ -182,6 +204,8 @@ public class PreparedStatementHandle extends StatementHandle implements
 		} catch (SQLException e) {
 			throw this.connectionHandle.markPossiblyBroken(e);
 
+		} finally {
+			executeFinished();
 		}
 
 	}
@@ -196,13 +220,15 @@ public class PreparedStatementHandle extends StatementHandle implements
 		checkClosed();
 		try {
 			if (this.logStatementsEnabled){
-				logger.debug(PoolUtil.fillLogParams(this.sql, this.logParams));
+				logStatement(this.sql);
 			}
 			long queryStartTime = queryTimerStart();
 			if (this.connectionHook != null){
 				this.connectionHook.onBeforeStatementExecute(this.connectionHandle, this, this.sql, this.logParams);
 			}
+			executeStarted(this.sql);
 			int result = this.internalPreparedStatement.executeUpdate();
+			this.executeRows = result;
 			if (this.connectionHook != null){
 				this.connectionHook.onAfterStatementExecute(this.connectionHandle, this, this.sql, this.logParams);
 			}
@@ -213,6 +239,8 @@ public class PreparedStatementHandle extends StatementHandle implements
 		} catch (SQLException e) {
 			throw this.connectionHandle.markPossiblyBroken(e);
 
+		} finally {
+			executeFinished();
 		}
 
 	}
@@ -262,7 +290,7 @@ public class PreparedStatementHandle extends StatementHandle implements
 		try {
 			this.internalPreparedStatement.setArray(parameterIndex, x);
 			if (this.logStatementsEnabled) {
-				this.logParams.put(parameterIndex, x);
+				this.logParams.set(parameterIndex, x);
 			}
 		} catch (SQLException e) {
 			throw this.connectionHandle.markPossiblyBroken(e);
@@ -278,7 +306,7 @@ public class PreparedStatementHandle extends StatementHandle implements
 		try {
 			this.internalPreparedStatement.setBinaryStream(parameterIndex, x);
 			if (this.logStatementsEnabled){
-				this.logParams.put(parameterIndex, x);
+				this.logParams.set(parameterIndex, x);
 			}
 		} catch (SQLException e) {
 			throw this.connectionHandle.markPossiblyBroken(e);
@@ -293,7 +321,7 @@ public class PreparedStatementHandle extends StatementHandle implements
 		try {
 			this.internalPreparedStatement.setBinaryStream(parameterIndex, x, length);
 			if (this.logStatementsEnabled){
-				this.logParams.put(parameterIndex, x);
+				this.logParams.set(parameterIndex, x);
 			}
 		} catch (SQLException e) {
 			throw this.connectionHandle.markPossiblyBroken(e);
@@ -308,7 +336,7 @@ public class PreparedStatementHandle extends StatementHandle implements
 		try {
 			this.internalPreparedStatement.setBlob(parameterIndex, inputStream);
 			if (this.logStatementsEnabled){
-				this.logParams.put(parameterIndex, inputStream);
+				this.logParams.set(parameterIndex, inputStream);
 			}
 		} catch (SQLException e) {
 			throw this.connectionHandle.markPossiblyBroken(e);
@@ -323,7 +351,7 @@ public class PreparedStatementHandle extends StatementHandle implements
 		try {
 			this.internalPreparedStatement.setAsciiStream(parameterIndex, x, length);
 			if (this.logStatementsEnabled){
-				this.logParams.put(parameterIndex, x);
+				this.logParams.set(parameterIndex, x);
 			}
 		} catch (SQLException e) {
 			throw this.connectionHandle.markPossiblyBroken(e);
@@ -337,7 +365,7 @@ public class PreparedStatementHandle extends StatementHandle implements
 		try {
 			this.internalPreparedStatement.setClob(parameterIndex, reader);
 			if (this.logStatementsEnabled){
-				this.logParams.put(parameterIndex, reader);
+				this.logParams.set(parameterIndex, reader);
 			}
 		} catch (SQLException e) {
 			throw this.connectionHandle.markPossiblyBroken(e);
@@ -351,7 +379,7 @@ public class PreparedStatementHandle extends StatementHandle implements
 		try {
 			this.internalPreparedStatement.setRowId(parameterIndex, x);
 			if (this.logStatementsEnabled){
-				this.logParams.put(parameterIndex, x);
+				this.logParams.set(parameterIndex, x);
 			}
 		} catch (SQLException e) {
 			throw this.connectionHandle.markPossiblyBroken(e);
@@ -366,7 +394,7 @@ public class PreparedStatementHandle extends StatementHandle implements
 		try {
 			this.internalPreparedStatement.setSQLXML(parameterIndex, xmlObject);
 			if (this.logStatementsEnabled){
-				this.logParams.put(parameterIndex, xmlObject);
+				this.logParams.set(parameterIndex, xmlObject);
 			}
 		} catch (SQLException e) {
 			throw this.connectionHandle.markPossiblyBroken(e);
@@ -381,7 +409,7 @@ public class PreparedStatementHandle extends StatementHandle implements
 		try {
 			this.internalPreparedStatement.setClob(parameterIndex, reader, length);
 			if (this.logStatementsEnabled){
-				this.logParams.put(parameterIndex, reader);
+				this.logParams.set(parameterIndex, reader);
 			}
 
 		} catch (SQLException e) {
@@ -397,7 +425,7 @@ public class PreparedStatementHandle extends StatementHandle implements
 		try {
 			this.internalPreparedStatement.setNCharacterStream(parameterIndex, value);
 			if (this.logStatementsEnabled){
-				this.logParams.put(parameterIndex, value);
+				this.logParams.set(parameterIndex, value);
 			}
 
 		} catch (SQLException e) {
@@ -413,7 +441,7 @@ public class PreparedStatementHandle extends StatementHandle implements
 		try {
 			this.internalPreparedStatement.setNCharacterStream(parameterIndex, value, length);
 			if (this.logStatementsEnabled){
-				this.logParams.put(parameterIndex, value);
+				this.logParams.set(parameterIndex, value);
 			}
 		} catch (SQLException e) {
 			throw this.connectionHandle.markPossiblyBroken(e);
@@ -427,7 +455,7 @@ public class PreparedStatementHandle extends StatementHandle implements
 		try {
 			this.internalPreparedStatement.setNClob(parameterIndex, value);
 			if (this.logStatementsEnabled){
-				this.logParams.put(parameterIndex, value);
+				this.logParams.set(parameterIndex, value);
 			}
 		} catch (SQLException e) {
 			throw this.connectionHandle.markPossiblyBroken(e);
@@ -441,7 +469,7 @@ public class PreparedStatementHandle extends StatementHandle implements
 		try {
 			this.internalPreparedStatement.setNClob(parameterIndex, reader);
 			if (this.logStatementsEnabled){
-				this.logParams.put(parameterIndex, reader);
+				this.logParams.set(parameterIndex, reader);
 			}
 		} catch (SQLException e) {
 			throw this.connectionHandle.markPossiblyBroken(e);
@@ -456,7 +484,7 @@ public class PreparedStatementHandle extends StatementHandle implements
 		try {
 			this.internalPreparedStatement.setNClob(parameterIndex, reader, length);
 			if (this.logStatementsEnabled){
-				this.logParams.put(parameterIndex, reader);
+				this.logParams.set(parameterIndex, reader);
 			}
 		} catch (SQLException e) {
 			throw this.connectionHandle.markPossiblyBroken(e);
@@ -471,7 +499,7 @@ public class PreparedStatementHandle extends StatementHandle implements
 		try {
 			this.internalPreparedStatement.setNString(parameterIndex, value);
 			if (this.logStatementsEnabled){
-				this.logParams.put(parameterIndex, value);
+				this.logParams.set(parameterIndex, value);
 			}
 		} catch (SQLException e) {
 			throw this.connectionHandle.markPossiblyBroken(e);
@@ -486,7 +514,7 @@ public class PreparedStatementHandle extends StatementHandle implements
 		try {
 			this.internalPreparedStatement.setAsciiStream(parameterIndex, x);
 			if (this.logStatementsEnabled){
-				this.logParams.put(parameterIndex, x);
+				this.logParams.set(parameterIndex, x);
 			}
 		} catch (SQLException e) {
 			throw this.connectionHandle.markPossiblyBroken(e);
@@ -500,7 +528,7 @@ public class PreparedStatementHandle extends StatementHandle implements
 		try {
 			this.internalPreparedStatement.setCharacterStream(parameterIndex, reader, length);
 			if (this.logStatementsEnabled){
-				this.logParams.put(parameterIndex, reader);
+				this.logParams.set(parameterIndex, reader);
 			}
 		} catch (SQLException e) {
 			throw this.connectionHandle.markPossiblyBroken(e);
@@ -515,7 +543,7 @@ public class PreparedStatementHandle extends StatementHandle implements
 		try {
 			this.internalPreparedStatement.setBlob(parameterIndex, inputStream, length);
 			if (this.logStatementsEnabled){
-				this.logParams.put(parameterIndex, inputStream);
+				this.logParams.set(parameterIndex, inputStream);
 			}
 		} catch (SQLException e) {
 			throw this.connectionHandle.markPossiblyBroken(e);
@@ -530,7 +558,7 @@ public class PreparedStatementHandle extends StatementHandle implements
 		try {
 			this.internalPreparedStatement.setCharacterStream(parameterIndex, reader);
 			if (this.logStatementsEnabled){
-				this.logParams.put(parameterIndex, reader);
+				this.logParams.set(parameterIndex, reader);
 			}
 		} catch (SQLException e) {
 			throw this.connectionHandle.markPossiblyBroken(e);
@@ -554,7 +582,7 @@ public class PreparedStatementHandle extends StatementHandle implements
 		try {
 			this.internalPreparedStatement.setAsciiStream(parameterIndex, x, length);
 			if (this.logStatementsEnabled){
-				this.logParams.put(parameterIndex, x);
+				this.logParams.set(parameterIndex, x);
 			}
 		} catch (SQLException e) {
 			throw this.connectionHandle.markPossiblyBroken(e);
@@ -575,7 +603,7 @@ public class PreparedStatementHandle extends StatementHandle implements
 		try {
 			this.internalPreparedStatement.setBigDecimal(parameterIndex, x);
 			if (this.logStatementsEnabled){
-				this.logParams.put(parameterIndex, x);
+				this.logParams.set(parameterIndex, x);
 			}
 		} catch (SQLException e) {
 			throw this.connectionHandle.markPossiblyBroken(e);
@@ -598,7 +626,7 @@ public class PreparedStatementHandle extends StatementHandle implements
 		try {
 			this.internalPreparedStatement.setBinaryStream(parameterIndex, x, length);
 			if (this.logStatementsEnabled){
-				this.logParams.put(parameterIndex, x);
+				this.logParams.set(parameterIndex, x);
 			}
 		} catch (SQLException e) {
 			throw this.connectionHandle.markPossiblyBroken(e);
@@ -618,7 +646,7 @@ public class PreparedStatementHandle extends StatementHandle implements
 		try {
 			this.internalPreparedStatement.setBlob(parameterIndex, x);
 			if (this.logStatementsEnabled){
-				this.logParams.put(parameterIndex, x);
+				this.logParams.set(parameterIndex, x);
 			}
 		} catch (SQLException e) {
 			throw this.connectionHandle.markPossiblyBroken(e);
@@ -639,7 +667,7 @@ public class PreparedStatementHandle extends StatementHandle implements
 		try {
 			this.internalPreparedStatement.setBoolean(parameterIndex, x);
 			if (this.logStatementsEnabled){
-				this.logParams.put(parameterIndex, x);
+				this.logParams.set(parameterIndex, x);
 			}
 		} catch (SQLException e) {
 			throw this.connectionHandle.markPossiblyBroken(e);
@@ -659,7 +687,7 @@ public class PreparedStatementHandle extends StatementHandle implements
 		try {
 			this.internalPreparedStatement.setByte(parameterIndex, x);
 			if (this.logStatementsEnabled){
-				this.logParams.put(parameterIndex, x);
+				this.logParams.set(parameterIndex, x);
 			}
 		} catch (SQLException e) {
 			throw this.connectionHandle.markPossiblyBroken(e);
@@ -679,7 +707,7 @@ public class PreparedStatementHandle extends StatementHandle implements
 		try {
 			this.internalPreparedStatement.setBytes(parameterIndex, x);
 			if (this.logStatementsEnabled){
-				this.logParams.put(parameterIndex, x);
+				this.logParams.set(parameterIndex, x);
 			}
 		} catch (SQLException e) {
 			throw this.connectionHandle.markPossiblyBroken(e);
@@ -703,7 +731,7 @@ public class PreparedStatementHandle extends StatementHandle implements
 			this.internalPreparedStatement.setCharacterStream(parameterIndex,
 					reader, length);
 			if (this.logStatementsEnabled){
-				this.logParams.put(parameterIndex, reader);
+				this.logParams.set(parameterIndex, reader);
 			}
 		} catch (SQLException e) {
 			throw this.connectionHandle.markPossiblyBroken(e);
@@ -724,7 +752,7 @@ public class PreparedStatementHandle extends StatementHandle implements
 		try {
 			this.internalPreparedStatement.setClob(parameterIndex, x);
 			if (this.logStatementsEnabled){
-				this.logParams.put(parameterIndex, x);
+				this.logParams.set(parameterIndex, x);
 			}
 		} catch (SQLException e) {
 			throw this.connectionHandle.markPossiblyBroken(e);
@@ -745,7 +773,7 @@ public class PreparedStatementHandle extends StatementHandle implements
 		try {
 			this.internalPreparedStatement.setDate(parameterIndex, x);
 			if (this.logStatementsEnabled){
-				this.logParams.put(parameterIndex, x);
+				this.logParams.set(parameterIndex, x);
 			}
 		} catch (SQLException e) {
 			throw this.connectionHandle.markPossiblyBroken(e);
@@ -767,7 +795,7 @@ public class PreparedStatementHandle extends StatementHandle implements
 		try {
 			this.internalPreparedStatement.setDate(parameterIndex, x, cal);
 			if (this.logStatementsEnabled){
-				this.logParams.put(parameterIndex, PoolUtil.safePrint(x, ", cal=", cal));
+				this.logParams.set(parameterIndex, PoolUtil.safePrint(x, ", cal=", cal));
 			}
 		} catch (SQLException e) {
 			throw this.connectionHandle.markPossiblyBroken(e);
@@ -787,7 +815,7 @@ public class PreparedStatementHandle extends StatementHandle implements
 		try {
 			this.internalPreparedStatement.setDouble(parameterIndex, x);
 			if (this.logStatementsEnabled){
-				this.logParams.put(parameterIndex, x);
+				this.logParams.set(parameterIndex, x);
 			}
 		} catch (SQLException e) {
 			throw this.connectionHandle.markPossiblyBroken(e);
@@ -807,7 +835,7 @@ public class PreparedStatementHandle extends StatementHandle implements
 		try {
 			this.internalPreparedStatement.setFloat(parameterIndex, x);
 			if (this.logStatementsEnabled){
-				this.logParams.put(parameterIndex, x);
+				this.logParams.set(parameterIndex, x);
 			}
 		} catch (SQLException e) {
 			throw this.connectionHandle.markPossiblyBroken(e);
@@ -827,7 +855,7 @@ public class PreparedStatementHandle extends StatementHandle implements
 		try {
 			this.internalPreparedStatement.setInt(parameterIndex, x);
 			if (this.logStatementsEnabled){
-				this.logParams.put(parameterIndex, x);
+				this.logParams.set(parameterIndex, x);
 			}
 		} catch (SQLException e) {
 			throw this.connectionHandle.markPossiblyBroken(e);
@@ -847,7 +875,7 @@ public class PreparedStatementHandle extends StatementHandle implements
 		try {
 			this.internalPreparedStatement.setLong(parameterIndex, x);
 			if (this.logStatementsEnabled){
-				this.logParams.put(parameterIndex, x);
+				this.logParams.set(parameterIndex, x);
 			}
 		} catch (SQLException e) {
 			throw this.connectionHandle.markPossiblyBroken(e);
@@ -867,7 +895,7 @@ public class PreparedStatementHandle extends StatementHandle implements
 		try {
 			this.internalPreparedStatement.setNull(parameterIndex, sqlType);
 			if (this.logStatementsEnabled){
-				this.logParams.put(parameterIndex, "[SQL NULL of type "+sqlType+"]");
+				this.logParams.setNull(parameterIndex, sqlType);
 			}
 		} catch (SQLException e) {
 			throw this.connectionHandle.markPossiblyBroken(e);
@@ -888,7 +916,7 @@ public class PreparedStatementHandle extends StatementHandle implements
 		try {
 			this.internalPreparedStatement.setNull(parameterIndex, sqlType, typeName);
 			if (this.logStatementsEnabled){
-				this.logParams.put(parameterIndex, PoolUtil.safePrint("[SQL NULL of type ", sqlType, ", type = ", typeName, "]"));
+				this.logParams.set(parameterIndex, PoolUtil.safePrint("[SQL NULL of type ", sqlType, ", type = ", typeName, "]"));
 			}
 		} catch (SQLException e) {
 			throw this.connectionHandle.markPossiblyBroken(e);
@@ -908,7 +936,7 @@ public class PreparedStatementHandle extends StatementHandle implements
 		try {
 			this.internalPreparedStatement.setObject(parameterIndex, x);
 			if (this.logStatementsEnabled){
-				this.logParams.put(parameterIndex, x);
+				this.logParams.set(parameterIndex, x);
 			}
 		} catch (SQLException e) {
 			throw this.connectionHandle.markPossiblyBroken(e);
@@ -929,7 +957,7 @@ public class PreparedStatementHandle extends StatementHandle implements
 		try {
 			this.internalPreparedStatement.setObject(parameterIndex, x, targetSqlType);
 			if (this.logStatementsEnabled){
-				this.logParams.put(parameterIndex, x);
+				this.logParams.set(parameterIndex, x);
 			}
 		} catch (SQLException e) {
 			throw this.connectionHandle.markPossiblyBroken(e);
@@ -951,7 +979,7 @@ public class PreparedStatementHandle extends StatementHandle implements
 		try {
 			this.internalPreparedStatement.setObject(parameterIndex, x, targetSqlType, scaleOrLength);
 			if (this.logStatementsEnabled){
-				this.logParams.put(parameterIndex, x);
+				this.logParams.set(parameterIndex, x);
 			}
 		} catch (SQLException e) {
 			throw this.connectionHandle.markPossiblyBroken(e);
@@ -971,7 +999,7 @@ public class PreparedStatementHandle extends StatementHandle implements
 		try {
 			this.internalPreparedStatement.setRef(parameterIndex, x);
 			if (this.logStatementsEnabled){
-				this.logParams.put(parameterIndex, x);
+				this.logParams.set(parameterIndex, x);
 			}
 		} catch (SQLException e) {
 			throw this.connectionHandle.markPossiblyBroken(e);
@@ -992,7 +1020,7 @@ public class PreparedStatementHandle extends StatementHandle implements
 		try {
 			this.internalPreparedStatement.setShort(parameterIndex, x);
 			if (this.logStatementsEnabled){
-				this.logParams.put(parameterIndex, x);
+				this.logParams.set(parameterIndex, x);
 			}
 		} catch (SQLException e) {
 			throw this.connectionHandle.markPossiblyBroken(e);
@@ -1012,7 +1040,7 @@ public class PreparedStatementHandle extends StatementHandle implements
 		try {
 			this.internalPreparedStatement.setString(parameterIndex, x);
 			if (this.logStatementsEnabled){
-				this.logParams.put(parameterIndex, x);
+				this.logParams.set(parameterIndex, x);
 			}
 		} catch (SQLException e) {
 			throw this.connectionHandle.markPossiblyBroken(e);
@@ -1032,7 +1060,7 @@ public class PreparedStatementHandle extends StatementHandle implements
 		try {
 			this.internalPreparedStatement.setTime(parameterIndex, x);
 			if (this.logStatementsEnabled){
-				this.logParams.put(parameterIndex, x);
+				this.logParams.set(parameterIndex, x);
 			}
 		} catch (SQLException e) {
 			throw this.connectionHandle.markPossiblyBroken(e);
@@ -1054,7 +1082,7 @@ public class PreparedStatementHandle extends StatementHandle implements
 		try {
 			this.internalPreparedStatement.setTime(parameterIndex, x, cal);
 			if (this.logStatementsEnabled){
-				this.logParams.put(parameterIndex, PoolUtil.safePrint(x, ", cal=", cal));
+				this.logParams.set(parameterIndex, PoolUtil.safePrint(x, ", cal=", cal));
 			}
 		} catch (SQLException e) {
 			throw this.connectionHandle.markPossiblyBroken(e);
@@ -1075,7 +1103,7 @@ public class PreparedStatementHandle extends StatementHandle implements
 		try {
 			this.internalPreparedStatement.setTimestamp(parameterIndex, x);
 			if (this.logStatementsEnabled){
-				this.logParams.put(parameterIndex, x);
+				this.logParams.set(parameterIndex, x);
 			}
 		} catch (SQLException e) {
 			throw this.connectionHandle.markPossiblyBroken(e);
@@ -1097,7 +1125,7 @@ public class PreparedStatementHandle extends StatementHandle implements
 		try {
 			this.internalPreparedStatement.setTimestamp(parameterIndex, x, cal);
 			if (this.logStatementsEnabled){
-				this.logParams.put(parameterIndex, PoolUtil.safePrint(x, ", cal=", cal));
+				this.logParams.set(parameterIndex, PoolUtil.safePrint(x, ", cal=", cal));
 			}
 		} catch (SQLException e) {
 			throw this.connectionHandle.markPossiblyBroken(e);
@@ -1117,7 +1145,7 @@ public class PreparedStatementHandle extends StatementHandle implements
 		try {
 			this.internalPreparedStatement.setURL(parameterIndex, x);
 			if (this.logStatementsEnabled){
-				this.logParams.put(parameterIndex, x);
+				this.logParams.set(parameterIndex, x);
 			}
 		} catch (SQLException e) {
 			throw this.connectionHandle.markPossiblyBroken(e);
@@ -1140,7 +1168,7 @@ public class PreparedStatementHandle extends StatementHandle implements
 		try {
 			this.internalPreparedStatement.setUnicodeStream(parameterIndex, x, length);
 			if (this.logStatementsEnabled){
-				this.logParams.put(parameterIndex, x);
+				this.logParams.set(parameterIndex, x);
 			}
 		} catch (SQLException e) {
 			throw this.connectionHandle.markPossiblyBroken(e);
@@ -0,0 +1,296 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+/**
+ * 
+ */
+package com.jolbox.bonecp;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.collect.MapMaker;
+
+/**
+ * Per-query execute statistics, keyed by SQL fingerprint (see {@link SqlFingerprint}). To keep memory fixed no 
+ * matter how many distinct queries the application runs, only a bounded number of fingerprints is tracked, chosen 
+ * with the Space-Saving heavy hitters algorithm: a fingerprint that isn't tracked yet takes over the slot of the 
+ * least executed one and inherits its count, which is also kept as the error bound of the new entry. Any query 
+ * executed more than (executions / capacity) times is guaranteed to be tracked, and its count is overestimated by 
+ * at most its error. The execute time, row and latency figures only cover the executions since the query was last 
+ * (re)admitted.
+ * 
+ * Recording into a tracked fingerprint is lock-free; only admitting a new one takes a lock and scans the slots.
+ * 
+ * @author wallacew
+ *
+ */
+public class QueryStatistics implements QueryStatisticsMBean {
+	/** Orders entries by total execute time, largest first. */
+	private static final Comparator<Entry> BY_EXECUTE_TIME = new Comparator<Entry>() {
+		// @Override
+		public int compare(Entry o1, Entry o2) {
+			long t1 = o1.totalExecuteTime.get();
+			long t2 = o2.totalExecuteTime.get();
+			return t1 > t2 ? -1 : (t1 == t2 ? 0 : 1);
+		}
+	};
+	/** Maximum number of fingerprints tracked. */
+	private final int capacity;
+	/** Current table. Swapped for an empty one on reset. */
+	private volatile Table table;
+
+	/** Creates a new tracker.
+	 * @param capacity maximum number of fingerprints tracked.
+	 */
+	public QueryStatistics(int capacity){
+		this.capacity = capacity;
+		this.table = new Table(capacity);
+	}
+
+	/** Records an execute call.
+	 * @param fingerprint normalized SQL
+	 * @param executeTimeInNanos time taken
+	 * @param rows rows affected (0 if unknown)
+	 */
+	public void record(String fingerprint, long executeTimeInNanos, int rows){
+		Table table = this.table;
+		Entry entry = table.entries.get(fingerprint);
+		if (entry == null){
+			entry = table.admit(fingerprint);
+		}
+		entry.record(executeTimeInNanos, rows);
+	}
+
+	/** Returns the tracked queries, most execute time first.
+	 * @return entries
+	 */
+	public List<Entry> getTop(){
+		return sort(this.table);
+	}
+
+	/** Returns the tracked queries, most execute time first, and starts counting afresh.
+	 * @return entries
+	 */
+	public List<Entry> drainTop(){
+		Table table;
+		synchronized (this){
+			table = this.table;
+			this.table = new Table(this.capacity);
+		}
+		return sort(table);
+	}
+
+	/** Returns the entries of a table, most execute time first.
+	 * @param table table
+	 * @return entries
+	 */
+	private static List<Entry> sort(Table table){
+		List<Entry> result = new ArrayList<Entry>(table.entries.values());
+		Collections.sort(result, BY_EXECUTE_TIME);
+		return result;
+	}
+
+	// @Override
+	public String[] getTopQueries() {
+		return format(getTop());
+	}
+
+	// @Override
+	public String[] drainTopQueries() {
+		return format(drainTop());
+	}
+
+	/** Formats entries for JMX.
+	 * @param entries entries
+	 * @return one line per entry
+	 */
+	private static String[] format(List<Entry> entries){
+		String[] result = new String[entries.size()];
+		for (int i=0; i < result.length; i++){
+			result[i] = entries.get(i).toString();
+		}
+		return result;
+	}
+
+	// @Override
+	public int getCapacity() {
+		return this.capacity;
+	}
+
+	/** Fingerprints tracked since the last reset. */
+	private static class Table {
+		/** Tracked fingerprints. */
+		protected final ConcurrentMap<String, Entry> entries;
+		/** Same entries, by slot, for finding the least executed one. */
+		private final Entry[] slots;
+		/** Number of slots in use. */
+		private int used;
+
+		/** Default constructor.
+		 * @param capacity number of slots
+		 */
+		protected Table(int capacity){
+			this.entries = new MapMaker().concurrencyLevel(16).initialCapacity(capacity).makeMap();
+			this.slots = new Entry[capacity];
+		}
+
+		/** Starts tracking a fingerprint, evicting the least executed one if the table is full.
+		 * @param fingerprint normalized SQL
+		 * @return entry to record into
+		 */
+		protected synchronized Entry admit(String fingerprint){
+			Entry entry = this.entries.get(fingerprint);
+			if (entry != null){ // admitted by another thread meanwhile
+				return entry;
+			}
+			int slot = 0;
+			long inherited = 0;
+			if (this.used < this.slots.length){
+				slot = this.used++;
+			} else {
+				for (int i=1; i < this.slots.length; i++){
+					if (this.slots[i].count.get() < this.slots[slot].count.get()){
+						slot = i;
+					}
+				}
+				inherited = this.slots[slot].count.get();
+				this.entries.remove(this.slots[slot].fingerprint);
+			}
+			entry = new Entry(fingerprint, inherited);
+			this.slots[slot] = entry;
+			this.entries.put(fingerprint, entry);
+			return entry;
+		}
+	}
+
+	/** Statistics of one fingerprint. */
+	public static class Entry {
+		/** Normalized SQL. */
+		private final String fingerprint;
+		/** Executions, including those inherited on admission. */
+		private final AtomicLong count;
+		/** Executions inherited on admission, ie the most count may be overestimated by. */
+		private final long error;
+		/** Total execute time since admission. */
+		private final AtomicLong totalExecuteTime = new AtomicLong();
+		/** Longest execute time since admission. */
+		private final AtomicLong maxExecuteTime = new AtomicLong();
+		/** Rows affected since admission. */
+		private final AtomicLong rows = new AtomicLong();
+		/** Execute times since admission. */
+		private final DurationHistogram executeTimes = new DurationHistogram();
+
+		/** Default constructor.
+		 * @param fingerprint normalized SQL
+		 * @param inherited count taken over from the evicted entry
+		 */
+		protected Entry(String fingerprint, long inherited){
+			this.fingerprint = fingerprint;
+			this.count = new AtomicLong(inherited);
+			this.error = inherited;
+		}
+
+		/** Records an execute call.
+		 * @param executeTimeInNanos time taken
+		 * @param rows rows affected
+		 */
+		protected void record(long executeTimeInNanos, int rows){
+			this.count.incrementAndGet();
+			this.totalExecuteTime.addAndGet(executeTimeInNanos);
+			long max = this.maxExecuteTime.get();
+			while (executeTimeInNanos > max && !this.maxExecuteTime.compareAndSet(max, executeTimeInNanos)){
+				max = this.maxExecuteTime.get();
+			}
+			if (rows > 0){
+				this.rows.addAndGet(rows);
+			}
+			this.executeTimes.record(executeTimeInNanos);
+		}
+
+		/** Returns the normalized SQL.
+		 * @return fingerprint
+		 */
+		public String getFingerprint() {
+			return this.fingerprint;
+		}
+
+		/** Returns the number of executions. May be overestimated by up to getError().
+		 * @return count
+		 */
+		public long getCount() {
+			return this.count.get();
+		}
+
+		/** Returns the most getCount() may be overestimated by.
+		 * @return error bound
+		 */
+		public long getError() {
+			return this.error;
+		}
+
+		/** Returns the number of executions whose timings were recorded (getCount() - getError()).
+		 * @return count
+		 */
+		public long getRecordedCount() {
+			return this.count.get() - this.error;
+		}
+
+		/** Returns the total execute time.
+		 * @return time in ns
+		 */
+		public long getTotalExecuteTime() {
+			return this.totalExecuteTime.get();
+		}
+
+		/** Returns the longest execute time.
+		 * @return time in ns
+		 */
+		public long getMaxExecuteTime() {
+			return this.maxExecuteTime.get();
+		}
+
+		/** Returns the number of rows affected by updates and batches.
+		 * @return rows
+		 */
+		public long getRows() {
+			return this.rows.get();
+		}
+
+		/** Returns an execute time percentile.
+		 * @param percentile 0..100
+		 * @return time in ns (accurate to within 12.5%)
+		 */
+		public double getExecuteTimeAtPercentile(double percentile) {
+			return DurationHistogram.valueAtPercentile(this.executeTimes.snapshot(), percentile);
+		}
+
+		@Override
+		public String toString() {
+			long recorded = getRecordedCount();
+			return String.format("count=%d (+/-%d) total=%.3fms avg=%.3fms p50=%.3fms p99=%.3fms max=%.3fms rows=%d sql=%s", 
+					getCount(), this.error, this.totalExecuteTime.get() / 1000000.0, 
+					recorded == 0 ? 0 : this.totalExecuteTime.get() / 1000000.0 / recorded,
+					getExecuteTimeAtPercentile(50) / 1000000.0, getExecuteTimeAtPercentile(99) / 1000000.0,
+					TimeUnit.NANOSECONDS.toMicros(this.maxExecuteTime.get()) / 1000.0, this.rows.get(), this.fingerprint);
+		}
+	}
+}
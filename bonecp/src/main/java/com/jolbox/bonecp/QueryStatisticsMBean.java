@@ -0,0 +1,42 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+/**
+ * 
+ */
+package com.jolbox.bonecp;
+
+/** MBean (JMX) contract of the per-query statistics.
+ * @author wallacew
+ *
+ */
+public interface QueryStatisticsMBean {
+
+	/** Returns the tracked queries, most execute time first, without resetting anything.
+	 * @return one line per query
+	 */
+	String[] getTopQueries();
+
+	/** Returns the tracked queries, most execute time first, and starts counting afresh.
+	 * @return one line per query
+	 */
+	String[] drainTopQueries();
+
+	/** Returns the maximum number of queries tracked at once (see queryStatisticsSize).
+	 * @return capacity
+	 */
+	int getCapacity();
+}
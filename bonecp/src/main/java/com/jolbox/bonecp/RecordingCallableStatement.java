@@ -0,0 +1,1924 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+/**
+ * 
+ */
+package com.jolbox.bonecp;
+
+import java.io.InputStream;
+import java.io.Reader;
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.net.URL;
+import java.sql.Array;
+import java.sql.Blob;
+import java.sql.CallableStatement;
+import java.sql.Clob;
+import java.sql.Date;
+import java.sql.NClob;
+import java.sql.Ref;
+import java.sql.RowId;
+import java.sql.SQLException;
+import java.sql.SQLXML;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.Calendar;
+import java.util.Map;
+
+import com.jolbox.bonecp.proxy.CallableStatementProxy;
+
+/** Records calls made on a callable statement for transaction replay, calling the target directly.
+ * @author wallacew
+ *
+ */
+public class RecordingCallableStatement extends RecordingPreparedStatement<CallableStatement> implements CallableStatementProxy {
+	/** CallableStatement#registerOutParameter. */
+	private static final Method REGISTER_OUT_PARAMETER_INT_INT = method(CallableStatement.class, "registerOutParameter", int.class, int.class);
+	/** CallableStatement#registerOutParameter. */
+	private static final Method REGISTER_OUT_PARAMETER_INT_INT_INT = method(CallableStatement.class, "registerOutParameter", int.class, int.class, int.class);
+	/** CallableStatement#wasNull. */
+	private static final Method WAS_NULL = method(CallableStatement.class, "wasNull");
+	/** CallableStatement#getString. */
+	private static final Method GET_STRING_INT = method(CallableStatement.class, "getString", int.class);
+	/** CallableStatement#getBoolean. */
+	private static final Method GET_BOOLEAN_INT = method(CallableStatement.class, "getBoolean", int.class);
+	/** CallableStatement#getByte. */
+	private static final Method GET_BYTE_INT = method(CallableStatement.class, "getByte", int.class);
+	/** CallableStatement#getShort. */
+	private static final Method GET_SHORT_INT = method(CallableStatement.class, "getShort", int.class);
+	/** CallableStatement#getInt. */
+	private static final Method GET_INT_INT = method(CallableStatement.class, "getInt", int.class);
+	/** CallableStatement#getLong. */
+	private static final Method GET_LONG_INT = method(CallableStatement.class, "getLong", int.class);
+	/** CallableStatement#getFloat. */
+	private static final Method GET_FLOAT_INT = method(CallableStatement.class, "getFloat", int.class);
+	/** CallableStatement#getDouble. */
+	private static final Method GET_DOUBLE_INT = method(CallableStatement.class, "getDouble", int.class);
+	/** CallableStatement#getBigDecimal. */
+	private static final Method GET_BIG_DECIMAL_INT_INT = method(CallableStatement.class, "getBigDecimal", int.class, int.class);
+	/** CallableStatement#getBytes. */
+	private static final Method GET_BYTES_INT = method(CallableStatement.class, "getBytes", int.class);
+	/** CallableStatement#getDate. */
+	private static final Method GET_DATE_INT = method(CallableStatement.class, "getDate", int.class);
+	/** CallableStatement#getTime. */
+	private static final Method GET_TIME_INT = method(CallableStatement.class, "getTime", int.class);
+	/** CallableStatement#getTimestamp. */
+	private static final Method GET_TIMESTAMP_INT = method(CallableStatement.class, "getTimestamp", int.class);
+	/** CallableStatement#getObject. */
+	private static final Method GET_OBJECT_INT = method(CallableStatement.class, "getObject", int.class);
+	/** CallableStatement#getObject. */
+	private static final Method GET_OBJECT_INT_MAP = method(CallableStatement.class, "getObject", int.class, Map.class);
+	/** CallableStatement#getBigDecimal. */
+	private static final Method GET_BIG_DECIMAL_INT = method(CallableStatement.class, "getBigDecimal", int.class);
+	/** CallableStatement#getRef. */
+	private static final Method GET_REF_INT = method(CallableStatement.class, "getRef", int.class);
+	/** CallableStatement#getBlob. */
+	private static final Method GET_BLOB_INT = method(CallableStatement.class, "getBlob", int.class);
+	/** CallableStatement#getClob. */
+	private static final Method GET_CLOB_INT = method(CallableStatement.class, "getClob", int.class);
+	/** CallableStatement#getArray. */
+	private static final Method GET_ARRAY_INT = method(CallableStatement.class, "getArray", int.class);
+	/** CallableStatement#getDate. */
+	private static final Method GET_DATE_INT_CALENDAR = method(CallableStatement.class, "getDate", int.class, Calendar.class);
+	/** CallableStatement#getTime. */
+	private static final Method GET_TIME_INT_CALENDAR = method(CallableStatement.class, "getTime", int.class, Calendar.class);
+	/** CallableStatement#getTimestamp. */
+	private static final Method GET_TIMESTAMP_INT_CALENDAR = method(CallableStatement.class, "getTimestamp", int.class, Calendar.class);
+	/** CallableStatement#registerOutParameter. */
+	private static final Method REGISTER_OUT_PARAMETER_INT_INT_STRING = method(CallableStatement.class, "registerOutParameter", int.class, int.class, String.class);
+	/** CallableStatement#registerOutParameter. */
+	private static final Method REGISTER_OUT_PARAMETER_STRING_INT = method(CallableStatement.class, "registerOutParameter", String.class, int.class);
+	/** CallableStatement#registerOutParameter. */
+	private static final Method REGISTER_OUT_PARAMETER_STRING_INT_INT = method(CallableStatement.class, "registerOutParameter", String.class, int.class, int.class);
+	/** CallableStatement#registerOutParameter. */
+	private static final Method REGISTER_OUT_PARAMETER_STRING_INT_STRING = method(CallableStatement.class, "registerOutParameter", String.class, int.class, String.class);
+	/** CallableStatement#getURL. */
+	private static final Method GET_URL_INT = method(CallableStatement.class, "getURL", int.class);
+	/** CallableStatement#setURL. */
+	private static final Method SET_URL = method(CallableStatement.class, "setURL", String.class, URL.class);
+	/** CallableStatement#setNull. */
+	private static final Method SET_NULL_STRING_INT = method(CallableStatement.class, "setNull", String.class, int.class);
+	/** CallableStatement#setBoolean. */
+	private static final Method SET_BOOLEAN = method(CallableStatement.class, "setBoolean", String.class, boolean.class);
+	/** CallableStatement#setByte. */
+	private static final Method SET_BYTE = method(CallableStatement.class, "setByte", String.class, byte.class);
+	/** CallableStatement#setShort. */
+	private static final Method SET_SHORT = method(CallableStatement.class, "setShort", String.class, short.class);
+	/** CallableStatement#setInt. */
+	private static final Method SET_INT = method(CallableStatement.class, "setInt", String.class, int.class);
+	/** CallableStatement#setLong. */
+	private static final Method SET_LONG = method(CallableStatement.class, "setLong", String.class, long.class);
+	/** CallableStatement#setFloat. */
+	private static final Method SET_FLOAT = method(CallableStatement.class, "setFloat", String.class, float.class);
+	/** CallableStatement#setDouble. */
+	private static final Method SET_DOUBLE = method(CallableStatement.class, "setDouble", String.class, double.class);
+	/** CallableStatement#setBigDecimal. */
+	private static final Method SET_BIG_DECIMAL = method(CallableStatement.class, "setBigDecimal", String.class, BigDecimal.class);
+	/** CallableStatement#setString. */
+	private static final Method SET_STRING = method(CallableStatement.class, "setString", String.class, String.class);
+	/** CallableStatement#setBytes. */
+	private static final Method SET_BYTES = method(CallableStatement.class, "setBytes", String.class, byte[].class);
+	/** CallableStatement#setDate. */
+	private static final Method SET_DATE_STRING_DATE = method(CallableStatement.class, "setDate", String.class, Date.class);
+	/** CallableStatement#setTime. */
+	private static final Method SET_TIME_STRING_TIME = method(CallableStatement.class, "setTime", String.class, Time.class);
+	/** CallableStatement#setTimestamp. */
+	private static final Method SET_TIMESTAMP_STRING_TIMESTAMP = method(CallableStatement.class, "setTimestamp", String.class, Timestamp.class);
+	/** CallableStatement#setAsciiStream. */
+	private static final Method SET_ASCII_STREAM_STRING_INPUTSTREAM_INT = method(CallableStatement.class, "setAsciiStream", String.class, InputStream.class, int.class);
+	/** CallableStatement#setBinaryStream. */
+	private static final Method SET_BINARY_STREAM_STRING_INPUTSTREAM_INT = method(CallableStatement.class, "setBinaryStream", String.class, InputStream.class, int.class);
+	/** CallableStatement#setObject. */
+	private static final Method SET_OBJECT_STRING_OBJECT_INT_INT = method(CallableStatement.class, "setObject", String.class, Object.class, int.class, int.class);
+	/** CallableStatement#setObject. */
+	private static final Method SET_OBJECT_STRING_OBJECT_INT = method(CallableStatement.class, "setObject", String.class, Object.class, int.class);
+	/** CallableStatement#setObject. */
+	private static final Method SET_OBJECT_STRING_OBJECT = method(CallableStatement.class, "setObject", String.class, Object.class);
+	/** CallableStatement#setCharacterStream. */
+	private static final Method SET_CHARACTER_STREAM_STRING_READER_INT = method(CallableStatement.class, "setCharacterStream", String.class, Reader.class, int.class);
+	/** CallableStatement#setDate. */
+	private static final Method SET_DATE_STRING_DATE_CALENDAR = method(CallableStatement.class, "setDate", String.class, Date.class, Calendar.class);
+	/** CallableStatement#setTime. */
+	private static final Method SET_TIME_STRING_TIME_CALENDAR = method(CallableStatement.class, "setTime", String.class, Time.class, Calendar.class);
+	/** CallableStatement#setTimestamp. */
+	private static final Method SET_TIMESTAMP_STRING_TIMESTAMP_CALENDAR = method(CallableStatement.class, "setTimestamp", String.class, Timestamp.class, Calendar.class);
+	/** CallableStatement#setNull. */
+	private static final Method SET_NULL_STRING_INT_STRING = method(CallableStatement.class, "setNull", String.class, int.class, String.class);
+	/** CallableStatement#getString. */
+	private static final Method GET_STRING_STRING = method(CallableStatement.class, "getString", String.class);
+	/** CallableStatement#getBoolean. */
+	private static final Method GET_BOOLEAN_STRING = method(CallableStatement.class, "getBoolean", String.class);
+	/** CallableStatement#getByte. */
+	private static final Method GET_BYTE_STRING = method(CallableStatement.class, "getByte", String.class);
+	/** CallableStatement#getShort. */
+	private static final Method GET_SHORT_STRING = method(CallableStatement.class, "getShort", String.class);
+	/** CallableStatement#getInt. */
+	private static final Method GET_INT_STRING = method(CallableStatement.class, "getInt", String.class);
+	/** CallableStatement#getLong. */
+	private static final Method GET_LONG_STRING = method(CallableStatement.class, "getLong", String.class);
+	/** CallableStatement#getFloat. */
+	private static final Method GET_FLOAT_STRING = method(CallableStatement.class, "getFloat", String.class);
+	/** CallableStatement#getDouble. */
+	private static final Method GET_DOUBLE_STRING = method(CallableStatement.class, "getDouble", String.class);
+	/** CallableStatement#getBytes. */
+	private static final Method GET_BYTES_STRING = method(CallableStatement.class, "getBytes", String.class);
+	/** CallableStatement#getDate. */
+	private static final Method GET_DATE_STRING = method(CallableStatement.class, "getDate", String.class);
+	/** CallableStatement#getTime. */
+	private static final Method GET_TIME_STRING = method(CallableStatement.class, "getTime", String.class);
+	/** CallableStatement#getTimestamp. */
+	private static final Method GET_TIMESTAMP_STRING = method(CallableStatement.class, "getTimestamp", String.class);
+	/** CallableStatement#getObject. */
+	private static final Method GET_OBJECT_STRING = method(CallableStatement.class, "getObject", String.class);
+	/** CallableStatement#getBigDecimal. */
+	private static final Method GET_BIG_DECIMAL_STRING = method(CallableStatement.class, "getBigDecimal", String.class);
+	/** CallableStatement#getObject. */
+	private static final Method GET_OBJECT_STRING_MAP = method(CallableStatement.class, "getObject", String.class, Map.class);
+	/** CallableStatement#getRef. */
+	private static final Method GET_REF_STRING = method(CallableStatement.class, "getRef", String.class);
+	/** CallableStatement#getBlob. */
+	private static final Method GET_BLOB_STRING = method(CallableStatement.class, "getBlob", String.class);
+	/** CallableStatement#getClob. */
+	private static final Method GET_CLOB_STRING = method(CallableStatement.class, "getClob", String.class);
+	/** CallableStatement#getArray. */
+	private static final Method GET_ARRAY_STRING = method(CallableStatement.class, "getArray", String.class);
+	/** CallableStatement#getDate. */
+	private static final Method GET_DATE_STRING_CALENDAR = method(CallableStatement.class, "getDate", String.class, Calendar.class);
+	/** CallableStatement#getTime. */
+	private static final Method GET_TIME_STRING_CALENDAR = method(CallableStatement.class, "getTime", String.class, Calendar.class);
+	/** CallableStatement#getTimestamp. */
+	private static final Method GET_TIMESTAMP_STRING_CALENDAR = method(CallableStatement.class, "getTimestamp", String.class, Calendar.class);
+	/** CallableStatement#getURL. */
+	private static final Method GET_URL_STRING = method(CallableStatement.class, "getURL", String.class);
+	// #ifdef JDK>6
+	/** CallableStatement#getRowId. */
+	private static final Method GET_ROW_ID_INT = method(CallableStatement.class, "getRowId", int.class);
+	/** CallableStatement#getRowId. */
+	private static final Method GET_ROW_ID_STRING = method(CallableStatement.class, "getRowId", String.class);
+	/** CallableStatement#setRowId. */
+	private static final Method SET_ROW_ID = method(CallableStatement.class, "setRowId", String.class, RowId.class);
+	/** CallableStatement#setNString. */
+	private static final Method SET_N_STRING = method(CallableStatement.class, "setNString", String.class, String.class);
+	/** CallableStatement#setNCharacterStream. */
+	private static final Method SET_N_CHARACTER_STREAM_STRING_READER_LONG = method(CallableStatement.class, "setNCharacterStream", String.class, Reader.class, long.class);
+	/** CallableStatement#setNClob. */
+	private static final Method SET_N_CLOB_STRING_NCLOB = method(CallableStatement.class, "setNClob", String.class, NClob.class);
+	/** CallableStatement#setClob. */
+	private static final Method SET_CLOB_STRING_READER_LONG = method(CallableStatement.class, "setClob", String.class, Reader.class, long.class);
+	/** CallableStatement#setBlob. */
+	private static final Method SET_BLOB_STRING_INPUTSTREAM_LONG = method(CallableStatement.class, "setBlob", String.class, InputStream.class, long.class);
+	/** CallableStatement#setNClob. */
+	private static final Method SET_N_CLOB_STRING_READER_LONG = method(CallableStatement.class, "setNClob", String.class, Reader.class, long.class);
+	/** CallableStatement#getNClob. */
+	private static final Method GET_N_CLOB_INT = method(CallableStatement.class, "getNClob", int.class);
+	/** CallableStatement#getNClob. */
+	private static final Method GET_N_CLOB_STRING = method(CallableStatement.class, "getNClob", String.class);
+	/** CallableStatement#setSQLXML. */
+	private static final Method SET_SQLXML = method(CallableStatement.class, "setSQLXML", String.class, SQLXML.class);
+	/** CallableStatement#getSQLXML. */
+	private static final Method GET_SQLXML_INT = method(CallableStatement.class, "getSQLXML", int.class);
+	/** CallableStatement#getSQLXML. */
+	private static final Method GET_SQLXML_STRING = method(CallableStatement.class, "getSQLXML", String.class);
+	/** CallableStatement#getNString. */
+	private static final Method GET_N_STRING_INT = method(CallableStatement.class, "getNString", int.class);
+	/** CallableStatement#getNString. */
+	private static final Method GET_N_STRING_STRING = method(CallableStatement.class, "getNString", String.class);
+	/** CallableStatement#getNCharacterStream. */
+	private static final Method GET_N_CHARACTER_STREAM_INT = method(CallableStatement.class, "getNCharacterStream", int.class);
+	/** CallableStatement#getNCharacterStream. */
+	private static final Method GET_N_CHARACTER_STREAM_STRING = method(CallableStatement.class, "getNCharacterStream", String.class);
+	/** CallableStatement#getCharacterStream. */
+	private static final Method GET_CHARACTER_STREAM_INT = method(CallableStatement.class, "getCharacterStream", int.class);
+	/** CallableStatement#getCharacterStream. */
+	private static final Method GET_CHARACTER_STREAM_STRING = method(CallableStatement.class, "getCharacterStream", String.class);
+	/** CallableStatement#setBlob. */
+	private static final Method SET_BLOB_STRING_BLOB = method(CallableStatement.class, "setBlob", String.class, Blob.class);
+	/** CallableStatement#setClob. */
+	private static final Method SET_CLOB_STRING_CLOB = method(CallableStatement.class, "setClob", String.class, Clob.class);
+	/** CallableStatement#setAsciiStream. */
+	private static final Method SET_ASCII_STREAM_STRING_INPUTSTREAM_LONG = method(CallableStatement.class, "setAsciiStream", String.class, InputStream.class, long.class);
+	/** CallableStatement#setBinaryStream. */
+	private static final Method SET_BINARY_STREAM_STRING_INPUTSTREAM_LONG = method(CallableStatement.class, "setBinaryStream", String.class, InputStream.class, long.class);
+	/** CallableStatement#setCharacterStream. */
+	private static final Method SET_CHARACTER_STREAM_STRING_READER_LONG = method(CallableStatement.class, "setCharacterStream", String.class, Reader.class, long.class);
+	/** CallableStatement#setAsciiStream. */
+	private static final Method SET_ASCII_STREAM_STRING_INPUTSTREAM = method(CallableStatement.class, "setAsciiStream", String.class, InputStream.class);
+	/** CallableStatement#setBinaryStream. */
+	private static final Method SET_BINARY_STREAM_STRING_INPUTSTREAM = method(CallableStatement.class, "setBinaryStream", String.class, InputStream.class);
+	/** CallableStatement#setCharacterStream. */
+	private static final Method SET_CHARACTER_STREAM_STRING_READER = method(CallableStatement.class, "setCharacterStream", String.class, Reader.class);
+	/** CallableStatement#setNCharacterStream. */
+	private static final Method SET_N_CHARACTER_STREAM_STRING_READER = method(CallableStatement.class, "setNCharacterStream", String.class, Reader.class);
+	/** CallableStatement#setClob. */
+	private static final Method SET_CLOB_STRING_READER = method(CallableStatement.class, "setClob", String.class, Reader.class);
+	/** CallableStatement#setBlob. */
+	private static final Method SET_BLOB_STRING_INPUTSTREAM = method(CallableStatement.class, "setBlob", String.class, InputStream.class);
+	/** CallableStatement#setNClob. */
+	private static final Method SET_N_CLOB_STRING_READER = method(CallableStatement.class, "setNClob", String.class, Reader.class);
+	// #endif JDK>6
+	// #ifdef JDK7
+	/** CallableStatement#getObject. */
+	private static final Method GET_OBJECT_INT_CLASS = method(CallableStatement.class, "getObject", int.class, Class.class);
+	/** CallableStatement#getObject. */
+	private static final Method GET_OBJECT_STRING_CLASS = method(CallableStatement.class, "getObject", String.class, Class.class);
+	// #endif JDK7
+
+	/** Constructor.
+	 * @param target statement to wrap
+	 * @param connectionHandle originating bonecp connection
+	 */
+	public RecordingCallableStatement(CallableStatement target, ConnectionHandle connectionHandle) {
+		super(target, connectionHandle);
+	}
+
+	// @Override
+	public void registerOutParameter(int parameterIndex, int sqlType) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.registerOutParameter(parameterIndex, sqlType);
+			return;
+		}
+		record(con, REGISTER_OUT_PARAMETER_INT_INT, parameterIndex, sqlType);
+		try {
+			this.target.registerOutParameter(parameterIndex, sqlType);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public void registerOutParameter(int parameterIndex, int sqlType, int scale) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.registerOutParameter(parameterIndex, sqlType, scale);
+			return;
+		}
+		record(con, REGISTER_OUT_PARAMETER_INT_INT_INT, parameterIndex, sqlType, scale);
+		try {
+			this.target.registerOutParameter(parameterIndex, sqlType, scale);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public boolean wasNull() throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.wasNull();
+		}
+		record(con, WAS_NULL);
+		try {
+			return this.target.wasNull();
+		} catch (SQLException e) {
+			return (Boolean) recover(con, e);
+		}
+	}
+
+	// @Override
+	public String getString(int parameterIndex) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.getString(parameterIndex);
+		}
+		record(con, GET_STRING_INT, parameterIndex);
+		try {
+			return this.target.getString(parameterIndex);
+		} catch (SQLException e) {
+			return (String) recover(con, e);
+		}
+	}
+
+	// @Override
+	public boolean getBoolean(int parameterIndex) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.getBoolean(parameterIndex);
+		}
+		record(con, GET_BOOLEAN_INT, parameterIndex);
+		try {
+			return this.target.getBoolean(parameterIndex);
+		} catch (SQLException e) {
+			return (Boolean) recover(con, e);
+		}
+	}
+
+	// @Override
+	public byte getByte(int parameterIndex) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.getByte(parameterIndex);
+		}
+		record(con, GET_BYTE_INT, parameterIndex);
+		try {
+			return this.target.getByte(parameterIndex);
+		} catch (SQLException e) {
+			return (Byte) recover(con, e);
+		}
+	}
+
+	// @Override
+	public short getShort(int parameterIndex) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.getShort(parameterIndex);
+		}
+		record(con, GET_SHORT_INT, parameterIndex);
+		try {
+			return this.target.getShort(parameterIndex);
+		} catch (SQLException e) {
+			return (Short) recover(con, e);
+		}
+	}
+
+	// @Override
+	public int getInt(int parameterIndex) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.getInt(parameterIndex);
+		}
+		record(con, GET_INT_INT, parameterIndex);
+		try {
+			return this.target.getInt(parameterIndex);
+		} catch (SQLException e) {
+			return (Integer) recover(con, e);
+		}
+	}
+
+	// @Override
+	public long getLong(int parameterIndex) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.getLong(parameterIndex);
+		}
+		record(con, GET_LONG_INT, parameterIndex);
+		try {
+			return this.target.getLong(parameterIndex);
+		} catch (SQLException e) {
+			return (Long) recover(con, e);
+		}
+	}
+
+	// @Override
+	public float getFloat(int parameterIndex) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.getFloat(parameterIndex);
+		}
+		record(con, GET_FLOAT_INT, parameterIndex);
+		try {
+			return this.target.getFloat(parameterIndex);
+		} catch (SQLException e) {
+			return (Float) recover(con, e);
+		}
+	}
+
+	// @Override
+	public double getDouble(int parameterIndex) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.getDouble(parameterIndex);
+		}
+		record(con, GET_DOUBLE_INT, parameterIndex);
+		try {
+			return this.target.getDouble(parameterIndex);
+		} catch (SQLException e) {
+			return (Double) recover(con, e);
+		}
+	}
+
+	// @Override
+	public BigDecimal getBigDecimal(int parameterIndex, int scale) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.getBigDecimal(parameterIndex, scale);
+		}
+		record(con, GET_BIG_DECIMAL_INT_INT, parameterIndex, scale);
+		try {
+			return this.target.getBigDecimal(parameterIndex, scale);
+		} catch (SQLException e) {
+			return (BigDecimal) recover(con, e);
+		}
+	}
+
+	// @Override
+	public byte[] getBytes(int parameterIndex) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.getBytes(parameterIndex);
+		}
+		record(con, GET_BYTES_INT, parameterIndex);
+		try {
+			return this.target.getBytes(parameterIndex);
+		} catch (SQLException e) {
+			return (byte[]) recover(con, e);
+		}
+	}
+
+	// @Override
+	public Date getDate(int parameterIndex) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.getDate(parameterIndex);
+		}
+		record(con, GET_DATE_INT, parameterIndex);
+		try {
+			return this.target.getDate(parameterIndex);
+		} catch (SQLException e) {
+			return (Date) recover(con, e);
+		}
+	}
+
+	// @Override
+	public Time getTime(int parameterIndex) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.getTime(parameterIndex);
+		}
+		record(con, GET_TIME_INT, parameterIndex);
+		try {
+			return this.target.getTime(parameterIndex);
+		} catch (SQLException e) {
+			return (Time) recover(con, e);
+		}
+	}
+
+	// @Override
+	public Timestamp getTimestamp(int parameterIndex) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.getTimestamp(parameterIndex);
+		}
+		record(con, GET_TIMESTAMP_INT, parameterIndex);
+		try {
+			return this.target.getTimestamp(parameterIndex);
+		} catch (SQLException e) {
+			return (Timestamp) recover(con, e);
+		}
+	}
+
+	// @Override
+	public Object getObject(int parameterIndex) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.getObject(parameterIndex);
+		}
+		record(con, GET_OBJECT_INT, parameterIndex);
+		try {
+			return this.target.getObject(parameterIndex);
+		} catch (SQLException e) {
+			return (Object) recover(con, e);
+		}
+	}
+
+	// @Override
+	public Object getObject(int parameterIndex, Map<String, Class<?>> map) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.getObject(parameterIndex, map);
+		}
+		record(con, GET_OBJECT_INT_MAP, parameterIndex, map);
+		try {
+			return this.target.getObject(parameterIndex, map);
+		} catch (SQLException e) {
+			return (Object) recover(con, e);
+		}
+	}
+
+	// @Override
+	public BigDecimal getBigDecimal(int parameterIndex) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.getBigDecimal(parameterIndex);
+		}
+		record(con, GET_BIG_DECIMAL_INT, parameterIndex);
+		try {
+			return this.target.getBigDecimal(parameterIndex);
+		} catch (SQLException e) {
+			return (BigDecimal) recover(con, e);
+		}
+	}
+
+	// @Override
+	public Ref getRef(int parameterIndex) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.getRef(parameterIndex);
+		}
+		record(con, GET_REF_INT, parameterIndex);
+		try {
+			return this.target.getRef(parameterIndex);
+		} catch (SQLException e) {
+			return (Ref) recover(con, e);
+		}
+	}
+
+	// @Override
+	public Blob getBlob(int parameterIndex) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.getBlob(parameterIndex);
+		}
+		record(con, GET_BLOB_INT, parameterIndex);
+		try {
+			return this.target.getBlob(parameterIndex);
+		} catch (SQLException e) {
+			return (Blob) recover(con, e);
+		}
+	}
+
+	// @Override
+	public Clob getClob(int parameterIndex) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.getClob(parameterIndex);
+		}
+		record(con, GET_CLOB_INT, parameterIndex);
+		try {
+			return this.target.getClob(parameterIndex);
+		} catch (SQLException e) {
+			return (Clob) recover(con, e);
+		}
+	}
+
+	// @Override
+	public Array getArray(int parameterIndex) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.getArray(parameterIndex);
+		}
+		record(con, GET_ARRAY_INT, parameterIndex);
+		try {
+			return this.target.getArray(parameterIndex);
+		} catch (SQLException e) {
+			return (Array) recover(con, e);
+		}
+	}
+
+	// @Override
+	public Date getDate(int parameterIndex, Calendar cal) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.getDate(parameterIndex, cal);
+		}
+		record(con, GET_DATE_INT_CALENDAR, parameterIndex, cal);
+		try {
+			return this.target.getDate(parameterIndex, cal);
+		} catch (SQLException e) {
+			return (Date) recover(con, e);
+		}
+	}
+
+	// @Override
+	public Time getTime(int parameterIndex, Calendar cal) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.getTime(parameterIndex, cal);
+		}
+		record(con, GET_TIME_INT_CALENDAR, parameterIndex, cal);
+		try {
+			return this.target.getTime(parameterIndex, cal);
+		} catch (SQLException e) {
+			return (Time) recover(con, e);
+		}
+	}
+
+	// @Override
+	public Timestamp getTimestamp(int parameterIndex, Calendar cal) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.getTimestamp(parameterIndex, cal);
+		}
+		record(con, GET_TIMESTAMP_INT_CALENDAR, parameterIndex, cal);
+		try {
+			return this.target.getTimestamp(parameterIndex, cal);
+		} catch (SQLException e) {
+			return (Timestamp) recover(con, e);
+		}
+	}
+
+	// @Override
+	public void registerOutParameter(int parameterIndex, int sqlType, String typeName) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.registerOutParameter(parameterIndex, sqlType, typeName);
+			return;
+		}
+		record(con, REGISTER_OUT_PARAMETER_INT_INT_STRING, parameterIndex, sqlType, typeName);
+		try {
+			this.target.registerOutParameter(parameterIndex, sqlType, typeName);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public void registerOutParameter(String parameterName, int sqlType) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.registerOutParameter(parameterName, sqlType);
+			return;
+		}
+		record(con, REGISTER_OUT_PARAMETER_STRING_INT, parameterName, sqlType);
+		try {
+			this.target.registerOutParameter(parameterName, sqlType);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public void registerOutParameter(String parameterName, int sqlType, int scale) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.registerOutParameter(parameterName, sqlType, scale);
+			return;
+		}
+		record(con, REGISTER_OUT_PARAMETER_STRING_INT_INT, parameterName, sqlType, scale);
+		try {
+			this.target.registerOutParameter(parameterName, sqlType, scale);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public void registerOutParameter(String parameterName, int sqlType, String typeName) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.registerOutParameter(parameterName, sqlType, typeName);
+			return;
+		}
+		record(con, REGISTER_OUT_PARAMETER_STRING_INT_STRING, parameterName, sqlType, typeName);
+		try {
+			this.target.registerOutParameter(parameterName, sqlType, typeName);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public URL getURL(int parameterIndex) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.getURL(parameterIndex);
+		}
+		record(con, GET_URL_INT, parameterIndex);
+		try {
+			return this.target.getURL(parameterIndex);
+		} catch (SQLException e) {
+			return (URL) recover(con, e);
+		}
+	}
+
+	// @Override
+	public void setURL(String parameterName, URL val) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.setURL(parameterName, val);
+			return;
+		}
+		record(con, SET_URL, parameterName, val);
+		try {
+			this.target.setURL(parameterName, val);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public void setNull(String parameterName, int sqlType) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.setNull(parameterName, sqlType);
+			return;
+		}
+		record(con, SET_NULL_STRING_INT, parameterName, sqlType);
+		try {
+			this.target.setNull(parameterName, sqlType);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public void setBoolean(String parameterName, boolean x) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.setBoolean(parameterName, x);
+			return;
+		}
+		record(con, SET_BOOLEAN, parameterName, x);
+		try {
+			this.target.setBoolean(parameterName, x);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public void setByte(String parameterName, byte x) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.setByte(parameterName, x);
+			return;
+		}
+		record(con, SET_BYTE, parameterName, x);
+		try {
+			this.target.setByte(parameterName, x);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public void setShort(String parameterName, short x) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.setShort(parameterName, x);
+			return;
+		}
+		record(con, SET_SHORT, parameterName, x);
+		try {
+			this.target.setShort(parameterName, x);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public void setInt(String parameterName, int x) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.setInt(parameterName, x);
+			return;
+		}
+		record(con, SET_INT, parameterName, x);
+		try {
+			this.target.setInt(parameterName, x);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public void setLong(String parameterName, long x) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.setLong(parameterName, x);
+			return;
+		}
+		record(con, SET_LONG, parameterName, x);
+		try {
+			this.target.setLong(parameterName, x);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public void setFloat(String parameterName, float x) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.setFloat(parameterName, x);
+			return;
+		}
+		record(con, SET_FLOAT, parameterName, x);
+		try {
+			this.target.setFloat(parameterName, x);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public void setDouble(String parameterName, double x) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.setDouble(parameterName, x);
+			return;
+		}
+		record(con, SET_DOUBLE, parameterName, x);
+		try {
+			this.target.setDouble(parameterName, x);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public void setBigDecimal(String parameterName, BigDecimal x) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.setBigDecimal(parameterName, x);
+			return;
+		}
+		record(con, SET_BIG_DECIMAL, parameterName, x);
+		try {
+			this.target.setBigDecimal(parameterName, x);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public void setString(String parameterName, String x) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.setString(parameterName, x);
+			return;
+		}
+		record(con, SET_STRING, parameterName, x);
+		try {
+			this.target.setString(parameterName, x);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public void setBytes(String parameterName, byte[] x) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.setBytes(parameterName, x);
+			return;
+		}
+		record(con, SET_BYTES, parameterName, x);
+		try {
+			this.target.setBytes(parameterName, x);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public void setDate(String parameterName, Date x) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.setDate(parameterName, x);
+			return;
+		}
+		record(con, SET_DATE_STRING_DATE, parameterName, x);
+		try {
+			this.target.setDate(parameterName, x);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public void setTime(String parameterName, Time x) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.setTime(parameterName, x);
+			return;
+		}
+		record(con, SET_TIME_STRING_TIME, parameterName, x);
+		try {
+			this.target.setTime(parameterName, x);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public void setTimestamp(String parameterName, Timestamp x) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.setTimestamp(parameterName, x);
+			return;
+		}
+		record(con, SET_TIMESTAMP_STRING_TIMESTAMP, parameterName, x);
+		try {
+			this.target.setTimestamp(parameterName, x);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public void setAsciiStream(String parameterName, InputStream x, int length) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.setAsciiStream(parameterName, x, length);
+			return;
+		}
+		record(con, SET_ASCII_STREAM_STRING_INPUTSTREAM_INT, parameterName, x, length);
+		try {
+			this.target.setAsciiStream(parameterName, x, length);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public void setBinaryStream(String parameterName, InputStream x, int length) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.setBinaryStream(parameterName, x, length);
+			return;
+		}
+		record(con, SET_BINARY_STREAM_STRING_INPUTSTREAM_INT, parameterName, x, length);
+		try {
+			this.target.setBinaryStream(parameterName, x, length);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public void setObject(String parameterName, Object x, int targetSqlType, int scale) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.setObject(parameterName, x, targetSqlType, scale);
+			return;
+		}
+		record(con, SET_OBJECT_STRING_OBJECT_INT_INT, parameterName, x, targetSqlType, scale);
+		try {
+			this.target.setObject(parameterName, x, targetSqlType, scale);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public void setObject(String parameterName, Object x, int targetSqlType) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.setObject(parameterName, x, targetSqlType);
+			return;
+		}
+		record(con, SET_OBJECT_STRING_OBJECT_INT, parameterName, x, targetSqlType);
+		try {
+			this.target.setObject(parameterName, x, targetSqlType);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public void setObject(String parameterName, Object x) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.setObject(parameterName, x);
+			return;
+		}
+		record(con, SET_OBJECT_STRING_OBJECT, parameterName, x);
+		try {
+			this.target.setObject(parameterName, x);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public void setCharacterStream(String parameterName, Reader reader, int length) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.setCharacterStream(parameterName, reader, length);
+			return;
+		}
+		record(con, SET_CHARACTER_STREAM_STRING_READER_INT, parameterName, reader, length);
+		try {
+			this.target.setCharacterStream(parameterName, reader, length);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public void setDate(String parameterName, Date x, Calendar cal) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.setDate(parameterName, x, cal);
+			return;
+		}
+		record(con, SET_DATE_STRING_DATE_CALENDAR, parameterName, x, cal);
+		try {
+			this.target.setDate(parameterName, x, cal);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public void setTime(String parameterName, Time x, Calendar cal) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.setTime(parameterName, x, cal);
+			return;
+		}
+		record(con, SET_TIME_STRING_TIME_CALENDAR, parameterName, x, cal);
+		try {
+			this.target.setTime(parameterName, x, cal);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public void setTimestamp(String parameterName, Timestamp x, Calendar cal) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.setTimestamp(parameterName, x, cal);
+			return;
+		}
+		record(con, SET_TIMESTAMP_STRING_TIMESTAMP_CALENDAR, parameterName, x, cal);
+		try {
+			this.target.setTimestamp(parameterName, x, cal);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public void setNull(String parameterName, int sqlType, String typeName) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.setNull(parameterName, sqlType, typeName);
+			return;
+		}
+		record(con, SET_NULL_STRING_INT_STRING, parameterName, sqlType, typeName);
+		try {
+			this.target.setNull(parameterName, sqlType, typeName);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public String getString(String parameterName) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.getString(parameterName);
+		}
+		record(con, GET_STRING_STRING, parameterName);
+		try {
+			return this.target.getString(parameterName);
+		} catch (SQLException e) {
+			return (String) recover(con, e);
+		}
+	}
+
+	// @Override
+	public boolean getBoolean(String parameterName) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.getBoolean(parameterName);
+		}
+		record(con, GET_BOOLEAN_STRING, parameterName);
+		try {
+			return this.target.getBoolean(parameterName);
+		} catch (SQLException e) {
+			return (Boolean) recover(con, e);
+		}
+	}
+
+	// @Override
+	public byte getByte(String parameterName) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.getByte(parameterName);
+		}
+		record(con, GET_BYTE_STRING, parameterName);
+		try {
+			return this.target.getByte(parameterName);
+		} catch (SQLException e) {
+			return (Byte) recover(con, e);
+		}
+	}
+
+	// @Override
+	public short getShort(String parameterName) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.getShort(parameterName);
+		}
+		record(con, GET_SHORT_STRING, parameterName);
+		try {
+			return this.target.getShort(parameterName);
+		} catch (SQLException e) {
+			return (Short) recover(con, e);
+		}
+	}
+
+	// @Override
+	public int getInt(String parameterName) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.getInt(parameterName);
+		}
+		record(con, GET_INT_STRING, parameterName);
+		try {
+			return this.target.getInt(parameterName);
+		} catch (SQLException e) {
+			return (Integer) recover(con, e);
+		}
+	}
+
+	// @Override
+	public long getLong(String parameterName) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.getLong(parameterName);
+		}
+		record(con, GET_LONG_STRING, parameterName);
+		try {
+			return this.target.getLong(parameterName);
+		} catch (SQLException e) {
+			return (Long) recover(con, e);
+		}
+	}
+
+	// @Override
+	public float getFloat(String parameterName) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.getFloat(parameterName);
+		}
+		record(con, GET_FLOAT_STRING, parameterName);
+		try {
+			return this.target.getFloat(parameterName);
+		} catch (SQLException e) {
+			return (Float) recover(con, e);
+		}
+	}
+
+	// @Override
+	public double getDouble(String parameterName) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.getDouble(parameterName);
+		}
+		record(con, GET_DOUBLE_STRING, parameterName);
+		try {
+			return this.target.getDouble(parameterName);
+		} catch (SQLException e) {
+			return (Double) recover(con, e);
+		}
+	}
+
+	// @Override
+	public byte[] getBytes(String parameterName) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.getBytes(parameterName);
+		}
+		record(con, GET_BYTES_STRING, parameterName);
+		try {
+			return this.target.getBytes(parameterName);
+		} catch (SQLException e) {
+			return (byte[]) recover(con, e);
+		}
+	}
+
+	// @Override
+	public Date getDate(String parameterName) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.getDate(parameterName);
+		}
+		record(con, GET_DATE_STRING, parameterName);
+		try {
+			return this.target.getDate(parameterName);
+		} catch (SQLException e) {
+			return (Date) recover(con, e);
+		}
+	}
+
+	// @Override
+	public Time getTime(String parameterName) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.getTime(parameterName);
+		}
+		record(con, GET_TIME_STRING, parameterName);
+		try {
+			return this.target.getTime(parameterName);
+		} catch (SQLException e) {
+			return (Time) recover(con, e);
+		}
+	}
+
+	// @Override
+	public Timestamp getTimestamp(String parameterName) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.getTimestamp(parameterName);
+		}
+		record(con, GET_TIMESTAMP_STRING, parameterName);
+		try {
+			return this.target.getTimestamp(parameterName);
+		} catch (SQLException e) {
+			return (Timestamp) recover(con, e);
+		}
+	}
+
+	// @Override
+	public Object getObject(String parameterName) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.getObject(parameterName);
+		}
+		record(con, GET_OBJECT_STRING, parameterName);
+		try {
+			return this.target.getObject(parameterName);
+		} catch (SQLException e) {
+			return (Object) recover(con, e);
+		}
+	}
+
+	// @Override
+	public BigDecimal getBigDecimal(String parameterName) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.getBigDecimal(parameterName);
+		}
+		record(con, GET_BIG_DECIMAL_STRING, parameterName);
+		try {
+			return this.target.getBigDecimal(parameterName);
+		} catch (SQLException e) {
+			return (BigDecimal) recover(con, e);
+		}
+	}
+
+	// @Override
+	public Object getObject(String parameterName, Map<String, Class<?>> map) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.getObject(parameterName, map);
+		}
+		record(con, GET_OBJECT_STRING_MAP, parameterName, map);
+		try {
+			return this.target.getObject(parameterName, map);
+		} catch (SQLException e) {
+			return (Object) recover(con, e);
+		}
+	}
+
+	// @Override
+	public Ref getRef(String parameterName) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.getRef(parameterName);
+		}
+		record(con, GET_REF_STRING, parameterName);
+		try {
+			return this.target.getRef(parameterName);
+		} catch (SQLException e) {
+			return (Ref) recover(con, e);
+		}
+	}
+
+	// @Override
+	public Blob getBlob(String parameterName) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.getBlob(parameterName);
+		}
+		record(con, GET_BLOB_STRING, parameterName);
+		try {
+			return this.target.getBlob(parameterName);
+		} catch (SQLException e) {
+			return (Blob) recover(con, e);
+		}
+	}
+
+	// @Override
+	public Clob getClob(String parameterName) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.getClob(parameterName);
+		}
+		record(con, GET_CLOB_STRING, parameterName);
+		try {
+			return this.target.getClob(parameterName);
+		} catch (SQLException e) {
+			return (Clob) recover(con, e);
+		}
+	}
+
+	// @Override
+	public Array getArray(String parameterName) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.getArray(parameterName);
+		}
+		record(con, GET_ARRAY_STRING, parameterName);
+		try {
+			return this.target.getArray(parameterName);
+		} catch (SQLException e) {
+			return (Array) recover(con, e);
+		}
+	}
+
+	// @Override
+	public Date getDate(String parameterName, Calendar cal) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.getDate(parameterName, cal);
+		}
+		record(con, GET_DATE_STRING_CALENDAR, parameterName, cal);
+		try {
+			return this.target.getDate(parameterName, cal);
+		} catch (SQLException e) {
+			return (Date) recover(con, e);
+		}
+	}
+
+	// @Override
+	public Time getTime(String parameterName, Calendar cal) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.getTime(parameterName, cal);
+		}
+		record(con, GET_TIME_STRING_CALENDAR, parameterName, cal);
+		try {
+			return this.target.getTime(parameterName, cal);
+		} catch (SQLException e) {
+			return (Time) recover(con, e);
+		}
+	}
+
+	// @Override
+	public Timestamp getTimestamp(String parameterName, Calendar cal) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.getTimestamp(parameterName, cal);
+		}
+		record(con, GET_TIMESTAMP_STRING_CALENDAR, parameterName, cal);
+		try {
+			return this.target.getTimestamp(parameterName, cal);
+		} catch (SQLException e) {
+			return (Timestamp) recover(con, e);
+		}
+	}
+
+	// @Override
+	public URL getURL(String parameterName) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.getURL(parameterName);
+		}
+		record(con, GET_URL_STRING, parameterName);
+		try {
+			return this.target.getURL(parameterName);
+		} catch (SQLException e) {
+			return (URL) recover(con, e);
+		}
+	}
+
+	// #ifdef JDK>6
+	// @Override
+	public RowId getRowId(int parameterIndex) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.getRowId(parameterIndex);
+		}
+		record(con, GET_ROW_ID_INT, parameterIndex);
+		try {
+			return this.target.getRowId(parameterIndex);
+		} catch (SQLException e) {
+			return (RowId) recover(con, e);
+		}
+	}
+
+	// @Override
+	public RowId getRowId(String parameterName) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.getRowId(parameterName);
+		}
+		record(con, GET_ROW_ID_STRING, parameterName);
+		try {
+			return this.target.getRowId(parameterName);
+		} catch (SQLException e) {
+			return (RowId) recover(con, e);
+		}
+	}
+
+	// @Override
+	public void setRowId(String parameterName, RowId x) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.setRowId(parameterName, x);
+			return;
+		}
+		record(con, SET_ROW_ID, parameterName, x);
+		try {
+			this.target.setRowId(parameterName, x);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public void setNString(String parameterName, String value) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.setNString(parameterName, value);
+			return;
+		}
+		record(con, SET_N_STRING, parameterName, value);
+		try {
+			this.target.setNString(parameterName, value);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public void setNCharacterStream(String parameterName, Reader value, long length) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.setNCharacterStream(parameterName, value, length);
+			return;
+		}
+		record(con, SET_N_CHARACTER_STREAM_STRING_READER_LONG, parameterName, value, length);
+		try {
+			this.target.setNCharacterStream(parameterName, value, length);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public void setNClob(String parameterName, NClob value) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.setNClob(parameterName, value);
+			return;
+		}
+		record(con, SET_N_CLOB_STRING_NCLOB, parameterName, value);
+		try {
+			this.target.setNClob(parameterName, value);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public void setClob(String parameterName, Reader reader, long length) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.setClob(parameterName, reader, length);
+			return;
+		}
+		record(con, SET_CLOB_STRING_READER_LONG, parameterName, reader, length);
+		try {
+			this.target.setClob(parameterName, reader, length);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public void setBlob(String parameterName, InputStream inputStream, long length) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.setBlob(parameterName, inputStream, length);
+			return;
+		}
+		record(con, SET_BLOB_STRING_INPUTSTREAM_LONG, parameterName, inputStream, length);
+		try {
+			this.target.setBlob(parameterName, inputStream, length);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public void setNClob(String parameterName, Reader reader, long length) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.setNClob(parameterName, reader, length);
+			return;
+		}
+		record(con, SET_N_CLOB_STRING_READER_LONG, parameterName, reader, length);
+		try {
+			this.target.setNClob(parameterName, reader, length);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public NClob getNClob(int parameterIndex) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.getNClob(parameterIndex);
+		}
+		record(con, GET_N_CLOB_INT, parameterIndex);
+		try {
+			return this.target.getNClob(parameterIndex);
+		} catch (SQLException e) {
+			return (NClob) recover(con, e);
+		}
+	}
+
+	// @Override
+	public NClob getNClob(String parameterName) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.getNClob(parameterName);
+		}
+		record(con, GET_N_CLOB_STRING, parameterName);
+		try {
+			return this.target.getNClob(parameterName);
+		} catch (SQLException e) {
+			return (NClob) recover(con, e);
+		}
+	}
+
+	// @Override
+	public void setSQLXML(String parameterName, SQLXML xmlObject) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.setSQLXML(parameterName, xmlObject);
+			return;
+		}
+		record(con, SET_SQLXML, parameterName, xmlObject);
+		try {
+			this.target.setSQLXML(parameterName, xmlObject);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public SQLXML getSQLXML(int parameterIndex) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.getSQLXML(parameterIndex);
+		}
+		record(con, GET_SQLXML_INT, parameterIndex);
+		try {
+			return this.target.getSQLXML(parameterIndex);
+		} catch (SQLException e) {
+			return (SQLXML) recover(con, e);
+		}
+	}
+
+	// @Override
+	public SQLXML getSQLXML(String parameterName) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.getSQLXML(parameterName);
+		}
+		record(con, GET_SQLXML_STRING, parameterName);
+		try {
+			return this.target.getSQLXML(parameterName);
+		} catch (SQLException e) {
+			return (SQLXML) recover(con, e);
+		}
+	}
+
+	// @Override
+	public String getNString(int parameterIndex) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.getNString(parameterIndex);
+		}
+		record(con, GET_N_STRING_INT, parameterIndex);
+		try {
+			return this.target.getNString(parameterIndex);
+		} catch (SQLException e) {
+			return (String) recover(con, e);
+		}
+	}
+
+	// @Override
+	public String getNString(String parameterName) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.getNString(parameterName);
+		}
+		record(con, GET_N_STRING_STRING, parameterName);
+		try {
+			return this.target.getNString(parameterName);
+		} catch (SQLException e) {
+			return (String) recover(con, e);
+		}
+	}
+
+	// @Override
+	public Reader getNCharacterStream(int parameterIndex) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.getNCharacterStream(parameterIndex);
+		}
+		record(con, GET_N_CHARACTER_STREAM_INT, parameterIndex);
+		try {
+			return this.target.getNCharacterStream(parameterIndex);
+		} catch (SQLException e) {
+			return (Reader) recover(con, e);
+		}
+	}
+
+	// @Override
+	public Reader getNCharacterStream(String parameterName) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.getNCharacterStream(parameterName);
+		}
+		record(con, GET_N_CHARACTER_STREAM_STRING, parameterName);
+		try {
+			return this.target.getNCharacterStream(parameterName);
+		} catch (SQLException e) {
+			return (Reader) recover(con, e);
+		}
+	}
+
+	// @Override
+	public Reader getCharacterStream(int parameterIndex) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.getCharacterStream(parameterIndex);
+		}
+		record(con, GET_CHARACTER_STREAM_INT, parameterIndex);
+		try {
+			return this.target.getCharacterStream(parameterIndex);
+		} catch (SQLException e) {
+			return (Reader) recover(con, e);
+		}
+	}
+
+	// @Override
+	public Reader getCharacterStream(String parameterName) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.getCharacterStream(parameterName);
+		}
+		record(con, GET_CHARACTER_STREAM_STRING, parameterName);
+		try {
+			return this.target.getCharacterStream(parameterName);
+		} catch (SQLException e) {
+			return (Reader) recover(con, e);
+		}
+	}
+
+	// @Override
+	public void setBlob(String parameterName, Blob x) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.setBlob(parameterName, x);
+			return;
+		}
+		record(con, SET_BLOB_STRING_BLOB, parameterName, x);
+		try {
+			this.target.setBlob(parameterName, x);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public void setClob(String parameterName, Clob x) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.setClob(parameterName, x);
+			return;
+		}
+		record(con, SET_CLOB_STRING_CLOB, parameterName, x);
+		try {
+			this.target.setClob(parameterName, x);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public void setAsciiStream(String parameterName, InputStream x, long length) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.setAsciiStream(parameterName, x, length);
+			return;
+		}
+		record(con, SET_ASCII_STREAM_STRING_INPUTSTREAM_LONG, parameterName, x, length);
+		try {
+			this.target.setAsciiStream(parameterName, x, length);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public void setBinaryStream(String parameterName, InputStream x, long length) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.setBinaryStream(parameterName, x, length);
+			return;
+		}
+		record(con, SET_BINARY_STREAM_STRING_INPUTSTREAM_LONG, parameterName, x, length);
+		try {
+			this.target.setBinaryStream(parameterName, x, length);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public void setCharacterStream(String parameterName, Reader reader, long length) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.setCharacterStream(parameterName, reader, length);
+			return;
+		}
+		record(con, SET_CHARACTER_STREAM_STRING_READER_LONG, parameterName, reader, length);
+		try {
+			this.target.setCharacterStream(parameterName, reader, length);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public void setAsciiStream(String parameterName, InputStream x) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.setAsciiStream(parameterName, x);
+			return;
+		}
+		record(con, SET_ASCII_STREAM_STRING_INPUTSTREAM, parameterName, x);
+		try {
+			this.target.setAsciiStream(parameterName, x);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public void setBinaryStream(String parameterName, InputStream x) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.setBinaryStream(parameterName, x);
+			return;
+		}
+		record(con, SET_BINARY_STREAM_STRING_INPUTSTREAM, parameterName, x);
+		try {
+			this.target.setBinaryStream(parameterName, x);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public void setCharacterStream(String parameterName, Reader reader) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.setCharacterStream(parameterName, reader);
+			return;
+		}
+		record(con, SET_CHARACTER_STREAM_STRING_READER, parameterName, reader);
+		try {
+			this.target.setCharacterStream(parameterName, reader);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public void setNCharacterStream(String parameterName, Reader value) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.setNCharacterStream(parameterName, value);
+			return;
+		}
+		record(con, SET_N_CHARACTER_STREAM_STRING_READER, parameterName, value);
+		try {
+			this.target.setNCharacterStream(parameterName, value);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public void setClob(String parameterName, Reader reader) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.setClob(parameterName, reader);
+			return;
+		}
+		record(con, SET_CLOB_STRING_READER, parameterName, reader);
+		try {
+			this.target.setClob(parameterName, reader);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public void setBlob(String parameterName, InputStream inputStream) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.setBlob(parameterName, inputStream);
+			return;
+		}
+		record(con, SET_BLOB_STRING_INPUTSTREAM, parameterName, inputStream);
+		try {
+			this.target.setBlob(parameterName, inputStream);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public void setNClob(String parameterName, Reader reader) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.setNClob(parameterName, reader);
+			return;
+		}
+		record(con, SET_N_CLOB_STRING_READER, parameterName, reader);
+		try {
+			this.target.setNClob(parameterName, reader);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+	// #endif JDK>6
+
+	// #ifdef JDK7
+	// @Override
+	public <T> T getObject(int parameterIndex, Class<T> type) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.getObject(parameterIndex, type);
+		}
+		record(con, GET_OBJECT_INT_CLASS, parameterIndex, type);
+		try {
+			return this.target.getObject(parameterIndex, type);
+		} catch (SQLException e) {
+			return type.cast(recover(con, e));
+		}
+	}
+
+	// @Override
+	public <T> T getObject(String parameterName, Class<T> type) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.getObject(parameterName, type);
+		}
+		record(con, GET_OBJECT_STRING_CLASS, parameterName, type);
+		try {
+			return this.target.getObject(parameterName, type);
+		} catch (SQLException e) {
+			return type.cast(recover(con, e));
+		}
+	}
+	// #endif JDK7
+}
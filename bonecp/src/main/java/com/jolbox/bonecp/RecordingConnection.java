@@ -0,0 +1,942 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+/**
+ * 
+ */
+package com.jolbox.bonecp;
+
+import java.lang.reflect.Method;
+import java.sql.Array;
+import java.sql.Blob;
+import java.sql.CallableStatement;
+import java.sql.Clob;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.NClob;
+import java.sql.PreparedStatement;
+import java.sql.SQLClientInfoException;
+import java.sql.SQLException;
+import java.sql.SQLWarning;
+import java.sql.SQLXML;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.sql.Struct;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Executor;
+
+import com.jolbox.bonecp.proxy.ConnectionProxy;
+
+/** Records calls made on a connection for transaction replay, calling the target directly.
+ * @author wallacew
+ *
+ */
+public class RecordingConnection extends MemorizeTransactionProxy<Connection> implements ConnectionProxy {
+	/** Connection#createStatement. */
+	private static final Method CREATE_STATEMENT_NOARGS = method(Connection.class, "createStatement");
+	/** Connection#prepareStatement. */
+	private static final Method PREPARE_STATEMENT_STRING = method(Connection.class, "prepareStatement", String.class);
+	/** Connection#prepareCall. */
+	private static final Method PREPARE_CALL_STRING = method(Connection.class, "prepareCall", String.class);
+	/** Connection#nativeSQL. */
+	private static final Method NATIVE_SQL = method(Connection.class, "nativeSQL", String.class);
+	/** Connection#setAutoCommit. */
+	private static final Method SET_AUTO_COMMIT = method(Connection.class, "setAutoCommit", boolean.class);
+	/** Connection#getAutoCommit. */
+	private static final Method GET_AUTO_COMMIT = method(Connection.class, "getAutoCommit");
+	/** Connection#commit. */
+	private static final Method COMMIT = method(Connection.class, "commit");
+	/** Connection#rollback. */
+	private static final Method ROLLBACK_NOARGS = method(Connection.class, "rollback");
+	/** Connection#close. */
+	private static final Method CLOSE = method(Connection.class, "close");
+	/** Connection#isClosed. */
+	private static final Method IS_CLOSED = method(Connection.class, "isClosed");
+	/** Connection#getMetaData. */
+	private static final Method GET_META_DATA = method(Connection.class, "getMetaData");
+	/** Connection#setReadOnly. */
+	private static final Method SET_READ_ONLY = method(Connection.class, "setReadOnly", boolean.class);
+	/** Connection#isReadOnly. */
+	private static final Method IS_READ_ONLY = method(Connection.class, "isReadOnly");
+	/** Connection#setCatalog. */
+	private static final Method SET_CATALOG = method(Connection.class, "setCatalog", String.class);
+	/** Connection#getCatalog. */
+	private static final Method GET_CATALOG = method(Connection.class, "getCatalog");
+	/** Connection#setTransactionIsolation. */
+	private static final Method SET_TRANSACTION_ISOLATION = method(Connection.class, "setTransactionIsolation", int.class);
+	/** Connection#getTransactionIsolation. */
+	private static final Method GET_TRANSACTION_ISOLATION = method(Connection.class, "getTransactionIsolation");
+	/** Connection#getWarnings. */
+	private static final Method GET_WARNINGS = method(Connection.class, "getWarnings");
+	/** Connection#clearWarnings. */
+	private static final Method CLEAR_WARNINGS = method(Connection.class, "clearWarnings");
+	/** Connection#createStatement. */
+	private static final Method CREATE_STATEMENT_INT_INT = method(Connection.class, "createStatement", int.class, int.class);
+	/** Connection#prepareStatement. */
+	private static final Method PREPARE_STATEMENT_STRING_INT_INT = method(Connection.class, "prepareStatement", String.class, int.class, int.class);
+	/** Connection#prepareCall. */
+	private static final Method PREPARE_CALL_STRING_INT_INT = method(Connection.class, "prepareCall", String.class, int.class, int.class);
+	/** Connection#getTypeMap. */
+	private static final Method GET_TYPE_MAP = method(Connection.class, "getTypeMap");
+	/** Connection#setTypeMap. */
+	private static final Method SET_TYPE_MAP = method(Connection.class, "setTypeMap", Map.class);
+	/** Connection#setHoldability. */
+	private static final Method SET_HOLDABILITY = method(Connection.class, "setHoldability", int.class);
+	/** Connection#getHoldability. */
+	private static final Method GET_HOLDABILITY = method(Connection.class, "getHoldability");
+	/** Connection#setSavepoint. */
+	private static final Method SET_SAVEPOINT_NOARGS = method(Connection.class, "setSavepoint");
+	/** Connection#setSavepoint. */
+	private static final Method SET_SAVEPOINT_STRING = method(Connection.class, "setSavepoint", String.class);
+	/** Connection#rollback. */
+	private static final Method ROLLBACK_SAVEPOINT = method(Connection.class, "rollback", Savepoint.class);
+	/** Connection#releaseSavepoint. */
+	private static final Method RELEASE_SAVEPOINT = method(Connection.class, "releaseSavepoint", Savepoint.class);
+	/** Connection#createStatement. */
+	private static final Method CREATE_STATEMENT_INT_INT_INT = method(Connection.class, "createStatement", int.class, int.class, int.class);
+	/** Connection#prepareStatement. */
+	private static final Method PREPARE_STATEMENT_STRING_INT_INT_INT = method(Connection.class, "prepareStatement", String.class, int.class, int.class, int.class);
+	/** Connection#prepareCall. */
+	private static final Method PREPARE_CALL_STRING_INT_INT_INT = method(Connection.class, "prepareCall", String.class, int.class, int.class, int.class);
+	/** Connection#prepareStatement. */
+	private static final Method PREPARE_STATEMENT_STRING_INT = method(Connection.class, "prepareStatement", String.class, int.class);
+	/** Connection#prepareStatement. */
+	private static final Method PREPARE_STATEMENT_STRING_INT_ARRAY = method(Connection.class, "prepareStatement", String.class, int[].class);
+	/** Connection#prepareStatement. */
+	private static final Method PREPARE_STATEMENT_STRING_STRING_ARRAY = method(Connection.class, "prepareStatement", String.class, String[].class);
+	// #ifdef JDK>6
+	/** Connection#createClob. */
+	private static final Method CREATE_CLOB = method(Connection.class, "createClob");
+	/** Connection#createBlob. */
+	private static final Method CREATE_BLOB = method(Connection.class, "createBlob");
+	/** Connection#createNClob. */
+	private static final Method CREATE_N_CLOB = method(Connection.class, "createNClob");
+	/** Connection#createSQLXML. */
+	private static final Method CREATE_SQLXML = method(Connection.class, "createSQLXML");
+	/** Connection#isValid. */
+	private static final Method IS_VALID = method(Connection.class, "isValid", int.class);
+	/** Connection#setClientInfo. */
+	private static final Method SET_CLIENT_INFO_STRING_STRING = method(Connection.class, "setClientInfo", String.class, String.class);
+	/** Connection#setClientInfo. */
+	private static final Method SET_CLIENT_INFO_PROPERTIES = method(Connection.class, "setClientInfo", Properties.class);
+	/** Connection#getClientInfo. */
+	private static final Method GET_CLIENT_INFO_STRING = method(Connection.class, "getClientInfo", String.class);
+	/** Connection#getClientInfo. */
+	private static final Method GET_CLIENT_INFO_NOARGS = method(Connection.class, "getClientInfo");
+	/** Connection#createArrayOf. */
+	private static final Method CREATE_ARRAY_OF = method(Connection.class, "createArrayOf", String.class, Object[].class);
+	/** Connection#createStruct. */
+	private static final Method CREATE_STRUCT = method(Connection.class, "createStruct", String.class, Object[].class);
+	/** Connection#isWrapperFor. */
+	private static final Method IS_WRAPPER_FOR = method(Connection.class, "isWrapperFor", Class.class);
+	/** Connection#unwrap. */
+	private static final Method UNWRAP = method(Connection.class, "unwrap", Class.class);
+	// #endif JDK>6
+	// #ifdef JDK7
+	/** Connection#setSchema. */
+	private static final Method SET_SCHEMA = method(Connection.class, "setSchema", String.class);
+	/** Connection#getSchema. */
+	private static final Method GET_SCHEMA = method(Connection.class, "getSchema");
+	/** Connection#abort. */
+	private static final Method ABORT = method(Connection.class, "abort", Executor.class);
+	/** Connection#setNetworkTimeout. */
+	private static final Method SET_NETWORK_TIMEOUT = method(Connection.class, "setNetworkTimeout", Executor.class, int.class);
+	/** Connection#getNetworkTimeout. */
+	private static final Method GET_NETWORK_TIMEOUT = method(Connection.class, "getNetworkTimeout");
+	// #endif JDK7
+
+	/** Constructor.
+	 * @param target connection to wrap
+	 * @param connectionHandle originating bonecp connection
+	 */
+	public RecordingConnection(Connection target, ConnectionHandle connectionHandle) {
+		super(target, connectionHandle);
+	}
+
+	// @Override
+	public Statement createStatement() throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.createStatement();
+		}
+		record(con, CREATE_STATEMENT_NOARGS);
+		try {
+			return memorize(this.target.createStatement(), con);
+		} catch (SQLException e) {
+			return memorize((Statement) recover(con, e), con);
+		}
+	}
+
+	// @Override
+	public PreparedStatement prepareStatement(String sql) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.prepareStatement(sql);
+		}
+		record(con, PREPARE_STATEMENT_STRING, sql);
+		try {
+			return memorize(this.target.prepareStatement(sql), con);
+		} catch (SQLException e) {
+			return memorize((PreparedStatement) recover(con, e), con);
+		}
+	}
+
+	// @Override
+	public CallableStatement prepareCall(String sql) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.prepareCall(sql);
+		}
+		record(con, PREPARE_CALL_STRING, sql);
+		try {
+			return memorize(this.target.prepareCall(sql), con);
+		} catch (SQLException e) {
+			return memorize((CallableStatement) recover(con, e), con);
+		}
+	}
+
+	// @Override
+	public String nativeSQL(String sql) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.nativeSQL(sql);
+		}
+		record(con, NATIVE_SQL, sql);
+		try {
+			return this.target.nativeSQL(sql);
+		} catch (SQLException e) {
+			return (String) recover(con, e);
+		}
+	}
+
+	// @Override
+	public void setAutoCommit(boolean autoCommit) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.setAutoCommit(autoCommit);
+			return;
+		}
+		record(con, SET_AUTO_COMMIT, autoCommit);
+		try {
+			this.target.setAutoCommit(autoCommit);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public boolean getAutoCommit() throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.getAutoCommit();
+		}
+		record(con, GET_AUTO_COMMIT);
+		try {
+			return this.target.getAutoCommit();
+		} catch (SQLException e) {
+			return (Boolean) recover(con, e);
+		}
+	}
+
+	// @Override
+	public void commit() throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.commit();
+			return;
+		}
+		record(con, COMMIT);
+		try {
+			this.target.commit();
+			con.getReplayLogBuffer().clear();
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public void rollback() throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.rollback();
+			return;
+		}
+		record(con, ROLLBACK_NOARGS);
+		try {
+			this.target.rollback();
+			con.getReplayLogBuffer().clear();
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public void close() throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.close();
+			return;
+		}
+		record(con, CLOSE);
+		try {
+			this.target.close();
+			con.getReplayLogBuffer().clear();
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public boolean isClosed() throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.isClosed();
+		}
+		record(con, IS_CLOSED);
+		try {
+			return this.target.isClosed();
+		} catch (SQLException e) {
+			return (Boolean) recover(con, e);
+		}
+	}
+
+	// @Override
+	public DatabaseMetaData getMetaData() throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.getMetaData();
+		}
+		record(con, GET_META_DATA);
+		try {
+			return this.target.getMetaData();
+		} catch (SQLException e) {
+			return (DatabaseMetaData) recover(con, e);
+		}
+	}
+
+	// @Override
+	public void setReadOnly(boolean readOnly) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.setReadOnly(readOnly);
+			return;
+		}
+		record(con, SET_READ_ONLY, readOnly);
+		try {
+			this.target.setReadOnly(readOnly);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public boolean isReadOnly() throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.isReadOnly();
+		}
+		record(con, IS_READ_ONLY);
+		try {
+			return this.target.isReadOnly();
+		} catch (SQLException e) {
+			return (Boolean) recover(con, e);
+		}
+	}
+
+	// @Override
+	public void setCatalog(String catalog) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.setCatalog(catalog);
+			return;
+		}
+		record(con, SET_CATALOG, catalog);
+		try {
+			this.target.setCatalog(catalog);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public String getCatalog() throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.getCatalog();
+		}
+		record(con, GET_CATALOG);
+		try {
+			return this.target.getCatalog();
+		} catch (SQLException e) {
+			return (String) recover(con, e);
+		}
+	}
+
+	// @Override
+	public void setTransactionIsolation(int level) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.setTransactionIsolation(level);
+			return;
+		}
+		record(con, SET_TRANSACTION_ISOLATION, level);
+		try {
+			this.target.setTransactionIsolation(level);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public int getTransactionIsolation() throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.getTransactionIsolation();
+		}
+		record(con, GET_TRANSACTION_ISOLATION);
+		try {
+			return this.target.getTransactionIsolation();
+		} catch (SQLException e) {
+			return (Integer) recover(con, e);
+		}
+	}
+
+	// @Override
+	public SQLWarning getWarnings() throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.getWarnings();
+		}
+		record(con, GET_WARNINGS);
+		try {
+			return this.target.getWarnings();
+		} catch (SQLException e) {
+			return (SQLWarning) recover(con, e);
+		}
+	}
+
+	// @Override
+	public void clearWarnings() throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.clearWarnings();
+			return;
+		}
+		record(con, CLEAR_WARNINGS);
+		try {
+			this.target.clearWarnings();
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public Statement createStatement(int resultSetType, int resultSetConcurrency) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.createStatement(resultSetType, resultSetConcurrency);
+		}
+		record(con, CREATE_STATEMENT_INT_INT, resultSetType, resultSetConcurrency);
+		try {
+			return memorize(this.target.createStatement(resultSetType, resultSetConcurrency), con);
+		} catch (SQLException e) {
+			return memorize((Statement) recover(con, e), con);
+		}
+	}
+
+	// @Override
+	public PreparedStatement prepareStatement(String sql, int resultSetType, int resultSetConcurrency) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.prepareStatement(sql, resultSetType, resultSetConcurrency);
+		}
+		record(con, PREPARE_STATEMENT_STRING_INT_INT, sql, resultSetType, resultSetConcurrency);
+		try {
+			return memorize(this.target.prepareStatement(sql, resultSetType, resultSetConcurrency), con);
+		} catch (SQLException e) {
+			return memorize((PreparedStatement) recover(con, e), con);
+		}
+	}
+
+	// @Override
+	public CallableStatement prepareCall(String sql, int resultSetType, int resultSetConcurrency) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.prepareCall(sql, resultSetType, resultSetConcurrency);
+		}
+		record(con, PREPARE_CALL_STRING_INT_INT, sql, resultSetType, resultSetConcurrency);
+		try {
+			return memorize(this.target.prepareCall(sql, resultSetType, resultSetConcurrency), con);
+		} catch (SQLException e) {
+			return memorize((CallableStatement) recover(con, e), con);
+		}
+	}
+
+	// @Override
+	public Map<String, Class<?>> getTypeMap() throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.getTypeMap();
+		}
+		record(con, GET_TYPE_MAP);
+		try {
+			return this.target.getTypeMap();
+		} catch (SQLException e) {
+			@SuppressWarnings("unchecked") // replaying getTypeMap returns what the driver's getTypeMap returned
+			Map<String, Class<?>> result = (Map<String, Class<?>>) recover(con, e);
+			return result;
+		}
+	}
+
+	// @Override
+	public void setTypeMap(Map<String, Class<?>> map) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.setTypeMap(map);
+			return;
+		}
+		record(con, SET_TYPE_MAP, map);
+		try {
+			this.target.setTypeMap(map);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public void setHoldability(int holdability) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.setHoldability(holdability);
+			return;
+		}
+		record(con, SET_HOLDABILITY, holdability);
+		try {
+			this.target.setHoldability(holdability);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public int getHoldability() throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.getHoldability();
+		}
+		record(con, GET_HOLDABILITY);
+		try {
+			return this.target.getHoldability();
+		} catch (SQLException e) {
+			return (Integer) recover(con, e);
+		}
+	}
+
+	// @Override
+	public Savepoint setSavepoint() throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.setSavepoint();
+		}
+		record(con, SET_SAVEPOINT_NOARGS);
+		try {
+			return this.target.setSavepoint();
+		} catch (SQLException e) {
+			return (Savepoint) recover(con, e);
+		}
+	}
+
+	// @Override
+	public Savepoint setSavepoint(String name) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.setSavepoint(name);
+		}
+		record(con, SET_SAVEPOINT_STRING, name);
+		try {
+			return this.target.setSavepoint(name);
+		} catch (SQLException e) {
+			return (Savepoint) recover(con, e);
+		}
+	}
+
+	// @Override
+	public void rollback(Savepoint savepoint) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.rollback(savepoint);
+			return;
+		}
+		record(con, ROLLBACK_SAVEPOINT, savepoint);
+		try {
+			this.target.rollback(savepoint);
+			con.getReplayLogBuffer().clear();
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public void releaseSavepoint(Savepoint savepoint) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.releaseSavepoint(savepoint);
+			return;
+		}
+		record(con, RELEASE_SAVEPOINT, savepoint);
+		try {
+			this.target.releaseSavepoint(savepoint);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public Statement createStatement(int resultSetType, int resultSetConcurrency, int resultSetHoldability) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.createStatement(resultSetType, resultSetConcurrency, resultSetHoldability);
+		}
+		record(con, CREATE_STATEMENT_INT_INT_INT, resultSetType, resultSetConcurrency, resultSetHoldability);
+		try {
+			return memorize(this.target.createStatement(resultSetType, resultSetConcurrency, resultSetHoldability), con);
+		} catch (SQLException e) {
+			return memorize((Statement) recover(con, e), con);
+		}
+	}
+
+	// @Override
+	public PreparedStatement prepareStatement(String sql, int resultSetType, int resultSetConcurrency, int resultSetHoldability) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.prepareStatement(sql, resultSetType, resultSetConcurrency, resultSetHoldability);
+		}
+		record(con, PREPARE_STATEMENT_STRING_INT_INT_INT, sql, resultSetType, resultSetConcurrency, resultSetHoldability);
+		try {
+			return memorize(this.target.prepareStatement(sql, resultSetType, resultSetConcurrency, resultSetHoldability), con);
+		} catch (SQLException e) {
+			return memorize((PreparedStatement) recover(con, e), con);
+		}
+	}
+
+	// @Override
+	public CallableStatement prepareCall(String sql, int resultSetType, int resultSetConcurrency, int resultSetHoldability) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.prepareCall(sql, resultSetType, resultSetConcurrency, resultSetHoldability);
+		}
+		record(con, PREPARE_CALL_STRING_INT_INT_INT, sql, resultSetType, resultSetConcurrency, resultSetHoldability);
+		try {
+			return memorize(this.target.prepareCall(sql, resultSetType, resultSetConcurrency, resultSetHoldability), con);
+		} catch (SQLException e) {
+			return memorize((CallableStatement) recover(con, e), con);
+		}
+	}
+
+	// @Override
+	public PreparedStatement prepareStatement(String sql, int autoGeneratedKeys) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.prepareStatement(sql, autoGeneratedKeys);
+		}
+		record(con, PREPARE_STATEMENT_STRING_INT, sql, autoGeneratedKeys);
+		try {
+			return memorize(this.target.prepareStatement(sql, autoGeneratedKeys), con);
+		} catch (SQLException e) {
+			return memorize((PreparedStatement) recover(con, e), con);
+		}
+	}
+
+	// @Override
+	public PreparedStatement prepareStatement(String sql, int[] columnIndexes) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.prepareStatement(sql, columnIndexes);
+		}
+		record(con, PREPARE_STATEMENT_STRING_INT_ARRAY, sql, columnIndexes);
+		try {
+			return memorize(this.target.prepareStatement(sql, columnIndexes), con);
+		} catch (SQLException e) {
+			return memorize((PreparedStatement) recover(con, e), con);
+		}
+	}
+
+	// @Override
+	public PreparedStatement prepareStatement(String sql, String[] columnNames) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.prepareStatement(sql, columnNames);
+		}
+		record(con, PREPARE_STATEMENT_STRING_STRING_ARRAY, sql, columnNames);
+		try {
+			return memorize(this.target.prepareStatement(sql, columnNames), con);
+		} catch (SQLException e) {
+			return memorize((PreparedStatement) recover(con, e), con);
+		}
+	}
+
+	// #ifdef JDK>6
+	// @Override
+	public Clob createClob() throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.createClob();
+		}
+		record(con, CREATE_CLOB);
+		try {
+			return this.target.createClob();
+		} catch (SQLException e) {
+			return (Clob) recover(con, e);
+		}
+	}
+
+	// @Override
+	public Blob createBlob() throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.createBlob();
+		}
+		record(con, CREATE_BLOB);
+		try {
+			return this.target.createBlob();
+		} catch (SQLException e) {
+			return (Blob) recover(con, e);
+		}
+	}
+
+	// @Override
+	public NClob createNClob() throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.createNClob();
+		}
+		record(con, CREATE_N_CLOB);
+		try {
+			return this.target.createNClob();
+		} catch (SQLException e) {
+			return (NClob) recover(con, e);
+		}
+	}
+
+	// @Override
+	public SQLXML createSQLXML() throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.createSQLXML();
+		}
+		record(con, CREATE_SQLXML);
+		try {
+			return this.target.createSQLXML();
+		} catch (SQLException e) {
+			return (SQLXML) recover(con, e);
+		}
+	}
+
+	// @Override
+	public boolean isValid(int timeout) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.isValid(timeout);
+		}
+		record(con, IS_VALID, timeout);
+		try {
+			return this.target.isValid(timeout);
+		} catch (SQLException e) {
+			return (Boolean) recover(con, e);
+		}
+	}
+
+	// @Override
+	public void setClientInfo(String name, String value) throws SQLClientInfoException {
+		// client info failures do not signal a broken connection so there is nothing to recover here, just remember the call.
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con != null){
+			record(con, SET_CLIENT_INFO_STRING_STRING, name, value);
+		}
+		this.target.setClientInfo(name, value);
+	}
+
+	// @Override
+	public void setClientInfo(Properties properties) throws SQLClientInfoException {
+		// client info failures do not signal a broken connection so there is nothing to recover here, just remember the call.
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con != null){
+			record(con, SET_CLIENT_INFO_PROPERTIES, properties);
+		}
+		this.target.setClientInfo(properties);
+	}
+
+	// @Override
+	public String getClientInfo(String name) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.getClientInfo(name);
+		}
+		record(con, GET_CLIENT_INFO_STRING, name);
+		try {
+			return this.target.getClientInfo(name);
+		} catch (SQLException e) {
+			return (String) recover(con, e);
+		}
+	}
+
+	// @Override
+	public Properties getClientInfo() throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.getClientInfo();
+		}
+		record(con, GET_CLIENT_INFO_NOARGS);
+		try {
+			return this.target.getClientInfo();
+		} catch (SQLException e) {
+			return (Properties) recover(con, e);
+		}
+	}
+
+	// @Override
+	public Array createArrayOf(String typeName, Object[] elements) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.createArrayOf(typeName, elements);
+		}
+		record(con, CREATE_ARRAY_OF, typeName, elements);
+		try {
+			return this.target.createArrayOf(typeName, elements);
+		} catch (SQLException e) {
+			return (Array) recover(con, e);
+		}
+	}
+
+	// @Override
+	public Struct createStruct(String typeName, Object[] attributes) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.createStruct(typeName, attributes);
+		}
+		record(con, CREATE_STRUCT, typeName, attributes);
+		try {
+			return this.target.createStruct(typeName, attributes);
+		} catch (SQLException e) {
+			return (Struct) recover(con, e);
+		}
+	}
+
+	// @Override
+	public boolean isWrapperFor(Class<?> iface) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.isWrapperFor(iface);
+		}
+		record(con, IS_WRAPPER_FOR, iface);
+		try {
+			return this.target.isWrapperFor(iface);
+		} catch (SQLException e) {
+			return (Boolean) recover(con, e);
+		}
+	}
+
+	// @Override
+	public <T> T unwrap(Class<T> iface) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.unwrap(iface);
+		}
+		record(con, UNWRAP, iface);
+		try {
+			return this.target.unwrap(iface);
+		} catch (SQLException e) {
+			return iface.cast(recover(con, e));
+		}
+	}
+	// #endif JDK>6
+
+	// #ifdef JDK7
+	// @Override
+	public void setSchema(String schema) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.setSchema(schema);
+			return;
+		}
+		record(con, SET_SCHEMA, schema);
+		try {
+			this.target.setSchema(schema);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public String getSchema() throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.getSchema();
+		}
+		record(con, GET_SCHEMA);
+		try {
+			return this.target.getSchema();
+		} catch (SQLException e) {
+			return (String) recover(con, e);
+		}
+	}
+
+	// @Override
+	public void abort(Executor executor) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.abort(executor);
+			return;
+		}
+		record(con, ABORT, executor);
+		try {
+			this.target.abort(executor);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public void setNetworkTimeout(Executor executor, int milliseconds) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.setNetworkTimeout(executor, milliseconds);
+			return;
+		}
+		record(con, SET_NETWORK_TIMEOUT, executor, milliseconds);
+		try {
+			this.target.setNetworkTimeout(executor, milliseconds);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public int getNetworkTimeout() throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.getNetworkTimeout();
+		}
+		record(con, GET_NETWORK_TIMEOUT);
+		try {
+			return this.target.getNetworkTimeout();
+		} catch (SQLException e) {
+			return (Integer) recover(con, e);
+		}
+	}
+	// #endif JDK7
+}
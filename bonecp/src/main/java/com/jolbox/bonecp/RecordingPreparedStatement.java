@@ -0,0 +1,994 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+/**
+ * 
+ */
+package com.jolbox.bonecp;
+
+import java.io.InputStream;
+import java.io.Reader;
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.net.URL;
+import java.sql.Array;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.Date;
+import java.sql.NClob;
+import java.sql.ParameterMetaData;
+import java.sql.PreparedStatement;
+import java.sql.Ref;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.RowId;
+import java.sql.SQLException;
+import java.sql.SQLXML;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.Calendar;
+
+import com.jolbox.bonecp.proxy.PreparedStatementProxy;
+
+/** Records calls made on a prepared statement for transaction replay, calling the target directly.
+ * @author wallacew
+ * @param <T> statement type
+ *
+ */
+public class RecordingPreparedStatement<T extends PreparedStatement> extends RecordingStatement<T> implements PreparedStatementProxy {
+	/** PreparedStatement#executeQuery. */
+	private static final Method EXECUTE_QUERY = method(PreparedStatement.class, "executeQuery");
+	/** PreparedStatement#executeUpdate. */
+	private static final Method EXECUTE_UPDATE = method(PreparedStatement.class, "executeUpdate");
+	/** PreparedStatement#setNull. */
+	private static final Method SET_NULL_INT_INT = method(PreparedStatement.class, "setNull", int.class, int.class);
+	/** PreparedStatement#setBoolean. */
+	private static final Method SET_BOOLEAN = method(PreparedStatement.class, "setBoolean", int.class, boolean.class);
+	/** PreparedStatement#setByte. */
+	private static final Method SET_BYTE = method(PreparedStatement.class, "setByte", int.class, byte.class);
+	/** PreparedStatement#setShort. */
+	private static final Method SET_SHORT = method(PreparedStatement.class, "setShort", int.class, short.class);
+	/** PreparedStatement#setInt. */
+	private static final Method SET_INT = method(PreparedStatement.class, "setInt", int.class, int.class);
+	/** PreparedStatement#setLong. */
+	private static final Method SET_LONG = method(PreparedStatement.class, "setLong", int.class, long.class);
+	/** PreparedStatement#setFloat. */
+	private static final Method SET_FLOAT = method(PreparedStatement.class, "setFloat", int.class, float.class);
+	/** PreparedStatement#setDouble. */
+	private static final Method SET_DOUBLE = method(PreparedStatement.class, "setDouble", int.class, double.class);
+	/** PreparedStatement#setBigDecimal. */
+	private static final Method SET_BIG_DECIMAL = method(PreparedStatement.class, "setBigDecimal", int.class, BigDecimal.class);
+	/** PreparedStatement#setString. */
+	private static final Method SET_STRING = method(PreparedStatement.class, "setString", int.class, String.class);
+	/** PreparedStatement#setBytes. */
+	private static final Method SET_BYTES = method(PreparedStatement.class, "setBytes", int.class, byte[].class);
+	/** PreparedStatement#setDate. */
+	private static final Method SET_DATE_INT_DATE = method(PreparedStatement.class, "setDate", int.class, Date.class);
+	/** PreparedStatement#setTime. */
+	private static final Method SET_TIME_INT_TIME = method(PreparedStatement.class, "setTime", int.class, Time.class);
+	/** PreparedStatement#setTimestamp. */
+	private static final Method SET_TIMESTAMP_INT_TIMESTAMP = method(PreparedStatement.class, "setTimestamp", int.class, Timestamp.class);
+	/** PreparedStatement#setAsciiStream. */
+	private static final Method SET_ASCII_STREAM_INT_INPUTSTREAM_INT = method(PreparedStatement.class, "setAsciiStream", int.class, InputStream.class, int.class);
+	/** PreparedStatement#setUnicodeStream. */
+	private static final Method SET_UNICODE_STREAM = method(PreparedStatement.class, "setUnicodeStream", int.class, InputStream.class, int.class);
+	/** PreparedStatement#setBinaryStream. */
+	private static final Method SET_BINARY_STREAM_INT_INPUTSTREAM_INT = method(PreparedStatement.class, "setBinaryStream", int.class, InputStream.class, int.class);
+	/** PreparedStatement#clearParameters. */
+	private static final Method CLEAR_PARAMETERS = method(PreparedStatement.class, "clearParameters");
+	/** PreparedStatement#setObject. */
+	private static final Method SET_OBJECT_INT_OBJECT_INT = method(PreparedStatement.class, "setObject", int.class, Object.class, int.class);
+	/** PreparedStatement#setObject. */
+	private static final Method SET_OBJECT_INT_OBJECT = method(PreparedStatement.class, "setObject", int.class, Object.class);
+	/** PreparedStatement#execute. */
+	private static final Method EXECUTE = method(PreparedStatement.class, "execute");
+	/** PreparedStatement#addBatch. */
+	private static final Method ADD_BATCH = method(PreparedStatement.class, "addBatch");
+	/** PreparedStatement#setCharacterStream. */
+	private static final Method SET_CHARACTER_STREAM_INT_READER_INT = method(PreparedStatement.class, "setCharacterStream", int.class, Reader.class, int.class);
+	/** PreparedStatement#setRef. */
+	private static final Method SET_REF = method(PreparedStatement.class, "setRef", int.class, Ref.class);
+	/** PreparedStatement#setBlob. */
+	private static final Method SET_BLOB_INT_BLOB = method(PreparedStatement.class, "setBlob", int.class, Blob.class);
+	/** PreparedStatement#setClob. */
+	private static final Method SET_CLOB_INT_CLOB = method(PreparedStatement.class, "setClob", int.class, Clob.class);
+	/** PreparedStatement#setArray. */
+	private static final Method SET_ARRAY = method(PreparedStatement.class, "setArray", int.class, Array.class);
+	/** PreparedStatement#getMetaData. */
+	private static final Method GET_META_DATA = method(PreparedStatement.class, "getMetaData");
+	/** PreparedStatement#setDate. */
+	private static final Method SET_DATE_INT_DATE_CALENDAR = method(PreparedStatement.class, "setDate", int.class, Date.class, Calendar.class);
+	/** PreparedStatement#setTime. */
+	private static final Method SET_TIME_INT_TIME_CALENDAR = method(PreparedStatement.class, "setTime", int.class, Time.class, Calendar.class);
+	/** PreparedStatement#setTimestamp. */
+	private static final Method SET_TIMESTAMP_INT_TIMESTAMP_CALENDAR = method(PreparedStatement.class, "setTimestamp", int.class, Timestamp.class, Calendar.class);
+	/** PreparedStatement#setNull. */
+	private static final Method SET_NULL_INT_INT_STRING = method(PreparedStatement.class, "setNull", int.class, int.class, String.class);
+	/** PreparedStatement#setURL. */
+	private static final Method SET_URL = method(PreparedStatement.class, "setURL", int.class, URL.class);
+	/** PreparedStatement#getParameterMetaData. */
+	private static final Method GET_PARAMETER_META_DATA = method(PreparedStatement.class, "getParameterMetaData");
+	/** PreparedStatement#setObject. */
+	private static final Method SET_OBJECT_INT_OBJECT_INT_INT = method(PreparedStatement.class, "setObject", int.class, Object.class, int.class, int.class);
+	// #ifdef JDK>6
+	/** PreparedStatement#setRowId. */
+	private static final Method SET_ROW_ID = method(PreparedStatement.class, "setRowId", int.class, RowId.class);
+	/** PreparedStatement#setNString. */
+	private static final Method SET_N_STRING = method(PreparedStatement.class, "setNString", int.class, String.class);
+	/** PreparedStatement#setNCharacterStream. */
+	private static final Method SET_N_CHARACTER_STREAM_INT_READER_LONG = method(PreparedStatement.class, "setNCharacterStream", int.class, Reader.class, long.class);
+	/** PreparedStatement#setNClob. */
+	private static final Method SET_N_CLOB_INT_NCLOB = method(PreparedStatement.class, "setNClob", int.class, NClob.class);
+	/** PreparedStatement#setClob. */
+	private static final Method SET_CLOB_INT_READER_LONG = method(PreparedStatement.class, "setClob", int.class, Reader.class, long.class);
+	/** PreparedStatement#setBlob. */
+	private static final Method SET_BLOB_INT_INPUTSTREAM_LONG = method(PreparedStatement.class, "setBlob", int.class, InputStream.class, long.class);
+	/** PreparedStatement#setNClob. */
+	private static final Method SET_N_CLOB_INT_READER_LONG = method(PreparedStatement.class, "setNClob", int.class, Reader.class, long.class);
+	/** PreparedStatement#setSQLXML. */
+	private static final Method SET_SQLXML = method(PreparedStatement.class, "setSQLXML", int.class, SQLXML.class);
+	/** PreparedStatement#setAsciiStream. */
+	private static final Method SET_ASCII_STREAM_INT_INPUTSTREAM_LONG = method(PreparedStatement.class, "setAsciiStream", int.class, InputStream.class, long.class);
+	/** PreparedStatement#setBinaryStream. */
+	private static final Method SET_BINARY_STREAM_INT_INPUTSTREAM_LONG = method(PreparedStatement.class, "setBinaryStream", int.class, InputStream.class, long.class);
+	/** PreparedStatement#setCharacterStream. */
+	private static final Method SET_CHARACTER_STREAM_INT_READER_LONG = method(PreparedStatement.class, "setCharacterStream", int.class, Reader.class, long.class);
+	/** PreparedStatement#setAsciiStream. */
+	private static final Method SET_ASCII_STREAM_INT_INPUTSTREAM = method(PreparedStatement.class, "setAsciiStream", int.class, InputStream.class);
+	/** PreparedStatement#setBinaryStream. */
+	private static final Method SET_BINARY_STREAM_INT_INPUTSTREAM = method(PreparedStatement.class, "setBinaryStream", int.class, InputStream.class);
+	/** PreparedStatement#setCharacterStream. */
+	private static final Method SET_CHARACTER_STREAM_INT_READER = method(PreparedStatement.class, "setCharacterStream", int.class, Reader.class);
+	/** PreparedStatement#setNCharacterStream. */
+	private static final Method SET_N_CHARACTER_STREAM_INT_READER = method(PreparedStatement.class, "setNCharacterStream", int.class, Reader.class);
+	/** PreparedStatement#setClob. */
+	private static final Method SET_CLOB_INT_READER = method(PreparedStatement.class, "setClob", int.class, Reader.class);
+	/** PreparedStatement#setBlob. */
+	private static final Method SET_BLOB_INT_INPUTSTREAM = method(PreparedStatement.class, "setBlob", int.class, InputStream.class);
+	/** PreparedStatement#setNClob. */
+	private static final Method SET_N_CLOB_INT_READER = method(PreparedStatement.class, "setNClob", int.class, Reader.class);
+	// #endif JDK>6
+
+	/** Constructor.
+	 * @param target statement to wrap
+	 * @param connectionHandle originating bonecp connection
+	 */
+	public RecordingPreparedStatement(T target, ConnectionHandle connectionHandle) {
+		super(target, connectionHandle);
+	}
+
+	// @Override
+	public ResultSet executeQuery() throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.executeQuery();
+		}
+		record(con, EXECUTE_QUERY);
+		try {
+			return this.target.executeQuery();
+		} catch (SQLException e) {
+			return (ResultSet) recover(con, e);
+		}
+	}
+
+	// @Override
+	public int executeUpdate() throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.executeUpdate();
+		}
+		record(con, EXECUTE_UPDATE);
+		try {
+			return this.target.executeUpdate();
+		} catch (SQLException e) {
+			return (Integer) recover(con, e);
+		}
+	}
+
+	// @Override
+	public void setNull(int parameterIndex, int sqlType) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.setNull(parameterIndex, sqlType);
+			return;
+		}
+		record(con, SET_NULL_INT_INT, parameterIndex, sqlType);
+		try {
+			this.target.setNull(parameterIndex, sqlType);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public void setBoolean(int parameterIndex, boolean x) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.setBoolean(parameterIndex, x);
+			return;
+		}
+		record(con, SET_BOOLEAN, parameterIndex, x);
+		try {
+			this.target.setBoolean(parameterIndex, x);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public void setByte(int parameterIndex, byte x) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.setByte(parameterIndex, x);
+			return;
+		}
+		record(con, SET_BYTE, parameterIndex, x);
+		try {
+			this.target.setByte(parameterIndex, x);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public void setShort(int parameterIndex, short x) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.setShort(parameterIndex, x);
+			return;
+		}
+		record(con, SET_SHORT, parameterIndex, x);
+		try {
+			this.target.setShort(parameterIndex, x);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public void setInt(int parameterIndex, int x) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.setInt(parameterIndex, x);
+			return;
+		}
+		record(con, SET_INT, parameterIndex, x);
+		try {
+			this.target.setInt(parameterIndex, x);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public void setLong(int parameterIndex, long x) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.setLong(parameterIndex, x);
+			return;
+		}
+		record(con, SET_LONG, parameterIndex, x);
+		try {
+			this.target.setLong(parameterIndex, x);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public void setFloat(int parameterIndex, float x) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.setFloat(parameterIndex, x);
+			return;
+		}
+		record(con, SET_FLOAT, parameterIndex, x);
+		try {
+			this.target.setFloat(parameterIndex, x);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public void setDouble(int parameterIndex, double x) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.setDouble(parameterIndex, x);
+			return;
+		}
+		record(con, SET_DOUBLE, parameterIndex, x);
+		try {
+			this.target.setDouble(parameterIndex, x);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public void setBigDecimal(int parameterIndex, BigDecimal x) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.setBigDecimal(parameterIndex, x);
+			return;
+		}
+		record(con, SET_BIG_DECIMAL, parameterIndex, x);
+		try {
+			this.target.setBigDecimal(parameterIndex, x);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public void setString(int parameterIndex, String x) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.setString(parameterIndex, x);
+			return;
+		}
+		record(con, SET_STRING, parameterIndex, x);
+		try {
+			this.target.setString(parameterIndex, x);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public void setBytes(int parameterIndex, byte[] x) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.setBytes(parameterIndex, x);
+			return;
+		}
+		record(con, SET_BYTES, parameterIndex, x);
+		try {
+			this.target.setBytes(parameterIndex, x);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public void setDate(int parameterIndex, Date x) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.setDate(parameterIndex, x);
+			return;
+		}
+		record(con, SET_DATE_INT_DATE, parameterIndex, x);
+		try {
+			this.target.setDate(parameterIndex, x);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public void setTime(int parameterIndex, Time x) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.setTime(parameterIndex, x);
+			return;
+		}
+		record(con, SET_TIME_INT_TIME, parameterIndex, x);
+		try {
+			this.target.setTime(parameterIndex, x);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public void setTimestamp(int parameterIndex, Timestamp x) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.setTimestamp(parameterIndex, x);
+			return;
+		}
+		record(con, SET_TIMESTAMP_INT_TIMESTAMP, parameterIndex, x);
+		try {
+			this.target.setTimestamp(parameterIndex, x);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public void setAsciiStream(int parameterIndex, InputStream x, int length) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.setAsciiStream(parameterIndex, x, length);
+			return;
+		}
+		record(con, SET_ASCII_STREAM_INT_INPUTSTREAM_INT, parameterIndex, x, length);
+		try {
+			this.target.setAsciiStream(parameterIndex, x, length);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public void setUnicodeStream(int parameterIndex, InputStream x, int length) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.setUnicodeStream(parameterIndex, x, length);
+			return;
+		}
+		record(con, SET_UNICODE_STREAM, parameterIndex, x, length);
+		try {
+			this.target.setUnicodeStream(parameterIndex, x, length);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public void setBinaryStream(int parameterIndex, InputStream x, int length) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.setBinaryStream(parameterIndex, x, length);
+			return;
+		}
+		record(con, SET_BINARY_STREAM_INT_INPUTSTREAM_INT, parameterIndex, x, length);
+		try {
+			this.target.setBinaryStream(parameterIndex, x, length);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public void clearParameters() throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.clearParameters();
+			return;
+		}
+		record(con, CLEAR_PARAMETERS);
+		try {
+			this.target.clearParameters();
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public void setObject(int parameterIndex, Object x, int targetSqlType) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.setObject(parameterIndex, x, targetSqlType);
+			return;
+		}
+		record(con, SET_OBJECT_INT_OBJECT_INT, parameterIndex, x, targetSqlType);
+		try {
+			this.target.setObject(parameterIndex, x, targetSqlType);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public void setObject(int parameterIndex, Object x) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.setObject(parameterIndex, x);
+			return;
+		}
+		record(con, SET_OBJECT_INT_OBJECT, parameterIndex, x);
+		try {
+			this.target.setObject(parameterIndex, x);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public boolean execute() throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.execute();
+		}
+		record(con, EXECUTE);
+		try {
+			return this.target.execute();
+		} catch (SQLException e) {
+			return (Boolean) recover(con, e);
+		}
+	}
+
+	// @Override
+	public void addBatch() throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.addBatch();
+			return;
+		}
+		record(con, ADD_BATCH);
+		try {
+			this.target.addBatch();
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public void setCharacterStream(int parameterIndex, Reader reader, int length) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.setCharacterStream(parameterIndex, reader, length);
+			return;
+		}
+		record(con, SET_CHARACTER_STREAM_INT_READER_INT, parameterIndex, reader, length);
+		try {
+			this.target.setCharacterStream(parameterIndex, reader, length);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public void setRef(int parameterIndex, Ref x) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.setRef(parameterIndex, x);
+			return;
+		}
+		record(con, SET_REF, parameterIndex, x);
+		try {
+			this.target.setRef(parameterIndex, x);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public void setBlob(int parameterIndex, Blob x) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.setBlob(parameterIndex, x);
+			return;
+		}
+		record(con, SET_BLOB_INT_BLOB, parameterIndex, x);
+		try {
+			this.target.setBlob(parameterIndex, x);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public void setClob(int parameterIndex, Clob x) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.setClob(parameterIndex, x);
+			return;
+		}
+		record(con, SET_CLOB_INT_CLOB, parameterIndex, x);
+		try {
+			this.target.setClob(parameterIndex, x);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public void setArray(int parameterIndex, Array x) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.setArray(parameterIndex, x);
+			return;
+		}
+		record(con, SET_ARRAY, parameterIndex, x);
+		try {
+			this.target.setArray(parameterIndex, x);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public ResultSetMetaData getMetaData() throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.getMetaData();
+		}
+		record(con, GET_META_DATA);
+		try {
+			return this.target.getMetaData();
+		} catch (SQLException e) {
+			return (ResultSetMetaData) recover(con, e);
+		}
+	}
+
+	// @Override
+	public void setDate(int parameterIndex, Date x, Calendar cal) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.setDate(parameterIndex, x, cal);
+			return;
+		}
+		record(con, SET_DATE_INT_DATE_CALENDAR, parameterIndex, x, cal);
+		try {
+			this.target.setDate(parameterIndex, x, cal);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public void setTime(int parameterIndex, Time x, Calendar cal) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.setTime(parameterIndex, x, cal);
+			return;
+		}
+		record(con, SET_TIME_INT_TIME_CALENDAR, parameterIndex, x, cal);
+		try {
+			this.target.setTime(parameterIndex, x, cal);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public void setTimestamp(int parameterIndex, Timestamp x, Calendar cal) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.setTimestamp(parameterIndex, x, cal);
+			return;
+		}
+		record(con, SET_TIMESTAMP_INT_TIMESTAMP_CALENDAR, parameterIndex, x, cal);
+		try {
+			this.target.setTimestamp(parameterIndex, x, cal);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public void setNull(int parameterIndex, int sqlType, String typeName) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.setNull(parameterIndex, sqlType, typeName);
+			return;
+		}
+		record(con, SET_NULL_INT_INT_STRING, parameterIndex, sqlType, typeName);
+		try {
+			this.target.setNull(parameterIndex, sqlType, typeName);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public void setURL(int parameterIndex, URL x) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.setURL(parameterIndex, x);
+			return;
+		}
+		record(con, SET_URL, parameterIndex, x);
+		try {
+			this.target.setURL(parameterIndex, x);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public ParameterMetaData getParameterMetaData() throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.getParameterMetaData();
+		}
+		record(con, GET_PARAMETER_META_DATA);
+		try {
+			return this.target.getParameterMetaData();
+		} catch (SQLException e) {
+			return (ParameterMetaData) recover(con, e);
+		}
+	}
+
+	// @Override
+	public void setObject(int parameterIndex, Object x, int targetSqlType, int scaleOrLength) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.setObject(parameterIndex, x, targetSqlType, scaleOrLength);
+			return;
+		}
+		record(con, SET_OBJECT_INT_OBJECT_INT_INT, parameterIndex, x, targetSqlType, scaleOrLength);
+		try {
+			this.target.setObject(parameterIndex, x, targetSqlType, scaleOrLength);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// #ifdef JDK>6
+	// @Override
+	public void setRowId(int parameterIndex, RowId x) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.setRowId(parameterIndex, x);
+			return;
+		}
+		record(con, SET_ROW_ID, parameterIndex, x);
+		try {
+			this.target.setRowId(parameterIndex, x);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public void setNString(int parameterIndex, String value) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.setNString(parameterIndex, value);
+			return;
+		}
+		record(con, SET_N_STRING, parameterIndex, value);
+		try {
+			this.target.setNString(parameterIndex, value);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public void setNCharacterStream(int parameterIndex, Reader value, long length) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.setNCharacterStream(parameterIndex, value, length);
+			return;
+		}
+		record(con, SET_N_CHARACTER_STREAM_INT_READER_LONG, parameterIndex, value, length);
+		try {
+			this.target.setNCharacterStream(parameterIndex, value, length);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public void setNClob(int parameterIndex, NClob value) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.setNClob(parameterIndex, value);
+			return;
+		}
+		record(con, SET_N_CLOB_INT_NCLOB, parameterIndex, value);
+		try {
+			this.target.setNClob(parameterIndex, value);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public void setClob(int parameterIndex, Reader reader, long length) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.setClob(parameterIndex, reader, length);
+			return;
+		}
+		record(con, SET_CLOB_INT_READER_LONG, parameterIndex, reader, length);
+		try {
+			this.target.setClob(parameterIndex, reader, length);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public void setBlob(int parameterIndex, InputStream inputStream, long length) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.setBlob(parameterIndex, inputStream, length);
+			return;
+		}
+		record(con, SET_BLOB_INT_INPUTSTREAM_LONG, parameterIndex, inputStream, length);
+		try {
+			this.target.setBlob(parameterIndex, inputStream, length);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public void setNClob(int parameterIndex, Reader reader, long length) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.setNClob(parameterIndex, reader, length);
+			return;
+		}
+		record(con, SET_N_CLOB_INT_READER_LONG, parameterIndex, reader, length);
+		try {
+			this.target.setNClob(parameterIndex, reader, length);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public void setSQLXML(int parameterIndex, SQLXML xmlObject) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.setSQLXML(parameterIndex, xmlObject);
+			return;
+		}
+		record(con, SET_SQLXML, parameterIndex, xmlObject);
+		try {
+			this.target.setSQLXML(parameterIndex, xmlObject);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public void setAsciiStream(int parameterIndex, InputStream x, long length) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.setAsciiStream(parameterIndex, x, length);
+			return;
+		}
+		record(con, SET_ASCII_STREAM_INT_INPUTSTREAM_LONG, parameterIndex, x, length);
+		try {
+			this.target.setAsciiStream(parameterIndex, x, length);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public void setBinaryStream(int parameterIndex, InputStream x, long length) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.setBinaryStream(parameterIndex, x, length);
+			return;
+		}
+		record(con, SET_BINARY_STREAM_INT_INPUTSTREAM_LONG, parameterIndex, x, length);
+		try {
+			this.target.setBinaryStream(parameterIndex, x, length);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public void setCharacterStream(int parameterIndex, Reader reader, long length) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.setCharacterStream(parameterIndex, reader, length);
+			return;
+		}
+		record(con, SET_CHARACTER_STREAM_INT_READER_LONG, parameterIndex, reader, length);
+		try {
+			this.target.setCharacterStream(parameterIndex, reader, length);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public void setAsciiStream(int parameterIndex, InputStream x) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.setAsciiStream(parameterIndex, x);
+			return;
+		}
+		record(con, SET_ASCII_STREAM_INT_INPUTSTREAM, parameterIndex, x);
+		try {
+			this.target.setAsciiStream(parameterIndex, x);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public void setBinaryStream(int parameterIndex, InputStream x) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.setBinaryStream(parameterIndex, x);
+			return;
+		}
+		record(con, SET_BINARY_STREAM_INT_INPUTSTREAM, parameterIndex, x);
+		try {
+			this.target.setBinaryStream(parameterIndex, x);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public void setCharacterStream(int parameterIndex, Reader reader) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.setCharacterStream(parameterIndex, reader);
+			return;
+		}
+		record(con, SET_CHARACTER_STREAM_INT_READER, parameterIndex, reader);
+		try {
+			this.target.setCharacterStream(parameterIndex, reader);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public void setNCharacterStream(int parameterIndex, Reader value) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.setNCharacterStream(parameterIndex, value);
+			return;
+		}
+		record(con, SET_N_CHARACTER_STREAM_INT_READER, parameterIndex, value);
+		try {
+			this.target.setNCharacterStream(parameterIndex, value);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public void setClob(int parameterIndex, Reader reader) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.setClob(parameterIndex, reader);
+			return;
+		}
+		record(con, SET_CLOB_INT_READER, parameterIndex, reader);
+		try {
+			this.target.setClob(parameterIndex, reader);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public void setBlob(int parameterIndex, InputStream inputStream) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.setBlob(parameterIndex, inputStream);
+			return;
+		}
+		record(con, SET_BLOB_INT_INPUTSTREAM, parameterIndex, inputStream);
+		try {
+			this.target.setBlob(parameterIndex, inputStream);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public void setNClob(int parameterIndex, Reader reader) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.setNClob(parameterIndex, reader);
+			return;
+		}
+		record(con, SET_N_CLOB_INT_READER, parameterIndex, reader);
+		try {
+			this.target.setNClob(parameterIndex, reader);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+	// #endif JDK>6
+}
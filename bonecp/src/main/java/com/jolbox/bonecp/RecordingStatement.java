@@ -0,0 +1,771 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+/**
+ * 
+ */
+package com.jolbox.bonecp;
+
+import java.lang.reflect.Method;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLWarning;
+import java.sql.Statement;
+
+import com.jolbox.bonecp.proxy.StatementProxy;
+
+/** Records calls made on a statement for transaction replay, calling the target directly.
+ * @author wallacew
+ * @param <T> statement type
+ *
+ */
+public class RecordingStatement<T extends Statement> extends MemorizeTransactionProxy<T> implements StatementProxy {
+	/** Statement#executeQuery. */
+	private static final Method EXECUTE_QUERY = method(Statement.class, "executeQuery", String.class);
+	/** Statement#executeUpdate. */
+	private static final Method EXECUTE_UPDATE_STRING = method(Statement.class, "executeUpdate", String.class);
+	/** Statement#close. */
+	private static final Method CLOSE = method(Statement.class, "close");
+	/** Statement#getMaxFieldSize. */
+	private static final Method GET_MAX_FIELD_SIZE = method(Statement.class, "getMaxFieldSize");
+	/** Statement#setMaxFieldSize. */
+	private static final Method SET_MAX_FIELD_SIZE = method(Statement.class, "setMaxFieldSize", int.class);
+	/** Statement#getMaxRows. */
+	private static final Method GET_MAX_ROWS = method(Statement.class, "getMaxRows");
+	/** Statement#setMaxRows. */
+	private static final Method SET_MAX_ROWS = method(Statement.class, "setMaxRows", int.class);
+	/** Statement#setEscapeProcessing. */
+	private static final Method SET_ESCAPE_PROCESSING = method(Statement.class, "setEscapeProcessing", boolean.class);
+	/** Statement#getQueryTimeout. */
+	private static final Method GET_QUERY_TIMEOUT = method(Statement.class, "getQueryTimeout");
+	/** Statement#setQueryTimeout. */
+	private static final Method SET_QUERY_TIMEOUT = method(Statement.class, "setQueryTimeout", int.class);
+	/** Statement#cancel. */
+	private static final Method CANCEL = method(Statement.class, "cancel");
+	/** Statement#getWarnings. */
+	private static final Method GET_WARNINGS = method(Statement.class, "getWarnings");
+	/** Statement#clearWarnings. */
+	private static final Method CLEAR_WARNINGS = method(Statement.class, "clearWarnings");
+	/** Statement#setCursorName. */
+	private static final Method SET_CURSOR_NAME = method(Statement.class, "setCursorName", String.class);
+	/** Statement#execute. */
+	private static final Method EXECUTE_STRING = method(Statement.class, "execute", String.class);
+	/** Statement#getResultSet. */
+	private static final Method GET_RESULT_SET = method(Statement.class, "getResultSet");
+	/** Statement#getUpdateCount. */
+	private static final Method GET_UPDATE_COUNT = method(Statement.class, "getUpdateCount");
+	/** Statement#getMoreResults. */
+	private static final Method GET_MORE_RESULTS_NOARGS = method(Statement.class, "getMoreResults");
+	/** Statement#setFetchDirection. */
+	private static final Method SET_FETCH_DIRECTION = method(Statement.class, "setFetchDirection", int.class);
+	/** Statement#getFetchDirection. */
+	private static final Method GET_FETCH_DIRECTION = method(Statement.class, "getFetchDirection");
+	/** Statement#setFetchSize. */
+	private static final Method SET_FETCH_SIZE = method(Statement.class, "setFetchSize", int.class);
+	/** Statement#getFetchSize. */
+	private static final Method GET_FETCH_SIZE = method(Statement.class, "getFetchSize");
+	/** Statement#getResultSetConcurrency. */
+	private static final Method GET_RESULT_SET_CONCURRENCY = method(Statement.class, "getResultSetConcurrency");
+	/** Statement#getResultSetType. */
+	private static final Method GET_RESULT_SET_TYPE = method(Statement.class, "getResultSetType");
+	/** Statement#addBatch. */
+	private static final Method ADD_BATCH = method(Statement.class, "addBatch", String.class);
+	/** Statement#clearBatch. */
+	private static final Method CLEAR_BATCH = method(Statement.class, "clearBatch");
+	/** Statement#executeBatch. */
+	private static final Method EXECUTE_BATCH = method(Statement.class, "executeBatch");
+	/** Statement#getConnection. */
+	private static final Method GET_CONNECTION = method(Statement.class, "getConnection");
+	/** Statement#getMoreResults. */
+	private static final Method GET_MORE_RESULTS_INT = method(Statement.class, "getMoreResults", int.class);
+	/** Statement#getGeneratedKeys. */
+	private static final Method GET_GENERATED_KEYS = method(Statement.class, "getGeneratedKeys");
+	/** Statement#executeUpdate. */
+	private static final Method EXECUTE_UPDATE_STRING_INT = method(Statement.class, "executeUpdate", String.class, int.class);
+	/** Statement#executeUpdate. */
+	private static final Method EXECUTE_UPDATE_STRING_INT_ARRAY = method(Statement.class, "executeUpdate", String.class, int[].class);
+	/** Statement#executeUpdate. */
+	private static final Method EXECUTE_UPDATE_STRING_STRING_ARRAY = method(Statement.class, "executeUpdate", String.class, String[].class);
+	/** Statement#execute. */
+	private static final Method EXECUTE_STRING_INT = method(Statement.class, "execute", String.class, int.class);
+	/** Statement#execute. */
+	private static final Method EXECUTE_STRING_INT_ARRAY = method(Statement.class, "execute", String.class, int[].class);
+	/** Statement#execute. */
+	private static final Method EXECUTE_STRING_STRING_ARRAY = method(Statement.class, "execute", String.class, String[].class);
+	/** Statement#getResultSetHoldability. */
+	private static final Method GET_RESULT_SET_HOLDABILITY = method(Statement.class, "getResultSetHoldability");
+	// #ifdef JDK>6
+	/** Statement#isClosed. */
+	private static final Method IS_CLOSED = method(Statement.class, "isClosed");
+	/** Statement#setPoolable. */
+	private static final Method SET_POOLABLE = method(Statement.class, "setPoolable", boolean.class);
+	/** Statement#isPoolable. */
+	private static final Method IS_POOLABLE = method(Statement.class, "isPoolable");
+	/** Statement#isWrapperFor. */
+	private static final Method IS_WRAPPER_FOR = method(Statement.class, "isWrapperFor", Class.class);
+	/** Statement#unwrap. */
+	private static final Method UNWRAP = method(Statement.class, "unwrap", Class.class);
+	// #endif JDK>6
+	// #ifdef JDK7
+	/** Statement#closeOnCompletion. */
+	private static final Method CLOSE_ON_COMPLETION = method(Statement.class, "closeOnCompletion");
+	/** Statement#isCloseOnCompletion. */
+	private static final Method IS_CLOSE_ON_COMPLETION = method(Statement.class, "isCloseOnCompletion");
+	// #endif JDK7
+
+	/** Constructor.
+	 * @param target statement to wrap
+	 * @param connectionHandle originating bonecp connection
+	 */
+	public RecordingStatement(T target, ConnectionHandle connectionHandle) {
+		super(target, connectionHandle);
+	}
+
+	// @Override
+	public ResultSet executeQuery(String sql) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.executeQuery(sql);
+		}
+		record(con, EXECUTE_QUERY, sql);
+		try {
+			return this.target.executeQuery(sql);
+		} catch (SQLException e) {
+			return (ResultSet) recover(con, e);
+		}
+	}
+
+	// @Override
+	public int executeUpdate(String sql) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.executeUpdate(sql);
+		}
+		record(con, EXECUTE_UPDATE_STRING, sql);
+		try {
+			return this.target.executeUpdate(sql);
+		} catch (SQLException e) {
+			return (Integer) recover(con, e);
+		}
+	}
+
+	// @Override
+	public void close() throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.close();
+			return;
+		}
+		record(con, CLOSE);
+		try {
+			this.target.close();
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public int getMaxFieldSize() throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.getMaxFieldSize();
+		}
+		record(con, GET_MAX_FIELD_SIZE);
+		try {
+			return this.target.getMaxFieldSize();
+		} catch (SQLException e) {
+			return (Integer) recover(con, e);
+		}
+	}
+
+	// @Override
+	public void setMaxFieldSize(int max) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.setMaxFieldSize(max);
+			return;
+		}
+		record(con, SET_MAX_FIELD_SIZE, max);
+		try {
+			this.target.setMaxFieldSize(max);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public int getMaxRows() throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.getMaxRows();
+		}
+		record(con, GET_MAX_ROWS);
+		try {
+			return this.target.getMaxRows();
+		} catch (SQLException e) {
+			return (Integer) recover(con, e);
+		}
+	}
+
+	// @Override
+	public void setMaxRows(int max) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.setMaxRows(max);
+			return;
+		}
+		record(con, SET_MAX_ROWS, max);
+		try {
+			this.target.setMaxRows(max);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public void setEscapeProcessing(boolean enable) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.setEscapeProcessing(enable);
+			return;
+		}
+		record(con, SET_ESCAPE_PROCESSING, enable);
+		try {
+			this.target.setEscapeProcessing(enable);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public int getQueryTimeout() throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.getQueryTimeout();
+		}
+		record(con, GET_QUERY_TIMEOUT);
+		try {
+			return this.target.getQueryTimeout();
+		} catch (SQLException e) {
+			return (Integer) recover(con, e);
+		}
+	}
+
+	// @Override
+	public void setQueryTimeout(int seconds) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.setQueryTimeout(seconds);
+			return;
+		}
+		record(con, SET_QUERY_TIMEOUT, seconds);
+		try {
+			this.target.setQueryTimeout(seconds);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public void cancel() throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.cancel();
+			return;
+		}
+		record(con, CANCEL);
+		try {
+			this.target.cancel();
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public SQLWarning getWarnings() throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.getWarnings();
+		}
+		record(con, GET_WARNINGS);
+		try {
+			return this.target.getWarnings();
+		} catch (SQLException e) {
+			return (SQLWarning) recover(con, e);
+		}
+	}
+
+	// @Override
+	public void clearWarnings() throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.clearWarnings();
+			return;
+		}
+		record(con, CLEAR_WARNINGS);
+		try {
+			this.target.clearWarnings();
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public void setCursorName(String name) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.setCursorName(name);
+			return;
+		}
+		record(con, SET_CURSOR_NAME, name);
+		try {
+			this.target.setCursorName(name);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public boolean execute(String sql) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.execute(sql);
+		}
+		record(con, EXECUTE_STRING, sql);
+		try {
+			return this.target.execute(sql);
+		} catch (SQLException e) {
+			return (Boolean) recover(con, e);
+		}
+	}
+
+	// @Override
+	public ResultSet getResultSet() throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.getResultSet();
+		}
+		record(con, GET_RESULT_SET);
+		try {
+			return this.target.getResultSet();
+		} catch (SQLException e) {
+			return (ResultSet) recover(con, e);
+		}
+	}
+
+	// @Override
+	public int getUpdateCount() throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.getUpdateCount();
+		}
+		record(con, GET_UPDATE_COUNT);
+		try {
+			return this.target.getUpdateCount();
+		} catch (SQLException e) {
+			return (Integer) recover(con, e);
+		}
+	}
+
+	// @Override
+	public boolean getMoreResults() throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.getMoreResults();
+		}
+		record(con, GET_MORE_RESULTS_NOARGS);
+		try {
+			return this.target.getMoreResults();
+		} catch (SQLException e) {
+			return (Boolean) recover(con, e);
+		}
+	}
+
+	// @Override
+	public void setFetchDirection(int direction) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.setFetchDirection(direction);
+			return;
+		}
+		record(con, SET_FETCH_DIRECTION, direction);
+		try {
+			this.target.setFetchDirection(direction);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public int getFetchDirection() throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.getFetchDirection();
+		}
+		record(con, GET_FETCH_DIRECTION);
+		try {
+			return this.target.getFetchDirection();
+		} catch (SQLException e) {
+			return (Integer) recover(con, e);
+		}
+	}
+
+	// @Override
+	public void setFetchSize(int rows) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.setFetchSize(rows);
+			return;
+		}
+		record(con, SET_FETCH_SIZE, rows);
+		try {
+			this.target.setFetchSize(rows);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public int getFetchSize() throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.getFetchSize();
+		}
+		record(con, GET_FETCH_SIZE);
+		try {
+			return this.target.getFetchSize();
+		} catch (SQLException e) {
+			return (Integer) recover(con, e);
+		}
+	}
+
+	// @Override
+	public int getResultSetConcurrency() throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.getResultSetConcurrency();
+		}
+		record(con, GET_RESULT_SET_CONCURRENCY);
+		try {
+			return this.target.getResultSetConcurrency();
+		} catch (SQLException e) {
+			return (Integer) recover(con, e);
+		}
+	}
+
+	// @Override
+	public int getResultSetType() throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.getResultSetType();
+		}
+		record(con, GET_RESULT_SET_TYPE);
+		try {
+			return this.target.getResultSetType();
+		} catch (SQLException e) {
+			return (Integer) recover(con, e);
+		}
+	}
+
+	// @Override
+	public void addBatch(String sql) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.addBatch(sql);
+			return;
+		}
+		record(con, ADD_BATCH, sql);
+		try {
+			this.target.addBatch(sql);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public void clearBatch() throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.clearBatch();
+			return;
+		}
+		record(con, CLEAR_BATCH);
+		try {
+			this.target.clearBatch();
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public int[] executeBatch() throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.executeBatch();
+		}
+		record(con, EXECUTE_BATCH);
+		try {
+			return this.target.executeBatch();
+		} catch (SQLException e) {
+			return (int[]) recover(con, e);
+		}
+	}
+
+	// @Override
+	public Connection getConnection() throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.getConnection();
+		}
+		record(con, GET_CONNECTION);
+		try {
+			return this.target.getConnection();
+		} catch (SQLException e) {
+			return (Connection) recover(con, e);
+		}
+	}
+
+	// @Override
+	public boolean getMoreResults(int current) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.getMoreResults(current);
+		}
+		record(con, GET_MORE_RESULTS_INT, current);
+		try {
+			return this.target.getMoreResults(current);
+		} catch (SQLException e) {
+			return (Boolean) recover(con, e);
+		}
+	}
+
+	// @Override
+	public ResultSet getGeneratedKeys() throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.getGeneratedKeys();
+		}
+		record(con, GET_GENERATED_KEYS);
+		try {
+			return this.target.getGeneratedKeys();
+		} catch (SQLException e) {
+			return (ResultSet) recover(con, e);
+		}
+	}
+
+	// @Override
+	public int executeUpdate(String sql, int autoGeneratedKeys) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.executeUpdate(sql, autoGeneratedKeys);
+		}
+		record(con, EXECUTE_UPDATE_STRING_INT, sql, autoGeneratedKeys);
+		try {
+			return this.target.executeUpdate(sql, autoGeneratedKeys);
+		} catch (SQLException e) {
+			return (Integer) recover(con, e);
+		}
+	}
+
+	// @Override
+	public int executeUpdate(String sql, int[] columnIndexes) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.executeUpdate(sql, columnIndexes);
+		}
+		record(con, EXECUTE_UPDATE_STRING_INT_ARRAY, sql, columnIndexes);
+		try {
+			return this.target.executeUpdate(sql, columnIndexes);
+		} catch (SQLException e) {
+			return (Integer) recover(con, e);
+		}
+	}
+
+	// @Override
+	public int executeUpdate(String sql, String[] columnNames) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.executeUpdate(sql, columnNames);
+		}
+		record(con, EXECUTE_UPDATE_STRING_STRING_ARRAY, sql, columnNames);
+		try {
+			return this.target.executeUpdate(sql, columnNames);
+		} catch (SQLException e) {
+			return (Integer) recover(con, e);
+		}
+	}
+
+	// @Override
+	public boolean execute(String sql, int autoGeneratedKeys) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.execute(sql, autoGeneratedKeys);
+		}
+		record(con, EXECUTE_STRING_INT, sql, autoGeneratedKeys);
+		try {
+			return this.target.execute(sql, autoGeneratedKeys);
+		} catch (SQLException e) {
+			return (Boolean) recover(con, e);
+		}
+	}
+
+	// @Override
+	public boolean execute(String sql, int[] columnIndexes) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.execute(sql, columnIndexes);
+		}
+		record(con, EXECUTE_STRING_INT_ARRAY, sql, columnIndexes);
+		try {
+			return this.target.execute(sql, columnIndexes);
+		} catch (SQLException e) {
+			return (Boolean) recover(con, e);
+		}
+	}
+
+	// @Override
+	public boolean execute(String sql, String[] columnNames) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.execute(sql, columnNames);
+		}
+		record(con, EXECUTE_STRING_STRING_ARRAY, sql, columnNames);
+		try {
+			return this.target.execute(sql, columnNames);
+		} catch (SQLException e) {
+			return (Boolean) recover(con, e);
+		}
+	}
+
+	// @Override
+	public int getResultSetHoldability() throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.getResultSetHoldability();
+		}
+		record(con, GET_RESULT_SET_HOLDABILITY);
+		try {
+			return this.target.getResultSetHoldability();
+		} catch (SQLException e) {
+			return (Integer) recover(con, e);
+		}
+	}
+
+	// #ifdef JDK>6
+	// @Override
+	public boolean isClosed() throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.isClosed();
+		}
+		record(con, IS_CLOSED);
+		try {
+			return this.target.isClosed();
+		} catch (SQLException e) {
+			return (Boolean) recover(con, e);
+		}
+	}
+
+	// @Override
+	public void setPoolable(boolean poolable) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.setPoolable(poolable);
+			return;
+		}
+		record(con, SET_POOLABLE, poolable);
+		try {
+			this.target.setPoolable(poolable);
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public boolean isPoolable() throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.isPoolable();
+		}
+		record(con, IS_POOLABLE);
+		try {
+			return this.target.isPoolable();
+		} catch (SQLException e) {
+			return (Boolean) recover(con, e);
+		}
+	}
+
+	// @Override
+	public boolean isWrapperFor(Class<?> iface) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.isWrapperFor(iface);
+		}
+		record(con, IS_WRAPPER_FOR, iface);
+		try {
+			return this.target.isWrapperFor(iface);
+		} catch (SQLException e) {
+			return (Boolean) recover(con, e);
+		}
+	}
+
+	// @Override
+	public <T> T unwrap(Class<T> iface) throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.unwrap(iface);
+		}
+		record(con, UNWRAP, iface);
+		try {
+			return this.target.unwrap(iface);
+		} catch (SQLException e) {
+			return iface.cast(recover(con, e));
+		}
+	}
+	// #endif JDK>6
+
+	// #ifdef JDK7
+	// @Override
+	public void closeOnCompletion() throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			this.target.closeOnCompletion();
+			return;
+		}
+		record(con, CLOSE_ON_COMPLETION);
+		try {
+			this.target.closeOnCompletion();
+		} catch (SQLException e) {
+			recover(con, e);
+		}
+	}
+
+	// @Override
+	public boolean isCloseOnCompletion() throws SQLException {
+		ConnectionHandle con = recordingConnectionHandle();
+		if (con == null){
+			return this.target.isCloseOnCompletion();
+		}
+		record(con, IS_CLOSE_ON_COMPLETION);
+		try {
+			return this.target.isCloseOnCompletion();
+		} catch (SQLException e) {
+			return (Boolean) recover(con, e);
+		}
+	}
+	// #endif JDK7
+}
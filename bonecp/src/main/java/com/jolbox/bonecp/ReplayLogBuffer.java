@@ -0,0 +1,550 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+/**
+ * 
+ */
+package com.jolbox.bonecp;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/** Transaction replay log in compact form. Each recorded call is encoded into a byte buffer: the target as an index into a small 
+ * table, the method as a short id and primitive parameters inline. Only non-primitive parameters (strings, timestamps, streams...)
+ * are kept as object references. Buffers are reused across transactions.
+ * 
+ * If a maximum size is given and a transaction grows past it, the log is discarded and recovery is disabled for the rest of
+ * that transaction (until the next commit, rollback or close) rather than letting the heap grow without limit.
+ * 
+ * Not thread-safe; a connection is only used by one thread at a time.
+ * 
+ * @author wallacew
+ *
+ */
+public class ReplayLogBuffer implements Iterable<ReplayLog> {
+	/** Class logger. */
+	private static final Logger logger = LoggerFactory.getLogger(ReplayLogBuffer.class);
+	/** Method to id mappings, shared by all logs. */
+	private static final ConcurrentMap<Method, Short> methodIds = new ConcurrentHashMap<Method, Short>();
+	/** Id to method mappings, shared by all logs. */
+	private static final List<Method> methods = new ArrayList<Method>();
+	/** Initial (and retained) size of the byte buffer. */
+	private static final int INITIAL_BUFFER_SIZE = 1024;
+	/** Initial (and retained) size of the object table. */
+	private static final int INITIAL_OBJECTS_SIZE = 32;
+	/** Buffers larger than this are released on clear instead of being kept around for the next transaction. */
+	private static final int MAX_RETAINED_BUFFER_SIZE = 64*1024;
+	/** Estimated cost of keeping an object reference alive (reference + object header). */
+	private static final int OBJECT_OVERHEAD = 24;
+	/** Parameter tag. */
+	private static final byte TAG_NULL = 0;
+	/** Parameter tag. */
+	private static final byte TAG_INT = 1;
+	/** Parameter tag. */
+	private static final byte TAG_LONG = 2;
+	/** Parameter tag. */
+	private static final byte TAG_BOOLEAN = 3;
+	/** Parameter tag. */
+	private static final byte TAG_SHORT = 4;
+	/** Parameter tag. */
+	private static final byte TAG_BYTE = 5;
+	/** Parameter tag. */
+	private static final byte TAG_FLOAT = 6;
+	/** Parameter tag. */
+	private static final byte TAG_DOUBLE = 7;
+	/** Parameter tag. */
+	private static final byte TAG_OBJECT = 8;
+
+	/** Encoded calls. */
+	private byte[] buffer = new byte[INITIAL_BUFFER_SIZE];
+	/** Write position in buffer. */
+	private int position;
+	/** Non-primitive parameters referenced from the buffer. */
+	private Object[] objects = new Object[INITIAL_OBJECTS_SIZE];
+	/** Number of used slots in objects. */
+	private int objectCount;
+	/** Estimated memory held by the objects table. */
+	private long objectsSize;
+	/** Connections and statements the calls were made on. */
+	private List<Object> targets = new ArrayList<Object>();
+	/** Number of recorded calls. */
+	private int size;
+	/** Set if the log went past maxSizeInBytes in the current transaction. */
+	private boolean overflowed;
+	/** Largest size we allow before discarding the log. 0 = unlimited. */
+	private final long maxSizeInBytes;
+	/** Statistics handle, null if statistics are disabled. */
+	private final Statistics statistics;
+
+	/** Constructor.
+	 * @param maxSizeInBytes largest size this log may grow to in one transaction. 0 = unlimited.
+	 * @param statistics statistics handle or null if statistics are disabled.
+	 */
+	public ReplayLogBuffer(long maxSizeInBytes, Statistics statistics){
+		this.maxSizeInBytes = maxSizeInBytes;
+		this.statistics = statistics;
+	}
+
+	/** Records a call. 
+	 * @param target connection or statement
+	 * @param method method invoked
+	 * @param args arguments passed, may be null
+	 */
+	public void add(Object target, Method method, Object[] args){
+		int argCount = args == null ? 0 : args.length;
+		if (begin(target, method, argCount)){
+			for (int i=0; i < argCount; i++){
+				putArg(args[i]);
+			}
+			end();
+		}
+	}
+
+	/** Starts recording a call. Must be followed by exactly argCount put calls and then end().
+	 * @param target connection or statement
+	 * @param method method invoked
+	 * @param argCount number of arguments that will follow
+	 * @return false if nothing should be recorded (the log has overflowed); the put and end calls may be skipped in that case.
+	 */
+	protected boolean begin(Object target, Method method, int argCount){
+		if (this.overflowed){
+			return false;
+		}
+		ensureCapacity(7);
+		writeInt(targetIndex(target));
+		writeShort(methodId(method));
+		this.buffer[this.position++] = (byte) argCount;
+		return true;
+	}
+
+	/** Finishes recording a call started with begin().
+	 */
+	protected void end(){
+		if (!this.overflowed){
+			this.size++;
+			if (this.maxSizeInBytes > 0 && getSizeInBytes() > this.maxSizeInBytes){
+				overflow();
+			}
+		}
+	}
+
+	/** Records an int parameter.
+	 * @param value parameter
+	 */
+	protected void putInt(int value){
+		if (!this.overflowed){
+			ensureCapacity(5);
+			this.buffer[this.position++] = TAG_INT;
+			writeInt(value);
+		}
+	}
+
+	/** Records a long parameter.
+	 * @param value parameter
+	 */
+	protected void putLong(long value){
+		if (!this.overflowed){
+			ensureCapacity(9);
+			this.buffer[this.position++] = TAG_LONG;
+			writeLong(value);
+		}
+	}
+
+	/** Records a boolean parameter.
+	 * @param value parameter
+	 */
+	protected void putBoolean(boolean value){
+		if (!this.overflowed){
+			ensureCapacity(2);
+			this.buffer[this.position++] = TAG_BOOLEAN;
+			this.buffer[this.position++] = (byte) (value ? 1 : 0);
+		}
+	}
+
+	/** Records a double parameter.
+	 * @param value parameter
+	 */
+	protected void putDouble(double value){
+		if (!this.overflowed){
+			ensureCapacity(9);
+			this.buffer[this.position++] = TAG_DOUBLE;
+			writeLong(Double.doubleToRawLongBits(value));
+		}
+	}
+
+	/** Records a parameter, encoding boxed primitives inline. 
+	 * @param value parameter
+	 */
+	protected void putArg(Object value){
+		if (this.overflowed){
+			return;
+		}
+		if (value == null){
+			ensureCapacity(1);
+			this.buffer[this.position++] = TAG_NULL;
+		} else if (value instanceof Integer){
+			putInt((Integer) value);
+		} else if (value instanceof Long){
+			putLong((Long) value);
+		} else if (value instanceof Boolean){
+			putBoolean((Boolean) value);
+		} else if (value instanceof Double){
+			putDouble((Double) value);
+		} else if (value instanceof Short){
+			ensureCapacity(3);
+			this.buffer[this.position++] = TAG_SHORT;
+			writeShort((Short) value);
+		} else if (value instanceof Byte){
+			ensureCapacity(2);
+			this.buffer[this.position++] = TAG_BYTE;
+			this.buffer[this.position++] = (Byte) value;
+		} else if (value instanceof Float){
+			ensureCapacity(5);
+			this.buffer[this.position++] = TAG_FLOAT;
+			writeInt(Float.floatToRawIntBits((Float) value));
+		} else {
+			ensureCapacity(5);
+			this.buffer[this.position++] = TAG_OBJECT;
+			writeInt(this.objectCount);
+			if (this.objectCount == this.objects.length){
+				Object[] newObjects = new Object[this.objectCount * 2];
+				System.arraycopy(this.objects, 0, newObjects, 0, this.objectCount);
+				this.objects = newObjects;
+			}
+			this.objects[this.objectCount++] = value;
+			this.objectsSize += estimateSize(value);
+		}
+	}
+
+	/** Returns true if no calls have been recorded.
+	 * @return true if empty
+	 */
+	public boolean isEmpty(){
+		return this.size == 0;
+	}
+
+	/** Returns the number of recorded calls.
+	 * @return number of calls
+	 */
+	public int size(){
+		return this.size;
+	}
+
+	/** Returns the (estimated) memory held by the recorded calls.
+	 * @return size in bytes
+	 */
+	public long getSizeInBytes(){
+		return this.position + this.objectsSize;
+	}
+
+	/** Returns true if the current transaction went past the size limit, in which case it cannot be recovered.
+	 * @return true if overflowed
+	 */
+	public boolean isOverflowed(){
+		return this.overflowed;
+	}
+
+	/** Discards all recorded calls (end of transaction). Buffers are kept for reuse unless they grew too large. 
+	 */
+	public void clear(){
+		if (this.statistics != null && (this.size > 0 || this.overflowed)){
+			this.statistics.addReplayLogSize(this.overflowed ? this.maxSizeInBytes : getSizeInBytes());
+		}
+		release();
+		this.overflowed = false;
+	}
+
+	/** Replaces the recorded targets with their new equivalents (eg after a connection has been recovered).
+	 * @param replaceTarget mappings from old connections/statements to new ones
+	 */
+	protected void replaceTargets(Map<Object, Object> replaceTarget){
+		for (int i=0; i < this.targets.size(); i++){
+			this.targets.set(i, replaceTarget.get(this.targets.get(i)));
+		}
+	}
+
+	/** Decodes the recorded calls in order. 
+	 * @see java.lang.Iterable#iterator()
+	 */
+	// @Override
+	public Iterator<ReplayLog> iterator() {
+		return new Iterator<ReplayLog>() {
+			/** Number of calls decoded so far. */
+			private int index;
+			/** Read position. */
+			private int readPosition;
+
+			// @Override
+			public boolean hasNext() {
+				return this.index < ReplayLogBuffer.this.size;
+			}
+
+			// @Override
+			@SuppressWarnings("synthetic-access")
+			public ReplayLog next() {
+				if (!hasNext()){
+					throw new NoSuchElementException();
+				}
+				Object target = ReplayLogBuffer.this.targets.get(readInt(this.readPosition));
+				Method method = methodFor(readShort(this.readPosition + 4));
+				int argCount = ReplayLogBuffer.this.buffer[this.readPosition + 6];
+				this.readPosition += 7;
+				Object[] args = null;
+				if (argCount > 0){
+					args = new Object[argCount];
+					for (int i=0; i < argCount; i++){
+						byte tag = ReplayLogBuffer.this.buffer[this.readPosition++];
+						switch (tag){
+						case TAG_NULL:
+							break;
+						case TAG_INT:
+							args[i] = readInt(this.readPosition);
+							this.readPosition += 4;
+							break;
+						case TAG_LONG:
+							args[i] = readLong(this.readPosition);
+							this.readPosition += 8;
+							break;
+						case TAG_BOOLEAN:
+							args[i] = ReplayLogBuffer.this.buffer[this.readPosition++] != 0;
+							break;
+						case TAG_SHORT:
+							args[i] = readShort(this.readPosition);
+							this.readPosition += 2;
+							break;
+						case TAG_BYTE:
+							args[i] = ReplayLogBuffer.this.buffer[this.readPosition++];
+							break;
+						case TAG_FLOAT:
+							args[i] = Float.intBitsToFloat(readInt(this.readPosition));
+							this.readPosition += 4;
+							break;
+						case TAG_DOUBLE:
+							args[i] = Double.longBitsToDouble(readLong(this.readPosition));
+							this.readPosition += 8;
+							break;
+						default:
+							args[i] = ReplayLogBuffer.this.objects[readInt(this.readPosition)];
+							this.readPosition += 4;
+						}
+					}
+				}
+				if (args != null){
+					// primitives may have been widened when recorded (eg setShort recorded as an int)
+					Class<?>[] parameterTypes = method.getParameterTypes();
+					for (int i=0; i < argCount && i < parameterTypes.length; i++){
+						args[i] = narrow(args[i], parameterTypes[i]);
+					}
+				}
+				this.index++;
+				return new ReplayLog(target, method, args);
+			}
+
+			// @Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	/** Drops everything recorded so far and stops recording until the log is cleared.
+	 */
+	private void overflow(){
+		logger.warn("Transaction replay log went past "+this.maxSizeInBytes+" bytes. Transaction recovery is disabled until the next commit/rollback.");
+		if (this.statistics != null){
+			this.statistics.incrementReplayLogOverflows();
+		}
+		release();
+		this.overflowed = true;
+	}
+
+	/** Resets the log, keeping reasonably sized buffers for reuse.
+	 */
+	private void release(){
+		if (this.buffer.length > MAX_RETAINED_BUFFER_SIZE){
+			this.buffer = new byte[INITIAL_BUFFER_SIZE];
+		}
+		if (this.objects.length > MAX_RETAINED_BUFFER_SIZE / 8){
+			this.objects = new Object[INITIAL_OBJECTS_SIZE];
+		} else {
+			Arrays.fill(this.objects, 0, this.objectCount, null);
+		}
+		this.targets.clear();
+		this.position = 0;
+		this.objectCount = 0;
+		this.objectsSize = 0;
+		this.size = 0;
+	}
+
+	/** Returns the index of the given target in our target table, adding it if necessary. 
+	 * @param target connection or statement
+	 * @return index
+	 */
+	private int targetIndex(Object target){
+		// few targets per transaction and mostly the same as the last one, so search backwards
+		for (int i=this.targets.size()-1; i >= 0; i--){
+			if (this.targets.get(i) == target){
+				return i;
+			}
+		}
+		this.targets.add(target);
+		this.objectsSize += OBJECT_OVERHEAD;
+		return this.targets.size()-1;
+	}
+
+	/** Makes sure the buffer can hold the given number of additional bytes.
+	 * @param bytes to write
+	 */
+	private void ensureCapacity(int bytes){
+		if (this.position + bytes > this.buffer.length){
+			byte[] newBuffer = new byte[Math.max(this.buffer.length * 2, this.position + bytes)];
+			System.arraycopy(this.buffer, 0, newBuffer, 0, this.position);
+			this.buffer = newBuffer;
+		}
+	}
+
+	/** Writes an int at the current position.
+	 * @param value to write
+	 */
+	private void writeInt(int value){
+		this.buffer[this.position++] = (byte) (value >>> 24);
+		this.buffer[this.position++] = (byte) (value >>> 16);
+		this.buffer[this.position++] = (byte) (value >>> 8);
+		this.buffer[this.position++] = (byte) value;
+	}
+
+	/** Writes a short at the current position.
+	 * @param value to write
+	 */
+	private void writeShort(short value){
+		this.buffer[this.position++] = (byte) (value >>> 8);
+		this.buffer[this.position++] = (byte) value;
+	}
+
+	/** Writes a long at the current position.
+	 * @param value to write
+	 */
+	private void writeLong(long value){
+		writeInt((int) (value >>> 32));
+		writeInt((int) value);
+	}
+
+	/** Reads an int.
+	 * @param pos position to read from
+	 * @return value
+	 */
+	private int readInt(int pos){
+		return ((this.buffer[pos] & 0xFF) << 24) | ((this.buffer[pos+1] & 0xFF) << 16) 
+		| ((this.buffer[pos+2] & 0xFF) << 8) | (this.buffer[pos+3] & 0xFF);
+	}
+
+	/** Reads a short.
+	 * @param pos position to read from
+	 * @return value
+	 */
+	private short readShort(int pos){
+		return (short) (((this.buffer[pos] & 0xFF) << 8) | (this.buffer[pos+1] & 0xFF));
+	}
+
+	/** Reads a long.
+	 * @param pos position to read from
+	 * @return value
+	 */
+	private long readLong(int pos){
+		return ((long) readInt(pos) << 32) | (readInt(pos+4) & 0xFFFFFFFFL);
+	}
+
+	/** Returns a rough estimate of the memory kept alive by holding on to the given parameter.
+	 * @param value parameter
+	 * @return size in bytes
+	 */
+	private static long estimateSize(Object value){
+		long result = OBJECT_OVERHEAD;
+		if (value instanceof String){
+			result += 2L * ((String) value).length();
+		} else if (value instanceof byte[]){
+			result += ((byte[]) value).length;
+		} else if (value instanceof Object[]){
+			result += 8L * ((Object[]) value).length;
+		}
+		return result;
+	}
+
+	/** Converts a recorded number back to the primitive type the method expects.
+	 * @param value recorded parameter
+	 * @param type declared parameter type
+	 * @return value suitable for Method.invoke
+	 */
+	private static Object narrow(Object value, Class<?> type){
+		if (!type.isPrimitive() || !(value instanceof Number)){
+			return value;
+		}
+		Number number = (Number) value;
+		if (type == int.class){
+			return number.intValue();
+		} else if (type == long.class){
+			return number.longValue();
+		} else if (type == short.class){
+			return number.shortValue();
+		} else if (type == byte.class){
+			return number.byteValue();
+		} else if (type == float.class){
+			return number.floatValue();
+		} else if (type == double.class){
+			return number.doubleValue();
+		}
+		return value;
+	}
+
+	/** Returns the id of the given method, assigning one if necessary.
+	 * @param method method to look up
+	 * @return id
+	 */
+	private static short methodId(Method method){
+		Short result = methodIds.get(method);
+		if (result == null){
+			synchronized (methods) {
+				result = methodIds.get(method);
+				if (result == null){
+					result = (short) methods.size();
+					methods.add(method);
+					methodIds.put(method, result);
+				}
+			}
+		}
+		return result;
+	}
+
+	/** Returns the method with the given id.
+	 * @param id method id
+	 * @return method
+	 */
+	private static Method methodFor(short id){
+		synchronized (methods) {
+			return methods.get(id);
+		}
+	}
+}
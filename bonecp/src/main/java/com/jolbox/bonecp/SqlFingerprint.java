@@ -0,0 +1,142 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+/**
+ * 
+ */
+package com.jolbox.bonecp;
+
+import java.util.regex.Pattern;
+
+/**
+ * Reduces SQL to a fingerprint so that statements differing only in their literal values are counted as the same 
+ * query: string and numeric literals become ?, comments are dropped, whitespace is collapsed, everything outside 
+ * quoted identifiers is lower-cased, and lists made up only of placeholders (IN lists, VALUES rows) are collapsed to 
+ * (?+) so that their length doesn't matter either. For example 
+ * <code>SELECT * FROM t WHERE id IN (1, 2, 3) AND name = 'x'</code> becomes 
+ * <code>select * from t where id in (?+) and name = ?</code>.
+ * 
+ * @author wallacew
+ *
+ */
+public class SqlFingerprint {
+	/** Fingerprints are cut off at this many characters so that memory use doesn't depend on the SQL. */
+	protected static final int MAX_LENGTH = 2048;
+	/** A parenthesised list of placeholders. */
+	private static final Pattern PLACEHOLDER_LIST = Pattern.compile("\\( ?\\?(?: ?, ?\\?)* ?\\)");
+	/** Repeated collapsed lists, eg multi-row VALUES. */
+	private static final Pattern REPEATED_LISTS = Pattern.compile("\\(\\?\\+\\)(?: ?, ?\\(\\?\\+\\))+");
+
+	/** Utility class. */
+	private SqlFingerprint(){
+		// not called
+	}
+
+	/** Returns the fingerprint of the given SQL.
+	 * @param sql statement
+	 * @return normalized statement, or null if sql is null
+	 */
+	public static String normalize(String sql){
+		if (sql == null){
+			return null;
+		}
+		int length = sql.length();
+		StringBuilder result = new StringBuilder(Math.min(length, MAX_LENGTH));
+		boolean space = false;
+		int i = 0;
+		while (i < length && result.length() < MAX_LENGTH){
+			char c = sql.charAt(i);
+			if (Character.isWhitespace(c)){
+				space = result.length() > 0;
+				i++;
+				continue;
+			}
+			if (c == '-' && i + 1 < length && sql.charAt(i + 1) == '-'){ // comment to end of line
+				while (i < length && sql.charAt(i) != '\n'){
+					i++;
+				}
+				space = result.length() > 0;
+				continue;
+			}
+			if (c == '/' && i + 1 < length && sql.charAt(i + 1) == '*'){ // block comment
+				int end = sql.indexOf("*/", i + 2);
+				i = end < 0 ? length : end + 2;
+				space = result.length() > 0;
+				continue;
+			}
+			if (space){
+				result.append(' ');
+				space = false;
+			}
+			if (c == '\''){ // string literal, '' being an escaped quote
+				i++;
+				while (i < length){
+					if (sql.charAt(i) == '\''){
+						if (i + 1 < length && sql.charAt(i + 1) == '\''){
+							i += 2;
+							continue;
+						}
+						break;
+					}
+					i++;
+				}
+				result.append('?');
+				i++;
+			} else if (c == '"' || c == '`'){ // quoted identifier, kept as is
+				int end = sql.indexOf(c, i + 1);
+				end = end < 0 ? length : end + 1;
+				result.append(sql, i, end);
+				i = end;
+			} else if (Character.isDigit(c) && !isIdentifierPart(result)){ // numeric literal
+				i++;
+				while (i < length && isNumberPart(sql.charAt(i), sql.charAt(i - 1))){
+					i++;
+				}
+				result.append('?');
+			} else {
+				result.append(Character.toLowerCase(c));
+				i++;
+			}
+		}
+		if (result.length() > MAX_LENGTH){
+			result.setLength(MAX_LENGTH);
+		}
+		String normalized = PLACEHOLDER_LIST.matcher(result).replaceAll("(?+)");
+		return REPEATED_LISTS.matcher(normalized).replaceAll("(?+)");
+	}
+
+	/** Returns true if the last character written is part of an identifier (so that a digit continues it, eg t1).
+	 * @param result fingerprint so far
+	 * @return true if inside an identifier
+	 */
+	private static boolean isIdentifierPart(StringBuilder result){
+		if (result.length() == 0){
+			return false;
+		}
+		char last = result.charAt(result.length() - 1);
+		return Character.isLetterOrDigit(last) || last == '_' || last == '$';
+	}
+
+	/** Returns true if the given character continues a numeric literal (digits, decimal point, exponent, hex).
+	 * @param c character
+	 * @param previous character before it
+	 * @return true if part of the number
+	 */
+	private static boolean isNumberPart(char c, char previous){
+		return Character.isLetterOrDigit(c) || c == '.' 
+				|| ((c == '+' || c == '-') && (previous == 'e' || previous == 'E'));
+	}
+}
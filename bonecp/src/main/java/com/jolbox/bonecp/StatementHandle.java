@@ -20,8 +20,7 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.SQLWarning;
 import java.sql.Statement;
-import java.util.Map;
-import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.slf4j.Logger;
@@ -67,9 +66,39 @@ public class StatementHandle implements Statement{
 	private boolean statisticsEnabled;
 	/** Statistics handle. */
 	private Statistics statistics;
+	/** Pool watchdog that cancels overrunning statements (null if disabled). */
+	protected StatementWatchdog statementWatchdog;
+	/** Watchdog budget for this statement in ms, -1 = use the pool settings. */
+	private long cancelTimeoutInMs = -1;
+	/** SQL for which cancelTimeoutInNanos was last looked up. */
+	private String cancelTimeoutSql;
+	/** Cached watchdog budget (pool settings) for cancelTimeoutSql. */
+	private long cancelTimeoutInNanos;
+	/** True once cancelTimeoutInNanos has been looked up. */
+	private boolean cancelTimeoutResolved;
+	/** Records execute calls for offline replay (null if disabled). */
+	protected WorkloadRecorder workloadRecorder;
+	/** Lease this statement was last handed out under (workload capture only). */
+	protected int workloadLeaseId;
+	/** Execute statistics per SQL fingerprint (null if disabled). */
+	protected QueryStatistics queryStatistics;
+	/** SQL whose fingerprint is cached in fingerprint. */
+	private String fingerprintSql;
+	/** Cached fingerprint of fingerprintSql (query statistics and flight recordings only). */
+	private String fingerprint;
+	/** Pool statement log (null if statement logging is disabled). */
+	protected StatementLog statementLog;
+	/** Statement to hand to the statement log once the execute call in progress returns (null = don't log). */
+	private String logSql;
+	/** SQL of the execute call in progress (workload capture, query statistics and flight recordings only). */
+	private String executeSql;
+	/** Start of the execute call in progress (workload capture, query statistics, statement logging and flight recordings only). */
+	private long executeStart;
+	/** Rows affected by the execute call in progress, if known (query statistics only). */
+	protected int executeRows;
 	
 	/** For logging purposes - stores parameters to be used for execution. */
-	protected Map<Object, Object> logParams = new TreeMap<Object, Object>();
+	protected ParameterRecorder logParams = new ParameterRecorder();
  
      /** for logging of addBatch. */
  	protected StringBuilder batchSQL = new StringBuilder(); 
@@ -98,6 +127,15 @@ public class StatementHandle implements Statement{
 		this.connectionHook = config.getConnectionHook();
 		this.statistics = connectionHandle.getPool().getStatistics();
 		this.statisticsEnabled = config.isStatisticsEnabled();
+		this.statementWatchdog = connectionHandle.getPool().getStatementWatchdog();
+		this.workloadRecorder = connectionHandle.getPool().workloadRecorder;
+		this.workloadLeaseId = connectionHandle.workloadLeaseId;
+		this.queryStatistics = connectionHandle.getPool().queryStatistics;
+		this.statementLog = connectionHandle.getPool().statementLog;
+		if (this.queryStatistics != null && sql != null){
+			// fingerprint prepared statements once, they are reused through the statement cache
+			getFingerprint(sql);
+		}
 
 		try{
 			
@@ -113,6 +151,29 @@ public class StatementHandle implements Statement{
 	}
 
 
+	/**
+	 * Constructor for lean handles, used when no connection hook, statement logging or statistics are configured. 
+	 * Unlike the main constructor, this does not look up any of those settings.
+	 *
+	 * @param internalStatement handle to actual statement instance.
+	 * @param sql statement used for this handle.
+	 * @param cache Cache handle 
+	 * @param connectionHandle Handle to the connection
+	 * @param cacheKey  
+	 */
+	protected StatementHandle(Statement internalStatement, String sql, IStatementCache cache, 
+						   ConnectionHandle connectionHandle, String cacheKey) {
+		this.sql = sql;
+		this.internalStatement = internalStatement;
+		this.cache = cache;
+		this.cacheKey = cacheKey; 
+		this.connectionHandle = connectionHandle;
+		// store it in the cache if caching is enabled(unless it's already there). 
+		if (this.cache != null){
+			this.cache.putIfAbsent(this.cacheKey, this);
+		}
+	}
+
 	/**
 	 * Constructor for empty statement (created via connection.createStatement) 
 	 *
@@ -244,13 +305,14 @@ public class StatementHandle implements Statement{
 		boolean result = false;
 		checkClosed();
 		try {
-			if (this.logStatementsEnabled && logger.isDebugEnabled()){
-				logger.debug(PoolUtil.fillLogParams(sql, this.logParams));
+			if (this.logStatementsEnabled){
+				logStatement(sql);
 			}
 			long timer = queryTimerStart();
 			if (this.connectionHook != null){
 				this.connectionHook.onBeforeStatementExecute(this.connectionHandle, this, sql, this.logParams);
 			}
+			executeStarted(sql);
 			result = this.internalStatement.execute(sql);
 			if (this.connectionHook != null){
 				this.connectionHook.onAfterStatementExecute(this.connectionHandle, this, sql, this.logParams);
@@ -260,6 +322,8 @@ public class StatementHandle implements Statement{
 		} catch (SQLException e) {
 			throw this.connectionHandle.markPossiblyBroken(e);
 
+		} finally {
+			executeFinished();
 		}
 		return result;
 	}
@@ -301,14 +365,15 @@ public class StatementHandle implements Statement{
 		boolean result = false;
 		checkClosed();
 		try{
-			if (this.logStatementsEnabled  && logger.isDebugEnabled()){
-				logger.debug(PoolUtil.fillLogParams(sql, this.logParams));
+			if (this.logStatementsEnabled){
+				logStatement(sql);
 			}
 
 			long queryStartTime = queryTimerStart();
 			if (this.connectionHook != null){
 				this.connectionHook.onBeforeStatementExecute(this.connectionHandle, this, sql, this.logParams);
 			}
+			executeStarted(sql);
 			result = this.internalStatement.execute(sql, autoGeneratedKeys);
 
 			if (this.connectionHook != null){
@@ -319,6 +384,8 @@ public class StatementHandle implements Statement{
 		} catch (SQLException e) {
 			throw this.connectionHandle.markPossiblyBroken(e);
 
+		} finally {
+			executeFinished();
 		}
 		return result;
 
@@ -332,6 +399,113 @@ public class StatementHandle implements Statement{
 		return this.statisticsEnabled || ((this.queryExecuteTimeLimit != 0) && (this.connectionHook != null)) ? System.nanoTime() : Long.MAX_VALUE;
 	}
 
+	/** Called at the start of every execute call. Hands this statement over to the watchdog (if enabled) for the 
+	 * duration of the call, and notes the start time for workload capture (if enabled).
+	 * @param sql statement about to be executed, used to look up per-pattern budgets and the workload fingerprint.
+	 */
+	protected void executeStarted(String sql) {
+		if (this.workloadRecorder != null || this.queryStatistics != null || this.logSql != null || PoolEvents.recording){
+			this.executeSql = sql;
+			this.executeRows = 0;
+			this.executeStart = System.nanoTime();
+		}
+		if (this.statementWatchdog != null){
+			long timeout;
+			if (this.cancelTimeoutInMs >= 0){
+				timeout = TimeUnit.MILLISECONDS.toNanos(this.cancelTimeoutInMs);
+			} else {
+				if (!this.cancelTimeoutResolved || sql != this.cancelTimeoutSql){
+					this.cancelTimeoutInNanos = this.statementWatchdog.getTimeoutInNanos(sql);
+					this.cancelTimeoutSql = sql;
+					this.cancelTimeoutResolved = true;
+				}
+				timeout = this.cancelTimeoutInNanos;
+			}
+			if (timeout > 0){
+				this.statementWatchdog.register(this, timeout);
+			}
+		}
+	}
+
+	/** Called once an execute call has returned (or thrown). Stops the watchdog from tracking this statement, and 
+	 * records the call for workload capture, query statistics, the statement log and any running flight recording. */
+	protected void executeFinished() {
+		if (this.statementWatchdog != null){
+			this.statementWatchdog.unregister(this);
+		}
+		if (this.workloadRecorder != null){
+			this.workloadRecorder.execute(this, this.executeSql, this.executeStart);
+		}
+		if (this.queryStatistics != null && this.executeSql != null){
+			this.queryStatistics.record(getFingerprint(this.executeSql), System.nanoTime() - this.executeStart, this.executeRows);
+		}
+		if (this.logSql != null){
+			this.statementLog.log(this.logSql, this.logParams, System.nanoTime() - this.executeStart);
+			this.logSql = null;
+		}
+		if (PoolEvents.recording && this.executeSql != null){
+			PoolEvents.INSTANCE.statementExecuted(this, this.executeSql, this.executeStart);
+		}
+		this.executeSql = null;
+	}
+
+	/** Logs the statement about to be executed. With a pool statement log, this only notes the statement: the 
+	 * parameters are captured once the call returns and formatted in the background. Otherwise (eg statement logging 
+	 * switched on for just this connection) the statement is formatted and logged right away.
+	 * @param sql statement about to be executed
+	 */
+	protected void logStatement(String sql){
+		if (this.statementLog != null){
+			this.logSql = sql;
+		} else if (logger.isDebugEnabled()){
+			logger.debug(PoolUtil.fillLogParams(sql, this.logParams));
+		}
+	}
+
+	/** Returns the fingerprint of the given SQL, normalizing it only if it differs from the last one asked for.
+	 * @param sql statement
+	 * @return fingerprint
+	 */
+	protected String getFingerprint(String sql){
+		if (sql != this.fingerprintSql){
+			this.fingerprint = SqlFingerprint.normalize(sql);
+			this.fingerprintSql = sql;
+		}
+		return this.fingerprint;
+	}
+
+	/** Returns the total number of rows affected by a batch.
+	 * @param updateCounts result of executeBatch
+	 * @return rows affected, not counting statements whose count is unknown
+	 */
+	protected static int sumUpdateCounts(int[] updateCounts){
+		int result = 0;
+		if (updateCounts != null){
+			for (int count: updateCounts){
+				if (count > 0){
+					result += count;
+				}
+			}
+		}
+		return result;
+	}
+
+	/** Overrides the watchdog budget for this statement. Only has an effect if the pool watchdog is enabled
+	 * (see {@link BoneCPConfig#setStatementCancelTimeoutInMs(long)}). 
+	 * @param cancelTimeoutInMs time an execute call may take before being cancelled, 0 = never cancel this 
+	 * statement, -1 = revert to the pool settings. 
+	 */
+	public void setCancelTimeoutInMs(long cancelTimeoutInMs) {
+		this.cancelTimeoutInMs = cancelTimeoutInMs;
+	}
+
+	/** Returns the watchdog budget set for this statement.
+	 * @return time in ms, -1 if the pool settings are used.
+	 */
+	public long getCancelTimeoutInMs() {
+		return this.cancelTimeoutInMs;
+	}
+
 	/**
 	 * {@inheritDoc}
 	 *
@@ -343,8 +517,8 @@ public class StatementHandle implements Statement{
 		boolean result = false;
 		checkClosed();
 		try{
-			if (this.logStatementsEnabled && logger.isDebugEnabled()){
-				logger.debug(PoolUtil.fillLogParams(sql, this.logParams));
+			if (this.logStatementsEnabled){
+				logStatement(sql);
 			}
 
 			long queryStartTime = queryTimerStart();
@@ -352,6 +526,7 @@ public class StatementHandle implements Statement{
 				this.connectionHook.onBeforeStatementExecute(this.connectionHandle, this, sql, this.logParams);
 			}
 			
+			executeStarted(sql);
 			result = this.internalStatement.execute(sql, columnIndexes);
 			
 			if (this.connectionHook != null){
@@ -364,6 +539,8 @@ public class StatementHandle implements Statement{
 		} catch (SQLException e) {
 			throw this.connectionHandle.markPossiblyBroken(e);
 
+		} finally {
+			executeFinished();
 		}
 		return result; 
 
@@ -380,13 +557,14 @@ public class StatementHandle implements Statement{
 		boolean result = false;
 		checkClosed();
 		try{
-			if (this.logStatementsEnabled && logger.isDebugEnabled()){
-				logger.debug(PoolUtil.fillLogParams(sql, this.logParams));
+			if (this.logStatementsEnabled){
+				logStatement(sql);
 			}
 			long queryStartTime = queryTimerStart();
 			if (this.connectionHook != null){
 				this.connectionHook.onBeforeStatementExecute(this.connectionHandle, this, sql, this.logParams);
 			}
+			executeStarted(sql);
 			result = this.internalStatement.execute(sql, columnNames);
 			if (this.connectionHook != null){
 				this.connectionHook.onAfterStatementExecute(this.connectionHandle, this, sql, this.logParams);
@@ -396,6 +574,8 @@ public class StatementHandle implements Statement{
 		} catch (SQLException e) {
 			throw this.connectionHandle.markPossiblyBroken(e);
 
+		} finally {
+			executeFinished();
 		}
 		return result;
 
@@ -412,8 +592,8 @@ public class StatementHandle implements Statement{
 		int[] result = null;
 		checkClosed();
 		try{
-			if (this.logStatementsEnabled && logger.isDebugEnabled()){
-				logger.debug(PoolUtil.fillLogParams(this.batchSQL.toString(), this.logParams));
+			if (this.logStatementsEnabled){
+				logStatement(this.batchSQL.toString());
 			}
 			long queryStartTime = queryTimerStart();
 			String query = "";
@@ -421,7 +601,11 @@ public class StatementHandle implements Statement{
         query = this.batchSQL.toString();
 				this.connectionHook.onBeforeStatementExecute(this.connectionHandle, this, query, this.logParams);
 			}
+			executeStarted(this.sql);
 			result = this.internalStatement.executeBatch();
+			if (this.queryStatistics != null){
+				this.executeRows = sumUpdateCounts(result);
+			}
 
 			if (this.connectionHook != null){
 				this.connectionHook.onAfterStatementExecute(this.connectionHandle, this, query, this.logParams);
@@ -429,15 +613,16 @@ public class StatementHandle implements Statement{
 
 			queryTimerEnd(this.logStatementsEnabled ? this.batchSQL.toString() : "", queryStartTime);
 
-
-			if (this.logStatementsEnabled){
-					this.logParams.clear();
-					this.batchSQL = new StringBuilder();
-			}
-						
 		} catch (SQLException e) {
 			throw this.connectionHandle.markPossiblyBroken(e);
 
+		} finally {
+			executeFinished();
+		}
+		// only cleared now so that the statement log picks up the parameters on the way out
+		if (this.logStatementsEnabled){
+			this.logParams.clear();
+			this.batchSQL = new StringBuilder();
 		}
 		return result; // never reached
 
@@ -454,13 +639,14 @@ public class StatementHandle implements Statement{
 		ResultSet result = null;
 		checkClosed();
 		try{
-			if (this.logStatementsEnabled && logger.isDebugEnabled()){
-				logger.debug(PoolUtil.fillLogParams(sql, this.logParams));
+			if (this.logStatementsEnabled){
+				logStatement(sql);
 			}
 			long queryStartTime = queryTimerStart();
 			if (this.connectionHook != null){
 				this.connectionHook.onBeforeStatementExecute(this.connectionHandle, this, sql, this.logParams);
 			}
+			executeStarted(sql);
 			result = this.internalStatement.executeQuery(sql);
 			if (this.connectionHook != null){
 				this.connectionHook.onAfterStatementExecute(this.connectionHandle, this, sql, this.logParams);
@@ -470,6 +656,8 @@ public class StatementHandle implements Statement{
 		} catch (SQLException e) {
 			throw this.connectionHandle.markPossiblyBroken(e);
 
+		} finally {
+			executeFinished();
 		}
 		return result;
 
@@ -487,14 +675,16 @@ public class StatementHandle implements Statement{
 		int result = 0;
 		checkClosed();
 		try{
-			if (this.logStatementsEnabled && logger.isDebugEnabled()){
-				logger.debug(PoolUtil.fillLogParams(sql, this.logParams));
+			if (this.logStatementsEnabled){
+				logStatement(sql);
 			}
 			long queryStartTime = queryTimerStart();
 			if (this.connectionHook != null){
 				this.connectionHook.onBeforeStatementExecute(this.connectionHandle, this, sql, this.logParams);
 			}
+			executeStarted(sql);
 			result = this.internalStatement.executeUpdate(sql);
+			this.executeRows = result;
 			if (this.connectionHook != null){
 				this.connectionHook.onAfterStatementExecute(this.connectionHandle, this, sql, this.logParams);
 			}
@@ -503,6 +693,8 @@ public class StatementHandle implements Statement{
 		} catch (SQLException e) {
 			throw this.connectionHandle.markPossiblyBroken(e);
 
+		} finally {
+			executeFinished();
 		}
 		return result; 
 
@@ -520,14 +712,16 @@ public class StatementHandle implements Statement{
 		int result = 0;
 		checkClosed();
 		try{
-			if (this.logStatementsEnabled && logger.isDebugEnabled()){
-				logger.debug(PoolUtil.fillLogParams(sql, this.logParams));
+			if (this.logStatementsEnabled){
+				logStatement(sql);
 			}
 			long queryStartTime = queryTimerStart();
 			if (this.connectionHook != null){
 				this.connectionHook.onBeforeStatementExecute(this.connectionHandle, this, sql, this.logParams);
 			}
+			executeStarted(sql);
 			result = this.internalStatement.executeUpdate(sql, autoGeneratedKeys);
+			this.executeRows = result;
 			if (this.connectionHook != null){
 				this.connectionHook.onAfterStatementExecute(this.connectionHandle, this, sql, this.logParams);
 			}
@@ -536,6 +730,8 @@ public class StatementHandle implements Statement{
 		} catch (SQLException e) {
 			throw this.connectionHandle.markPossiblyBroken(e);
 
+		} finally {
+			executeFinished();
 		}
 		return result; 
 
@@ -553,14 +749,16 @@ public class StatementHandle implements Statement{
 		int result = 0;
 		checkClosed();
 		try{
-			if (this.logStatementsEnabled && logger.isDebugEnabled()){
-				logger.debug(PoolUtil.fillLogParams(sql, this.logParams), columnIndexes);
+			if (this.logStatementsEnabled){
+				logStatement(sql);
 			}
 			long queryStartTime = queryTimerStart();
 			if (this.connectionHook != null){
 				this.connectionHook.onBeforeStatementExecute(this.connectionHandle, this, sql, this.logParams);
 			}
+			executeStarted(sql);
 			result = this.internalStatement.executeUpdate(sql, columnIndexes);
+			this.executeRows = result;
 			if (this.connectionHook != null){
 				this.connectionHook.onAfterStatementExecute(this.connectionHandle, this, sql, this.logParams);
 			}
@@ -569,6 +767,8 @@ public class StatementHandle implements Statement{
 		} catch (SQLException e) {
 			throw this.connectionHandle.markPossiblyBroken(e);
 
+		} finally {
+			executeFinished();
 		}
 		return result; 
 
@@ -586,14 +786,16 @@ public class StatementHandle implements Statement{
 		int result = 0;
 		checkClosed();
 		try{
-			if (this.logStatementsEnabled && logger.isDebugEnabled()){
-				logger.debug(PoolUtil.fillLogParams(sql, this.logParams));
+			if (this.logStatementsEnabled){
+				logStatement(sql);
 			}
 			long queryStartTime = queryTimerStart();
 			if (this.connectionHook != null){
 				this.connectionHook.onBeforeStatementExecute(this.connectionHandle, this, sql, this.logParams);
 			}
+			executeStarted(sql);
 			result = this.internalStatement.executeUpdate(sql, columnNames);
+			this.executeRows = result;
 			if (this.connectionHook != null){
 				this.connectionHook.onAfterStatementExecute(this.connectionHandle, this, sql, this.logParams);
 			}
@@ -601,6 +803,8 @@ public class StatementHandle implements Statement{
 			queryTimerEnd(sql, queryStartTime);
 		} catch (SQLException e) {
 			throw this.connectionHandle.markPossiblyBroken(e);
+		} finally {
+			executeFinished();
 		}
 
 		return result; 
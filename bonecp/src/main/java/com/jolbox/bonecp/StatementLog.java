@@ -0,0 +1,426 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+/**
+ * 
+ */
+package com.jolbox.bonecp;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Asynchronous statement logging pipeline. Executing threads only copy the SQL, the raw parameters (unboxed
+ * primitives and object references) and a few timings into a slot of a preallocated ring; a single background
+ * thread fills in the parameters, pretty-prints them and writes the result to the debug log and, if configured, to a memory-mapped binary log file
+ * that is rolled over to a .1 backup whenever it fills up. Statements may be sampled (1 in statementLogSampleRate)
+ * and filtered to those slower than statementLogSlowThresholdInMs; both checks happen before anything is copied.
+ * If the writer falls a whole ring behind, further statements are dropped (and counted) rather than blocking the 
+ * application.
+ * 
+ * <p>Binary log layout: a header (magic, version) followed by records of: record length (int, 0 = end of data),
+ * wall clock time at which the execute started (long, ms since the epoch), execute duration (long, ns), thread name 
+ * and statement with its parameters filled in (each an int length followed by UTF-8 bytes). Use {@link #read(File)}
+ * or the main method to decode it.
+ * 
+ * @author wallacew
+ *
+ */
+public class StatementLog implements Runnable {
+	/** Class logger. Statements are written to it at debug level. */
+	private static final Logger logger = LoggerFactory.getLogger(StatementLog.class);
+	/** Number of slots in the ring (a power of two). */
+	protected static final int RING_SIZE = 4096;
+	/** Binary log file magic number. */
+	protected static final int MAGIC = 0x4243504C;
+	/** Binary log file format version. */
+	protected static final int VERSION = 1;
+	/** Size of the binary log header. */
+	protected static final int HEADER_SIZE = 8;
+	/** How long the writer sleeps when the ring is empty. */
+	private static final long IDLE_WAIT_IN_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+	/** Slot state: free to be written. */
+	private static final int FREE = 0;
+	/** Slot state: being written by an executing thread. */
+	private static final int WRITING = 1;
+	/** Slot state: ready for the writer. */
+	private static final int READY = 2;
+	/** Statement slots. */
+	private final Slot[] ring = new Slot[RING_SIZE];
+	/** State of each slot. */
+	private final AtomicIntegerArray states = new AtomicIntegerArray(RING_SIZE);
+	/** Number of slots claimed so far. */
+	private final AtomicLong claimed = new AtomicLong();
+	/** Number of statements dropped because the writer was a whole ring behind. */
+	private final AtomicLong dropped = new AtomicLong();
+	/** Number of statements written out. */
+	private final AtomicLong written = new AtomicLong();
+	/** Statements faster than this are not logged. */
+	private final long slowThresholdInNanos;
+	/** Log 1 in every sampleRate statements. */
+	private final int sampleRate;
+	/** Statement counter used for sampling. Deliberately not atomic: a lost update only shifts the sample. */
+	private int statements;
+	/** Binary log file (null if not configured). */
+	private final File file;
+	/** Size of the binary log file. */
+	private final int fileSize;
+	/** Open binary log file. */
+	private RandomAccessFile raf;
+	/** Mapped binary log file. */
+	private MappedByteBuffer buffer;
+	/** Runs the writer. */
+	private final ExecutorService writer;
+	/** Cleared on shutdown. */
+	private volatile boolean running = true;
+
+	/** Creates a new statement log and starts its writer thread.
+	 * @param fileName binary log file, or null to only write to the debug log.
+	 * @param fileSizeInMB size of the binary log file.
+	 * @param sampleRate log 1 in every sampleRate statements.
+	 * @param slowThresholdInMs only log statements taking at least this long (0 = log all).
+	 * @param suffix thread name suffix (pool name).
+	 */
+	public StatementLog(String fileName, int fileSizeInMB, int sampleRate, long slowThresholdInMs, String suffix){
+		this.sampleRate = Math.max(1, sampleRate);
+		this.slowThresholdInNanos = TimeUnit.MILLISECONDS.toNanos(slowThresholdInMs);
+		for (int i=0; i < RING_SIZE; i++){
+			this.ring[i] = new Slot();
+		}
+		this.file = fileName == null ? null : new File(fileName);
+		this.fileSize = fileSizeInMB * 1024 * 1024;
+		if (this.file != null){
+			try{
+				roll(); // keep the previous run's log as the backup
+			} catch (IOException e){
+				logger.error("Unable to open statement log file "+this.file+". Logging statements to the debug log only.", e);
+				closeFile();
+			}
+		}
+		this.writer = Executors.newSingleThreadExecutor(new CustomThreadFactory("BoneCP-statement-log"+suffix, true));
+		this.writer.execute(this);
+	}
+
+	/** Queues a statement to be logged, if it passes the slow and sampling filters. Parameters are copied without
+	 * boxing or formatting them; for objects, only the references are copied.
+	 * @param sql statement
+	 * @param params parameters (may be null)
+	 * @param durationInNanos time the execute call took
+	 */
+	protected void log(String sql, ParameterRecorder params, long durationInNanos){
+		if (durationInNanos < this.slowThresholdInNanos || (this.sampleRate > 1 && (this.statements++ % this.sampleRate) != 0)){
+			return;
+		}
+		int index = (int) (this.claimed.getAndIncrement() & (RING_SIZE - 1));
+		if (!this.states.compareAndSet(index, FREE, WRITING)){
+			this.dropped.incrementAndGet();
+			return;
+		}
+		Slot slot = this.ring[index];
+		slot.sql = sql;
+		slot.durationInNanos = durationInNanos;
+		slot.time = System.currentTimeMillis() - TimeUnit.NANOSECONDS.toMillis(durationInNanos);
+		slot.threadName = Thread.currentThread().getName();
+		if (params != null){
+			slot.params.copyFrom(params);
+		}
+		this.states.set(index, READY);
+	}
+
+	/** Writer loop: formats and writes out statements in ring order until shut down. */
+	// @Override
+	public void run() {
+		int index = 0;
+		while (true){
+			if (this.states.get(index) == READY){
+				write(this.ring[index]);
+				this.states.set(index, FREE);
+				index = (index + 1) & (RING_SIZE - 1);
+			} else if (this.running){
+				LockSupport.parkNanos(IDLE_WAIT_IN_NANOS);
+			} else {
+				break;
+			}
+		}
+		closeFile();
+	}
+
+	/** Formats a statement, writes it out and releases the references held by its slot.
+	 * @param slot slot to write
+	 */
+	private void write(Slot slot){
+		try{
+			String statement = PoolUtil.fillLogParams(slot.sql, slot.params);
+			if (logger.isDebugEnabled()){
+				logger.debug(statement);
+			}
+			if (this.buffer != null){
+				append(slot.time, slot.durationInNanos, slot.threadName, statement);
+			}
+			this.written.incrementAndGet();
+		} catch (Throwable t){ // keep the writer alive no matter what a parameter's toString() does
+			logger.error("Failed to log statement", t);
+		} finally {
+			slot.sql = null;
+			slot.threadName = null;
+			slot.params.clear();
+		}
+	}
+
+	/** Appends a record to the binary log, rolling it over first if it is full.
+	 * @param time wall clock time the execute started
+	 * @param durationInNanos execute duration
+	 * @param threadName executing thread
+	 * @param statement statement with its parameters filled in
+	 * @throws IOException on failure to roll the file
+	 */
+	private void append(long time, long durationInNanos, String threadName, String statement) throws IOException{
+		byte[] name = utf8(threadName);
+		byte[] text = utf8(statement);
+		// keep room for the record length and the end of data marker
+		int maxText = this.fileSize - HEADER_SIZE - 32 - name.length;
+		int length = 24 + name.length + Math.min(text.length, maxText);
+		if (this.buffer.remaining() < length + 8){
+			roll();
+		}
+		this.buffer.putInt(length);
+		this.buffer.putLong(time);
+		this.buffer.putLong(durationInNanos);
+		this.buffer.putInt(name.length);
+		this.buffer.put(name);
+		this.buffer.putInt(Math.min(text.length, maxText));
+		this.buffer.put(text, 0, Math.min(text.length, maxText));
+	}
+
+	/** Moves the current binary log (if any) to the .1 backup, replacing the previous backup, and starts a new one.
+	 * @throws IOException on failure to create the new file
+	 */
+	private void roll() throws IOException{
+		closeFile();
+		if (this.file.exists()){
+			File backup = new File(this.file.getPath() + ".1");
+			backup.delete();
+			if (!this.file.renameTo(backup) && !this.file.delete()){
+				throw new IOException("Unable to roll over statement log "+this.file);
+			}
+		}
+		this.raf = new RandomAccessFile(this.file, "rw");
+		this.raf.setLength(this.fileSize);
+		this.buffer = this.raf.getChannel().map(MapMode.READ_WRITE, 0, this.fileSize);
+		this.buffer.putInt(MAGIC);
+		this.buffer.putInt(VERSION);
+	}
+
+	/** Closes the binary log, if open. */
+	private void closeFile(){
+		if (this.raf != null){
+			try {
+				if (this.buffer != null){
+					this.buffer.force();
+				}
+				this.raf.close();
+			} catch (IOException e) {
+				logger.error("Error closing statement log", e);
+			}
+			this.raf = null;
+			this.buffer = null;
+		}
+	}
+
+	/** Stops the writer once everything queued so far has been written out. */
+	public void shutdown(){
+		this.running = false;
+		this.writer.shutdown();
+		try {
+			this.writer.awaitTermination(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			// do nothing
+		}
+	}
+
+	/** Returns the number of statements written out.
+	 * @return statements logged
+	 */
+	public long getWrittenCount(){
+		return this.written.get();
+	}
+
+	/** Returns the number of statements dropped because the writer couldn't keep up.
+	 * @return statements dropped
+	 */
+	public long getDroppedCount(){
+		return this.dropped.get();
+	}
+
+	/** Encodes a string as UTF-8.
+	 * @param s string (may be null)
+	 * @return bytes
+	 */
+	private static byte[] utf8(String s){
+		try {
+			return s == null ? new byte[0] : s.getBytes("UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e); // every JVM supports UTF-8
+		}
+	}
+
+	/** Reads back the statements in a binary log file.
+	 * @param file log file
+	 * @return statements in the order they were written
+	 * @throws IOException if the file can't be read or is not a statement log
+	 */
+	public static List<Entry> read(File file) throws IOException{
+		FileInputStream in = new FileInputStream(file);
+		try{
+			FileChannel channel = in.getChannel();
+			ByteBuffer buffer = channel.map(MapMode.READ_ONLY, 0, channel.size());
+			if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC || buffer.getInt() != VERSION){
+				throw new IOException(file + " is not a statement log");
+			}
+			List<Entry> result = new ArrayList<Entry>();
+			int length;
+			while (buffer.remaining() >= 4 && (length = buffer.getInt()) > 0 && length <= buffer.remaining()){
+				long time = buffer.getLong();
+				long duration = buffer.getLong();
+				String threadName = readString(buffer);
+				String statement = readString(buffer);
+				result.add(new Entry(time, duration, threadName, statement));
+			}
+			return result;
+		} finally {
+			in.close();
+		}
+	}
+
+	/** Reads a length-prefixed UTF-8 string.
+	 * @param buffer buffer
+	 * @return string
+	 * @throws UnsupportedEncodingException never
+	 */
+	private static String readString(ByteBuffer buffer) throws UnsupportedEncodingException{
+		byte[] bytes = new byte[buffer.getInt()];
+		buffer.get(bytes);
+		return new String(bytes, "UTF-8");
+	}
+
+	/** Prints out the statements in the given binary log files, oldest file first.
+	 * @param args log files; pass the .1 backup before the current file to see everything.
+	 * @throws IOException on failure to read a file
+	 */
+	public static void main(String[] args) throws IOException{
+		if (args.length == 0){
+			System.err.println("Usage: java "+StatementLog.class.getName()+" <statement log file>...");
+			System.exit(1);
+		}
+		for (String arg: args){
+			Collection<Entry> entries = read(new File(arg));
+			for (Entry entry: entries){
+				System.out.println(entry);
+			}
+		}
+	}
+
+	/** A statement waiting to be written out. Reused for the life of the pool. */
+	private static class Slot {
+		/** Statement. */
+		protected String sql;
+		/** Parameters (for objects, references rather than copies). */
+		protected final ParameterRecorder params = new ParameterRecorder();
+		/** Wall clock time the execute started. */
+		protected long time;
+		/** Execute duration. */
+		protected long durationInNanos;
+		/** Executing thread. */
+		protected String threadName;
+	}
+
+	/** A statement read back from a binary log. */
+	public static class Entry {
+		/** Wall clock time the execute started (ms since the epoch). */
+		private final long time;
+		/** Execute duration. */
+		private final long durationInNanos;
+		/** Executing thread. */
+		private final String threadName;
+		/** Statement with its parameters filled in. */
+		private final String statement;
+
+		/** Default constructor.
+		 * @param time wall clock time the execute started
+		 * @param durationInNanos execute duration
+		 * @param threadName executing thread
+		 * @param statement statement with its parameters filled in
+		 */
+		public Entry(long time, long durationInNanos, String threadName, String statement){
+			this.time = time;
+			this.durationInNanos = durationInNanos;
+			this.threadName = threadName;
+			this.statement = statement;
+		}
+
+		/** Returns the wall clock time the execute started.
+		 * @return ms since the epoch
+		 */
+		public long getTime() {
+			return this.time;
+		}
+
+		/** Returns the execute duration.
+		 * @return time in ns
+		 */
+		public long getDurationInNanos() {
+			return this.durationInNanos;
+		}
+
+		/** Returns the name of the executing thread.
+		 * @return thread name
+		 */
+		public String getThreadName() {
+			return this.threadName;
+		}
+
+		/** Returns the statement with its parameters filled in.
+		 * @return statement
+		 */
+		public String getStatement() {
+			return this.statement;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%tF %<tT.%<tL [%s] %.3f ms: %s", this.time, this.threadName, this.durationInNanos / 1000000.0, this.statement);
+		}
+	}
+}
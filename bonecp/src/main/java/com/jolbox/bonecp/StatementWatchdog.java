@@ -0,0 +1,171 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+/**
+ * 
+ */
+package com.jolbox.bonecp;
+
+import java.util.Map.Entry;
+import java.util.Properties;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.MapMaker;
+
+/**
+ * Pool-wide watchdog that cancels statements which are still executing past their budget. Statements 
+ * register themselves (with a deadline) for the duration of an execute call; a single scheduled task 
+ * scans the running statements at a fixed tick and calls Statement.cancel() on any that are overdue. This 
+ * keeps the cost per execute down to a map put/remove instead of a timer task or thread per statement.
+ * 
+ * @author wallacew
+ *
+ */
+public class StatementWatchdog implements Runnable {
+	/** Class logger. */
+	private static final Logger logger = LoggerFactory.getLogger(StatementWatchdog.class);
+	/** Shortest interval between scans. */
+	protected static final long MIN_TICK_IN_MS = 10;
+	/** Longest interval between scans. */
+	protected static final long MAX_TICK_IN_MS = 1000;
+	/** Statements currently executing, mapped to the System.nanoTime() at which they should be cancelled. */
+	private final ConcurrentMap<StatementHandle, Long> running = new MapMaker().concurrencyLevel(16).makeMap();
+	/** Budget for statements not matching any pattern. 0 = don't cancel. */
+	private final long defaultTimeoutInNanos;
+	/** Per-SQL patterns, tried in order. */
+	private final Pattern[] patterns;
+	/** Budget for each entry in patterns. */
+	private final long[] patternTimeoutsInNanos;
+	/** Statistics handle (null if statistics are disabled). */
+	private final Statistics statistics;
+	/** Interval between scans. */
+	private final long tickInMs;
+
+	/** Creates a new watchdog.
+	 * @param defaultTimeoutInMs budget for statements not matching any pattern (0 = don't cancel).
+	 * @param patternTimeouts regular expression to budget in ms, may be null. Patterns are tried in alphabetical order.
+	 * @param statistics statistics handle, or null if statistics are disabled.
+	 */
+	public StatementWatchdog(long defaultTimeoutInMs, Properties patternTimeouts, Statistics statistics){
+		this.defaultTimeoutInNanos = TimeUnit.MILLISECONDS.toNanos(defaultTimeoutInMs);
+		this.statistics = statistics;
+		TreeSet<String> keys = new TreeSet<String>();
+		if (patternTimeouts != null){
+			for (Object key: patternTimeouts.keySet()){
+				keys.add(key.toString());
+			}
+		}
+		this.patterns = new Pattern[keys.size()];
+		this.patternTimeoutsInNanos = new long[keys.size()];
+		long shortest = defaultTimeoutInMs;
+		int i = 0;
+		for (String key: keys){
+			long timeout = Long.parseLong(patternTimeouts.getProperty(key).trim());
+			this.patterns[i] = Pattern.compile(key);
+			this.patternTimeoutsInNanos[i++] = TimeUnit.MILLISECONDS.toNanos(timeout);
+			if (timeout > 0 && (shortest == 0 || timeout < shortest)){
+				shortest = timeout;
+			}
+		}
+		// scan often enough to cancel within ~25% of the shortest budget.
+		this.tickInMs = shortest == 0 ? MAX_TICK_IN_MS : Math.min(MAX_TICK_IN_MS, Math.max(MIN_TICK_IN_MS, shortest / 4));
+	}
+
+	/** Schedules the periodic scan on the given executor.
+	 * @param scheduler executor to run on.
+	 */
+	public void start(ScheduledExecutorService scheduler){
+		scheduler.scheduleWithFixedDelay(this, this.tickInMs, this.tickInMs, TimeUnit.MILLISECONDS);
+	}
+
+	/** Returns the budget that applies to the given SQL according to the pool settings.
+	 * @param sql statement (may be null, eg for batches).
+	 * @return budget in nanoseconds, 0 = don't cancel.
+	 */
+	public long getTimeoutInNanos(String sql){
+		if (sql != null){
+			for (int i=0; i < this.patterns.length; i++){
+				if (this.patterns[i].matcher(sql).find()){
+					return this.patternTimeoutsInNanos[i];
+				}
+			}
+		}
+		return this.defaultTimeoutInNanos;
+	}
+
+	/** Starts tracking an execute call.
+	 * @param statement statement being executed.
+	 * @param timeoutInNanos budget for this call.
+	 */
+	protected void register(StatementHandle statement, long timeoutInNanos){
+		this.running.put(statement, System.nanoTime() + timeoutInNanos);
+	}
+
+	/** Stops tracking an execute call.
+	 * @param statement statement whose call has returned.
+	 */
+	protected void unregister(StatementHandle statement){
+		this.running.remove(statement);
+	}
+
+	/** Scans the running statements and cancels any that are overdue. */
+	// @Override
+	public void run() {
+		long now = System.nanoTime();
+		for (Entry<StatementHandle, Long> entry: this.running.entrySet()){
+			// conditional remove so that we don't cancel a statement that finished and started another execute meanwhile.
+			if (now - entry.getValue() >= 0 && this.running.remove(entry.getKey(), entry.getValue())){
+				cancel(entry.getKey());
+			}
+		}
+	}
+
+	/** Cancels an overrunning statement and flags its connection so that it's tested before being reused.
+	 * @param statement statement to cancel.
+	 */
+	protected void cancel(StatementHandle statement){
+		logger.warn("Cancelling statement that exceeded its execution budget: "+statement.sql);
+		try{
+			statement.internalStatement.cancel();
+		} catch (Throwable t){ // keep the watchdog alive no matter what the driver does
+			logger.error("Failed to cancel statement", t);
+		}
+		statement.connectionHandle.possiblyBroken = true;
+		if (this.statistics != null){
+			this.statistics.incrementStatementsCancelled();
+		}
+	}
+
+	/** Returns the number of statements currently being tracked.
+	 * @return number of executing statements
+	 */
+	public int getRunningCount(){
+		return this.running.size();
+	}
+
+	/** Returns the interval between scans.
+	 * @return tick in ms
+	 */
+	public long getTickInMs(){
+		return this.tickInMs;
+	}
+}
@@ -46,6 +46,30 @@ public class Statistics implements StatisticsMBean, Serializable{
 	private final AtomicLong statementsExecuted = new AtomicLong(0);
 	/** Number of statements that have been prepared. */
 	private final AtomicLong statementsPrepared = new AtomicLong(0);
+	/** Total size of transaction replay logs (in bytes) at the end of each transaction. */
+	private final AtomicLong cumulativeReplayLogSize = new AtomicLong(0);
+	/** Number of transaction replay logs recorded. */
+	private final AtomicLong replayLogsRecorded = new AtomicLong(0);
+	/** Largest transaction replay log seen (in bytes). */
+	private final AtomicLong maxReplayLogSize = new AtomicLong(0);
+	/** Number of transactions whose replay log was discarded for going over the size limit. */
+	private final AtomicLong replayLogOverflows = new AtomicLong(0);
+	/** Number of statements cancelled by the statement watchdog. */
+	private final AtomicLong statementsCancelled = new AtomicLong(0);
+	/** Number of connections handed out from a thread-local slot. */
+	private final AtomicLong cachedConnectionHits = new AtomicLong(0);
+	/** Number of connection requests served from the shared partitions under the cached strategy. */
+	private final AtomicLong cachedConnectionMisses = new AtomicLong(0);
+	/** Number of idle thread-local slots revoked under pressure. */
+	private final AtomicLong cachedSlotsRevoked = new AtomicLong(0);
+	/** Number of connections reported by the leak detector. */
+	private final AtomicLong connectionLeaksSuspected = new AtomicLong(0);
+	/** Number of expired connections replaced make-before-break. */
+	private final AtomicLong connectionsRecycled = new AtomicLong(0);
+	/** Distribution of the time taken to give a connection to the application. */
+	private final DurationHistogram connectionWaitTimes = new DurationHistogram();
+	/** Distribution of the time connections are held by the application. */
+	private final DurationHistogram connectionHoldTimes = new DurationHistogram();
 	
 	/** Pool handle. */
 	private BoneCP pool;
@@ -70,6 +94,18 @@ public class Statistics implements StatisticsMBean, Serializable{
 		this.cumulativeStatementPrepareTime.set(0);
 		this.statementsExecuted.set(0);
 		this.statementsPrepared.set(0);
+		this.cumulativeReplayLogSize.set(0);
+		this.replayLogsRecorded.set(0);
+		this.maxReplayLogSize.set(0);
+		this.replayLogOverflows.set(0);
+		this.statementsCancelled.set(0);
+		this.cachedConnectionHits.set(0);
+		this.cachedConnectionMisses.set(0);
+		this.cachedSlotsRevoked.set(0);
+		this.connectionLeaksSuspected.set(0);
+		this.connectionsRecycled.set(0);
+		this.connectionWaitTimes.reset();
+		this.connectionHoldTimes.reset();
 	}
 	
 	/* (non-Javadoc)
@@ -156,6 +192,14 @@ public class Statistics implements StatisticsMBean, Serializable{
 	 */
 	protected void addCumulativeConnectionWaitTime(long increment) {
 		this.cumulativeConnectionWaitTime.addAndGet(increment);
+		this.connectionWaitTimes.record(increment);
+	}
+
+	/** Adds the time a connection was held by the application.
+	 * @param nanos time between checkout and checkin
+	 */
+	protected void addConnectionHoldTime(long nanos) {
+		this.connectionHoldTimes.record(nanos);
 	}
 
 	/** Adds statements executed.
@@ -250,4 +294,174 @@ public class Statistics implements StatisticsMBean, Serializable{
 		return this.statementsPrepared.get();
 	}
 	
+	/** Adds the size of a transaction replay log at the end of a transaction.
+	 * @param size log size in bytes
+	 */
+	protected void addReplayLogSize(long size) {
+		this.cumulativeReplayLogSize.addAndGet(size);
+		this.replayLogsRecorded.incrementAndGet();
+		long max = this.maxReplayLogSize.get();
+		while (size > max && !this.maxReplayLogSize.compareAndSet(max, size)){
+			max = this.maxReplayLogSize.get();
+		}
+	}
+
+	/**
+	 * Accessor method.
+	 */
+	protected void incrementReplayLogOverflows() {
+		this.replayLogOverflows.incrementAndGet();
+	}
+
+	/* (non-Javadoc)
+	 * @see com.jolbox.bonecp.StatisticsMBean#getReplayLogSizeAvg()
+	 */
+	public double getReplayLogSizeAvg() {
+		return this.replayLogsRecorded.get() == 0 ? 0 : this.cumulativeReplayLogSize.get() / (1.0*this.replayLogsRecorded.get());
+	}
+
+	/* (non-Javadoc)
+	 * @see com.jolbox.bonecp.StatisticsMBean#getMaxReplayLogSize()
+	 */
+	public long getMaxReplayLogSize() {
+		return this.maxReplayLogSize.get();
+	}
+
+	/* (non-Javadoc)
+	 * @see com.jolbox.bonecp.StatisticsMBean#getReplayLogOverflows()
+	 */
+	public long getReplayLogOverflows() {
+		return this.replayLogOverflows.get();
+	}
+
+	/**
+	 * Accessor method.
+	 */
+	protected void incrementStatementsCancelled() {
+		this.statementsCancelled.incrementAndGet();
+	}
+
+	/* (non-Javadoc)
+	 * @see com.jolbox.bonecp.StatisticsMBean#getStatementsCancelled()
+	 */
+	public long getStatementsCancelled() {
+		return this.statementsCancelled.get();
+	}
+
+	/**
+	 * Accessor method.
+	 */
+	protected void incrementCachedConnectionHits() {
+		this.cachedConnectionHits.incrementAndGet();
+	}
+
+	/**
+	 * Accessor method.
+	 */
+	protected void incrementCachedConnectionMisses() {
+		this.cachedConnectionMisses.incrementAndGet();
+	}
+
+	/**
+	 * Accessor method.
+	 * @param count slots revoked
+	 */
+	protected void addCachedSlotsRevoked(long count) {
+		this.cachedSlotsRevoked.addAndGet(count);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.jolbox.bonecp.StatisticsMBean#getCachedConnectionHits()
+	 */
+	public long getCachedConnectionHits() {
+		return this.cachedConnectionHits.get();
+	}
+
+	/* (non-Javadoc)
+	 * @see com.jolbox.bonecp.StatisticsMBean#getCachedConnectionMisses()
+	 */
+	public long getCachedConnectionMisses() {
+		return this.cachedConnectionMisses.get();
+	}
+
+	/* (non-Javadoc)
+	 * @see com.jolbox.bonecp.StatisticsMBean#getCachedConnectionHitRatio()
+	 */
+	public double getCachedConnectionHitRatio() {
+		long hits = this.cachedConnectionHits.get();
+		long total = hits + this.cachedConnectionMisses.get();
+		return total == 0 ? 0 : hits / (1.0*total);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.jolbox.bonecp.StatisticsMBean#getCachedSlotsRevoked()
+	 */
+	public long getCachedSlotsRevoked() {
+		return this.cachedSlotsRevoked.get();
+	}
+
+	/**
+	 * Accessor method.
+	 */
+	protected void incrementConnectionLeaksSuspected() {
+		this.connectionLeaksSuspected.incrementAndGet();
+	}
+
+	/* (non-Javadoc)
+	 * @see com.jolbox.bonecp.StatisticsMBean#getConnectionLeaksSuspected()
+	 */
+	public long getConnectionLeaksSuspected() {
+		return this.connectionLeaksSuspected.get();
+	}
+
+	/* (non-Javadoc)
+	 * @see com.jolbox.bonecp.StatisticsMBean#getSuspectedLeaks()
+	 */
+	public String[] getSuspectedLeaks() {
+		LeakDetector leakDetector = this.pool.getLeakDetector();
+		return leakDetector == null ? new String[0] : leakDetector.getSuspectedLeaks();
+	}
+
+	/**
+	 * Accessor method.
+	 */
+	protected void incrementConnectionsRecycled() {
+		this.connectionsRecycled.incrementAndGet();
+	}
+
+	/* (non-Javadoc)
+	 * @see com.jolbox.bonecp.StatisticsMBean#getConnectionsRecycled()
+	 */
+	public long getConnectionsRecycled() {
+		return this.connectionsRecycled.get();
+	}
+
+	/* (non-Javadoc)
+	 * @see com.jolbox.bonecp.StatisticsMBean#getConnectionWaitTime99thPercentile()
+	 */
+	public double getConnectionWaitTime99thPercentile() {
+		return DurationHistogram.valueAtPercentile(this.connectionWaitTimes.snapshot(), 99) / 1000000.0;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.jolbox.bonecp.StatisticsMBean#getConnectionHoldTimeAvg()
+	 */
+	public double getConnectionHoldTimeAvg() {
+		return DurationHistogram.mean(this.connectionHoldTimes.snapshot()) / 1000000.0;
+	}
+
+	/** Returns the distribution of connection wait times.
+	 * @return histogram
+	 */
+	protected DurationHistogram getConnectionWaitTimes() {
+		return this.connectionWaitTimes;
+	}
+
+	/** Returns the distribution of connection hold times.
+	 * @return histogram
+	 */
+	protected DurationHistogram getConnectionHoldTimes() {
+		return this.connectionHoldTimes;
+	}
+	
 }
@@ -121,7 +121,75 @@ public interface StatisticsMBean {
 	 * @return number of statements. 
 	 */
 	long getStatementsExecuted();
-	
-	
 
-}
\ No newline at end of file
+	/** Returns the average size (in bytes) of the transaction replay log at the end of a transaction. Only 
+	 * recorded if transactionRecoveryEnabled is set.
+	 * @return average log size in bytes
+	 */
+	double getReplayLogSizeAvg();
+
+	/** Returns the size (in bytes) of the largest transaction replay log seen.
+	 * @return max log size in bytes
+	 */
+	long getMaxReplayLogSize();
+
+	/** Returns the number of transactions whose replay log went over transactionRecoveryMaxLogSizeInKB 
+	 * (and therefore could not be recovered on failure).
+	 * @return number of overflows
+	 */
+	long getReplayLogOverflows();
+
+	/** Returns the number of statements that were cancelled by the watchdog for running past 
+	 * statementCancelTimeoutInMs (or their per-statement/per-pattern budget).
+	 * @return number of cancelled statements
+	 */
+	long getStatementsCancelled();
+
+	/** Returns the number of connections handed out straight from a thread-local slot (CACHED strategy only). 
+	 * @return fast path hits
+	 */
+	long getCachedConnectionHits();
+
+	/** Returns the number of connection requests that could not be served from a thread-local slot and went
+	 * to the shared partitions instead (CACHED strategy only).
+	 * @return fast path misses
+	 */
+	long getCachedConnectionMisses();
+
+	/** Returns the fast path hit ratio of the CACHED strategy (0..1).
+	 * @return hit ratio
+	 */
+	double getCachedConnectionHitRatio();
+
+	/** Returns the number of idle thread-local slots that were taken back because the shared partitions ran dry.
+	 * @return revoked slots
+	 */
+	long getCachedSlotsRevoked();
+
+	/** Returns the number of connections the leak detector reported as held past leakDetectionThresholdInMs.
+	 * @return suspected leaks
+	 */
+	long getConnectionLeaksSuspected();
+
+	/** Returns a description (holder thread, time held and, if sampled, checkout stack trace) of every connection
+	 * currently held past leakDetectionThresholdInMs. Empty if leak detection is off.
+	 * @return suspected leaks
+	 */
+	String[] getSuspectedLeaks();
+
+	/** Returns the number of expired connections that were retired only after a replacement had been opened
+	 * (see maxConcurrentConnectionRecycles).
+	 * @return connections recycled
+	 */
+	long getConnectionsRecycled();
+
+	/** Returns the time under which 99% of getConnection requests were served (in ms, accurate to within 12.5%).
+	 * @return Time in ms
+	 */
+	double getConnectionWaitTime99thPercentile();
+
+	/** Returns the average time between a connection being handed out and it being given back (in ms).
+	 * @return Time in ms
+	 */
+	double getConnectionHoldTimeAvg();
+}
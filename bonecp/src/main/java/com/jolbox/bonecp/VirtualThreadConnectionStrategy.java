@@ -0,0 +1,134 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+/**
+ * 
+ */
+package com.jolbox.bonecp;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/** Connection strategy for applications that run each request on its own short-lived (eg virtual) thread.
+ * 
+ * Unlike CACHED, nothing is tracked per thread (no thread-locals, no per-thread references), so millions of 
+ * threads coming and going leave nothing behind. Unlike DEFAULT, the starting partition is picked by a hash
+ * of the thread id rather than the id modulo partition count, since ids of one-shot threads are handed out 
+ * in lock-step and otherwise pile onto the same partitions. Threads that find no free connection park on a 
+ * request on their partition (see {@link AsyncConnectionRequest}) instead of blocking inside the partition
+ * queue; that request is completed directly by the thread that releases the next connection. No monitor
+ * (synchronized) is held while waiting so virtual threads never pin their carrier.
+ * 
+ * For best results set partitionCount to the number of CPUs (carrier threads).
+ *
+ * @author wallacew
+ *
+ */
+public class VirtualThreadConnectionStrategy extends DefaultConnectionStrategy {
+
+	/** uid */
+	private static final long serialVersionUID = -3547713812305236429L;
+
+	/** Constructor.
+	 * @param pool pool handle
+	 */
+	public VirtualThreadConnectionStrategy(BoneCP pool){
+		super(pool);
+	}
+
+	/** Spreads thread ids over the partitions.
+	 * @return partition index
+	 */
+	@Override
+	protected int selectPartition(){
+		long h = Thread.currentThread().getId();
+		// 64-bit mix (murmur3 finalizer) so that consecutive ids land on unrelated partitions
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		return (int) ((h & Long.MAX_VALUE) % this.pool.partitionCount);
+	}
+
+	@Override
+	protected Connection getConnectionInternal() throws SQLException {
+		ConnectionHandle result = pollConnection();
+		if (result != null){
+			return result;
+		}
+
+		ConnectionPartition connectionPartition = this.pool.partitions[selectPartition()];
+		// postConnection is done by our caller
+		AsyncConnectionRequest request = new AsyncConnectionRequest(null, connectionPartition, 0, false);
+		connectionPartition.addAsyncWaiter(request);
+
+		// a connection might have been released after we polled but before we were parked
+		connectionPartition.serveAsyncWaiters();
+
+		try{
+			return request.get(this.pool.connectionTimeoutInMs, TimeUnit.MILLISECONDS);
+		} catch (TimeoutException e){
+			if (request.cancel(false)){
+				if (this.pool.nullOnConnectionTimeout){
+					return null;
+				}
+				// 08001 = The application requester is unable to establish the connection.
+				throw new SQLException("Timed out waiting for a free available connection.", "08001");
+			}
+			// lost the race: a connection is being handed to us right now.
+			return awaitClaimed(request);
+		} catch (InterruptedException e){
+			if (request.cancel(false)){
+				if (this.pool.nullOnConnectionTimeout){
+					return null;
+				}
+				throw PoolUtil.generateSQLException(e.getMessage(), e);
+			}
+			Thread.currentThread().interrupt();
+			return awaitClaimed(request);
+		} catch (ExecutionException e){
+			throw PoolUtil.generateSQLException(e.getCause().getMessage(), e.getCause());
+		}
+	}
+
+	/** Waits for a request that another thread has already claimed (and is about to complete).
+	 * @param request claimed request
+	 * @return connection
+	 * @throws SQLException if the request was failed
+	 */
+	private Connection awaitClaimed(AsyncConnectionRequest request) throws SQLException{
+		boolean interrupted = false;
+		try{
+			while (true){
+				try{
+					return request.get();
+				} catch (InterruptedException e){
+					interrupted = true;
+				} catch (ExecutionException e){
+					throw PoolUtil.generateSQLException(e.getCause().getMessage(), e.getCause());
+				} catch (CancellationException e){
+					throw PoolUtil.generateSQLException(e.getMessage(), e);
+				}
+			}
+		} finally {
+			if (interrupted){
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+}
@@ -0,0 +1,338 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+/**
+ * 
+ */
+package com.jolbox.bonecp;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records pool activity (checkouts, checkins, prepares and executes) to a memory-mapped ring file so that 
+ * production traffic can be replayed offline against candidate pool settings. Each event is a fixed 40-byte 
+ * record; a writer claims a slot with a single atomic increment and fills it with absolute puts, so recording 
+ * never blocks and never allocates. Once the file is full the oldest events are overwritten.
+ * 
+ * <p>Only timings and a fingerprint of the SQL (the hash code of its {@link SqlFingerprint}, so statements that only 
+ * differ in their literals share an id) are written, never the SQL text or parameters.
+ * 
+ * <p>File layout: a {@value #HEADER_SIZE}-byte header (magic, version, record size, capacity, start time) 
+ * followed by the record slots. Each record holds, in order: sequence number + 1 (written last; 0 = empty slot), 
+ * event type, thread id, event start (ns since the recorder started), duration (ns), SQL fingerprint and lease id.
+ * 
+ * @author wallacew
+ *
+ */
+public class WorkloadRecorder {
+	/** A connection was obtained. Duration = time spent waiting for it. */
+	public static final int CHECKOUT = 1;
+	/** A connection was given back. Duration = time it was held. */
+	public static final int CHECKIN = 2;
+	/** A statement was prepared. Duration = time taken by prepareStatement/prepareCall. */
+	public static final int PREPARE = 3;
+	/** A statement was executed. Duration = time taken by the execute call. */
+	public static final int EXECUTE = 4;
+	/** Identifies a trace file ("BCPW"). */
+	protected static final int MAGIC = 0x42435057;
+	/** Version of the file layout. */
+	protected static final int VERSION = 1;
+	/** Size of the file header. */
+	protected static final int HEADER_SIZE = 64;
+	/** Size of each record. */
+	protected static final int RECORD_SIZE = 40;
+	/** Largest file that can be mapped in one go. */
+	public static final int MAX_SIZE_IN_MB = 2047;
+	/** Header offset: sequence number of the next record, updated on close. */
+	private static final int HEADER_NEXT_SEQUENCE = 24;
+	/** The mapped file. */
+	private final MappedByteBuffer buffer;
+	/** Underlying file. */
+	private final RandomAccessFile file;
+	/** Number of record slots. */
+	private final int capacity;
+	/** Sequence number of the next record. */
+	private final AtomicLong sequence = new AtomicLong();
+	/** Lease id counter. */
+	private final AtomicInteger leases = new AtomicInteger();
+	/** Base for event timestamps. */
+	private final long startNanos = System.nanoTime();
+	/** Set once the recorder has been closed. */
+	private volatile boolean closed;
+
+	/** Creates the capture file (overwriting any existing one) and maps it.
+	 * @param path file to write to.
+	 * @param sizeInMB size of the file, 1 to {@value #MAX_SIZE_IN_MB}.
+	 * @throws IOException if the file cannot be created or mapped.
+	 */
+	public WorkloadRecorder(String path, int sizeInMB) throws IOException{
+		if (sizeInMB < 1 || sizeInMB > MAX_SIZE_IN_MB){
+			throw new IllegalArgumentException("Workload capture size must be between 1 and "+MAX_SIZE_IN_MB+" MB, was "+sizeInMB);
+		}
+		this.capacity = (int) ((sizeInMB * 1024L * 1024L - HEADER_SIZE) / RECORD_SIZE);
+		long size = HEADER_SIZE + (long) this.capacity * RECORD_SIZE;
+		this.file = new RandomAccessFile(path, "rw");
+		this.file.setLength(0); // discard any previous trace
+		this.file.setLength(size);
+		this.buffer = this.file.getChannel().map(MapMode.READ_WRITE, 0, size);
+		this.buffer.putInt(0, MAGIC);
+		this.buffer.putInt(4, VERSION);
+		this.buffer.putInt(8, RECORD_SIZE);
+		this.buffer.putInt(12, this.capacity);
+		this.buffer.putLong(16, System.currentTimeMillis());
+		this.buffer.putLong(HEADER_NEXT_SEQUENCE, 0);
+	}
+
+	/** Records a checkout and starts a new lease on the handle.
+	 * @param handle connection being handed out.
+	 * @param requestTime System.nanoTime() at which the connection was requested.
+	 */
+	protected void checkOut(ConnectionHandle handle, long requestTime){
+		long now = System.nanoTime();
+		handle.workloadLeaseId = this.leases.incrementAndGet();
+		handle.workloadCheckOutTime = now;
+		write(CHECKOUT, requestTime, now - requestTime, 0, handle.workloadLeaseId);
+	}
+
+	/** Records a checkin.
+	 * @param handle connection being given back.
+	 */
+	protected void checkIn(ConnectionHandle handle){
+		long now = System.nanoTime();
+		write(CHECKIN, now, now - handle.workloadCheckOutTime, 0, handle.workloadLeaseId);
+	}
+
+	/** Records a prepare and ties the statement to the handle's current lease.
+	 * @param handle connection the statement was prepared on.
+	 * @param statement statement handed out.
+	 * @param sql statement text.
+	 * @param startTime System.nanoTime() at which the prepare started.
+	 */
+	protected void prepare(ConnectionHandle handle, StatementHandle statement, String sql, long startTime){
+		statement.workloadLeaseId = handle.workloadLeaseId;
+		write(PREPARE, startTime, System.nanoTime() - startTime, fingerprint(statement, sql), handle.workloadLeaseId);
+	}
+
+	/** Records an execute call.
+	 * @param statement statement executed.
+	 * @param sql statement text (may be null, eg for batches).
+	 * @param startTime System.nanoTime() at which the execute started.
+	 */
+	protected void execute(StatementHandle statement, String sql, long startTime){
+		write(EXECUTE, startTime, System.nanoTime() - startTime, fingerprint(statement, sql), statement.workloadLeaseId);
+	}
+
+	/** Returns the fingerprint written for the given SQL.
+	 * @param sql statement text (may be null).
+	 * @return hash code of the SQL's fingerprint, 0 if none.
+	 */
+	protected static int fingerprint(String sql){
+		return sql == null ? 0 : SqlFingerprint.normalize(sql).hashCode();
+	}
+
+	/** As fingerprint(String), but reuses the fingerprint the statement has cached for its SQL (if any).
+	 * @param statement statement the SQL was prepared or executed on.
+	 * @param sql statement text (may be null).
+	 * @return hash code of the SQL's fingerprint, 0 if none.
+	 */
+	private static int fingerprint(StatementHandle statement, String sql){
+		return sql == null ? 0 : statement.getFingerprint(sql).hashCode();
+	}
+
+	/** Writes a single record.
+	 * @param type event type
+	 * @param time System.nanoTime() at which the event started
+	 * @param duration duration of the event
+	 * @param fingerprint SQL fingerprint (0 if none)
+	 * @param leaseId lease the event belongs to
+	 */
+	private void write(int type, long time, long duration, int fingerprint, int leaseId){
+		if (this.closed){
+			return;
+		}
+		long seq = this.sequence.getAndIncrement();
+		int pos = HEADER_SIZE + (int) (seq % this.capacity) * RECORD_SIZE;
+		this.buffer.putLong(pos, 0); // mark the slot as being rewritten
+		this.buffer.putInt(pos + 8, type);
+		this.buffer.putInt(pos + 12, (int) Thread.currentThread().getId());
+		this.buffer.putLong(pos + 16, time - this.startNanos);
+		this.buffer.putLong(pos + 24, duration);
+		this.buffer.putInt(pos + 32, fingerprint);
+		this.buffer.putInt(pos + 36, leaseId);
+		this.buffer.putLong(pos, seq + 1);
+	}
+
+	/** Flushes the trace to disk and stops recording. */
+	public void close(){
+		if (!this.closed){
+			this.closed = true;
+			this.buffer.putLong(HEADER_NEXT_SEQUENCE, this.sequence.get());
+			this.buffer.force();
+			try {
+				this.file.close();
+			} catch (IOException e) {
+				// the mapping stays valid; nothing more to do
+			}
+		}
+	}
+
+	/** Returns the number of events recorded so far (including any that have since been overwritten).
+	 * @return events recorded
+	 */
+	public long getEventCount(){
+		return this.sequence.get();
+	}
+
+	/** Returns the number of events the file can hold.
+	 * @return capacity
+	 */
+	public int getCapacity(){
+		return this.capacity;
+	}
+
+	/** Reads back a trace file.
+	 * @param file file to read.
+	 * @return events still held in the file, oldest first.
+	 * @throws IOException if the file cannot be read or is not a trace file.
+	 */
+	public static List<Event> read(File file) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try{
+			FileChannel channel = raf.getChannel();
+			MappedByteBuffer buffer = channel.map(MapMode.READ_ONLY, 0, channel.size());
+			if (channel.size() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION 
+					|| buffer.getInt(8) != RECORD_SIZE){
+				throw new IOException("Not a workload trace: "+file);
+			}
+			int capacity = buffer.getInt(12);
+			List<Event> events = new ArrayList<Event>();
+			for (int i=0; i < capacity; i++){
+				int pos = HEADER_SIZE + i * RECORD_SIZE;
+				long stamp = buffer.getLong(pos);
+				if (stamp > 0){
+					events.add(new Event(stamp - 1, buffer.getInt(pos + 8), buffer.getInt(pos + 12), buffer.getLong(pos + 16), 
+							buffer.getLong(pos + 24), buffer.getInt(pos + 32), buffer.getInt(pos + 36)));
+				}
+			}
+			Collections.sort(events, new Comparator<Event>() {
+				// @Override
+				public int compare(Event o1, Event o2) {
+					return o1.sequence < o2.sequence ? -1 : (o1.sequence == o2.sequence ? 0 : 1);
+				}
+			});
+			return events;
+		} finally {
+			raf.close();
+		}
+	}
+
+	/** A single recorded event. */
+	public static class Event {
+		/** Order in which the event was recorded. */
+		private final long sequence;
+		/** One of CHECKOUT, CHECKIN, PREPARE or EXECUTE. */
+		private final int type;
+		/** Id of the thread that caused the event. */
+		private final int threadId;
+		/** Event start, in ns since recording started. */
+		private final long time;
+		/** Event duration in ns. */
+		private final long duration;
+		/** SQL fingerprint (PREPARE and EXECUTE only). */
+		private final int fingerprint;
+		/** Lease the event belongs to. */
+		private final int leaseId;
+
+		/** Creates a new event.
+		 * @param sequence order in which the event was recorded
+		 * @param type event type
+		 * @param threadId thread id
+		 * @param time event start
+		 * @param duration event duration
+		 * @param fingerprint SQL fingerprint
+		 * @param leaseId lease id
+		 */
+		public Event(long sequence, int type, int threadId, long time, long duration, int fingerprint, int leaseId){
+			this.sequence = sequence;
+			this.type = type;
+			this.threadId = threadId;
+			this.time = time;
+			this.duration = duration;
+			this.fingerprint = fingerprint;
+			this.leaseId = leaseId;
+		}
+
+		/** Returns the order in which the event was recorded.
+		 * @return sequence number
+		 */
+		public long getSequence() {
+			return this.sequence;
+		}
+
+		/** Returns the event type.
+		 * @return one of CHECKOUT, CHECKIN, PREPARE or EXECUTE
+		 */
+		public int getType() {
+			return this.type;
+		}
+
+		/** Returns the id of the thread that caused the event.
+		 * @return thread id
+		 */
+		public int getThreadId() {
+			return this.threadId;
+		}
+
+		/** Returns the event start.
+		 * @return ns since recording started
+		 */
+		public long getTime() {
+			return this.time;
+		}
+
+		/** Returns the event duration: wait (CHECKOUT), hold (CHECKIN), or call time (PREPARE, EXECUTE).
+		 * @return duration in ns
+		 */
+		public long getDuration() {
+			return this.duration;
+		}
+
+		/** Returns the SQL fingerprint.
+		 * @return fingerprint (0 for CHECKOUT and CHECKIN)
+		 */
+		public int getFingerprint() {
+			return this.fingerprint;
+		}
+
+		/** Returns the lease this event belongs to.
+		 * @return lease id
+		 */
+		public int getLeaseId() {
+			return this.leaseId;
+		}
+	}
+}
@@ -130,4 +130,9 @@ public abstract class AbstractConnectionHook implements ConnectionHook {
 	public ConnectionState onMarkPossiblyBroken(ConnectionHandle connection, String state, SQLException e) {
 		return ConnectionState.NOP;
 	}
+
+//	@Override
+	public void onConnectionLeakSuspected(ConnectionHandle connection, long heldTimeInMs, String checkOutThreadName, Throwable checkOutTrace) {
+		// do nothing
+	}
 }
\ No newline at end of file
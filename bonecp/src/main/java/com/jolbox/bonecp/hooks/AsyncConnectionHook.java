@@ -0,0 +1,487 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.jolbox.bonecp.hooks;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.jolbox.bonecp.ConnectionHandle;
+import com.jolbox.bonecp.CustomThreadFactory;
+import com.jolbox.bonecp.ParameterRecorder;
+import com.jolbox.bonecp.StatementHandle;
+
+/**
+ * Wraps a connection hook so that its callbacks run on a dedicated thread instead of the thread that triggered 
+ * them. Each callback is recorded into a preallocated event in a bounded ring (statement parameters are copied, 
+ * everything else is passed by reference) and dispatched to the wrapped hook in order. When the ring is full, 
+ * events are either dropped (and counted) or the calling thread waits for room, as per the overflow policy.
+ * Callbacks not subscribed to are ignored outright, at the cost of a flag check.
+ * 
+ * <p>Only the notification callbacks (see {@link Event}) can be made asynchronous. onAcquire (which may prepare a
+ * connection before the pool hands it out) and the callbacks whose return value steers the pool (onAcquireFail, 
+ * onConnectionException, onMarkPossiblyBroken) are always passed straight through. Note that by the time an 
+ * asynchronous callback runs, the connection may have moved on (been checked in, handed out again or closed), so the
+ * wrapped hook should only inspect it, not use it. Parameter maps are only valid for the duration of the callback.
+ * 
+ * <p>Usage: config.setConnectionHook(new AsyncConnectionHook(myHook)), and call {@link #shutdown()} after closing
+ * the pool to deliver any events still queued. Events raised after shutdown are delivered on the calling thread.
+ * 
+ * @author wallacew
+ *
+ */
+public class AsyncConnectionHook implements ConnectionHook {
+	/** Class logger. */
+	private static final Logger logger = LoggerFactory.getLogger(AsyncConnectionHook.class);
+	/** Default number of events that can be queued. */
+	public static final int DEFAULT_QUEUE_SIZE = 4096;
+	/** How long the dispatcher sleeps when there is nothing to deliver. */
+	private static final long IDLE_WAIT_IN_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+	/** How long a blocked caller sleeps between checks for room in the ring. */
+	private static final long FULL_WAIT_IN_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+	/** Callbacks that can be dispatched asynchronously. */
+	public enum Event {
+		/** onCheckOut. */
+		CHECK_OUT,
+		/** onCheckIn. */
+		CHECK_IN,
+		/** onDestroy. */
+		DESTROY,
+		/** onBeforeStatementExecute. */
+		BEFORE_STATEMENT_EXECUTE,
+		/** onAfterStatementExecute. */
+		AFTER_STATEMENT_EXECUTE,
+		/** onQueryExecuteTimeLimitExceeded. */
+		QUERY_EXECUTE_TIME_LIMIT_EXCEEDED,
+		/** onConnectionLeakSuspected. */
+		CONNECTION_LEAK_SUSPECTED
+	}
+
+	/** What to do with an event when the ring is full. */
+	public enum OverflowPolicy {
+		/** Drop the event and count it. The calling thread is never held up. */
+		DROP,
+		/** Make the calling thread wait until the dispatcher has made room. No event is lost, but the wrapped hook
+		 * must then not use the pool itself. */
+		BLOCK
+	}
+
+	/** Hook the callbacks are dispatched to. */
+	private final ConnectionHook delegate;
+	/** Preallocated events. */
+	private final HookEvent[] ring;
+	/** Sequence number of each slot: equal to the ring position when free for that position, position + 1 once
+	 * published. */
+	private final AtomicLongArray sequences;
+	/** ring.length - 1. */
+	private final int mask;
+	/** Next ring position to claim. */
+	private final AtomicLong tail = new AtomicLong();
+	/** Next ring position to dispatch. Only written by the dispatcher. */
+	private volatile long head;
+	/** Number of events dropped because the ring was full. */
+	private final AtomicLong dropped = new AtomicLong();
+	/** True to wait for room rather than drop events. */
+	private final boolean block;
+	/** Subscribed to onCheckOut. */
+	private final boolean checkOut;
+	/** Subscribed to onCheckIn. */
+	private final boolean checkIn;
+	/** Subscribed to onDestroy. */
+	private final boolean destroy;
+	/** Subscribed to onBeforeStatementExecute. */
+	private final boolean beforeStatementExecute;
+	/** Subscribed to onAfterStatementExecute. */
+	private final boolean afterStatementExecute;
+	/** Subscribed to onQueryExecuteTimeLimitExceeded. */
+	private final boolean queryExecuteTimeLimitExceeded;
+	/** Subscribed to onConnectionLeakSuspected. */
+	private final boolean connectionLeakSuspected;
+	/** Runs the dispatcher. */
+	private final ExecutorService dispatcher;
+	/** Cleared on shutdown. */
+	private volatile boolean running = true;
+
+	/** Dispatches all asynchronous callbacks, dropping events if more than {@link #DEFAULT_QUEUE_SIZE} are queued.
+	 * @param delegate hook to dispatch to.
+	 */
+	public AsyncConnectionHook(ConnectionHook delegate){
+		this(delegate, DEFAULT_QUEUE_SIZE, OverflowPolicy.DROP, EnumSet.allOf(Event.class));
+	}
+
+	/** Creates a new adapter and starts its dispatcher thread.
+	 * @param delegate hook to dispatch to.
+	 * @param queueSize number of events that can be queued (rounded up to a power of two).
+	 * @param overflowPolicy what to do when the queue is full.
+	 * @param events callbacks to dispatch; all others in {@link Event} are ignored.
+	 */
+	public AsyncConnectionHook(ConnectionHook delegate, int queueSize, OverflowPolicy overflowPolicy, Set<Event> events){
+		this.delegate = delegate;
+		int size = Integer.highestOneBit(Math.max(2, queueSize - 1)) << 1;
+		this.ring = new HookEvent[size];
+		this.sequences = new AtomicLongArray(size);
+		for (int i=0; i < size; i++){
+			this.ring[i] = new HookEvent();
+			this.sequences.set(i, i);
+		}
+		this.mask = size - 1;
+		this.block = overflowPolicy == OverflowPolicy.BLOCK;
+		this.checkOut = events.contains(Event.CHECK_OUT);
+		this.checkIn = events.contains(Event.CHECK_IN);
+		this.destroy = events.contains(Event.DESTROY);
+		this.beforeStatementExecute = events.contains(Event.BEFORE_STATEMENT_EXECUTE);
+		this.afterStatementExecute = events.contains(Event.AFTER_STATEMENT_EXECUTE);
+		this.queryExecuteTimeLimitExceeded = events.contains(Event.QUERY_EXECUTE_TIME_LIMIT_EXCEEDED);
+		this.connectionLeakSuspected = events.contains(Event.CONNECTION_LEAK_SUSPECTED);
+		this.dispatcher = Executors.newSingleThreadExecutor(new CustomThreadFactory("BoneCP-async-hook", true));
+		this.dispatcher.execute(new Runnable() {
+			// @Override
+			public void run() {
+				dispatch();
+			}
+		});
+	}
+
+	/** Claims the next event in the ring.
+	 * @param type callback being recorded
+	 * @return event to fill in and publish, or null if it was dropped. After shutdown, a fresh event that publish()
+	 * delivers right away.
+	 */
+	private HookEvent claim(Event type){
+		while (true){
+			if (!this.running){
+				HookEvent event = new HookEvent();
+				event.type = type;
+				event.sequence = -1;
+				return event;
+			}
+			long position = this.tail.get();
+			long difference = this.sequences.get((int) (position & this.mask)) - position;
+			if (difference == 0){
+				if (this.tail.compareAndSet(position, position + 1)){
+					HookEvent event = this.ring[(int) (position & this.mask)];
+					event.type = type;
+					event.sequence = position;
+					return event;
+				}
+			} else if (difference < 0){ // full: the slot still holds the event from one lap ago
+				if (!this.block){
+					this.dropped.incrementAndGet();
+					return null;
+				}
+				LockSupport.parkNanos(FULL_WAIT_IN_NANOS);
+			}
+			// else another thread claimed this position first; try the next one
+		}
+	}
+
+	/** Hands a filled in event over to the dispatcher.
+	 * @param event event obtained from claim()
+	 */
+	private void publish(HookEvent event){
+		if (event.sequence < 0){
+			deliver(event);
+		} else {
+			this.sequences.set((int) (event.sequence & this.mask), event.sequence + 1);
+		}
+	}
+
+	/** Dispatcher loop: delivers events in order until shut down and drained. */
+	protected void dispatch(){
+		long position = this.head;
+		while (true){
+			int index = (int) (position & this.mask);
+			if (this.sequences.get(index) == position + 1){
+				HookEvent event = this.ring[index];
+				try{
+					deliver(event);
+				} catch (Throwable t){ // keep the dispatcher alive no matter what the hook does
+					logger.error("Connection hook threw an exception", t);
+				}
+				event.clear();
+				this.sequences.set(index, position + this.ring.length);
+				this.head = ++position;
+			} else if (this.running || position != this.tail.get()){
+				LockSupport.parkNanos(IDLE_WAIT_IN_NANOS);
+			} else {
+				break;
+			}
+		}
+	}
+
+	/** Calls the wrapped hook for the given event.
+	 * @param event event to deliver
+	 */
+	private void deliver(HookEvent event){
+		switch (event.type){
+		case CHECK_OUT:
+			this.delegate.onCheckOut(event.connection);
+			break;
+		case CHECK_IN:
+			this.delegate.onCheckIn(event.connection);
+			break;
+		case DESTROY:
+			this.delegate.onDestroy(event.connection);
+			break;
+		case BEFORE_STATEMENT_EXECUTE:
+			this.delegate.onBeforeStatementExecute(event.connection, (StatementHandle) event.statement, event.sql, event.getParams());
+			break;
+		case AFTER_STATEMENT_EXECUTE:
+			this.delegate.onAfterStatementExecute(event.connection, (StatementHandle) event.statement, event.sql, event.getParams());
+			break;
+		case QUERY_EXECUTE_TIME_LIMIT_EXCEEDED:
+			this.delegate.onQueryExecuteTimeLimitExceeded(event.connection, event.statement, event.sql, event.getParams(), event.time);
+			break;
+		case CONNECTION_LEAK_SUSPECTED:
+			this.delegate.onConnectionLeakSuspected(event.connection, event.time, event.sql, event.trace);
+			break;
+		}
+	}
+
+	/** Stops the dispatcher once all queued events have been delivered. Later events are delivered on the calling 
+	 * thread. */
+	public void shutdown(){
+		this.running = false;
+		this.dispatcher.shutdown();
+		try {
+			this.dispatcher.awaitTermination(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			// do nothing
+		}
+	}
+
+	/** Returns the number of events dropped because the queue was full.
+	 * @return events dropped
+	 */
+	public long getDroppedCount(){
+		return this.dropped.get();
+	}
+
+	/** Returns the number of events queued but not yet delivered.
+	 * @return events pending
+	 */
+	public long getPendingCount(){
+		return this.tail.get() - this.head;
+	}
+
+	/** Returns the hook callbacks are dispatched to.
+	 * @return the wrapped hook
+	 */
+	public ConnectionHook getDelegate(){
+		return this.delegate;
+	}
+
+	// @Override
+	public void onAcquire(ConnectionHandle connection) {
+		this.delegate.onAcquire(connection);
+	}
+
+	// @Override
+	public void onCheckIn(ConnectionHandle connection) {
+		if (this.checkIn){
+			HookEvent event = claim(Event.CHECK_IN);
+			if (event != null){
+				event.connection = connection;
+				publish(event);
+			}
+		}
+	}
+
+	// @Override
+	public void onCheckOut(ConnectionHandle connection) {
+		if (this.checkOut){
+			HookEvent event = claim(Event.CHECK_OUT);
+			if (event != null){
+				event.connection = connection;
+				publish(event);
+			}
+		}
+	}
+
+	// @Override
+	public void onDestroy(ConnectionHandle connection) {
+		if (this.destroy){
+			HookEvent event = claim(Event.DESTROY);
+			if (event != null){
+				event.connection = connection;
+				publish(event);
+			}
+		}
+	}
+
+	// @Override
+	public boolean onAcquireFail(Throwable t, AcquireFailConfig acquireConfig) {
+		return this.delegate.onAcquireFail(t, acquireConfig);
+	}
+
+	// @Override
+	public void onQueryExecuteTimeLimitExceeded(ConnectionHandle conn, Statement statement, String sql, Map<Object, Object> logParams, long timeElapsedInNs) {
+		if (this.queryExecuteTimeLimitExceeded){
+			HookEvent event = claim(Event.QUERY_EXECUTE_TIME_LIMIT_EXCEEDED);
+			if (event != null){
+				event.connection = conn;
+				event.statement = statement;
+				event.sql = sql;
+				event.setParams(logParams);
+				event.time = timeElapsedInNs;
+				publish(event);
+			}
+		}
+	}
+
+	// @Override
+	@Deprecated
+	public void onQueryExecuteTimeLimitExceeded(ConnectionHandle conn, Statement statement, String sql, Map<Object, Object> logParams) {
+		this.delegate.onQueryExecuteTimeLimitExceeded(conn, statement, sql, logParams);
+	}
+
+	// @Override
+	@Deprecated
+	public void onQueryExecuteTimeLimitExceeded(String sql, Map<Object, Object> logParams) {
+		this.delegate.onQueryExecuteTimeLimitExceeded(sql, logParams);
+	}
+
+	// @Override
+	public void onBeforeStatementExecute(ConnectionHandle conn, StatementHandle statement, String sql, Map<Object, Object> params) {
+		if (this.beforeStatementExecute){
+			HookEvent event = claim(Event.BEFORE_STATEMENT_EXECUTE);
+			if (event != null){
+				event.connection = conn;
+				event.statement = statement;
+				event.sql = sql;
+				event.setParams(params);
+				publish(event);
+			}
+		}
+	}
+
+	// @Override
+	public void onAfterStatementExecute(ConnectionHandle conn, StatementHandle statement, String sql, Map<Object, Object> params) {
+		if (this.afterStatementExecute){
+			HookEvent event = claim(Event.AFTER_STATEMENT_EXECUTE);
+			if (event != null){
+				event.connection = conn;
+				event.statement = statement;
+				event.sql = sql;
+				event.setParams(params);
+				publish(event);
+			}
+		}
+	}
+
+	// @Override
+	public boolean onConnectionException(ConnectionHandle connection, String state, Throwable t) {
+		return this.delegate.onConnectionException(connection, state, t);
+	}
+
+	// @Override
+	public ConnectionState onMarkPossiblyBroken(ConnectionHandle connection, String state, SQLException e) {
+		return this.delegate.onMarkPossiblyBroken(connection, state, e);
+	}
+
+	// @Override
+	public void onConnectionLeakSuspected(ConnectionHandle connection, long heldTimeInMs, String checkOutThreadName, Throwable checkOutTrace) {
+		if (this.connectionLeakSuspected){
+			HookEvent event = claim(Event.CONNECTION_LEAK_SUSPECTED);
+			if (event != null){
+				event.connection = connection;
+				event.time = heldTimeInMs;
+				event.sql = checkOutThreadName;
+				event.trace = checkOutTrace;
+				publish(event);
+			}
+		}
+	}
+
+	/** A recorded callback. Events are reused; the fields are only written by the thread that claimed the event 
+	 * and only read by the dispatcher after it has been published. */
+	private static class HookEvent {
+		/** Callback. */
+		protected Event type;
+		/** Ring position this event was claimed for (-1 = deliver right away). */
+		protected long sequence;
+		/** Connection. */
+		protected ConnectionHandle connection;
+		/** Statement. */
+		protected Statement statement;
+		/** SQL (or, for leaks, the name of the checkout thread). */
+		protected String sql;
+		/** Copy of the statement parameters (allocated on first use). */
+		protected ParameterRecorder params;
+		/** True if the callback was given null parameters. */
+		protected boolean paramsNull;
+		/** Time elapsed in ns, or for leaks, time held in ms. */
+		protected long time;
+		/** Checkout stack trace (leaks only). */
+		protected Throwable trace;
+
+		/** Copies the given parameters into this event.
+		 * @param map parameters (may be null)
+		 */
+		protected void setParams(Map<Object, Object> map){
+			this.paramsNull = map == null;
+			if (map != null){
+				if (this.params == null){
+					this.params = new ParameterRecorder();
+				}
+				if (map instanceof ParameterRecorder){
+					this.params.copyFrom((ParameterRecorder) map);
+				} else {
+					this.params.clear();
+					this.params.putAll(map);
+				}
+			}
+		}
+
+		/** Returns the copied parameters.
+		 * @return parameters, or null if none were given
+		 */
+		protected Map<Object, Object> getParams(){
+			if (this.paramsNull){
+				return null;
+			}
+			if (this.params == null){
+				this.params = new ParameterRecorder();
+			}
+			return this.params;
+		}
+
+		/** Releases the references held by this event. */
+		protected void clear(){
+			this.connection = null;
+			this.statement = null;
+			this.sql = null;
+			this.trace = null;
+			this.paramsNull = false;
+			if (this.params != null){
+				this.params.clear();
+			}
+		}
+	}
+}
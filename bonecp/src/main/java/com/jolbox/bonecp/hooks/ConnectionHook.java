@@ -166,4 +166,17 @@ public interface ConnectionHook {
 	 * @return ConnectionState enum to signal back to the pool what action you intend to take. 
 	 */
 	ConnectionState onMarkPossiblyBroken(ConnectionHandle connection, String state, SQLException e);
+
+	/** Called (once) when a connection has been held by the application for longer than leakDetectionThresholdInMs
+	 * without being closed. The connection may still be closed later on, in which case nothing further happens.
+	 * 
+	 * Note: As in all interceptor hooks, this method may be called concurrently so any implementation must be thread-safe.
+	 * 
+	 * @param connection The handle that is suspected of being leaked.
+	 * @param heldTimeInMs Time the connection has been held so far.
+	 * @param checkOutThreadName Name of the thread that obtained the connection.
+	 * @param checkOutTrace Stack trace captured when the connection was obtained, or null if this checkout 
+	 * was not sampled (see leakDetectionStackTraceSampleRate). 
+	 */
+	void onConnectionLeakSuspected(ConnectionHandle connection, long heldTimeInMs, String checkOutThreadName, Throwable checkOutTrace);
 }
\ No newline at end of file
@@ -19,6 +19,8 @@
  * 
  * Use the hook mechanism to register callbacks when a connection's state changes. Most applications will want to extend
  * {@link com.jolbox.bonecp.hooks.AbstractConnectionHook} rather than implementing the {@link com.jolbox.bonecp.hooks.ConnectionHook} interface directly.
+ * Wrap a hook in {@link com.jolbox.bonecp.hooks.AsyncConnectionHook} to run its notification callbacks off the
+ * application's threads.
  * 
  */
 package com.jolbox.bonecp.hooks;
\ No newline at end of file
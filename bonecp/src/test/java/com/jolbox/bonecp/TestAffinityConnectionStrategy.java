@@ -0,0 +1,264 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+/**
+ * 
+ */
+package com.jolbox.bonecp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Tests for the AFFINITY pool strategy.
+ * @author wallacew
+ *
+ */
+public class TestAffinityConnectionStrategy {
+	/** Mock driver. */
+	private MockJDBCDriver mockDriver;
+	/** Pool under test. */
+	private BoneCP pool;
+	/** Strategy under test. */
+	private AffinityConnectionStrategy strategy;
+
+	/** Setup.
+	 * @throws SQLException
+	 */
+	@Before
+	public void before() throws SQLException{
+		this.mockDriver = new MockJDBCDriver(new MockJDBCAnswer() {
+			public Connection answer() throws SQLException {
+				return new MockConnection();
+			}
+		});
+
+		BoneCPConfig config = new BoneCPConfig();
+		config.setJdbcUrl("jdbc:mock");
+		config.setDisableConnectionTracking(true);
+		config.setMinConnectionsPerPartition(5);
+		config.setMaxConnectionsPerPartition(5);
+		config.setPartitionCount(1);
+		config.setPoolStrategy("AFFINITY");
+		this.pool = new BoneCP(config);
+		this.strategy = (AffinityConnectionStrategy) this.pool.connectionStrategy;
+	}
+
+	/** Cleanup.
+	 * @throws SQLException
+	 */
+	@After
+	public void after() throws SQLException{
+		this.pool.close();
+		this.mockDriver.unregister();
+	}
+
+	/** A registered thread keeps getting its pinned connection back.
+	 * @throws SQLException
+	 */
+	@Test
+	public void testOwnerThreadReusesPinnedConnection() throws SQLException{
+		assertTrue(this.pool.registerAffinityThread());
+		assertFalse(this.pool.registerAffinityThread());
+		assertEquals(1, this.strategy.getPinnedPartitionCount());
+		assertEquals(1, this.strategy.getPinnedFreeConnections());
+		assertEquals(4, this.pool.partitions[0].getFreeConnections().size());
+
+		ConnectionHandle c = (ConnectionHandle) this.pool.getConnection();
+		Connection internal = c.getInternalConnection();
+		assertEquals(0, this.strategy.getPinnedFreeConnections());
+		c.close();
+		assertEquals(1, this.strategy.getPinnedFreeConnections());
+		assertEquals(4, this.pool.partitions[0].getFreeConnections().size());
+
+		c = (ConnectionHandle) this.pool.getConnection();
+		assertSame(internal, c.getInternalConnection());
+		c.close();
+	}
+
+	/** A registered thread asking for more than its share is served from the shared partitions, and
+	 * only keeps as many connections as configured.
+	 * @throws SQLException
+	 */
+	@Test
+	public void testOverflow() throws SQLException{
+		this.pool.registerAffinityThread();
+		ConnectionHandle c1 = (ConnectionHandle) this.pool.getConnection();
+		ConnectionHandle c2 = (ConnectionHandle) this.pool.getConnection();
+		assertNotSame(c1.getInternalConnection(), c2.getInternalConnection());
+		assertEquals(3, this.pool.partitions[0].getFreeConnections().size());
+		c2.close();
+		assertEquals(1, this.strategy.getPinnedFreeConnections());
+		c1.close();
+		assertEquals(1, this.strategy.getPinnedFreeConnections());
+		assertEquals(4, this.pool.partitions[0].getFreeConnections().size());
+	}
+
+	/** Threads that never registered use the shared partitions, even for connections last used
+	 * by a registered thread.
+	 * @throws Exception
+	 */
+	@Test
+	public void testForeignThread() throws Exception{
+		this.pool.registerAffinityThread();
+		final Connection c = this.pool.getConnection();
+		final AtomicReference<Integer> pinnedFree = new AtomicReference<Integer>();
+		final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		Thread t = new Thread(){
+			public void run() {
+				try {
+					c.close(); // not the owner
+					Connection other = TestAffinityConnectionStrategy.this.pool.getConnection();
+					pinnedFree.set(TestAffinityConnectionStrategy.this.strategy.getPinnedFreeConnections());
+					other.close();
+				} catch (Throwable e) {
+					failure.set(e);
+				}
+			}
+		};
+		t.start();
+		t.join();
+		assertNull(String.valueOf(failure.get()), failure.get());
+		assertEquals(-1, pinnedFree.get().intValue());
+		assertEquals(0, this.strategy.getPinnedFreeConnections());
+		assertEquals(5, this.pool.partitions[0].getFreeConnections().size());
+	}
+
+	/** Unregistering hands idle connections back.
+	 */
+	@Test
+	public void testUnregister(){
+		assertFalse(this.pool.unregisterAffinityThread());
+		this.pool.registerAffinityThread();
+		assertTrue(this.pool.unregisterAffinityThread());
+		assertEquals(0, this.strategy.getPinnedPartitionCount());
+		assertEquals(-1, this.strategy.getPinnedFreeConnections());
+		assertEquals(5, this.pool.partitions[0].getFreeConnections().size());
+	}
+
+	/** Terminating all connections makes the owner drop its idle connections on its next checkout.
+	 */
+	@Test
+	public void testTerminateAllConnections(){
+		this.pool.registerAffinityThread();
+		this.strategy.terminateAllConnections();
+		assertEquals(1, this.strategy.getPinnedFreeConnections()); // not touched from a foreign thread
+		this.strategy.pollConnection();
+		assertEquals(0, this.strategy.getPinnedFreeConnections());
+		assertEquals(1, this.strategy.getPinnedPartitionCount());
+	}
+
+	/** A thread that dies without unregistering has its pinned connections reclaimed once the shared partitions 
+	 * run dry.
+	 * @throws Exception
+	 */
+	@Test
+	public void testDeadThreadReclaimed() throws Exception{
+		registerAndDie();
+		assertEquals(1, this.strategy.getPinnedPartitionCount());
+		assertEquals(4, this.pool.partitions[0].getFreeConnections().size());
+
+		this.pool.connectionTimeoutInMs = 1000; // fail rather than hang
+		this.pool.nullOnConnectionTimeout = true;
+		Connection[] held = new Connection[5];
+		for (int i=0; i < held.length; i++){
+			held[i] = this.pool.getConnection();
+			assertNotNull(held[i]); // the last one is the dead thread's
+		}
+		assertEquals(0, this.strategy.getPinnedPartitionCount());
+		for (Connection c: held){
+			c.close();
+		}
+		assertEquals(5, this.pool.partitions[0].getFreeConnections().size());
+	}
+
+	/** Shutting down from another thread leaves the pinned partitions of live owners to their owners, and closes 
+	 * off those of dead ones.
+	 * @throws Exception
+	 */
+	@Test
+	public void testShutdownFromAnotherThread() throws Exception{
+		registerAndDie();
+		this.pool.registerAffinityThread();
+		final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		Thread closer = new Thread(){
+			public void run() {
+				try {
+					TestAffinityConnectionStrategy.this.pool.close();
+				} catch (Throwable e) {
+					failure.set(e);
+				}
+			}
+		};
+		closer.start();
+		closer.join();
+		assertNull(String.valueOf(failure.get()), failure.get());
+		assertEquals(1, this.strategy.getPinnedPartitionCount()); // the dead thread's is gone
+		assertEquals(1, this.strategy.getPinnedFreeConnections()); // not touched from a foreign thread
+		assertEquals(1, this.pool.getTotalCreatedConnections());
+
+		this.strategy.pollConnection(); // the owner clears its own
+		assertEquals(0, this.strategy.getPinnedFreeConnections());
+		assertEquals(0, this.pool.getTotalCreatedConnections());
+	}
+
+	/** Registers a new thread, which checks out and hands back a connection (so that it's pinned), then dies
+	 * without unregistering.
+	 * @throws InterruptedException
+	 */
+	private void registerAndDie() throws InterruptedException{
+		final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		Thread t = new Thread(){
+			public void run() {
+				try {
+					TestAffinityConnectionStrategy.this.pool.registerAffinityThread();
+					TestAffinityConnectionStrategy.this.pool.getConnection().close();
+				} catch (Throwable e) {
+					failure.set(e);
+				}
+			}
+		};
+		t.start();
+		t.join();
+		assertNull(String.valueOf(failure.get()), failure.get());
+	}
+
+	/** Registration is refused for other strategies.
+	 * @throws SQLException
+	 * @throws CloneNotSupportedException 
+	 */
+	@Test
+	public void testOtherStrategy() throws SQLException, CloneNotSupportedException{
+		BoneCPConfig config = this.pool.getConfig().clone();
+		config.setPoolStrategy("DEFAULT");
+		BoneCP other = new BoneCP(config);
+		assertFalse(other.registerAffinityThread());
+		assertFalse(other.unregisterAffinityThread());
+		other.close();
+	}
+}
@@ -0,0 +1,289 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+/**
+ * 
+ */
+package com.jolbox.bonecp;
+
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Tests for asynchronous connection requests.
+ * @author wallacew
+ *
+ */
+public class TestAsyncConnectionRequest {
+	/** Mock driver. */
+	private MockJDBCDriver mockDriver;
+	/** Config with a single connection. */
+	private BoneCPConfig config;
+
+	/** Setup.
+	 * @throws SQLException
+	 */
+	@Before
+	public void before() throws SQLException{
+		Connection mockInternalConnection = createNiceMock(Connection.class);
+		expect(mockInternalConnection.isClosed()).andReturn(false).anyTimes();
+		replay(mockInternalConnection);
+		this.mockDriver = new MockJDBCDriver(mockInternalConnection);
+
+		this.config = new BoneCPConfig();
+		this.config.setJdbcUrl("jdbc:mock:driver");
+		this.config.setDisableConnectionTracking(true);
+		this.config.setMinConnectionsPerPartition(1);
+		this.config.setMaxConnectionsPerPartition(1);
+		this.config.setPartitionCount(1);
+	}
+
+	/** Cleanup.
+	 * @throws SQLException
+	 */
+	@After
+	public void after() throws SQLException{
+		this.mockDriver.disable();
+	}
+
+	/** Waits (without sleeping) until the given future completes.
+	 * @param future to wait on
+	 */
+	private static void awaitDone(Future<?> future){
+		long deadline = System.currentTimeMillis() + 10000;
+		while (!future.isDone() && System.currentTimeMillis() < deadline){
+			Thread.yield();
+		}
+	}
+
+	/** A free connection is handed out right away.
+	 * @throws Exception
+	 */
+	@Test
+	public void testImmediate() throws Exception{
+		BoneCP pool = new BoneCP(this.config);
+		Future<Connection> future = pool.getAsyncConnection();
+		assertTrue(future.isDone());
+		Connection con = future.get();
+		assertFalse(con.isClosed());
+		con.close();
+		pool.close();
+	}
+
+	/** A parked request is completed by the thread releasing a connection.
+	 * @throws Exception
+	 */
+	@Test
+	public void testCompletedOnRelease() throws Exception{
+		BoneCP pool = new BoneCP(this.config);
+		Connection con = pool.getConnection();
+		Connection internalConnection = ((ConnectionHandle) con).getInternalConnection();
+		Future<Connection> future = pool.getAsyncConnection();
+		assertFalse(future.isDone());
+
+		con.close();
+		assertTrue(future.isDone());
+		Connection asyncCon = future.get();
+		// same physical connection (close() hands back a fresh handle around it)
+		assertSame(internalConnection, ((ConnectionHandle) asyncCon).getInternalConnection());
+		assertFalse(asyncCon.isClosed());
+		assertEquals(0, pool.getTotalFree());
+		asyncCon.close();
+		assertEquals(1, pool.getTotalFree());
+		pool.close();
+	}
+
+	/** A cancelled request is withdrawn and doesn't swallow the next released connection.
+	 * @throws Exception
+	 */
+	@Test
+	public void testCancel() throws Exception{
+		BoneCP pool = new BoneCP(this.config);
+		Connection con = pool.getConnection();
+		Future<Connection> future = pool.getAsyncConnection();
+		assertTrue(future.cancel(false));
+		assertTrue(future.isCancelled());
+		assertFalse(future.cancel(false));
+
+		con.close();
+		assertEquals(1, pool.getTotalFree());
+		pool.close();
+	}
+
+	/** Requests time out as per connectionTimeoutInMs.
+	 * @throws Exception
+	 */
+	@Test
+	public void testTimeout() throws Exception{
+		this.config.setConnectionTimeoutInMs(50);
+		BoneCP pool = new BoneCP(this.config);
+		Connection con = pool.getConnection();
+		Future<Connection> future = pool.getAsyncConnection();
+		awaitDone(future);
+		try{
+			future.get();
+			fail("Should have timed out");
+		} catch (ExecutionException e){
+			assertTrue(e.getCause() instanceof SQLException);
+			assertEquals("08001", ((SQLException) e.getCause()).getSQLState());
+		}
+
+		// a timed out request is no longer waiting for a connection
+		con.close();
+		assertEquals(1, pool.getTotalFree());
+		pool.close();
+	}
+
+	/** With nullOnConnectionTimeout set, requests time out with a null connection.
+	 * @throws Exception
+	 */
+	@Test
+	public void testTimeoutNull() throws Exception{
+		this.config.setConnectionTimeoutInMs(50);
+		this.config.setNullOnConnectionTimeout(true);
+		BoneCP pool = new BoneCP(this.config);
+		Connection con = pool.getConnection();
+		Future<Connection> future = pool.getAsyncConnection();
+		awaitDone(future);
+		assertNull(future.get());
+		con.close();
+		pool.close();
+	}
+
+	/** Pending requests are failed on shutdown and new requests are refused.
+	 * @throws Exception
+	 */
+	@Test
+	public void testShutdown() throws Exception{
+		BoneCP pool = new BoneCP(this.config);
+		pool.getConnection();
+		Future<Connection> future = pool.getAsyncConnection();
+		pool.close();
+		assertTrue(future.isDone());
+		try{
+			future.get();
+			fail("Should have failed");
+		} catch (ExecutionException e){
+			assertTrue(e.getCause() instanceof SQLException);
+		}
+		try{
+			pool.getAsyncConnection().get();
+			fail("Should have failed");
+		} catch (ExecutionException e){
+			assertTrue(e.getCause() instanceof SQLException);
+		}
+	}
+
+	/** A request parked after the releasing thread found no waiters, but before it queued the connection, must 
+	 * still get that connection. The interleaving is forced by parking the request from within the queue's offer.
+	 * @throws Exception
+	 */
+	@Test
+	public void testRequestParkedDuringRelease() throws Exception{
+		final BoneCP pool = new BoneCP(this.config);
+		Connection con = pool.getConnection();
+		final AtomicReference<Future<Connection>> future = new AtomicReference<Future<Connection>>();
+		ConnectionPartition partition = pool.partitions[0];
+		partition.setFreeConnections(new LinkedBlockingQueue<ConnectionHandle>(1){
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public boolean offer(ConnectionHandle e) {
+				if (future.get() == null){
+					future.set(pool.getAsyncConnection()); // finds the queue empty and parks
+				}
+				return super.offer(e);
+			}
+		});
+
+		con.close();
+		assertTrue(future.get().isDone());
+		future.get().get().close();
+		assertEquals(1, pool.getTotalFree());
+		pool.close();
+	}
+
+	/** A request parked while a connection is being released must get that connection: releasing and requesting
+	 * race on a single-connection partition, and no one else ever releases a connection to rescue a request that 
+	 * missed the handoff.
+	 * @throws Exception
+	 */
+	@Test
+	public void testReleaseRacesRequest() throws Exception{
+		final BoneCP pool = new BoneCP(this.config);
+		final AtomicInteger round = new AtomicInteger(); // spun on rather than blocked on, to line both threads up tightly
+		final AtomicReference<Connection> toRelease = new AtomicReference<Connection>(pool.getConnection());
+		final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		final int iterations = 20000;
+		Thread releaser = new Thread(new Runnable() {
+			public void run() {
+				try{
+					for (int i=1; i <= iterations; i++){
+						while (round.get() != i){
+							if (Thread.interrupted()){
+								return;
+							}
+						}
+						toRelease.get().close();
+					}
+				} catch (Throwable t){
+					failure.set(t);
+				}
+			}
+		});
+		releaser.start();
+		try{
+			for (int i=1; i <= iterations; i++){
+				round.set(i);
+				Future<Connection> future = pool.getAsyncConnection();
+				try{
+					toRelease.set(future.get(5, TimeUnit.SECONDS));
+				} catch (TimeoutException e){
+					fail("Request missed the connection released in iteration "+i+" (free: "+pool.getTotalFree()+")");
+				}
+			}
+		} finally {
+			releaser.interrupt();
+			releaser.join();
+		}
+		if (failure.get() != null){
+			throw new AssertionError(failure.get());
+		}
+		toRelease.get().close();
+		assertEquals(1, pool.getTotalFree());
+		pool.close();
+	}
+}
@@ -1487,7 +1487,7 @@ public class TestBoneCP {
 		
 		
 		BoneCP pool = new BoneCP(config); // test idleConnectionTestPeriod > 0. max age > 0
-		assertEquals(1, pool.keepAliveScheduler.shutdownNow().size());
+		assertEquals(2, pool.keepAliveScheduler.shutdownNow().size()); // connection tester + lease table scan
 
 		verify(config, mockKeepAliveScheduler);
 	}
@@ -23,24 +23,22 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 import java.sql.Connection;
 import java.sql.SQLException;
-import java.util.AbstractMap.SimpleEntry;
 import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 import junit.framework.Assert;
 
-import org.easymock.EasyMock;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Ignore;
 import org.junit.Test;
 
-import com.google.common.base.FinalizableReferenceQueue;
-import com.google.common.base.FinalizableWeakReference;
-import com.jolbox.bonecp.CachedConnectionStrategy.CachedConnectionStrategyThreadLocal;
+import com.jolbox.bonecp.CachedConnectionStrategy.ThreadSlot;
 
 /**
  * @author wwadge
@@ -70,6 +68,7 @@ public class TestCachedConnectionStrategy {
 		config.setMinConnectionsPerPartition(5);
 		config.setDisableConnectionTracking(true);
 		config.setJdbcUrl("jdbc:mock");
+		config.setStatisticsEnabled(true);
 
 
 	}
@@ -124,11 +123,13 @@ public class TestCachedConnectionStrategy {
 		assertEquals(handle, c2.getInternalConnection());
 		c2.close();
 
+		assertEquals(1, poolClass.getStatistics().getCachedConnectionHits());
+		assertEquals(1, poolClass.getStatistics().getCachedConnectionMisses());
+		assertEquals(0.5, poolClass.getStatistics().getCachedConnectionHitRatio(), 0.0001);
 		poolClass.close();
 	}
 
 	@Test
-	@SuppressWarnings({ "rawtypes", "unchecked" })
 	public void testOneThreadTwoConnections() throws SQLException{	
 		poolClass = new BoneCP(config);
 		ConnectionHandle c1 = (ConnectionHandle) poolClass.getConnection();
@@ -148,11 +149,11 @@ public class TestCachedConnectionStrategy {
 		// the old internal = in TL
 		// the TL contains a new CH
 		c1.close();
-		SimpleEntry<ConnectionHandle, Boolean> handle = ((CachedConnectionStrategyThreadLocal)(((CachedConnectionStrategy)c1.getPool().connectionStrategy).tlConnections)).dumbGet();
-//		assertNotSame(c1.getDebugHandle(), handle.getKey().getDebugHandle()); // still here?
-		assertNotSame(c1.getInternalConnection(), handle.getKey().getInternalConnection());
+		ThreadSlot slot = ((CachedConnectionStrategy)c1.getPool().connectionStrategy).tlConnections.get();
+		assertEquals(CachedConnectionStrategy.SLOT_IDLE, slot.state.get());
+		assertNotSame(c1.getInternalConnection(), slot.handle.getInternalConnection());
 		assertNull(c1.getInternalConnection());
-		assertEquals(c1Conn,handle.getKey().getInternalConnection());
+		assertEquals(c1Conn, slot.handle.getInternalConnection());
 
 		assertEquals(3, poolClass.partitions[0].getFreeConnections().size());
 		c2.close();
@@ -193,40 +194,46 @@ public class TestCachedConnectionStrategy {
 		}
 		cdl.await();
 
-		// this next request should make the pool switch over (permanently) to the fallback strategy
+		// this next request is served from the shared queue, which is empty
 		Connection c = poolClass.getConnection();
 		assertNull(c); // we've run out
 		cdlTerminate.countDown(); // release the threads holding the lock
-		// try again
+		crudeJoin.await(); // wait till everyone said close
+		// try again: idle thread-local connections are taken back under pressure
 		c = poolClass.getConnection();
 		assertNotNull(c); // we can get new connections again
 
-		// by the time 1 thread times out, we'd already have flipped. Check to make sure
-		assertFalse(poolClass.cachedPoolStrategy);
+		// no permanent switch over
+		assertTrue(poolClass.cachedPoolStrategy);
+		assertTrue(poolClass.connectionStrategy instanceof CachedConnectionStrategy);
 		c.close();
-		crudeJoin.await(); // wait till everyone said close
-		assertEquals(5, poolClass.partitions[0].getFreeConnections().size());
+		// we're under pressure so this thread was not promoted; the others keep their (now idle) slots until 
+		// the queue runs dry again.
+		CachedConnectionStrategy ccs = (CachedConnectionStrategy)poolClass.connectionStrategy;
+		assertNull(ccs.tlConnections.get());
+		assertEquals(5, ccs.getSlotCount() + poolClass.partitions[0].getFreeConnections().size());
 
 		poolClass.close();
 
 	}
 
-	/** Same test as above but this time the threads are done from using it. All connections should go back to the normal queue in the fallback
-	 * strategy.
+	/** Same test as above but this time the threads are done from using it. The idle thread-local connections 
+	 * should be taken back once the shared queue runs dry, and threads are promoted again once the pressure drops.
 	 * @throws SQLException
 	 * @throws InterruptedException
 	 * @throws CloneNotSupportedException 
 	 */
 	@Test 
-	@Ignore
-	public void testMoreThreadsThanConnectionsSteal() throws SQLException, InterruptedException, CloneNotSupportedException{
+	public void testRevokeAndRepromote() throws SQLException, InterruptedException, CloneNotSupportedException{
 		BoneCPConfig config = this.config.clone();
 
 		config.setNullOnConnectionTimeout(false);
 		config.setConnectionTimeoutInMs(Long.MAX_VALUE);
 
 		poolClass = new BoneCP(config);
+		final CachedConnectionStrategy ccs = (CachedConnectionStrategy) poolClass.connectionStrategy;
 		final CountDownLatch cdl = new CountDownLatch(5);
+		final CountDownLatch cdlTerminate = new CountDownLatch(1);
 		for (int i=0; i < 5; i++){
 			new Thread(){
 
@@ -235,22 +242,117 @@ public class TestCachedConnectionStrategy {
 						Connection c = poolClass.getConnection();
 						c.close();
 						cdl.countDown();
+						cdlTerminate.await(); // keep the thread (and its slot) alive
 					} catch (SQLException e) {
 						e.printStackTrace();
+					} catch (InterruptedException e) {
+						e.printStackTrace();
 					}
 				}
 			}.start();
 		}
 		cdl.await();
+		// at least one connection is always left in the shared queue
+		assertTrue(ccs.getSlotCount() >= 4);
+		assertTrue(poolClass.partitions[0].getFreeConnections().size() >= 1);
 
-		// this next request should make the pool switch over (permanently) to the fallback strategy
-		poolClass.getConnection().close();
-		// by the time 1 thread times out, we'd already have flipped. Check to make sure
-		assertFalse(poolClass.cachedPoolStrategy);
+		// take everything: the idle slots must be revoked to satisfy this
+		Connection[] held = new Connection[5];
+		for (int i=0; i < 5; i++){
+			held[i] = poolClass.getConnection();
+			assertNotNull(held[i]);
+		}
+		assertEquals(0, ccs.getSlotCount());
+		assertTrue(poolClass.getStatistics().getCachedSlotsRevoked() >= 4);
+		assertTrue(poolClass.cachedPoolStrategy);
+		for (int i=0; i < 5; i++){
+			held[i].close();
+		}
 		assertEquals(5, poolClass.partitions[0].getFreeConnections().size());
+		cdlTerminate.countDown();
+
+		// pretend the pressure is long gone; this thread should now be promoted again
+		ccs.lastPressureTime = System.nanoTime() - CachedConnectionStrategy.PRESSURE_COOLDOWN_IN_NANOS - 1;
+		poolClass.getStatistics().resetStats();
+		ConnectionHandle c = (ConnectionHandle) poolClass.getConnection();
+		Connection internal = c.getInternalConnection();
+		c.close();
+		assertEquals(1, ccs.getSlotCount());
+		c = (ConnectionHandle) poolClass.getConnection();
+		assertSame(internal, c.getInternalConnection());
+		c.close();
+		assertEquals(1, poolClass.getStatistics().getCachedConnectionHits());
+		poolClass.close();
 	}
 	 
-	
+	/** A connection closed by a thread other than the one holding the slot goes back to the queue and the slot
+	 * owner lets go of it.
+	 * @throws SQLException
+	 * @throws InterruptedException
+	 */
+	@Test
+	public void testCloseFromAnotherThread() throws SQLException, InterruptedException{
+		poolClass = new BoneCP(config);
+		final CachedConnectionStrategy ccs = (CachedConnectionStrategy) poolClass.connectionStrategy;
+		final AtomicReference<Connection> ref = new AtomicReference<Connection>();
+		final CountDownLatch obtained = new CountDownLatch(1);
+		final CountDownLatch closed = new CountDownLatch(1);
+		final AtomicReference<ThreadSlot> slotAfter = new AtomicReference<ThreadSlot>();
+		Thread t = new Thread(){
+			public void run() {
+				try {
+					ref.set(poolClass.getConnection());
+					obtained.countDown();
+					closed.await();
+					Connection c = poolClass.getConnection();
+					slotAfter.set(ccs.tlConnections.get());
+					c.close();
+				} catch (SQLException e) {
+					e.printStackTrace();
+				} catch (InterruptedException e) {
+					e.printStackTrace();
+				}
+			}
+		};
+		t.start();
+		obtained.await();
+		assertEquals(1, ccs.getSlotCount());
+		ref.get().close(); // not the owner thread
+		assertEquals(5, poolClass.partitions[0].getFreeConnections().size());
+		closed.countDown();
+		t.join();
+		// the stale slot was dropped and the thread promoted again with a live connection
+		assertNotNull(slotAfter.get());
+		assertEquals(CachedConnectionStrategy.SLOT_IDLE, slotAfter.get().state.get());
+		assertFalse(slotAfter.get().handle.getInternalConnection() == null);
+		assertEquals(1, ccs.getSlotCount());
+		poolClass.close();
+	}
+
+	/** The number of slots follows the pool size when the pool is reconfigured.
+	 * @throws SQLException
+	 * @throws CloneNotSupportedException
+	 */
+	@Test
+	public void testMaxSlotsFollowsReconfigure() throws SQLException, CloneNotSupportedException{
+		poolClass = new BoneCP(config.clone());
+		CachedConnectionStrategy ccs = (CachedConnectionStrategy) poolClass.connectionStrategy;
+		assertEquals(4, ccs.getMaxSlots());
+
+		BoneCPConfig newConfig = config.clone();
+		newConfig.setPartitionCount(2);
+		newConfig.setMaxConnectionsPerPartition(10);
+		poolClass.reconfigure(newConfig);
+		assertEquals(18, ccs.getMaxSlots());
+
+		newConfig.setPartitionCount(1);
+		newConfig.setMaxConnectionsPerPartition(2);
+		newConfig.setMinConnectionsPerPartition(1);
+		poolClass.reconfigure(newConfig);
+		assertEquals(1, ccs.getMaxSlots());
+		poolClass.close();
+	}
+
 	@Test
 	public void testCoverage() throws SQLException{
 		poolClass = new BoneCP(config);
@@ -261,19 +363,6 @@ public class TestCachedConnectionStrategy {
 			// nothing
 		}
 		
-		BoneCP mockPool = EasyMock.createNiceMock(BoneCP.class);
-		CachedConnectionStrategy ccs = new CachedConnectionStrategy(mockPool , new DefaultConnectionStrategy(mockPool));
-		ConnectionHandle mockConnection = EasyMock.createNiceMock(ConnectionHandle.class);
-		mockConnection.logicallyClosed = new AtomicBoolean(true);
-		ccs.threadFinalizableRefs.put(mockConnection, new FinalizableWeakReference<Thread>(Thread.currentThread(), new FinalizableReferenceQueue()) {
-			public void finalizeReferent() {
-		}
-	});
-		
-		mockPool.releaseConnection((Connection)EasyMock.anyObject());
-		EasyMock.expectLastCall().andThrow(new SQLException("foo")).once();
-		EasyMock.replay(mockPool);
-		ccs.stealExistingAllocations();
-		
+		poolClass.close();
 	}
 }
@@ -0,0 +1,296 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+/**
+ * 
+ */
+package com.jolbox.bonecp;
+
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.makeThreadSafe;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import org.easymock.IAnswer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Tests for the background connection closer.
+ * @author wallacew
+ *
+ */
+public class TestConnectionCloser {
+	/** Mock pool. */
+	private BoneCP mockPool;
+	/** Released when a blocked close() may return. */
+	private CountDownLatch release;
+	/** Mock driver, if registered by the test. */
+	private MockJDBCDriver driver;
+
+	/** Setup.
+	 */
+	@Before
+	public void before(){
+		this.mockPool = createNiceMock(BoneCP.class);
+		expect(this.mockPool.getConfig()).andReturn(new BoneCPConfig()).anyTimes();
+		replay(this.mockPool);
+		this.release = new CountDownLatch(1);
+	}
+
+	/** Cleanup.
+	 * @throws SQLException
+	 */
+	@After
+	public void after() throws SQLException{
+		this.release.countDown();
+		if (this.driver != null){
+			this.driver.disable();
+		}
+	}
+
+	/** Creates a connection whose close() blocks until released.
+	 * @param closed counted down once close() has returned.
+	 * @return mock connection
+	 * @throws SQLException
+	 */
+	private Connection blockingConnection(final CountDownLatch closed) throws SQLException{
+		Connection connection = createNiceMock(Connection.class);
+		makeThreadSafe(connection, true);
+		connection.close();
+		expectLastCall().andAnswer(new IAnswer<Object>() {
+			// @Override
+			public Object answer() throws Throwable {
+				TestConnectionCloser.this.release.await();
+				closed.countDown();
+				return null;
+			}
+		}).once();
+		return connection;
+	}
+
+	/** Returns true if the JVM's Connection interface has abort().
+	 * @return true if JDBC 4.1 or later
+	 */
+	private static boolean jdbc41(){
+		try {
+			Connection.class.getMethod("abort", Executor.class);
+			return true;
+		} catch (NoSuchMethodException e) {
+			return false;
+		}
+	}
+
+	/** Destroying a connection returns right away even if the driver's close() hangs.
+	 * @throws Exception
+	 */
+	@Test
+	public void testCloseIsOffloaded() throws Exception{
+		CountDownLatch closed = new CountDownLatch(1);
+		Connection connection = blockingConnection(closed);
+		replay(connection);
+		this.mockPool.connectionCloser = new ConnectionCloser(1, "");
+		ConnectionHandle handle = ConnectionHandle.createTestConnectionHandle(connection, null, null, this.mockPool);
+
+		handle.internalClose(); // would block forever if done inline
+		assertTrue(handle.isClosed());
+		assertEquals(1, closed.getCount());
+
+		this.release.countDown();
+		assertTrue(closed.await(5, TimeUnit.SECONDS));
+		verify(connection);
+		this.mockPool.connectionCloser.shutdown();
+	}
+
+	/** With the closer backed up, connections are aborted instead.
+	 * @throws Exception
+	 */
+	@Test
+	public void testAbortWhenFull() throws Exception{
+		ConnectionCloser closer = new ConnectionCloser(1, "");
+		CountDownLatch closed = new CountDownLatch(2);
+		Connection hung = blockingConnection(closed);
+		Connection queued = blockingConnection(closed);
+		final List<String> calls = new ArrayList<String>();
+		// a proxy rather than a mock so that this compiles against pre-JDBC 4.1 interfaces too.
+		Connection overflow = (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class}, new InvocationHandler() {
+			// @Override
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+				calls.add(method.getName());
+				return null;
+			}
+		});
+		replay(hung, queued);
+		ConnectionHandle handle = ConnectionHandle.createTestConnectionHandle(null, null, null, this.mockPool);
+
+		closer.close(handle, hung);
+		while (closer.getPendingCount() > 0){ // wait for the closer thread to pick it up and block
+			Thread.sleep(10);
+		}
+		closer.close(handle, queued);
+		assertEquals(1, closer.getPendingCount());
+		closer.close(handle, overflow);
+		if (jdbc41()){
+			assertEquals(Collections.singletonList("abort"), calls);
+			assertEquals(1, closer.getAbortedCount());
+		} else {
+			assertEquals(Collections.singletonList("close"), calls);
+		}
+
+		this.release.countDown();
+		assertTrue(closed.await(5, TimeUnit.SECONDS));
+		verify(hung, queued);
+		closer.shutdown();
+	}
+
+	/** An aborted connection's statements are closed off by the aborter, not by the thread handing it back.
+	 * @throws Exception
+	 */
+	@Test
+	public void testAbortClearsStatementCaches() throws Exception{
+		if (!jdbc41()){
+			return;
+		}
+		ConnectionCloser closer = new ConnectionCloser(1, "");
+		CountDownLatch closed = new CountDownLatch(2);
+		Connection hung = blockingConnection(closed);
+		Connection queued = blockingConnection(closed);
+		replay(hung, queued);
+		closer.close(ConnectionHandle.createTestConnectionHandle(null, null, null, this.mockPool), hung);
+		while (closer.getPendingCount() > 0){
+			Thread.sleep(10);
+		}
+		closer.close(ConnectionHandle.createTestConnectionHandle(null, null, null, this.mockPool), queued);
+
+		final CountDownLatch cleared = new CountDownLatch(1);
+		final List<String> clearedBy = Collections.synchronizedList(new ArrayList<String>());
+		IStatementCache cache = createNiceMock(IStatementCache.class);
+		makeThreadSafe(cache, true);
+		cache.clear();
+		expectLastCall().andAnswer(new IAnswer<Object>() {
+			// @Override
+			public Object answer() throws Throwable {
+				clearedBy.add(Thread.currentThread().getName());
+				cleared.countDown();
+				return null;
+			}
+		}).times(2);
+		replay(cache);
+		ConnectionHandle handle = ConnectionHandle.createTestConnectionHandle(null, cache, cache, this.mockPool);
+		handle.statementCachingEnabled = true;
+		Connection overflow = (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class}, new InvocationHandler() {
+			// @Override
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+				return null;
+			}
+		});
+		closer.close(handle, overflow);
+		assertEquals(1, closer.getAbortedCount());
+		assertTrue(cleared.await(5, TimeUnit.SECONDS));
+		verify(cache);
+		for (String thread: clearedBy){
+			assertTrue(thread, thread.startsWith("BoneCP-connection-aborter"));
+		}
+
+		this.release.countDown();
+		assertTrue(closed.await(5, TimeUnit.SECONDS));
+		closer.shutdown();
+	}
+
+	/** If the driver can't abort, the connection is closed on the calling thread as a last resort.
+	 * @throws Exception
+	 */
+	@Test
+	public void testCloseInlineWhenAbortFails() throws Exception{
+		ConnectionCloser closer = new ConnectionCloser(1, "");
+		closer.shutdown(); // rejects everything
+		Connection connection = createNiceMock(Connection.class);
+		connection.close();
+		expectLastCall().once();
+		replay(connection);
+		closer.close(ConnectionHandle.createTestConnectionHandle(null, null, null, this.mockPool), connection);
+		verify(connection);
+		assertEquals(0, closer.getAbortedCount());
+
+		// driver errors are logged, not thrown
+		Connection failing = createNiceMock(Connection.class);
+		failing.close();
+		expectLastCall().andThrow(new SQLException("fake")).once();
+		replay(failing);
+		closer.closeNow(ConnectionHandle.createTestConnectionHandle(null, null, null, this.mockPool), failing);
+		verify(failing);
+	}
+
+	/** The pool closes connections inline once it is shutting down.
+	 * @throws SQLException
+	 */
+	@Test
+	public void testInlineWhenShuttingDown() throws SQLException{
+		Connection connection = createNiceMock(Connection.class);
+		connection.close();
+		expectLastCall().once();
+		replay(connection);
+		this.mockPool.connectionCloser = new ConnectionCloser(1, "");
+		this.mockPool.poolShuttingDown = true;
+		ConnectionHandle.createTestConnectionHandle(connection, null, null, this.mockPool).internalClose();
+		verify(connection);
+		this.mockPool.connectionCloser.shutdown();
+	}
+
+	/** The closer is only created when configured.
+	 * @throws SQLException
+	 */
+	@Test
+	public void testPoolConfig() throws SQLException{
+		Connection connection = createNiceMock(Connection.class);
+		replay(connection);
+		this.driver = new MockJDBCDriver(connection);
+		BoneCPConfig config = new BoneCPConfig();
+		config.setJdbcUrl("jdbc:mock:driver");
+		config.setMinConnectionsPerPartition(1);
+		config.setMaxConnectionsPerPartition(1);
+		config.setPartitionCount(1);
+		BoneCP pool = new BoneCP(config);
+		assertNull(pool.connectionCloser);
+		pool.close();
+
+		config.setAsyncConnectionCloseQueueSize(10);
+		pool = new BoneCP(config);
+		assertNotNull(pool.connectionCloser);
+		ConnectionHandle handle = (ConnectionHandle) pool.getConnection();
+		pool.destroyConnection(handle);
+		assertTrue(handle.isClosed());
+		pool.close();
+	}
+}
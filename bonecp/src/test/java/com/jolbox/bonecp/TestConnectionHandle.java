@@ -30,9 +30,9 @@ import static org.easymock.EasyMock.verify;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.fail;
 
-import java.lang.ref.Reference;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
@@ -40,8 +40,8 @@ import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
@@ -56,7 +56,6 @@ import org.junit.Before;
 import org.junit.Test;
 import org.slf4j.Logger;
 
-import com.google.common.base.FinalizableReferenceQueue;
 import com.google.common.collect.MapMaker;
 
 /**
@@ -94,6 +93,7 @@ public class TestConnectionHandle {
 
 		this.config = CommonTestUtils.getConfigClone();
 		this.mockPool.connectionStrategy = new DefaultConnectionStrategy(this.mockPool);
+		this.mockPool.partitions = new ConnectionPartition[0];
 		expect(this.mockPool.getConfig()).andReturn(this.config).anyTimes();
 
 		expect(this.mockConnection.getPool()).andReturn(this.mockPool).anyTimes();
@@ -230,7 +230,6 @@ public class TestConnectionHandle {
 		this.testClass.renewConnection();
 		this.mockPool.releaseConnection((Connection)anyObject());
 		expectLastCall().once().andThrow(new SQLException()).once();
-		expect(this.mockPool.getFinalizableRefs()).andReturn(new HashMap<Connection, Reference<ConnectionHandle>>()).anyTimes();
 		expect(this.mockPool.getConfig()).andReturn(this.config).anyTimes();
 		expect(mockInternalConnection.isClosed()).andReturn(false).anyTimes();
 		replay(this.mockPool, mockInternalConnection);
@@ -543,17 +542,8 @@ public class TestConnectionHandle {
 		this.mockConnection.close();
 		expectLastCall().once().andThrow(new SQLException()).once();
 
-		Map<Connection, Reference<ConnectionHandle>> refs = new HashMap<Connection, Reference<ConnectionHandle>>();
-		expect(this.mockPool.getFinalizableRefs()).andReturn(refs).anyTimes();
-		FinalizableReferenceQueue finalizableRefQueue = new FinalizableReferenceQueue();
-
-		expect(this.mockPool.getFinalizableRefQueue()).andReturn(finalizableRefQueue).anyTimes();
 		expect(this.mockConnection.getPool()).andReturn(this.mockPool).anyTimes();
 
-		Field f = this.testClass.getClass().getDeclaredField("finalizableRefs");
-		f.setAccessible(true);
-		f.set(this.testClass, refs);
-
 		replay(mockStatement, this.mockConnection, mockStatementHandles, this.mockPool);
 		this.testClass.internalClose();
 		try{
@@ -570,13 +560,15 @@ public class TestConnectionHandle {
 	@Test 
 	public void testInternalCloseCoverage() throws SQLException {
 		this.testClass.connectionTrackingDisabled = false;
-		this.testClass.finalizableRefs = new MapMaker().makeMap();
-		this.testClass.finalizableRefs.put(this.testClass.connection, createNiceMock(Reference.class));
+		this.mockPool.leaseTable = new LeaseTable(1, null);
+		this.mockPool.leaseTable.track(this.testClass);
+		assertEquals(1, this.mockPool.leaseTable.getTrackedCount());
 		this.testClass.internalClose();
-		assertTrue(this.testClass.finalizableRefs.isEmpty());
+		assertEquals(0, this.mockPool.leaseTable.getTrackedCount());
+		assertNull(this.testClass.leaseAnchor);
 		
 		this.testClass.connectionTrackingDisabled = false;
-		this.testClass.finalizableRefs = null;  // should never happen
+		this.mockPool.leaseTable = null;  // tracking disabled in the pool
 		this.testClass.internalClose();
 		
 		// should not fail if connection was somehow destroy. 
@@ -652,7 +644,7 @@ public class TestConnectionHandle {
 	 */
 	@SuppressWarnings("deprecation")
 	@Test
-	public void testSettersGetters() throws IllegalArgumentException, IllegalAccessException, SecurityException, NoSuchFieldException {
+	public void testSettersGetters() throws IllegalArgumentException, IllegalAccessException, SecurityException, NoSuchFieldException, NoSuchMethodException {
 		ConnectionPartition mockPartition = createNiceMock(ConnectionPartition.class);
 		this.testClass.setOriginatingPartition(mockPartition);
 		assertEquals(mockPartition, this.testClass.getOriginatingPartition());
@@ -692,8 +684,15 @@ public class TestConnectionHandle {
 
 		assertEquals(this.testClass.getPool(), this.mockPool);
 		ArrayList<ReplayLog> testLog = new ArrayList<ReplayLog>();
+		testLog.add(new ReplayLog(null, Connection.class.getMethod("commit"), null));
 		this.testClass.setReplayLog(testLog);
-		assertEquals(this.testClass.getReplayLog(), testLog);
+		List<ReplayLog> replayLog = this.testClass.getReplayLog();
+		assertEquals(1, replayLog.size());
+		assertEquals(Connection.class.getMethod("commit"), replayLog.get(0).getMethod());
+		ReplayLogBuffer testBuffer = new ReplayLogBuffer(0, null);
+		this.testClass.setReplayLogBuffer(testBuffer);
+		assertEquals(this.testClass.getReplayLogBuffer(), testBuffer);
+		assertTrue(this.testClass.getReplayLog().isEmpty());
 		this.testClass.setInReplayMode(true);
 		assertTrue(this.testClass.isInReplayMode());
 		this.testClass.setInReplayMode(false);
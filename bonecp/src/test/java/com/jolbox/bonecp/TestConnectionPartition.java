@@ -15,20 +15,13 @@
  */
 package com.jolbox.bonecp;
 
-import java.lang.ref.Reference;
 import java.lang.reflect.Field;
-import java.lang.reflect.Method;
-import java.lang.reflect.Proxy;
 import java.sql.Connection;
 import java.sql.SQLException;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock.ReadLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock.WriteLock;
-import com.google.common.base.FinalizableReferenceQueue;
-import com.jolbox.bonecp.proxy.ConnectionProxy;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -65,8 +58,7 @@ public class TestConnectionPartition {
 		expect(mockConfig.getJdbcUrl()).andReturn("testurl").anyTimes();
 		expect(mockConfig.getPoolName()).andReturn("Junit test").anyTimes();
 		expect(mockConfig.isDisableConnectionTracking()).andReturn(false).anyTimes();
-		Map<Connection, Reference<ConnectionHandle>> refs = new HashMap<Connection, Reference<ConnectionHandle>>();
-		expect(this.mockPool.getFinalizableRefs()).andReturn(refs).anyTimes();
+		this.mockPool.leaseTable = new LeaseTable(4, "Junit test");
 		expect(this.mockPool.getConfig()).andReturn(mockConfig).anyTimes();
 		replay(mockPool, mockConfig);
 		testClass = new ConnectionPartition(this.mockPool);
@@ -152,19 +144,18 @@ public class TestConnectionPartition {
 		testClass.setFreeConnections(freeConnections);
 		assertEquals(freeConnections, testClass.getFreeConnections());
 		reset(this.mockPool);
-		Map<Connection, Reference<ConnectionHandle>> refs = new HashMap<Connection, Reference<ConnectionHandle>>();
-		expect(this.mockPool.getFinalizableRefs()).andReturn(refs).anyTimes();
-		FinalizableReferenceQueue finalizableRefQueue = new FinalizableReferenceQueue();
-		expect(this.mockPool.getFinalizableRefQueue()).andReturn(finalizableRefQueue).anyTimes();
 
 		ConnectionHandle mockConnectionHandle = createNiceMock(ConnectionHandle.class);
 		expect(mockConnectionHandle.getPool()).andReturn(this.mockPool).anyTimes();
+		expect(mockConnectionHandle.getInternalConnection()).andReturn(createNiceMock(Connection.class)).anyTimes();
 		expect(freeConnections.offer(mockConnectionHandle)).andReturn(true).anyTimes();
+		expect(freeConnections.size()).andReturn(1).anyTimes();
 		replay(mockConnectionHandle, freeConnections, this.mockPool);
 		testClass.addFreeConnection(mockConnectionHandle);
 		verify(mockConnectionHandle, freeConnections);
 		assertEquals(count+1, testClass.getCreatedConnections());
 		assertEquals(0, testClass.getRemainingCapacity());
+		assertEquals(1, this.mockPool.leaseTable.getTrackedCount());
 
 	}
 
@@ -182,11 +173,6 @@ public class TestConnectionPartition {
 		testClass.setFreeConnections(freeConnections);
 		assertEquals(freeConnections, testClass.getFreeConnections());
 		reset(this.mockPool);
-		Map<Connection, Reference<ConnectionHandle>> refs = new HashMap<Connection, Reference<ConnectionHandle>>();
-		expect(this.mockPool.getFinalizableRefs()).andReturn(refs).anyTimes();
-		
-		FinalizableReferenceQueue finalizableRefQueue = new FinalizableReferenceQueue();
-		expect(this.mockPool.getFinalizableRefQueue()).andReturn(finalizableRefQueue).anyTimes();
 		ConnectionHandle mockConnectionHandle = createNiceMock(ConnectionHandle.class);
 		expect(mockConnectionHandle.getPool()).andReturn(this.mockPool).anyTimes();
 		expect(freeConnections.offer(mockConnectionHandle)).andReturn(false);
@@ -194,7 +180,7 @@ public class TestConnectionPartition {
 		mockConnectionHandle.internalClose();
 		expectLastCall().once();
 
-		expect(freeConnections.remainingCapacity()).andReturn(1).anyTimes();
+		expect(freeConnections.size()).andReturn(0).anyTimes();
 		Connection mockRealConnection = createNiceMock(Connection.class);
 		expect(mockConnectionHandle.getInternalConnection()).andReturn(mockRealConnection).anyTimes();
 		testClass.pool = this.mockPool;
@@ -203,6 +189,7 @@ public class TestConnectionPartition {
 		verify(mockConnectionHandle, freeConnections);
 		assertEquals(count, testClass.getCreatedConnections());
 		assertEquals(1, testClass.getRemainingCapacity());
+		assertEquals(0, this.mockPool.leaseTable.getTrackedCount()); // rolled back
 
 	}
 
@@ -275,10 +262,6 @@ public class TestConnectionPartition {
 		mockConnection.close();
 		expectLastCall().once();
 		reset(this.mockPool, this.mockConfig);
-		Map<Connection, Reference<ConnectionHandle>> refs = new HashMap<Connection, Reference<ConnectionHandle>>();
-		expect(this.mockPool.getFinalizableRefs()).andReturn(refs).anyTimes();
-		FinalizableReferenceQueue finalizableRefQueue = new FinalizableReferenceQueue();
-		expect(this.mockPool.getFinalizableRefQueue()).andReturn(finalizableRefQueue).anyTimes();
 		expect(mockConnectionHandle.getPool()).andReturn(this.mockPool).anyTimes();
 		expect(this.mockPool.getConfig()).andReturn(mockConfig).anyTimes();
 		expect(mockConfig.getPoolName()).andReturn("foo").once();
@@ -294,6 +277,7 @@ public class TestConnectionPartition {
 			for (int i=0; i < 500; i++){
 				System.gc();System.gc();System.gc();
 				Thread.sleep(20);
+				this.mockPool.leaseTable.run();
 				try{
 					verify(mockConnection);
 					break; // we succeeded
@@ -315,13 +299,10 @@ public class TestConnectionPartition {
 		ConnectionHandle mockConnectionHandle = createNiceMock(ConnectionHandle.class);
 		Connection mockConnection = createNiceMock(Connection.class);
 		expect(mockConnectionHandle.getInternalConnection()).andReturn(mockConnection).anyTimes();
+		expect(mockConnectionHandle.getOriginatingPartition()).andReturn(testClass).anyTimes();
 		mockConnection.close();
 		expectLastCall().andThrow(new SQLException("fake reason")).once();
 		reset(this.mockPool);
-		Map<Connection, Reference<ConnectionHandle>> refs = new HashMap<Connection, Reference<ConnectionHandle>>();
-		expect(this.mockPool.getFinalizableRefs()).andReturn(refs).anyTimes();
-		FinalizableReferenceQueue finalizableRefQueue = new FinalizableReferenceQueue();
-		expect(this.mockPool.getFinalizableRefQueue()).andReturn(finalizableRefQueue).anyTimes();
 		expect(mockConnectionHandle.getPool()).andReturn(this.mockPool).anyTimes();
 
 		replay(mockConnectionHandle, mockConnection, this.mockPool);
@@ -336,6 +317,7 @@ public class TestConnectionPartition {
 		for (int i=0; i < 100; i++){
 			System.gc();System.gc();System.gc();
 			Thread.sleep(20);
+			this.mockPool.leaseTable.run();
 			try{
 				verify(mockLogger);
 				break; // we succeeded
@@ -346,90 +328,33 @@ public class TestConnectionPartition {
 		}
 	}
 
-	/** Test finalizer.
+	/** Test that the finalizer tracks the database connection rather than the recording wrapper.
 	 * @throws SQLException
-	 * @throws InterruptedException
-	 * @throws NoSuchFieldException 
-	 * @throws SecurityException 
-	 * @throws IllegalAccessException 
-	 * @throws IllegalArgumentException 
 	 */
 	@Test
-	public void testFinalizerException2() throws SQLException, InterruptedException, SecurityException, NoSuchFieldException, IllegalArgumentException, IllegalAccessException{
+	public void testFinalizerTracksWrappedTarget() throws SQLException{
 		ConnectionHandle mockConnectionHandle = createNiceMock(ConnectionHandle.class); 
 		expect(mockConnectionHandle.isInReplayMode()).andReturn(true).anyTimes();
 		Connection mockConnection = createNiceMock(Connection.class);
-		Connection connection = new MemorizeTransactionProxyDummy(null,null).memorizeDummy(mockConnection, mockConnectionHandle);
+		Connection connection = MemorizeTransactionProxy.memorize(mockConnection, mockConnectionHandle);
 		expect(mockConnectionHandle.getInternalConnection()).andReturn(connection).anyTimes();
-		makeThreadSafe(mockConnectionHandle, true);
-		makeThreadSafe(mockConnection, true);
-		mockLogger = TestUtils.mockLogger(testClass.getClass());
-		
-		reset(mockLogger);
-		makeThreadSafe(mockLogger, true);
 		reset(this.mockPool);
-		Map<Connection, Reference<ConnectionHandle>> refs = new HashMap<Connection, Reference<ConnectionHandle>>();
-		expect(this.mockPool.getFinalizableRefs()).andReturn(refs).anyTimes();
-		FinalizableReferenceQueue finalizableRefQueue = new FinalizableReferenceQueue();
-		expect(this.mockPool.getFinalizableRefQueue()).andReturn(finalizableRefQueue).anyTimes();
 		expect(mockConnectionHandle.getPool()).andReturn(this.mockPool).anyTimes();
 
+		mockConnection.close(); // the real connection must be closed, not a recorded close on the wrapper
+		expectLastCall().once();
+
 		replay(mockConnection, mockConnectionHandle, this.mockPool);
 
 		testClass.trackConnectionFinalizer(mockConnectionHandle);
-		reset(mockConnectionHandle);
-		mockConnectionHandle = null; // prompt GC to kick in
-		for (int i=0; i < 100; i++){
-			System.gc();System.gc();System.gc();
-			Thread.sleep(20);
-			try{
-				verify(mockConnection);
-				break; // we succeeded
-			} catch (Throwable t){
-				t.printStackTrace();
-				// do nothing, try again
-				Thread.sleep(20);
-			}
+		assertNotNull(mockConnectionHandle.leaseAnchor);
+		mockConnectionHandle.leaseAnchor = null; // as if the handle had been garbage collected
+		for (int i=0; i < 100 && this.mockPool.leaseTable.getTrackedCount() > 0; i++){
+			System.gc();
+			this.mockPool.leaseTable.run();
 		}
-	}
-	/** Fake proxy
-	 * @author wallacew
-	 *
-	 */
-	class MemorizeTransactionProxyDummy  extends MemorizeTransactionProxy {
-
-		/** Fake constructor
-		 * @param target
-		 * @param connectionHandle
-		 */
-		public MemorizeTransactionProxyDummy(Connection target,
-				ConnectionHandle connectionHandle) {
-			// do nothing
-		}
-
-		/** Just throw errors for test
-		 * @param target
-		 * @param connectionHandle
-		 * @return proxy
-		 */
-		protected Connection memorizeDummy(final Connection target, final ConnectionHandle connectionHandle) {
-
-			return (Connection) Proxy.newProxyInstance(
-					ConnectionProxy.class.getClassLoader(),
-					new Class[] {ConnectionProxy.class},
-					new MemorizeTransactionProxyDummy(target, connectionHandle));
-		}
-
-		@Override
-		public Object invoke(Object proxy, Method method, Object[] args)
-		throws Throwable {
-			if (method.getName() != "hashCode"){
-				throw new RuntimeException("fake error");
-			} 
-
-			return 1; 
-		}
-
+		assertEquals(0, this.mockPool.leaseTable.getTrackedCount());
+		verify(mockConnection);
 	}
 
 }
\ No newline at end of file
@@ -0,0 +1,285 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+/**
+ * 
+ */
+package com.jolbox.bonecp;
+
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Tests for make-before-break recycling of expired connections.
+ * @author wallacew
+ *
+ */
+public class TestConnectionRecycler {
+	/** Mock driver. */
+	private MockJDBCDriver driver;
+	/** Config with max age and recycling turned on. */
+	private BoneCPConfig config;
+	/** Mock metadata, used by the validation of a replacement. */
+	private DatabaseMetaData mockMetaData;
+
+	/** Setup.
+	 * @throws SQLException
+	 */
+	@Before
+	public void before() throws SQLException{
+		this.mockMetaData = createNiceMock(DatabaseMetaData.class);
+		Connection mockConnection = createNiceMock(Connection.class);
+		expect(mockConnection.getMetaData()).andReturn(this.mockMetaData).anyTimes();
+		replay(mockConnection);
+		this.driver = new MockJDBCDriver(mockConnection);
+
+		this.config = new BoneCPConfig();
+		this.config.setJdbcUrl("jdbc:mock:driver");
+		this.config.setMinConnectionsPerPartition(2);
+		this.config.setMaxConnectionsPerPartition(2);
+		this.config.setPartitionCount(1);
+		this.config.setStatisticsEnabled(true);
+		this.config.setMaxConnectionAgeInSeconds(3600);
+		this.config.setMaxConcurrentConnectionRecycles(1);
+	}
+
+	/** Cleanup.
+	 * @throws SQLException
+	 */
+	@After
+	public void after() throws SQLException{
+		this.driver.disable();
+	}
+
+	/** Each connection gets its own max age within the jitter range, and keeps it when its handle is recreated.
+	 * @throws SQLException
+	 */
+	@Test
+	public void testJitter() throws SQLException{
+		this.config.setMinConnectionsPerPartition(20);
+		this.config.setMaxConnectionsPerPartition(20);
+		this.config.setMaxConnectionAgeJitterPercent(20);
+		BoneCP pool = new BoneCP(this.config);
+		Set<Long> ages = new HashSet<Long>();
+		for (ConnectionHandle handle: pool.partitions[0].getFreeConnections()){
+			assertTrue(handle.maxConnectionAgeInMs <= 3600000L);
+			assertTrue(handle.maxConnectionAgeInMs >= 2880000L);
+			ages.add(handle.maxConnectionAgeInMs);
+		}
+		assertTrue(ages.size() > 1);
+
+		ConnectionHandle handle = (ConnectionHandle) pool.getConnection();
+		long age = handle.maxConnectionAgeInMs;
+		handle.close();
+		assertTrue(ages.contains(age));
+		pool.close();
+
+		this.config.setMaxConnectionAgeJitterPercent(0);
+		pool = new BoneCP(this.config);
+		handle = (ConnectionHandle) pool.getConnection();
+		assertEquals(3600000L, handle.maxConnectionAgeInMs);
+		handle.close();
+		pool.close();
+	}
+
+	/** The recycler is only created when both max age and recycling are configured.
+	 * @throws SQLException
+	 */
+	@Test
+	public void testConfig() throws SQLException{
+		BoneCP pool = new BoneCP(this.config);
+		assertNotNull(pool.connectionRecycler);
+		pool.close();
+
+		this.config.setMaxConnectionAgeInSeconds(0);
+		pool = new BoneCP(this.config);
+		assertNull(pool.connectionRecycler);
+		pool.close();
+	}
+
+	/** An expired connection handed back stays in service until its replacement is in, then is retired.
+	 * @throws Exception
+	 */
+	@Test
+	public void testMakeBeforeBreak() throws Exception{
+		BoneCP pool = new BoneCP(this.config);
+		ConnectionHandle handle = (ConnectionHandle) pool.getConnection();
+		handle.maxConnectionAgeInMs = 1;
+		Thread.sleep(5);
+		handle.close();
+
+		for (int i=0; i < 500 && pool.getStatistics().getConnectionsRecycled() == 0; i++){
+			Thread.sleep(10);
+		}
+		assertEquals(1, pool.getStatistics().getConnectionsRecycled());
+		assertEquals(2, pool.getTotalCreatedConnections());
+		assertEquals(2, pool.getTotalFree());
+		for (ConnectionHandle free: pool.partitions[0].getFreeConnections()){
+			assertFalse(free.isExpired());
+		}
+		pool.close();
+	}
+
+	/** An expired connection that is in use when its replacement arrives is retired when handed back.
+	 * @throws Exception
+	 */
+	@Test
+	public void testRetireOnRelease() throws Exception{
+		BoneCP pool = new BoneCP(this.config);
+		ConnectionHandle handle = (ConnectionHandle) pool.getConnection();
+		handle.maxConnectionAgeInMs = 1;
+		Thread.sleep(5);
+		pool.connectionRecycler.keepInService(handle); // as if expired while in use
+		for (int i=0; i < 500 && handle.recycleState.get() != ConnectionRecycler.RECYCLE_RETIRE; i++){
+			Thread.sleep(10);
+		}
+		assertEquals(ConnectionRecycler.RECYCLE_RETIRE, handle.recycleState.get());
+		assertEquals(3, pool.getTotalCreatedConnections()); // replacement is in before the old one goes
+
+		handle.close();
+		assertEquals(2, pool.getTotalCreatedConnections());
+		assertEquals(2, pool.getTotalFree());
+		pool.close();
+	}
+
+	/** A connection handed back while its replacement is being opened gets a new handle; the replacement must
+	 * retire the connection through that handle rather than the stale one it was started with.
+	 * @throws Exception
+	 */
+	@Test
+	public void testCloseWhileReplacementPending() throws Exception{
+		final CountDownLatch latch = new CountDownLatch(1);
+		BoneCP pool = new BoneCP(this.config);
+		pool.connectionRecycler.shutdown();
+		pool.connectionRecycler = new ConnectionRecycler(pool, 1, "") {
+			@Override
+			protected void replace(ConnectionHandle expired) {
+				try {
+					latch.await();
+				} catch (InterruptedException e) {
+					// do nothing
+				}
+				super.replace(expired);
+			}
+		};
+		ConnectionHandle handle = (ConnectionHandle) pool.getConnection();
+		handle.maxConnectionAgeInMs = 1;
+		Thread.sleep(5);
+		assertTrue(pool.connectionRecycler.keepInService(handle)); // as if expired while in use
+		handle.close(); // stays in service under a new handle
+		assertEquals(2, pool.getTotalFree());
+
+		latch.countDown();
+		for (int i=0; i < 500 && pool.getStatistics().getConnectionsRecycled() == 0; i++){
+			Thread.sleep(10);
+		}
+		assertEquals(1, pool.getStatistics().getConnectionsRecycled());
+		assertEquals(2, pool.getTotalCreatedConnections());
+		assertEquals(2, pool.getTotalFree());
+		for (ConnectionHandle free: pool.partitions[0].getFreeConnections()){
+			assertFalse(free.isExpired());
+			assertEquals(ConnectionRecycler.RECYCLE_NONE, free.recycleState.get());
+		}
+		pool.close();
+	}
+
+	/** A replacement that fails validation is discarded and the expired connection keeps serving.
+	 * @throws Exception
+	 */
+	@Test
+	public void testReplacementFailsValidation() throws Exception{
+		BoneCP pool = new BoneCP(this.config);
+		ConnectionHandle handle = (ConnectionHandle) pool.getConnection();
+		handle.maxConnectionAgeInMs = 1;
+		Thread.sleep(5);
+		expect(this.mockMetaData.getTables((String)anyObject(), (String)anyObject(), (String)anyObject(), (String[])anyObject()))
+			.andThrow(new SQLException("fake")).anyTimes();
+		replay(this.mockMetaData);
+		pool.connectionRecycler.keepInService(handle);
+		for (int i=0; i < 500 && (handle.recycleState.get() != ConnectionRecycler.RECYCLE_NONE || pool.connectionRecycler.getInProgressCount() > 0); i++){
+			Thread.sleep(10);
+		}
+		assertEquals(ConnectionRecycler.RECYCLE_NONE, handle.recycleState.get());
+		assertEquals(0, pool.getStatistics().getConnectionsRecycled());
+		assertEquals(2, pool.getTotalCreatedConnections());
+		pool.close();
+	}
+
+	/** No more than the configured number of replacements are opened at once; others wait their turn in service.
+	 * @throws Exception
+	 */
+	@Test
+	public void testCap() throws Exception{
+		final CountDownLatch latch = new CountDownLatch(1);
+		BoneCP mockPool = createNiceMock(BoneCP.class);
+		ConnectionRecycler recycler = new ConnectionRecycler(mockPool, 1, "") {
+			@Override
+			protected void replace(ConnectionHandle expired) {
+				try {
+					latch.await();
+				} catch (InterruptedException e) {
+					// do nothing
+				}
+				super.replace(expired); // fails against the mock pool
+			}
+		};
+		ConnectionHandle first = createNiceMock(ConnectionHandle.class);
+		ConnectionHandle second = createNiceMock(ConnectionHandle.class);
+		first.recycleState = new AtomicInteger(); // mocks skip field initializers
+		second.recycleState = new AtomicInteger();
+		assertTrue(recycler.keepInService(first));
+		assertEquals(ConnectionRecycler.RECYCLE_PENDING, first.recycleState.get());
+		assertTrue(recycler.keepInService(first));
+		assertTrue(recycler.keepInService(second));
+		assertEquals(ConnectionRecycler.RECYCLE_NONE, second.recycleState.get()); // waiting its turn
+		assertEquals(1, recycler.getInProgressCount());
+
+		latch.countDown();
+		for (int i=0; i < 500 && recycler.getInProgressCount() > 0; i++){
+			Thread.sleep(10);
+		}
+		assertEquals(0, recycler.getInProgressCount());
+		assertEquals(ConnectionRecycler.RECYCLE_NONE, first.recycleState.get());
+
+		second.recycleState.set(ConnectionRecycler.RECYCLE_RETIRE);
+		assertFalse(recycler.keepInService(second));
+
+		mockPool.poolShuttingDown = true;
+		assertFalse(recycler.keepInService(first));
+		mockPool.poolShuttingDown = false;
+		recycler.shutdown();
+		assertFalse(recycler.keepInService(first));
+		assertEquals(0, recycler.getInProgressCount());
+	}
+}
@@ -0,0 +1,72 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+/**
+ * 
+ */
+package com.jolbox.bonecp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/** Tests for the duration histogram.
+ * @author wallacew
+ *
+ */
+public class TestDurationHistogram {
+
+	/** Buckets are contiguous, cover every long and are no wider than 12.5% of their values. */
+	@Test
+	public void testBuckets(){
+		for (int i=0; i < DurationHistogram.BUCKETS - 1; i++){
+			assertEquals(DurationHistogram.lowerBound(i) + DurationHistogram.width(i), DurationHistogram.lowerBound(i + 1));
+			assertEquals(i, DurationHistogram.bucketOf(DurationHistogram.lowerBound(i)));
+			assertEquals(i, DurationHistogram.bucketOf(DurationHistogram.lowerBound(i + 1) - 1));
+			assertTrue(DurationHistogram.width(i) <= Math.max(1, DurationHistogram.lowerBound(i) / 8));
+		}
+		assertEquals(DurationHistogram.BUCKETS - 1, DurationHistogram.bucketOf(Long.MAX_VALUE));
+	}
+
+	/** Percentiles, moments and differences of snapshots. */
+	@Test
+	public void testSnapshots(){
+		DurationHistogram histogram = new DurationHistogram();
+		for (int i=1; i <= 1000; i++){
+			histogram.record(i * 1000L);
+		}
+		histogram.record(-5);
+		long[] first = histogram.snapshot();
+		assertEquals(1001, DurationHistogram.count(first));
+		assertEquals(500000, DurationHistogram.valueAtPercentile(first, 50), 500000 / 8);
+		assertEquals(990000, DurationHistogram.valueAtPercentile(first, 99), 990000 / 8);
+		assertEquals(500000, DurationHistogram.mean(first), 500000 / 16);
+		assertEquals(0, DurationHistogram.valueAtPercentile(first, 0), 0.001);
+
+		histogram.record(5000000);
+		long[] window = DurationHistogram.difference(histogram.snapshot(), first);
+		assertEquals(1, DurationHistogram.count(window));
+		assertEquals(5000000, DurationHistogram.valueAtPercentile(window, 99), 5000000 / 8);
+		assertEquals(25e12, DurationHistogram.secondMoment(window), 25e12 / 4);
+
+		histogram.reset();
+		assertEquals(0, DurationHistogram.count(histogram.snapshot()));
+		assertEquals(0, DurationHistogram.mean(histogram.snapshot()), 0.001);
+		assertNull(DurationHistogram.difference(histogram.snapshot(), first));
+	}
+}
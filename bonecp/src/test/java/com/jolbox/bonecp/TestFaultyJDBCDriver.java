@@ -0,0 +1,186 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+/**
+ * 
+ */
+package com.jolbox.bonecp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Tests for the fault-injecting driver, and for the pool's recovery from the faults it injects.
+ * @author wallacew
+ *
+ */
+public class TestFaultyJDBCDriver {
+	/** Driver under test. */
+	private FaultyJDBCDriver driver;
+
+	/** Setup.
+	 * @throws SQLException
+	 */
+	@Before
+	public void before() throws SQLException{
+		this.driver = new FaultyJDBCDriver(new FaultInjector(null));
+	}
+
+	/** Cleanup.
+	 * @throws SQLException
+	 */
+	@After
+	public void after() throws SQLException{
+		this.driver.unregister();
+	}
+
+	/** Returns a single-partition config pointing at the faulty driver.
+	 * @return config
+	 */
+	private BoneCPConfig config(){
+		BoneCPConfig config = new BoneCPConfig();
+		config.setJdbcUrl(FaultyJDBCDriver.URL_PREFIX + "test");
+		config.setPartitionCount(1);
+		config.setMinConnectionsPerPartition(2);
+		config.setMaxConnectionsPerPartition(2);
+		config.setAcquireRetryDelayInMs(20);
+		config.setConnectionTestStatement("SELECT 1");
+		config.setDisableJMX(true);
+		return config;
+	}
+
+	/** Bad scripts are rejected. */
+	@Test
+	public void testInvalidScript(){
+		String[] scripts = {"outage", "outage@100", "error=abc", "hang=0.5", "meltdown"};
+		for (String script: scripts){
+			try{
+				new FaultInjector(script);
+				fail("Should have rejected "+script);
+			} catch (IllegalArgumentException e){
+				// expected
+			}
+		}
+	}
+
+	/** Per-call errors carry the scripted SQLState; close() is never faulted.
+	 * @throws SQLException
+	 */
+	@Test
+	public void testCallErrors() throws SQLException{
+		this.driver.setFaultInjector(new FaultInjector("error=1:40001"));
+		Connection con = this.driver.connect(FaultyJDBCDriver.URL_PREFIX, null);
+		try{
+			con.prepareStatement("SELECT 1");
+			fail("Should have thrown an exception");
+		} catch (SQLException e){
+			assertEquals("40001", e.getSQLState());
+		}
+		con.close();
+		assertEquals(1, this.driver.getFaultInjector().getCallFailures());
+	}
+
+	/** Slow logins take as long as scripted.
+	 * @throws SQLException
+	 */
+	@Test
+	public void testSlowConnect() throws SQLException{
+		this.driver.setFaultInjector(new FaultInjector("connect=100"));
+		long start = System.currentTimeMillis();
+		this.driver.connect(FaultyJDBCDriver.URL_PREFIX, null).close();
+		assertTrue(System.currentTimeMillis() - start >= 100);
+		assertFalse(this.driver.acceptsURL("jdbc:mock"));
+	}
+
+	/** During a black hole, calls on existing sessions hang until it closes and then fail.
+	 * @throws SQLException
+	 */
+	@Test
+	public void testBlackhole() throws SQLException{
+		FaultInjector injector = new FaultInjector("blackhole@50+150");
+		this.driver.setFaultInjector(injector);
+		Connection con = this.driver.connect(FaultyJDBCDriver.URL_PREFIX, null);
+		con.createStatement().execute("SELECT 1");
+		sleepUntil(injector, 60);
+		try{
+			con.createStatement();
+			fail("Should have thrown an exception");
+		} catch (SQLException e){
+			assertEquals(FaultInjector.COMMUNICATION_LINK_FAILURE, e.getSQLState());
+		}
+		assertTrue(System.nanoTime() >= injector.toNanoTime(200 * 1000000L));
+		assertEquals(1, injector.getHangs());
+		// a session opened after the black hole is fine
+		this.driver.connect(FaultyJDBCDriver.URL_PREFIX, null).createStatement().close();
+	}
+
+	/** A database restart kills every session; the pool terminates its connections and refills once the 
+	 * database is back.
+	 * @throws Exception
+	 */
+	@Test
+	public void testOutageRecovery() throws Exception{
+		FaultInjector injector = new FaultInjector("outage@200+300");
+		this.driver.setFaultInjector(injector);
+		BoneCP pool = new BoneCP(config());
+		assertEquals(2, pool.getTotalCreatedConnections());
+		Connection con = pool.getConnection();
+		sleepUntil(injector, 250);
+		try{
+			con.prepareStatement("SELECT 1");
+			fail("Should have thrown an exception");
+		} catch (SQLException e){
+			assertEquals(FaultInjector.COMMUNICATION_LINK_FAILURE, e.getSQLState());
+		}
+		con.close();
+		assertTrue(injector.getConnectFailures() > 0 || pool.getTotalCreatedConnections() < 2);
+
+		sleepUntil(injector, 500);
+		long deadline = System.currentTimeMillis() + 5000;
+		while (pool.getTotalCreatedConnections() < 2 && System.currentTimeMillis() < deadline){
+			Thread.sleep(10);
+		}
+		assertEquals(2, pool.getTotalCreatedConnections());
+		con = pool.getConnection();
+		con.prepareStatement("SELECT 1").execute();
+		con.close();
+		pool.close();
+	}
+
+	/** Sleeps until the given offset into the fault script.
+	 * @param injector injector whose clock to use
+	 * @param offsetInMs offset
+	 * @throws SQLException 
+	 */
+	private static void sleepUntil(FaultInjector injector, long offsetInMs) throws SQLException{
+		long wait = (injector.toNanoTime(offsetInMs * 1000000L) - System.nanoTime()) / 1000000L;
+		if (wait > 0){
+			try {
+				Thread.sleep(wait + 1);
+			} catch (InterruptedException e) {
+				throw new SQLException(e.getMessage());
+			}
+		}
+	}
+}
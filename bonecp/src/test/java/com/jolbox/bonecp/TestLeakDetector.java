@@ -0,0 +1,195 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+/**
+ * 
+ */
+package com.jolbox.bonecp;
+
+import static org.easymock.EasyMock.anyLong;
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.createStrictMock;
+import static org.easymock.EasyMock.eq;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.isNull;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.jolbox.bonecp.hooks.ConnectionHook;
+
+/** Tests for the leak detector.
+ * @author wallacew
+ *
+ */
+public class TestLeakDetector {
+	/** Mock hook. */
+	private ConnectionHook mockHook;
+	/** Statistics handle. */
+	private Statistics statistics;
+
+	/** Setup.
+	 */
+	@Before
+	public void before(){
+		this.mockHook = createStrictMock(ConnectionHook.class);
+		this.statistics = new Statistics(createNiceMock(BoneCP.class));
+	}
+
+	/** Creates a mock connection handle that returns our hook.
+	 * @return handle
+	 */
+	private ConnectionHandle mockHandle(){
+		ConnectionHandle handle = createNiceMock(ConnectionHandle.class);
+		expect(handle.getConnectionHook()).andReturn(this.mockHook).anyTimes();
+		replay(handle);
+		return handle;
+	}
+
+	/** A connection held past the threshold is reported exactly once, with its checkout trace.
+	 */
+	@Test
+	public void testReportedOnce(){
+		LeakDetector detector = new LeakDetector(0, 1, this.statistics);
+		ConnectionHandle handle = mockHandle();
+		this.mockHook.onConnectionLeakSuspected(eq(handle), anyLong(), eq(Thread.currentThread().getName()), (Throwable)anyObject());
+		expectLastCall().once();
+		replay(this.mockHook);
+
+		detector.checkOut(handle);
+		assertEquals(1, detector.getLeaseCount());
+		detector.run();
+		detector.run();
+		verify(this.mockHook);
+		assertEquals(1, this.statistics.getConnectionLeaksSuspected());
+		String[] leaks = detector.getSuspectedLeaks();
+		assertEquals(1, leaks.length);
+		assertTrue(leaks[0].contains("testReportedOnce"));
+
+		detector.checkIn(handle);
+		assertEquals(0, detector.getLeaseCount());
+		assertEquals(0, detector.getSuspectedLeaks().length);
+	}
+
+	/** Connections returned in time are never reported.
+	 */
+	@Test
+	public void testNotOverdue(){
+		LeakDetector detector = new LeakDetector(60000, 1, null);
+		replay(this.mockHook);
+		ConnectionHandle handle = mockHandle();
+		detector.checkOut(handle);
+		detector.run();
+		assertEquals(0, detector.getSuspectedLeaks().length);
+		detector.checkIn(handle);
+		detector.run();
+		verify(this.mockHook);
+	}
+
+	/** Stack traces are only captured for 1 in every sampleRate checkouts.
+	 */
+	@Test
+	public void testSampling(){
+		LeakDetector detector = new LeakDetector(0, 2, this.statistics);
+		this.mockHook.onConnectionLeakSuspected((ConnectionHandle)anyObject(), anyLong(), (String)anyObject(), (Throwable)anyObject());
+		expectLastCall().times(4);
+		replay(this.mockHook);
+		ConnectionHandle[] handles = new ConnectionHandle[4]; // strongly held: the detector only keeps weak references
+		for (int i=0; i < 4; i++){
+			handles[i] = mockHandle();
+			detector.checkOut(handles[i]);
+		}
+		int sampled = 0;
+		for (String leak: detector.getSuspectedLeaks()){
+			if (!leak.contains("was not sampled")){
+				sampled++;
+			}
+		}
+		assertEquals(2, sampled);
+		detector.run();
+		verify(this.mockHook);
+		assertEquals(4, this.statistics.getConnectionLeaksSuspected());
+		assertEquals(4, handles.length);
+	}
+
+	/** A sample rate of 0 never captures a trace; the hook gets a null trace.
+	 */
+	@Test
+	public void testNoSampling(){
+		LeakDetector detector = new LeakDetector(0, 0, null);
+		ConnectionHandle handle = mockHandle();
+		this.mockHook.onConnectionLeakSuspected(eq(handle), anyLong(), (String)anyObject(), (Throwable)isNull());
+		expectLastCall().once();
+		replay(this.mockHook);
+		detector.checkOut(handle);
+		detector.run();
+		verify(this.mockHook);
+	}
+
+	/** The tick scales with the threshold.
+	 */
+	@Test
+	public void testTick(){
+		assertEquals(LeakDetector.MIN_TICK_IN_MS, new LeakDetector(10, 1, null).getTickInMs());
+		assertEquals(3000, new LeakDetector(30000, 1, null).getTickInMs());
+		assertEquals(LeakDetector.MAX_TICK_IN_MS, new LeakDetector(3600000, 1, null).getTickInMs());
+	}
+
+	/** The pool tracks checkouts when enabled.
+	 * @throws SQLException
+	 */
+	@Test
+	public void testPoolIntegration() throws SQLException{
+		MockJDBCDriver driver = new MockJDBCDriver(new MockJDBCAnswer() {
+			public Connection answer() throws SQLException {
+				return new MockConnection();
+			}
+		});
+		BoneCPConfig config = new BoneCPConfig();
+		config.setJdbcUrl("jdbc:mock");
+		config.setPartitionCount(1);
+		config.setMinConnectionsPerPartition(2);
+		config.setMaxConnectionsPerPartition(2);
+		config.setDisableConnectionTracking(true);
+		config.setLeakDetectionThresholdInMs(3600000);
+		BoneCP pool = new BoneCP(config);
+		try{
+			Connection c = pool.getConnection();
+			assertEquals(1, pool.getLeakDetector().getLeaseCount());
+			assertEquals(0, pool.getStatistics().getSuspectedLeaks().length);
+			c.close();
+			assertEquals(0, pool.getLeakDetector().getLeaseCount());
+		} finally {
+			pool.close();
+			driver.unregister();
+		}
+
+		config.setLeakDetectionThresholdInMs(-1);
+		config.setLeakDetectionStackTraceSampleRate(-1);
+		config.sanitize();
+		assertEquals(0, config.getLeakDetectionThresholdInMs());
+		assertEquals(0, config.getLeakDetectionStackTraceSampleRate());
+	}
+}
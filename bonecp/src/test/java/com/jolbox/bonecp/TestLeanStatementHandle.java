@@ -0,0 +1,137 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+/**
+ * 
+ */
+package com.jolbox.bonecp;
+
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.InvocationTargetException;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/** Tests for the lean statement handles.
+ * @author wallacew
+ *
+ */
+public class TestLeanStatementHandle {
+	/** Mock handle. */
+	private ConnectionHandle mockConnection;
+	/** Tests to skip. */
+	private Set<String> skipTests = new HashSet<String>();
+
+	/** Setup.
+	 */
+	@Before
+	public void before(){
+		this.mockConnection = createNiceMock(ConnectionHandle.class);
+		this.skipTests.add("$VRi"); // this only comes into play when code coverage is started. Eclemma bug?
+	}
+
+	/** Each lean method should bounce straight to the driver (+ test exceptions).
+	 * @throws IllegalArgumentException
+	 * @throws IllegalAccessException
+	 * @throws InvocationTargetException
+	 */
+	@Test
+	public void testStatementBounceMethods() throws IllegalArgumentException, IllegalAccessException, InvocationTargetException{
+		LeanStatementHandle mockClass = createNiceMock(LeanStatementHandle.class);
+		LeanStatementHandle testClass = new LeanStatementHandle(mockClass, this.mockConnection);
+		CommonTestUtils.testStatementBounceMethod(this.mockConnection, testClass, this.skipTests, mockClass);
+	}
+
+	/** Each lean method should bounce straight to the driver (+ test exceptions).
+	 * @throws IllegalArgumentException
+	 * @throws IllegalAccessException
+	 * @throws InvocationTargetException
+	 */
+	@Test
+	public void testPreparedStatementBounceMethods() throws IllegalArgumentException, IllegalAccessException, InvocationTargetException{
+		LeanPreparedStatementHandle mockClass = createNiceMock(LeanPreparedStatementHandle.class);
+		LeanPreparedStatementHandle testClass = new LeanPreparedStatementHandle(mockClass, "", this.mockConnection, null, null);
+		CommonTestUtils.testStatementBounceMethod(this.mockConnection, testClass, this.skipTests, mockClass);
+	}
+
+	/** Each lean method should bounce straight to the driver (+ test exceptions).
+	 * @throws IllegalArgumentException
+	 * @throws IllegalAccessException
+	 * @throws InvocationTargetException
+	 */
+	@Test
+	public void testCallableStatementBounceMethods() throws IllegalArgumentException, IllegalAccessException, InvocationTargetException{
+		LeanCallableStatementHandle mockClass = createNiceMock(LeanCallableStatementHandle.class);
+		LeanCallableStatementHandle testClass = new LeanCallableStatementHandle(mockClass, "", this.mockConnection, null, null);
+		CommonTestUtils.testStatementBounceMethod(this.mockConnection, testClass, this.skipTests, mockClass);
+	}
+
+	/** Lean handles should only be handed out if no hooks, logging or statistics are configured.
+	 * @throws SQLException
+	 */
+	@Test
+	public void testSelection() throws SQLException{
+		Connection mockInternalConnection = createNiceMock(Connection.class);
+		expect(mockInternalConnection.createStatement()).andReturn(createNiceMock(Statement.class)).anyTimes();
+		expect(mockInternalConnection.prepareStatement("")).andReturn(createNiceMock(PreparedStatement.class)).anyTimes();
+		expect(mockInternalConnection.prepareCall("")).andReturn(createNiceMock(CallableStatement.class)).anyTimes();
+		replay(mockInternalConnection);
+		MockJDBCDriver mockDriver = new MockJDBCDriver(mockInternalConnection);
+
+		BoneCPConfig config = new BoneCPConfig();
+		config.setJdbcUrl("jdbc:mock:driver");
+		config.setDisableConnectionTracking(true);
+		config.setMinConnectionsPerPartition(1);
+		config.setMaxConnectionsPerPartition(1);
+		config.setPartitionCount(1);
+		BoneCP pool = new BoneCP(config);
+		assertTrue(pool.isLeanStatementHandles());
+		Connection con = pool.getConnection();
+		assertTrue(con.createStatement() instanceof LeanStatementHandle);
+		assertTrue(con.prepareStatement("") instanceof LeanPreparedStatementHandle);
+		assertTrue(con.prepareCall("") instanceof LeanCallableStatementHandle);
+
+		// logging switched on for this connection only
+		((ConnectionHandle) con).setLogStatementsEnabled(true);
+		assertFalse(con.createStatement() instanceof LeanStatementHandle);
+		assertFalse(con.prepareStatement("") instanceof LeanPreparedStatementHandle);
+		assertFalse(con.prepareCall("") instanceof LeanCallableStatementHandle);
+		con.close();
+		pool.close();
+
+		config.setStatisticsEnabled(true);
+		pool = new BoneCP(config);
+		assertFalse(pool.isLeanStatementHandles());
+		con = pool.getConnection();
+		assertFalse(con.createStatement() instanceof LeanStatementHandle);
+		assertFalse(con.prepareStatement("") instanceof LeanPreparedStatementHandle);
+		con.close();
+		pool.close();
+		mockDriver.disable();
+	}
+}
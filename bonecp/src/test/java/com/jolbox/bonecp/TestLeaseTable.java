@@ -0,0 +1,288 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+/**
+ * 
+ */
+package com.jolbox.bonecp;
+
+import static org.easymock.EasyMock.anyLong;
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.eq;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.same;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Tests for the lease table used to reclaim leaked connections.
+ * @author wallacew
+ *
+ */
+public class TestLeaseTable {
+	/** Mock pool. */
+	private BoneCP mockPool;
+	/** Mock driver, if registered by the test. */
+	private MockJDBCDriver driver;
+
+	/** Setup.
+	 */
+	@Before
+	public void before(){
+		this.mockPool = createNiceMock(BoneCP.class);
+		expect(this.mockPool.getConfig()).andReturn(new BoneCPConfig()).anyTimes();
+		replay(this.mockPool);
+	}
+
+	/** Cleanup.
+	 * @throws SQLException
+	 */
+	@After
+	public void after() throws SQLException{
+		if (this.driver != null){
+			this.driver.disable();
+		}
+	}
+
+	/** Creates a handle over the given connection.
+	 * @param connection connection to wrap.
+	 * @return handle
+	 */
+	private ConnectionHandle handle(Connection connection){
+		return ConnectionHandle.createTestConnectionHandle(connection, null, null, this.mockPool);
+	}
+
+	/** Slots are handed out on track and given back on untrack; a full table simply doesn't track.
+	 */
+	@Test
+	public void testTrackUntrack(){
+		LeaseTable table = new LeaseTable(1, null);
+		ConnectionHandle first = handle(createNiceMock(Connection.class));
+		ConnectionHandle second = handle(createNiceMock(Connection.class));
+		table.track(first);
+		assertEquals(0, first.leaseSlot);
+		assertNotNull(first.leaseAnchor);
+		assertEquals(1, table.getTrackedCount());
+
+		table.track(second); // full
+		assertNull(second.leaseAnchor);
+
+		table.untrack(first);
+		assertNull(first.leaseAnchor);
+		assertEquals(0, table.getTrackedCount());
+		table.untrack(first); // no-op
+
+		table.track(second);
+		assertEquals(0, second.leaseSlot);
+
+		table.track(handle(null)); // nothing to track
+		assertEquals(1, table.getTrackedCount());
+	}
+
+	/** The table grows on demand (eg when the pool is resized) without disturbing slots in use.
+	 */
+	@Test
+	public void testEnsureCapacity(){
+		LeaseTable table = new LeaseTable(1, null);
+		ConnectionHandle first = handle(createNiceMock(Connection.class));
+		table.track(first);
+		table.checkOut(first);
+		assertEquals(1, table.getCapacity());
+
+		table.ensureCapacity(100);
+		assertEquals(100, table.getCapacity());
+		table.ensureCapacity(10); // never shrinks
+		assertEquals(100, table.getCapacity());
+		assertTrue(table.isCheckedOut(first));
+		for (int i=1; i < 100; i++){
+			ConnectionHandle handle = handle(createNiceMock(Connection.class));
+			table.track(handle);
+			assertNotNull(handle.leaseAnchor);
+			table.checkOut(handle);
+			assertTrue(table.isCheckedOut(handle));
+		}
+		assertEquals(100, table.getTrackedCount());
+		ConnectionHandle overflow = handle(createNiceMock(Connection.class));
+		table.track(overflow); // full
+		assertNull(overflow.leaseAnchor);
+	}
+
+	/** Checkout and checkin flip the lease state.
+	 */
+	@Test
+	public void testCheckOutCheckIn(){
+		LeaseTable table = new LeaseTable(2, null);
+		ConnectionHandle handle = handle(createNiceMock(Connection.class));
+		table.checkOut(handle); // untracked, ignored
+		assertFalse(table.isCheckedOut(handle));
+		table.track(handle);
+		assertFalse(table.isCheckedOut(handle));
+		table.checkOut(handle);
+		table.checkOut(handle);
+		assertTrue(table.isCheckedOut(handle));
+		table.checkIn(handle);
+		table.checkIn(handle);
+		assertFalse(table.isCheckedOut(handle));
+
+		// a reused slot starts off checked in.
+		table.checkOut(handle);
+		table.untrack(handle);
+		table.track(handle);
+		assertFalse(table.isCheckedOut(handle));
+	}
+
+	/** Recreating a handle hands the slot and anchor over to the new handle.
+	 * @throws SQLException 
+	 */
+	@Test
+	public void testRecreateTransfersLease() throws SQLException{
+		LeaseTable table = new LeaseTable(2, null);
+		ConnectionHandle handle = handle(createNiceMock(Connection.class));
+		table.track(handle);
+		Object anchor = handle.leaseAnchor;
+		ConnectionHandle recreated = handle(null);
+		LeaseTable.transfer(handle, recreated);
+		assertEquals(0, recreated.leaseSlot);
+		assertSame(anchor, recreated.leaseAnchor);
+		assertNull(handle.leaseAnchor);
+	}
+
+	/** A connection whose handle was lost is closed and the partition count updated; live ones are left alone.
+	 * @throws SQLException
+	 * @throws InterruptedException 
+	 */
+	@Test
+	public void testReclaim() throws SQLException, InterruptedException{
+		LeaseTable table = new LeaseTable(2, "test");
+		ConnectionPartition mockPartition = createNiceMock(ConnectionPartition.class);
+		mockPartition.updateCreatedConnections(-1);
+		expectLastCall().once();
+		Connection leaked = createNiceMock(Connection.class);
+		leaked.close();
+		expectLastCall().once();
+		Connection live = createNiceMock(Connection.class);
+		replay(mockPartition, leaked, live);
+
+		ConnectionHandle handle = handle(leaked);
+		handle.setOriginatingPartition(mockPartition);
+		table.track(handle);
+		table.checkOut(handle);
+		ConnectionHandle liveHandle = handle(live);
+		table.track(liveHandle);
+
+		handle = null; // prompt GC to kick in
+		for (int i=0; i < 100 && table.getTrackedCount() > 1; i++){
+			System.gc();
+			Thread.sleep(10);
+			table.run();
+		}
+		assertEquals(1, table.getTrackedCount());
+		verify(mockPartition, leaked, live);
+		table.untrack(liveHandle);
+	}
+
+	/** Replaying a transaction on a new connection updates the tracked connection in place.
+	 * @throws SQLException
+	 */
+	@Test
+	public void testTrackReplacedConnection() throws SQLException{
+		LeaseTable table = new LeaseTable(2, null);
+		Connection original = createNiceMock(Connection.class);
+		Connection replacement = createNiceMock(Connection.class);
+		replacement.close();
+		expectLastCall().once();
+		replay(original, replacement);
+		ConnectionHandle handle = handle(original);
+		table.track(handle);
+		handle.setInternalConnection(replacement);
+		table.track(handle);
+		assertEquals(0, handle.leaseSlot);
+		assertEquals(1, table.getTrackedCount());
+
+		handle.leaseAnchor = null; // as if the handle had been garbage collected
+		for (int i=0; i < 100 && table.getTrackedCount() > 0; i++){
+			System.gc();
+			table.run();
+		}
+		verify(original, replacement);
+	}
+
+	/** Connections that are closed by the application normally are never reclaimed; leaked ones are.
+	 * @throws SQLException
+	 * @throws InterruptedException 
+	 */
+	@Test
+	public void testPoolReclaimsLeakedConnection() throws SQLException, InterruptedException{
+		Connection mockConnection = createNiceMock(Connection.class);
+		replay(mockConnection);
+		this.driver = new MockJDBCDriver(mockConnection);
+		BoneCPConfig config = new BoneCPConfig();
+		config.setJdbcUrl("jdbc:mock:driver");
+		config.setMinConnectionsPerPartition(1);
+		config.setMaxConnectionsPerPartition(1);
+		config.setPartitionCount(1);
+		BoneCP pool = new BoneCP(config);
+		assertNotNull(pool.leaseTable);
+
+		Connection con = pool.getConnection();
+		assertTrue(pool.leaseTable.isCheckedOut((ConnectionHandle) con));
+		con.close();
+		con = null;
+		for (int i=0; i < 5; i++){
+			System.gc();
+			pool.leaseTable.run();
+		}
+		assertEquals(1, pool.getTotalCreatedConnections());
+		assertEquals(1, pool.leaseTable.getTrackedCount());
+
+		pool.getConnection(); // leaked
+		for (int i=0; i < 100 && pool.leaseTable.getTrackedCount() > 0; i++){
+			System.gc();
+			Thread.sleep(10);
+			pool.leaseTable.run();
+		}
+		assertEquals(0, pool.leaseTable.getTrackedCount());
+		assertEquals(0, pool.getTotalCreatedConnections());
+		pool.close();
+	}
+
+	/** The scan is scheduled at a fixed delay.
+	 */
+	@Test
+	public void testStart(){
+		ScheduledExecutorService scheduler = createNiceMock(ScheduledExecutorService.class);
+		LeaseTable table = new LeaseTable(1, null);
+		expect(scheduler.scheduleWithFixedDelay(same(table), anyLong(), eq(LeaseTable.TICK_IN_MS), eq(TimeUnit.MILLISECONDS))).andReturn(null).once();
+		replay(scheduler);
+		table.start(scheduler);
+		verify(scheduler);
+	}
+}
@@ -32,7 +32,6 @@ import static org.junit.Assert.fail;
 
 import java.lang.Thread.State;
 import java.lang.reflect.Field;
-import java.lang.reflect.InvocationHandler;
 import java.sql.CallableStatement;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
@@ -117,43 +116,39 @@ public class TestMemorizeTransactionProxy {
 		CallableStatement cs = con.prepareCall("");
 
 		Statement stmt = con.createStatement();
-		InvocationHandler handler = java.lang.reflect.Proxy.getInvocationHandler( ((ConnectionHandle) con).getInternalConnection());
-		assertEquals(MemorizeTransactionProxy.class, handler.getClass());
+		assertTrue(((ConnectionHandle) con).getInternalConnection() instanceof RecordingConnection);
 
 		Field field = PreparedStatementHandle.class.getDeclaredField("internalPreparedStatement");
 		field.setAccessible(true);
 		ps = (PreparedStatement) field.get(ps);
 
-		handler = java.lang.reflect.Proxy.getInvocationHandler(ps);
-		assertEquals(MemorizeTransactionProxy.class, handler.getClass());
+		assertTrue(ps instanceof RecordingPreparedStatement);
 
 		field = CallableStatementHandle.class.getDeclaredField("internalCallableStatement");
 		field.setAccessible(true);
 		cs = (CallableStatement) field.get(cs);
 
-		handler = java.lang.reflect.Proxy.getInvocationHandler(cs);
-		assertEquals(MemorizeTransactionProxy.class, handler.getClass());
+		assertTrue(cs instanceof RecordingCallableStatement);
 
 		field = StatementHandle.class.getDeclaredField("internalStatement");
 		field.setAccessible(true);
 		stmt = (Statement) field.get(stmt);
 
-		handler = java.lang.reflect.Proxy.getInvocationHandler(stmt);
-		assertEquals(MemorizeTransactionProxy.class, handler.getClass());
+		assertTrue(stmt instanceof RecordingStatement);
 
 
 		// fake stuff to test for clear
-		((ConnectionHandle)con).getReplayLog().add(new ReplayLog(null, null, null));
+		((ConnectionHandle)con).getReplayLogBuffer().add(null, Connection.class.getMethod("commit"), null);
 		((ConnectionHandle)con).recoveryResult.getReplaceTarget().put("test", "test1");
 		con.rollback(); // should clear out log
-		assertTrue(((ConnectionHandle)con).getReplayLog().isEmpty());
+		assertTrue(((ConnectionHandle)con).getReplayLogBuffer().isEmpty());
 //		assertTrue(((ConnectionHandle)con).recoveryResult.getReplaceTarget().isEmpty());
 
 		// fake stuff to test for clear
-		((ConnectionHandle)con).getReplayLog().add(new ReplayLog(null, null, null));
+		((ConnectionHandle)con).getReplayLogBuffer().add(null, Connection.class.getMethod("commit"), null);
 		((ConnectionHandle)con).recoveryResult.getReplaceTarget().put("test", "test1");
 		con.commit(); // should clear out log
-		assertTrue(((ConnectionHandle)con).getReplayLog().isEmpty());
+		assertTrue(((ConnectionHandle)con).getReplayLogBuffer().isEmpty());
 //		assertTrue(((ConnectionHandle)con).recoveryResult.getReplaceTarget().isEmpty());
 
 		assertNotNull(((ConnectionHandle)con).getProxyTarget());
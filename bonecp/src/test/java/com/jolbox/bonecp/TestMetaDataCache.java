@@ -0,0 +1,253 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.jolbox.bonecp;
+
+import static org.easymock.EasyMock.*;
+import static org.junit.Assert.*;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/** Tests the pool-wide DatabaseMetaData cache.
+ * @author wallacew
+ *
+ */
+public class TestMetaDataCache {
+	/** Mock handle. */
+	private DatabaseMetaData mockMetaData;
+	/** Mock handle. */
+	private ConnectionHandle mockConnection;
+	/** Class under test. */
+	private MetaDataCache cache;
+
+	/** Reset mocks. */
+	@Before
+	public void before(){
+		this.mockMetaData = createStrictMock(DatabaseMetaData.class);
+		this.mockConnection = createNiceMock(ConnectionHandle.class);
+		this.cache = new MetaDataCache(0);
+	}
+
+	/** Builds a catalog result set mock returning the given table names.
+	 * @param tables table names to return
+	 * @return mock result set
+	 * @throws SQLException
+	 */
+	private ResultSet mockTables(String... tables) throws SQLException{
+		ResultSet rs = createNiceMock(ResultSet.class);
+		ResultSetMetaData rsmd = createNiceMock(ResultSetMetaData.class);
+		expect(rs.getMetaData()).andReturn(rsmd).anyTimes();
+		expect(rsmd.getColumnCount()).andReturn(2).anyTimes();
+		expect(rsmd.getColumnLabel(1)).andReturn("TABLE_NAME").anyTimes();
+		expect(rsmd.getColumnType(1)).andReturn(Types.VARCHAR).anyTimes();
+		expect(rsmd.getColumnLabel(2)).andReturn("ORDINAL").anyTimes();
+		expect(rsmd.getColumnType(2)).andReturn(Types.INTEGER).anyTimes();
+		for (int i=0; i < tables.length; i++){
+			expect(rs.next()).andReturn(true).once();
+			expect(rs.getObject(1)).andReturn(tables[i]).once();
+			expect(rs.getObject(2)).andReturn(Integer.valueOf(i+1)).once();
+		}
+		expect(rs.next()).andReturn(false).once();
+		rs.close();
+		expectLastCall().once();
+		replay(rs, rsmd);
+		return rs;
+	}
+
+	/** Capabilities should be obtained from the driver only once, for all connections.
+	 * @throws SQLException
+	 */
+	@Test
+	public void testCapabilitiesComputedOnce() throws SQLException{
+		expect(this.mockMetaData.supportsBatchUpdates()).andReturn(true).once();
+		expect(this.mockMetaData.getDatabaseProductVersion()).andReturn(null).once();
+		expect(this.mockMetaData.supportsConvert(Types.INTEGER, Types.VARCHAR)).andReturn(true).once();
+		expect(this.mockMetaData.supportsConvert(Types.INTEGER, Types.BIT)).andReturn(false).once();
+		replay(this.mockMetaData);
+
+		for (int i=0; i < 3; i++){
+			DatabaseMetaDataHandle handle = new DatabaseMetaDataHandle(this.mockMetaData, this.mockConnection, this.cache);
+			assertTrue(handle.supportsBatchUpdates());
+			assertNull(handle.getDatabaseProductVersion());
+			assertTrue(handle.supportsConvert(Types.INTEGER, Types.VARCHAR));
+			assertFalse(handle.supportsConvert(Types.INTEGER, Types.BIT));
+		}
+		verify(this.mockMetaData);
+	}
+
+	/** Catalog queries should be served from a snapshot.
+	 * @throws SQLException
+	 */
+	@Test
+	public void testCatalogSnapshot() throws SQLException{
+		ResultSet rs = mockTables("FOO", "BAR");
+		expect(this.mockMetaData.getTables((String)isNull(), eq("APP"), eq("%"), aryEq(new String[]{"TABLE"}))).andReturn(rs).once();
+		replay(this.mockMetaData, this.mockConnection);
+
+		for (int i=0; i < 2; i++){
+			DatabaseMetaDataHandle handle = new DatabaseMetaDataHandle(this.mockMetaData, this.mockConnection, this.cache);
+			ResultSet result = handle.getTables(null, "APP", "%", new String[]{"TABLE"});
+			assertNull(result.getStatement());
+			assertEquals(2, result.getMetaData().getColumnCount());
+			assertTrue(result.isBeforeFirst());
+			assertTrue(result.next());
+			assertEquals("FOO", result.getString("table_name"));
+			assertEquals(1, result.getInt(2));
+			assertFalse(result.wasNull());
+			assertTrue(result.next());
+			assertEquals("BAR", result.getString(1));
+			assertEquals(2L, result.getLong("ORDINAL"));
+			assertFalse(result.next());
+			assertTrue(result.previous());
+			assertEquals("BAR", result.getObject(1));
+			assertTrue(result.first());
+			assertEquals("FOO", result.getString(1));
+			result.close();
+			assertTrue(result.isClosed());
+		}
+		assertEquals(1, this.cache.size());
+		verify(this.mockMetaData, rs);
+	}
+
+	/** Cached result sets are read-only.
+	 * @throws SQLException
+	 */
+	@Test(expected=SQLException.class)
+	public void testSnapshotIsReadOnly() throws SQLException{
+		MetaDataResultSet result = new MetaDataResultSet(new MetaDataSnapshot(mockTables("FOO")));
+		result.next();
+		result.updateString(1, "BAR");
+	}
+
+	/** Snapshots should expire and be discarded on invalidation.
+	 * @throws SQLException
+	 */
+	@Test
+	public void testExpiryAndInvalidation() throws SQLException{
+		MetaDataCache expiringCache = new MetaDataCache(1);
+		expiringCache.putSnapshot("key", mockTables("FOO"));
+		long start = System.currentTimeMillis();
+		while (System.currentTimeMillis() - start < 10){
+			Thread.yield(); // don't sleep: a stray interrupt from an earlier test would fail us
+		}
+		assertNull(expiringCache.getSnapshot("key"));
+		assertEquals(0, expiringCache.size());
+
+		this.cache.putSnapshot("key", mockTables("FOO"));
+		this.cache.putCapability("cap", Boolean.TRUE);
+		assertNotNull(this.cache.getSnapshot("key"));
+		this.cache.invalidate();
+		assertNull(this.cache.getSnapshot("key"));
+		assertEquals(Boolean.TRUE, this.cache.getCapability("cap"));
+		this.cache.invalidateAll();
+		assertNull(this.cache.getCapability("cap"));
+	}
+
+	/** A null catalog is the connection's current one, so connections on different catalogs must not share snapshots.
+	 * @throws SQLException
+	 */
+	@Test
+	public void testCatalogScopedToConnection() throws SQLException{
+		ResultSet rsA = mockTables("FOO");
+		ResultSet rsB = mockTables("BAR");
+		expect(this.mockMetaData.getTables((String)isNull(), eq("APP"), eq("%"), (String[])isNull())).andReturn(rsA).once();
+		expect(this.mockMetaData.getTables((String)isNull(), eq("APP"), eq("%"), (String[])isNull())).andReturn(rsB).once();
+		ConnectionHandle connectionA = createNiceMock(ConnectionHandle.class);
+		ConnectionHandle connectionB = createNiceMock(ConnectionHandle.class);
+		expect(connectionA.getCatalog()).andReturn("A").anyTimes();
+		expect(connectionB.getCatalog()).andReturn("B").anyTimes();
+		replay(this.mockMetaData, connectionA, connectionB);
+
+		for (int i=0; i < 2; i++){
+			ResultSet result = new DatabaseMetaDataHandle(this.mockMetaData, connectionA, this.cache).getTables(null, "APP", "%", null);
+			assertTrue(result.next());
+			assertEquals("FOO", result.getString(1));
+			result = new DatabaseMetaDataHandle(this.mockMetaData, connectionB, this.cache).getTables(null, "APP", "%", null);
+			assertTrue(result.next());
+			assertEquals("BAR", result.getString(1));
+		}
+		assertEquals(2, this.cache.size());
+		verify(this.mockMetaData);
+	}
+
+	/** The number of snapshots held is capped.
+	 * @throws SQLException
+	 */
+	@Test
+	public void testSnapshotsBounded() throws SQLException{
+		MetaDataCache boundedCache = new MetaDataCache(0, 2);
+		for (int i=0; i < 5; i++){
+			boundedCache.putSnapshot("key"+i, mockTables("FOO"));
+		}
+		assertTrue(boundedCache.size() <= 2);
+		assertNotNull(boundedCache.getSnapshot("key4"));
+	}
+
+	/** Keys should distinguish between arguments.
+	 */
+	@Test
+	public void testCalculateKey(){
+		assertFalse(MetaDataCache.calculateKey("getTables", null, "A").equals(MetaDataCache.calculateKey("getTables", "null", "A")));
+		assertFalse(MetaDataCache.calculateKey("getTables", (Object) new String[]{"A"}).equals(MetaDataCache.calculateKey("getTables", (Object) new String[]{"B"})));
+		assertFalse(MetaDataCache.calculateKey("getTables", (Object) new String[]{"a,b"}).equals(MetaDataCache.calculateKey("getTables", (Object) new String[]{"a", "b"})));
+		assertFalse(MetaDataCache.calculateKey("getTables", "a|b", "c").equals(MetaDataCache.calculateKey("getTables", "a", "b|c")));
+		assertEquals(MetaDataCache.calculateKey("getUDTs", new int[]{1, 2}), MetaDataCache.calculateKey("getUDTs", new int[]{1, 2}));
+	}
+
+	/** Driver failures should mark the connection as possibly broken.
+	 * @throws SQLException
+	 */
+	@Test
+	public void testExceptionMarksConnection() throws SQLException{
+		SQLException e = new SQLException("fail");
+		expect(this.mockMetaData.getPrimaryKeys(null, null, "FOO")).andThrow(e).once();
+		expect(this.mockConnection.markPossiblyBroken(e)).andReturn(e).once();
+		replay(this.mockMetaData, this.mockConnection);
+		try{
+			new DatabaseMetaDataHandle(this.mockMetaData, this.mockConnection, this.cache).getPrimaryKeys(null, null, "FOO");
+			fail("Should have thrown an exception");
+		} catch (SQLException ex){
+			assertSame(e, ex);
+		}
+		verify(this.mockMetaData, this.mockConnection);
+	}
+
+	/** Connection handle should hand out the caching wrapper when enabled on the pool.
+	 * @throws SQLException
+	 */
+	@Test
+	public void testConnectionHandleWrapsMetaData() throws SQLException{
+		Connection mockInternal = createNiceMock(Connection.class);
+		BoneCP mockPool = createNiceMock(BoneCP.class);
+		expect(mockPool.getConfig()).andReturn(new BoneCPConfig()).anyTimes();
+		expect(mockPool.getMetaDataCache()).andReturn(this.cache).anyTimes();
+		expect(mockInternal.getMetaData()).andReturn(this.mockMetaData).anyTimes();
+		replay(mockInternal, mockPool);
+
+		ConnectionHandle handle = ConnectionHandle.createTestConnectionHandle(mockInternal, null, null, mockPool);
+		DatabaseMetaData result = handle.getMetaData();
+		assertTrue(result instanceof DatabaseMetaDataHandle);
+		assertSame(this.mockMetaData, ((DatabaseMetaDataHandle)result).getInternalMetaData());
+		assertSame(handle, result.getConnection());
+	}
+}
@@ -0,0 +1,175 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+/**
+ * 
+ */
+package com.jolbox.bonecp;
+
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.jolbox.bonecp.hooks.AbstractConnectionHook;
+
+/** Tests for the statement parameter recorder.
+ * @author wallacew
+ *
+ */
+public class TestParameterRecorder {
+	/** Mock driver. */
+	private MockJDBCDriver driver;
+
+	/** Cleanup.
+	 * @throws SQLException
+	 */
+	@After
+	public void after() throws SQLException{
+		if (this.driver != null){
+			this.driver.disable();
+		}
+	}
+
+	/** Values come back boxed to their original types, in index order, followed by named parameters. */
+	@Test
+	public void testMapView(){
+		ParameterRecorder params = new ParameterRecorder();
+		assertTrue(params.isEmpty());
+		params.set(3, "c");
+		params.set(1, true);
+		params.set(2, (byte) 2);
+		params.set(4, (short) 4);
+		params.set(5, 5);
+		params.set(6, 6L);
+		params.set(7, 7.5f);
+		params.set(8, 8.5d);
+		params.setNull(9, Types.INTEGER);
+		params.set("name", "n");
+		params.put(10, "j");
+		assertEquals(11, params.size());
+		assertEquals(Arrays.<Object>asList(true, (byte) 2, "c", (short) 4, 5, 6L, 7.5f, 8.5d, "[SQL NULL of type 4]", "j", "n"), 
+				new ArrayList<Object>(params.values()));
+		assertEquals(Arrays.<Object>asList(1, 2, 3, 4, 5, 6, 7, 8, 9, 10, "name"), new ArrayList<Object>(params.keySet()));
+		assertEquals(6L, params.get(6));
+		assertEquals("n", params.get("name"));
+		assertTrue(params.containsKey(9));
+		assertFalse(params.containsKey(11));
+		assertNull(params.get(100));
+
+		// rebinding replaces, and a map built from the same values compares equal
+		params.set(3, 33);
+		Map<Object, Object> expected = new LinkedHashMap<Object, Object>(params);
+		assertEquals(11, expected.size());
+		assertEquals(33, expected.get(3));
+		assertEquals(expected, params);
+
+		params.clear();
+		assertTrue(params.isEmpty());
+		assertFalse(params.entrySet().iterator().hasNext());
+		params.set(2, "b");
+		assertEquals(Arrays.<Object>asList(2), new ArrayList<Object>(params.keySet()));
+	}
+
+	/** Slots grow as needed, and copies are independent of the original. */
+	@Test
+	public void testGrowAndCopy(){
+		ParameterRecorder params = new ParameterRecorder();
+		for (int i=1; i <= 1000; i++){
+			params.set(i, (long) i);
+		}
+		assertEquals(1000, params.size());
+		assertEquals(1000L, params.get(1000));
+
+		ParameterRecorder copy = new ParameterRecorder();
+		copy.set(2000, "stale");
+		copy.copyFrom(params);
+		params.clear();
+		assertEquals(1000, copy.size());
+		assertEquals(500L, copy.get(500));
+		assertNull(copy.get(2000));
+		assertTrue(PoolUtil.fillLogParams("? ? ?", copy).startsWith("1 2 3"));
+	}
+
+	/** Parameters bound through the pool's statement handles reach connection hooks intact.
+	 * @throws SQLException
+	 */
+	@Test
+	public void testHook() throws SQLException{
+		Connection mockConnection = createNiceMock(Connection.class);
+		PreparedStatement mockPreparedStatement = createNiceMock(PreparedStatement.class);
+		CallableStatement mockCallableStatement = createNiceMock(CallableStatement.class);
+		expect(mockConnection.prepareStatement((String) anyObject())).andReturn(mockPreparedStatement).anyTimes();
+		expect(mockConnection.prepareCall((String) anyObject())).andReturn(mockCallableStatement).anyTimes();
+		replay(mockConnection, mockPreparedStatement, mockCallableStatement);
+		this.driver = new MockJDBCDriver(mockConnection);
+
+		final List<String> seen = new ArrayList<String>();
+		BoneCPConfig config = new BoneCPConfig();
+		config.setJdbcUrl("jdbc:mock");
+		config.setPartitionCount(1);
+		config.setMinConnectionsPerPartition(1);
+		config.setMaxConnectionsPerPartition(1);
+		config.setConnectionHook(new AbstractConnectionHook() {
+			@Override
+			public void onBeforeStatementExecute(ConnectionHandle conn, StatementHandle statement, String sql, Map<Object, Object> params) {
+				seen.add(PoolUtil.fillLogParams(sql, params));
+			}
+		});
+		BoneCP pool = new BoneCP(config);
+		Connection con = pool.getConnection();
+		// the pool-wide setting is dropped unless debug logging or a statement log file is set up
+		((ConnectionHandle) con).setLogStatementsEnabled(true);
+		PreparedStatement ps = con.prepareStatement("UPDATE t SET a = ?, b = ?, c = ? WHERE d = ?");
+		ps.setInt(1, 1);
+		ps.setDouble(2, 2.5);
+		ps.setString(3, "x");
+		ps.setNull(4, Types.VARCHAR);
+		ps.executeUpdate();
+		ps.clearParameters();
+		ps.setLong(1, 3);
+		ps.executeUpdate();
+		ps.close();
+		CallableStatement cs = con.prepareCall("{call p(?)}");
+		cs.setString("p", "y");
+		cs.execute();
+		cs.close();
+		con.close();
+		pool.close();
+
+		assertEquals(Arrays.asList("UPDATE t SET a = 1, b = 2.5, c = 'x' WHERE d = '[SQL NULL of type 12]'", 
+				"UPDATE t SET a = 3, b = ?, c = ? WHERE d = ?", "{call p('y')}"), seen);
+	}
+}
@@ -0,0 +1,237 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+/**
+ * 
+ */
+package com.jolbox.bonecp;
+
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.After;
+import org.junit.Test;
+
+/** Tests for the flight recorder pool events. The jdk.jfr API is driven through the diagnostic command MBean and 
+ * read back reflectively, so that this test compiles (and is skipped) on JVMs without a flight recorder.
+ * @author wallacew
+ *
+ */
+public class TestPoolEvents {
+	/** Mock driver. */
+	private MockJDBCDriver driver;
+	/** Recording dump. */
+	private File file;
+
+	/** Cleanup.
+	 * @throws SQLException
+	 */
+	@After
+	public void after() throws SQLException{
+		if (this.driver != null){
+			this.driver.disable();
+		}
+		if (this.file != null){
+			this.file.delete();
+		}
+	}
+
+	/** The no-op sink is harmless and the flight recorder one is picked whenever jdk.jfr is there. */
+	@Test
+	public void testLoad(){
+		PoolEvents events = new PoolEvents();
+		events.register(null);
+		events.connectionAcquired(null, 0);
+		events.statementExecuted(null, null, 0);
+		events.unregister(null);
+
+		assumeTrue(isFlightRecorderAvailable());
+		assertTrue(PoolEvents.getInstance() instanceof JfrPoolEvents);
+	}
+
+	/** A recording sees the pool's events, and the recording flag follows the recording state.
+	 * @throws Exception
+	 */
+	@Test
+	public void testRecording() throws Exception{
+		assumeTrue(isFlightRecorderAvailable());
+		assertFalse(PoolEvents.isRecording());
+
+		Connection mockConnection = createNiceMock(Connection.class);
+		PreparedStatement mockPreparedStatement = createNiceMock(PreparedStatement.class);
+		DatabaseMetaData mockMetaData = createNiceMock(DatabaseMetaData.class);
+		expect(mockConnection.prepareStatement((String) anyObject())).andReturn(mockPreparedStatement).anyTimes();
+		expect(mockConnection.getMetaData()).andReturn(mockMetaData).anyTimes();
+		expect(mockPreparedStatement.executeUpdate()).andReturn(3).anyTimes();
+		replay(mockConnection, mockPreparedStatement, mockMetaData);
+		this.driver = new MockJDBCDriver(mockConnection);
+
+		BoneCPConfig config = new BoneCPConfig();
+		config.setJdbcUrl("jdbc:mock");
+		config.setPoolName("jfr");
+		config.setPartitionCount(1);
+		config.setMinConnectionsPerPartition(1);
+		config.setMaxConnectionsPerPartition(2);
+		config.setStatementsCacheSize(10);
+
+		this.file = File.createTempFile("bonecp", ".jfr");
+		diagnosticCommand("jfrStart", "name=bonecp-test");
+		try{
+			for (int i=0; i < 100 && !PoolEvents.isRecording(); i++){
+				Thread.sleep(10);
+			}
+			assertTrue(PoolEvents.isRecording());
+
+			BoneCP pool = new BoneCP(config);
+			assertTrue(pool.isLeanStatementHandles());
+			ConnectionHandle con = (ConnectionHandle) pool.getConnection();
+			// taking the only free connection makes the pool watch thread top up the partition
+			for (int i=0; i < 100 && pool.getTotalCreatedConnections() < 2; i++){
+				Thread.sleep(10);
+			}
+			for (int i=0; i < 2; i++){
+				PreparedStatement ps = con.prepareStatement("UPDATE t SET a = 5 WHERE b = 'x'");
+				assertEquals(3, ps.executeUpdate());
+				ps.close();
+			}
+			assertTrue(pool.isConnectionHandleAlive(con));
+			((JfrPoolEvents) PoolEvents.getInstance()).emitStatistics();
+			con.close();
+			pool.close();
+		} finally {
+			diagnosticCommand("jfrStop", "name=bonecp-test", "filename="+this.file.getAbsolutePath());
+		}
+		assertFalse(PoolEvents.isRecording());
+
+		List<Object> events = new ArrayList<Object>();
+		for (Object event: readEvents(this.file)){
+			if ("jfr".equals(value(event, "poolName"))){
+				events.add(event);
+			}
+		}
+		assertEquals(2, count(events, "ConnectionCreate"));
+		assertEquals(1, count(events, "ConnectionAcquire"));
+		assertEquals(1, count(events, "ConnectionRelease"));
+		assertEquals(1, count(events, "ConnectionValidation"));
+		assertEquals(2, count(events, "ConnectionDestroy"));
+		assertEquals(1, count(events, "PoolStatistics"));
+		assertEquals(1, value(find(events, "PartitionFill").get(0), "created"));
+
+		List<Object> prepares = find(events, "StatementPrepare");
+		assertEquals(2, prepares.size());
+		assertEquals(Boolean.FALSE, value(prepares.get(0), "cacheHit"));
+		assertEquals(Boolean.TRUE, value(prepares.get(1), "cacheHit"));
+
+		List<Object> executes = find(events, "StatementExecute");
+		assertEquals(2, executes.size());
+		assertEquals("update t set a = ? where b = ?", value(executes.get(0), "fingerprint"));
+		assertEquals("shutdown", value(find(events, "ConnectionDestroy").get(0), "reason"));
+		assertEquals(0, value(find(events, "ConnectionAcquire").get(0), "partition"));
+	}
+
+	/** Returns true if this JVM has a usable flight recorder.
+	 * @return availability
+	 */
+	private static boolean isFlightRecorderAvailable(){
+		try{
+			Class.forName("jdk.jfr.consumer.RecordingFile");
+			return (Boolean) Class.forName("jdk.jfr.FlightRecorder").getMethod("isAvailable").invoke(null);
+		} catch (Exception e){
+			return false;
+		}
+	}
+
+	/** Runs a flight recorder diagnostic command.
+	 * @param operation operation name, eg jfrStart
+	 * @param args command arguments
+	 * @throws Exception
+	 */
+	private static void diagnosticCommand(String operation, String... args) throws Exception{
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		server.invoke(new ObjectName("com.sun.management:type=DiagnosticCommand"), operation, 
+				new Object[]{args}, new String[]{String[].class.getName()});
+	}
+
+	/** Reads all events from a recording dump.
+	 * @param file dump
+	 * @return recorded events
+	 * @throws Exception
+	 */
+	@SuppressWarnings("unchecked")
+	private static List<Object> readEvents(File file) throws Exception{
+		Object path = File.class.getMethod("toPath").invoke(file);
+		return (List<Object>) Class.forName("jdk.jfr.consumer.RecordingFile")
+				.getMethod("readAllEvents", Class.forName("java.nio.file.Path")).invoke(null, path);
+	}
+
+	/** Returns the events of the given type.
+	 * @param events recorded events
+	 * @param type event name without the com.jolbox.bonecp prefix
+	 * @return matching events
+	 * @throws Exception
+	 */
+	private static List<Object> find(List<Object> events, String type) throws Exception{
+		List<Object> result = new ArrayList<Object>();
+		for (Object event: events){
+			Object eventType = event.getClass().getMethod("getEventType").invoke(event);
+			if (("com.jolbox.bonecp."+type).equals(eventType.getClass().getMethod("getName").invoke(eventType))){
+				result.add(event);
+			}
+		}
+		return result;
+	}
+
+	/** Counts the events of the given type.
+	 * @param events recorded events
+	 * @param type event name without the com.jolbox.bonecp prefix
+	 * @return count
+	 * @throws Exception
+	 */
+	private static int count(List<Object> events, String type) throws Exception{
+		return find(events, type).size();
+	}
+
+	/** Returns a field of a recorded event.
+	 * @param event recorded event
+	 * @param field field name
+	 * @return value, or null if the event has no such field
+	 * @throws Exception
+	 */
+	private static Object value(Object event, String field) throws Exception{
+		if (!((Boolean) event.getClass().getMethod("hasField", String.class).invoke(event, field))){
+			return null;
+		}
+		return event.getClass().getMethod("getValue", String.class).invoke(event, field);
+	}
+}
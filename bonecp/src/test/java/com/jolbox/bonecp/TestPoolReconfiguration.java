@@ -0,0 +1,272 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+/**
+ * 
+ */
+package com.jolbox.bonecp;
+
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import javax.management.Attribute;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Tests for resizing and reconfiguring a running pool.
+ * @author wallacew
+ *
+ */
+public class TestPoolReconfiguration {
+	/** Mock driver. */
+	private MockJDBCDriver mockDriver;
+	/** Config used to start the pool. */
+	private BoneCPConfig config;
+	/** Pool under test. */
+	private BoneCP pool;
+
+	/** Setup.
+	 * @throws SQLException
+	 */
+	@Before
+	public void before() throws SQLException{
+		Connection mockInternalConnection = createNiceMock(Connection.class);
+		expect(mockInternalConnection.isClosed()).andReturn(false).anyTimes();
+		replay(mockInternalConnection);
+		this.mockDriver = new MockJDBCDriver(mockInternalConnection);
+
+		this.config = new BoneCPConfig();
+		this.config.setJdbcUrl("jdbc:mock:driver");
+		this.config.setDisableJMX(true);
+		this.config.setMinConnectionsPerPartition(1);
+		this.config.setMaxConnectionsPerPartition(5);
+		this.config.setAcquireIncrement(1);
+		this.config.setPartitionCount(1);
+		this.pool = new BoneCP(this.config);
+	}
+
+	/** Cleanup.
+	 * @throws SQLException
+	 */
+	@After
+	public void after() throws SQLException{
+		this.pool.close();
+		this.mockDriver.disable();
+	}
+
+	/** Raising the minimum fills up the partition without waiting for demand.
+	 * @throws InterruptedException
+	 */
+	@Test
+	public void testRaiseMinConnections() throws InterruptedException{
+		this.config.setMinConnectionsPerPartition(3);
+		this.pool.reconfigure(this.config);
+		assertEquals(3, this.pool.partitions[0].getMinConnections());
+		waitFor(3, this.pool.partitions[0]);
+		assertEquals(3, this.pool.getTotalCreatedConnections());
+	}
+
+	/** Lowering the maximum closes idle surplus connections right away and leased ones only once released.
+	 * @throws SQLException
+	 */
+	@Test
+	public void testLowerMaxConnections() throws SQLException{
+		Connection[] leased = new Connection[4];
+		for (int i=0; i < leased.length; i++){
+			leased[i] = this.pool.getConnection();
+		}
+		leased[0].close();
+		leased[1].close();
+
+		this.config.setMaxConnectionsPerPartition(1);
+		this.pool.reconfigure(this.config);
+		assertEquals(1, this.pool.partitions[0].getMaxConnections());
+		assertEquals(0, this.pool.getTotalFree()); // idle ones are gone
+		assertEquals(2, this.pool.getTotalCreatedConnections()); // leases are untouched
+		assertFalse(leased[2].isClosed());
+
+		leased[2].close();
+		assertEquals(1, this.pool.getTotalCreatedConnections());
+		assertEquals(0, this.pool.getTotalFree());
+		leased[3].close();
+		assertEquals(1, this.pool.getTotalCreatedConnections());
+		assertEquals(1, this.pool.getTotalFree());
+		assertFalse(this.pool.partitions[0].shrinking);
+	}
+
+	/** Partitions can be added and retired on the fly.
+	 * @throws Exception
+	 */
+	@Test
+	public void testPartitionCount() throws Exception{
+		ConnectionPartition first = this.pool.partitions[0];
+		this.config.setPartitionCount(3);
+		this.pool.reconfigure(this.config);
+		assertEquals(3, this.pool.partitionCount);
+		assertEquals(3, this.pool.partitions.length);
+		assertSame(first, this.pool.partitions[0]);
+		waitFor(1, this.pool.partitions[1]);
+		waitFor(1, this.pool.partitions[2]);
+		assertTrue(this.pool.leaseTable.getCapacity() >= 2 * 3 * 5);
+
+		this.config.setPartitionCount(1);
+		this.pool.reconfigure(this.config);
+		assertEquals(1, this.pool.partitionCount);
+		assertEquals(3, this.pool.partitions.length);
+		assertTrue(this.pool.partitions[1].retired);
+		assertEquals(0, this.pool.partitions[1].getCreatedConnections());
+		assertEquals(0, this.pool.partitions[2].getCreatedConnections());
+		for (int i=0; i < 20; i++){ // only the remaining partition is handed out
+			Connection con = this.pool.getConnection();
+			assertSame(first, ((ConnectionHandle) con).getOriginatingPartition());
+			con.close();
+		}
+
+		// growing again brings back retired partitions.
+		this.config.setPartitionCount(2);
+		this.pool.reconfigure(this.config);
+		assertEquals(3, this.pool.partitions.length);
+		assertFalse(this.pool.partitions[1].retired);
+		assertTrue(this.pool.partitions[2].retired);
+		waitFor(1, this.pool.partitions[1]);
+	}
+
+	/** A connection leased from a partition that gets retired is closed off when released.
+	 * @throws SQLException
+	 * @throws InterruptedException
+	 */
+	@Test
+	public void testRetiredPartitionLease() throws SQLException, InterruptedException{
+		this.config.setPartitionCount(2);
+		this.pool.reconfigure(this.config);
+		waitFor(1, this.pool.partitions[1]);
+		ConnectionHandle handle = (ConnectionHandle) this.pool.partitions[1].getFreeConnections().poll();
+
+		this.config.setPartitionCount(1);
+		this.pool.reconfigure(this.config);
+		assertFalse(handle.isClosed());
+		assertEquals(1, this.pool.partitions[1].getCreatedConnections());
+		this.pool.releaseConnection(handle);
+		long deadline = System.currentTimeMillis() + 5000;
+		while (this.pool.partitions[1].getCreatedConnections() > 0 && System.currentTimeMillis() < deadline){
+			Thread.sleep(10);
+		}
+		assertEquals(0, this.pool.partitions[1].getCreatedConnections());
+	}
+
+	/** Changing the idle settings replaces the housekeeping tasks.
+	 */
+	@Test
+	public void testHousekeepingRescheduled(){
+		ConnectionTesterThread tester = this.pool.partitions[0].connectionTester;
+		this.config.setIdleConnectionTestPeriodInMinutes(1);
+		this.pool.reconfigure(this.config);
+		assertTrue(tester.cancelled);
+		assertNotSame(tester, this.pool.partitions[0].connectionTester);
+		assertFalse(this.pool.partitions[0].connectionTester.cancelled);
+
+		tester = this.pool.partitions[0].connectionTester;
+		this.pool.reconfigure(this.config); // nothing changed
+		assertSame(tester, this.pool.partitions[0].connectionTester);
+
+		assertEquals(null, this.pool.partitions[0].connectionMaxAgeTester);
+		this.config.setMaxConnectionAgeInSeconds(60);
+		this.pool.reconfigure(this.config);
+		assertTrue(this.pool.partitions[0].connectionMaxAgeTester != null);
+		for (ConnectionHandle handle: this.pool.partitions[0].getFreeConnections()){
+			assertEquals(60000, handle.maxConnectionAgeInMs);
+		}
+	}
+
+	/** Writes via JMX take effect on the running pool.
+	 * @throws Exception
+	 */
+	@Test
+	public void testJMXWrite() throws Exception{
+		BoneCPConfigMBeanAdapter mbean = new BoneCPConfigMBeanAdapter(this.pool);
+		mbean.setAttribute(new Attribute("ConnectionTimeoutInMs", 50L));
+		assertEquals(50, this.pool.connectionTimeoutInMs);
+		mbean.setAttribute(new Attribute("ConnectionTimeoutInMs", 0L));
+		assertEquals(Long.MAX_VALUE, this.pool.connectionTimeoutInMs);
+
+		mbean.setAttribute(new Attribute("MaxConnectionsPerPartition", 2));
+		assertEquals(2, this.pool.partitions[0].getMaxConnections());
+		assertEquals(2, mbean.getAttribute("MaxConnectionsPerPartition"));
+
+		// invalid values are sanitized
+		mbean.setAttribute(new Attribute("MinConnectionsPerPartition", 10));
+		assertEquals(2, this.pool.partitions[0].getMinConnections());
+	}
+
+	/** The pool works off its own copy of the config; only reconfigure() pushes changes into it.
+	 * @throws SQLException
+	 */
+	@Test
+	public void testConfigIsCopied() throws SQLException{
+		assertNotSame(this.config, this.pool.getConfig());
+		this.config.setMaxConnectionsPerPartition(2);
+		assertEquals(5, this.pool.getConfig().getMaxConnectionsPerPartition());
+		this.pool.reconfigure(this.config);
+		assertEquals(2, this.pool.getConfig().getMaxConnectionsPerPartition());
+		assertEquals(2, this.pool.partitions[0].getMaxConnections());
+	}
+
+	/** Turning on statement logging at runtime stops handing out lean statement handles.
+	 * @throws SQLException
+	 */
+	@Test
+	public void testLeanStatementHandlesRecomputed() throws SQLException{
+		assertTrue(this.pool.isLeanStatementHandles());
+		Connection con = this.pool.getConnection();
+		assertTrue(con.createStatement() instanceof LeanStatementHandle);
+
+		// leased connections pick up the change too
+		this.pool.getConfig().setLogStatementsEnabled(true);
+		this.pool.reconfigure(this.config);
+		assertFalse(this.pool.isLeanStatementHandles());
+		assertFalse(con.createStatement() instanceof LeanStatementHandle);
+
+		this.pool.getConfig().setLogStatementsEnabled(false);
+		this.pool.reconfigure(this.config);
+		assertTrue(this.pool.isLeanStatementHandles());
+		assertTrue(con.createStatement() instanceof LeanStatementHandle);
+		con.close();
+	}
+
+	/** Waits (up to 5s) for the given partition to reach the given number of connections.
+	 * @param count connections to wait for
+	 * @param partition partition to watch
+	 * @throws InterruptedException
+	 */
+	private void waitFor(int count, ConnectionPartition partition) throws InterruptedException{
+		long deadline = System.currentTimeMillis() + 5000;
+		while (partition.getCreatedConnections() < count && System.currentTimeMillis() < deadline){
+			Thread.sleep(10);
+		}
+		assertEquals(count, partition.getCreatedConnections());
+	}
+}
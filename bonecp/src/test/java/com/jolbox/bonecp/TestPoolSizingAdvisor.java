@@ -0,0 +1,206 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+/**
+ * 
+ */
+package com.jolbox.bonecp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.jolbox.bonecp.PoolSizingAdvisor.HoldTimeSampler;
+import com.jolbox.bonecp.PoolSizingAdvisor.Recommendation;
+import com.jolbox.bonecp.PoolSizingAdvisor.Window;
+
+/** Tests for the pool sizing advisor.
+ * @author wallacew
+ *
+ */
+public class TestPoolSizingAdvisor {
+	/** Mock driver. */
+	private MockJDBCDriver driver;
+
+	/** Setup.
+	 * @throws SQLException
+	 */
+	@Before
+	public void before() throws SQLException{
+		this.driver = new MockJDBCDriver();
+	}
+
+	/** Cleanup.
+	 * @throws SQLException
+	 */
+	@After
+	public void after() throws SQLException{
+		this.driver.disable();
+	}
+
+	/** Returns a histogram of exponentially distributed hold times.
+	 * @param meanInNanos mean hold time
+	 * @return histogram counts
+	 */
+	private static long[] exponentialHolds(double meanInNanos){
+		DurationHistogram histogram = new DurationHistogram();
+		Random random = new Random(42);
+		for (int i=0; i < 100000; i++){
+			histogram.record((long) (-Math.log(1 - random.nextDouble()) * meanInNanos));
+		}
+		return histogram.snapshot();
+	}
+
+	/** Erlang C and the wait percentile approximation against textbook M/M/c values. */
+	@Test
+	public void testAnalytic(){
+		assertEquals(0.5, PoolSizingAdvisor.erlangC(1, 0.5), 0.0001);
+		assertEquals(4/9.0, PoolSizingAdvisor.erlangC(3, 2), 0.0001);
+		assertEquals(1, PoolSizingAdvisor.erlangC(2, 2), 0.0001);
+
+		// M/M/1 at 50% load: P(W > t) = 0.5 exp(-0.5 t)
+		assertEquals(Math.log(50) / 0.5, PoolSizingAdvisor.analyticWait(1, 0.5, 1, 1, 99), 0.0001);
+		// deterministic hold times halve the tail
+		assertEquals(Math.log(50), PoolSizingAdvisor.analyticWait(1, 0.5, 1, 0, 99), 0.0001);
+		assertEquals(0, PoolSizingAdvisor.analyticWait(20, 2, 1, 1, 99), 0.0001);
+		assertEquals(Double.POSITIVE_INFINITY, PoolSizingAdvisor.analyticWait(2, 2, 1, 1, 99), 0.0001);
+	}
+
+	/** With exponential hold times the simulation agrees with the M/M/c result. */
+	@Test
+	public void testSimulation(){
+		double meanHold = TimeUnit.MILLISECONDS.toNanos(1);
+		HoldTimeSampler holdTimes = new HoldTimeSampler(exponentialHolds(meanHold));
+		double sum = 0;
+		Random random = new Random(1);
+		for (int i=0; i < 100000; i++){
+			sum += holdTimes.sample(random);
+		}
+		assertEquals(meanHold, sum / 100000, meanHold * 0.05);
+
+		// 4 connections in use on average out of 6
+		double simulated = PoolSizingAdvisor.simulateWait(6, 4 / meanHold, holdTimes, 99, 200000, 1);
+		double analytic = PoolSizingAdvisor.analyticWait(6, 4, meanHold, 1, 99);
+		assertEquals(analytic, simulated, analytic * 0.2);
+		// more connections never make it worse
+		assertTrue(PoolSizingAdvisor.simulateWait(7, 4 / meanHold, holdTimes, 99, 200000, 1) <= simulated);
+	}
+
+	/** The recommendation is the smallest pool meeting the target, spread over partitions. */
+	@Test
+	public void testRecommend(){
+		long meanHold = TimeUnit.MILLISECONDS.toNanos(10);
+		long second = TimeUnit.SECONDS.toNanos(1);
+		// 800 requests/s held for 10ms on average = 8 connections in use on average
+		Window window = new Window(second, 800, new long[DurationHistogram.BUCKETS], exponentialHolds(meanHold), 40, 4);
+		assertEquals(8, window.getOfferedLoad(), 0.4);
+		assertEquals(800, window.getArrivalRate(), 0.001);
+
+		long target = TimeUnit.MILLISECONDS.toNanos(5);
+		Recommendation recommendation = PoolSizingAdvisor.recommend(window, target);
+		assertNotNull(recommendation);
+		HoldTimeSampler holdTimes = new HoldTimeSampler(window.holds);
+		double rate = 800.0 / second;
+		assertTrue(recommendation.poolSize > 8);
+		assertTrue(Math.abs(recommendation.poolSize - recommendation.analyticPoolSize) <= 2);
+		assertTrue(PoolSizingAdvisor.simulateWait(recommendation.poolSize, rate, holdTimes, 99, PoolSizingAdvisor.SIMULATED_ARRIVALS, 1) <= target);
+		assertTrue(PoolSizingAdvisor.simulateWait(recommendation.poolSize - 1, rate, holdTimes, 99, PoolSizingAdvisor.SIMULATED_ARRIVALS, 1) > target);
+		assertTrue(recommendation.partitionCount >= 1 && recommendation.partitionCount <= 4);
+		assertTrue(recommendation.partitionCount * recommendation.maxConnectionsPerPartition >= recommendation.poolSize);
+		assertTrue(recommendation.maxConnectionsPerPartition >= PoolSizingAdvisor.MIN_CONNECTIONS_PER_PARTITION);
+		assertTrue(recommendation.acquireIncrement >= 1 && recommendation.acquireIncrement <= recommendation.maxConnectionsPerPartition);
+		assertTrue(recommendation.poolAvailabilityThreshold > 0 && recommendation.poolAvailabilityThreshold < 100);
+		// 40 connections is plenty
+		assertEquals(0, recommendation.predictedWaitInNanos, 0.001);
+
+		// a looser target never needs more connections
+		assertTrue(PoolSizingAdvisor.recommend(window, 4 * target).poolSize <= recommendation.poolSize);
+
+		// a pool smaller than the load can't keep up
+		window = new Window(second, 800, new long[DurationHistogram.BUCKETS], window.holds, 6, 1);
+		assertEquals(Double.POSITIVE_INFINITY, PoolSizingAdvisor.recommend(window, target).predictedWaitInNanos, 0.001);
+
+		// nothing to go on
+		window = new Window(second, 0, new long[DurationHistogram.BUCKETS], new long[DurationHistogram.BUCKETS], 6, 1);
+		assertNull(PoolSizingAdvisor.recommend(window, target));
+	}
+
+	/** The advisor is wired up with statistics, samples live traffic and is reset-safe.
+	 * @throws SQLException
+	 */
+	@Test
+	public void testPool() throws SQLException{
+		BoneCPConfig config = new BoneCPConfig();
+		config.setJdbcUrl("jdbc:mock");
+		config.setPartitionCount(2);
+		config.setMinConnectionsPerPartition(1);
+		config.setMaxConnectionsPerPartition(5);
+		config.setPoolSizingWindowInSeconds(3600);
+		config.setPoolSizingTargetWaitInMs(10);
+
+		BoneCP pool = new BoneCP(config);
+		assertNull(pool.getPoolSizingAdvisor()); // statistics are off
+		pool.close();
+
+		config.setStatisticsEnabled(true);
+		pool = new BoneCP(config);
+		PoolSizingAdvisor advisor = pool.getPoolSizingAdvisor();
+		assertNotNull(advisor);
+		assertEquals(10, advisor.getTargetWaitTimeInMs());
+		assertEquals(-1, advisor.getRecommendedPoolSize());
+		assertEquals("No complete sampling window yet.", advisor.recommend(10));
+
+		for (int i=0; i < 50; i++){
+			Connection connection = pool.getConnection();
+			connection.close();
+		}
+		assertTrue(pool.getStatistics().getConnectionHoldTimeAvg() > 0);
+		advisor.run();
+		assertEquals(50, advisor.window.arrivals);
+		assertEquals(10, advisor.window.currentPoolSize);
+		assertTrue(advisor.getArrivalRate() > 0);
+		assertTrue(advisor.getConnectionHoldTimeAvg() > 0);
+		assertTrue(advisor.getRecommendedPoolSize() >= 1);
+		assertTrue(advisor.getRecommendedPartitionCount() >= 1);
+		assertTrue(advisor.getRecommendedMaxConnectionsPerPartition() >= 1);
+		assertTrue(advisor.getRecommendedAcquireIncrement() >= 1);
+		assertTrue(advisor.getRecommendedPoolAvailabilityThreshold() >= 0);
+		assertTrue(advisor.getObservedWaitTime99thPercentile() >= 0);
+		assertTrue(advisor.getPredictedWaitTime99thPercentile() >= 0);
+		assertTrue(advisor.getOfferedLoad() > 0);
+		assertTrue(advisor.getRecommendation().contains("maxConnectionsPerPartition="));
+		assertTrue(advisor.recommend(1000).contains("Target: 99% of requests wait at most 1000 ms."));
+
+		// a reset in the middle of a window discards that window
+		pool.getConnection().close();
+		pool.getStatistics().resetStats();
+		assertNull(advisor.sample());
+		advisor.run();
+		assertEquals("No connections were requested during the last sampling window.", advisor.recommend(10));
+		assertEquals(-1, advisor.getRecommendedPoolSize());
+		pool.close();
+	}
+}
@@ -0,0 +1,187 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+/**
+ * 
+ */
+package com.jolbox.bonecp;
+
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.jolbox.bonecp.QueryStatistics.Entry;
+
+/** Tests for per-query statistics.
+ * @author wallacew
+ *
+ */
+public class TestQueryStatistics {
+	/** Mock driver. */
+	private MockJDBCDriver driver;
+
+	/** Cleanup.
+	 * @throws SQLException
+	 */
+	@After
+	public void after() throws SQLException{
+		if (this.driver != null){
+			this.driver.disable();
+		}
+	}
+
+	/** Counts, times and rows are kept per fingerprint. */
+	@Test
+	public void testRecord(){
+		QueryStatistics stats = new QueryStatistics(10);
+		stats.record("a", 1000, 0);
+		stats.record("a", 3000, 2);
+		stats.record("b", 10000, 1);
+		List<Entry> top = stats.getTop();
+		assertEquals(2, top.size());
+		assertEquals("b", top.get(0).getFingerprint()); // most execute time first
+		Entry a = top.get(1);
+		assertEquals("a", a.getFingerprint());
+		assertEquals(2, a.getCount());
+		assertEquals(0, a.getError());
+		assertEquals(4000, a.getTotalExecuteTime());
+		assertEquals(3000, a.getMaxExecuteTime());
+		assertEquals(2, a.getRows());
+		assertEquals(1000, a.getExecuteTimeAtPercentile(50), 1000 / 8);
+		assertEquals(3000, a.getExecuteTimeAtPercentile(99), 3000 / 8);
+		assertTrue(a.toString().contains("count=2 (+/-0)"));
+		assertTrue(a.toString().endsWith("sql=a"));
+		assertEquals(10, stats.getCapacity());
+	}
+
+	/** Heavy hitters survive a long tail of one-off queries, and the table never grows past its capacity. */
+	@Test
+	public void testHeavyHitters(){
+		QueryStatistics stats = new QueryStatistics(8);
+		for (int i=0; i < 10000; i++){
+			stats.record("hot", 10, 0);
+			if (i % 2 == 0){
+				stats.record("warm", 10, 0);
+			}
+			stats.record("cold " + i, 10, 0);
+		}
+		List<Entry> top = stats.getTop();
+		assertEquals(8, top.size());
+		Entry hot = null;
+		Entry warm = null;
+		for (Entry entry: top){
+			if (entry.getFingerprint().equals("hot")){
+				hot = entry;
+			} else if (entry.getFingerprint().equals("warm")){
+				warm = entry;
+			}
+		}
+		assertNotNull(hot);
+		assertNotNull(warm);
+		// the true count lies between count - error and count
+		assertTrue(hot.getCount() >= 10000 && hot.getCount() - hot.getError() <= 10000);
+		assertTrue(warm.getCount() >= 5000 && warm.getCount() - warm.getError() <= 5000);
+		assertTrue(hot.getRecordedCount() > 9000);
+	}
+
+	/** Draining returns the table and starts afresh. */
+	@Test
+	public void testDrain(){
+		QueryStatistics stats = new QueryStatistics(4);
+		stats.record("a", 1000, 0);
+		String[] lines = stats.drainTopQueries();
+		assertEquals(1, lines.length);
+		assertTrue(lines[0].endsWith("sql=a"));
+		assertEquals(0, stats.getTopQueries().length);
+		stats.record("b", 1000, 0);
+		assertEquals(1, stats.getTopQueries().length);
+		assertEquals(1, stats.getTopQueries().length); // reading alone doesn't reset
+	}
+
+	/** Statements executed through the pool are fingerprinted and recorded with their update counts.
+	 * @throws SQLException
+	 */
+	@Test
+	public void testPool() throws SQLException{
+		Connection mockConnection = createNiceMock(Connection.class);
+		PreparedStatement mockPreparedStatement = createNiceMock(PreparedStatement.class);
+		Statement mockStatement = createNiceMock(Statement.class);
+		expect(mockConnection.prepareStatement((String) anyObject())).andReturn(mockPreparedStatement).anyTimes();
+		expect(mockConnection.createStatement()).andReturn(mockStatement).anyTimes();
+		expect(mockPreparedStatement.executeUpdate()).andReturn(3).anyTimes();
+		expect(mockPreparedStatement.executeBatch()).andReturn(new int[]{1, Statement.SUCCESS_NO_INFO, 2}).anyTimes();
+		replay(mockConnection, mockPreparedStatement, mockStatement);
+		this.driver = new MockJDBCDriver(mockConnection);
+
+		BoneCPConfig config = new BoneCPConfig();
+		config.setJdbcUrl("jdbc:mock");
+		config.setPartitionCount(1);
+		config.setMinConnectionsPerPartition(1);
+		config.setMaxConnectionsPerPartition(1);
+		config.setStatementsCacheSize(10);
+		BoneCP pool = new BoneCP(config);
+		assertNull(pool.getQueryStatistics());
+		pool.close();
+
+		config.setQueryStatisticsSize(10);
+		pool = new BoneCP(config);
+		assertNotNull(pool.getQueryStatistics());
+		assertFalse(pool.isLeanStatementHandles());
+
+		Connection con = pool.getConnection();
+		PreparedStatement ps = con.prepareStatement("UPDATE t SET a = ? WHERE id IN (1, 2)");
+		ps.executeUpdate();
+		ps.executeUpdate();
+		ps.addBatch();
+		ps.executeBatch();
+		ps.close();
+		Statement statement = con.createStatement();
+		statement.execute("SELECT * FROM t WHERE id = 1");
+		statement.execute("SELECT * FROM t WHERE id = 2");
+		statement.close();
+		con.close();
+
+		List<Entry> top = pool.getQueryStatistics().getTop();
+		assertEquals(2, top.size());
+		for (Entry entry: top){
+			if (entry.getFingerprint().startsWith("update")){
+				assertEquals("update t set a = ? where id in (?+)", entry.getFingerprint());
+				assertEquals(3, entry.getCount());
+				assertEquals(9, entry.getRows());
+			} else {
+				assertEquals("select * from t where id = ?", entry.getFingerprint());
+				assertEquals(2, entry.getCount());
+				assertEquals(0, entry.getRows());
+			}
+		}
+		pool.close();
+	}
+}
@@ -0,0 +1,169 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+/**
+ * 
+ */
+package com.jolbox.bonecp;
+
+import static org.easymock.EasyMock.createNiceMock;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Method;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/** Tests for the compact transaction replay log.
+ * @author wallacew
+ *
+ */
+public class TestReplayLogBuffer {
+	/** Class under test. */
+	private ReplayLogBuffer testClass;
+	/** Statistics handle. */
+	private Statistics stats;
+	/** Fake connection target. */
+	private Object connectionTarget = new Object();
+	/** Fake statement target. */
+	private Object statementTarget = new Object();
+
+	/** Setup.
+	 */
+	@Before
+	public void before(){
+		this.stats = new Statistics(createNiceMock(BoneCP.class));
+		this.testClass = new ReplayLogBuffer(0, this.stats);
+	}
+
+	/** Calls should come back out in order, with primitives decoded to the types the method expects.
+	 * @throws NoSuchMethodException 
+	 */
+	@Test
+	public void testRoundTrip() throws NoSuchMethodException{
+		Method prepare = Connection.class.getMethod("prepareStatement", String.class);
+		Method setShort = PreparedStatement.class.getMethod("setShort", int.class, short.class);
+		Method setFloat = PreparedStatement.class.getMethod("setFloat", int.class, float.class);
+		Method setString = PreparedStatement.class.getMethod("setString", int.class, String.class);
+		Method setLong = PreparedStatement.class.getMethod("setLong", int.class, long.class);
+		Method execute = PreparedStatement.class.getMethod("execute");
+
+		this.testClass.add(this.connectionTarget, prepare, new Object[]{"select 1"});
+		// simulate the fixed-arity recorders widening short/float
+		assertTrue(this.testClass.begin(this.statementTarget, setShort, 2));
+		this.testClass.putInt(1);
+		this.testClass.putInt(7);
+		this.testClass.end();
+		assertTrue(this.testClass.begin(this.statementTarget, setFloat, 2));
+		this.testClass.putInt(2);
+		this.testClass.putDouble(1.5f);
+		this.testClass.end();
+		this.testClass.add(this.statementTarget, setString, new Object[]{3, null});
+		this.testClass.add(this.statementTarget, setLong, new Object[]{4, Long.MAX_VALUE});
+		this.testClass.add(this.statementTarget, execute, null);
+
+		assertEquals(6, this.testClass.size());
+		assertTrue(this.testClass.getSizeInBytes() > 0);
+
+		Iterator<ReplayLog> it = this.testClass.iterator();
+		ReplayLog log = it.next();
+		assertSame(this.connectionTarget, log.getTarget());
+		assertEquals(prepare, log.getMethod());
+		assertArrayEquals(new Object[]{"select 1"}, log.getArgs());
+
+		log = it.next();
+		assertSame(this.statementTarget, log.getTarget());
+		assertArrayEquals(new Object[]{1, (short)7}, log.getArgs());
+		assertArrayEquals(new Object[]{2, 1.5f}, it.next().getArgs());
+		assertArrayEquals(new Object[]{3, null}, it.next().getArgs());
+		assertArrayEquals(new Object[]{4, Long.MAX_VALUE}, it.next().getArgs());
+		log = it.next();
+		assertEquals(execute, log.getMethod());
+		assertNull(log.getArgs());
+		assertFalse(it.hasNext());
+	}
+
+	/** Targets should be swapped after a recovery.
+	 * @throws NoSuchMethodException 
+	 */
+	@Test
+	public void testReplaceTargets() throws NoSuchMethodException{
+		this.testClass.add(this.connectionTarget, Connection.class.getMethod("commit"), null);
+		Object newTarget = new Object();
+		Map<Object, Object> replaceTarget = new HashMap<Object, Object>();
+		replaceTarget.put(this.connectionTarget, newTarget);
+		this.testClass.replaceTargets(replaceTarget);
+		assertSame(newTarget, this.testClass.iterator().next().getTarget());
+	}
+
+	/** Clearing should report the log size and leave the log reusable.
+	 * @throws NoSuchMethodException 
+	 */
+	@Test
+	public void testClear() throws NoSuchMethodException{
+		Method setString = PreparedStatement.class.getMethod("setString", int.class, String.class);
+		this.testClass.add(this.statementTarget, setString, new Object[]{1, "abc"});
+		long size = this.testClass.getSizeInBytes();
+		this.testClass.clear();
+		assertTrue(this.testClass.isEmpty());
+		assertEquals(0, this.testClass.getSizeInBytes());
+		assertEquals(size, this.stats.getMaxReplayLogSize());
+		assertEquals(size, this.stats.getReplayLogSizeAvg(), 0.1);
+
+		this.testClass.add(this.statementTarget, setString, new Object[]{2, "def"});
+		assertEquals(1, this.testClass.size());
+		assertEquals("def", this.testClass.iterator().next().getArgs()[1]);
+	}
+
+	/** Going past the limit should discard the log until the next clear.
+	 * @throws NoSuchMethodException 
+	 */
+	@Test
+	public void testOverflow() throws NoSuchMethodException{
+		this.testClass = new ReplayLogBuffer(1024, this.stats);
+		Method setString = PreparedStatement.class.getMethod("setString", int.class, String.class);
+		StringBuilder sb = new StringBuilder();
+		for (int i=0; i < 100; i++){
+			sb.append("0123456789");
+		}
+		for (int i=0; i < 10 && !this.testClass.isOverflowed(); i++){
+			this.testClass.add(this.statementTarget, setString, new Object[]{i, sb.toString()});
+		}
+		assertTrue(this.testClass.isOverflowed());
+		assertTrue(this.testClass.isEmpty());
+		assertEquals(1, this.stats.getReplayLogOverflows());
+
+		// further calls are ignored
+		this.testClass.add(this.statementTarget, setString, new Object[]{1, "x"});
+		assertFalse(this.testClass.begin(this.statementTarget, setString, 2));
+		assertTrue(this.testClass.isEmpty());
+
+		this.testClass.clear();
+		assertFalse(this.testClass.isOverflowed());
+		this.testClass.add(this.statementTarget, setString, new Object[]{1, "x"});
+		assertEquals(1, this.testClass.size());
+	}
+}
@@ -0,0 +1,66 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+/**
+ * 
+ */
+package com.jolbox.bonecp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+/** Tests for SQL fingerprinting.
+ * @author wallacew
+ *
+ */
+public class TestSqlFingerprint {
+
+	/** Literals, comments, whitespace and case are normalized away. */
+	@Test
+	public void testNormalize(){
+		assertNull(SqlFingerprint.normalize(null));
+		assertEquals("select * from t where id = ? and name = ?", 
+				SqlFingerprint.normalize("SELECT *\n  FROM t WHERE id = 42 AND name = 'O''Brien'"));
+		assertEquals(SqlFingerprint.normalize("select * from t where id = 1"), SqlFingerprint.normalize("select * from t where id = 2"));
+		assertEquals("select a from t where x > ? and y < ?", SqlFingerprint.normalize("select a from t where x > 1.5e+10 and y < 0x1F"));
+		assertEquals("select c1, t2.c from t2 where c = ?", SqlFingerprint.normalize("select c1, t2.c from t2 where c = 7"));
+		assertEquals("select ? from dual", SqlFingerprint.normalize("/* hint */ select 1 -- comment\nfrom dual"));
+		assertEquals("select \"Mixed Case\" from `T 1` where a = ?", SqlFingerprint.normalize("SELECT \"Mixed Case\" FROM `T 1` WHERE a = ?"));
+		assertEquals("select a from t where b = ?", SqlFingerprint.normalize("select a from t where b = 'unterminated"));
+	}
+
+	/** Placeholder lists collapse whatever their length. */
+	@Test
+	public void testLists(){
+		assertEquals("select * from t where id in (?+)", SqlFingerprint.normalize("select * from t where id in (1, 2, 3)"));
+		assertEquals("select * from t where id in (?+)", SqlFingerprint.normalize("select * from t where id in (?,?)"));
+		assertEquals("select * from t where id in (?+)", SqlFingerprint.normalize("select * from t where id in ( 'a' )"));
+		assertEquals("insert into t (a, b) values (?+)", SqlFingerprint.normalize("INSERT INTO t (a, b) VALUES (1, 'x'), (2, 'y'),(3,'z')"));
+		assertEquals("select f(a, ?) from t", SqlFingerprint.normalize("select f(a, 1) from t"));
+	}
+
+	/** Fingerprints are capped so that huge statements don't take up unbounded memory. */
+	@Test
+	public void testMaxLength(){
+		StringBuilder sql = new StringBuilder("select ");
+		for (int i=0; i < SqlFingerprint.MAX_LENGTH; i++){
+			sql.append("column").append(i).append(", ");
+		}
+		assertEquals(SqlFingerprint.MAX_LENGTH, SqlFingerprint.normalize(sql.toString()).length());
+	}
+}
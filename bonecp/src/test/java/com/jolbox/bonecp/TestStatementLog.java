@@ -0,0 +1,220 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+/**
+ * 
+ */
+package com.jolbox.bonecp;
+
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.jolbox.bonecp.StatementLog.Entry;
+
+/** Tests for the asynchronous statement log.
+ * @author wallacew
+ *
+ */
+public class TestStatementLog {
+	/** Mock driver. */
+	private MockJDBCDriver driver;
+	/** Binary log file. */
+	private File file;
+	/** Binary log backup. */
+	private File backup;
+
+	/** Setup.
+	 * @throws IOException
+	 */
+	@Before
+	public void before() throws IOException{
+		this.file = File.createTempFile("bonecp-statements", ".log");
+		this.backup = new File(this.file.getPath() + ".1");
+	}
+
+	/** Cleanup.
+	 * @throws SQLException
+	 */
+	@After
+	public void after() throws SQLException{
+		if (this.driver != null){
+			this.driver.disable();
+		}
+		this.file.delete();
+		this.backup.delete();
+	}
+
+	/** Statements are written out with their parameters filled in and can be read back.
+	 * @throws IOException
+	 */
+	@Test
+	public void testReadBack() throws IOException{
+		StatementLog log = new StatementLog(this.file.getPath(), 1, 1, 0, "");
+		ParameterRecorder params = new ParameterRecorder();
+		params.set(1, 5);
+		params.set(2, "x");
+		long before = System.currentTimeMillis();
+		log.log("UPDATE t SET a = ? WHERE b = ?", params, 2000000);
+		params.clear(); // parameters are copied, the recorder may be reused right away
+		log.log("SELECT 1", null, 1000);
+		log.shutdown();
+		assertEquals(2, log.getWrittenCount());
+		assertEquals(0, log.getDroppedCount());
+
+		List<Entry> entries = StatementLog.read(this.file);
+		assertEquals(2, entries.size());
+		Entry entry = entries.get(0);
+		assertEquals("UPDATE t SET a = 5 WHERE b = 'x'", entry.getStatement());
+		assertEquals(2000000, entry.getDurationInNanos());
+		assertEquals(Thread.currentThread().getName(), entry.getThreadName());
+		assertTrue(Math.abs(entry.getTime() - before) < 60000);
+		assertTrue(entry.toString().endsWith("2.000 ms: UPDATE t SET a = 5 WHERE b = 'x'"));
+		assertEquals("SELECT 1", entries.get(1).getStatement());
+	}
+
+	/** Only slow statements are logged if a threshold is set, and only 1 in every sampleRate of those. */
+	@Test
+	public void testFilters(){
+		StatementLog log = new StatementLog(null, 1, 1, 10, "");
+		log.log("SELECT 1", null, 1000000);
+		log.log("SELECT 1", null, 20000000);
+		log.shutdown();
+		assertEquals(1, log.getWrittenCount());
+
+		log = new StatementLog(null, 1, 3, 0, "");
+		for (int i=0; i < 9; i++){
+			log.log("SELECT 1", null, 1000);
+		}
+		log.shutdown();
+		assertEquals(3, log.getWrittenCount());
+	}
+
+	/** The log rolls over to a backup when full, including any log left over from a previous run.
+	 * @throws IOException
+	 */
+	@Test
+	public void testRollOver() throws IOException{
+		StatementLog log = new StatementLog(this.file.getPath(), 1, 1, 0, "");
+		log.log("first run", null, 1000);
+		log.shutdown();
+
+		log = new StatementLog(this.file.getPath(), 1, 1, 0, "");
+		assertEquals(Arrays.asList("first run"), statements(this.backup));
+		char[] padding = new char[100000];
+		Arrays.fill(padding, 'x');
+		String big = new String(padding);
+		for (int i=0; i < 15; i++){
+			log.log(i + big, null, 1000);
+			Thread.yield();
+		}
+		log.shutdown();
+		assertEquals(15, log.getWrittenCount());
+		List<String> backup = statements(this.backup);
+		List<String> current = statements(this.file);
+		assertEquals(15, backup.size() + current.size());
+		assertTrue(backup.get(0).startsWith("0x"));
+		assertTrue(current.get(current.size() - 1).startsWith("14x"));
+
+		// statements longer than the whole file are truncated rather than lost
+		log = new StatementLog(this.file.getPath(), 1, 1, 0, "");
+		char[] huge = new char[2 * 1024 * 1024];
+		Arrays.fill(huge, 'y');
+		log.log(new String(huge), null, 1000);
+		log.shutdown();
+		current = statements(this.file);
+		assertEquals(1, current.size());
+		assertTrue(current.get(0).length() > 1000000 && current.get(0).length() < huge.length);
+	}
+
+	/** Statements executed through the pool end up in the log after the call returns.
+	 * @throws SQLException
+	 * @throws IOException 
+	 */
+	@Test
+	public void testPool() throws SQLException, IOException{
+		Connection mockConnection = createNiceMock(Connection.class);
+		PreparedStatement mockPreparedStatement = createNiceMock(PreparedStatement.class);
+		expect(mockConnection.prepareStatement((String) anyObject())).andReturn(mockPreparedStatement).anyTimes();
+		expect(mockPreparedStatement.executeBatch()).andReturn(new int[]{1, 1}).anyTimes();
+		replay(mockConnection, mockPreparedStatement);
+		this.driver = new MockJDBCDriver(mockConnection);
+
+		BoneCPConfig config = new BoneCPConfig();
+		config.setJdbcUrl("jdbc:mock");
+		config.setPartitionCount(1);
+		config.setMinConnectionsPerPartition(1);
+		config.setMaxConnectionsPerPartition(1);
+		config.setStatementsCacheSize(10);
+		BoneCP pool = new BoneCP(config);
+		assertNull(pool.getStatementLog());
+		pool.close();
+
+		config.setLogStatementsEnabled(true);
+		config.setStatementLogFile(this.file.getPath());
+		pool = new BoneCP(config);
+		assertNotNull(pool.getStatementLog());
+		assertFalse(pool.isLeanStatementHandles());
+
+		Connection con = pool.getConnection();
+		PreparedStatement ps = con.prepareStatement("UPDATE t SET a = ?");
+		ps.setInt(1, 5);
+		ps.executeUpdate();
+		ps.setInt(1, 6);
+		ps.addBatch();
+		ps.executeBatch();
+		ps.close();
+		con.close();
+		pool.close();
+
+		List<String> statements = statements(this.file);
+		assertEquals(2, statements.size());
+		assertEquals("UPDATE t SET a = 5", statements.get(0));
+		assertEquals("UPDATE t SET a = 6", statements.get(1));
+	}
+
+	/** Returns the statements in a log file.
+	 * @param file log file
+	 * @return statements
+	 * @throws IOException
+	 */
+	private static List<String> statements(File file) throws IOException{
+		List<String> result = new ArrayList<String>();
+		for (Entry entry: StatementLog.read(file)){
+			result.add(entry.getStatement());
+		}
+		return result;
+	}
+}
@@ -0,0 +1,234 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+/**
+ * 
+ */
+package com.jolbox.bonecp;
+
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.easymock.IAnswer;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Tests for the statement watchdog.
+ * @author wallacew
+ *
+ */
+public class TestStatementWatchdog {
+	/** Mock handle. */
+	private ConnectionHandle mockConnection;
+	/** Mock handle. */
+	private Statement mockStatement;
+	/** Statistics handle. */
+	private Statistics statistics;
+
+	/** Setup.
+	 */
+	@Before
+	public void before(){
+		this.mockConnection = createNiceMock(ConnectionHandle.class);
+		this.mockStatement = createNiceMock(Statement.class);
+		this.statistics = new Statistics(createNiceMock(BoneCP.class));
+	}
+
+	/** Builds a statement handle around the mock statement, tied to the given watchdog.
+	 * @param watchdog watchdog to return from the pool
+	 * @return statement handle
+	 */
+	private StatementHandle createStatementHandle(StatementWatchdog watchdog){
+		BoneCP mockPool = createNiceMock(BoneCP.class);
+		expect(this.mockConnection.getPool()).andReturn(mockPool).anyTimes();
+		expect(mockPool.getConfig()).andReturn(new BoneCPConfig()).anyTimes();
+		expect(mockPool.getStatementWatchdog()).andReturn(watchdog).anyTimes();
+		replay(this.mockConnection, mockPool);
+		return new StatementHandle(this.mockStatement, this.mockConnection, false);
+	}
+
+	/** Pattern budgets (first match in alphabetical order) take precedence over the default budget.
+	 */
+	@Test
+	public void testGetTimeout(){
+		Properties patterns = new Properties();
+		patterns.setProperty("^SELECT", "200");
+		patterns.setProperty("^(SELECT|select) .* FROM report", "5000");
+		patterns.setProperty("(?i)^delete", "0");
+		StatementWatchdog watchdog = new StatementWatchdog(1000, patterns, null);
+
+		assertEquals(TimeUnit.MILLISECONDS.toNanos(5000), watchdog.getTimeoutInNanos("SELECT a FROM report_daily"));
+		assertEquals(TimeUnit.MILLISECONDS.toNanos(200), watchdog.getTimeoutInNanos("SELECT 1"));
+		assertEquals(0, watchdog.getTimeoutInNanos("delete from foo"));
+		assertEquals(TimeUnit.MILLISECONDS.toNanos(1000), watchdog.getTimeoutInNanos("UPDATE foo SET a=1"));
+		assertEquals(TimeUnit.MILLISECONDS.toNanos(1000), watchdog.getTimeoutInNanos(null));
+		assertEquals(TimeUnit.MILLISECONDS.toNanos(5000), watchdog.getTimeoutInNanos("select a FROM report_daily"));
+		// shortest budget is 200ms
+		assertEquals(50, watchdog.getTickInMs());
+	}
+
+	/** The scan interval stays within bounds.
+	 */
+	@Test
+	public void testTickBounds(){
+		assertEquals(StatementWatchdog.MIN_TICK_IN_MS, new StatementWatchdog(1, null, null).getTickInMs());
+		assertEquals(StatementWatchdog.MAX_TICK_IN_MS, new StatementWatchdog(3600000, null, null).getTickInMs());
+		assertEquals(StatementWatchdog.MAX_TICK_IN_MS, new StatementWatchdog(0, new Properties(), null).getTickInMs());
+	}
+
+	/** Start schedules a single periodic task.
+	 */
+	@Test
+	public void testStart(){
+		StatementWatchdog watchdog = new StatementWatchdog(400, null, null);
+		ScheduledExecutorService mockScheduler = createNiceMock(ScheduledExecutorService.class);
+		expect(mockScheduler.scheduleWithFixedDelay(watchdog, 100, 100, TimeUnit.MILLISECONDS)).andReturn(null).once();
+		replay(mockScheduler);
+		watchdog.start(mockScheduler);
+		verify(mockScheduler);
+	}
+
+	/** Overdue statements are cancelled, their connection flagged and the cancellation counted.
+	 * @throws SQLException
+	 */
+	@Test
+	public void testRunCancelsOverdueStatements() throws SQLException{
+		StatementWatchdog watchdog = new StatementWatchdog(1000, null, this.statistics);
+		this.mockStatement.cancel();
+		expectLastCall().once();
+		replay(this.mockStatement);
+		StatementHandle overdue = createStatementHandle(watchdog);
+		StatementHandle pending = new StatementHandle(createNiceMock(Statement.class), this.mockConnection, false);
+
+		watchdog.register(overdue, 0);
+		watchdog.register(pending, TimeUnit.HOURS.toNanos(1));
+		assertEquals(2, watchdog.getRunningCount());
+		watchdog.run();
+
+		verify(this.mockStatement);
+		assertEquals(1, watchdog.getRunningCount());
+		assertTrue(this.mockConnection.possiblyBroken);
+		assertEquals(1, this.statistics.getStatementsCancelled());
+
+		watchdog.unregister(pending);
+		assertEquals(0, watchdog.getRunningCount());
+	}
+
+	/** A driver failing to cancel doesn't stop the watchdog from flagging the connection.
+	 * @throws SQLException
+	 */
+	@Test
+	public void testRunCancelFailure() throws SQLException{
+		StatementWatchdog watchdog = new StatementWatchdog(1000, null, null);
+		this.mockStatement.cancel();
+		expectLastCall().andThrow(new SQLException("unsupported"));
+		replay(this.mockStatement);
+		StatementHandle overdue = createStatementHandle(watchdog);
+
+		watchdog.register(overdue, 0);
+		watchdog.run();
+		assertEquals(0, watchdog.getRunningCount());
+		assertTrue(this.mockConnection.possiblyBroken);
+	}
+
+	/** Statements register for the duration of the execute call only, even if it fails.
+	 * @throws SQLException
+	 */
+	@Test
+	public void testStatementHandleRegistration() throws SQLException{
+		final StatementWatchdog watchdog = new StatementWatchdog(1000, null, null);
+		final int[] runningDuringExecute = new int[1];
+		SQLException failure = new SQLException("fail");
+		expect(this.mockStatement.executeQuery("SELECT 1")).andAnswer(new IAnswer<ResultSet>() {
+			public ResultSet answer() throws Throwable {
+				runningDuringExecute[0] = watchdog.getRunningCount();
+				return null;
+			}
+		}).times(2);
+		expect(this.mockStatement.executeUpdate("DELETE")).andThrow(failure).once();
+		expect(this.mockConnection.markPossiblyBroken(failure)).andReturn(failure).anyTimes();
+		replay(this.mockStatement);
+		StatementHandle handle = createStatementHandle(watchdog);
+		assertEquals(-1, handle.getCancelTimeoutInMs());
+
+		handle.executeQuery("SELECT 1");
+		assertEquals(1, runningDuringExecute[0]);
+		assertEquals(0, watchdog.getRunningCount());
+		try{
+			handle.executeUpdate("DELETE");
+			fail("Should have thrown an exception");
+		} catch (SQLException e){
+			assertEquals(failure, e);
+		}
+		assertEquals(0, watchdog.getRunningCount());
+
+		// a per-statement budget of 0 exempts the statement
+		handle.setCancelTimeoutInMs(0);
+		handle.executeQuery("SELECT 1");
+		assertEquals(0, runningDuringExecute[0]);
+		verify(this.mockStatement);
+	}
+
+	/** The pool only creates a watchdog (and stops using lean handles) when configured.
+	 * @throws SQLException
+	 */
+	@Test
+	public void testPoolWiring() throws SQLException{
+		Connection mockInternalConnection = createNiceMock(Connection.class);
+		expect(mockInternalConnection.createStatement()).andReturn(createNiceMock(Statement.class)).anyTimes();
+		replay(mockInternalConnection);
+		MockJDBCDriver mockDriver = new MockJDBCDriver(mockInternalConnection);
+
+		BoneCPConfig config = new BoneCPConfig();
+		config.setJdbcUrl("jdbc:mock:driver");
+		config.setDisableConnectionTracking(true);
+		config.setMinConnectionsPerPartition(1);
+		config.setMaxConnectionsPerPartition(1);
+		config.setPartitionCount(1);
+		BoneCP pool = new BoneCP(config);
+		assertNull(pool.getStatementWatchdog());
+		pool.close();
+
+		config.setStatementCancelTimeoutInMs(1000);
+		pool = new BoneCP(config);
+		assertNotNull(pool.getStatementWatchdog());
+		assertFalse(pool.isLeanStatementHandles());
+		Connection con = pool.getConnection();
+		Statement statement = con.createStatement();
+		assertFalse(statement instanceof LeanStatementHandle);
+		assertTrue(((StatementHandle) statement).statementWatchdog == pool.getStatementWatchdog());
+		con.close();
+		pool.close();
+		mockDriver.disable();
+	}
+}
@@ -91,6 +91,13 @@ public class TestStatistics {
 		assertEquals(1, this.stats.getTotalCreatedConnections());
 		assertEquals(1, this.stats.getTotalLeased());
 		assertEquals(0.5, this.stats.getCacheHitRatio(), 0.05);
+
+		this.stats.addConnectionHoldTime(2000000);
+		assertEquals(1, this.stats.getConnectionWaitTime99thPercentile(), 0.125);
+		assertEquals(2, this.stats.getConnectionHoldTimeAvg(), 0.25);
+		this.stats.resetStats();
+		assertEquals(0, this.stats.getConnectionWaitTime99thPercentile(), 0.001);
+		assertEquals(0, this.stats.getConnectionHoldTimeAvg(), 0.001);
 		
 	}
 	/**
@@ -0,0 +1,238 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+/**
+ * 
+ */
+package com.jolbox.bonecp;
+
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Tests for the VIRTUAL pool strategy.
+ * @author wallacew
+ *
+ */
+public class TestVirtualThreadConnectionStrategy {
+	/** Mock driver. */
+	private MockJDBCDriver mockDriver;
+	/** Config with a single connection. */
+	private BoneCPConfig config;
+
+	/** Setup.
+	 * @throws SQLException
+	 */
+	@Before
+	public void before() throws SQLException{
+		Connection mockInternalConnection = createNiceMock(Connection.class);
+		expect(mockInternalConnection.isClosed()).andReturn(false).anyTimes();
+		replay(mockInternalConnection);
+		this.mockDriver = new MockJDBCDriver(mockInternalConnection);
+
+		this.config = new BoneCPConfig();
+		this.config.setJdbcUrl("jdbc:mock:driver");
+		this.config.setDisableConnectionTracking(true);
+		this.config.setMinConnectionsPerPartition(1);
+		this.config.setMaxConnectionsPerPartition(1);
+		this.config.setPartitionCount(1);
+		this.config.setPoolStrategy("VIRTUAL");
+	}
+
+	/** Cleanup.
+	 * @throws SQLException
+	 */
+	@After
+	public void after() throws SQLException{
+		this.mockDriver.disable();
+	}
+
+	/** The strategy is picked up from the config.
+	 * @throws SQLException
+	 */
+	@Test
+	public void testSelection() throws SQLException{
+		BoneCP pool = new BoneCP(this.config);
+		assertTrue(pool.connectionStrategy instanceof VirtualThreadConnectionStrategy);
+		assertTrue(pool.asyncConnectionStrategy instanceof VirtualThreadConnectionStrategy);
+		Connection con = pool.getConnection();
+		assertNotNull(con);
+		con.close();
+		pool.close();
+	}
+
+	/** Consecutive thread ids are spread over all partitions.
+	 * @throws InterruptedException
+	 */
+	@Test
+	public void testSelectPartition() throws InterruptedException{
+		BoneCP mockPool = createNiceMock(BoneCP.class);
+		mockPool.partitionCount = 4;
+		final VirtualThreadConnectionStrategy strategy = new VirtualThreadConnectionStrategy(mockPool);
+		final Set<Integer> seen = new HashSet<Integer>();
+		for (int i=0; i < 64; i++){
+			Thread t = new Thread(new Runnable() {
+				public void run() {
+					synchronized (seen) {
+						seen.add(strategy.selectPartition());
+					}
+				}
+			});
+			t.start();
+			t.join();
+		}
+		assertEquals(4, seen.size());
+		for (Integer partition: seen){
+			assertTrue(partition >= 0 && partition < 4);
+		}
+	}
+
+	/** A waiting thread is handed the next released connection.
+	 * @throws Exception
+	 */
+	@Test
+	public void testWaiterGetsReleasedConnection() throws Exception{
+		final BoneCP pool = new BoneCP(this.config);
+		Connection con = pool.getConnection();
+		final AtomicReference<Object> result = new AtomicReference<Object>();
+		Thread waiter = new Thread(new Runnable() {
+			public void run() {
+				try {
+					result.set(pool.getConnection());
+				} catch (SQLException e) {
+					result.set(e);
+				}
+			}
+		});
+		waiter.start();
+		while (waiter.getState() != Thread.State.WAITING && waiter.getState() != Thread.State.TIMED_WAITING && waiter.isAlive()){
+			Thread.yield();
+		}
+		con.close();
+		waiter.join();
+		assertTrue(result.get() instanceof ConnectionHandle);
+		ConnectionHandle handle = (ConnectionHandle) result.get();
+		assertEquals(waiter, handle.getThreadUsingConnection());
+		handle.close();
+		assertEquals(1, pool.getTotalFree());
+		pool.close();
+	}
+
+	/** A thread that starts waiting while a connection is being released (after the releasing thread looked for 
+	 * waiters, before it queued the connection) still gets that connection.
+	 * @throws Exception
+	 */
+	@Test
+	public void testWaiterParkedDuringRelease() throws Exception{
+		this.config.setConnectionTimeoutInMs(5000); // fail rather than hang
+		final BoneCP pool = new BoneCP(this.config);
+		Connection con = pool.getConnection();
+		final AtomicReference<Object> result = new AtomicReference<Object>();
+		final Thread waiter = new Thread(new Runnable() {
+			public void run() {
+				try {
+					result.set(pool.getConnection());
+				} catch (SQLException e) {
+					result.set(e);
+				}
+			}
+		});
+		pool.partitions[0].setFreeConnections(new LinkedBlockingQueue<ConnectionHandle>(1){
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public boolean offer(ConnectionHandle e) {
+				if (waiter.getState() == Thread.State.NEW){
+					waiter.start(); // finds the queue empty and parks
+					while (waiter.getState() != Thread.State.WAITING && waiter.getState() != Thread.State.TIMED_WAITING && waiter.isAlive()){
+						Thread.yield();
+					}
+				}
+				return super.offer(e);
+			}
+		});
+
+		con.close();
+		waiter.join();
+		assertTrue(String.valueOf(result.get()), result.get() instanceof ConnectionHandle);
+		((Connection) result.get()).close();
+		assertEquals(1, pool.getTotalFree());
+		pool.close();
+	}
+
+	/** Waiting threads time out as per connectionTimeoutInMs.
+	 * @throws SQLException
+	 */
+	@Test
+	public void testTimeout() throws SQLException{
+		this.config.setConnectionTimeoutInMs(20);
+		BoneCP pool = new BoneCP(this.config);
+		Connection con = pool.getConnection();
+		try{
+			pool.getConnection();
+			fail("Should have timed out");
+		} catch (SQLException e){
+			assertEquals("08001", e.getSQLState());
+		}
+		con.close();
+		// the timed out request must not have swallowed the connection
+		assertEquals(1, pool.getTotalFree());
+		pool.close();
+
+		this.config.setNullOnConnectionTimeout(true);
+		pool = new BoneCP(this.config);
+		con = pool.getConnection();
+		assertNull(pool.getConnection());
+		con.close();
+		pool.close();
+	}
+
+	/** An interrupted wait gives up without taking a connection.
+	 * @throws SQLException
+	 */
+	@Test
+	public void testInterrupted() throws SQLException{
+		BoneCP pool = new BoneCP(this.config);
+		Connection con = pool.getConnection();
+		Thread.currentThread().interrupt();
+		try{
+			pool.getConnection();
+			fail("Should have thrown an exception");
+		} catch (SQLException e){
+			// expected
+		}
+		Thread.interrupted();
+		con.close();
+		assertEquals(1, pool.getTotalFree());
+		pool.close();
+	}
+}
@@ -0,0 +1,202 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+/**
+ * 
+ */
+package com.jolbox.bonecp;
+
+import static org.easymock.EasyMock.createNiceMock;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.jolbox.bonecp.WorkloadRecorder.Event;
+
+/** Tests for workload capture.
+ * @author wallacew
+ *
+ */
+public class TestWorkloadRecorder {
+	/** Mock driver. */
+	private MockJDBCDriver driver;
+	/** Capture file. */
+	private File traceFile;
+
+	/** Setup.
+	 * @throws Exception
+	 */
+	@Before
+	public void before() throws Exception{
+		this.driver = new MockJDBCDriver();
+		this.traceFile = File.createTempFile("bonecp-workload", ".trace");
+	}
+
+	/** Cleanup.
+	 * @throws SQLException
+	 */
+	@After
+	public void after() throws SQLException{
+		this.driver.disable();
+		this.traceFile.delete();
+	}
+
+	/** A checkout, prepare, execute and checkin end up in the trace in order, under the same lease.
+	 * @throws Exception
+	 */
+	@Test
+	public void testCapture() throws Exception{
+		BoneCPConfig config = new BoneCPConfig();
+		config.setJdbcUrl("jdbc:mock");
+		config.setPartitionCount(1);
+		config.setMinConnectionsPerPartition(1);
+		config.setMaxConnectionsPerPartition(1);
+		config.setStatementsCacheSize(10);
+		config.setWorkloadCaptureFile(this.traceFile.getAbsolutePath());
+		config.setWorkloadCaptureSizeInMB(1);
+		BoneCP pool = new BoneCP(config);
+		assertNotNull(pool.getWorkloadRecorder());
+		assertFalse(pool.leanStatementHandles);
+
+		for (int i=0; i < 2; i++){
+			Connection con = pool.getConnection();
+			PreparedStatement ps = con.prepareStatement("SELECT 1");
+			ps.execute();
+			ps.close();
+			con.close();
+		}
+		pool.close();
+
+		List<Event> events = WorkloadRecorder.read(this.traceFile);
+		assertEquals(8, events.size());
+		int[] types = {WorkloadRecorder.CHECKOUT, WorkloadRecorder.PREPARE, WorkloadRecorder.EXECUTE, WorkloadRecorder.CHECKIN};
+		for (int i=0; i < events.size(); i++){
+			Event event = events.get(i);
+			assertEquals(i, event.getSequence());
+			assertEquals(types[i % 4], event.getType());
+			assertEquals((int) Thread.currentThread().getId(), event.getThreadId());
+			assertEquals(1 + i / 4, event.getLeaseId());
+			assertTrue(event.getDuration() >= 0);
+			if (event.getType() == WorkloadRecorder.PREPARE || event.getType() == WorkloadRecorder.EXECUTE){
+				assertEquals(SqlFingerprint.normalize("SELECT 1").hashCode(), event.getFingerprint());
+			}
+		}
+		// the second lease reuses the cached statement, which must still be attributed to the new lease
+		assertEquals(2, events.get(6).getLeaseId());
+		assertTrue(events.get(4).getTime() >= events.get(3).getTime());
+	}
+
+	/** Statements that only differ in their literals are traced under the same fingerprint.
+	 * @throws Exception
+	 */
+	@Test
+	public void testFingerprintIgnoresLiterals() throws Exception{
+		WorkloadRecorder recorder = new WorkloadRecorder(this.traceFile.getAbsolutePath(), 1);
+		assertEquals(WorkloadRecorder.fingerprint("SELECT * FROM t WHERE id = 1"), WorkloadRecorder.fingerprint("SELECT * FROM t WHERE id = 42"));
+		assertEquals(SqlFingerprint.normalize("SELECT * FROM t WHERE id = 1").hashCode(), WorkloadRecorder.fingerprint("SELECT * FROM t WHERE id = 1"));
+		assertEquals(0, WorkloadRecorder.fingerprint(null));
+		assertFalse(WorkloadRecorder.fingerprint("SELECT a FROM t") == WorkloadRecorder.fingerprint("SELECT b FROM t"));
+		recorder.close();
+	}
+
+	/** Sizes that cannot be mapped are rejected up front, and capped by the config.
+	 * @throws IOException
+	 */
+	@Test
+	public void testSizeLimits() throws IOException{
+		try{
+			new WorkloadRecorder(this.traceFile.getAbsolutePath(), WorkloadRecorder.MAX_SIZE_IN_MB + 1);
+			fail("Should have thrown an exception");
+		} catch (IllegalArgumentException e){
+			// expected
+		}
+		BoneCPConfig config = new BoneCPConfig();
+		config.setWorkloadCaptureSizeInMB(4096);
+		config.sanitize();
+		assertEquals(WorkloadRecorder.MAX_SIZE_IN_MB, config.getWorkloadCaptureSizeInMB());
+	}
+
+	/** Once the file is full the oldest events are overwritten.
+	 * @throws IOException
+	 */
+	@Test
+	public void testRingWraps() throws IOException{
+		WorkloadRecorder recorder = new WorkloadRecorder(this.traceFile.getAbsolutePath(), 1);
+		ConnectionHandle handle = createNiceMock(ConnectionHandle.class);
+		int total = recorder.getCapacity() + 10;
+		for (int i=0; i < total; i++){
+			recorder.checkOut(handle, System.nanoTime());
+		}
+		assertEquals(total, recorder.getEventCount());
+		recorder.close();
+		recorder.checkIn(handle); // ignored once closed
+
+		List<Event> events = WorkloadRecorder.read(this.traceFile);
+		assertEquals(recorder.getCapacity(), events.size());
+		assertEquals(10, events.get(0).getSequence());
+		assertEquals(11, events.get(0).getLeaseId());
+		assertEquals(total - 1, events.get(events.size() - 1).getSequence());
+	}
+
+	/** An unusable capture file disables capture instead of failing the pool.
+	 * @throws SQLException
+	 */
+	@Test
+	public void testInvalidFile() throws SQLException{
+		BoneCPConfig config = new BoneCPConfig();
+		config.setJdbcUrl("jdbc:mock");
+		config.setPartitionCount(1);
+		config.setMinConnectionsPerPartition(1);
+		config.setMaxConnectionsPerPartition(1);
+		config.setWorkloadCaptureFile(new File(this.traceFile, "not-a-directory").getAbsolutePath());
+		BoneCP pool = new BoneCP(config);
+		assertNull(pool.getWorkloadRecorder());
+		assertTrue(pool.leanStatementHandles);
+		pool.getConnection().close();
+		pool.close();
+	}
+
+	/** Reading something that isn't a trace fails.
+	 * @throws IOException
+	 */
+	@Test
+	public void testReadInvalid() throws IOException{
+		FileOutputStream out = new FileOutputStream(this.traceFile);
+		out.write(new byte[128]);
+		out.close();
+		try{
+			WorkloadRecorder.read(this.traceFile);
+			fail("Should have thrown an exception");
+		} catch (IOException e){
+			// expected
+		}
+	}
+}
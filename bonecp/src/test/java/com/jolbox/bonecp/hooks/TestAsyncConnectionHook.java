@@ -0,0 +1,195 @@
+/**
+ *  Copyright 2010 Wallace Wadge
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+/**
+ * 
+ */
+package com.jolbox.bonecp.hooks;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+import com.jolbox.bonecp.ConnectionHandle;
+import com.jolbox.bonecp.ParameterRecorder;
+import com.jolbox.bonecp.PoolUtil;
+import com.jolbox.bonecp.StatementHandle;
+import com.jolbox.bonecp.hooks.AsyncConnectionHook.Event;
+import com.jolbox.bonecp.hooks.AsyncConnectionHook.OverflowPolicy;
+
+/** Tests for the asynchronous connection hook adapter.
+ * @author wallacew
+ *
+ */
+public class TestAsyncConnectionHook {
+
+	/** Records the callbacks it receives, along with the thread they ran on. */
+	static class RecordingHook extends AbstractConnectionHook {
+		/** Callbacks received. */
+		protected final List<String> events = Collections.synchronizedList(new ArrayList<String>());
+		/** Threads the callbacks ran on. */
+		protected final List<String> threads = Collections.synchronizedList(new ArrayList<String>());
+		/** Released to let callbacks return. */
+		protected CountDownLatch gate = new CountDownLatch(0);
+
+		/** Records a callback.
+		 * @param event description
+		 */
+		protected void record(String event){
+			try {
+				this.gate.await();
+			} catch (InterruptedException e) {
+				// do nothing
+			}
+			this.events.add(event);
+			this.threads.add(Thread.currentThread().getName());
+		}
+
+		@Override
+		public void onCheckOut(ConnectionHandle connection) {
+			record("checkOut");
+		}
+
+		@Override
+		public void onCheckIn(ConnectionHandle connection) {
+			record("checkIn");
+		}
+
+		@Override
+		public void onAcquire(ConnectionHandle connection) {
+			record("acquire");
+		}
+
+		@Override
+		public void onBeforeStatementExecute(ConnectionHandle conn, StatementHandle statement, String sql, Map<Object, Object> params) {
+			record("before " + PoolUtil.fillLogParams(sql, params));
+		}
+
+		@Override
+		public void onQueryExecuteTimeLimitExceeded(ConnectionHandle conn, Statement statement, String sql, 
+				Map<Object, Object> logParams, long timeElapsedInNs) {
+			record("slow " + sql + " " + timeElapsedInNs);
+		}
+
+		@Override
+		public void onConnectionLeakSuspected(ConnectionHandle connection, long heldTimeInMs, String checkOutThreadName, Throwable checkOutTrace) {
+			record("leak " + heldTimeInMs + " " + checkOutThreadName);
+		}
+
+		@Override
+		public ConnectionState onMarkPossiblyBroken(ConnectionHandle connection, String state, SQLException e) {
+			record("broken " + state);
+			return ConnectionState.TERMINATE_ALL_CONNECTIONS;
+		}
+	}
+
+	/** Callbacks are delivered in order on the dispatcher thread, with a copy of the parameters. */
+	@Test
+	public void testDispatch(){
+		RecordingHook delegate = new RecordingHook();
+		AsyncConnectionHook hook = new AsyncConnectionHook(delegate);
+		ParameterRecorder params = new ParameterRecorder();
+		params.set(1, 42);
+		hook.onCheckOut(null);
+		hook.onBeforeStatementExecute(null, null, "SELECT ?", params);
+		params.clear(); // the statement moves on before the hook runs
+		hook.onQueryExecuteTimeLimitExceeded(null, null, "SELECT 2", null, 5);
+		hook.onConnectionLeakSuspected(null, 100, "worker", null);
+		hook.shutdown();
+
+		assertEquals(Arrays.asList("checkOut", "before SELECT 42", "slow SELECT 2 5", "leak 100 worker"), delegate.events);
+		for (String thread: delegate.threads){
+			assertTrue(thread.startsWith("BoneCP-async-hook"));
+		}
+		assertEquals(0, hook.getPendingCount());
+		assertEquals(0, hook.getDroppedCount());
+		assertEquals(delegate, hook.getDelegate());
+
+		// after shutdown, callbacks run on the caller
+		hook.onCheckIn(null);
+		assertEquals("checkIn", delegate.events.get(4));
+		assertEquals(Thread.currentThread().getName(), delegate.threads.get(4));
+	}
+
+	/** Only subscribed callbacks are dispatched, and callbacks that steer the pool are passed straight through. */
+	@Test
+	public void testSubscription(){
+		RecordingHook delegate = new RecordingHook();
+		AsyncConnectionHook hook = new AsyncConnectionHook(delegate, 16, OverflowPolicy.DROP, EnumSet.of(Event.CHECK_IN));
+		hook.onCheckOut(null);
+		hook.onBeforeStatementExecute(null, null, "SELECT 1", null);
+		assertEquals(ConnectionState.TERMINATE_ALL_CONNECTIONS, hook.onMarkPossiblyBroken(null, "08001", null));
+		hook.onAcquire(null);
+		assertEquals(Arrays.asList("broken 08001", "acquire"), delegate.events);
+		hook.onCheckIn(null);
+		hook.shutdown();
+		assertEquals(Arrays.asList("broken 08001", "acquire", "checkIn"), delegate.events);
+	}
+
+	/** With the DROP policy, callbacks that don't fit are dropped and counted. */
+	@Test
+	public void testDrop(){
+		RecordingHook delegate = new RecordingHook();
+		delegate.gate = new CountDownLatch(1);
+		AsyncConnectionHook hook = new AsyncConnectionHook(delegate, 4, OverflowPolicy.DROP, EnumSet.allOf(Event.class));
+		for (int i=0; i < 100; i++){
+			hook.onCheckOut(null);
+		}
+		assertTrue(hook.getDroppedCount() >= 100 - 5); // 4 queued, plus possibly 1 being delivered
+		delegate.gate.countDown();
+		hook.shutdown();
+		assertEquals(100, delegate.events.size() + hook.getDroppedCount());
+	}
+
+	/** With the BLOCK policy, callers wait for room and nothing is lost.
+	 * @throws InterruptedException 
+	 */
+	@Test
+	public void testBlock() throws InterruptedException{
+		final RecordingHook delegate = new RecordingHook();
+		delegate.gate = new CountDownLatch(1);
+		final AsyncConnectionHook hook = new AsyncConnectionHook(delegate, 4, OverflowPolicy.BLOCK, EnumSet.allOf(Event.class));
+		Thread producer = new Thread(new Runnable() {
+			public void run() {
+				for (int i=0; i < 20; i++){
+					hook.onCheckOut(null);
+				}
+			}
+		});
+		producer.start();
+		producer.join(200);
+		assertTrue(producer.isAlive()); // stuck waiting for room
+		assertTrue(delegate.events.isEmpty());
+		delegate.gate.countDown();
+		producer.join();
+		hook.shutdown();
+		assertEquals(20, delegate.events.size());
+		assertEquals(0, hook.getDroppedCount());
+		assertFalse(producer.isAlive());
+	}
+}